@@ -1,9 +1,11 @@
 package com.phamnam.tracking_vessel_flight.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -15,12 +17,27 @@ import java.util.concurrent.Executor;
 @Slf4j
 public class AsyncConfig implements AsyncConfigurer {
 
+    // Virtual-thread mode (spring.threads.virtual.enabled): @Async work runs on
+    // a new virtual thread per task instead of the bounded platform pools.
+    // Blocking database/Redis access is bounded by connection permits
+    // (ConnectionPermitPostProcessor), not by thread count.
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    // Optional cap on concurrently running virtual-thread tasks, -1 = unbounded
+    @Value("${app.virtual-threads.max-concurrent-tasks:-1}")
+    private int virtualMaxConcurrentTasks;
+
     /**
      * Task executor for @Async methods, especially for @Scheduled + @Async methods
      */
     @Bean(name = "taskExecutor")
     @Primary
     public Executor taskExecutor() {
+        if (virtualThreadsEnabled) {
+            return virtualThreadExecutor("Async-");
+        }
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
 
         // Core pool size - number of threads to keep in pool at all times
@@ -63,6 +80,10 @@ public class AsyncConfig implements AsyncConfigurer {
      */
     @Bean(name = "scheduledTaskExecutor")
     public Executor scheduledTaskExecutor() {
+        if (virtualThreadsEnabled) {
+            return virtualThreadExecutor("Scheduled-");
+        }
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
 
         // Smaller pool for scheduled tasks
@@ -86,6 +107,19 @@ public class AsyncConfig implements AsyncConfigurer {
         return executor;
     }
 
+    private Executor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(virtualMaxConcurrentTasks);
+        // Let in-flight tasks finish on shutdown, like the platform pools do
+        executor.setTaskTerminationTimeout(30000);
+
+        log.info("✅ Virtual-thread executor '{}' initialized (concurrency limit: {})",
+                threadNamePrefix, virtualMaxConcurrentTasks < 0 ? "unbounded" : virtualMaxConcurrentTasks);
+
+        return executor;
+    }
+
     /**
      * Default executor for @Async methods without explicit executor name
      * This implements AsyncConfigurer to resolve WebSocket executor conflicts
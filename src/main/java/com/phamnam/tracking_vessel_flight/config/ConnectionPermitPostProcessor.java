@@ -0,0 +1,213 @@
+package com.phamnam.tracking_vessel_flight.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Connection permits for virtual-thread mode.
+ *
+ * On the platform thread pools, pool sizes capped how many callers could
+ * wait on Hikari or Lettuce at once. Virtual threads remove that cap, so the
+ * DataSource and RedisConnectionFactory beans are wrapped: getting a
+ * connection first takes a permit from a fair semaphore sized to the pool,
+ * and closing the connection gives it back. Callers beyond the pool size park
+ * on the semaphore in arrival order and give up after permit-timeout, with
+ * the same exception type the pool itself would throw.
+ *
+ * A Redis connection that subscribes (the RedisMessageListenerContainer
+ * behind cluster fan-out) gives its permit back at that point: Lettuce moves
+ * it to a dedicated pub/sub connection that stays open for the life of the
+ * container and never competes for the pool.
+ *
+ * The wrappers are JDK interface proxies, so these beans can only be
+ * injected by interface (DataSource, RedisConnectionFactory, ...). Injecting
+ * HikariDataSource or LettuceConnectionFactory by class fails at startup
+ * with BeanNotOfRequiredTypeException; use dataSource.unwrap(
+ * HikariDataSource.class) for pool internals, or leave
+ * spring.threads.virtual.enabled off.
+ */
+@Slf4j
+public class ConnectionPermitPostProcessor implements BeanPostProcessor {
+
+    private static final Set<String> CONNECTION_METHODS = Set.of("getConnection", "getClusterConnection",
+            "getSentinelConnection");
+
+    private static final Set<String> SUBSCRIBE_METHODS = Set.of("subscribe", "pSubscribe");
+
+    private final int databasePermits;
+    private final int redisPermits;
+    private final long permitTimeoutMs;
+    private final Map<String, ConnectionPermits> permitsByResource = new LinkedHashMap<>();
+
+    public ConnectionPermitPostProcessor(int databasePermits, int redisPermits, long permitTimeoutMs) {
+        this.databasePermits = databasePermits;
+        this.redisPermits = redisPermits;
+        this.permitTimeoutMs = permitTimeoutMs;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource) {
+            return limit(bean, new ConnectionPermits("database", databasePermits, permitTimeoutMs,
+                    SQLTransientConnectionException::new));
+        }
+        if (bean instanceof RedisConnectionFactory) {
+            return limit(bean, new ConnectionPermits("redis", redisPermits, permitTimeoutMs,
+                    RedisConnectionFailureException::new));
+        }
+        return bean;
+    }
+
+    /**
+     * Proxy exposing every interface of the target, so injection by any of
+     * them (reactive Redis factory, lifecycle callbacks) keeps working
+     */
+    Object limit(Object target, ConnectionPermits permits) {
+        synchronized (permitsByResource) {
+            permitsByResource.put(permits.name, permits);
+        }
+        log.info("🔒 {} connections limited to {} concurrent permits", permits.name, permits.permits);
+        return Proxy.newProxyInstance(target.getClass().getClassLoader(),
+                ClassUtils.getAllInterfaces(target),
+                (proxy, method, args) -> {
+                    if (!CONNECTION_METHODS.contains(method.getName())) {
+                        return invoke(target, method, args);
+                    }
+                    permits.acquire();
+                    try {
+                        return permits.releasingOnClose(invoke(target, method, args));
+                    } catch (Throwable e) {
+                        permits.release();
+                        throw e;
+                    }
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", true);
+        stats.put("permitTimeoutMs", permitTimeoutMs);
+        synchronized (permitsByResource) {
+            permitsByResource.forEach((name, permits) -> stats.put(name, permits.getStatistics()));
+        }
+        return stats;
+    }
+
+    static final class ConnectionPermits {
+        private final String name;
+        private final int permits;
+        private final long timeoutMs;
+        private final Function<String, Exception> timeoutException;
+        private final Semaphore semaphore;
+
+        private final AtomicLong acquired = new AtomicLong(0);
+        private final AtomicLong waited = new AtomicLong(0);
+        private final AtomicLong timedOut = new AtomicLong(0);
+        private final AtomicLong subscriptions = new AtomicLong(0);
+        private final AtomicInteger maxInUse = new AtomicInteger(0);
+
+        ConnectionPermits(String name, int permits, long timeoutMs, Function<String, Exception> timeoutException) {
+            this.name = name;
+            this.permits = Math.max(1, permits);
+            this.timeoutMs = timeoutMs;
+            this.timeoutException = timeoutException;
+            this.semaphore = new Semaphore(this.permits, true);
+        }
+
+        void acquire() throws Exception {
+            if (!semaphore.tryAcquire()) {
+                waited.incrementAndGet();
+                boolean granted;
+                try {
+                    granted = semaphore.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw timeoutException.apply("Interrupted while waiting for a " + name + " connection permit");
+                }
+                if (!granted) {
+                    timedOut.incrementAndGet();
+                    throw timeoutException.apply("No " + name + " connection permit within " + timeoutMs
+                            + "ms (" + permits + " in use)");
+                }
+            }
+            acquired.incrementAndGet();
+            maxInUse.accumulateAndGet(permits - semaphore.availablePermits(), Math::max);
+        }
+
+        void release() {
+            semaphore.release();
+        }
+
+        /**
+         * Connection proxy that returns the permit on its first close(), or
+         * when it turns into a long-lived subscription
+         */
+        Object releasingOnClose(Object connection) {
+            if (connection == null) {
+                release();
+                return null;
+            }
+            AtomicBoolean released = new AtomicBoolean(false);
+            return Proxy.newProxyInstance(connection.getClass().getClassLoader(),
+                    ClassUtils.getAllInterfaces(connection),
+                    (proxy, method, args) -> {
+                        if (SUBSCRIBE_METHODS.contains(method.getName())) {
+                            if (released.compareAndSet(false, true)) {
+                                subscriptions.incrementAndGet();
+                                release();
+                            }
+                            return invoke(connection, method, args);
+                        }
+                        if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                            try {
+                                return invoke(connection, method, args);
+                            } finally {
+                                if (released.compareAndSet(false, true)) {
+                                    release();
+                                }
+                            }
+                        }
+                        return invoke(connection, method, args);
+                    });
+        }
+
+        Map<String, Object> getStatistics() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("permits", permits);
+            stats.put("inUse", permits - semaphore.availablePermits());
+            stats.put("maxInUse", maxInUse.get());
+            stats.put("waiting", semaphore.getQueueLength());
+            stats.put("acquired", acquired.get());
+            stats.put("waited", waited.get());
+            stats.put("timedOut", timedOut.get());
+            stats.put("subscriptions", subscriptions.get());
+            return stats;
+        }
+    }
+}
@@ -81,7 +81,8 @@ public class DatabaseInitializer implements CommandLineRunner {
                     "db/01-init-extensions.sql",
                     "db/02-timescale-optimization.sql",
                     "db/03-create-hypertables.sql",
-                    "db/04-utility-functions.sql");
+                    "db/04-utility-functions.sql",
+                    "db/05-continuous-aggregates.sql");
 
             for (String scriptPath : scripts) {
                 executeScript(scriptPath);
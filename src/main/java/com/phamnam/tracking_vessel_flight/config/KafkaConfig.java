@@ -1,13 +1,18 @@
 package com.phamnam.tracking_vessel_flight.config;
 
 import com.phamnam.tracking_vessel_flight.dto.FlightTrackingRequestDTO;
+import com.phamnam.tracking_vessel_flight.dto.event.AircraftPositionEvent;
 import com.phamnam.tracking_vessel_flight.dto.request.AircraftTrackingRequest;
 import com.phamnam.tracking_vessel_flight.dto.request.ShipTrackingRequest;
 import com.phamnam.tracking_vessel_flight.dto.ShipTrackingRequestDTO;
-import com.phamnam.tracking_vessel_flight.models.FlightTracking;
 import com.phamnam.tracking_vessel_flight.service.kafka.DeadLetterQueueService;
 import com.phamnam.tracking_vessel_flight.service.kafka.KafkaMonitoringService;
 import com.phamnam.tracking_vessel_flight.service.kafka.DatabaseConstraintErrorHandler;
+import com.phamnam.tracking_vessel_flight.service.kafka.codec.BinarySchemaCodec;
+import com.phamnam.tracking_vessel_flight.service.kafka.codec.FileSchemaRegistry;
+import com.phamnam.tracking_vessel_flight.service.kafka.codec.SchemaAwareMessageConverter;
+import com.phamnam.tracking_vessel_flight.service.kafka.codec.SchemaCodecDeserializer;
+import com.phamnam.tracking_vessel_flight.service.kafka.codec.SchemaCodecSerializer;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.NewTopic;
@@ -15,13 +20,16 @@ import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.KafkaListenerContainerFactory;
@@ -39,15 +47,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.phamnam.tracking_vessel_flight.util.LocalDateTimeArrayDeserializer;
+import java.io.IOException;
 import java.time.LocalDateTime;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Configuration
 @EnableKafka
-// @EnableKafkaStreams // Commented out - no stream topologies defined
+// @EnableKafkaStreams // Not needed - KafkaStreamsFusionService manages its own KafkaStreams instance
 public class KafkaConfig {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(KafkaConfig.class);
@@ -61,6 +73,58 @@ public class KafkaConfig {
     @Value("${app.kafka.topic-config.replication-factor:1}")
     private short defaultReplicationFactor;
 
+    // Batch listener tuning: one consumer thread per partition, capped so the
+    // bulk-writing threads cannot exhaust the JDBC connection pool
+    @Value("${app.kafka.consumer.batch.max-concurrency:6}")
+    private int batchMaxConcurrency;
+
+    @Value("${app.kafka.consumer.batch.max-poll-records:500}")
+    private int batchMaxPollRecords;
+
+    // Virtual-thread mode: Boot only configures its own listener container
+    // factory, so the custom factories below opt in here
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    // Binary codec: topics listed here are written in the schema-based binary
+    // format; consumers auto-detect binary vs JSON, so flipping binary-enabled
+    // off falls back to JSON for debugging without a consumer redeploy
+    @Value("${app.kafka.codec.binary-enabled:true}")
+    private boolean codecBinaryEnabled;
+
+    @Value("${app.kafka.codec.binary-topics:}")
+    private String codecBinaryTopics;
+
+    @Value("${app.kafka.codec.schema-location:classpath*:kafka-schemas/*.json}")
+    private String codecSchemaLocation;
+
+    @Value("${app.kafka.codec.schema-dir:}")
+    private String codecSchemaDir;
+
+    // Producer profiles: batch.size / linger.ms / compression are per-producer
+    // settings, so topics are routed to a template built for their traffic shape
+    // (small latency-sensitive position updates vs large raw source dumps)
+    @Value("${app.kafka.producer.position.batch-size:65536}")
+    private int positionBatchSize;
+
+    @Value("${app.kafka.producer.position.linger-ms:10}")
+    private int positionLingerMs;
+
+    @Value("${app.kafka.producer.position.compression-type:lz4}")
+    private String positionCompressionType;
+
+    @Value("${app.kafka.producer.raw.batch-size:262144}")
+    private int rawBatchSize;
+
+    @Value("${app.kafka.producer.raw.linger-ms:50}")
+    private int rawLingerMs;
+
+    @Value("${app.kafka.producer.raw.compression-type:zstd}")
+    private String rawCompressionType;
+
+    @Value("${app.kafka.producer.max-block-ms:2000}")
+    private long producerMaxBlockMs;
+
     @Value("${app.kafka.topic-config.retention-ms:604800000}")
     private String retentionMs;
 
@@ -142,7 +206,6 @@ public class KafkaConfig {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
         configProps.put(ProducerConfig.ACKS_CONFIG, "all");
         configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
         configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 16384);
@@ -152,14 +215,87 @@ public class KafkaConfig {
         configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
         configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
 
-        return new DefaultKafkaProducerFactory<>(configProps);
+        // Binary for the configured topics, JsonSerializer for everything else
+        SchemaCodecSerializer valueSerializer = new SchemaCodecSerializer(binarySchemaCodec(),
+                new JsonSerializer<>(), binaryCodecTopics(), codecBinaryEnabled);
+
+        return new DefaultKafkaProducerFactory<>(configProps, new StringSerializer(), valueSerializer);
+    }
+
+    // ============================================================================
+    // BINARY CODEC
+    // ============================================================================
+
+    @Bean
+    public FileSchemaRegistry kafkaSchemaRegistry() {
+        try {
+            return FileSchemaRegistry.load(kafkaObjectMapper(), codecSchemaLocation, codecSchemaDir);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load Kafka schemas from " + codecSchemaLocation, e);
+        }
     }
 
     @Bean
+    public BinarySchemaCodec binarySchemaCodec() {
+        return new BinarySchemaCodec(kafkaSchemaRegistry());
+    }
+
+    public Set<String> binaryCodecTopics() {
+        return Arrays.stream(codecBinaryTopics.split(","))
+                .map(String::trim)
+                .filter(topic -> !topic.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public boolean isBinaryCodecEnabled() {
+        return codecBinaryEnabled;
+    }
+
+    /**
+     * Let a JSON deserializer also read binary messages from the same topic
+     */
+    private <T> Deserializer<T> codecAware(Deserializer<T> jsonDeserializer) {
+        return new SchemaCodecDeserializer<>(binarySchemaCodec(), jsonDeserializer);
+    }
+
+    private SchemaAwareMessageConverter schemaAwareMessageConverter() {
+        return new SchemaAwareMessageConverter(binarySchemaCodec(), kafkaObjectMapper());
+    }
+
+    @Bean
+    @Primary
     public KafkaTemplate<String, Object> kafkaTemplate() {
         return new KafkaTemplate<>(producerFactory());
     }
 
+    /**
+     * Template for position topics: moderate batches, short linger, lz4
+     */
+    @Bean
+    public KafkaTemplate<String, Object> positionKafkaTemplate() {
+        return new KafkaTemplate<>(producerFactory(),
+                producerProfile(positionBatchSize, positionLingerMs, positionCompressionType));
+    }
+
+    /**
+     * Template for raw source topics: large batches, longer linger, zstd
+     */
+    @Bean
+    public KafkaTemplate<String, Object> rawKafkaTemplate() {
+        return new KafkaTemplate<>(producerFactory(),
+                producerProfile(rawBatchSize, rawLingerMs, rawCompressionType));
+    }
+
+    private Map<String, Object> producerProfile(int batchSize, int lingerMs, String compressionType) {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        overrides.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        overrides.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        // Fail fast with BufferExhaustedException instead of stalling the caller
+        overrides.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, producerMaxBlockMs);
+        return overrides;
+    }
+
     @Autowired
     @Lazy
     private DeadLetterQueueService deadLetterQueueService;
@@ -306,11 +442,27 @@ public class KafkaConfig {
         jsonDeserializer.setUseTypeHeaders(false);
 
         // Wrap with error handling
-        ErrorHandlingDeserializer<Object> errorHandlingDeserializer = new ErrorHandlingDeserializer<>(jsonDeserializer);
+        ErrorHandlingDeserializer<Object> errorHandlingDeserializer = new ErrorHandlingDeserializer<>(
+                codecAware(jsonDeserializer));
 
         return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), errorHandlingDeserializer);
     }
 
+    /**
+     * In virtual-thread mode each consumer of the container polls and runs
+     * its listener on a virtual thread, so listeners blocked on the database
+     * or Redis no longer pin a platform thread
+     */
+    private <K, V> ConcurrentKafkaListenerContainerFactory<K, V> withListenerThreads(
+            ConcurrentKafkaListenerContainerFactory<K, V> factory) {
+        if (virtualThreadsEnabled) {
+            SimpleAsyncTaskExecutor listenerExecutor = new SimpleAsyncTaskExecutor("kafka-listener-");
+            listenerExecutor.setVirtualThreads(true);
+            factory.getContainerProperties().setListenerTaskExecutor(listenerExecutor);
+        }
+        return factory;
+    }
+
     @Bean
     public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, Object>> kafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
@@ -330,13 +482,14 @@ public class KafkaConfig {
         jsonDeserializer.addTrustedPackages("*");
 
         DefaultKafkaConsumerFactory<String, Object> consumerFactory = new DefaultKafkaConsumerFactory<>(
-                props, new StringDeserializer(), new ErrorHandlingDeserializer<>(jsonDeserializer));
+                props, new StringDeserializer(), new ErrorHandlingDeserializer<>(codecAware(jsonDeserializer)));
         factory.setConsumerFactory(consumerFactory);
+        factory.setRecordMessageConverter(schemaAwareMessageConverter());
         factory.setConcurrency(4); // Number of consumer threads
         factory.getContainerProperties().setPollTimeout(3000);
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
         factory.setCommonErrorHandler(kafkaErrorHandler());
-        return factory;
+        return withListenerThreads(factory);
     }
 
     // Flight tracking specific container factory
@@ -364,7 +517,7 @@ public class KafkaConfig {
         factory.setConcurrency(2);
         factory.getContainerProperties().setPollTimeout(3000);
         factory.setCommonErrorHandler(kafkaErrorHandler());
-        return factory;
+        return withListenerThreads(factory);
     }
 
     // Batch flight tracking container factory
@@ -390,7 +543,7 @@ public class KafkaConfig {
         props.put("spring.json.add.type.headers", false);
 
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
-        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 100); // Batch size
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchMaxPollRecords); // Batch size
         props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, 1000);
         props.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, 30000);
         props.put(ConsumerConfig.HEARTBEAT_INTERVAL_MS_CONFIG, 3000);
@@ -398,11 +551,11 @@ public class KafkaConfig {
         DefaultKafkaConsumerFactory<String, List<FlightTrackingRequestDTO>> consumerFactory = new DefaultKafkaConsumerFactory<>(
                 props);
         factory.setConsumerFactory(consumerFactory);
-        factory.setConcurrency(1); // Single thread for batch processing
+        factory.setConcurrency(batchConcurrency());
         factory.getContainerProperties().setPollTimeout(5000);
         factory.setBatchListener(true); // Enable batch processing
         factory.setCommonErrorHandler(kafkaErrorHandler());
-        return factory;
+        return withListenerThreads(factory);
     }
 
     // Ship tracking specific container factory
@@ -435,7 +588,7 @@ public class KafkaConfig {
         factory.getContainerProperties().setPollTimeout(3000);
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
         factory.setCommonErrorHandler(kafkaErrorHandler());
-        return factory;
+        return withListenerThreads(factory);
     }
 
     // Raw Aircraft Data container factory
@@ -459,13 +612,14 @@ public class KafkaConfig {
         jsonDeserializer.addTrustedPackages("*");
 
         DefaultKafkaConsumerFactory<String, AircraftTrackingRequest> consumerFactory = new DefaultKafkaConsumerFactory<>(
-                props, new StringDeserializer(), new ErrorHandlingDeserializer<>(jsonDeserializer));
+                props, new StringDeserializer(), new ErrorHandlingDeserializer<>(codecAware(jsonDeserializer)));
         factory.setConsumerFactory(consumerFactory);
+        factory.setRecordMessageConverter(schemaAwareMessageConverter());
         factory.setConcurrency(2);
         factory.getContainerProperties().setPollTimeout(3000);
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
         factory.setCommonErrorHandler(kafkaErrorHandler());
-        return factory;
+        return withListenerThreads(factory);
     }
 
     // Raw Vessel Data container factory
@@ -489,21 +643,22 @@ public class KafkaConfig {
         jsonDeserializer.addTrustedPackages("*");
 
         DefaultKafkaConsumerFactory<String, ShipTrackingRequestDTO> consumerFactory = new DefaultKafkaConsumerFactory<>(
-                props, new StringDeserializer(), new ErrorHandlingDeserializer<>(jsonDeserializer));
+                props, new StringDeserializer(), new ErrorHandlingDeserializer<>(codecAware(jsonDeserializer)));
         factory.setConsumerFactory(consumerFactory);
+        factory.setRecordMessageConverter(schemaAwareMessageConverter());
         factory.setConcurrency(2);
         factory.getContainerProperties().setPollTimeout(3000);
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
         factory.setCommonErrorHandler(kafkaErrorHandler());
-        return factory;
+        return withListenerThreads(factory);
     }
 
-    // Processed Aircraft Data container factory (FlightTracking model)
+    // Processed Aircraft Data container factory (AircraftPositionEvent)
     @Bean
-    public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, FlightTracking>> processedAircraftKafkaListenerContainerFactory() {
-        ConcurrentKafkaListenerContainerFactory<String, FlightTracking> factory = new ConcurrentKafkaListenerContainerFactory<>();
+    public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, AircraftPositionEvent>> processedAircraftKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, AircraftPositionEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
 
-        // Create consumer factory for FlightTracking
+        // Create consumer factory for AircraftPositionEvent
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
 
@@ -514,18 +669,19 @@ public class KafkaConfig {
         props.put(ConsumerConfig.HEARTBEAT_INTERVAL_MS_CONFIG, 3000);
 
         // Create custom deserializer with custom ObjectMapper
-        JsonDeserializer<FlightTracking> jsonDeserializer = new JsonDeserializer<>(kafkaObjectMapper());
-        jsonDeserializer.setUseTypeHeaders(false);
+        JsonDeserializer<AircraftPositionEvent> jsonDeserializer = new JsonDeserializer<>(
+                AircraftPositionEvent.class, kafkaObjectMapper(), false);
         jsonDeserializer.addTrustedPackages("*");
 
-        DefaultKafkaConsumerFactory<String, FlightTracking> consumerFactory = new DefaultKafkaConsumerFactory<>(
-                props, new StringDeserializer(), new ErrorHandlingDeserializer<>(jsonDeserializer));
+        DefaultKafkaConsumerFactory<String, AircraftPositionEvent> consumerFactory = new DefaultKafkaConsumerFactory<>(
+                props, new StringDeserializer(), new ErrorHandlingDeserializer<>(codecAware(jsonDeserializer)));
         factory.setConsumerFactory(consumerFactory);
+        factory.setRecordMessageConverter(schemaAwareMessageConverter());
         factory.setConcurrency(2);
         factory.getContainerProperties().setPollTimeout(3000);
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
         factory.setCommonErrorHandler(kafkaErrorHandler());
-        return factory;
+        return withListenerThreads(factory);
     }
 
     // Batch ship tracking container factory
@@ -537,7 +693,7 @@ public class KafkaConfig {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
-        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 100); // Batch size
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchMaxPollRecords); // Batch size
         props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, 1000);
         props.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, 30000);
         props.put(ConsumerConfig.HEARTBEAT_INTERVAL_MS_CONFIG, 3000);
@@ -550,11 +706,19 @@ public class KafkaConfig {
         DefaultKafkaConsumerFactory<String, List<ShipTrackingRequest>> consumerFactory = new DefaultKafkaConsumerFactory<>(
                 props, new StringDeserializer(), new ErrorHandlingDeserializer<>(jsonDeserializer));
         factory.setConsumerFactory(consumerFactory);
-        factory.setConcurrency(1); // Single thread for batch processing
+        factory.setConcurrency(batchConcurrency());
         factory.getContainerProperties().setPollTimeout(5000);
         factory.setBatchListener(true); // Enable batch processing
         factory.setCommonErrorHandler(kafkaErrorHandler());
-        return factory;
+        return withListenerThreads(factory);
+    }
+
+    /**
+     * Concurrency for the bulk-writing batch listeners. Threads beyond the
+     * partition count would sit idle, so scale with partitions up to the cap.
+     */
+    private int batchConcurrency() {
+        return Math.max(1, Math.min(defaultPartitions, batchMaxConcurrency));
     }
 
     // Admin Client for Topic Management
@@ -0,0 +1,63 @@
+package com.phamnam.tracking_vessel_flight.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Virtual-thread execution mode, enabled with spring.threads.virtual.enabled.
+ *
+ * Spring Boot switches Tomcat request handling to virtual threads; AsyncConfig
+ * and KafkaConfig switch the @Async executors and listener containers. This
+ * class adds the remaining pieces:
+ * - the @Scheduled task scheduler, so scheduled collection and flush jobs
+ *   block on virtual threads too
+ * - connection permits in front of the DataSource and Redis connection
+ *   factory, which replace the thread pools as the limit on how many callers
+ *   hit the database or Redis at once
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfig {
+
+    @Value("${app.virtual-threads.scheduler-pool-size:16}")
+    private int schedulerPoolSize;
+
+    /**
+     * Virtual threads for @Scheduled methods. A pooled scheduler is kept
+     * (rather than SimpleAsyncTaskScheduler) so that each fixed-delay job still
+     * runs one execution at a time on its own schedule, independent of the
+     * other jobs; the pool size only bounds how many jobs run concurrently.
+     */
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(schedulerPoolSize);
+        scheduler.setThreadFactory(Thread.ofVirtual().name("Scheduler-", 1).factory());
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+
+        log.info("✅ Virtual-thread task scheduler initialized with {} concurrent jobs", schedulerPoolSize);
+
+        return scheduler;
+    }
+
+    /**
+     * Static so it is registered before the DataSource and Redis connection
+     * factory are created
+     */
+    @Bean
+    public static ConnectionPermitPostProcessor connectionPermitPostProcessor(Environment environment) {
+        return new ConnectionPermitPostProcessor(
+                environment.getProperty("app.virtual-threads.database-permits", Integer.class,
+                        environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 20)),
+                environment.getProperty("app.virtual-threads.redis-permits", Integer.class,
+                        environment.getProperty("spring.data.redis.lettuce.pool.max-active", Integer.class, 20)),
+                environment.getProperty("app.virtual-threads.permit-timeout", Long.class, 30000L));
+    }
+}
@@ -1,5 +1,6 @@
 package com.phamnam.tracking_vessel_flight.config;
 
+import com.phamnam.tracking_vessel_flight.service.realtime.backpressure.SessionBackpressureManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.ChannelRegistration;
@@ -18,9 +19,12 @@ import lombok.extern.slf4j.Slf4j;
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final WebSocketSessionChannelInterceptor channelInterceptor;
+    private final SessionBackpressureManager backpressureManager;
 
-    public WebSocketConfig(WebSocketSessionChannelInterceptor channelInterceptor) {
+    public WebSocketConfig(WebSocketSessionChannelInterceptor channelInterceptor,
+            SessionBackpressureManager backpressureManager) {
         this.channelInterceptor = channelInterceptor;
+        this.backpressureManager = backpressureManager;
     }
 
     @Override
@@ -69,6 +73,10 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registration.setSendBufferSizeLimit(512 * 1024); // 512KB send buffer
         registration.setSendTimeLimit(20 * 1000); // 20 seconds send timeout
 
+        // Per-session outbound queues: slow clients get conflated updates
+        // instead of a backlog in the send buffer
+        registration.addDecoratorFactory(backpressureManager::decorate);
+
         log.info("WebSocket transport configured successfully");
     }
 
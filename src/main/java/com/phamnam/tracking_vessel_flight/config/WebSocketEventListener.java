@@ -1,6 +1,8 @@
 package com.phamnam.tracking_vessel_flight.config;
 
 import com.phamnam.tracking_vessel_flight.service.realtime.WebSocketSubscriptionService;
+import com.phamnam.tracking_vessel_flight.service.realtime.cluster.LocalSubscriptionIndex;
+import com.phamnam.tracking_vessel_flight.service.realtime.replay.ReplayService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
@@ -8,6 +10,8 @@ import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 
 @Component
 @RequiredArgsConstructor
@@ -15,6 +19,8 @@ import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 public class WebSocketEventListener {
 
     private final WebSocketSubscriptionService subscriptionService;
+    private final ReplayService replayService;
+    private final LocalSubscriptionIndex localSubscriptionIndex;
 
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
@@ -31,5 +37,20 @@ public class WebSocketEventListener {
 
         // Xử lý clean-up khi client ngắt kết nối
         subscriptionService.handleDisconnect(sessionId);
+        replayService.stopAll(sessionId);
+        localSubscriptionIndex.removeSession(sessionId);
+    }
+
+    @EventListener
+    public void handleSubscribeListener(SessionSubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        localSubscriptionIndex.subscribe(headerAccessor.getSessionId(), headerAccessor.getSubscriptionId(),
+                headerAccessor.getDestination());
+    }
+
+    @EventListener
+    public void handleUnsubscribeListener(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        localSubscriptionIndex.unsubscribe(headerAccessor.getSessionId(), headerAccessor.getSubscriptionId());
     }
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package com.phamnam.tracking_vessel_flight.controller;
 
 import com.phamnam.tracking_vessel_flight.dto.response.MyApiResponse;
 import com.phamnam.tracking_vessel_flight.models.FlightTracking;
+import com.phamnam.tracking_vessel_flight.models.ShipTracking;
+import com.phamnam.tracking_vessel_flight.service.realtime.CompressionPolicyService;
 import com.phamnam.tracking_vessel_flight.service.rest.interfaces.ColdStorageService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -15,6 +17,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/archive")
@@ -23,6 +26,7 @@ import java.util.List;
 public class ArchiveController {
 
     private final ColdStorageService coldStorageService;
+    private final CompressionPolicyService compressionPolicyService;
 
     @Operation(summary = "Get archived flight tracking data", description = "Retrieves historical flight tracking data for a specific flight within a time range")
     @ApiResponses(value = {
@@ -45,6 +49,80 @@ public class ArchiveController {
                         .build());
     }
 
+    @Operation(summary = "Get archived vessel tracking data", description = "Retrieves historical vessel tracking data for a specific vessel within a time range")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved archive data"),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters")
+    })
+    @GetMapping("/vessel/{vesselId}")
+    public ResponseEntity<MyApiResponse<List<ShipTracking>>> getVesselArchiveData(
+            @PathVariable Long vesselId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+
+        List<ShipTracking> archiveData = coldStorageService.queryVesselTrackingHistory(vesselId, startTime, endTime);
+
+        return ResponseEntity.ok(
+                MyApiResponse.<List<ShipTracking>>builder()
+                        .success(true)
+                        .data(archiveData)
+                        .build());
+    }
+
+    @Operation(summary = "Get archive statistics", description = "Archive files, rows and bytes per entity type, plus file and row-group pruning counters")
+    @GetMapping("/statistics")
+    public ResponseEntity<MyApiResponse<Map<String, Object>>> getArchiveStatistics() {
+        return ResponseEntity.ok(
+                MyApiResponse.<Map<String, Object>>builder()
+                        .success(true)
+                        .data(coldStorageService.getArchiveStatistics())
+                        .build());
+    }
+
+    @Operation(summary = "Get warm storage compression status", description = "Compression policy health and compressed/uncompressed bytes per tracking table")
+    @GetMapping("/compression")
+    public ResponseEntity<MyApiResponse<Map<String, Object>>> getCompressionStatistics() {
+        return ResponseEntity.ok(
+                MyApiResponse.<Map<String, Object>>builder()
+                        .success(true)
+                        .data(compressionPolicyService.getStatistics())
+                        .build());
+    }
+
+    @Operation(summary = "Get per-chunk compression", description = "Range, compression state and compression ratio of every chunk of flight_tracking or ship_tracking")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved chunk compression"),
+            @ApiResponse(responseCode = "400", description = "Not a compressed tracking table")
+    })
+    @GetMapping("/compression/chunks")
+    public ResponseEntity<MyApiResponse<List<CompressionPolicyService.ChunkCompression>>> getChunkCompression(
+            @RequestParam(defaultValue = "flight_tracking") String table) {
+        try {
+            return ResponseEntity.ok(
+                    MyApiResponse.<List<CompressionPolicyService.ChunkCompression>>builder()
+                            .success(true)
+                            .data(compressionPolicyService.getChunkCompression(table))
+                            .build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(
+                    MyApiResponse.<List<CompressionPolicyService.ChunkCompression>>builder()
+                            .success(false)
+                            .message(e.getMessage())
+                            .build());
+        }
+    }
+
+    @Operation(summary = "Compress eligible chunks now", description = "Compresses chunks past the hot-storage window that the compression policy has not reached yet")
+    @PostMapping("/compression/run")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<MyApiResponse<Map<String, Object>>> compressEligibleChunks() {
+        return ResponseEntity.ok(
+                MyApiResponse.<Map<String, Object>>builder()
+                        .success(true)
+                        .data(compressionPolicyService.compressEligibleChunks())
+                        .build());
+    }
+
     @Operation(summary = "Trigger manual archiving process", description = "Initiates a manual archiving process for data older than the specified date")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Archiving process initiated"),
@@ -53,15 +131,16 @@ public class ArchiveController {
     })
     @PostMapping("/manual-archive")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<MyApiResponse<String>> triggerManualArchive(
+    public ResponseEntity<MyApiResponse<Map<String, Object>>> triggerManualArchive(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cutoffDate) {
 
-        coldStorageService.performDataArchiving();
+        Map<String, Object> result = coldStorageService.archiveBefore(cutoffDate);
 
         return ResponseEntity.ok(
-                MyApiResponse.<String>builder()
+                MyApiResponse.<Map<String, Object>>builder()
                         .success(true)
-                        .message("Manual archiving process initiated for data older than " + cutoffDate)
+                        .message("Archived whole days before " + cutoffDate.toLocalDate())
+                        .data(result)
                         .build());
     }
 }
\ No newline at end of file
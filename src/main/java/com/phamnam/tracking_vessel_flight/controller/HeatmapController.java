@@ -0,0 +1,70 @@
+package com.phamnam.tracking_vessel_flight.controller;
+
+import com.phamnam.tracking_vessel_flight.service.realtime.heatmap.HeatmapLayer;
+import com.phamnam.tracking_vessel_flight.service.realtime.heatmap.HeatmapTileService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/v1/heatmap")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", exposedHeaders = "ETag")
+public class HeatmapController {
+
+    private final HeatmapTileService heatmapTileService;
+
+    // ============================================================================
+    // TILE ENDPOINTS
+    // ============================================================================
+
+    /**
+     * Density tile for layer aircraft | vessel | all, format png | bin.
+     * Without from/to the tile shows live density; If-None-Match against the
+     * returned ETag is answered with 304 by Spring's ResponseEntity handling.
+     */
+    @GetMapping("/{layer}/{z}/{x}/{y}.{format}")
+    public ResponseEntity<byte[]> getTile(
+            @PathVariable String layer,
+            @PathVariable int z,
+            @PathVariable int x,
+            @PathVariable int y,
+            @PathVariable String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            HeatmapTileService.RenderedTile tile = heatmapTileService.getTile(HeatmapLayer.fromPath(layer), z, x, y,
+                    HeatmapTileService.Format.fromExtension(format), from, to);
+
+            return ResponseEntity.ok()
+                    .eTag(tile.etag())
+                    .cacheControl(CacheControl.maxAge(tile.maxAgeSeconds(), TimeUnit.SECONDS).cachePublic())
+                    .contentType(tile.contentType())
+                    .body(tile.body());
+        } catch (IllegalArgumentException e) {
+            log.debug("Rejected heatmap tile request {}/{}/{}/{}: {}", layer, z, x, y, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error rendering heatmap tile {}/{}/{}/{}", layer, z, x, y, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/statistics")
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        try {
+            return ResponseEntity.ok(heatmapTileService.getStatistics());
+        } catch (Exception e) {
+            log.error("Error getting heatmap statistics", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
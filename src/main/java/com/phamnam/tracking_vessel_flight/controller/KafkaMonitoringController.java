@@ -2,6 +2,11 @@ package com.phamnam.tracking_vessel_flight.controller;
 
 import com.phamnam.tracking_vessel_flight.service.kafka.KafkaMonitoringService;
 import com.phamnam.tracking_vessel_flight.service.kafka.DeadLetterQueueService;
+import com.phamnam.tracking_vessel_flight.service.kafka.TrackingKafkaProducer;
+import com.phamnam.tracking_vessel_flight.service.kafka.codec.BinarySchemaCodec;
+import com.phamnam.tracking_vessel_flight.service.kafka.codec.KafkaSchema;
+import com.phamnam.tracking_vessel_flight.config.KafkaConfig;
+import com.phamnam.tracking_vessel_flight.service.realtime.KafkaStreamsFusionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -12,6 +17,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -27,6 +34,18 @@ public class KafkaMonitoringController {
     @Autowired
     private DeadLetterQueueService deadLetterQueueService;
 
+    @Autowired
+    private KafkaStreamsFusionService kafkaStreamsFusionService;
+
+    @Autowired
+    private BinarySchemaCodec binarySchemaCodec;
+
+    @Autowired
+    private KafkaConfig kafkaConfig;
+
+    @Autowired
+    private TrackingKafkaProducer trackingKafkaProducer;
+
     @GetMapping("/health")
     @Operation(summary = "Get Kafka system health summary", description = "Quick overview of Kafka system health and error status")
     public ResponseEntity<Map<String, Object>> getHealthSummary() {
@@ -161,6 +180,57 @@ public class KafkaMonitoringController {
         }
     }
 
+    @GetMapping("/streams/fusion")
+    @Operation(summary = "Get Kafka Streams fusion status", description = "State of the windowed fusion topology and its configuration")
+    public ResponseEntity<Map<String, Object>> getStreamsFusionStatus() {
+        try {
+            return ResponseEntity.ok(kafkaStreamsFusionService.getStreamsStatus());
+        } catch (Exception e) {
+            logger.error("Error getting Kafka Streams fusion status: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/producer/stats")
+    @Operation(summary = "Get Kafka producer publish statistics", description = "Per-topic message count, average serialized size and publish latency")
+    public ResponseEntity<Map<String, Object>> getProducerStatistics() {
+        try {
+            return ResponseEntity.ok(trackingKafkaProducer.getPublishStatistics());
+        } catch (Exception e) {
+            logger.error("Error getting Kafka producer statistics: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/codec/schemas")
+    @Operation(summary = "Get Kafka binary codec schemas", description = "Registered message schemas and the topics written in binary format")
+    public ResponseEntity<Map<String, Object>> getCodecSchemas() {
+        try {
+            List<Map<String, Object>> schemas = binarySchemaCodec.getRegistry().getSchemas().stream()
+                    .map(this::describeSchema)
+                    .toList();
+
+            Map<String, Object> codec = new LinkedHashMap<>();
+            codec.put("binaryEnabled", kafkaConfig.isBinaryCodecEnabled());
+            codec.put("binaryTopics", kafkaConfig.binaryCodecTopics());
+            codec.put("schemas", schemas);
+            return ResponseEntity.ok(codec);
+        } catch (Exception e) {
+            logger.error("Error getting Kafka codec schemas: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    private Map<String, Object> describeSchema(KafkaSchema schema) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("id", schema.getId());
+        description.put("name", schema.getName());
+        description.put("version", schema.getVersion());
+        description.put("javaType", schema.getJavaType());
+        description.put("fields", schema.getFields().size());
+        return description;
+    }
+
     /**
      * Determine overall system status based on individual component statuses
      */
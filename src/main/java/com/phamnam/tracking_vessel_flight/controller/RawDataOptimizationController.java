@@ -144,9 +144,14 @@ public class RawDataOptimizationController {
      * Trigger manual cleanup
      */
     @PostMapping("/retention/cleanup")
-    @Operation(summary = "Trigger manual cleanup", description = "Manually trigger the raw data cleanup process")
-    public ResponseEntity<MyApiResponse<Map<String, Object>>> triggerCleanup() {
+    @Operation(summary = "Trigger manual cleanup", description = "Manually trigger the raw data cleanup process; with dryRun=true, report the chunks and sizes that would be dropped instead")
+    public ResponseEntity<MyApiResponse<Map<String, Object>>> triggerCleanup(
+            @Parameter(description = "Only preview the cleanup") @RequestParam(defaultValue = "false") boolean dryRun) {
         try {
+            if (dryRun) {
+                return ResponseEntity.ok(MyApiResponse.success(retentionService.getCleanupPreview(),
+                        "Cleanup preview generated successfully"));
+            }
             long deletedRecords = retentionService.performCleanup();
             Map<String, Object> result = Map.of(
                     "deletedRecords", deletedRecords,
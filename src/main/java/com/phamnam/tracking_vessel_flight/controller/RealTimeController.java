@@ -3,7 +3,11 @@ package com.phamnam.tracking_vessel_flight.controller;
 import com.phamnam.tracking_vessel_flight.models.AlertRule;
 import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
 import com.phamnam.tracking_vessel_flight.service.realtime.*;
+import com.phamnam.tracking_vessel_flight.service.realtime.backpressure.SessionBackpressureManager;
 import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.ExternalApiService;
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.ExternalHttpClientPool;
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.SourceHealthRegistry;
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.polling.AdaptivePollScheduler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -24,6 +28,10 @@ public class RealTimeController {
     private final AlertRuleEngine alertRuleEngine;
     private final AnalyticsDashboardService analyticsService;
     private final WebSocketService webSocketService;
+    private final ExternalHttpClientPool httpClientPool;
+    private final AdaptivePollScheduler adaptivePollScheduler;
+    private final SourceHealthRegistry sourceHealthRegistry;
+    private final SessionBackpressureManager sessionBackpressureManager;
 
     // ============================================================================
     // SYSTEM STATUS ENDPOINTS
@@ -70,6 +78,39 @@ public class RealTimeController {
         }
     }
 
+    @GetMapping("/sources/http")
+    public ResponseEntity<Map<String, Object>> getSourceHttpStatistics() {
+        try {
+            return ResponseEntity.ok(httpClientPool.getStatistics());
+        } catch (Exception e) {
+            log.error("Error getting source HTTP statistics", e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to retrieve source HTTP statistics"));
+        }
+    }
+
+    @GetMapping("/sources/polling")
+    public ResponseEntity<Map<String, Object>> getSourcePollingStatistics() {
+        try {
+            return ResponseEntity.ok(adaptivePollScheduler.getStatistics());
+        } catch (Exception e) {
+            log.error("Error getting source polling statistics", e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to retrieve source polling statistics"));
+        }
+    }
+
+    @GetMapping("/sources/health")
+    public ResponseEntity<Map<String, Object>> getSourceHealthStatistics() {
+        try {
+            return ResponseEntity.ok(sourceHealthRegistry.getStatistics());
+        } catch (Exception e) {
+            log.error("Error getting source health statistics", e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to retrieve source health statistics"));
+        }
+    }
+
     // ============================================================================
     // ANALYTICS ENDPOINTS
     // ============================================================================
@@ -294,6 +335,13 @@ public class RealTimeController {
         }
     }
 
+    @GetMapping("/websocket/sessions")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getWebSocketSessionQueues() {
+        // Per-session queue depth, conflated/dropped frames and bytes/s
+        return ResponseEntity.ok(sessionBackpressureManager.getStatistics());
+    }
+
     @PostMapping("/websocket/broadcast")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Map<String, Object>> broadcastMessage(
@@ -0,0 +1,35 @@
+package com.phamnam.tracking_vessel_flight.controller;
+
+import com.phamnam.tracking_vessel_flight.service.realtime.replay.ReplayService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/replay")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class ReplayController {
+
+    private final ReplayService replayService;
+
+    @GetMapping("/statistics")
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        try {
+            return ResponseEntity.ok(replayService.getStatistics());
+        } catch (Exception e) {
+            log.error("Error getting replay statistics", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{replayId}")
+    public ResponseEntity<Void> stopReplay(@PathVariable String replayId) {
+        replayService.stop(replayId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,77 @@
+package com.phamnam.tracking_vessel_flight.controller;
+
+import com.phamnam.tracking_vessel_flight.dto.request.ReplayControlRequest;
+import com.phamnam.tracking_vessel_flight.dto.request.ReplayRequest;
+import com.phamnam.tracking_vessel_flight.service.realtime.replay.ReplayService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Controller
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Replay WebSocket Controller", description = "WebSocket endpoints for multi-entity historical replay")
+public class ReplayWebSocketController {
+
+    private final ReplayService replayService;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    /**
+     * Start a replay; the acknowledgement names the topic carrying the frames
+     */
+    @Operation(summary = "Start replay", description = "Replay all aircraft/vessels in a bounding box over a past time window")
+    @MessageMapping("/replay/start")
+    public void startReplay(@Payload ReplayRequest request, SimpMessageHeaderAccessor headerAccessor) {
+        String sessionId = headerAccessor.getSessionId();
+        Map<String, Object> response = new HashMap<>();
+        response.put("type", "replay");
+        response.put("requestId", request.getRequestId());
+        try {
+            String replayId = replayService.start(sessionId, request);
+            response.put("status", "started");
+            response.put("replayId", replayId);
+            response.put("destination", ReplayService.DESTINATION_PREFIX + replayId);
+            response.put("statusDestination", ReplayService.DESTINATION_PREFIX + replayId + "/status");
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            log.warn("Rejected replay request from {}: {}", sessionId, e.getMessage());
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+        }
+        reply(sessionId, response);
+    }
+
+    /**
+     * Pause, resume, change speed, seek or stop a running replay
+     */
+    @Operation(summary = "Control replay", description = "pause | resume | speed | seek | stop")
+    @MessageMapping("/replay/control")
+    public void controlReplay(@Payload ReplayControlRequest request, SimpMessageHeaderAccessor headerAccessor) {
+        String sessionId = headerAccessor.getSessionId();
+        try {
+            replayService.control(sessionId, request);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected replay control from {}: {}", sessionId, e.getMessage());
+            Map<String, Object> response = new HashMap<>();
+            response.put("type", "replay");
+            response.put("replayId", request.getReplayId());
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            reply(sessionId, response);
+        }
+    }
+
+    private void reply(String sessionId, Map<String, Object> response) {
+        messagingTemplate.convertAndSendToUser(sessionId, "/queue/replay", response);
+        // Direct topic as fallback, as for subscription confirmations
+        messagingTemplate.convertAndSend("/topic/subscriptions/" + sessionId, response);
+    }
+}
@@ -1,8 +1,13 @@
 package com.phamnam.tracking_vessel_flight.controller;
 
 import com.phamnam.tracking_vessel_flight.service.realtime.MultiSourceExternalApiService;
+import com.phamnam.tracking_vessel_flight.service.realtime.cluster.ClusterFanoutService;
+import com.phamnam.tracking_vessel_flight.service.realtime.pipeline.FreshnessMonitor;
+import com.phamnam.tracking_vessel_flight.service.realtime.subscription.SubscriptionRegistry;
+import com.phamnam.tracking_vessel_flight.config.ConnectionPermitPostProcessor;
 import com.phamnam.tracking_vessel_flight.config.TimescaleConfig;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,6 +25,10 @@ public class SystemHealthController {
     private final RedisTemplate<String, Object> redisTemplate;
     private final MultiSourceExternalApiService multiSourceExternalApiService;
     private final TimescaleConfig timescaleConfig;
+    private final FreshnessMonitor freshnessMonitor;
+    private final ObjectProvider<ConnectionPermitPostProcessor> connectionPermits;
+    private final ClusterFanoutService clusterFanoutService;
+    private final SubscriptionRegistry subscriptionRegistry;
 
     @GetMapping("/configuration")
     public ResponseEntity<Map<String, Object>> getConfigurationStatus() {
@@ -37,4 +46,42 @@ public class SystemHealthController {
 
         return ResponseEntity.ok(config);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/pipeline")
+    public ResponseEntity<Map<String, Object>> getPipelineStatus() {
+        Map<String, Object> pipeline = new HashMap<>();
+
+        // Queue depth and latency per collection stage
+        pipeline.put("stages", multiSourceExternalApiService.getPipelineStatistics());
+
+        // Provider timestamp to WebSocket delivery
+        pipeline.put("freshness", freshnessMonitor.getStatistics());
+
+        return ResponseEntity.ok(pipeline);
+    }
+
+    @GetMapping("/threads")
+    public ResponseEntity<Map<String, Object>> getThreadStatus() {
+        Map<String, Object> threads = new HashMap<>();
+
+        // Connection permits only exist in virtual-thread mode
+        ConnectionPermitPostProcessor permits = connectionPermits.getIfAvailable();
+        threads.put("virtualThreads", permits != null);
+        threads.put("connectionPermits", permits != null ? permits.getStatistics() : Map.of("enabled", false));
+        threads.put("platformThreads", java.lang.management.ManagementFactory.getThreadMXBean().getThreadCount());
+
+        return ResponseEntity.ok(threads);
+    }
+
+    @GetMapping("/websocket-cluster")
+    public ResponseEntity<Map<String, Object>> getWebSocketClusterStatus() {
+        // Cross-node fan-out counters and this node's subscriptions
+        return ResponseEntity.ok(clusterFanoutService.getStatistics());
+    }
+
+    @GetMapping("/websocket-subscriptions")
+    public ResponseEntity<Map<String, Object>> getWebSocketSubscriptionStatus() {
+        // Area/entity subscriptions of this node and their Redis replication
+        return ResponseEntity.ok(subscriptionRegistry.getStatistics());
+    }
+}
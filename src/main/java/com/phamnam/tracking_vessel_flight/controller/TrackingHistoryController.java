@@ -5,7 +5,10 @@ import com.phamnam.tracking_vessel_flight.dto.request.FlightTrackingRequest;
 import com.phamnam.tracking_vessel_flight.dto.request.ShipTrackingRequest;
 import com.phamnam.tracking_vessel_flight.models.FlightTracking;
 import com.phamnam.tracking_vessel_flight.models.ShipTracking;
+import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
 import com.phamnam.tracking_vessel_flight.service.realtime.RealTimeDataQueryService;
+import com.phamnam.tracking_vessel_flight.service.realtime.history.TrackHistoryStreamService;
+import com.phamnam.tracking_vessel_flight.service.realtime.history.TrackHistoryWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -16,6 +19,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -29,6 +33,7 @@ import java.util.Map;
 public class TrackingHistoryController {
 
     private final RealTimeDataQueryService queryService;
+    private final TrackHistoryStreamService historyStreamService;
 
     // ============================================================================
     // FLIGHT HISTORY ENDPOINTS
@@ -97,6 +102,30 @@ public class TrackingHistoryController {
         }
     }
 
+    @Operation(summary = "Stream flight tracking history", description = "Streams positions as NDJSON or compact binary with keyset pagination; maxPoints downsamples the whole range (LTTB) instead of paging")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Streaming flight history"),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters")
+    })
+    @GetMapping("/flight/{hexident}/stream")
+    public ResponseEntity<StreamingResponseBody> streamFlightHistory(
+            @Parameter(description = "Aircraft hexident (ICAO24 code)", example = "A12345") @PathVariable String hexident,
+
+            @Parameter(description = "Start time for history query", example = "2024-12-01T00:00:00") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fromTime,
+
+            @Parameter(description = "End time for history query", example = "2024-12-01T23:59:59") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime toTime,
+
+            @Parameter(description = "nextCursor from the previous page") @RequestParam(required = false) String cursor,
+
+            @Parameter(description = "Page size") @RequestParam(required = false) Integer limit,
+
+            @Parameter(description = "Downsample to at most this many points") @RequestParam(required = false) Integer maxPoints,
+
+            @Parameter(description = "ndjson or binary", example = "ndjson") @RequestParam(defaultValue = "ndjson") String format) {
+
+        return streamHistory(EntityType.AIRCRAFT, hexident, fromTime, toTime, cursor, limit, maxPoints, format);
+    }
+
     // ============================================================================
     // SHIP HISTORY ENDPOINTS
     // ============================================================================
@@ -164,6 +193,49 @@ public class TrackingHistoryController {
         }
     }
 
+    @Operation(summary = "Stream ship tracking history", description = "Streams positions as NDJSON or compact binary with keyset pagination; maxPoints downsamples the whole range (LTTB) instead of paging")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Streaming ship history"),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters")
+    })
+    @GetMapping("/ship/{mmsi}/stream")
+    public ResponseEntity<StreamingResponseBody> streamShipHistory(
+            @Parameter(description = "Ship MMSI (Maritime Mobile Service Identity)", example = "574123456") @PathVariable String mmsi,
+
+            @Parameter(description = "Start time for history query", example = "2024-12-01T00:00:00") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fromTime,
+
+            @Parameter(description = "End time for history query", example = "2024-12-01T23:59:59") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime toTime,
+
+            @Parameter(description = "nextCursor from the previous page") @RequestParam(required = false) String cursor,
+
+            @Parameter(description = "Page size") @RequestParam(required = false) Integer limit,
+
+            @Parameter(description = "Downsample to at most this many points") @RequestParam(required = false) Integer maxPoints,
+
+            @Parameter(description = "ndjson or binary", example = "ndjson") @RequestParam(defaultValue = "ndjson") String format) {
+
+        return streamHistory(EntityType.VESSEL, mmsi, fromTime, toTime, cursor, limit, maxPoints, format);
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamHistory(EntityType type, String entityId,
+            LocalDateTime fromTime, LocalDateTime toTime, String cursor, Integer limit, Integer maxPoints,
+            String format) {
+        try {
+            TrackHistoryStreamService.HistoryQuery query = historyStreamService.prepare(type, entityId, fromTime,
+                    toTime, cursor, limit, maxPoints);
+            TrackHistoryWriter.Format outputFormat = TrackHistoryWriter.Format.fromParameter(format);
+
+            StreamingResponseBody body = out -> historyStreamService.stream(query, outputFormat, out);
+            return ResponseEntity.ok()
+                    .contentType(outputFormat.getMediaType())
+                    .body(body);
+
+        } catch (IllegalArgumentException e) {
+            log.debug("Rejected history stream request for {}: {}", entityId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     // ============================================================================
     // GEOGRAPHIC QUERY ENDPOINTS
     // ============================================================================
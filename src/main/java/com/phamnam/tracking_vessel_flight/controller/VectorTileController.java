@@ -0,0 +1,88 @@
+package com.phamnam.tracking_vessel_flight.controller;
+
+import com.phamnam.tracking_vessel_flight.service.realtime.vectortile.VectorTileService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/v1/tiles")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", exposedHeaders = "ETag")
+public class VectorTileController {
+
+    private static final MediaType MVT = MediaType.parseMediaType(VectorTileService.CONTENT_TYPE);
+
+    private final VectorTileService vectorTileService;
+
+    // ============================================================================
+    // TILE ENDPOINTS
+    // ============================================================================
+
+    /**
+     * Current aircraft and vessel positions (layers "aircraft" and "vessels")
+     */
+    @GetMapping("/live/{z}/{x}/{y}.mvt")
+    public ResponseEntity<byte[]> getLiveTile(@PathVariable int z, @PathVariable int x, @PathVariable int y) {
+        try {
+            return toResponse(vectorTileService.getLiveTile(z, x, y));
+        } catch (IllegalArgumentException e) {
+            log.debug("Rejected live tile request {}/{}/{}: {}", z, x, y, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error rendering live tile {}/{}/{}", z, x, y, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Track lines for layer aircraft | vessel | all between from and to
+     * (default: the last hour)
+     */
+    @GetMapping("/tracks/{layer}/{z}/{x}/{y}.mvt")
+    public ResponseEntity<byte[]> getTrackTile(
+            @PathVariable String layer,
+            @PathVariable int z,
+            @PathVariable int x,
+            @PathVariable int y,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            return toResponse(vectorTileService.getTrackTile(layer, z, x, y, from, to));
+        } catch (IllegalArgumentException e) {
+            log.debug("Rejected track tile request {}/{}/{}/{}: {}", layer, z, x, y, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error rendering track tile {}/{}/{}/{}", layer, z, x, y, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/statistics")
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        try {
+            return ResponseEntity.ok(vectorTileService.getStatistics());
+        } catch (Exception e) {
+            log.error("Error getting vector tile statistics", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // If-None-Match against the ETag is answered with 304 by Spring's ResponseEntity handling
+    private static ResponseEntity<byte[]> toResponse(VectorTileService.VectorTile tile) {
+        return ResponseEntity.ok()
+                .eTag(tile.etag())
+                .cacheControl(CacheControl.maxAge(tile.maxAgeSeconds(), TimeUnit.SECONDS).cachePublic())
+                .contentType(MVT)
+                .body(tile.body());
+    }
+}
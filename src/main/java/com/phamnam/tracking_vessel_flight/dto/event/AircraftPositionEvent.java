@@ -0,0 +1,33 @@
+package com.phamnam.tracking_vessel_flight.dto.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Aircraft position event published to the processed-aircraft topic.
+ *
+ * Flat and immutable on purpose: only scalar fields, no JPA entities, so
+ * serialization never walks Flight -> Aircraft or triggers lazy loading.
+ * Wire layout: {@code kafka-schemas/aircraft-position-event.v1.json}.
+ */
+public record AircraftPositionEvent(
+        String hexident,
+        String callsign,
+        String registration,
+        String aircraftType,
+        String flightNumber,
+        Double latitude,
+        Double longitude,
+        Integer altitude,
+        Integer groundSpeed,
+        Integer track,
+        Integer verticalRate,
+        String squawk,
+        Boolean onGround,
+        Boolean emergency,
+        String origin,
+        String destination,
+        String source,
+        Double dataQuality,
+        LocalDateTime timestamp,
+        Long flightId) {
+}
@@ -0,0 +1,31 @@
+package com.phamnam.tracking_vessel_flight.dto.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vessel position event published to the processed-vessel topic.
+ *
+ * Flat and immutable on purpose: only scalar fields, no JPA entities, so
+ * serialization never walks Voyage -> Ship or triggers lazy loading.
+ * Wire layout: {@code kafka-schemas/vessel-position-event.v1.json}.
+ */
+public record VesselPositionEvent(
+        String mmsi,
+        String imo,
+        String vesselName,
+        String callsign,
+        String vesselType,
+        Double latitude,
+        Double longitude,
+        Double speed,
+        Double course,
+        Double heading,
+        String navigationStatus,
+        Double draught,
+        String destination,
+        String eta,
+        String source,
+        Double dataQuality,
+        LocalDateTime timestamp,
+        Long voyageId) {
+}
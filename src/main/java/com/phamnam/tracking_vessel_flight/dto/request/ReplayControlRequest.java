@@ -0,0 +1,19 @@
+package com.phamnam.tracking_vessel_flight.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ReplayControlRequest {
+    private String replayId;
+    private String action; // pause | resume | speed | seek | stop
+    private Double speed; // For action=speed
+    private LocalDateTime time; // For action=seek
+}
@@ -0,0 +1,28 @@
+package com.phamnam.tracking_vessel_flight.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ReplayRequest {
+    private String requestId; // Echoed back in the start acknowledgement
+
+    private Double minLatitude;
+    private Double maxLatitude;
+    private Double minLongitude;
+    private Double maxLongitude;
+
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+
+    private Double speed; // Replayed seconds per wall-clock second (1 = real time)
+    private Integer stepSeconds; // Bucket width of the snapshots
+    private String layers; // aircraft | vessel | all
+}
@@ -0,0 +1,17 @@
+package com.phamnam.tracking_vessel_flight.dto.response;
+
+import java.time.LocalDateTime;
+
+/**
+ * One position of a streamed track history. Altitude is only set for
+ * aircraft; heading is the ground track / course over ground when known.
+ */
+public record TrackHistoryPoint(
+        long id,
+        LocalDateTime timestamp,
+        double latitude,
+        double longitude,
+        Double altitude,
+        Double speed,
+        Double heading) {
+}
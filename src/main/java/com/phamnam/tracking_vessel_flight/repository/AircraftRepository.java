@@ -3,8 +3,12 @@ package com.phamnam.tracking_vessel_flight.repository;
 import com.phamnam.tracking_vessel_flight.models.Aircraft;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AircraftRepository extends JpaRepository<Aircraft, Long> {
     Optional<Aircraft> findByHexident(String hexident);
+
+    List<Aircraft> findByHexidentIn(Collection<String> hexidents);
 }
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -49,4 +50,16 @@ public interface FlightRepository extends JpaRepository<Flight, Long> {
     // Alternative method using native Spring Data method naming
     Optional<Flight> findFirstByAircraftAndCallsignAndStatusOrderByCreatedAtDesc(
             Aircraft aircraft, String callsign, Flight.FlightStatus status);
+
+    // Bulk lookup of still-active flights for a batch of aircraft
+    @Query("""
+                SELECT f FROM Flight f
+                WHERE f.aircraft.id IN :aircraftIds
+                AND f.arrivalTime IS NULL
+                AND f.createdAt > :createdAfter
+                ORDER BY f.createdAt DESC
+            """)
+    List<Flight> findActiveByAircraftIdIn(
+            @Param("aircraftIds") Collection<Long> aircraftIds,
+            @Param("createdAfter") LocalDateTime createdAfter);
 }
\ No newline at end of file
@@ -4,12 +4,11 @@ import com.phamnam.tracking_vessel_flight.models.FlightTracking;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,29 +25,40 @@ public interface FlightTrackingRepository extends JpaRepository<FlightTracking,
 
         Page<FlightTracking> findByFlight_id(Long flightId, Pageable pageable);
 
+        // Flight history bounded by the flight's lifetime: hexident is the
+        // compression segmentby column and timestamp the partitioning column,
+        // so only the flight's chunks and segments are read and decompressed
+        @Query("SELECT ft FROM FlightTracking ft WHERE ft.hexident = :hexident AND ft.timestamp BETWEEN :start AND :end AND ft.flight.id = :flightId ORDER BY ft.timestamp ASC")
+        List<FlightTracking> findByFlightIdWithinWindow(@Param("flightId") Long flightId,
+                        @Param("hexident") String hexident, @Param("start") LocalDateTime start,
+                        @Param("end") LocalDateTime end);
+
+        @Query("SELECT ft FROM FlightTracking ft WHERE ft.hexident = :hexident AND ft.timestamp BETWEEN :start AND :end AND ft.flight.id = :flightId")
+        Page<FlightTracking> findByFlightIdWithinWindow(@Param("flightId") Long flightId,
+                        @Param("hexident") String hexident, @Param("start") LocalDateTime start,
+                        @Param("end") LocalDateTime end, Pageable pageable);
+
+        // Last-position lookups on the ingest path only look at recent
+        // (uncompressed) chunks
         @Query(value = """
                             SELECT * FROM flight_tracking t
-                            WHERE t.flight_id = :flightId
+                            WHERE t.flight_id = :flightId AND t.timestamp >= :since
                             ORDER BY t.update_time DESC, t.tracking_id DESC
                             LIMIT 1
                         """, nativeQuery = true)
-        Optional<FlightTracking> findLastTrackingByFlightId(@Param("flightId") Long flightId);
-
-        @Query("SELECT ft FROM FlightTracking ft WHERE ft.updateTime < :date")
-        List<FlightTracking> findByUpdateTimeBefore(LocalDateTime date);
+        Optional<FlightTracking> findLastTrackingByFlightId(@Param("flightId") Long flightId,
+                        @Param("since") LocalDateTime since);
 
-        @Modifying
-        @Transactional
-        @Query("DELETE FROM FlightTracking ft WHERE ft.updateTime < :date")
-        void deleteByUpdateTimeBefore(LocalDateTime date);
-
-        // Methods for IntelligentStorageService
-        @Query("SELECT ft FROM FlightTracking ft WHERE ft.hexident = :hexident AND ft.lastSeen BETWEEN :fromTime AND :toTime ORDER BY ft.lastSeen ASC")
-        List<FlightTracking> findByHexIdentAndLastSeenBetweenOrderByLastSeenAsc(@Param("hexident") String hexident,
-                        @Param("fromTime") LocalDateTime fromTime, @Param("toTime") LocalDateTime toTime);
+        @Query(value = """
+                            SELECT DISTINCT ON (t.flight_id) * FROM flight_tracking t
+                            WHERE t.flight_id IN (:flightIds) AND t.timestamp >= :since
+                            ORDER BY t.flight_id, t.update_time DESC, t.tracking_id DESC
+                        """, nativeQuery = true)
+        List<FlightTracking> findLastTrackingByFlightIdIn(@Param("flightIds") Collection<Long> flightIds,
+                        @Param("since") LocalDateTime since);
 
-        @Query("SELECT COUNT(ft) FROM FlightTracking ft WHERE ft.lastSeen > :afterTime")
-        long countByLastSeenAfter(@Param("afterTime") LocalDateTime afterTime);
+        @Query("SELECT COUNT(ft) FROM FlightTracking ft WHERE ft.timestamp > :afterTime")
+        long countByTimestampAfter(@Param("afterTime") LocalDateTime afterTime);
 
         // Additional methods for data comparison
         @Query("SELECT ft FROM FlightTracking ft WHERE ft.hexident = :hexident AND ft.timestamp BETWEEN :start AND :end ORDER BY ft.timestamp ASC")
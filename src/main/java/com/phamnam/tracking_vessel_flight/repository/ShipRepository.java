@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.Optional;
 
 public interface ShipRepository extends JpaRepository<Ship, Long> {
@@ -16,6 +17,11 @@ public interface ShipRepository extends JpaRepository<Ship, Long> {
      */
     Optional<Ship> findByMmsi(String mmsi);
 
+    /**
+     * Find ships for a batch of MMSIs
+     */
+    java.util.List<Ship> findByMmsiIn(Collection<String> mmsis);
+
     /**
      * Find ship by IMO number
      */
@@ -20,14 +20,26 @@ public interface ShipTrackingRepository extends JpaRepository<ShipTracking, Long
             """)
     Optional<ShipTracking> findLastTrackingByVoyageId(@Param("voyageId") Long voyageId);
 
+    // Ingest-path lookup bounded to recent (uncompressed) chunks and the
+    // ship's mmsi segment
     @Query("""
                 SELECT t FROM ShipTracking t
                 JOIN t.voyage v
-                WHERE v.ship.id = :shipId
+                WHERE v.ship.id = :shipId AND t.mmsi = :mmsi AND t.timestamp >= :since
                 ORDER BY t.timestamp DESC
                 LIMIT 1
             """)
-    Optional<ShipTracking> findLastTrackingByShipId(@Param("shipId") Long shipId);
+    Optional<ShipTracking> findLastTrackingByShipId(@Param("shipId") Long shipId, @Param("mmsi") String mmsi,
+            @Param("since") java.time.LocalDateTime since);
+
+    // Bulk variant of findLastTrackingByShipId for the batch listener
+    @Query(value = """
+                SELECT DISTINCT ON (t.mmsi) * FROM ship_tracking t
+                WHERE t.mmsi IN (:mmsis) AND t.timestamp >= :since
+                ORDER BY t.mmsi, t.timestamp DESC
+            """, nativeQuery = true)
+    List<ShipTracking> findLastTrackingByMmsiIn(@Param("mmsis") java.util.Collection<String> mmsis,
+            @Param("since") java.time.LocalDateTime since);
 
     @Query("""
                 SELECT t FROM ShipTracking t
@@ -36,6 +48,16 @@ public interface ShipTrackingRepository extends JpaRepository<ShipTracking, Long
             """)
     List<ShipTracking> findByVoyageIdOrderByTimestampDesc(@Param("voyageId") Long voyageId);
 
+    // Voyage history on the compression segmentby (mmsi) and partitioning
+    // (timestamp) columns, so chunks before the voyage are excluded
+    @Query("""
+                SELECT t FROM ShipTracking t
+                WHERE t.mmsi = :mmsi AND t.timestamp >= :since AND t.voyage.id = :voyageId
+                ORDER BY t.timestamp DESC
+            """)
+    List<ShipTracking> findByVoyageIdSince(@Param("voyageId") Long voyageId, @Param("mmsi") String mmsi,
+            @Param("since") java.time.LocalDateTime since);
+
     // Methods for IntelligentStorageService
     @Query("SELECT st FROM ShipTracking st WHERE st.mmsi = :mmsi AND st.timestamp BETWEEN :fromTime AND :toTime ORDER BY st.timestamp ASC")
     List<ShipTracking> findByMmsiAndTimestampBetweenOrderByTimestampAsc(@Param("mmsi") String mmsi,
@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,5 +21,13 @@ public interface VoyageRepository extends JpaRepository<Voyage, Long> {
             """)
     Optional<Voyage> findLatestVoyageByShipId(@Param("shipId") Long shipId);
 
+    // Bulk variant of findLatestVoyageByShipId: one row per ship
+    @Query(value = """
+                SELECT DISTINCT ON (v.ship_id) * FROM voyage v
+                WHERE v.ship_id IN (:shipIds)
+                ORDER BY v.ship_id, v.departure_time DESC
+            """, nativeQuery = true)
+    List<Voyage> findLatestVoyageByShipIdIn(@Param("shipIds") Collection<Long> shipIds);
+
     List<Voyage> findByShipIdOrderByDepartureTimeDesc(Long shipId);
 }
@@ -1,30 +1,52 @@
 package com.phamnam.tracking_vessel_flight.service;
 
+import com.phamnam.tracking_vessel_flight.models.Flight;
 import com.phamnam.tracking_vessel_flight.models.FlightTracking;
 import com.phamnam.tracking_vessel_flight.models.ShipTracking;
+import com.phamnam.tracking_vessel_flight.models.Voyage;
 import com.phamnam.tracking_vessel_flight.repository.FlightTrackingRepository;
+import com.phamnam.tracking_vessel_flight.service.archive.ArchiveSchema;
+import com.phamnam.tracking_vessel_flight.service.archive.ColumnarArchiveStore;
+import com.phamnam.tracking_vessel_flight.service.realtime.CompressionPolicyService;
 import com.phamnam.tracking_vessel_flight.service.rest.interfaces.ColdStorageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Cold storage on top of the columnar archive files: whole days older than
+ * the warm-storage TTL are moved out of flight_tracking / ship_tracking one
+ * day at a time, and history queries read the archive files back with
+ * partition and min/max pruning.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ColdStorageServiceImpl implements ColdStorageService {
 
-    private final JdbcTemplate jdbcTemplate;
+    private static final List<String> FLIGHT_COLUMNS = List.of("tracking_id", "timestamp", "hexident", "flight_id",
+            "callsign", "latitude", "longitude", "altitude", "ground_speed", "vertical_speed", "track", "heading",
+            "squawk", "on_ground", "emergency", "data_source", "update_time");
+
+    private static final List<String> VESSEL_COLUMNS = List.of("id", "timestamp", "mmsi", "voyage_id", "latitude",
+            "longitude", "speed_over_ground", "course_over_ground", "heading", "navigation_status", "draught",
+            "destination", "data_source", "update_time");
+
+    private final ColumnarArchiveStore archiveStore;
     private final FlightTrackingRepository flightTrackingRepository;
+    private final CompressionPolicyService compressionPolicyService;
 
     @Value("${tracking.data.warm-storage.ttl-days:30}")
     private int warmStorageTtlDays;
@@ -33,142 +55,193 @@ public class ColdStorageServiceImpl implements ColdStorageService {
     private int hotStorageTtlHours;
 
     @Override
-    @Transactional
     public void archiveFlightTrackingData(List<FlightTracking> trackingList) {
         if (trackingList == null || trackingList.isEmpty()) {
             return;
         }
-
-        List<Object[]> batchArgs = new ArrayList<>();
-
-        for (FlightTracking tracking : trackingList) {
-            Object[] args = new Object[] {
-                    tracking.getTrackingId(),
-                    tracking.getFlight() != null ? tracking.getFlight().getId() : null,
-                    tracking.getCallsign(),
-                    tracking.getAltitude(),
-                    tracking.getAltitudeType(),
-                    tracking.getTargetAlt(),
-                    tracking.getSpeed(),
-                    tracking.getSpeedType(),
-                    tracking.getVerticalSpeed(),
-                    tracking.getSquawk(),
-                    tracking.getDistance(),
-                    tracking.getBearing(),
-                    tracking.getUnixTime(),
-                    tracking.getUpdateTime(),
-                    tracking.getLocation().getX(),
-                    tracking.getLocation().getY(),
-                    tracking.getLandingUnixTimes(),
-                    tracking.getLandingTimes(),
-                    tracking.getCreatedAt(),
-                    tracking.getUpdatedAt(),
-                    tracking.getLocation()
-            };
-            batchArgs.add(args);
-        }
-
-        String sql = "INSERT INTO flight_tracking_archive (" +
-                "tracking_id, flight_id, callsign, altitude, altitude_type, target_alt, " +
-                "speed, speed_type, vertical_speed, squawk, distance, bearing, " +
-                "unix_time, update_time, longitude, latitude, landing_unix_times, " +
-                "landing_times, created_at, updated_at, location) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-        jdbcTemplate.batchUpdate(sql, batchArgs);
-        log.info("Archived {} flight tracking records to cold storage", trackingList.size());
+        // Rows are written ordered by entity then time, like the scheduled export
+        Map<LocalDate, List<FlightTracking>> days = groupByDay(trackingList, FlightTracking::getTimestamp,
+                Comparator.comparing(FlightTracking::getHexident, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(FlightTracking::getTimestamp));
+        days.forEach((day, rows) -> archiveStore.writeDay(ArchiveSchema.AIRCRAFT, day, sink -> {
+            for (FlightTracking tracking : rows) {
+                sink.append(new Object[] {
+                        tracking.getTrackingId(),
+                        tracking.getTimestamp(),
+                        tracking.getHexident(),
+                        tracking.getFlight() != null ? tracking.getFlight().getId() : null,
+                        tracking.getCallsign(),
+                        tracking.getLatitude(),
+                        tracking.getLongitude(),
+                        tracking.getAltitude(),
+                        tracking.getSpeed(),
+                        tracking.getVerticalSpeed(),
+                        tracking.getTrack(),
+                        tracking.getHeading(),
+                        tracking.getSquawk(),
+                        tracking.getOnGround(),
+                        tracking.getEmergency(),
+                        tracking.getDataSource(),
+                        tracking.getUpdateTime()
+                });
+            }
+        }));
+        log.info("Archived {} flight tracking records to cold storage ({} days)", trackingList.size(), days.size());
     }
 
     @Override
-    @Transactional
     public void archiveVesselTrackingData(List<ShipTracking> trackingList) {
-        // Triển khai tương tự như archiveFlightTrackingData
+        if (trackingList == null || trackingList.isEmpty()) {
+            return;
+        }
+        Map<LocalDate, List<ShipTracking>> days = groupByDay(trackingList, ShipTracking::getTimestamp,
+                Comparator.comparing(ShipTracking::getMmsi, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(ShipTracking::getTimestamp));
+        days.forEach((day, rows) -> archiveStore.writeDay(ArchiveSchema.VESSEL, day, sink -> {
+            for (ShipTracking tracking : rows) {
+                Voyage voyage = tracking.getVoyage();
+                sink.append(new Object[] {
+                        tracking.getId(),
+                        tracking.getTimestamp(),
+                        tracking.getMmsi(),
+                        voyage != null ? voyage.getId() : null,
+                        voyage != null && voyage.getShip() != null ? voyage.getShip().getId() : null,
+                        tracking.getLatitude(),
+                        tracking.getLongitude(),
+                        tracking.getSpeed(),
+                        tracking.getCourse(),
+                        tracking.getHeading(),
+                        tracking.getNavigationStatus(),
+                        tracking.getDraught(),
+                        tracking.getDestination(),
+                        tracking.getDataSource(),
+                        tracking.getUpdateTime()
+                });
+            }
+        }));
+        log.info("Archived {} vessel tracking records to cold storage ({} days)", trackingList.size(), days.size());
     }
 
     @Override
     public List<FlightTracking> queryFlightTrackingHistory(Long flightId, LocalDateTime startTime,
             LocalDateTime endTime) {
-        String sql = "SELECT * FROM flight_tracking_archive " +
-                "WHERE flight_id = ? AND update_time BETWEEN ? AND ? " +
-                "ORDER BY update_time ASC";
-
-        return jdbcTemplate.query(sql,
-                (rs, rowNum) -> {
-                    FlightTracking tracking = new FlightTracking();
-                    tracking.setTrackingId(rs.getLong("tracking_id"));
-                    // Ánh xạ các trường còn lại từ ResultSet sang FlightTracking
-                    // ...
-                    return tracking;
-                },
-                flightId, Timestamp.valueOf(startTime), Timestamp.valueOf(endTime));
+        List<FlightTracking> result = new ArrayList<>();
+        archiveStore.scan(ArchiveSchema.AIRCRAFT, startTime, endTime, "flight_id", flightId, FLIGHT_COLUMNS,
+                row -> result.add(toFlightTracking(row)));
+        result.sort(Comparator.comparing(FlightTracking::getTimestamp));
+        return result;
     }
 
     @Override
     public List<ShipTracking> queryVesselTrackingHistory(Long vesselId, LocalDateTime startTime,
             LocalDateTime endTime) {
-        // Triển khai tương tự như queryFlightTrackingHistory
-        return new ArrayList<>();
+        List<ShipTracking> result = new ArrayList<>();
+        archiveStore.scan(ArchiveSchema.VESSEL, startTime, endTime, "ship_id", vesselId, VESSEL_COLUMNS,
+                row -> result.add(toShipTracking(row)));
+        result.sort(Comparator.comparing(ShipTracking::getTimestamp));
+        return result;
     }
 
     @Override
-    @Transactional
     @Scheduled(cron = "0 0 1 * * ?") // Chạy lúc 1:00 AM mỗi ngày
     public void performDataArchiving() {
+        archiveBefore(LocalDateTime.now().minusDays(warmStorageTtlDays));
+    }
 
-        LocalDateTime cutoffDate = LocalDateTime.now().minusDays(warmStorageTtlDays);
-
-        log.info("Starting scheduled data archiving process for data older than {}", cutoffDate);
-
-        // 1. Lấy dữ liệu cần chuyển sang cold storage
-        List<FlightTracking> oldFlightTrackings = flightTrackingRepository.findByUpdateTimeBefore(cutoffDate);
-
-        if (oldFlightTrackings.isEmpty()) {
-            log.info("No flight tracking data to archive");
-            return;
+    @Override
+    public Map<String, Object> archiveBefore(LocalDateTime cutoff) {
+        // Only whole days are archived, so each day lands in one partition
+        LocalDate cutoffDay = cutoff.toLocalDate();
+        log.info("Starting data archiving process for days before {}", cutoffDay);
+
+        Map<String, Object> result = new HashMap<>();
+        for (ArchiveSchema schema : ArchiveSchema.values()) {
+            Map<String, Object> summary = archiveStore.archiveBefore(schema, cutoffDay);
+            result.put(schema.directory(), summary);
+            log.info("Archived {} {} rows ({} days, {} KB) in {}ms", summary.get("rows"), schema.directory(),
+                    summary.get("days"), (Long) summary.get("bytes") / 1024, summary.get("elapsedMs"));
         }
+        return result;
+    }
 
-        log.info("Found {} flight tracking records to archive", oldFlightTrackings.size());
-
-        try {
-            // 2. Lưu vào cold storage
-            archiveFlightTrackingData(oldFlightTrackings);
-
-            // 3. Xóa khỏi warm storage (TimescaleDB)
-            flightTrackingRepository.deleteByUpdateTimeBefore(cutoffDate);
+    @Override
+    public Map<String, Object> getArchiveStatistics() {
+        return archiveStore.getStatistics();
+    }
 
-            log.info("Successfully archived and cleaned up {} flight tracking records", oldFlightTrackings.size());
-        } catch (Exception e) {
-            log.error("Error archiving flight tracking data: {}", e.getMessage(), e);
+    private static <T> Map<LocalDate, List<T>> groupByDay(List<T> rows, Function<T, LocalDateTime> time,
+            Comparator<T> order) {
+        Map<LocalDate, List<T>> days = new TreeMap<>();
+        for (T row : rows) {
+            if (time.apply(row) != null) {
+                days.computeIfAbsent(time.apply(row).toLocalDate(), day -> new ArrayList<>()).add(row);
+            }
         }
+        days.values().forEach(day -> day.sort(order));
+        return days;
+    }
+
+    // Rows are projected in FLIGHT_COLUMNS / VESSEL_COLUMNS order
+
+    private static FlightTracking toFlightTracking(Object[] row) {
+        Long flightId = (Long) row[3];
+        return FlightTracking.builder()
+                .trackingId((Long) row[0])
+                .timestamp((LocalDateTime) row[1])
+                .hexident((String) row[2])
+                .flight(flightId != null ? Flight.builder().id(flightId).build() : null)
+                .callsign((String) row[4])
+                .latitude((Double) row[5])
+                .longitude((Double) row[6])
+                .altitude((Float) row[7])
+                .speed((Float) row[8])
+                .verticalSpeed((Float) row[9])
+                .track((Float) row[10])
+                .heading((Float) row[11])
+                .squawk((Integer) row[12])
+                .onGround((Boolean) row[13])
+                .emergency((Boolean) row[14])
+                .dataSource((String) row[15])
+                .updateTime((LocalDateTime) row[16])
+                .build();
+    }
 
-        // Làm tương tự cho vessel tracking nếu cần
+    private static ShipTracking toShipTracking(Object[] row) {
+        Long voyageId = (Long) row[3];
+        return ShipTracking.builder()
+                .id((Long) row[0])
+                .timestamp((LocalDateTime) row[1])
+                .mmsi((String) row[2])
+                .voyage(voyageId != null ? Voyage.builder().id(voyageId).build() : null)
+                .latitude((Double) row[4])
+                .longitude((Double) row[5])
+                .speed((Double) row[6])
+                .course((Double) row[7])
+                .heading((Double) row[8])
+                .navigationStatus((String) row[9])
+                .draught((Double) row[10])
+                .destination((String) row[11])
+                .dataSource((String) row[12])
+                .updateTime((LocalDateTime) row[13])
+                .build();
     }
 
     /**
      * Move data from hot storage to warm storage based on TTL
-     * Hot storage: Fast access (Redis/memory) for recent data
-     * Warm storage: Database for older but still accessible data
+     * Hot storage: uncompressed recent chunks, written by ingestion
+     * Warm storage: natively compressed chunks, segmented by hexident / mmsi
+     *
+     * The compression policy does the move in the background; this run
+     * compresses whatever the policy has not reached yet
      */
     @Override
-    @Transactional
     @Scheduled(cron = "0 */30 * * * ?") // Every 30 minutes
     public void moveFromHotToWarmStorage() {
-        LocalDateTime hotStorageCutoff = LocalDateTime.now().minusHours(hotStorageTtlHours);
-
-        log.info("🔄 Moving data from hot to warm storage for data older than {} hours", hotStorageTtlHours);
+        log.info("🔄 Moving data from hot to warm storage for chunks older than {} hours", hotStorageTtlHours);
 
         try {
-            // Move flight tracking data that's older than hot storage TTL
-            List<FlightTracking> hotFlightData = flightTrackingRepository
-                    .findByUpdateTimeBefore(hotStorageCutoff);
-
-            if (!hotFlightData.isEmpty()) {
-                log.info("📦 Moving {} flight tracking records from hot to warm storage", hotFlightData.size());
-                // This could involve moving from Redis to Database or reorganizing storage
-                // tiers
-                // For now, we just log as the data is already in TimescaleDB
-            }
-
+            Map<String, Object> result = compressionPolicyService.compressEligibleChunks();
+            log.info("📦 Hot to warm storage run finished: {}", result);
         } catch (Exception e) {
             log.error("❌ Error moving data from hot to warm storage: {}", e.getMessage(), e);
         }
@@ -180,15 +253,13 @@ public class ColdStorageServiceImpl implements ColdStorageService {
     public Map<String, Object> getHotStorageStats() {
         LocalDateTime hotStorageCutoff = LocalDateTime.now().minusHours(hotStorageTtlHours);
 
-        long hotDataCount = flightTrackingRepository.countByLastSeenAfter(hotStorageCutoff);
-        long warmDataCount = flightTrackingRepository
-                .findByUpdateTimeBefore(hotStorageCutoff.minusDays(warmStorageTtlDays)).size();
+        long hotDataCount = flightTrackingRepository.countByTimestampAfter(hotStorageCutoff);
 
         return Map.of(
                 "hotStorageTtlHours", hotStorageTtlHours,
                 "warmStorageTtlDays", warmStorageTtlDays,
                 "hotDataCount", hotDataCount,
-                "warmDataCount", warmDataCount,
+                "warmStorage", compressionPolicyService.getStatistics(),
                 "cutoffTime", hotStorageCutoff);
     }
-}
\ No newline at end of file
+}
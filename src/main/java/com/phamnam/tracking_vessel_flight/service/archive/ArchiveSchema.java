@@ -0,0 +1,168 @@
+package com.phamnam.tracking_vessel_flight.service.archive;
+
+import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Column layout of the cold-storage archive files, one per tracking table.
+ *
+ * Rows are exported ordered by entity then time, so each row group covers a
+ * narrow entity range and its min/max statistics prune entity lookups.
+ * Columns are append-only: readers match columns by name, so a column can
+ * be added at the end without rewriting older files.
+ */
+public enum ArchiveSchema {
+
+    AIRCRAFT("aircraft", "flight_tracking", "hexident", "timestamp", List.of(
+            new Column("tracking_id", ColumnType.LONG),
+            new Column("timestamp", ColumnType.TIMESTAMP),
+            new Column("hexident", ColumnType.STRING),
+            new Column("flight_id", ColumnType.LONG),
+            new Column("callsign", ColumnType.STRING),
+            new Column("latitude", ColumnType.DOUBLE),
+            new Column("longitude", ColumnType.DOUBLE),
+            new Column("altitude", ColumnType.FLOAT),
+            new Column("ground_speed", ColumnType.FLOAT),
+            new Column("vertical_speed", ColumnType.FLOAT),
+            new Column("track", ColumnType.FLOAT),
+            new Column("heading", ColumnType.FLOAT),
+            new Column("squawk", ColumnType.INT),
+            new Column("on_ground", ColumnType.BOOLEAN),
+            new Column("emergency", ColumnType.BOOLEAN),
+            new Column("data_source", ColumnType.STRING),
+            new Column("update_time", ColumnType.TIMESTAMP)),
+            "SELECT tracking_id, timestamp, hexident, flight_id, callsign, latitude, longitude, altitude,"
+                    + " ground_speed, vertical_speed, track, heading, squawk, on_ground, emergency, data_source,"
+                    + " update_time FROM flight_tracking WHERE timestamp >= ? AND timestamp < ?"
+                    + " ORDER BY hexident, timestamp"),
+
+    VESSEL("vessel", "ship_tracking", "mmsi", "timestamp", List.of(
+            new Column("id", ColumnType.LONG),
+            new Column("timestamp", ColumnType.TIMESTAMP),
+            new Column("mmsi", ColumnType.STRING),
+            new Column("voyage_id", ColumnType.LONG),
+            new Column("ship_id", ColumnType.LONG),
+            new Column("latitude", ColumnType.DOUBLE),
+            new Column("longitude", ColumnType.DOUBLE),
+            new Column("speed_over_ground", ColumnType.DOUBLE),
+            new Column("course_over_ground", ColumnType.DOUBLE),
+            new Column("heading", ColumnType.DOUBLE),
+            new Column("navigation_status", ColumnType.STRING),
+            new Column("draught", ColumnType.DOUBLE),
+            new Column("destination", ColumnType.STRING),
+            new Column("data_source", ColumnType.STRING),
+            new Column("update_time", ColumnType.TIMESTAMP)),
+            "SELECT st.id, st.timestamp, st.mmsi, st.voyage_id, v.ship_id, st.latitude, st.longitude,"
+                    + " st.speed_over_ground, st.course_over_ground, st.heading, st.navigation_status, st.draught,"
+                    + " st.destination, st.data_source, st.update_time"
+                    + " FROM ship_tracking st LEFT JOIN voyage v ON v.id = st.voyage_id"
+                    + " WHERE st.timestamp >= ? AND st.timestamp < ? ORDER BY st.mmsi, st.timestamp");
+
+    public enum ColumnType {
+        LONG, INT, TIMESTAMP, DOUBLE, FLOAT, BOOLEAN, STRING;
+
+        Object read(ResultSet rs, int index) throws SQLException {
+            Object value = switch (this) {
+                case LONG -> rs.getLong(index);
+                case INT -> rs.getInt(index);
+                case TIMESTAMP -> rs.getObject(index, LocalDateTime.class);
+                case DOUBLE -> rs.getDouble(index);
+                case FLOAT -> rs.getFloat(index);
+                case BOOLEAN -> rs.getBoolean(index);
+                case STRING -> rs.getString(index);
+            };
+            return rs.wasNull() ? null : value;
+        }
+    }
+
+    public record Column(String name, ColumnType type) {
+    }
+
+    private final String directory;
+    private final String table;
+    private final String entityColumn;
+    private final String timeColumn;
+    private final List<Column> columns;
+    private final String selectSql;
+
+    ArchiveSchema(String directory, String table, String entityColumn, String timeColumn, List<Column> columns,
+            String selectSql) {
+        this.directory = directory;
+        this.table = table;
+        this.entityColumn = entityColumn;
+        this.timeColumn = timeColumn;
+        this.columns = columns;
+        this.selectSql = selectSql;
+    }
+
+    public static ArchiveSchema of(EntityType type) {
+        return type.isAirborne() ? AIRCRAFT : VESSEL;
+    }
+
+    public String directory() {
+        return directory;
+    }
+
+    public String table() {
+        return table;
+    }
+
+    public String entityColumn() {
+        return entityColumn;
+    }
+
+    public String timeColumn() {
+        return timeColumn;
+    }
+
+    public List<Column> columns() {
+        return columns;
+    }
+
+    public int columnIndex(String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).name().equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown " + directory + " archive column: " + name);
+    }
+
+    String selectSql() {
+        return selectSql;
+    }
+
+    /**
+     * Deletes at most the bound LIMIT of rows in [from, to), keyed by the id
+     * column; the repeated time range keeps both scans to the day's chunks.
+     * Parameters: from, to, from, to, limit.
+     */
+    String deleteBatchSql() {
+        String id = columns.get(0).name();
+        String range = timeColumn + " >= ? AND " + timeColumn + " < ?";
+        return "DELETE FROM " + table + " WHERE " + range + " AND " + id + " IN (SELECT " + id + " FROM " + table
+                + " WHERE " + range + " LIMIT ?)";
+    }
+
+    /**
+     * Row count and highest id per day in [from, to), to compare with what
+     * was exported. Parameters: from, to.
+     */
+    String daySummarySql() {
+        String id = columns.get(0).name();
+        return "SELECT CAST(" + timeColumn + " AS date) AS day, COUNT(*) AS row_count, MAX(" + id
+                + ") AS max_id FROM " + table + " WHERE " + timeColumn + " >= ? AND " + timeColumn + " < ? GROUP BY 1";
+    }
+
+    Object[] readRow(ResultSet rs) throws SQLException {
+        Object[] row = new Object[columns.size()];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = columns.get(i).type().read(rs, i + 1);
+        }
+        return row;
+    }
+}
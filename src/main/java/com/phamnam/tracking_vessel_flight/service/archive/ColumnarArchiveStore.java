@@ -0,0 +1,633 @@
+package com.phamnam.tracking_vessel_flight.service.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Columnar Archive Store
+ *
+ * Cold storage for tracking rows older than the warm-storage TTL, as
+ * compressed columnar files on local disk:
+ *
+ * <pre>
+ * {app.archive.directory}/{aircraft|vessel}/date=YYYY-MM-DD/part-{yyyyMMdd}-{runMillis}.tca
+ * </pre>
+ *
+ * Archiving streams one day at a time through a server-side cursor, in a
+ * read-only REPEATABLE READ transaction, into a temporary file and renames
+ * it into place. Memory is bounded by the cursor fetch size and one row
+ * group, whatever the backlog.
+ *
+ * Rows can still arrive for a day after its snapshot was taken, so before
+ * anything is removed the row count and highest id of every day in the run
+ * are compared with what was exported. A day that changed is exported again
+ * (its previous file is replaced); if days keep changing the run discards
+ * its files, removes nothing and the next run retries.
+ *
+ * Archived rows are then removed without one large row-level DELETE. On a
+ * hypertable, chunks holding only archived days are dropped with
+ * drop_chunks. Rows left in chunks that reach past the archived range, and
+ * all rows of a plain table, are deleted in batches of
+ * app.archive.delete-batch-size, each committed on its own. If removal
+ * fails after the rename, those days are archived again on the next run;
+ * scans drop the duplicates by row id.
+ *
+ * Scans prune by date directory, then by the time and filter-column min/max
+ * of each file and row group, and only decode the projected columns.
+ */
+@Component
+@Slf4j
+public class ColumnarArchiveStore {
+
+    private static final DateTimeFormatter PART_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate archiveTransaction;
+
+    @Value("${app.archive.directory:./data/archive}")
+    private String directory = "./data/archive";
+
+    @Value("${app.archive.row-group-size:65536}")
+    private int rowGroupSize = 65536;
+
+    @Value("${app.archive.fetch-size:5000}")
+    private int fetchSize = 5000;
+
+    @Value("${app.archive.delete-batch-size:10000}")
+    private int deleteBatchSize = 10000;
+
+    private final Map<Path, CachedFooter> footers = new ConcurrentHashMap<>();
+    private final AtomicLong daysArchived = new AtomicLong();
+    private final AtomicLong rowsArchived = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong archiveFailures = new AtomicLong();
+    private final AtomicLong chunksDropped = new AtomicLong();
+    private final AtomicLong rowsDeleted = new AtomicLong();
+    private final AtomicLong daysReexported = new AtomicLong();
+    private final AtomicLong scans = new AtomicLong();
+    private final AtomicLong filesScanned = new AtomicLong();
+    private final AtomicLong filesPruned = new AtomicLong();
+    private final AtomicLong rowGroupsScanned = new AtomicLong();
+    private final AtomicLong rowGroupsPruned = new AtomicLong();
+
+    @Autowired
+    public ColumnarArchiveStore(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        // One snapshot for the whole export of a day
+        this.archiveTransaction = new TransactionTemplate(transactionManager);
+        this.archiveTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.archiveTransaction.setReadOnly(true);
+    }
+
+    ColumnarArchiveStore(Path directory, int rowGroupSize) {
+        this.jdbcTemplate = null;
+        this.archiveTransaction = null;
+        this.directory = directory.toString();
+        this.rowGroupSize = rowGroupSize;
+    }
+
+    /**
+     * One archive file, or an empty day when path is null
+     */
+    public record ArchivedFile(Path path, long rows, long bytes) {
+    }
+
+    /**
+     * A day written to an archive file, with the highest row id it holds
+     */
+    private record ExportedDay(LocalDate day, ArchivedFile file, long maxId) {
+    }
+
+    private static final int EXPORT_ROUNDS = 3;
+
+    @FunctionalInterface
+    public interface RowSource {
+        void writeTo(RowSink sink) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface RowSink {
+        void append(Object[] row) throws IOException;
+    }
+
+    private record CachedFooter(long modified, long size, ColumnarFile.Footer footer) {
+    }
+
+    // ============================================================================
+    // ARCHIVING
+    // ============================================================================
+
+    /**
+     * Archive every whole day before cutoffDay, oldest first. Stops at the
+     * first failed day so the next run retries it.
+     */
+    public Map<String, Object> archiveBefore(ArchiveSchema schema, LocalDate cutoffDay) {
+        long startTime = System.currentTimeMillis();
+        LocalDateTime cutoff = cutoffDay.atStartOfDay();
+        int days = 0;
+        long rows = 0;
+        long bytes = 0;
+        String error = null;
+
+        TreeMap<LocalDate, ExportedDay> exported = new TreeMap<>();
+        LocalDate day = firstDay(schema, LocalDateTime.of(1970, 1, 1, 0, 0), cutoff);
+        while (day != null && day.isBefore(cutoffDay)) {
+            try {
+                ExportedDay export = exportDay(schema, day);
+                if (export.file().path() != null) {
+                    exported.put(day, export);
+                }
+            } catch (RuntimeException e) {
+                archiveFailures.incrementAndGet();
+                error = day + ": " + e.getMessage();
+                log.error("❌ Failed to archive {} rows for {}: {}", schema.directory(), day, e.getMessage(), e);
+                break;
+            }
+            // Skip empty days instead of walking them one by one
+            day = firstDay(schema, day.plusDays(1).atStartOfDay(), cutoff);
+        }
+
+        if (!exported.isEmpty()) {
+            LocalDateTime from = exported.firstKey().atStartOfDay();
+            LocalDateTime to = exported.lastKey().plusDays(1).atStartOfDay();
+            try {
+                verifyExported(schema, exported, from, to);
+            } catch (RuntimeException e) {
+                // Rows stay in the database, so the files would only be duplicates next run
+                archiveFailures.incrementAndGet();
+                error = error != null ? error : "verify: " + e.getMessage();
+                log.error("❌ Not removing {} rows between {} and {}: {}", schema.directory(), from, to,
+                        e.getMessage(), e);
+                exported.values().forEach(export -> deleteQuietly(export.file().path()));
+                exported.clear();
+            }
+        }
+        if (!exported.isEmpty()) {
+            LocalDateTime from = exported.firstKey().atStartOfDay();
+            LocalDateTime to = exported.lastKey().plusDays(1).atStartOfDay();
+            try {
+                removeArchived(schema, from, to, isHypertable(schema));
+            } catch (RuntimeException e) {
+                archiveFailures.incrementAndGet();
+                error = error != null ? error : "cleanup: " + e.getMessage();
+                log.error("❌ Archived {} rows between {} and {} left in the database: {}", schema.directory(), from,
+                        to, e.getMessage(), e);
+            }
+        }
+        for (ExportedDay export : exported.values()) {
+            recordArchived(schema, export);
+            days++;
+            rows += export.file().rows();
+            bytes += export.file().bytes();
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("type", schema.directory());
+        result.put("cutoff", cutoff);
+        result.put("days", days);
+        result.put("rows", rows);
+        result.put("bytes", bytes);
+        result.put("elapsedMs", System.currentTimeMillis() - startTime);
+        if (error != null) {
+            result.put("error", error);
+        }
+        return result;
+    }
+
+    /**
+     * Move one day of rows from the database into an archive file
+     */
+    public ArchivedFile archiveDay(ArchiveSchema schema, LocalDate day) {
+        Map<LocalDate, ExportedDay> exported = new TreeMap<>();
+        ExportedDay export = exportDay(schema, day);
+        if (export.file().path() == null) {
+            return export.file();
+        }
+        exported.put(day, export);
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = from.plusDays(1);
+        verifyExported(schema, exported, from, to);
+        removeArchived(schema, from, to, isHypertable(schema));
+        export = exported.get(day);
+        recordArchived(schema, export);
+        return export.file();
+    }
+
+    private ExportedDay exportDay(ArchiveSchema schema, LocalDate day) {
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = from.plusDays(1);
+        long[] maxId = { 0 };
+        ArchivedFile file = archiveTransaction.execute(status -> writeDay(schema, day,
+                sink -> streamRows(schema, from, to, row -> {
+                    maxId[0] = Math.max(maxId[0], ((Number) row[0]).longValue());
+                    sink.append(row);
+                })));
+        return new ExportedDay(day, file, maxId[0]);
+    }
+
+    /**
+     * Compare every day in [from, to) with what was exported and export the
+     * days that changed since their snapshot again, replacing their files.
+     * Throws when days are still changing after a few rounds, so nothing is
+     * removed.
+     */
+    private void verifyExported(ArchiveSchema schema, Map<LocalDate, ExportedDay> exported, LocalDateTime from,
+            LocalDateTime to) {
+        for (int round = 1;; round++) {
+            Map<LocalDate, long[]> current = new HashMap<>();
+            jdbcTemplate.query(schema.daySummarySql(), (RowCallbackHandler) rs -> current.put(
+                    rs.getObject("day", LocalDate.class),
+                    new long[] { rs.getLong("row_count"), rs.getLong("max_id") }), from, to);
+
+            Set<LocalDate> changed = new TreeSet<>();
+            Set<LocalDate> days = new HashSet<>(current.keySet());
+            days.addAll(exported.keySet());
+            for (LocalDate day : days) {
+                ExportedDay export = exported.get(day);
+                long[] now = current.getOrDefault(day, new long[] { 0, 0 });
+                if (export == null ? now[0] > 0 : now[0] != export.file().rows() || now[1] != export.maxId()) {
+                    changed.add(day);
+                }
+            }
+            if (changed.isEmpty()) {
+                return;
+            }
+            if (round == EXPORT_ROUNDS) {
+                throw new IllegalStateException("rows still changing for " + changed);
+            }
+            for (LocalDate day : changed) {
+                log.warn("⚠️ {} rows for {} changed after export, archiving the day again", schema.directory(), day);
+                daysReexported.incrementAndGet();
+                ExportedDay export = exportDay(schema, day);
+                ExportedDay previous = export.file().path() != null ? exported.put(day, export)
+                        : exported.remove(day);
+                if (previous != null) {
+                    deleteQuietly(previous.file().path());
+                }
+            }
+        }
+    }
+
+    private void recordArchived(ArchiveSchema schema, ExportedDay export) {
+        ArchivedFile file = export.file();
+        daysArchived.incrementAndGet();
+        rowsArchived.addAndGet(file.rows());
+        log.info("🧊 Archived {} {} rows for {} into {} ({} KB)", file.rows(), schema.directory(), export.day(),
+                file.path().getFileName(), file.bytes() / 1024);
+    }
+
+    /**
+     * Remove archived rows in [from, to): whole chunks first on a
+     * hypertable, then whatever is left in batches
+     */
+    void removeArchived(ArchiveSchema schema, LocalDateTime from, LocalDateTime to, boolean hypertable) {
+        if (hypertable) {
+            dropArchivedChunks(schema, from, to);
+        }
+        deleteInBatches(schema, from, to);
+    }
+
+    /**
+     * Drop the chunks whose whole time range lies in [from, to); chunks
+     * reaching outside it are left alone
+     */
+    private void dropArchivedChunks(ArchiveSchema schema, LocalDateTime from, LocalDateTime to) {
+        List<String> dropped = jdbcTemplate.queryForList(
+                "SELECT drop_chunks(?::regclass, older_than => ?::timestamp, newer_than => ?::timestamp)",
+                String.class, schema.table(), to, from);
+        if (!dropped.isEmpty()) {
+            chunksDropped.addAndGet(dropped.size());
+            log.info("🗑️ Dropped {} archived {} chunks between {} and {}", dropped.size(), schema.table(), from, to);
+        }
+    }
+
+    /**
+     * Delete rows in [from, to) a batch at a time; outside a transaction each
+     * batch commits on its own, so WAL and dead tuples stay bounded per batch
+     */
+    private long deleteInBatches(ArchiveSchema schema, LocalDateTime from, LocalDateTime to) {
+        String sql = schema.deleteBatchSql();
+        long deleted = 0;
+        int batch;
+        do {
+            batch = jdbcTemplate.update(sql, from, to, from, to, deleteBatchSize);
+            deleted += batch;
+        } while (batch >= deleteBatchSize);
+        if (deleted > 0) {
+            rowsDeleted.addAndGet(deleted);
+            log.info("🗑️ Deleted {} archived {} rows between {} and {}", deleted, schema.table(), from, to);
+        }
+        return deleted;
+    }
+
+    private boolean isHypertable(ArchiveSchema schema) {
+        try {
+            Integer count = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM timescaledb_information.hypertables WHERE hypertable_name = ?",
+                    Integer.class, schema.table());
+            return count != null && count > 0;
+        } catch (RuntimeException e) {
+            // TimescaleDB not installed
+            return false;
+        }
+    }
+
+    /**
+     * Write rows of one day into a new archive file. The file only appears
+     * under its final name once complete and synced.
+     */
+    public ArchivedFile writeDay(ArchiveSchema schema, LocalDate day, RowSource source) {
+        Path partition = partition(schema, day);
+        Path target = partition.resolve("part-" + PART_DATE.format(day) + "-" + System.currentTimeMillis()
+                + ColumnarFile.EXTENSION);
+        Path temp = partition.resolve("." + target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(partition);
+            ColumnarFile.Writer writer;
+            try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+                writer = new ColumnarFile.Writer(schema, new BufferedOutputStream(file, 1 << 16), rowGroupSize);
+                try (writer) {
+                    source.writeTo(writer::append);
+                }
+                file.getFD().sync();
+            }
+            if (writer.rows() == 0) {
+                Files.delete(temp);
+                return new ArchivedFile(null, 0, 0);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            bytesWritten.addAndGet(writer.bytesWritten());
+            return new ArchivedFile(target, writer.rows(), writer.bytesWritten());
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new UncheckedIOException("Failed to write archive file " + target, e);
+        } catch (RuntimeException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+    }
+
+    private void streamRows(ArchiveSchema schema, LocalDateTime from, LocalDateTime to, RowSink sink) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(schema.selectSql(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            statement.setObject(1, from);
+            statement.setObject(2, to);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            try {
+                sink.append(schema.readRow(rs));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private LocalDate firstDay(ArchiveSchema schema, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime first = jdbcTemplate.queryForObject("SELECT min(" + schema.timeColumn() + ") FROM "
+                + schema.table() + " WHERE " + schema.timeColumn() + " >= ? AND " + schema.timeColumn() + " < ?",
+                LocalDateTime.class, from, to);
+        return first != null ? first.toLocalDate() : null;
+    }
+
+    // ============================================================================
+    // SCANNING
+    // ============================================================================
+
+    /**
+     * Stream archived rows with from <= time < to, optionally where
+     * filterColumn equals filterValue, projected to columns in that order.
+     * Rows come out partition by partition, each file ordered by entity and
+     * time. Returns the number of rows emitted.
+     */
+    public long scan(ArchiveSchema schema, LocalDateTime from, LocalDateTime to, String filterColumn,
+            Object filterValue, List<String> columns, Consumer<Object[]> sink) {
+        scans.incrementAndGet();
+        long fromMicros = ColumnarFile.toMicros(from);
+        long toMicros = ColumnarFile.toMicros(to);
+        Set<Object> seen = new HashSet<>();
+        long emitted = 0;
+
+        for (LocalDate day = from.toLocalDate(); day.atStartOfDay().isBefore(to); day = day.plusDays(1)) {
+            for (Path path : listFiles(partition(schema, day))) {
+                ColumnarFile.Footer footer = footer(path);
+                if (footer == null) {
+                    continue;
+                }
+                int idColumn = footer.columnIndex(schema.columns().get(0).name());
+                int timeColumn = footer.columnIndex(schema.timeColumn());
+                int filterIndex = filterColumn != null ? footer.columnIndex(filterColumn) : -1;
+                if (filterColumn != null && filterIndex < 0) {
+                    filesPruned.incrementAndGet();
+                    continue;
+                }
+                if (!overlaps(footer.min(timeColumn), footer.max(timeColumn), fromMicros, toMicros)
+                        || (filterIndex >= 0 && !contains(footer.min(filterIndex), footer.max(filterIndex),
+                                filterValue))) {
+                    filesPruned.incrementAndGet();
+                    continue;
+                }
+                filesScanned.incrementAndGet();
+                emitted += scanFile(path, footer, idColumn, timeColumn, filterIndex, filterValue, fromMicros,
+                        toMicros, columns, seen, sink);
+            }
+        }
+        return emitted;
+    }
+
+    private long scanFile(Path path, ColumnarFile.Footer footer, int idColumn, int timeColumn, int filterIndex,
+            Object filterValue, long fromMicros, long toMicros, List<String> columns, Set<Object> seen,
+            Consumer<Object[]> sink) {
+        // Projection: id, time, filter column, then the requested columns
+        int[] projection = new int[3 + columns.size()];
+        projection[0] = idColumn;
+        projection[1] = timeColumn;
+        projection[2] = filterIndex;
+        for (int i = 0; i < columns.size(); i++) {
+            projection[3 + i] = footer.columnIndex(columns.get(i));
+        }
+
+        long emitted = 0;
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(path)) {
+            List<ColumnarFile.RowGroup> groups = footer.rowGroups();
+            for (int g = 0; g < groups.size(); g++) {
+                ColumnarFile.RowGroup group = groups.get(g);
+                ColumnarFile.ColumnChunk time = group.chunks().get(timeColumn);
+                if (!overlaps(time.min(), time.max(), fromMicros, toMicros) || (filterIndex >= 0
+                        && !contains(group.chunks().get(filterIndex).min(), group.chunks().get(filterIndex).max(),
+                                filterValue))) {
+                    rowGroupsPruned.incrementAndGet();
+                    continue;
+                }
+                rowGroupsScanned.incrementAndGet();
+                Object[][] values = reader.readRowGroup(g, projection);
+                for (int row = 0; row < group.rowCount(); row++) {
+                    LocalDateTime timestamp = (LocalDateTime) values[1][row];
+                    if (timestamp == null) {
+                        continue;
+                    }
+                    long micros = ColumnarFile.toMicros(timestamp);
+                    if (micros < fromMicros || micros >= toMicros
+                            || (filterIndex >= 0 && !filterValue.equals(values[2][row]))
+                            || (values[0][row] != null && !seen.add(values[0][row]))) {
+                        continue;
+                    }
+                    Object[] projected = new Object[columns.size()];
+                    for (int i = 0; i < projected.length; i++) {
+                        projected[i] = values[3 + i][row];
+                    }
+                    sink.accept(projected);
+                    emitted++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archive file " + path, e);
+        }
+        return emitted;
+    }
+
+    private static boolean overlaps(Object min, Object max, long fromMicros, long toMicros) {
+        return min != null && (Long) max >= fromMicros && (Long) min < toMicros;
+    }
+
+    private static boolean contains(Object min, Object max, Object value) {
+        return min != null && ColumnarFile.compare(value, min) >= 0 && ColumnarFile.compare(value, max) <= 0;
+    }
+
+    // ============================================================================
+    // FILES
+    // ============================================================================
+
+    private Path partition(ArchiveSchema schema, LocalDate day) {
+        return Paths.get(directory, schema.directory(), "date=" + day);
+    }
+
+    private static List<Path> listFiles(Path partition) {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(partition, "part-*" + ColumnarFile.EXTENSION)) {
+            stream.forEach(files::add);
+        } catch (NoSuchFileException e) {
+            return files;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list archive partition " + partition, e);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    /**
+     * Footer of an archive file, cached until the file changes; null for
+     * files that are not readable archives
+     */
+    private ColumnarFile.Footer footer(Path path) {
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            long size = Files.size(path);
+            CachedFooter cached = footers.get(path);
+            if (cached == null || cached.modified() != modified || cached.size() != size) {
+                cached = new CachedFooter(modified, size, ColumnarFile.readFooter(path));
+                footers.put(path, cached);
+            }
+            return cached.footer();
+        } catch (IOException e) {
+            log.warn("⚠️ Skipping unreadable archive file {}: {}", path, e.getMessage());
+            footers.remove(path);
+            return null;
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("⚠️ Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    // ============================================================================
+    // STATISTICS
+    // ============================================================================
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("directory", Paths.get(directory).toAbsolutePath().toString());
+        stats.put("rowGroupSize", rowGroupSize);
+        for (ArchiveSchema schema : ArchiveSchema.values()) {
+            long files = 0;
+            long bytes = 0;
+            long rows = 0;
+            Path root = Paths.get(directory, schema.directory());
+            if (Files.isDirectory(root)) {
+                try (DirectoryStream<Path> partitions = Files.newDirectoryStream(root, "date=*")) {
+                    for (Path partition : partitions) {
+                        for (Path path : listFiles(partition)) {
+                            ColumnarFile.Footer footer = footer(path);
+                            if (footer != null) {
+                                files++;
+                                bytes += path.toFile().length();
+                                rows += footer.rows();
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    log.warn("⚠️ Could not list archive directory {}: {}", root, e.getMessage());
+                }
+            }
+            Map<String, Object> type = new HashMap<>();
+            type.put("files", files);
+            type.put("bytes", bytes);
+            type.put("rows", rows);
+            type.put("bytesPerRow", rows > 0 ? (double) bytes / rows : 0.0);
+            stats.put(schema.directory(), type);
+        }
+        stats.put("daysArchived", daysArchived.get());
+        stats.put("rowsArchived", rowsArchived.get());
+        stats.put("bytesWritten", bytesWritten.get());
+        stats.put("archiveFailures", archiveFailures.get());
+        stats.put("chunksDropped", chunksDropped.get());
+        stats.put("rowsDeleted", rowsDeleted.get());
+        stats.put("daysReexported", daysReexported.get());
+        stats.put("deleteBatchSize", deleteBatchSize);
+        stats.put("scans", scans.get());
+        stats.put("filesScanned", filesScanned.get());
+        stats.put("filesPruned", filesPruned.get());
+        stats.put("rowGroupsScanned", rowGroupsScanned.get());
+        stats.put("rowGroupsPruned", rowGroupsPruned.get());
+        return stats;
+    }
+}
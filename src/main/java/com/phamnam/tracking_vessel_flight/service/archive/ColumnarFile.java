@@ -0,0 +1,612 @@
+package com.phamnam.tracking_vessel_flight.service.archive;
+
+import com.phamnam.tracking_vessel_flight.service.archive.ArchiveSchema.Column;
+import com.phamnam.tracking_vessel_flight.service.archive.ArchiveSchema.ColumnType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Columnar archive file format ("TCA1")
+ *
+ * <pre>
+ * "TCA1" | column chunks ... | footer | footer length (int32) | "TCA1"
+ * </pre>
+ *
+ * Rows are written in row groups; within a group every column is one
+ * Deflate-compressed chunk:
+ * - Null bitmap (only when the chunk has nulls)
+ * - Integers and timestamps (epoch micros): zig-zag varint deltas
+ * - Doubles and floats: XOR with the previous value as a varint, so slowly
+ * changing positions shrink to a few bytes before compression
+ * - Strings: chunk-local dictionary plus varint indexes
+ * - Booleans: bitmap
+ *
+ * The footer lists the columns and, per row group and column, the chunk
+ * offset, length, null count and min/max, so readers can prune whole files
+ * and row groups and decode only the columns a query needs.
+ */
+final class ColumnarFile {
+
+    static final String EXTENSION = ".tca";
+
+    private static final byte[] MAGIC = "TCA1".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+
+    private ColumnarFile() {
+    }
+
+    record ColumnChunk(long offset, int length, int nullCount, Object min, Object max) {
+    }
+
+    record RowGroup(int rowCount, List<ColumnChunk> chunks) {
+    }
+
+    record Footer(String schema, List<Column> columns, List<RowGroup> rowGroups) {
+
+        long rows() {
+            long rows = 0;
+            for (RowGroup group : rowGroups) {
+                rows += group.rowCount();
+            }
+            return rows;
+        }
+
+        /**
+         * Index of the named column in this file, or -1 when the file was
+         * written before the column existed
+         */
+        int columnIndex(String name) {
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i).name().equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Object min(int column) {
+            Object min = null;
+            for (RowGroup group : rowGroups) {
+                Object value = group.chunks().get(column).min();
+                if (value != null && (min == null || compare(value, min) < 0)) {
+                    min = value;
+                }
+            }
+            return min;
+        }
+
+        Object max(int column) {
+            Object max = null;
+            for (RowGroup group : rowGroups) {
+                Object value = group.chunks().get(column).max();
+                if (value != null && (max == null || compare(value, max) > 0)) {
+                    max = value;
+                }
+            }
+            return max;
+        }
+    }
+
+    // ============================================================================
+    // WRITER
+    // ============================================================================
+
+    /**
+     * Buffers at most one row group, so memory stays bounded by rowGroupSize
+     * whatever the number of rows written
+     */
+    static final class Writer implements Closeable {
+        private final ArchiveSchema schema;
+        private final OutputStream out;
+        private final int rowGroupSize;
+        private final Object[][] buffer;
+        private final List<RowGroup> rowGroups = new ArrayList<>();
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        private int buffered;
+        private long position;
+        private long rows;
+
+        Writer(ArchiveSchema schema, OutputStream out, int rowGroupSize) throws IOException {
+            this.schema = schema;
+            this.out = out;
+            this.rowGroupSize = rowGroupSize;
+            this.buffer = new Object[schema.columns().size()][rowGroupSize];
+            write(MAGIC);
+        }
+
+        void append(Object[] row) throws IOException {
+            for (int column = 0; column < buffer.length; column++) {
+                buffer[column][buffered] = row[column];
+            }
+            buffered++;
+            rows++;
+            if (buffered == rowGroupSize) {
+                flushRowGroup();
+            }
+        }
+
+        long rows() {
+            return rows;
+        }
+
+        long bytesWritten() {
+            return position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flushRowGroup();
+                byte[] footer = encodeFooter();
+                write(footer);
+                write(ByteBuffer.allocate(4).putInt(footer.length).array());
+                write(MAGIC);
+                out.flush();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        private void flushRowGroup() throws IOException {
+            if (buffered == 0) {
+                return;
+            }
+            List<ColumnChunk> chunks = new ArrayList<>(buffer.length);
+            for (int column = 0; column < buffer.length; column++) {
+                ColumnType type = schema.columns().get(column).type();
+                Object[] values = buffer[column];
+                Object min = null;
+                Object max = null;
+                int nulls = 0;
+                for (int i = 0; i < buffered; i++) {
+                    Object value = normalize(type, values[i]);
+                    values[i] = value;
+                    if (value == null) {
+                        nulls++;
+                    } else if (type != ColumnType.BOOLEAN) {
+                        min = min == null || compare(value, min) < 0 ? value : min;
+                        max = max == null || compare(value, max) > 0 ? value : max;
+                    }
+                }
+                byte[] compressed = compress(encodeColumn(type, values, buffered, nulls));
+                chunks.add(new ColumnChunk(position, compressed.length, nulls, min, max));
+                write(compressed);
+                Arrays.fill(values, 0, buffered, null);
+            }
+            rowGroups.add(new RowGroup(buffered, chunks));
+            buffered = 0;
+        }
+
+        private byte[] compress(byte[] raw) {
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] block = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(block, 0, deflater.deflate(block));
+            }
+            return compressed.toByteArray();
+        }
+
+        private byte[] encodeFooter() {
+            ByteArrayOutputStream footer = new ByteArrayOutputStream();
+            writeVarint(footer, VERSION);
+            writeString(footer, schema.name());
+            writeVarint(footer, schema.columns().size());
+            for (Column column : schema.columns()) {
+                writeString(footer, column.name());
+                footer.write(column.type().ordinal());
+            }
+            writeVarint(footer, rowGroups.size());
+            for (RowGroup group : rowGroups) {
+                writeVarint(footer, group.rowCount());
+                for (int column = 0; column < group.chunks().size(); column++) {
+                    ColumnChunk chunk = group.chunks().get(column);
+                    ColumnType type = schema.columns().get(column).type();
+                    writeVarint(footer, chunk.offset());
+                    writeVarint(footer, chunk.length());
+                    writeVarint(footer, chunk.nullCount());
+                    boolean hasStats = chunk.min() != null;
+                    footer.write(hasStats ? 1 : 0);
+                    if (hasStats) {
+                        writeStat(footer, type, chunk.min());
+                        writeStat(footer, type, chunk.max());
+                    }
+                }
+            }
+            return footer.toByteArray();
+        }
+
+        private void write(byte[] bytes) throws IOException {
+            out.write(bytes);
+            position += bytes.length;
+        }
+    }
+
+    // ============================================================================
+    // READER
+    // ============================================================================
+
+    static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final Footer footer;
+        private final Inflater inflater = new Inflater();
+
+        Reader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                this.footer = readFooter(channel, path);
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        Footer footer() {
+            return footer;
+        }
+
+        /**
+         * Decode the given columns (file column indexes) of one row group;
+         * a -1 index yields a column of nulls
+         */
+        Object[][] readRowGroup(int rowGroup, int[] columns) throws IOException {
+            RowGroup group = footer.rowGroups().get(rowGroup);
+            Object[][] result = new Object[columns.length][];
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] < 0) {
+                    result[i] = new Object[group.rowCount()];
+                    continue;
+                }
+                ColumnChunk chunk = group.chunks().get(columns[i]);
+                ByteBuffer compressed = ByteBuffer.allocate(chunk.length());
+                long position = chunk.offset();
+                while (compressed.hasRemaining()) {
+                    int read = channel.read(compressed, position);
+                    if (read < 0) {
+                        throw new IOException("Truncated column chunk at " + chunk.offset());
+                    }
+                    position += read;
+                }
+                byte[] raw = inflate(compressed.array());
+                result[i] = decodeColumn(footer.columns().get(columns[i]).type(), ByteBuffer.wrap(raw),
+                        group.rowCount(), chunk.nullCount());
+            }
+            return result;
+        }
+
+        private byte[] inflate(byte[] compressed) throws IOException {
+            inflater.reset();
+            inflater.setInput(compressed);
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] block = new byte[8192];
+            try {
+                while (!inflater.finished()) {
+                    int inflated = inflater.inflate(block);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Corrupt column chunk");
+                    }
+                    raw.write(block, 0, inflated);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt column chunk", e);
+            }
+            return raw.toByteArray();
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            channel.close();
+        }
+    }
+
+    static Footer readFooter(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readFooter(channel, path);
+        }
+    }
+
+    private static Footer readFooter(FileChannel channel, Path path) throws IOException {
+        long size = channel.size();
+        if (size < MAGIC.length * 2 + 4) {
+            throw new IOException("Not an archive file: " + path);
+        }
+        ByteBuffer tail = ByteBuffer.allocate(4 + MAGIC.length);
+        channel.read(tail, size - tail.capacity());
+        tail.flip();
+        int footerLength = tail.getInt();
+        byte[] magic = new byte[MAGIC.length];
+        tail.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || footerLength <= 0 || footerLength > size) {
+            throw new IOException("Not an archive file: " + path);
+        }
+
+        ByteBuffer in = ByteBuffer.allocate(footerLength);
+        channel.read(in, size - tail.capacity() - footerLength);
+        in.flip();
+        int version = (int) readVarint(in);
+        if (version != VERSION) {
+            throw new IOException("Unsupported archive version " + version + ": " + path);
+        }
+        String schema = readString(in);
+        int columnCount = (int) readVarint(in);
+        List<Column> columns = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            String name = readString(in);
+            columns.add(new Column(name, ColumnType.values()[in.get()]));
+        }
+        int groupCount = (int) readVarint(in);
+        List<RowGroup> groups = new ArrayList<>(groupCount);
+        for (int g = 0; g < groupCount; g++) {
+            int rowCount = (int) readVarint(in);
+            List<ColumnChunk> chunks = new ArrayList<>(columnCount);
+            for (Column column : columns) {
+                long offset = readVarint(in);
+                int length = (int) readVarint(in);
+                int nulls = (int) readVarint(in);
+                boolean hasStats = in.get() == 1;
+                Object min = hasStats ? readStat(in, column.type()) : null;
+                Object max = hasStats ? readStat(in, column.type()) : null;
+                chunks.add(new ColumnChunk(offset, length, nulls, min, max));
+            }
+            groups.add(new RowGroup(rowCount, chunks));
+        }
+        return new Footer(schema, columns, groups);
+    }
+
+    // ============================================================================
+    // COLUMN ENCODING
+    // ============================================================================
+
+    // Timestamps are stored and compared as epoch micros
+    private static Object normalize(ColumnType type, Object value) {
+        if (value instanceof LocalDateTime time) {
+            return toMicros(time);
+        }
+        if (value instanceof Number number) {
+            return switch (type) {
+                case LONG, TIMESTAMP -> number.longValue();
+                case INT -> number.intValue();
+                case DOUBLE -> number.doubleValue();
+                case FLOAT -> number.floatValue();
+                default -> value;
+            };
+        }
+        return value;
+    }
+
+    private static byte[] encodeColumn(ColumnType type, Object[] values, int count, int nulls) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(count * 2);
+        if (nulls > 0) {
+            out.writeBytes(bitmap(values, count, value -> value != null));
+        }
+        switch (type) {
+            case LONG, TIMESTAMP, INT -> {
+                long previous = 0;
+                for (int i = 0; i < count; i++) {
+                    if (values[i] != null) {
+                        long value = ((Number) values[i]).longValue();
+                        writeVarint(out, zigZag(value - previous));
+                        previous = value;
+                    }
+                }
+            }
+            case DOUBLE -> {
+                long previous = 0;
+                for (int i = 0; i < count; i++) {
+                    if (values[i] != null) {
+                        long bits = Double.doubleToLongBits((Double) values[i]);
+                        writeVarint(out, bits ^ previous);
+                        previous = bits;
+                    }
+                }
+            }
+            case FLOAT -> {
+                int previous = 0;
+                for (int i = 0; i < count; i++) {
+                    if (values[i] != null) {
+                        int bits = Float.floatToIntBits((Float) values[i]);
+                        writeVarint(out, (bits ^ previous) & 0xFFFFFFFFL);
+                        previous = bits;
+                    }
+                }
+            }
+            case BOOLEAN -> out.writeBytes(bitmap(values, count, Boolean.TRUE::equals));
+            case STRING -> {
+                Map<String, Integer> dictionary = new HashMap<>();
+                ByteArrayOutputStream indexes = new ByteArrayOutputStream(count);
+                List<String> entries = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    if (values[i] != null) {
+                        writeVarint(indexes, dictionary.computeIfAbsent((String) values[i], value -> {
+                            entries.add(value);
+                            return entries.size() - 1;
+                        }));
+                    }
+                }
+                writeVarint(out, entries.size());
+                entries.forEach(entry -> writeString(out, entry));
+                out.writeBytes(indexes.toByteArray());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static Object[] decodeColumn(ColumnType type, ByteBuffer in, int count, int nulls) {
+        boolean[] present = new boolean[count];
+        if (nulls > 0) {
+            byte[] bitmap = new byte[(count + 7) / 8];
+            in.get(bitmap);
+            for (int i = 0; i < count; i++) {
+                present[i] = (bitmap[i >> 3] & (1 << (i & 7))) != 0;
+            }
+        } else {
+            Arrays.fill(present, true);
+        }
+
+        Object[] values = new Object[count];
+        switch (type) {
+            case LONG, TIMESTAMP, INT -> {
+                long previous = 0;
+                for (int i = 0; i < count; i++) {
+                    if (present[i]) {
+                        previous += unZigZag(readVarint(in));
+                        values[i] = type == ColumnType.LONG ? Long.valueOf(previous)
+                                : type == ColumnType.INT ? Integer.valueOf((int) previous)
+                                        : fromMicros(previous);
+                    }
+                }
+            }
+            case DOUBLE -> {
+                long previous = 0;
+                for (int i = 0; i < count; i++) {
+                    if (present[i]) {
+                        previous ^= readVarint(in);
+                        values[i] = Double.longBitsToDouble(previous);
+                    }
+                }
+            }
+            case FLOAT -> {
+                int previous = 0;
+                for (int i = 0; i < count; i++) {
+                    if (present[i]) {
+                        previous ^= (int) readVarint(in);
+                        values[i] = Float.intBitsToFloat(previous);
+                    }
+                }
+            }
+            case BOOLEAN -> {
+                byte[] bitmap = new byte[(count + 7) / 8];
+                in.get(bitmap);
+                for (int i = 0; i < count; i++) {
+                    if (present[i]) {
+                        values[i] = (bitmap[i >> 3] & (1 << (i & 7))) != 0;
+                    }
+                }
+            }
+            case STRING -> {
+                String[] dictionary = new String[(int) readVarint(in)];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = readString(in);
+                }
+                for (int i = 0; i < count; i++) {
+                    if (present[i]) {
+                        values[i] = dictionary[(int) readVarint(in)];
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    private static byte[] bitmap(Object[] values, int count, java.util.function.Predicate<Object> bit) {
+        byte[] bitmap = new byte[(count + 7) / 8];
+        for (int i = 0; i < count; i++) {
+            if (bit.test(values[i])) {
+                bitmap[i >> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+        return bitmap;
+    }
+
+    private static void writeStat(ByteArrayOutputStream out, ColumnType type, Object value) {
+        switch (type) {
+            case LONG, TIMESTAMP, INT -> writeVarint(out, zigZag(((Number) value).longValue()));
+            case DOUBLE, FLOAT -> {
+                long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+                for (int i = 7; i >= 0; i--) {
+                    out.write((int) (bits >>> (8 * i)) & 0xFF);
+                }
+            }
+            default -> writeString(out, (String) value);
+        }
+    }
+
+    private static Object readStat(ByteBuffer in, ColumnType type) {
+        return switch (type) {
+            case LONG, TIMESTAMP -> unZigZag(readVarint(in));
+            case INT -> (int) unZigZag(readVarint(in));
+            case DOUBLE -> in.getDouble();
+            case FLOAT -> (float) in.getDouble();
+            default -> readString(in);
+        };
+    }
+
+    // ============================================================================
+    // PRIMITIVES
+    // ============================================================================
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static int compare(Object a, Object b) {
+        return ((Comparable) a).compareTo(b);
+    }
+
+    static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[(int) readVarint(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
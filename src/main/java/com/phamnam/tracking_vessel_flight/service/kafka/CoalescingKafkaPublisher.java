@@ -0,0 +1,376 @@
+package com.phamnam.tracking_vessel_flight.service.kafka;
+
+import com.phamnam.tracking_vessel_flight.util.LatencyHistogram;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.BufferExhaustedException;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Coalescing Kafka Publisher
+ *
+ * Single send path for TrackingKafkaProducer:
+ * - Routes each topic to the producer profile built for it (position / raw /
+ * default), since batch.size, linger.ms and compression are producer settings
+ * - On position topics, keeps only the latest message per key inside a short
+ * window and flushes the survivors as one burst, so the producer fills
+ * whole batches instead of trickling single records
+ * - Records per-topic send latency histograms and buffer exhaustion events
+ *
+ * A superseded message's future completes with the result of the message
+ * that replaced it, so callers never wait on a send that will not happen.
+ * Raw topics are never coalesced: fusion needs every source record.
+ */
+@Service
+@Slf4j
+public class CoalescingKafkaPublisher {
+
+    private static final Set<String> REPORTED_PRODUCER_METRICS = Set.of(
+            "buffer-exhausted-total", "buffer-available-bytes", "batch-size-avg", "record-queue-time-avg",
+            "compression-rate-avg", "record-send-rate", "request-latency-avg");
+
+    private final KafkaTemplate<String, Object> defaultTemplate;
+    private final KafkaTemplate<String, Object> positionTemplate;
+    private final KafkaTemplate<String, Object> rawTemplate;
+
+    @Value("${app.kafka.producer.position.topics:}")
+    private String positionTopicsConfig;
+
+    @Value("${app.kafka.producer.raw.topics:}")
+    private String rawTopicsConfig;
+
+    @Value("${app.kafka.producer.coalesce.enabled:true}")
+    private boolean coalesceEnabled;
+
+    @Value("${app.kafka.producer.coalesce.window-ms:200}")
+    private long coalesceWindowMs;
+
+    // Defaults to the position topics when left empty
+    @Value("${app.kafka.producer.coalesce.topics:}")
+    private String coalesceTopicsConfig;
+
+    @Value("${app.kafka.producer.coalesce.max-pending:50000}")
+    private int maxPending;
+
+    private Set<String> positionTopics = Set.of();
+    private Set<String> rawTopics = Set.of();
+    private Set<String> coalesceTopics = Set.of();
+
+    // topic -> key -> latest pending message
+    private final Map<String, Map<String, PendingSend>> pendingByTopic = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Map<String, TopicStatistics> topicStatistics = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flushExecutor;
+    private volatile boolean running;
+
+    public CoalescingKafkaPublisher(
+            KafkaTemplate<String, Object> kafkaTemplate,
+            @Qualifier("positionKafkaTemplate") KafkaTemplate<String, Object> positionKafkaTemplate,
+            @Qualifier("rawKafkaTemplate") KafkaTemplate<String, Object> rawKafkaTemplate) {
+        this.defaultTemplate = kafkaTemplate;
+        this.positionTemplate = positionKafkaTemplate;
+        this.rawTemplate = rawKafkaTemplate;
+    }
+
+    @PostConstruct
+    public void start() {
+        positionTopics = parseTopics(positionTopicsConfig);
+        rawTopics = parseTopics(rawTopicsConfig);
+        Set<String> configuredCoalesceTopics = parseTopics(coalesceTopicsConfig);
+        coalesceTopics = configuredCoalesceTopics.isEmpty() ? positionTopics : configuredCoalesceTopics;
+
+        if (coalesceEnabled && !coalesceTopics.isEmpty()) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "kafka-coalesce-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flushExecutor.scheduleWithFixedDelay(this::flushSafely, coalesceWindowMs, coalesceWindowMs,
+                    TimeUnit.MILLISECONDS);
+            running = true;
+        }
+
+        log.info("🚀 Kafka publisher started - position topics: {}, raw topics: {}, coalescing: {} ({}ms window on {})",
+                positionTopics, rawTopics, running ? "enabled" : "disabled", coalesceWindowMs, coalesceTopics);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+            try {
+                flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Whatever is still buffered goes out before the producers close
+        int flushed = flush();
+        if (flushed > 0) {
+            log.info("🛑 Flushed {} coalesced Kafka messages on shutdown", flushed);
+        }
+    }
+
+    // ============================================================================
+    // SENDING
+    // ============================================================================
+
+    public CompletableFuture<SendResult<String, Object>> send(String topic, String key, Object data) {
+        if (running && key != null && coalesceTopics.contains(topic)) {
+            return enqueue(topic, key, data);
+        }
+        return sendNow(topic, key, data);
+    }
+
+    private CompletableFuture<SendResult<String, Object>> enqueue(String topic, String key, Object data) {
+        TopicStatistics statistics = statisticsFor(topic);
+        Map<String, PendingSend> pendingForTopic = pendingByTopic.computeIfAbsent(topic,
+                t -> new ConcurrentHashMap<>());
+        PendingSend pending = new PendingSend(data);
+        PendingSend previous;
+        if (pendingCount.get() >= maxPending) {
+            // Flush thread is falling behind; do not grow the buffer without bound.
+            // A key that is already waiting is still replaced, or the flush
+            // would later send its older value after this one.
+            previous = pendingForTopic.replace(key, pending);
+            if (previous == null) {
+                statistics.bypassed.incrementAndGet();
+                return sendNow(topic, key, data);
+            }
+        } else {
+            previous = pendingForTopic.put(key, pending);
+            if (previous == null) {
+                pendingCount.incrementAndGet();
+            }
+        }
+        if (previous != null) {
+            statistics.coalesced.incrementAndGet();
+            pending.future.whenComplete((result, exception) -> {
+                if (exception == null) {
+                    previous.future.complete(result);
+                } else {
+                    previous.future.completeExceptionally(exception);
+                }
+            });
+        }
+        if (!running) {
+            // stop() ran between the running check and the put; its final
+            // flush may have missed this message
+            flush();
+        }
+        return pending.future;
+    }
+
+    private CompletableFuture<SendResult<String, Object>> sendNow(String topic, String key, Object data) {
+        TopicStatistics statistics = statisticsFor(topic);
+        long sendStartNanos = System.nanoTime();
+        CompletableFuture<SendResult<String, Object>> future;
+        try {
+            future = templateFor(topic).send(topic, key, data);
+        } catch (Exception e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        future.whenComplete((result, exception) -> {
+            if (exception == null) {
+                statistics.recordSuccess(result.getRecordMetadata().serializedValueSize(),
+                        System.nanoTime() - sendStartNanos);
+            } else {
+                statistics.failures.incrementAndGet();
+                if (isBufferExhausted(exception)) {
+                    long events = statistics.bufferExhausted.incrementAndGet();
+                    log.warn("⚠️ Kafka producer buffer exhausted on topic {} ({} events so far)", topic, events);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Drain every pending message; returns the number of messages sent.
+     * Flushes are serialized so two of them (the scheduled one and the one
+     * on shutdown) never send the same key out of order.
+     */
+    public synchronized int flush() {
+        int sent = 0;
+        for (Map.Entry<String, Map<String, PendingSend>> topicEntry : pendingByTopic.entrySet()) {
+            String topic = topicEntry.getKey();
+            Map<String, PendingSend> pending = topicEntry.getValue();
+            for (Map.Entry<String, PendingSend> entry : pending.entrySet()) {
+                PendingSend pendingSend = entry.getValue();
+                // A newer message may have replaced this one since iteration started
+                if (!pending.remove(entry.getKey(), pendingSend)) {
+                    continue;
+                }
+                pendingCount.decrementAndGet();
+                sendNow(topic, entry.getKey(), pendingSend.data).whenComplete((result, exception) -> {
+                    if (exception == null) {
+                        pendingSend.future.complete(result);
+                    } else {
+                        pendingSend.future.completeExceptionally(exception);
+                    }
+                });
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("❌ Error flushing coalesced Kafka messages", e);
+        }
+    }
+
+    private KafkaTemplate<String, Object> templateFor(String topic) {
+        if (positionTopics.contains(topic)) {
+            return positionTemplate;
+        }
+        if (rawTopics.contains(topic)) {
+            return rawTemplate;
+        }
+        return defaultTemplate;
+    }
+
+    private String profileFor(String topic) {
+        if (positionTopics.contains(topic)) {
+            return "position";
+        }
+        return rawTopics.contains(topic) ? "raw" : "default";
+    }
+
+    private static boolean isBufferExhausted(Throwable exception) {
+        for (Throwable current = exception; current != null; current = current.getCause()) {
+            if (current instanceof BufferExhaustedException) {
+                return true;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> parseTopics(String topics) {
+        if (topics == null || topics.isBlank()) {
+            return Set.of();
+        }
+        return Arrays.stream(topics.split(","))
+                .map(String::trim)
+                .filter(topic -> !topic.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private TopicStatistics statisticsFor(String topic) {
+        return topicStatistics.computeIfAbsent(topic, t -> new TopicStatistics());
+    }
+
+    // ============================================================================
+    // STATISTICS
+    // ============================================================================
+
+    public Map<String, Object> getTopicStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        topicStatistics.forEach((topic, statistics) -> {
+            Map<String, Object> topicStats = statistics.toMap();
+            topicStats.put("profile", profileFor(topic));
+            topicStats.put("coalescing", running && coalesceTopics.contains(topic));
+            stats.put(topic, topicStats);
+        });
+        return stats;
+    }
+
+    public Map<String, Object> getPublisherStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("coalescingEnabled", running);
+        stats.put("coalesceWindowMs", coalesceWindowMs);
+        stats.put("pendingMessages", pendingCount.get());
+        stats.put("maxPending", maxPending);
+        stats.put("topics", getTopicStatistics());
+
+        Map<String, Object> producers = new LinkedHashMap<>();
+        producers.put("position", producerMetrics(positionTemplate));
+        producers.put("raw", producerMetrics(rawTemplate));
+        producers.put("default", producerMetrics(defaultTemplate));
+        stats.put("producers", producers);
+        return stats;
+    }
+
+    private Map<String, Object> producerMetrics(KafkaTemplate<String, Object> template) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<MetricName, ? extends Metric> entry : template.metrics().entrySet()) {
+                MetricName name = entry.getKey();
+                if ("producer-metrics".equals(name.group()) && REPORTED_PRODUCER_METRICS.contains(name.name())) {
+                    metrics.put(name.name(), entry.getValue().metricValue());
+                }
+            }
+        } catch (Exception e) {
+            metrics.put("error", e.getMessage());
+        }
+        return metrics;
+    }
+
+    private static final class PendingSend {
+        private final Object data;
+        private final CompletableFuture<SendResult<String, Object>> future = new CompletableFuture<>();
+
+        PendingSend(Object data) {
+            this.data = data;
+        }
+    }
+
+    private static final class TopicStatistics {
+        private final AtomicLong messages = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong valueBytes = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private final AtomicLong bypassed = new AtomicLong();
+        private final AtomicLong bufferExhausted = new AtomicLong();
+        private final LatencyHistogram sendLatency = new LatencyHistogram();
+
+        void recordSuccess(int serializedValueSize, long elapsedNanos) {
+            messages.incrementAndGet();
+            valueBytes.addAndGet(Math.max(serializedValueSize, 0));
+            sendLatency.record(elapsedNanos);
+        }
+
+        Map<String, Object> toMap() {
+            long count = messages.get();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("messages", count);
+            stats.put("failures", failures.get());
+            stats.put("coalesced", coalesced.get());
+            stats.put("bypassed", bypassed.get());
+            stats.put("bufferExhausted", bufferExhausted.get());
+            stats.put("avgValueBytes", count > 0 ? (double) valueBytes.get() / count : 0.0);
+            stats.put("sendLatency", sendLatency.toMap());
+            return stats;
+        }
+    }
+}
@@ -6,8 +6,9 @@ import com.phamnam.tracking_vessel_flight.dto.request.AircraftTrackingRequest;
 import com.phamnam.tracking_vessel_flight.dto.request.ShipTrackingRequest;
 import com.phamnam.tracking_vessel_flight.dto.ShipTrackingRequestDTO;
 import com.phamnam.tracking_vessel_flight.dto.FlightTrackingRequestDTO;
+import com.phamnam.tracking_vessel_flight.dto.event.AircraftPositionEvent;
+import com.phamnam.tracking_vessel_flight.dto.event.VesselPositionEvent;
 import com.phamnam.tracking_vessel_flight.dto.response.FlightTrackingResponse;
-import com.phamnam.tracking_vessel_flight.models.FlightTracking;
 import com.phamnam.tracking_vessel_flight.models.RawAircraftData;
 import com.phamnam.tracking_vessel_flight.models.RawVesselData;
 import com.phamnam.tracking_vessel_flight.models.ShipTracking;
@@ -19,6 +20,10 @@ import com.phamnam.tracking_vessel_flight.service.rest.FlightTrackingService;
 import com.phamnam.tracking_vessel_flight.service.rest.ShipTrackingService;
 import com.phamnam.tracking_vessel_flight.service.kafka.TrackingKafkaProducer;
 import com.phamnam.tracking_vessel_flight.service.realtime.TrackingCacheService;
+import com.phamnam.tracking_vessel_flight.service.realtime.LivePositionStore;
+import com.phamnam.tracking_vessel_flight.service.realtime.heatmap.HeatmapTileService;
+import com.phamnam.tracking_vessel_flight.service.realtime.metrics.StreamingAnalyticsService;
+import com.phamnam.tracking_vessel_flight.service.realtime.pipeline.FreshnessMonitor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
@@ -46,6 +51,10 @@ public class TrackingKafkaConsumer {
     private final ShipTrackingService shipTrackingService;
     private final TrackingKafkaProducer kafkaProducer;
     private final TrackingCacheService trackingCacheService;
+    private final StreamingAnalyticsService streamingAnalyticsService;
+    private final HeatmapTileService heatmapTileService;
+    private final LivePositionStore livePositionStore;
+    private final FreshnessMonitor freshnessMonitor;
 
     @Value("${raw.data.storage.enabled:true}")
     private boolean rawStorageEnabled;
@@ -77,6 +86,17 @@ public class TrackingKafkaConsumer {
         return true;
     }
 
+    private Integer parseSquawk(String squawk) {
+        if (squawk == null || squawk.isBlank()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(squawk.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     /**
      * Utility method to handle errors consistently across all consumers
      * 
@@ -203,7 +223,7 @@ public class TrackingKafkaConsumer {
     // Processed Aircraft Data Consumer
     @KafkaListener(topics = "${app.kafka.topics.processed-aircraft-data}", groupId = "processed-aircraft-consumer-group", containerFactory = "processedAircraftKafkaListenerContainerFactory")
     public void consumeProcessedAircraftData(
-            @Payload FlightTracking data,
+            @Payload AircraftPositionEvent data,
             @Header(KafkaHeaders.RECEIVED_KEY) String key,
             @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
             Acknowledgment acknowledgment) {
@@ -211,17 +231,25 @@ public class TrackingKafkaConsumer {
         try {
             log.debug("Received processed aircraft data from topic: {}, key: {}", topic, key);
 
-            // Convert FlightTracking to FlightTrackingRequestDTO for service processing
+            // Feed the in-memory dashboard sketches and live heatmap before any database work
+            streamingAnalyticsService.recordAircraft(data);
+            heatmapTileService.recordAircraft(data);
+            livePositionStore.updateAircraft(data);
+
+            // Convert AircraftPositionEvent to FlightTrackingRequestDTO for service processing
             FlightTrackingRequestDTO trackingRequest = FlightTrackingRequestDTO.builder()
-                    .hexident(data.getHexident())
-                    .callsign(data.getCallsign())
-                    .latitude(data.getLatitude() != null ? data.getLatitude().floatValue() : null)
-                    .longitude(data.getLongitude() != null ? data.getLongitude().floatValue() : null)
-                    .altitude(data.getAltitude())
-                    .speed(data.getSpeed())
-                    .verticalSpeed(data.getVerticalSpeed())
-                    .squawk(data.getSquawk())
-                    .updateTime(data.getUpdateTime())
+                    .hexident(data.hexident())
+                    .callsign(data.callsign())
+                    .register(data.registration())
+                    .type(data.aircraftType())
+                    .latitude(data.latitude() != null ? data.latitude().floatValue() : null)
+                    .longitude(data.longitude() != null ? data.longitude().floatValue() : null)
+                    .altitude(data.altitude() != null ? data.altitude().floatValue() : null)
+                    .speed(data.groundSpeed() != null ? data.groundSpeed().floatValue() : null)
+                    .verticalSpeed(data.verticalRate() != null ? data.verticalRate().floatValue() : null)
+                    .squawk(parseSquawk(data.squawk()))
+                    .source(data.source())
+                    .updateTime(data.timestamp())
                     .build();
 
             // ✅ Process through service to create Aircraft and Flight entities
@@ -235,6 +263,7 @@ public class TrackingKafkaConsumer {
                     "type", "aircraft-update",
                     "hexident", key,
                     "data", savedTracking));
+            freshnessMonitor.recordDelivery("aircraft", data.timestamp());
             log.debug("📡 Flight tracking processed successfully for: {}", key);
             log.debug("📡 Broadcasted aircraft position update for: {}", key);
 
@@ -261,8 +290,11 @@ public class TrackingKafkaConsumer {
                 return;
             }
 
-            // Convert JsonNode to ShipTrackingRequestDTO for service processing
-            ShipTrackingRequestDTO trackingRequest = objectMapper.treeToValue(data, ShipTrackingRequestDTO.class);
+            // Convert JsonNode to the flat position event for service processing
+            VesselPositionEvent trackingRequest = objectMapper.treeToValue(data, VesselPositionEvent.class);
+            streamingAnalyticsService.recordVessel(trackingRequest);
+            heatmapTileService.recordVessel(trackingRequest);
+            livePositionStore.updateVessel(trackingRequest);
 
             // ✅ Process through service to create Ship and Voyage entities
             // Note: This method should be implemented in ShipTrackingService
@@ -273,17 +305,16 @@ public class TrackingKafkaConsumer {
             try {
                 // Convert DTO to Request object for service
                 ShipTrackingRequest shipRequest = ShipTrackingRequest.builder()
-                        .mmsi(trackingRequest.getMmsi())
-                        .latitude(trackingRequest.getLatitude() != null ? trackingRequest.getLatitude().doubleValue()
-                                : null)
-                        .longitude(trackingRequest.getLongitude() != null ? trackingRequest.getLongitude().doubleValue()
-                                : null)
-                        .speed(trackingRequest.getSpeed() != null ? trackingRequest.getSpeed().doubleValue() : null)
-                        .course(trackingRequest.getCourse() != null ? trackingRequest.getCourse().doubleValue() : null)
-                        .heading(trackingRequest.getHeading() != null ? trackingRequest.getHeading().doubleValue()
-                                : null)
-                        .navStatus(trackingRequest.getNavigationStatus())
-                        .timestamp(trackingRequest.getUpdateTime())
+                        .mmsi(trackingRequest.mmsi())
+                        .latitude(trackingRequest.latitude())
+                        .longitude(trackingRequest.longitude())
+                        .speed(trackingRequest.speed())
+                        .course(trackingRequest.course())
+                        .heading(trackingRequest.heading())
+                        .navStatus(trackingRequest.navigationStatus())
+                        .draught(trackingRequest.draught())
+                        .voyageId(trackingRequest.voyageId())
+                        .timestamp(trackingRequest.timestamp())
                         .build();
 
                 shipTrackingService.save(shipRequest, null);
@@ -297,22 +328,23 @@ public class TrackingKafkaConsumer {
                         serviceError.getMessage());
             }
             ShipTracking shipTracking = ShipTracking.builder()
-                    .mmsi(trackingRequest.getMmsi())
-                    .latitude(
-                            trackingRequest.getLatitude() != null ? trackingRequest.getLatitude().doubleValue() : null)
-                    .longitude(trackingRequest.getLongitude() != null ? trackingRequest.getLongitude().doubleValue()
-                            : null)
-                    .speed(trackingRequest.getSpeed() != null ? trackingRequest.getSpeed().doubleValue() : null)
-                    .course(trackingRequest.getCourse() != null ? trackingRequest.getCourse().doubleValue() : null)
-                    .heading(trackingRequest.getHeading() != null ? trackingRequest.getHeading().doubleValue() : null)
-                    .navigationStatus(trackingRequest.getNavigationStatus())
-                    .timestamp(trackingRequest.getUpdateTime() != null ? trackingRequest.getUpdateTime()
+                    .mmsi(trackingRequest.mmsi())
+                    .latitude(trackingRequest.latitude())
+                    .longitude(trackingRequest.longitude())
+                    .speed(trackingRequest.speed())
+                    .course(trackingRequest.course())
+                    .heading(trackingRequest.heading())
+                    .navigationStatus(trackingRequest.navigationStatus())
+                    .draught(trackingRequest.draught())
+                    .destination(trackingRequest.destination())
+                    .timestamp(trackingRequest.timestamp() != null ? trackingRequest.timestamp()
                             : LocalDateTime.now())
                     .updateTime(LocalDateTime.now())
                     .build();
 
             // ✅ Send real-time update to WebSocket clients
             webSocketService.broadcastVesselUpdate(shipTracking);
+            freshnessMonitor.recordDelivery("vessel", trackingRequest.timestamp());
             log.debug("📡 Broadcasted vessel position update for: {}", key);
 
             acknowledgment.acknowledge();
@@ -1,6 +1,12 @@
 package com.phamnam.tracking_vessel_flight.service.kafka;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phamnam.tracking_vessel_flight.dto.event.AircraftPositionEvent;
+import com.phamnam.tracking_vessel_flight.dto.event.VesselPositionEvent;
+import com.phamnam.tracking_vessel_flight.dto.request.AircraftTrackingRequest;
+import com.phamnam.tracking_vessel_flight.dto.request.VesselTrackingRequest;
+import com.phamnam.tracking_vessel_flight.models.FlightTracking;
+import com.phamnam.tracking_vessel_flight.models.ShipTracking;
 import com.phamnam.tracking_vessel_flight.models.raw.RawAircraftData;
 import com.phamnam.tracking_vessel_flight.models.raw.RawVesselData;
 import lombok.extern.slf4j.Slf4j;
@@ -9,6 +15,7 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 @Service
@@ -16,6 +23,7 @@ import java.util.concurrent.CompletableFuture;
 public class TrackingKafkaProducer {
 
     private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final CoalescingKafkaPublisher publisher;
     private final ObjectMapper objectMapper;
     private final String rawAircraftDataTopic;
     private final String rawVesselDataTopic;
@@ -37,6 +45,7 @@ public class TrackingKafkaProducer {
 
     public TrackingKafkaProducer(
             KafkaTemplate<String, Object> kafkaTemplate,
+            CoalescingKafkaPublisher publisher,
             ObjectMapper objectMapper,
             @Qualifier("rawAircraftDataTopicName") String rawAircraftDataTopic,
             @Qualifier("rawVesselDataTopicName") String rawVesselDataTopic,
@@ -53,6 +62,7 @@ public class TrackingKafkaProducer {
             @Qualifier("notificationsTopicName") String notificationsTopic,
             @Qualifier("websocketUpdatesTopicName") String websocketUpdatesTopic) {
         this.kafkaTemplate = kafkaTemplate;
+        this.publisher = publisher;
         this.objectMapper = objectMapper;
         this.rawAircraftDataTopic = rawAircraftDataTopic;
         this.rawVesselDataTopic = rawVesselDataTopic;
@@ -134,13 +144,36 @@ public class TrackingKafkaProducer {
         };
     }
 
-    // Processed data publishing
-    public CompletableFuture<SendResult<String, Object>> publishProcessedAircraftData(String key, Object data) {
-        return sendMessage(processedAircraftDataTopic, key, data, "processed aircraft data");
+    // Processed data publishing - processed topics carry flat position events,
+    // never JPA entities, so serialization cannot walk into lazy associations
+    public CompletableFuture<SendResult<String, Object>> publishProcessedAircraftData(String key,
+            FlightTracking tracking) {
+        return publishProcessedAircraftEvent(key, toAircraftPositionEvent(tracking));
     }
 
-    public CompletableFuture<SendResult<String, Object>> publishProcessedVesselData(String key, Object data) {
-        return sendMessage(processedVesselDataTopic, key, data, "processed vessel data");
+    public CompletableFuture<SendResult<String, Object>> publishProcessedAircraftData(String key,
+            AircraftTrackingRequest request) {
+        return publishProcessedAircraftEvent(key, toAircraftPositionEvent(request));
+    }
+
+    public CompletableFuture<SendResult<String, Object>> publishProcessedAircraftEvent(String key,
+            AircraftPositionEvent event) {
+        return sendMessage(processedAircraftDataTopic, key, event, "processed aircraft data");
+    }
+
+    public CompletableFuture<SendResult<String, Object>> publishProcessedVesselData(String key,
+            ShipTracking tracking) {
+        return publishProcessedVesselEvent(key, toVesselPositionEvent(tracking));
+    }
+
+    public CompletableFuture<SendResult<String, Object>> publishProcessedVesselData(String key,
+            VesselTrackingRequest request) {
+        return publishProcessedVesselEvent(key, toVesselPositionEvent(request));
+    }
+
+    public CompletableFuture<SendResult<String, Object>> publishProcessedVesselEvent(String key,
+            VesselPositionEvent event) {
+        return sendMessage(processedVesselDataTopic, key, event, "processed vessel data");
     }
 
     // Real-time position updates
@@ -187,7 +220,9 @@ public class TrackingKafkaProducer {
 
             log.debug("Publishing {} to topic: {} with key: {}", dataType, topic, key);
 
-            CompletableFuture<SendResult<String, Object>> future = kafkaTemplate.send(topic, key, data);
+            // Position topics are coalesced per key; the publisher picks the
+            // producer profile and records latency / buffer exhaustion per topic
+            CompletableFuture<SendResult<String, Object>> future = publisher.send(topic, key, data);
 
             future.whenComplete((result, exception) -> {
                 if (exception == null) {
@@ -216,6 +251,126 @@ public class TrackingKafkaProducer {
         batchData.forEach(entry -> publishRawVesselData(entry.getKey(), entry.getValue()));
     }
 
+    // ============================================================================
+    // POSITION EVENT MAPPING
+    // ============================================================================
+
+    public static AircraftPositionEvent toAircraftPositionEvent(FlightTracking tracking) {
+        if (tracking == null) {
+            return null;
+        }
+        return new AircraftPositionEvent(
+                tracking.getHexident(),
+                tracking.getCallsign(),
+                null,
+                null,
+                null,
+                tracking.getLatitude(),
+                tracking.getLongitude(),
+                roundToInteger(tracking.getAltitude()),
+                roundToInteger(tracking.getSpeed()),
+                roundToInteger(tracking.getTrack()),
+                roundToInteger(tracking.getVerticalSpeed()),
+                tracking.getSquawk() != null ? String.format("%04d", tracking.getSquawk()) : null,
+                tracking.getOnGround(),
+                tracking.getEmergency(),
+                tracking.getOriginAirport(),
+                tracking.getDestinationAirport(),
+                tracking.getDataSource(),
+                null,
+                tracking.getTimestamp() != null ? tracking.getTimestamp() : tracking.getUpdateTime(),
+                tracking.getFlightId());
+    }
+
+    public static AircraftPositionEvent toAircraftPositionEvent(AircraftTrackingRequest request) {
+        if (request == null) {
+            return null;
+        }
+        return new AircraftPositionEvent(
+                request.getHexident(),
+                request.getCallsign(),
+                request.getRegistration(),
+                request.getAircraftType(),
+                request.getFlightNumber(),
+                request.getLatitude(),
+                request.getLongitude(),
+                request.getAltitude(),
+                request.getGroundSpeed(),
+                request.getTrack(),
+                request.getVerticalRate(),
+                request.getSquawk(),
+                request.getOnGround(),
+                request.getEmergency(),
+                request.getOrigin(),
+                request.getDestination(),
+                request.getSource(),
+                request.getDataQuality(),
+                request.getTimestamp(),
+                null);
+    }
+
+    public static VesselPositionEvent toVesselPositionEvent(ShipTracking tracking) {
+        if (tracking == null) {
+            return null;
+        }
+        return new VesselPositionEvent(
+                tracking.getMmsi(),
+                null,
+                null,
+                null,
+                null,
+                tracking.getLatitude(),
+                tracking.getLongitude(),
+                tracking.getSpeed(),
+                tracking.getCourse(),
+                tracking.getHeading(),
+                tracking.getNavigationStatus(),
+                tracking.getDraught(),
+                tracking.getDestination(),
+                tracking.getEta() != null ? tracking.getEta().toString() : null,
+                tracking.getDataSource(),
+                null,
+                tracking.getTimestamp() != null ? tracking.getTimestamp() : tracking.getUpdateTime(),
+                tracking.getVoyageId());
+    }
+
+    public static VesselPositionEvent toVesselPositionEvent(VesselTrackingRequest request) {
+        if (request == null) {
+            return null;
+        }
+        return new VesselPositionEvent(
+                request.getMmsi(),
+                request.getImo(),
+                request.getVesselName(),
+                request.getCallsign(),
+                request.getVesselType(),
+                request.getLatitude(),
+                request.getLongitude(),
+                request.getSpeed(),
+                request.getCourse() != null ? request.getCourse().doubleValue() : null,
+                request.getHeading() != null ? request.getHeading().doubleValue() : null,
+                request.getNavigationStatus(),
+                request.getDraught(),
+                request.getDestination(),
+                request.getEta(),
+                request.getSource(),
+                request.getDataQuality(),
+                request.getTimestamp(),
+                null);
+    }
+
+    private static Integer roundToInteger(Float value) {
+        return value != null ? Math.round(value) : null;
+    }
+
+    // ============================================================================
+    // PUBLISH STATISTICS
+    // ============================================================================
+
+    public Map<String, Object> getPublishStatistics() {
+        return publisher.getPublisherStatistics();
+    }
+
     // Health check method
     public boolean isHealthy() {
         try {
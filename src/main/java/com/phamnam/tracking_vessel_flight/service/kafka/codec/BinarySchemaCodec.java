@@ -0,0 +1,533 @@
+package com.phamnam.tracking_vessel_flight.service.kafka.codec;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Schema-based Binary Codec
+ *
+ * Compact encoding for internal Kafka payloads. Field names never go on the
+ * wire; the message only carries the schema id and the values in schema order:
+ *
+ * <pre>
+ * 0x00 | varint schemaId | presence bitmap (1 bit per field) | values of present fields
+ * </pre>
+ *
+ * int/long are zig-zag varints, float/double are fixed width big-endian,
+ * strings are varint length + UTF-8, booleans one byte and timestamps a
+ * zig-zag varint of epoch seconds (UTC) followed by a varint of nanos.
+ * A JSON document can never start with 0x00, so readers tell the two formats
+ * apart from the first byte and mixed topics keep working during a rollout.
+ * Beans are bound through their getters/setters, records through their
+ * accessors and canonical constructor.
+ */
+public class BinarySchemaCodec {
+
+    public static final byte MAGIC_BYTE = 0x00;
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    private static final MethodType RECORD_CONSTRUCTOR_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final FileSchemaRegistry registry;
+    private final Map<Class<?>, Binding> encodeBindings = new ConcurrentHashMap<>();
+    private final Map<Integer, Binding> decodeBindings = new ConcurrentHashMap<>();
+
+    public BinarySchemaCodec(FileSchemaRegistry registry) {
+        this.registry = registry;
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 1 && data[0] == MAGIC_BYTE;
+    }
+
+    public FileSchemaRegistry getRegistry() {
+        return registry;
+    }
+
+    public boolean canEncode(Class<?> type) {
+        return registry.findLatestFor(type).isPresent();
+    }
+
+    // ============================================================================
+    // ENCODE
+    // ============================================================================
+
+    public byte[] encode(Object value) {
+        Binding binding = encodeBindings.computeIfAbsent(value.getClass(), type -> bind(
+                registry.findLatestFor(type).orElseThrow(() -> new IllegalArgumentException(
+                        "No Kafka schema registered for " + type.getName())),
+                type));
+
+        FieldAccessor[] fields = binding.fields;
+        Output out = new Output(16 + fields.length * 6);
+        out.writeByte(MAGIC_BYTE);
+        out.writeVarLong(binding.schema.getId());
+        int bitmapOffset = out.reserve((fields.length + 7) >>> 3);
+
+        for (int i = 0; i < fields.length; i++) {
+            FieldAccessor field = fields[i];
+            Object fieldValue = field.get(value);
+            if (fieldValue == null) {
+                continue;
+            }
+            out.setBit(bitmapOffset, i);
+            try {
+                writeValue(out, field.fieldType, fieldValue);
+            } catch (ClassCastException e) {
+                throw new IllegalArgumentException("Field " + field.name + " of " + binding.schema
+                        + " cannot be written as " + field.fieldType + ": " + fieldValue.getClass().getName(), e);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeValue(Output out, KafkaSchema.FieldType type, Object value) {
+        switch (type) {
+            case STRING -> out.writeString(value instanceof Enum<?> e ? e.name() : value.toString());
+            case INT -> out.writeVarLong(zigZag(((Number) value).intValue()));
+            case LONG -> out.writeVarLong(zigZag(((Number) value).longValue()));
+            case FLOAT -> out.writeInt(Float.floatToIntBits(((Number) value).floatValue()));
+            case DOUBLE -> out.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+            case BOOLEAN -> out.writeByte((byte) (((Boolean) value) ? 1 : 0));
+            case TIMESTAMP -> {
+                Instant instant = value instanceof LocalDateTime ldt ? ldt.toInstant(ZoneOffset.UTC) : (Instant) value;
+                out.writeVarLong(zigZag(instant.getEpochSecond()));
+                out.writeVarLong(instant.getNano());
+            }
+        }
+    }
+
+    // ============================================================================
+    // DECODE
+    // ============================================================================
+
+    /**
+     * Decode into the class named by the writer's schema, so a reader always
+     * understands messages written with any schema version it has on disk
+     */
+    public Object decode(byte[] data) {
+        if (!isBinary(data)) {
+            throw new IllegalArgumentException("Not a binary Kafka message");
+        }
+        Input in = new Input(data, 1);
+        int schemaId = (int) in.readVarLong();
+        Binding binding = decodeBindings.computeIfAbsent(schemaId, id -> {
+            KafkaSchema schema = registry.findById(id).orElseThrow(() -> new IllegalArgumentException(
+                    "Unknown Kafka schema id " + id));
+            return bind(schema, loadClass(schema.getJavaType()));
+        });
+
+        FieldAccessor[] fields = binding.fields;
+        int bitmapOffset = in.position;
+        in.skip((fields.length + 7) >>> 3);
+
+        // Records are built in one constructor call once every value is read
+        Object target = binding.recordConstructor == null ? binding.newInstance() : null;
+        Object[] components = binding.recordConstructor != null ? binding.newComponentArray() : null;
+        for (int i = 0; i < fields.length; i++) {
+            if ((data[bitmapOffset + (i >>> 3)] & (1 << (i & 7))) == 0) {
+                continue;
+            }
+            FieldAccessor field = fields[i];
+            Object value = readValue(in, field.fieldType);
+            if (components != null) {
+                field.setComponent(components, value);
+            } else {
+                field.set(target, value);
+            }
+        }
+        return components != null ? binding.newRecord(components) : target;
+    }
+
+    private static Object readValue(Input in, KafkaSchema.FieldType type) {
+        return switch (type) {
+            case STRING -> in.readString();
+            case INT -> (int) unZigZag(in.readVarLong());
+            case LONG -> unZigZag(in.readVarLong());
+            case FLOAT -> Float.intBitsToFloat(in.readInt());
+            case DOUBLE -> Double.longBitsToDouble(in.readLong());
+            case BOOLEAN -> in.readByte() != 0;
+            case TIMESTAMP -> {
+                long seconds = unZigZag(in.readVarLong());
+                int nanos = (int) in.readVarLong();
+                yield LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+            }
+        };
+    }
+
+    // ============================================================================
+    // BINDINGS
+    // ============================================================================
+
+    private static Class<?> loadClass(String name) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            return Class.forName(name, true, classLoader != null ? classLoader
+                    : BinarySchemaCodec.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Kafka schema type not on classpath: " + name, e);
+        }
+    }
+
+    private static Binding bind(KafkaSchema schema, Class<?> type) {
+        if (type.isRecord()) {
+            return bindRecord(schema, type);
+        }
+
+        Map<String, PropertyDescriptor> properties = new HashMap<>();
+        try {
+            for (PropertyDescriptor descriptor : Introspector.getBeanInfo(type).getPropertyDescriptors()) {
+                properties.put(descriptor.getName(), descriptor);
+            }
+        } catch (IntrospectionException e) {
+            throw new IllegalArgumentException("Cannot introspect " + type.getName(), e);
+        }
+
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        List<KafkaSchema.Field> schemaFields = schema.getFields();
+        FieldAccessor[] fields = new FieldAccessor[schemaFields.size()];
+        for (int i = 0; i < fields.length; i++) {
+            KafkaSchema.Field field = schemaFields.get(i);
+            PropertyDescriptor descriptor = properties.get(field.getName());
+            MethodHandle getter = null;
+            MethodHandle setter = null;
+            Class<?> propertyType = null;
+            if (descriptor != null) {
+                propertyType = descriptor.getPropertyType();
+                try {
+                    if (descriptor.getReadMethod() != null) {
+                        getter = lookup.unreflect(descriptor.getReadMethod()).asType(GETTER_TYPE);
+                    }
+                    if (descriptor.getWriteMethod() != null) {
+                        setter = lookup.unreflect(descriptor.getWriteMethod()).asType(SETTER_TYPE);
+                    }
+                } catch (IllegalAccessException e) {
+                    throw new IllegalArgumentException("Property " + field.getName() + " of " + type.getName()
+                            + " is not accessible", e);
+                }
+            }
+            fields[i] = new FieldAccessor(field.getName(), field.getType(), propertyType, getter, setter, -1);
+        }
+
+        MethodHandle constructor = null;
+        try {
+            constructor = lookup.findConstructor(type, MethodType.methodType(void.class)).asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            // Encode-only binding; decode() reports the missing constructor
+        }
+        return new Binding(schema, type, constructor, null, null, fields);
+    }
+
+    private static Binding bindRecord(KafkaSchema schema, Class<?> type) {
+        RecordComponent[] components = type.getRecordComponents();
+        Class<?>[] componentTypes = new Class<?>[components.length];
+        Map<String, Integer> componentIndex = new HashMap<>();
+        for (int i = 0; i < components.length; i++) {
+            componentTypes[i] = components[i].getType();
+            componentIndex.put(components[i].getName(), i);
+        }
+
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        try {
+            List<KafkaSchema.Field> schemaFields = schema.getFields();
+            FieldAccessor[] fields = new FieldAccessor[schemaFields.size()];
+            for (int i = 0; i < fields.length; i++) {
+                KafkaSchema.Field field = schemaFields.get(i);
+                Integer index = componentIndex.get(field.getName());
+                MethodHandle getter = index != null
+                        ? lookup.unreflect(components[index].getAccessor()).asType(GETTER_TYPE)
+                        : null;
+                fields[i] = new FieldAccessor(field.getName(), field.getType(),
+                        index != null ? componentTypes[index] : null, getter, null, index != null ? index : -1);
+            }
+
+            MethodHandle canonical = lookup.findConstructor(type, MethodType.methodType(void.class, componentTypes))
+                    .asSpreader(Object[].class, componentTypes.length)
+                    .asType(RECORD_CONSTRUCTOR_TYPE);
+            return new Binding(schema, type, null, canonical, componentTypes, fields);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Record " + type.getName() + " is not accessible", e);
+        }
+    }
+
+    private static final class Binding {
+        final KafkaSchema schema;
+        final Class<?> type;
+        final MethodHandle constructor;
+        final MethodHandle recordConstructor;
+        final Class<?>[] componentTypes;
+        final FieldAccessor[] fields;
+
+        Binding(KafkaSchema schema, Class<?> type, MethodHandle constructor, MethodHandle recordConstructor,
+                Class<?>[] componentTypes, FieldAccessor[] fields) {
+            this.schema = schema;
+            this.type = type;
+            this.constructor = constructor;
+            this.recordConstructor = recordConstructor;
+            this.componentTypes = componentTypes;
+            this.fields = fields;
+        }
+
+        Object[] newComponentArray() {
+            Object[] components = new Object[componentTypes.length];
+            for (int i = 0; i < components.length; i++) {
+                // Absent primitive components get their default value instead of null
+                if (componentTypes[i].isPrimitive()) {
+                    components[i] = Array.get(Array.newInstance(componentTypes[i], 1), 0);
+                }
+            }
+            return components;
+        }
+
+        Object newRecord(Object[] components) {
+            try {
+                return (Object) recordConstructor.invokeExact(components);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot construct " + type.getName(), e);
+            }
+        }
+
+        Object newInstance() {
+            if (constructor == null) {
+                throw new IllegalStateException(type.getName() + " needs a public no-args constructor to decode "
+                        + schema);
+            }
+            try {
+                return (Object) constructor.invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot instantiate " + type.getName(), e);
+            }
+        }
+    }
+
+    private static final class FieldAccessor {
+        final String name;
+        final KafkaSchema.FieldType fieldType;
+        final Class<?> propertyType;
+        final MethodHandle getter;
+        final MethodHandle setter;
+        final int componentIndex;
+
+        FieldAccessor(String name, KafkaSchema.FieldType fieldType, Class<?> propertyType, MethodHandle getter,
+                MethodHandle setter, int componentIndex) {
+            this.name = name;
+            this.fieldType = fieldType;
+            this.propertyType = propertyType;
+            this.getter = getter;
+            this.setter = setter;
+            this.componentIndex = componentIndex;
+        }
+
+        void setComponent(Object[] components, Object value) {
+            if (componentIndex >= 0) {
+                components[componentIndex] = coerce(value, propertyType);
+            }
+        }
+
+        Object get(Object target) {
+            if (getter == null) {
+                return null;
+            }
+            try {
+                return (Object) getter.invokeExact(target);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot read " + name + " from " + target.getClass().getName(), e);
+            }
+        }
+
+        void set(Object target, Object value) {
+            // Fields the reader's class no longer has are skipped, not rejected
+            if (setter == null) {
+                return;
+            }
+            try {
+                setter.invokeExact(target, coerce(value, propertyType));
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot write " + name + " to " + target.getClass().getName(), e);
+            }
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object coerce(Object value, Class<?> targetType) {
+        Class<?> boxed = targetType.isPrimitive() ? MethodType.methodType(targetType).wrap().returnType()
+                : targetType;
+        if (boxed.isInstance(value)) {
+            return value;
+        }
+        if (value instanceof Number number) {
+            if (boxed == Integer.class) {
+                return number.intValue();
+            } else if (boxed == Long.class) {
+                return number.longValue();
+            } else if (boxed == Double.class) {
+                return number.doubleValue();
+            } else if (boxed == Float.class) {
+                return number.floatValue();
+            } else if (boxed == Short.class) {
+                return number.shortValue();
+            }
+        }
+        if (value instanceof String text && boxed.isEnum()) {
+            return Enum.valueOf((Class<? extends Enum>) boxed, text);
+        }
+        if (value instanceof LocalDateTime timestamp && boxed == Instant.class) {
+            return timestamp.toInstant(ZoneOffset.UTC);
+        }
+        if (boxed == String.class) {
+            return value.toString();
+        }
+        throw new IllegalArgumentException("Cannot convert " + value.getClass().getSimpleName() + " to "
+                + targetType.getSimpleName());
+    }
+
+    // ============================================================================
+    // WIRE PRIMITIVES
+    // ============================================================================
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Output {
+        private byte[] buffer;
+        private int position;
+
+        Output(int initialCapacity) {
+            buffer = new byte[initialCapacity];
+        }
+
+        private void ensure(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + extra));
+            }
+        }
+
+        void writeByte(byte value) {
+            ensure(1);
+            buffer[position++] = value;
+        }
+
+        int reserve(int length) {
+            ensure(length);
+            int offset = position;
+            position += length;
+            return offset;
+        }
+
+        void setBit(int offset, int index) {
+            buffer[offset + (index >>> 3)] |= (byte) (1 << (index & 7));
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            buffer[position++] = (byte) (value >>> 24);
+            buffer[position++] = (byte) (value >>> 16);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Input {
+        private final byte[] data;
+        private int position;
+
+        Input(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        private void require(int length) {
+            if (position + length > data.length) {
+                throw new IllegalArgumentException("Truncated binary Kafka message");
+            }
+        }
+
+        void skip(int length) {
+            require(length);
+            position += length;
+        }
+
+        byte readByte() {
+            require(1);
+            return data[position++];
+        }
+
+        long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in binary Kafka message");
+        }
+
+        int readInt() {
+            require(4);
+            return ((data[position++] & 0xFF) << 24) | ((data[position++] & 0xFF) << 16)
+                    | ((data[position++] & 0xFF) << 8) | (data[position++] & 0xFF);
+        }
+
+        long readLong() {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            require(length);
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.phamnam.tracking_vessel_flight.service.kafka.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * File-based Schema Registry
+ *
+ * Local stand-in for a Confluent-style registry: schemas are JSON files that
+ * ship with the application ({@code classpath*:kafka-schemas/*.json}) plus an
+ * optional directory that operators can drop newer versions into. Every node
+ * loads the same files, so the schema id in a message always resolves
+ * without a network round trip.
+ */
+public class FileSchemaRegistry {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FileSchemaRegistry.class);
+
+    private final Map<Integer, KafkaSchema> schemasById;
+    private final Map<String, KafkaSchema> latestByJavaType;
+    private final Map<Class<?>, Optional<KafkaSchema>> latestByClass = new ConcurrentHashMap<>();
+
+    public FileSchemaRegistry(Collection<KafkaSchema> schemas) {
+        Map<Integer, KafkaSchema> byId = new TreeMap<>();
+        Map<String, KafkaSchema> latest = new TreeMap<>();
+        for (KafkaSchema schema : schemas) {
+            KafkaSchema previous = byId.put(schema.getId(), schema);
+            if (previous != null) {
+                throw new IllegalStateException("Duplicate Kafka schema id " + schema.getId() + ": "
+                        + previous + " and " + schema);
+            }
+            latest.merge(schema.getJavaType(), schema,
+                    (current, candidate) -> candidate.getVersion() > current.getVersion() ? candidate : current);
+        }
+        this.schemasById = Collections.unmodifiableMap(byId);
+        this.latestByJavaType = Collections.unmodifiableMap(latest);
+    }
+
+    /**
+     * Load every schema matching the location pattern, then any {@code *.json}
+     * in {@code externalDir} (ignored when blank or missing)
+     */
+    public static FileSchemaRegistry load(ObjectMapper objectMapper, String locationPattern, String externalDir)
+            throws IOException {
+        List<KafkaSchema> schemas = new ArrayList<>();
+
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(locationPattern);
+        for (Resource resource : resources) {
+            schemas.add(read(objectMapper, resource));
+        }
+
+        if (externalDir != null && !externalDir.isBlank()) {
+            Path dir = Paths.get(externalDir);
+            if (Files.isDirectory(dir)) {
+                try (Stream<Path> files = Files.list(dir)) {
+                    for (Path file : files.filter(p -> p.toString().endsWith(".json")).sorted().toList()) {
+                        schemas.add(read(objectMapper, new FileSystemResource(file)));
+                    }
+                }
+            } else {
+                log.warn("⚠️ Kafka schema directory {} does not exist, using bundled schemas only", externalDir);
+            }
+        }
+
+        FileSchemaRegistry registry = new FileSchemaRegistry(schemas);
+        log.info("📐 Loaded {} Kafka schemas: {}", schemas.size(), registry.schemasById.values());
+        return registry;
+    }
+
+    private static KafkaSchema read(ObjectMapper objectMapper, Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return objectMapper.readValue(in, KafkaSchema.class);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IOException("Invalid Kafka schema " + resource.getDescription() + ": " + e.getMessage(), e);
+        }
+    }
+
+    public Optional<KafkaSchema> findById(int id) {
+        return Optional.ofNullable(schemasById.get(id));
+    }
+
+    /**
+     * Highest version registered for the class or, failing that, its nearest
+     * superclass (covers subclasses such as Hibernate proxies)
+     */
+    public Optional<KafkaSchema> findLatestFor(Class<?> type) {
+        return latestByClass.computeIfAbsent(type, key -> {
+            for (Class<?> current = key; current != null && current != Object.class; current = current
+                    .getSuperclass()) {
+                KafkaSchema schema = latestByJavaType.get(current.getName());
+                if (schema != null) {
+                    return Optional.of(schema);
+                }
+            }
+            return Optional.empty();
+        });
+    }
+
+    public Collection<KafkaSchema> getSchemas() {
+        return schemasById.values();
+    }
+}
@@ -0,0 +1,109 @@
+package com.phamnam.tracking_vessel_flight.service.kafka.codec;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Kafka Message Schema
+ *
+ * One versioned record layout as checked into {@code resources/kafka-schemas}.
+ * The schema id travels in every binary message, so ids must never be reused;
+ * evolving a payload means adding a new file with a new id and a higher version.
+ */
+public final class KafkaSchema {
+
+    private final int id;
+    private final String name;
+    private final int version;
+    private final String javaType;
+    private final List<Field> fields;
+
+    @JsonCreator
+    public KafkaSchema(@JsonProperty("id") int id,
+            @JsonProperty("name") String name,
+            @JsonProperty("version") int version,
+            @JsonProperty("javaType") String javaType,
+            @JsonProperty("fields") List<Field> fields) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("Schema id must be positive: " + id);
+        }
+        if (javaType == null || javaType.isBlank()) {
+            throw new IllegalArgumentException("Schema " + id + " has no javaType");
+        }
+        if (fields == null || fields.isEmpty()) {
+            throw new IllegalArgumentException("Schema " + id + " has no fields");
+        }
+        this.id = id;
+        this.name = name != null ? name : javaType;
+        this.version = version;
+        this.javaType = javaType;
+        this.fields = List.copyOf(fields);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getJavaType() {
+        return javaType;
+    }
+
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return name + "@v" + version + " (id=" + id + ", " + fields.size() + " fields)";
+    }
+
+    /**
+     * Single schema field; the order in {@link #getFields()} is the wire order
+     */
+    public static final class Field {
+
+        private final String name;
+        private final FieldType type;
+
+        @JsonCreator
+        public Field(@JsonProperty("name") String name, @JsonProperty("type") FieldType type) {
+            this.name = Objects.requireNonNull(name, "field name");
+            this.type = Objects.requireNonNull(type, "field type of " + name);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public FieldType getType() {
+            return type;
+        }
+    }
+
+    public enum FieldType {
+        STRING, INT, LONG, FLOAT, DOUBLE, BOOLEAN, TIMESTAMP;
+
+        @JsonCreator
+        public static FieldType fromJson(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+
+        @JsonValue
+        public String toJson() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.phamnam.tracking_vessel_flight.service.kafka.codec;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.support.KafkaNull;
+import org.springframework.kafka.support.converter.MessagingMessageConverter;
+import org.springframework.messaging.Message;
+
+import java.lang.reflect.Type;
+
+/**
+ * Listener payload converter for binary-decoded records
+ *
+ * A binary record always decodes to the writer's class, while some listeners
+ * declare a different payload (e.g. {@code JsonNode} on processed-vessel, or
+ * {@code FlightTracking} on processed-aircraft). In that case the decoded
+ * object is mapped onto the declared type; JSON records pass through as before.
+ */
+public class SchemaAwareMessageConverter extends MessagingMessageConverter {
+
+    private final BinarySchemaCodec codec;
+    private final ObjectMapper objectMapper;
+
+    public SchemaAwareMessageConverter(BinarySchemaCodec codec, ObjectMapper objectMapper) {
+        this.codec = codec;
+        this.objectMapper = objectMapper.copy()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Override
+    protected Object extractAndConvertValue(ConsumerRecord<?, ?> record, Type type) {
+        Object value = super.extractAndConvertValue(record, type);
+        if (type == null || value == null || value == KafkaNull.INSTANCE) {
+            return value;
+        }
+        JavaType targetType = objectMapper.constructType(type);
+        Class<?> rawTarget = targetType.getRawClass();
+        if (rawTarget.isInstance(value) || ConsumerRecord.class.isAssignableFrom(rawTarget)
+                || Message.class.isAssignableFrom(rawTarget) || !codec.canEncode(value.getClass())) {
+            return value;
+        }
+        return objectMapper.convertValue(value, targetType);
+    }
+}
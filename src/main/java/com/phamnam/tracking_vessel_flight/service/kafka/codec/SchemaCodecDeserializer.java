@@ -0,0 +1,61 @@
+package com.phamnam.tracking_vessel_flight.service.kafka.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.Map;
+
+/**
+ * Binary/JSON Deserializer
+ *
+ * Detects the format from the first byte, so a consumer reads binary and JSON
+ * messages from the same topic. The binary result is the class named by the
+ * writer's schema; listeners that declare another payload type are handled by
+ * {@link SchemaAwareMessageConverter}.
+ */
+public class SchemaCodecDeserializer<T> implements Deserializer<T> {
+
+    private final BinarySchemaCodec codec;
+    private final Deserializer<T> jsonDeserializer;
+
+    public SchemaCodecDeserializer(BinarySchemaCodec codec, Deserializer<T> jsonDeserializer) {
+        this.codec = codec;
+        this.jsonDeserializer = jsonDeserializer;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonDeserializer.configure(configs, isKey);
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        if (BinarySchemaCodec.isBinary(data)) {
+            return decode(topic, data);
+        }
+        return jsonDeserializer.deserialize(topic, data);
+    }
+
+    @Override
+    public T deserialize(String topic, Headers headers, byte[] data) {
+        if (BinarySchemaCodec.isBinary(data)) {
+            return decode(topic, data);
+        }
+        return jsonDeserializer.deserialize(topic, headers, data);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T decode(String topic, byte[] data) {
+        try {
+            return (T) codec.decode(data);
+        } catch (RuntimeException e) {
+            throw new SerializationException("Binary decoding failed for topic " + topic + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        jsonDeserializer.close();
+    }
+}
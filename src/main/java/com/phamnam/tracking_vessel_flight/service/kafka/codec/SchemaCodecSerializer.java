@@ -0,0 +1,70 @@
+package com.phamnam.tracking_vessel_flight.service.kafka.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-topic Binary/JSON Serializer
+ *
+ * Writes the compact binary format for topics listed in
+ * {@code app.kafka.codec.binary-topics} when a schema exists for the payload
+ * class; everything else (and every topic while binary is switched off for
+ * debugging) goes through the wrapped JSON serializer unchanged.
+ */
+public class SchemaCodecSerializer implements Serializer<Object> {
+
+    private final BinarySchemaCodec codec;
+    private final Serializer<Object> jsonSerializer;
+    private final Set<String> binaryTopics;
+    private final boolean binaryEnabled;
+
+    public SchemaCodecSerializer(BinarySchemaCodec codec, Serializer<Object> jsonSerializer,
+            Set<String> binaryTopics, boolean binaryEnabled) {
+        this.codec = codec;
+        this.jsonSerializer = jsonSerializer;
+        this.binaryTopics = Set.copyOf(binaryTopics);
+        this.binaryEnabled = binaryEnabled;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonSerializer.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        if (usesBinary(topic, data)) {
+            return encode(topic, data);
+        }
+        return jsonSerializer.serialize(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (usesBinary(topic, data)) {
+            return encode(topic, data);
+        }
+        return jsonSerializer.serialize(topic, headers, data);
+    }
+
+    public boolean usesBinary(String topic, Object data) {
+        return binaryEnabled && data != null && binaryTopics.contains(topic) && codec.canEncode(data.getClass());
+    }
+
+    private byte[] encode(String topic, Object data) {
+        try {
+            return codec.encode(data);
+        } catch (RuntimeException e) {
+            throw new SerializationException("Binary encoding failed for topic " + topic + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        jsonSerializer.close();
+    }
+}
@@ -2,10 +2,11 @@ package com.phamnam.tracking_vessel_flight.service.realtime;
 
 import com.phamnam.tracking_vessel_flight.dto.FlightTrackingRequestDTO;
 import com.phamnam.tracking_vessel_flight.dto.request.FlightTrackingRequest;
+import com.phamnam.tracking_vessel_flight.service.realtime.cluster.ClusterFanoutService;
+import com.phamnam.tracking_vessel_flight.service.realtime.subscription.SubscriptionRegistry;
+import com.phamnam.tracking_vessel_flight.service.realtime.subscription.SubscriptionRegistry.Kind;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -15,9 +16,9 @@ import java.util.*;
 @Slf4j
 public class AircraftNotificationService {
 
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final SubscriptionRegistry subscriptionRegistry;
     private final TrackingCacheService trackingCacheService;
+    private final ClusterFanoutService clusterFanoutService;
 
     /**
      * Gửi cập nhật máy bay đến clients đã đăng ký
@@ -25,42 +26,86 @@ public class AircraftNotificationService {
     public void sendAircraftUpdate(FlightTrackingRequestDTO tracking) {
         if (tracking.getId() == null)
             return;
-        // 1. Gửi đến clients đã đăng ký máy bay cụ thể này
-        messagingTemplate.convertAndSend("/topic/aircraft/" + tracking.getId(), tracking);
+        // 1. Gửi đến clients đã đăng ký máy bay cụ thể này (nếu có)
+        List<String> destinations = new ArrayList<>();
+        String aircraftTopic = clusterFanoutService.entityDestination("/topic/aircraft/", tracking.getId());
+        if (aircraftTopic != null) {
+            destinations.add(aircraftTopic);
+        }
         // 2. Xác định khu vực chứa máy bay này
-        if (tracking.getLatitude() == null || tracking.getLongitude() == null)
-            return;
-        // Lấy danh sách các khu vực đang được đăng ký
-        Set<Object> activeAreas = redisTemplate.opsForSet().members("active:area:subscriptions");
-        if (activeAreas == null || activeAreas.isEmpty())
-            return;
-
-        // Kiểm tra máy bay có nằm trong khu vực nào không
-        for (Object areaObj : activeAreas) {
-            String areaKey = (String) areaObj;
+        if (tracking.getLatitude() != null && tracking.getLongitude() != null) {
+            subscriptionRegistry.getActiveAreas(Kind.AREA).forEach((areaKey, bounds) -> {
+                // Kiểm tra máy bay có nằm trong khu vực này không
+                if (inArea(tracking, bounds)) {
+                    // Gửi cập nhật đến topic của khu vực
+                    destinations.add("/topic/area/" + areaKey);
+                }
+            });
+        }
+        if (!destinations.isEmpty()) {
+            sendPosition(tracking, destinations);
+        }
+    }
 
-            // Parse area bounds từ key
-            String[] parts = areaKey.substring(5).split("_"); // Loại bỏ "area_" prefix
-            if (parts.length != 4)
-                continue;
+    /**
+     * One frame for the aircraft topic and every matching area topic
+     */
+    private void sendPosition(FlightTrackingRequestDTO tracking, List<String> destinations) {
+        clusterFanoutService.sendPosition("flight", String.valueOf(tracking.getId()),
+                tracking.getLatitude() != null ? tracking.getLatitude().doubleValue() : null,
+                tracking.getLongitude() != null ? tracking.getLongitude().doubleValue() : null,
+                tracking, destinations.toArray(new String[0]));
+    }
 
-            try {
-                double minLat = Double.parseDouble(parts[0]);
-                double maxLat = Double.parseDouble(parts[1]);
-                double minLon = Double.parseDouble(parts[2]);
-                double maxLon = Double.parseDouble(parts[3]);
+    /**
+     * Fan-out for one Kafka poll. Each aircraft goes out once, as a single
+     * frame shared by its aircraft topic and every matching area topic (the
+     * same frames {@link #sendAircraftUpdate} sends). The poll's changes per
+     * area are also collected into one message on /topic/area/{key}/delta;
+     * the full area snapshot on /topic/area/{key}/batch is left to
+     * {@link #sendBatchUpdatesToAllAreas}.
+     */
+    public void sendAircraftUpdates(Collection<FlightTrackingRequestDTO> trackings) {
+        if (trackings.isEmpty())
+            return;
 
-                // Kiểm tra máy bay có nằm trong khu vực này không
-                if (tracking.getLatitude() >= minLat && tracking.getLatitude() <= maxLat &&
-                        tracking.getLongitude() >= minLon && tracking.getLongitude() <= maxLon) {
+        Map<String, double[]> areaBounds = subscriptionRegistry.getActiveAreas(Kind.AREA);
 
-                    // Gửi cập nhật đến topic của khu vực
-                    messagingTemplate.convertAndSend("/topic/area/" + areaKey, tracking);
-                }
-            } catch (NumberFormatException e) {
-                log.error("Lỗi khi parse area bounds: {}", areaKey, e);
+        Map<String, List<FlightTrackingRequestDTO>> updatesByArea = new HashMap<>();
+        for (FlightTrackingRequestDTO tracking : trackings) {
+            if (tracking.getId() == null)
+                continue;
+            List<String> destinations = new ArrayList<>();
+            String aircraftTopic = clusterFanoutService.entityDestination("/topic/aircraft/", tracking.getId());
+            if (aircraftTopic != null) {
+                destinations.add(aircraftTopic);
+            }
+            if (tracking.getLatitude() != null && tracking.getLongitude() != null) {
+                areaBounds.forEach((areaKey, bounds) -> {
+                    if (inArea(tracking, bounds)) {
+                        destinations.add("/topic/area/" + areaKey);
+                        updatesByArea.computeIfAbsent(areaKey, key -> new ArrayList<>()).add(tracking);
+                    }
+                });
+            }
+            if (!destinations.isEmpty()) {
+                sendPosition(tracking, destinations);
             }
         }
+
+        updatesByArea.forEach((areaKey, updates) -> {
+            Map<String, Object> deltaData = new HashMap<>();
+            deltaData.put("timestamp", new Date());
+            deltaData.put("updates", updates);
+            deltaData.put("count", updates.size());
+            clusterFanoutService.send("/topic/area/" + areaKey + "/delta", deltaData);
+        });
+        log.debug("Sent {} aircraft updates to {} areas", trackings.size(), updatesByArea.size());
+    }
+
+    private static boolean inArea(FlightTrackingRequestDTO tracking, double[] bounds) {
+        return tracking.getLatitude() >= bounds[0] && tracking.getLatitude() <= bounds[1] &&
+                tracking.getLongitude() >= bounds[2] && tracking.getLongitude() <= bounds[3];
     }
 
     /**
@@ -71,17 +116,14 @@ public class AircraftNotificationService {
         batchData.put("timestamp", new Date());
         batchData.put("updates", updates);
 
-        messagingTemplate.convertAndSend("/topic/area/" + areaKey + "/batch", batchData);
+        clusterFanoutService.send("/topic/area/" + areaKey + "/batch", batchData);
     }
 
     public void sendBatchUpdate(String areaKey) {
         // Kiểm tra xem có client nào đăng ký khu vực này không
-        Long clientCount = redisTemplate.opsForSet().size("area:" + areaKey + ":clients");
-
-        if (clientCount == null || clientCount == 0) {
+        if (!subscriptionRegistry.hasSubscribers(Kind.AREA, areaKey)) {
             return; // Không có client nào đăng ký
         }
-        log.info("number of clients {}", clientCount);
 
         // Parse area bounds từ key
         String[] parts = areaKey.substring(5).split("_"); // Loại bỏ "area_" prefix
@@ -100,7 +142,7 @@ public class AircraftNotificationService {
                 batchData.put("timestamp", new Date());
                 batchData.put("updates", updates);
                 batchData.put("count", updates.size());
-                messagingTemplate.convertAndSend("/topic/area/" + areaKey + "/batch", batchData);
+                clusterFanoutService.send("/topic/area/" + areaKey + "/batch", batchData);
                 log.debug("Sent batch update with {} aircraft to area {}", updates.size(), areaKey);
             }
         } catch (NumberFormatException e) {
@@ -135,16 +177,36 @@ public class AircraftNotificationService {
         return updates;
     }
 
+    /**
+     * Full snapshot per subscribed area on /topic/area/{key}/batch. Active
+     * flights are read from Redis once and filtered for every area, instead
+     * of once per area.
+     */
     public void sendBatchUpdatesToAllAreas() {
-        Set<Object> activeAreas = redisTemplate.opsForSet().members("active:area:subscriptions");
-        if (activeAreas == null || activeAreas.isEmpty()) {
+        Map<String, double[]> areaBounds = subscriptionRegistry.getActiveAreas(Kind.AREA);
+        if (areaBounds.isEmpty())
             return;
-        }
 
-        for (Object areaObj : activeAreas) {
-            String areaKey = (String) areaObj;
-            sendBatchUpdate(areaKey);
+        Map<String, List<FlightTrackingRequestDTO>> flightsByArea = new HashMap<>();
+        for (Object flightObj : trackingCacheService.getActiveFlights()) {
+            FlightTrackingRequestDTO flightData = (FlightTrackingRequestDTO) flightObj;
+            if (flightData == null || flightData.getLatitude() == null || flightData.getLongitude() == null)
+                continue;
+            areaBounds.forEach((areaKey, bounds) -> {
+                if (inArea(flightData, bounds)) {
+                    flightsByArea.computeIfAbsent(areaKey, key -> new ArrayList<>()).add(flightData);
+                }
+            });
         }
+
+        flightsByArea.forEach((areaKey, updates) -> {
+            Map<String, Object> batchData = new HashMap<>();
+            batchData.put("timestamp", new Date());
+            batchData.put("updates", updates);
+            batchData.put("count", updates.size());
+            clusterFanoutService.send("/topic/area/" + areaKey + "/batch", batchData);
+        });
+        log.debug("Sent batch snapshots to {} areas", flightsByArea.size());
     }
 
     public void processNewAreaRequest(float minLat, float maxLat, float minLon, float maxLon, String areaKey) {
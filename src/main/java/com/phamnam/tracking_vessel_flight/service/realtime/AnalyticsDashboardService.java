@@ -4,6 +4,7 @@ import com.phamnam.tracking_vessel_flight.models.*;
 import com.phamnam.tracking_vessel_flight.models.enums.AlertStatus;
 import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
 import com.phamnam.tracking_vessel_flight.repository.*;
+import com.phamnam.tracking_vessel_flight.service.realtime.metrics.StreamingAnalyticsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.Cacheable;
@@ -12,10 +13,13 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static com.phamnam.tracking_vessel_flight.service.realtime.ContinuousAggregateQueries.*;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -27,6 +31,12 @@ public class AnalyticsDashboardService {
     private final AlertEventRepository alertEventRepository;
     private final DataSourceRepository dataSourceRepository;
     private final WebSocketService webSocketService;
+    private final ContinuousAggregateQueries aggregateQueries;
+    private final StreamingAnalyticsService streamingAnalyticsService;
+
+    private static final Duration ACTIVE_WINDOW = Duration.ofMinutes(30);
+    private static final Duration HOUR_WINDOW = Duration.ofHours(1);
+    private static final Duration DAY_WINDOW = Duration.ofHours(24);
 
     // ============================================================================
     // REAL-TIME STATISTICS
@@ -36,22 +46,32 @@ public class AnalyticsDashboardService {
     public Map<String, Object> getRealTimeStatistics() {
         try {
             LocalDateTime now = LocalDateTime.now();
-            LocalDateTime oneHourAgo = now.minusHours(1);
             LocalDateTime oneDayAgo = now.minusDays(1);
 
             Map<String, Object> stats = new HashMap<>();
 
             // Current active entities
-            stats.put("activeAircraft", getCurrentActiveAircraft());
-            stats.put("activeVessels", getCurrentActiveVessels());
+            stats.put("activeAircraft", countDistinctEntities(EntityType.AIRCRAFT, ACTIVE_WINDOW));
+            stats.put("activeVessels", countDistinctEntities(EntityType.VESSEL, ACTIVE_WINDOW));
 
             // Hourly statistics
-            stats.put("aircraftLastHour", getAircraftCountLastHour(oneHourAgo));
-            stats.put("vesselsLastHour", getVesselCountLastHour(oneHourAgo));
+            stats.put("aircraftLastHour", countDistinctEntities(EntityType.AIRCRAFT, HOUR_WINDOW));
+            stats.put("vesselsLastHour", countDistinctEntities(EntityType.VESSEL, HOUR_WINDOW));
 
             // Daily statistics
-            stats.put("aircraftLast24Hours", getAircraftCountLast24Hours(oneDayAgo));
-            stats.put("vesselsLast24Hours", getVesselCountLast24Hours(oneDayAgo));
+            stats.put("aircraftLast24Hours", countDistinctEntities(EntityType.AIRCRAFT, DAY_WINDOW));
+            stats.put("vesselsLast24Hours", countDistinctEntities(EntityType.VESSEL, DAY_WINDOW));
+
+            // Streaming-only breakdowns (no SQL equivalent on the 30s path)
+            if (streamingAnalyticsService.covers(ACTIVE_WINDOW)) {
+                stats.put("activeBySource", Map.of(
+                        "aircraft", streamingAnalyticsService.distinctBySource(EntityType.AIRCRAFT, ACTIVE_WINDOW),
+                        "vessels", streamingAnalyticsService.distinctBySource(EntityType.VESSEL, ACTIVE_WINDOW)));
+                stats.put("activeByRegion", Map.of(
+                        "aircraft", streamingAnalyticsService.distinctByRegion(EntityType.AIRCRAFT, ACTIVE_WINDOW),
+                        "vessels", streamingAnalyticsService.distinctByRegion(EntityType.VESSEL, ACTIVE_WINDOW)));
+                stats.put("busiestCells", streamingAnalyticsService.topCells(ACTIVE_WINDOW, 10));
+            }
 
             // Alert statistics
             stats.put("activeAlerts", getActiveAlertCount());
@@ -64,6 +84,7 @@ public class AnalyticsDashboardService {
             // System performance
             stats.put("systemPerformance", getSystemPerformance());
 
+            stats.put("entityCountSource", entityCountSource(DAY_WINDOW));
             stats.put("lastUpdated", now);
 
             return stats;
@@ -78,42 +99,44 @@ public class AnalyticsDashboardService {
     // ENTITY STATISTICS
     // ============================================================================
 
-    private int getCurrentActiveAircraft() {
-        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(30);
-        return jdbcTemplate.queryForObject(
-                "SELECT COUNT(DISTINCT hexident) FROM flight_tracking WHERE timestamp >= ?",
-                Integer.class, cutoff);
-    }
-
-    private int getCurrentActiveVessels() {
-        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(30);
-        return jdbcTemplate.queryForObject(
-                "SELECT COUNT(DISTINCT mmsi) FROM ship_tracking WHERE timestamp >= ?",
-                Integer.class, cutoff);
-    }
-
-    private int getAircraftCountLastHour(LocalDateTime oneHourAgo) {
-        return jdbcTemplate.queryForObject(
-                "SELECT COUNT(DISTINCT hexident) FROM flight_tracking WHERE timestamp >= ?",
-                Integer.class, oneHourAgo);
-    }
+    /**
+     * Distinct entities seen within the window: streaming sketches once this
+     * node has been consuming for the whole window, otherwise continuous
+     * aggregates or raw tables
+     */
+    private int countDistinctEntities(EntityType type, Duration window) {
+        if (streamingAnalyticsService.covers(window)) {
+            return (int) streamingAnalyticsService.distinctEntities(type, window);
+        }
 
-    private int getVesselCountLastHour(LocalDateTime oneHourAgo) {
-        return jdbcTemplate.queryForObject(
-                "SELECT COUNT(DISTINCT mmsi) FROM ship_tracking WHERE timestamp >= ?",
-                Integer.class, oneHourAgo);
-    }
+        boolean aircraft = type.isAirborne();
+        boolean hourly = window.compareTo(HOUR_WINDOW) > 0;
+        String view = aircraft
+                ? (hourly ? FLIGHT_ACTIVITY_1H : FLIGHT_ACTIVITY_1M)
+                : (hourly ? SHIP_ACTIVITY_1H : SHIP_ACTIVITY_1M);
+        String idColumn = aircraft ? "hexident" : "mmsi";
+        String rawTable = aircraft ? "flight_tracking" : "ship_tracking";
 
-    private int getAircraftCountLast24Hours(LocalDateTime oneDayAgo) {
-        return jdbcTemplate.queryForObject(
-                "SELECT COUNT(DISTINCT hexident) FROM flight_tracking WHERE timestamp >= ?",
-                Integer.class, oneDayAgo);
+        return aggregateQueries.queryCount(view,
+                "SELECT COUNT(DISTINCT " + idColumn + ") FROM " + view + " WHERE "
+                        + (hourly ? HOUR_BUCKETS_SINCE : MINUTE_BUCKETS_SINCE),
+                "SELECT COUNT(DISTINCT " + idColumn + ") FROM " + rawTable + " WHERE timestamp >= ?",
+                LocalDateTime.now().minus(window));
     }
 
-    private int getVesselCountLast24Hours(LocalDateTime oneDayAgo) {
-        return jdbcTemplate.queryForObject(
-                "SELECT COUNT(DISTINCT mmsi) FROM ship_tracking WHERE timestamp >= ?",
-                Integer.class, oneDayAgo);
+    private String entityCountSource(Duration window) {
+        if (streamingAnalyticsService.covers(window)) {
+            return "streaming_sketches";
+        }
+        if (streamingAnalyticsService.covers(ACTIVE_WINDOW)) {
+            return "streaming_sketches+"
+                    + (aggregateQueries.useAggregates(List.of(FLIGHT_ACTIVITY_1H, SHIP_ACTIVITY_1H))
+                    ? "continuous_aggregates"
+                    : "raw_tables");
+        }
+        return aggregateQueries.useAggregates(List.of(FLIGHT_ACTIVITY_1M, SHIP_ACTIVITY_1M))
+                ? "continuous_aggregates"
+                : "raw_tables";
     }
 
     // ============================================================================
@@ -162,57 +185,92 @@ public class AnalyticsDashboardService {
     }
 
     private List<Map<String, Object>> getEntitiesByRegion() {
-        // Simplified implementation - would use proper geographic regions
-        String sql = """
-                SELECT
-                    CASE
-                        WHEN latitude BETWEEN 8.5 AND 12.0 THEN 'South Vietnam'
-                        WHEN latitude BETWEEN 12.0 AND 16.0 THEN 'Central Vietnam'
-                        WHEN latitude BETWEEN 16.0 AND 23.5 THEN 'North Vietnam'
-                        ELSE 'Other'
-                    END as region,
-                    COUNT(DISTINCT hexident) as aircraft_count
+        // Simplified implementation - would use proper geographic regions.
+        // Aggregates place each entity by its last position within each minute
+        LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
+
+        String aggregateSql = """
+                SELECT %s as region, COUNT(DISTINCT hexident) as aircraft_count
+                FROM flight_activity_1m
+                WHERE %s
+                GROUP BY region
+
+                UNION ALL
+
+                SELECT %s as region, COUNT(DISTINCT mmsi) as vessel_count
+                FROM ship_activity_1m
+                WHERE %s
+                GROUP BY region
+                """.formatted(regionCase("last_latitude"), MINUTE_BUCKETS_SINCE,
+                regionCase("last_latitude"), MINUTE_BUCKETS_SINCE);
+
+        String rawSql = """
+                SELECT %s as region, COUNT(DISTINCT hexident) as aircraft_count
                 FROM flight_tracking
-                WHERE timestamp >= NOW() - INTERVAL '1 hour'
+                WHERE timestamp >= ?
                 GROUP BY region
 
                 UNION ALL
 
-                SELECT
-                    CASE
-                        WHEN latitude BETWEEN 8.5 AND 12.0 THEN 'South Vietnam'
-                        WHEN latitude BETWEEN 12.0 AND 16.0 THEN 'Central Vietnam'
-                        WHEN latitude BETWEEN 16.0 AND 23.5 THEN 'North Vietnam'
-                        ELSE 'Other'
-                    END as region,
-                    COUNT(DISTINCT mmsi) as vessel_count
+                SELECT %s as region, COUNT(DISTINCT mmsi) as vessel_count
                 FROM ship_tracking
-                WHERE timestamp >= NOW() - INTERVAL '1 hour'
+                WHERE timestamp >= ?
                 GROUP BY region
-                """;
+                """.formatted(regionCase("latitude"), regionCase("latitude"));
+
+        return aggregateQueries.queryList(List.of(FLIGHT_ACTIVITY_1M, SHIP_ACTIVITY_1M), aggregateSql, rawSql,
+                oneHourAgo, oneHourAgo);
+    }
 
-        return jdbcTemplate.queryForList(sql);
+    private static String regionCase(String latitudeColumn) {
+        return """
+                CASE
+                    WHEN %1$s BETWEEN 8.5 AND 12.0 THEN 'South Vietnam'
+                    WHEN %1$s BETWEEN 12.0 AND 16.0 THEN 'Central Vietnam'
+                    WHEN %1$s BETWEEN 16.0 AND 23.5 THEN 'North Vietnam'
+                    ELSE 'Other'
+                END""".formatted(latitudeColumn);
     }
 
     private List<Map<String, Object>> getTrafficHotspots() {
-        // Use grid-based analysis to find high-traffic areas
-        String sql = """
+        // Use grid-based analysis (0.1 degree cells) to find high-traffic areas
+        LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
+
+        String aggregateSql = """
+                SELECT
+                    lat_grid,
+                    lon_grid,
+                    SUM(records) as traffic_count
+                FROM (
+                    SELECT lat_grid, lon_grid, records FROM flight_grid_density_1m WHERE %1$s
+                    UNION ALL
+                    SELECT lat_grid, lon_grid, records FROM ship_grid_density_1m WHERE %1$s
+                ) combined_traffic
+                GROUP BY lat_grid, lon_grid
+                HAVING SUM(records) > 10
+                ORDER BY traffic_count DESC
+                LIMIT 20
+                """.formatted(MINUTE_BUCKETS_SINCE);
+
+        String rawSql = """
                 SELECT
-                    ROUND(latitude, 1) as lat_grid,
-                    ROUND(longitude, 1) as lon_grid,
+                    floor(latitude * 10) / 10 as lat_grid,
+                    floor(longitude * 10) / 10 as lon_grid,
                     COUNT(*) as traffic_count
                 FROM (
-                    SELECT latitude, longitude FROM flight_tracking WHERE timestamp >= NOW() - INTERVAL '1 hour'
+                    SELECT latitude, longitude FROM flight_tracking WHERE timestamp >= ?
                     UNION ALL
-                    SELECT latitude, longitude FROM ship_tracking WHERE timestamp >= NOW() - INTERVAL '1 hour'
+                    SELECT latitude, longitude FROM ship_tracking WHERE timestamp >= ?
                 ) combined_traffic
+                WHERE latitude IS NOT NULL AND longitude IS NOT NULL
                 GROUP BY lat_grid, lon_grid
                 HAVING COUNT(*) > 10
                 ORDER BY traffic_count DESC
                 LIMIT 20
                 """;
 
-        return jdbcTemplate.queryForList(sql);
+        return aggregateQueries.queryList(List.of(FLIGHT_GRID_DENSITY_1M, SHIP_GRID_DENSITY_1M), aggregateSql,
+                rawSql, oneHourAgo, oneHourAgo);
     }
 
     private List<Map<String, Object>> getPopularRoutes() {
@@ -307,13 +365,25 @@ public class AnalyticsDashboardService {
     private Map<String, Object> getDataProcessingRates() {
         LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
 
-        int aircraftRecordsLastHour = jdbcTemplate.queryForObject(
+        if (streamingAnalyticsService.covers(HOUR_WINDOW)) {
+            long aircraftRecords = streamingAnalyticsService.recordCount(EntityType.AIRCRAFT, HOUR_WINDOW);
+            long vesselRecords = streamingAnalyticsService.recordCount(EntityType.VESSEL, HOUR_WINDOW);
+            return Map.of(
+                    "aircraftRecordsPerHour", aircraftRecords,
+                    "vesselRecordsPerHour", vesselRecords,
+                    "totalRecordsPerHour", aircraftRecords + vesselRecords,
+                    "averageRecordsPerMinute", (aircraftRecords + vesselRecords) / 60.0);
+        }
+
+        int aircraftRecordsLastHour = aggregateQueries.queryCount(FLIGHT_ACTIVITY_1M,
+                "SELECT COALESCE(SUM(records), 0) FROM flight_activity_1m WHERE " + MINUTE_BUCKETS_SINCE,
                 "SELECT COUNT(*) FROM flight_tracking WHERE timestamp >= ?",
-                Integer.class, oneHourAgo);
+                oneHourAgo);
 
-        int vesselRecordsLastHour = jdbcTemplate.queryForObject(
+        int vesselRecordsLastHour = aggregateQueries.queryCount(SHIP_ACTIVITY_1M,
+                "SELECT COALESCE(SUM(records), 0) FROM ship_activity_1m WHERE " + MINUTE_BUCKETS_SINCE,
                 "SELECT COUNT(*) FROM ship_tracking WHERE timestamp >= ?",
-                Integer.class, oneHourAgo);
+                oneHourAgo);
 
         return Map.of(
                 "aircraftRecordsPerHour", aircraftRecordsLastHour,
@@ -439,7 +509,20 @@ public class AnalyticsDashboardService {
     }
 
     private List<Map<String, Object>> getDailyTrafficTrends(LocalDateTime startDate) {
-        String sql = """
+        // Hours nest into days, so distinct aircraft per day is exact from the hourly aggregate
+        String aggregateSql = """
+                SELECT
+                    DATE(bucket) as date,
+                    COUNT(DISTINCT hexident) as aircraft_count,
+                    SUM(records) as aircraft_records
+                FROM flight_activity_1h
+                WHERE %s
+                GROUP BY DATE(bucket)
+                ORDER BY date DESC
+                LIMIT 30
+                """.formatted(HOUR_BUCKETS_SINCE);
+
+        String rawSql = """
                 SELECT
                     DATE(timestamp) as date,
                     COUNT(DISTINCT hexident) as aircraft_count,
@@ -451,7 +534,7 @@ public class AnalyticsDashboardService {
                 LIMIT 30
                 """;
 
-        return jdbcTemplate.queryForList(sql, startDate);
+        return aggregateQueries.queryList(List.of(FLIGHT_ACTIVITY_1H), aggregateSql, rawSql, startDate);
     }
 
     private List<Map<String, Object>> getAlertTrends(LocalDateTime startDate) {
@@ -469,7 +552,20 @@ public class AnalyticsDashboardService {
     }
 
     private List<Map<String, Object>> getPeakTrafficTimes(LocalDateTime startDate) {
-        String sql = """
+        String aggregateSql = """
+                SELECT
+                    EXTRACT(HOUR FROM bucket) as hour,
+                    SUM(records) as traffic_count
+                FROM (
+                    SELECT bucket, records FROM flight_activity_1h WHERE %1$s
+                    UNION ALL
+                    SELECT bucket, records FROM ship_activity_1h WHERE %1$s
+                ) combined
+                GROUP BY hour
+                ORDER BY traffic_count DESC
+                """.formatted(HOUR_BUCKETS_SINCE);
+
+        String rawSql = """
                 SELECT
                     EXTRACT(HOUR FROM timestamp) as hour,
                     COUNT(*) as traffic_count
@@ -482,7 +578,8 @@ public class AnalyticsDashboardService {
                 ORDER BY traffic_count DESC
                 """;
 
-        return jdbcTemplate.queryForList(sql, startDate, startDate);
+        return aggregateQueries.queryList(List.of(FLIGHT_ACTIVITY_1H, SHIP_ACTIVITY_1H), aggregateSql, rawSql,
+                startDate, startDate);
     }
 
     private Map<String, Object> getGrowthMetrics(LocalDateTime startDate) {
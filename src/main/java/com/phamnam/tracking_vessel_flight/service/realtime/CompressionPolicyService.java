@@ -0,0 +1,379 @@
+package com.phamnam.tracking_vessel_flight.service.realtime;
+
+import com.phamnam.tracking_vessel_flight.config.TimescaleConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Warm storage tier: native TimescaleDB compression of the tracking tables.
+ *
+ * Chunks older than the hot-storage TTL are compressed by a Timescale
+ * compression policy, segmented by entity (hexident / mmsi) and ordered by
+ * timestamp DESC, so a history query filtering on the entity and a time
+ * range only decompresses the matching segments of the matching chunks.
+ * This service:
+ * - applies the compression settings and policy on startup
+ * - compresses chunks the policy has not reached yet (catch-up)
+ * - reports policy job health and per-chunk compression ratios
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CompressionPolicyService {
+
+    @Value("${app.storage.compression.enabled:true}")
+    private boolean compressionEnabled = true;
+
+    @Value("${app.storage.compression.compress-after-hours:${tracking.data.hot-storage.ttl-hours:24}}")
+    private int compressAfterHours = 24;
+
+    @Value("${app.storage.compression.max-chunks-per-run:4}")
+    private int maxChunksPerRun = 4;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TimescaleConfig timescaleConfig;
+    private final PlatformTransactionManager transactionManager;
+
+    static final List<CompressedTable> COMPRESSED_TABLES = List.of(
+            new CompressedTable("flight_tracking", "hexident", "timestamp DESC"),
+            new CompressedTable("ship_tracking", "mmsi", "timestamp DESC"));
+
+    record CompressedTable(String table, String segmentBy, String orderBy) {
+    }
+
+    /**
+     * One chunk with its compressed and uncompressed size; sizes are null
+     * while the chunk is uncompressed
+     */
+    public record ChunkCompression(String chunk, LocalDateTime rangeStart, LocalDateTime rangeEnd,
+            boolean compressed, Long beforeBytes, Long afterBytes) {
+
+        public Double ratio() {
+            if (!compressed || beforeBytes == null || afterBytes == null || afterBytes <= 0) {
+                return null;
+            }
+            return (double) beforeBytes / afterBytes;
+        }
+    }
+
+    /**
+     * State of one compression policy job, as reported by job_stats
+     */
+    public record PolicyStatus(String table, Integer jobId, String compressAfter, String lastRunStatus,
+            LocalDateTime lastSuccessfulFinish, LocalDateTime nextStart, long totalRuns, long totalFailures) {
+    }
+
+    enum PolicyHealth {
+        HEALTHY, MISSING, FAILING, OVERDUE
+    }
+
+    private volatile boolean compressionReady;
+    private final AtomicLong totalChunksCompressed = new AtomicLong(0);
+    private final AtomicLong totalCatchUpRuns = new AtomicLong(0);
+    private final AtomicLong totalPolicyRepairs = new AtomicLong(0);
+    private LocalDateTime lastCatchUpTime = null;
+
+    // ============================================================================
+    // POLICY SETUP
+    // ============================================================================
+
+    /**
+     * Apply compression settings and (re-)create the compression policy so a
+     * changed compress-after setting takes effect. Runs once the hypertables
+     * exist.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeCompression() {
+        if (!compressionEnabled || !timescaleConfig.isTimescaleEnabled()) {
+            log.info("Native compression of tracking tables disabled");
+            return;
+        }
+        int applied = 0;
+        for (CompressedTable table : COMPRESSED_TABLES) {
+            try {
+                if (!isHypertable(table.table())) {
+                    log.warn("⚠️ {} is not a hypertable, compression policy not applied", table.table());
+                    continue;
+                }
+                ensureCompressionSettings(table);
+                newTransaction().executeWithoutResult(status -> {
+                    jdbcTemplate.queryForList("SELECT remove_compression_policy(?::regclass, if_exists => true)",
+                            table.table());
+                    jdbcTemplate.queryForList(
+                            "SELECT add_compression_policy(?::regclass, make_interval(hours => ?))",
+                            table.table(), compressAfterHours);
+                });
+                applied++;
+            } catch (Exception e) {
+                log.warn("⚠️ Failed to apply compression policy for {}: {}", table.table(), e.getMessage());
+            }
+        }
+        compressionReady = applied > 0;
+        if (compressionReady) {
+            log.info("🗜️ Compression policies applied to {} tables: compress after {} hours", applied,
+                    compressAfterHours);
+        }
+    }
+
+    /**
+     * Segmenting by entity is what lets history queries skip decompressing
+     * other entities; the settings can only change while no chunk is
+     * compressed, so a mismatch on a populated table is only reported
+     */
+    private void ensureCompressionSettings(CompressedTable table) {
+        List<String> segmentBy = jdbcTemplate.queryForList("""
+                SELECT attname FROM timescaledb_information.compression_settings
+                WHERE hypertable_name = ? AND segmentby_column_index IS NOT NULL
+                ORDER BY segmentby_column_index
+                """, String.class, table.table());
+        if (String.join(",", segmentBy).equals(table.segmentBy())) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute("ALTER TABLE " + table.table() + " SET (timescaledb.compress, "
+                    + "timescaledb.compress_segmentby = '" + table.segmentBy() + "', "
+                    + "timescaledb.compress_orderby = '" + table.orderBy() + "')");
+            log.info("🗜️ {} compression set to segmentby {}, orderby {}", table.table(), table.segmentBy(),
+                    table.orderBy());
+        } catch (Exception e) {
+            log.warn("⚠️ {} is segmented by [{}] instead of {} and could not be changed: {}", table.table(),
+                    String.join(",", segmentBy), table.segmentBy(), e.getMessage());
+        }
+    }
+
+    // ============================================================================
+    // CATCH-UP COMPRESSION
+    // ============================================================================
+
+    /**
+     * Compress chunks past the compress-after window that the policy has not
+     * compressed yet (policy job failed, was paused, or is still pending),
+     * oldest first and bounded per run. Missing policies are re-created.
+     */
+    public Map<String, Object> compressEligibleChunks() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (!compressionReady) {
+            result.put("status", "compression disabled");
+            return result;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(compressAfterHours);
+        int budget = maxChunksPerRun;
+        for (CompressedTable table : COMPRESSED_TABLES) {
+            int compressed = 0;
+            try {
+                repairPolicyIfMissing(table);
+                for (String chunk : uncompressedChunksBefore(table.table(), cutoff)) {
+                    if (budget <= 0) {
+                        break;
+                    }
+                    budget--;
+                    long start = System.currentTimeMillis();
+                    // One transaction per chunk: a long compression holds locks on its chunk only
+                    newTransaction().executeWithoutResult(status -> jdbcTemplate.queryForList(
+                            "SELECT compress_chunk(?::regclass, if_not_compressed => true)", chunk));
+                    compressed++;
+                    log.info("🗜️ Compressed {} in {}ms", chunk, System.currentTimeMillis() - start);
+                }
+            } catch (Exception e) {
+                log.error("Error compressing {} chunks: {}", table.table(), e.getMessage(), e);
+            }
+            totalChunksCompressed.addAndGet(compressed);
+            result.put(table.table(), compressed);
+        }
+        totalCatchUpRuns.incrementAndGet();
+        lastCatchUpTime = LocalDateTime.now();
+        result.put("cutoff", cutoff);
+        return result;
+    }
+
+    private void repairPolicyIfMissing(CompressedTable table) {
+        if (policyStatus(table.table()).jobId() != null) {
+            return;
+        }
+        log.warn("⚠️ Compression policy for {} is missing, re-creating it", table.table());
+        jdbcTemplate.queryForList(
+                "SELECT add_compression_policy(?::regclass, make_interval(hours => ?), if_not_exists => true)",
+                table.table(), compressAfterHours);
+        totalPolicyRepairs.incrementAndGet();
+    }
+
+    private List<String> uncompressedChunksBefore(String table, LocalDateTime cutoff) {
+        return jdbcTemplate.queryForList("""
+                SELECT format('%I.%I', chunk_schema, chunk_name) FROM timescaledb_information.chunks
+                WHERE hypertable_name = ? AND NOT is_compressed AND range_end <= ?
+                ORDER BY range_start
+                """, String.class, table, cutoff);
+    }
+
+    // ============================================================================
+    // MONITORING
+    // ============================================================================
+
+    private PolicyStatus policyStatus(String table) {
+        List<PolicyStatus> jobs = jdbcTemplate.query("""
+                SELECT j.job_id, j.config ->> 'compress_after' AS compress_after, s.last_run_status,
+                       s.last_successful_finish, s.next_start, s.total_runs, s.total_failures
+                FROM timescaledb_information.jobs j
+                LEFT JOIN timescaledb_information.job_stats s ON s.job_id = j.job_id
+                WHERE j.proc_name = 'policy_compression' AND j.hypertable_name = ?
+                """, (rs, rowNum) -> new PolicyStatus(table, rs.getInt("job_id"), rs.getString("compress_after"),
+                rs.getString("last_run_status"), localDateTime(rs, "last_successful_finish"),
+                localDateTime(rs, "next_start"), rs.getLong("total_runs"), rs.getLong("total_failures")), table);
+        return jobs.isEmpty() ? new PolicyStatus(table, null, null, null, null, null, 0, 0) : jobs.get(0);
+    }
+
+    /**
+     * A policy is overdue when its next run is more than one compress-after
+     * window in the past, i.e. the job scheduler is not picking it up
+     */
+    static PolicyHealth evaluate(PolicyStatus status, LocalDateTime now, Duration compressAfter) {
+        if (status.jobId() == null) {
+            return PolicyHealth.MISSING;
+        }
+        if ("Failed".equalsIgnoreCase(status.lastRunStatus())) {
+            return PolicyHealth.FAILING;
+        }
+        if (status.nextStart() != null && status.nextStart().plus(compressAfter).isBefore(now)) {
+            return PolicyHealth.OVERDUE;
+        }
+        return PolicyHealth.HEALTHY;
+    }
+
+    /**
+     * Per-chunk compression from chunk_compression_stats, oldest chunk first
+     */
+    public List<ChunkCompression> getChunkCompression(String table) {
+        requireCompressedTable(table);
+        return jdbcTemplate.query("""
+                SELECT format('%I.%I', c.chunk_schema, c.chunk_name) AS chunk, c.range_start, c.range_end,
+                       c.is_compressed, s.before_compression_total_bytes, s.after_compression_total_bytes
+                FROM timescaledb_information.chunks c
+                LEFT JOIN chunk_compression_stats(?::regclass) s
+                  ON s.chunk_schema = c.chunk_schema AND s.chunk_name = c.chunk_name
+                WHERE c.hypertable_name = ?
+                ORDER BY c.range_start
+                """, (rs, rowNum) -> new ChunkCompression(rs.getString("chunk"), localDateTime(rs, "range_start"),
+                localDateTime(rs, "range_end"), rs.getBoolean("is_compressed"),
+                nullableLong(rs, "before_compression_total_bytes"),
+                nullableLong(rs, "after_compression_total_bytes")), table, table);
+    }
+
+    /**
+     * Totals over the compressed chunks of one table
+     */
+    static Map<String, Object> summarize(List<ChunkCompression> chunks) {
+        long compressedChunks = 0;
+        long beforeBytes = 0;
+        long afterBytes = 0;
+        for (ChunkCompression chunk : chunks) {
+            if (chunk.ratio() != null) {
+                compressedChunks++;
+                beforeBytes += chunk.beforeBytes();
+                afterBytes += chunk.afterBytes();
+            }
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("totalChunks", chunks.size());
+        summary.put("compressedChunks", compressedChunks);
+        summary.put("uncompressedChunks", chunks.size() - compressedChunks);
+        summary.put("beforeCompressionBytes", beforeBytes);
+        summary.put("afterCompressionBytes", afterBytes);
+        summary.put("compressionRatio", afterBytes > 0 ? Math.round(100.0 * beforeBytes / afterBytes) / 100.0 : null);
+        return summary;
+    }
+
+    /**
+     * Policy health and compression totals per table
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", compressionEnabled);
+        stats.put("ready", compressionReady);
+        stats.put("compressAfterHours", compressAfterHours);
+        stats.put("maxChunksPerRun", maxChunksPerRun);
+        stats.put("totalChunksCompressed", totalChunksCompressed.get());
+        stats.put("totalCatchUpRuns", totalCatchUpRuns.get());
+        stats.put("totalPolicyRepairs", totalPolicyRepairs.get());
+        stats.put("lastCatchUpTime", lastCatchUpTime);
+        if (!compressionReady) {
+            return stats;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Map<String, Object>> tables = new ArrayList<>();
+        for (CompressedTable table : COMPRESSED_TABLES) {
+            Map<String, Object> tableStats = new LinkedHashMap<>();
+            tableStats.put("table", table.table());
+            tableStats.put("segmentBy", table.segmentBy());
+            try {
+                PolicyStatus policy = policyStatus(table.table());
+                PolicyHealth health = evaluate(policy, now, Duration.ofHours(compressAfterHours));
+                if (health != PolicyHealth.HEALTHY) {
+                    log.warn("⚠️ Compression policy for {} is {}", table.table(), health);
+                }
+                tableStats.put("policyHealth", health);
+                tableStats.put("policy", policy);
+                tableStats.putAll(summarize(getChunkCompression(table.table())));
+            } catch (Exception e) {
+                tableStats.put("error", e.getMessage());
+            }
+            tables.add(tableStats);
+        }
+        stats.put("tables", tables);
+        return stats;
+    }
+
+    // ============================================================================
+    // HELPERS
+    // ============================================================================
+
+    private void requireCompressedTable(String table) {
+        if (COMPRESSED_TABLES.stream().noneMatch(compressed -> compressed.table().equals(table))) {
+            throw new IllegalArgumentException("Not a compressed tracking table: " + table);
+        }
+    }
+
+    private boolean isHypertable(String table) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM timescaledb_information.hypertables WHERE hypertable_name = ?",
+                Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    private static LocalDateTime localDateTime(ResultSet rs, String column) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp(column);
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    private static Long nullableLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+}
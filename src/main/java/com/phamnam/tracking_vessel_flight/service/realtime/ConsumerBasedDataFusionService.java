@@ -38,6 +38,9 @@ import java.util.concurrent.TimeUnit;
  * - Better scalability (multiple fusion consumers)
  * - Raw data preservation for other use cases
  * - Independent processing of different data sources
+ *
+ * When app.kafka.streams.fusion.enabled=true the listeners below are not
+ * started and {@link KafkaStreamsFusionService} performs fusion instead.
  */
 @Service
 @RequiredArgsConstructor
@@ -86,7 +89,7 @@ public class ConsumerBasedDataFusionService {
     // AIRCRAFT DATA CONSUMERS
     // ============================================================================
 
-    @KafkaListener(topics = "${app.kafka.topics.raw-flightradar24-data}", groupId = "aircraft-fusion-consumer-group", containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topics = "${app.kafka.topics.raw-flightradar24-data}", groupId = "aircraft-fusion-consumer-group", containerFactory = "kafkaListenerContainerFactory", autoStartup = "#{!${app.kafka.streams.fusion.enabled:false}}")
     public void consumeFlightRadar24Data(
             @Payload(required = false) RawAircraftData rawData,
             @Header(KafkaHeaders.RECEIVED_KEY) String key,
@@ -102,7 +105,7 @@ public class ConsumerBasedDataFusionService {
         processRawAircraftData("flightradar24", key, rawData, acknowledgment);
     }
 
-    @KafkaListener(topics = "${app.kafka.topics.raw-adsbexchange-data}", groupId = "aircraft-fusion-consumer-group", containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topics = "${app.kafka.topics.raw-adsbexchange-data}", groupId = "aircraft-fusion-consumer-group", containerFactory = "kafkaListenerContainerFactory", autoStartup = "#{!${app.kafka.streams.fusion.enabled:false}}")
     public void consumeAdsbExchangeData(
             @Payload(required = false) RawAircraftData rawData,
             @Header(KafkaHeaders.RECEIVED_KEY) String key,
@@ -122,7 +125,7 @@ public class ConsumerBasedDataFusionService {
     // VESSEL DATA CONSUMERS
     // ============================================================================
 
-    @KafkaListener(topics = "${app.kafka.topics.raw-marinetraffic-data}", groupId = "vessel-fusion-consumer-group", containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topics = "${app.kafka.topics.raw-marinetraffic-data}", groupId = "vessel-fusion-consumer-group", containerFactory = "kafkaListenerContainerFactory", autoStartup = "#{!${app.kafka.streams.fusion.enabled:false}}")
     public void consumeMarineTrafficData(
             @Payload(required = false) RawVesselData rawData,
             @Header(KafkaHeaders.RECEIVED_KEY) String key,
@@ -138,7 +141,7 @@ public class ConsumerBasedDataFusionService {
         processRawVesselData("marinetraffic", key, rawData, acknowledgment);
     }
 
-    @KafkaListener(topics = "${app.kafka.topics.raw-vesselfinder-data}", groupId = "vessel-fusion-consumer-group", containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topics = "${app.kafka.topics.raw-vesselfinder-data}", groupId = "vessel-fusion-consumer-group", containerFactory = "kafkaListenerContainerFactory", autoStartup = "#{!${app.kafka.streams.fusion.enabled:false}}")
     public void consumeVesselFinderData(
             @Payload(required = false) RawVesselData rawData,
             @Header(KafkaHeaders.RECEIVED_KEY) String key,
@@ -154,7 +157,7 @@ public class ConsumerBasedDataFusionService {
         processRawVesselData("vesselfinder", key, rawData, acknowledgment);
     }
 
-    @KafkaListener(topics = "${app.kafka.topics.raw-chinaports-data}", groupId = "vessel-fusion-consumer-group", containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topics = "${app.kafka.topics.raw-chinaports-data}", groupId = "vessel-fusion-consumer-group", containerFactory = "kafkaListenerContainerFactory", autoStartup = "#{!${app.kafka.streams.fusion.enabled:false}}")
     public void consumeChinaportsData(
             @Payload(required = false) RawVesselData rawData,
             @Header(KafkaHeaders.RECEIVED_KEY) String key,
@@ -170,7 +173,7 @@ public class ConsumerBasedDataFusionService {
         processRawVesselData("chinaports", key, rawData, acknowledgment);
     }
 
-    @KafkaListener(topics = "${app.kafka.topics.raw-marinetrafficv2-data}", groupId = "vessel-fusion-consumer-group", containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topics = "${app.kafka.topics.raw-marinetrafficv2-data}", groupId = "vessel-fusion-consumer-group", containerFactory = "kafkaListenerContainerFactory", autoStartup = "#{!${app.kafka.streams.fusion.enabled:false}}")
     public void consumeMarineTrafficV2Data(
             @Payload(required = false) RawVesselData rawData,
             @Header(KafkaHeaders.RECEIVED_KEY) String key,
@@ -415,7 +418,7 @@ public class ConsumerBasedDataFusionService {
     /**
      * Convert RawAircraftData to AircraftTrackingRequest
      */
-    private AircraftTrackingRequest convertToAircraftTrackingRequest(RawAircraftData rawData) {
+    static AircraftTrackingRequest convertToAircraftTrackingRequest(RawAircraftData rawData) {
         return AircraftTrackingRequest.builder()
                 .hexident(rawData.getHexident())
                 .callsign(rawData.getCallsign())
@@ -439,7 +442,7 @@ public class ConsumerBasedDataFusionService {
     /**
      * Convert RawVesselData to VesselTrackingRequest
      */
-    private VesselTrackingRequest convertToVesselTrackingRequest(RawVesselData rawData) {
+    static VesselTrackingRequest convertToVesselTrackingRequest(RawVesselData rawData) {
         return VesselTrackingRequest.builder()
                 .mmsi(rawData.getMmsi())
                 .imo(rawData.getImo())
@@ -471,7 +474,7 @@ public class ConsumerBasedDataFusionService {
     /**
      * Validate aircraft data
      */
-    private boolean isValidAircraftData(RawAircraftData data) {
+    static boolean isValidAircraftData(RawAircraftData data) {
         return data != null &&
                 data.getHexident() != null &&
                 data.getLatitude() != null &&
@@ -483,7 +486,7 @@ public class ConsumerBasedDataFusionService {
     /**
      * Validate vessel data
      */
-    private boolean isValidVesselData(RawVesselData data) {
+    static boolean isValidVesselData(RawVesselData data) {
         return data != null &&
                 data.getMmsi() != null &&
                 data.hasValidPosition() &&
@@ -0,0 +1,105 @@
+package com.phamnam.tracking_vessel_flight.service.realtime;
+
+import com.phamnam.tracking_vessel_flight.config.TimescaleConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs a query against the continuous aggregates created by
+ * db/05-continuous-aggregates.sql, falling back to the equivalent raw-table
+ * query when TimescaleDB is disabled, a view is missing or the aggregate
+ * query fails. Both queries must take the same parameters.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ContinuousAggregateQueries {
+
+    // Continuous aggregates created by db/05-continuous-aggregates.sql
+    public static final String FLIGHT_ACTIVITY_1M = "flight_activity_1m";
+    public static final String SHIP_ACTIVITY_1M = "ship_activity_1m";
+    public static final String FLIGHT_ACTIVITY_1H = "flight_activity_1h";
+    public static final String SHIP_ACTIVITY_1H = "ship_activity_1h";
+    public static final String FLIGHT_GRID_DENSITY_1M = "flight_grid_density_1m";
+    public static final String SHIP_GRID_DENSITY_1M = "ship_grid_density_1m";
+    public static final String FLIGHT_GRID_DENSITY_1H = "flight_grid_density_1h";
+    public static final String SHIP_GRID_DENSITY_1H = "ship_grid_density_1h";
+
+    // Windows start at the bucket containing the cutoff, so an aggregate window
+    // is at most one bucket wider than the raw-table equivalent
+    public static final String MINUTE_BUCKETS_SINCE = "bucket >= time_bucket(INTERVAL '1 minute', ?::timestamp)";
+    public static final String HOUR_BUCKETS_SINCE = "bucket >= time_bucket(INTERVAL '1 hour', ?::timestamp)";
+
+    private static final long AGGREGATE_RECHECK_INTERVAL_MS = 300000; // 5 minutes
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TimescaleConfig timescaleConfig;
+
+    private volatile Set<String> continuousAggregates = Set.of();
+    private volatile long continuousAggregatesCheckedAt;
+
+    /**
+     * True when TimescaleDB is enabled and every view exists; the view list is
+     * re-read periodically since the init scripts run after startup
+     */
+    public boolean useAggregates(List<String> views) {
+        if (!timescaleConfig.isTimescaleEnabled()) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now - continuousAggregatesCheckedAt > AGGREGATE_RECHECK_INTERVAL_MS) {
+            continuousAggregatesCheckedAt = now;
+            continuousAggregates = loadContinuousAggregates();
+        }
+        return continuousAggregates.containsAll(views);
+    }
+
+    public int queryCount(String view, String aggregateSql, String rawSql, Object... params) {
+        if (useAggregates(List.of(view))) {
+            try {
+                Integer count = jdbcTemplate.queryForObject(aggregateSql, Integer.class, params);
+                return count != null ? count : 0;
+            } catch (DataAccessException e) {
+                onAggregateFailure(List.of(view), e);
+            }
+        }
+        Integer count = jdbcTemplate.queryForObject(rawSql, Integer.class, params);
+        return count != null ? count : 0;
+    }
+
+    public List<Map<String, Object>> queryList(List<String> views, String aggregateSql, String rawSql,
+            Object... params) {
+        if (useAggregates(views)) {
+            try {
+                return jdbcTemplate.queryForList(aggregateSql, params);
+            } catch (DataAccessException e) {
+                onAggregateFailure(views, e);
+            }
+        }
+        return jdbcTemplate.queryForList(rawSql, params);
+    }
+
+    private Set<String> loadContinuousAggregates() {
+        try {
+            return Set.copyOf(jdbcTemplate.queryForList(
+                    "SELECT view_name FROM timescaledb_information.continuous_aggregates", String.class));
+        } catch (DataAccessException e) {
+            log.debug("Continuous aggregates not available: {}", e.getMessage());
+            return Set.of();
+        }
+    }
+
+    private void onAggregateFailure(List<String> views, DataAccessException e) {
+        log.warn("⚠️ Continuous aggregate query on {} failed, falling back to raw tables: {}", views,
+                e.getMessage());
+        // Force a re-check on the next call, e.g. after a view was dropped
+        continuousAggregatesCheckedAt = 0;
+    }
+}
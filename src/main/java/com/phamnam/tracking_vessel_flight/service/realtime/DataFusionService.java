@@ -148,16 +148,62 @@ public class DataFusionService {
         return mergedData;
     }
 
+    /**
+     * Fuse the latest report of a single aircraft from each source.
+     *
+     * Applies the same priority, gap-filling, position averaging and quality
+     * rules as {@link #mergeAircraftData(Map)}, but without the in-memory
+     * deduplication cache: callers that already emit one snapshot per entity
+     * and window (e.g. the Kafka Streams fusion topology) do not need it.
+     *
+     * @return the fused record, or empty if it falls below the quality threshold
+     */
+    public Optional<AircraftTrackingRequest> fuseAircraftSnapshot(String hexident,
+            Map<String, AircraftTrackingRequest> latestBySource) {
+        List<AircraftDataPoint> dataPoints = new ArrayList<>();
+        latestBySource.forEach((source, data) -> dataPoints
+                .add(new AircraftDataPoint(data, source, LocalDateTime.now())));
+
+        AircraftTrackingRequest fused = fusionAircraftData(hexident, dataPoints, false);
+        if (fused == null || fused.getDataQuality() < qualityThreshold) {
+            return Optional.empty();
+        }
+        return Optional.of(fused);
+    }
+
+    /**
+     * Fuse the latest report of a single vessel from each source.
+     *
+     * Vessel counterpart of {@link #fuseAircraftSnapshot(String, Map)}.
+     */
+    public Optional<VesselTrackingRequest> fuseVesselSnapshot(String mmsi,
+            Map<String, VesselTrackingRequest> latestBySource) {
+        List<VesselDataPoint> dataPoints = new ArrayList<>();
+        latestBySource.forEach((source, data) -> dataPoints
+                .add(new VesselDataPoint(data, source, LocalDateTime.now())));
+
+        VesselTrackingRequest fused = fusionVesselData(mmsi, dataPoints, false);
+        if (fused == null || fused.getDataQuality() < qualityThreshold) {
+            return Optional.empty();
+        }
+        return Optional.of(fused);
+    }
+
     /**
      * Fusion algorithm for aircraft data
      */
     private AircraftTrackingRequest fusionAircraftData(String hexident, List<AircraftDataPoint> dataPoints) {
+        return fusionAircraftData(hexident, dataPoints, deduplicationEnabled);
+    }
+
+    private AircraftTrackingRequest fusionAircraftData(String hexident, List<AircraftDataPoint> dataPoints,
+            boolean deduplicate) {
         if (dataPoints.isEmpty()) {
             return null;
         }
 
         // Check cache for deduplication
-        if (deduplicationEnabled) {
+        if (deduplicate) {
             AircraftDataCache cached = aircraftCache.get(hexident);
             if (cached != null && isDuplicate(cached, dataPoints)) {
                 log.debug("Duplicate aircraft data detected for {}, skipping", hexident);
@@ -218,7 +264,9 @@ public class DataFusionService {
 
         // Update cache
         AircraftTrackingRequest fused = fusedBuilder.build();
-        aircraftCache.put(hexident, new AircraftDataCache(fused, LocalDateTime.now()));
+        if (deduplicate) {
+            aircraftCache.put(hexident, new AircraftDataCache(fused, LocalDateTime.now()));
+        }
 
         // log.debug("Fused aircraft data for {} from {} sources with quality {}",
         // hexident, dataPoints.size(), qualityScore);
@@ -230,6 +278,11 @@ public class DataFusionService {
      * Fusion algorithm for vessel data
      */
     private VesselTrackingRequest fusionVesselData(String mmsi, List<VesselDataPoint> dataPoints) {
+        return fusionVesselData(mmsi, dataPoints, deduplicationEnabled);
+    }
+
+    private VesselTrackingRequest fusionVesselData(String mmsi, List<VesselDataPoint> dataPoints,
+            boolean deduplicate) {
         // Safety check for null MMSI
         if (mmsi == null || mmsi.trim().isEmpty()) {
             log.warn("⚠️ Cannot fusion vessel data with null/empty MMSI");
@@ -246,7 +299,7 @@ public class DataFusionService {
                 dataPoints.stream().map(p -> p.source).collect(Collectors.toList()));
 
         // Check cache for deduplication
-        if (deduplicationEnabled) {
+        if (deduplicate) {
             VesselDataCache cached = vesselCache.get(mmsi);
             if (cached != null && isDuplicate(cached, dataPoints)) {
                 log.debug("⏭️ Duplicate vessel data detected for {}, skipping", mmsi);
@@ -306,7 +359,9 @@ public class DataFusionService {
 
         // Update cache
         VesselTrackingRequest fused = fusedBuilder.build();
-        vesselCache.put(mmsi, new VesselDataCache(fused, LocalDateTime.now()));
+        if (deduplicate) {
+            vesselCache.put(mmsi, new VesselDataCache(fused, LocalDateTime.now()));
+        }
 
         log.debug("✅ Fused vessel {} from {} sources with quality {} (base: {}, threshold: {})",
                 mmsi, dataPoints.size(), qualityScore,
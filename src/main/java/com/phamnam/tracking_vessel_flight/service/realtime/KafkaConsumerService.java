@@ -20,7 +20,10 @@ import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -48,6 +51,14 @@ public class KafkaConsumerService {
     // Thời gian tối thiểu giữa các batch updates (ms)
     private static final long MIN_BATCH_INTERVAL = 5000;
 
+    // Throughput counters for the batch listeners (records, polls, busy time)
+    private final AtomicLong flightBatchRecords = new AtomicLong();
+    private final AtomicLong flightBatchPolls = new AtomicLong();
+    private final AtomicLong flightBatchNanos = new AtomicLong();
+    private final AtomicLong shipBatchRecords = new AtomicLong();
+    private final AtomicLong shipBatchPolls = new AtomicLong();
+    private final AtomicLong shipBatchNanos = new AtomicLong();
+
     @KafkaListener(topics = "flight-tracking", groupId = "flight-tracking-consumer-group", containerFactory = "flightKafkaListenerContainerFactory")
     public void consumeFlightTracking(FlightTrackingRequestDTO tracking) {
         try {
@@ -62,23 +73,82 @@ public class KafkaConsumerService {
         }
     }
 
-    // Thêm phương thức mới để xử lý batch
+    /**
+     * Batch listener for flight tracking: per poll it deduplicates by aircraft,
+     * then does one bulk DB write, one pipelined Redis write and one coalesced
+     * WebSocket fan-out instead of three round trips per record
+     */
     @KafkaListener(topics = "flight-tracking-batch", groupId = "flight-tracking-batch-consumer-group", containerFactory = "batchFlightKafkaListenerContainerFactory")
     public void consumeFlightTrackingBatch(List<ConsumerRecord<String, List<FlightTrackingRequestDTO>>> records) {
-        for (ConsumerRecord<String, List<FlightTrackingRequestDTO>> record : records) {
-            List<FlightTrackingRequestDTO> batch = record.value();
+        long startNanos = System.nanoTime();
+        List<FlightTrackingRequestDTO> batch = latestFlightTrackings(records);
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            flightTrackingService.processNewTrackingDataBatch(batch);
+        } catch (Exception e) {
+            log.warn("⚠️ Bulk write of {} flight trackings failed, falling back to per-record processing: {}",
+                    batch.size(), e.getMessage());
             for (FlightTrackingRequestDTO dto : batch) {
                 try {
-                    // log.info("Processing record: [{}]", dto);
-                    trackingCacheService.cacheFlightTracking(dto);
                     flightTrackingService.processNewTrackingData(dto, null);
-                    aircraftNotificationService.sendAircraftUpdate(dto);
-                } catch (Exception e) {
-                    log.error("Error processing record", e);
+                } catch (Exception recordException) {
+                    log.error("Error processing record", recordException);
+                }
+            }
+        }
+
+        try {
+            trackingCacheService.cacheFlightTrackings(batch);
+        } catch (Exception e) {
+            log.error("Error caching flight tracking batch", e);
+        }
+        try {
+            aircraftNotificationService.sendAircraftUpdates(batch);
+            aircraftNotificationService.sendBatchUpdatesToAllAreas();
+        } catch (Exception e) {
+            log.error("Error sending aircraft updates for batch", e);
+        }
+
+        recordBatch(flightBatchRecords, flightBatchPolls, flightBatchNanos, batch.size(), startNanos);
+    }
+
+    /**
+     * Flatten a poll and keep only the newest record per aircraft, so an
+     * aircraft reported several times in one poll is written once
+     */
+    private List<FlightTrackingRequestDTO> latestFlightTrackings(
+            List<ConsumerRecord<String, List<FlightTrackingRequestDTO>>> records) {
+        Map<Object, FlightTrackingRequestDTO> latest = new LinkedHashMap<>();
+        for (ConsumerRecord<String, List<FlightTrackingRequestDTO>> record : records) {
+            if (record.value() == null) {
+                continue;
+            }
+            for (FlightTrackingRequestDTO dto : record.value()) {
+                if (dto == null) {
+                    continue;
                 }
+                Object key = dto.getHexident() != null ? dto.getHexident()
+                        : dto.getId() != null ? dto.getId() : new Object();
+                latest.merge(key, dto, (current, candidate) -> isNewer(candidate.getUpdateTime(),
+                        current.getUpdateTime()) ? candidate : current);
             }
         }
-        aircraftNotificationService.sendBatchUpdatesToAllAreas();
+        return new ArrayList<>(latest.values());
+    }
+
+    private static boolean isNewer(LocalDateTime candidate, LocalDateTime current) {
+        return current == null || (candidate != null && !candidate.isBefore(current));
+    }
+
+    private void recordBatch(AtomicLong records, AtomicLong polls, AtomicLong nanos, int size, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        records.addAndGet(size);
+        polls.incrementAndGet();
+        nanos.addAndGet(elapsed);
+        log.debug("Processed batch of {} records in {} ms", size, elapsed / 1_000_000);
     }
 
     private void checkAndTriggerBatchUpdate() {
@@ -162,18 +232,56 @@ public class KafkaConsumerService {
             return;
         }
 
-        log.info("Received batch of {} ship tracking updates", trackings.size());
+        long startNanos = System.nanoTime();
 
-        // Xử lý từng item trong batch
+        // Keep only the newest position per vessel within this poll
+        Map<String, ShipTrackingRequest> latest = new LinkedHashMap<>();
         for (ShipTrackingRequest tracking : trackings) {
-            try {
-                processShipTrackingData(tracking);
-            } catch (Exception e) {
-                log.error("Error processing ship tracking in batch", e);
+            if (tracking == null || tracking.getMmsi() == null) {
+                continue;
+            }
+            latest.merge(tracking.getMmsi(), tracking, (current, candidate) -> isNewer(candidate.getTimestamp(),
+                    current.getTimestamp()) ? candidate : current);
+        }
+        List<ShipTrackingRequest> batch = new ArrayList<>(latest.values());
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        log.info("Received batch of {} ship tracking updates ({} after dedupe)", trackings.size(), batch.size());
+
+        try {
+            trackingCacheService.cacheShipTrackings(batch);
+        } catch (Exception e) {
+            log.error("Error caching ship tracking batch", e);
+        }
+
+        // One lookup for all ships in the poll, then one bulk write for their positions
+        Map<String, Long> shipIds = findOrCreateShipsByMmsi(latest.keySet());
+        Map<Long, ShipTrackingRequest> trackingByShipId = new LinkedHashMap<>();
+        for (ShipTrackingRequest tracking : batch) {
+            Long shipId = shipIds.get(tracking.getMmsi());
+            if (shipId != null) {
+                trackingByShipId.put(shipId, tracking);
+            } else {
+                log.warn("Could not find/create ship for MMSI: {}, skipping position", tracking.getMmsi());
             }
         }
+        try {
+            shipTrackingService.processNewTrackingDataBatch(trackingByShipId);
+        } catch (Exception e) {
+            log.warn("⚠️ Bulk write of {} ship trackings failed, falling back to per-vessel processing: {}",
+                    trackingByShipId.size(), e.getMessage());
+            trackingByShipId.forEach((shipId, tracking) -> {
+                try {
+                    persistShipTracking(tracking, shipId);
+                } catch (Exception recordException) {
+                    log.error("Error processing ship tracking in batch", recordException);
+                }
+            });
+        }
 
-        log.info("Processed batch of {} ship tracking updates", trackings.size());
+        recordBatch(shipBatchRecords, shipBatchPolls, shipBatchNanos, batch.size(), startNanos);
     }
 
     private void processShipTrackingData(ShipTrackingRequest tracking) {
@@ -183,31 +291,7 @@ public class KafkaConsumerService {
 
             // Approach 1: Try to find ship by MMSI and process tracking data
             // This will automatically create voyage if needed
-            Long shipId = findOrCreateShipByMmsi(tracking.getMmsi());
-            if (shipId != null) {
-                try {
-                    shipTrackingService.processNewTrackingData(shipId, tracking, null);
-                    log.debug("Successfully processed ship tracking for MMSI: {} (Ship ID: {})", tracking.getMmsi(),
-                            shipId);
-                } catch (Exception serviceException) {
-                    // Check if this is a database constraint violation
-                    if (databaseConstraintErrorHandler.isConstraintViolation(serviceException)) {
-                        // Handle constraint violation gracefully
-                        databaseConstraintErrorHandler.handleConstraintViolation(serviceException,
-                                tracking.getMmsi(), "ship-tracking");
-                        log.info("🔄 Duplicate ship tracking for MMSI {} ignored - entity already exists",
-                                tracking.getMmsi());
-                    } else {
-                        // Re-throw non-constraint exceptions for normal error handling
-                        throw serviceException;
-                    }
-                }
-            } else {
-                // Approach 2: If ship doesn't exist, create a minimal one and process
-                log.warn("Could not find/create ship for MMSI: {}, creating minimal record", tracking.getMmsi());
-                // This approach requires additional implementation
-                throw new RuntimeException("Ship creation not implemented yet for MMSI: " + tracking.getMmsi());
-            }
+            persistShipTracking(tracking, findOrCreateShipByMmsi(tracking.getMmsi()));
 
         } catch (Exception e) {
             log.error("Error processing ship tracking data for MMSI: {}, voyage ID: {}",
@@ -216,6 +300,65 @@ public class KafkaConsumerService {
         }
     }
 
+    private void persistShipTracking(ShipTrackingRequest tracking, Long shipId) {
+        if (shipId != null) {
+            try {
+                shipTrackingService.processNewTrackingData(shipId, tracking, null);
+                log.debug("Successfully processed ship tracking for MMSI: {} (Ship ID: {})", tracking.getMmsi(),
+                        shipId);
+            } catch (Exception serviceException) {
+                // Check if this is a database constraint violation
+                if (databaseConstraintErrorHandler.isConstraintViolation(serviceException)) {
+                    // Handle constraint violation gracefully
+                    databaseConstraintErrorHandler.handleConstraintViolation(serviceException,
+                            tracking.getMmsi(), "ship-tracking");
+                    log.info("🔄 Duplicate ship tracking for MMSI {} ignored - entity already exists",
+                            tracking.getMmsi());
+                } else {
+                    // Re-throw non-constraint exceptions for normal error handling
+                    throw serviceException;
+                }
+            }
+        } else {
+            // Approach 2: If ship doesn't exist, create a minimal one and process
+            log.warn("Could not find/create ship for MMSI: {}, creating minimal record", tracking.getMmsi());
+            // This approach requires additional implementation
+            throw new RuntimeException("Ship creation not implemented yet for MMSI: " + tracking.getMmsi());
+        }
+    }
+
+    /**
+     * Bulk variant of {@link #findOrCreateShipByMmsi}: one query for the whole
+     * batch and one save for the missing ships. Falls back to the per-MMSI
+     * path if the bulk save races with another consumer.
+     */
+    private Map<String, Long> findOrCreateShipsByMmsi(Collection<String> mmsis) {
+        Map<String, Long> shipIds = new HashMap<>();
+        try {
+            shipRepository.findByMmsiIn(mmsis).forEach(ship -> shipIds.putIfAbsent(ship.getMmsi(), ship.getId()));
+
+            List<Ship> newShips = mmsis.stream()
+                    .filter(mmsi -> !shipIds.containsKey(mmsi))
+                    .map(mmsi -> Ship.builder()
+                            .mmsi(mmsi)
+                            .name("Unknown Vessel " + mmsi)
+                            .isActive(true)
+                            .dataSource("Kafka Consumer")
+                            .build())
+                    .toList();
+            if (!newShips.isEmpty()) {
+                log.info("Creating {} new ships from batch", newShips.size());
+                shipRepository.saveAll(newShips).forEach(ship -> shipIds.put(ship.getMmsi(), ship.getId()));
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Bulk ship resolution failed, resolving individually: {}", e.getMessage());
+            for (String mmsi : mmsis) {
+                shipIds.computeIfAbsent(mmsi, this::findOrCreateShipByMmsi);
+            }
+        }
+        return shipIds;
+    }
+
     private void processShipTrackingDTOData(ShipTrackingRequestDTO tracking) {
         try {
             // Convert DTO to internal request format
@@ -245,10 +388,7 @@ public class KafkaConsumerService {
     private Long findOrCreateShipByMmsi(String mmsi) {
         try {
             // Try to find existing ship by MMSI
-            Ship ship = shipRepository.findAll().stream()
-                    .filter(s -> mmsi.equals(s.getMmsi()))
-                    .findFirst()
-                    .orElse(null);
+            Ship ship = shipRepository.findByMmsi(mmsi).orElse(null);
 
             if (ship != null) {
                 log.debug("Found existing ship with MMSI: {} (ID: {})", mmsi, ship.getId());
@@ -273,10 +413,7 @@ public class KafkaConsumerService {
                 if (databaseConstraintErrorHandler.isConstraintViolation(saveException)) {
                     log.info("🔄 Ship with MMSI {} already exists (race condition), attempting to find it", mmsi);
                     // Try to find the ship again (race condition case)
-                    ship = shipRepository.findAll().stream()
-                            .filter(s -> mmsi.equals(s.getMmsi()))
-                            .findFirst()
-                            .orElse(null);
+                    ship = shipRepository.findByMmsi(mmsi).orElse(null);
 
                     if (ship != null) {
                         log.info("Found existing ship after constraint violation for MMSI: {} (ID: {})", mmsi,
@@ -304,11 +441,24 @@ public class KafkaConsumerService {
         stats.put("batchThreshold", BATCH_THRESHOLD);
         stats.put("minBatchInterval", MIN_BATCH_INTERVAL);
         stats.put("timeSinceLastBatch", System.currentTimeMillis() - lastBatchUpdateTime.get());
+        stats.put("flightBatch", batchStatistics(flightBatchRecords, flightBatchPolls, flightBatchNanos));
+        stats.put("shipBatch", batchStatistics(shipBatchRecords, shipBatchPolls, shipBatchNanos));
         stats.put("status", "RUNNING");
 
         return stats;
     }
 
+    private Map<String, Object> batchStatistics(AtomicLong records, AtomicLong polls, AtomicLong nanos) {
+        Map<String, Object> stats = new HashMap<>();
+        long busyNanos = nanos.get();
+        stats.put("records", records.get());
+        stats.put("polls", polls.get());
+        stats.put("avgRecordsPerPoll", polls.get() > 0 ? (double) records.get() / polls.get() : 0.0);
+        // Throughput while the listener is busy, i.e. the ceiling a single thread can sustain
+        stats.put("recordsPerSecond", busyNanos > 0 ? records.get() * 1_000_000_000.0 / busyNanos : 0.0);
+        return stats;
+    }
+
     public boolean isHealthy() {
         // Kiểm tra xem consumer có hoạt động bình thường không
         long timeSinceLastUpdate = System.currentTimeMillis() - lastBatchUpdateTime.get();
@@ -318,6 +468,12 @@ public class KafkaConsumerService {
 
     public void resetCounters() {
         updateCounter.set(0);
+        flightBatchRecords.set(0);
+        flightBatchPolls.set(0);
+        flightBatchNanos.set(0);
+        shipBatchRecords.set(0);
+        shipBatchPolls.set(0);
+        shipBatchNanos.set(0);
         lastBatchUpdateTime.set(System.currentTimeMillis());
         log.info("Consumer counters reset manually");
     }
@@ -0,0 +1,381 @@
+package com.phamnam.tracking_vessel_flight.service.realtime;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phamnam.tracking_vessel_flight.dto.event.AircraftPositionEvent;
+import com.phamnam.tracking_vessel_flight.dto.event.VesselPositionEvent;
+import com.phamnam.tracking_vessel_flight.dto.request.AircraftTrackingRequest;
+import com.phamnam.tracking_vessel_flight.dto.request.VesselTrackingRequest;
+import com.phamnam.tracking_vessel_flight.models.raw.RawAircraftData;
+import com.phamnam.tracking_vessel_flight.models.raw.RawVesselData;
+import com.phamnam.tracking_vessel_flight.service.kafka.TrackingKafkaProducer;
+import com.phamnam.tracking_vessel_flight.service.kafka.codec.BinarySchemaCodec;
+import com.phamnam.tracking_vessel_flight.service.kafka.codec.SchemaCodecDeserializer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.errors.LogAndContinueExceptionHandler;
+import org.apache.kafka.streams.errors.StreamsUncaughtExceptionHandler;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Suppressed;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.state.Stores;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.serializer.JsonSerde;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Kafka Streams Data Fusion Service
+ *
+ * Optional replacement for {@link ConsumerBasedDataFusionService} that runs
+ * source fusion as a Kafka Streams topology:
+ * 1. Reads the six raw per-source topics
+ * 2. Re-keys every record by hexident/MMSI so all sources of one entity land
+ * on the same partition (and therefore the same instance)
+ * 3. Keeps the latest report per source in a tumbling window backed by a
+ * persistent (RocksDB) window store
+ * 4. When the window closes, fuses the reports with {@link DataFusionService}'s
+ * rules and writes the result to the processed topics
+ *
+ * Instances sharing the application id split the partitions between them, and
+ * the default exactly_once_v2 guarantee commits state, offsets and output
+ * atomically. Enabled with app.kafka.streams.fusion.enabled=true.
+ */
+@Service
+@Slf4j
+public class KafkaStreamsFusionService {
+
+    public static final String AIRCRAFT_FUSION_STORE = "aircraft-fusion-window-store";
+    public static final String VESSEL_FUSION_STORE = "vessel-fusion-window-store";
+
+    private final DataFusionService dataFusionService;
+    private final ObjectMapper objectMapper;
+    private final BinarySchemaCodec binarySchemaCodec;
+
+    private final String rawFlightRadar24DataTopic;
+    private final String rawAdsbExchangeDataTopic;
+    private final String rawMarineTrafficDataTopic;
+    private final String rawVesselFinderDataTopic;
+    private final String rawChinaportsDataTopic;
+    private final String rawMarineTrafficV2DataTopic;
+    private final String processedAircraftDataTopic;
+    private final String processedVesselDataTopic;
+
+    @Value("${app.kafka.streams.fusion.enabled:false}")
+    private boolean streamsFusionEnabled;
+
+    @Value("${spring.kafka.bootstrap-servers}")
+    private String bootstrapServers;
+
+    @Value("${app.kafka.streams.fusion.application-id:tracking-fusion-streams}")
+    private String applicationId;
+
+    @Value("${app.kafka.streams.fusion.aircraft-window-ms:5000}")
+    private long aircraftWindowMs;
+
+    @Value("${app.kafka.streams.fusion.vessel-window-ms:10000}")
+    private long vesselWindowMs;
+
+    @Value("${app.kafka.streams.fusion.grace-period-ms:2000}")
+    private long gracePeriodMs;
+
+    @Value("${app.kafka.streams.fusion.processing-guarantee:exactly_once_v2}")
+    private String processingGuarantee;
+
+    @Value("${app.kafka.streams.fusion.num-stream-threads:2}")
+    private int numStreamThreads;
+
+    @Value("${app.kafka.streams.fusion.commit-interval-ms:1000}")
+    private long commitIntervalMs;
+
+    @Value("${app.kafka.streams.fusion.state-dir:/tmp/kafka-streams}")
+    private String stateDir;
+
+    @Value("${app.kafka.topic-config.replication-factor:1}")
+    private int replicationFactor;
+
+    private KafkaStreams kafkaStreams;
+
+    public KafkaStreamsFusionService(
+            DataFusionService dataFusionService,
+            @Qualifier("kafkaObjectMapper") ObjectMapper objectMapper,
+            BinarySchemaCodec binarySchemaCodec,
+            @Qualifier("rawFlightRadar24DataTopicName") String rawFlightRadar24DataTopic,
+            @Qualifier("rawAdsbExchangeDataTopicName") String rawAdsbExchangeDataTopic,
+            @Qualifier("rawMarineTrafficDataTopicName") String rawMarineTrafficDataTopic,
+            @Qualifier("rawVesselFinderDataTopicName") String rawVesselFinderDataTopic,
+            @Qualifier("rawChinaportsDataTopicName") String rawChinaportsDataTopic,
+            @Qualifier("rawMarineTrafficV2DataTopicName") String rawMarineTrafficV2DataTopic,
+            @Qualifier("processedAircraftDataTopicName") String processedAircraftDataTopic,
+            @Qualifier("processedVesselDataTopicName") String processedVesselDataTopic) {
+        this.dataFusionService = dataFusionService;
+        // Raw records carry computed getters (e.g. uniqueId) that are not bean properties
+        this.objectMapper = objectMapper.copy()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.binarySchemaCodec = binarySchemaCodec;
+        this.rawFlightRadar24DataTopic = rawFlightRadar24DataTopic;
+        this.rawAdsbExchangeDataTopic = rawAdsbExchangeDataTopic;
+        this.rawMarineTrafficDataTopic = rawMarineTrafficDataTopic;
+        this.rawVesselFinderDataTopic = rawVesselFinderDataTopic;
+        this.rawChinaportsDataTopic = rawChinaportsDataTopic;
+        this.rawMarineTrafficV2DataTopic = rawMarineTrafficV2DataTopic;
+        this.processedAircraftDataTopic = processedAircraftDataTopic;
+        this.processedVesselDataTopic = processedVesselDataTopic;
+    }
+
+    // ============================================================================
+    // LIFECYCLE
+    // ============================================================================
+
+    @PostConstruct
+    public void start() {
+        if (!streamsFusionEnabled) {
+            log.info("⏭️ Kafka Streams fusion disabled - ConsumerBasedDataFusionService handles fusion");
+            return;
+        }
+
+        kafkaStreams = new KafkaStreams(buildTopology(), streamsProperties());
+        kafkaStreams.setStateListener((newState, oldState) -> log.info("🔄 Kafka Streams fusion state: {} -> {}",
+                oldState, newState));
+        kafkaStreams.setUncaughtExceptionHandler(exception -> {
+            log.error("❌ Kafka Streams fusion thread failed, replacing thread: {}", exception.getMessage(),
+                    exception);
+            return StreamsUncaughtExceptionHandler.StreamThreadExceptionResponse.REPLACE_THREAD;
+        });
+        kafkaStreams.start();
+
+        log.info("✅ Kafka Streams fusion started (applicationId: {}, guarantee: {}, threads: {})",
+                applicationId, processingGuarantee, numStreamThreads);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (kafkaStreams != null) {
+            kafkaStreams.close(Duration.ofSeconds(10));
+            log.info("🛑 Kafka Streams fusion stopped");
+        }
+    }
+
+    Properties streamsProperties() {
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, processingGuarantee);
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, numStreamThreads);
+        props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, commitIntervalMs);
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir);
+        props.put(StreamsConfig.REPLICATION_FACTOR_CONFIG, replicationFactor);
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.StringSerde.class);
+        props.put(StreamsConfig.DEFAULT_DESERIALIZATION_EXCEPTION_HANDLER_CLASS_CONFIG,
+                LogAndContinueExceptionHandler.class);
+        return props;
+    }
+
+    // ============================================================================
+    // TOPOLOGY
+    // ============================================================================
+
+    /**
+     * Build the fusion topology. Kept separate from {@link #start()} so it can
+     * be exercised with TopologyTestDriver.
+     */
+    public Topology buildTopology() {
+        StreamsBuilder builder = new StreamsBuilder();
+        buildAircraftFusion(builder);
+        buildVesselFusion(builder);
+        return builder.build();
+    }
+
+    private void buildAircraftFusion(StreamsBuilder builder) {
+        Serde<AircraftTrackingRequest> requestSerde = jsonSerde(AircraftTrackingRequest.class);
+        Duration window = Duration.ofMillis(aircraftWindowMs);
+        Duration grace = Duration.ofMillis(gracePeriodMs);
+
+        aircraftSource(builder, rawFlightRadar24DataTopic, "flightradar24")
+                .merge(aircraftSource(builder, rawAdsbExchangeDataTopic, "adsbexchange"))
+                .selectKey((key, report) -> report.getHexident())
+                .groupByKey(Grouped.with("aircraft-fusion-by-hexident", Serdes.String(), requestSerde))
+                .windowedBy(TimeWindows.ofSizeAndGrace(window, grace))
+                .aggregate(AircraftFusionWindow::new,
+                        (hexident, report, fusionWindow) -> fusionWindow.add(report),
+                        Materialized.<String, AircraftFusionWindow>as(Stores.persistentTimestampedWindowStore(
+                                AIRCRAFT_FUSION_STORE, window.plus(grace), window, false))
+                                .withKeySerde(Serdes.String())
+                                .withValueSerde(jsonSerde(AircraftFusionWindow.class)))
+                .suppress(Suppressed.untilWindowCloses(Suppressed.BufferConfig.unbounded())
+                        .withName("aircraft-fusion-window-close"))
+                .toStream()
+                .map((windowedKey, fusionWindow) -> KeyValue.pair(windowedKey.key(),
+                        fuseAircraftWindow(windowedKey.key(), fusionWindow)))
+                .filter((hexident, fused) -> fused != null)
+                .mapValues(TrackingKafkaProducer::toAircraftPositionEvent)
+                .to(processedAircraftDataTopic,
+                        Produced.with(Serdes.String(), jsonSerde(AircraftPositionEvent.class)));
+    }
+
+    private void buildVesselFusion(StreamsBuilder builder) {
+        Serde<VesselTrackingRequest> requestSerde = jsonSerde(VesselTrackingRequest.class);
+        Duration window = Duration.ofMillis(vesselWindowMs);
+        Duration grace = Duration.ofMillis(gracePeriodMs);
+
+        vesselSource(builder, rawMarineTrafficDataTopic, "marinetraffic")
+                .merge(vesselSource(builder, rawVesselFinderDataTopic, "vesselfinder"))
+                .merge(vesselSource(builder, rawChinaportsDataTopic, "chinaports"))
+                .merge(vesselSource(builder, rawMarineTrafficV2DataTopic, "marinetrafficv2"))
+                .selectKey((key, report) -> report.getMmsi())
+                .groupByKey(Grouped.with("vessel-fusion-by-mmsi", Serdes.String(), requestSerde))
+                .windowedBy(TimeWindows.ofSizeAndGrace(window, grace))
+                .aggregate(VesselFusionWindow::new,
+                        (mmsi, report, fusionWindow) -> fusionWindow.add(report),
+                        Materialized.<String, VesselFusionWindow>as(Stores.persistentTimestampedWindowStore(
+                                VESSEL_FUSION_STORE, window.plus(grace), window, false))
+                                .withKeySerde(Serdes.String())
+                                .withValueSerde(jsonSerde(VesselFusionWindow.class)))
+                .suppress(Suppressed.untilWindowCloses(Suppressed.BufferConfig.unbounded())
+                        .withName("vessel-fusion-window-close"))
+                .toStream()
+                .map((windowedKey, fusionWindow) -> KeyValue.pair(windowedKey.key(),
+                        fuseVesselWindow(windowedKey.key(), fusionWindow)))
+                .filter((mmsi, fused) -> fused != null)
+                .mapValues(TrackingKafkaProducer::toVesselPositionEvent)
+                .to(processedVesselDataTopic,
+                        Produced.with(Serdes.String(), jsonSerde(VesselPositionEvent.class)));
+    }
+
+    private KStream<String, AircraftTrackingRequest> aircraftSource(StreamsBuilder builder, String topic,
+            String source) {
+        return builder.stream(topic, Consumed.with(Serdes.String(), sourceSerde(RawAircraftData.class)))
+                .filter((key, rawData) -> ConsumerBasedDataFusionService.isValidAircraftData(rawData))
+                .mapValues(rawData -> {
+                    rawData.setSource(source);
+                    return ConsumerBasedDataFusionService.convertToAircraftTrackingRequest(rawData);
+                });
+    }
+
+    private KStream<String, VesselTrackingRequest> vesselSource(StreamsBuilder builder, String topic,
+            String source) {
+        return builder.stream(topic, Consumed.with(Serdes.String(), sourceSerde(RawVesselData.class)))
+                .filter((key, rawData) -> ConsumerBasedDataFusionService.isValidVesselData(rawData))
+                .mapValues(rawData -> {
+                    rawData.setSource(source);
+                    return ConsumerBasedDataFusionService.convertToVesselTrackingRequest(rawData);
+                });
+    }
+
+    private AircraftTrackingRequest fuseAircraftWindow(String hexident, AircraftFusionWindow fusionWindow) {
+        try {
+            return dataFusionService.fuseAircraftSnapshot(hexident, fusionWindow.getLatestBySource()).orElse(null);
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to fuse aircraft {} from {} sources: {}",
+                    hexident, fusionWindow.getLatestBySource().size(), e.getMessage());
+            return null;
+        }
+    }
+
+    private VesselTrackingRequest fuseVesselWindow(String mmsi, VesselFusionWindow fusionWindow) {
+        try {
+            return dataFusionService.fuseVesselSnapshot(mmsi, fusionWindow.getLatestBySource()).orElse(null);
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to fuse vessel {} from {} sources: {}",
+                    mmsi, fusionWindow.getLatestBySource().size(), e.getMessage());
+            return null;
+        }
+    }
+
+    private <T> JsonSerde<T> jsonSerde(Class<T> type) {
+        return new JsonSerde<>(type, objectMapper).noTypeInfo().ignoreTypeHeaders();
+    }
+
+    /**
+     * Raw topics may carry binary-encoded or JSON records; read both
+     */
+    private <T> Serde<T> sourceSerde(Class<T> type) {
+        JsonSerde<T> json = jsonSerde(type);
+        return Serdes.serdeFrom(json.serializer(), new SchemaCodecDeserializer<>(binarySchemaCodec, json.deserializer()));
+    }
+
+    // ============================================================================
+    // STATUS AND MONITORING
+    // ============================================================================
+
+    public Map<String, Object> getStreamsStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("serviceName", "KafkaStreamsFusionService");
+        status.put("enabled", streamsFusionEnabled);
+        status.put("applicationId", applicationId);
+        status.put("processingGuarantee", processingGuarantee);
+        status.put("aircraftWindowMs", aircraftWindowMs);
+        status.put("vesselWindowMs", vesselWindowMs);
+        status.put("gracePeriodMs", gracePeriodMs);
+        status.put("state", kafkaStreams != null ? kafkaStreams.state().name() : "NOT_RUNNING");
+        return status;
+    }
+
+    // ============================================================================
+    // WINDOW AGGREGATES
+    // ============================================================================
+
+    /**
+     * Latest aircraft report per source within one fusion window
+     */
+    @Data
+    @NoArgsConstructor
+    public static class AircraftFusionWindow {
+        private Map<String, AircraftTrackingRequest> latestBySource = new HashMap<>();
+
+        public AircraftFusionWindow add(AircraftTrackingRequest report) {
+            latestBySource.merge(report.getSource(), report, AircraftFusionWindow::newer);
+            return this;
+        }
+
+        private static AircraftTrackingRequest newer(AircraftTrackingRequest current, AircraftTrackingRequest candidate) {
+            if (current.getTimestamp() != null && candidate.getTimestamp() != null
+                    && current.getTimestamp().isAfter(candidate.getTimestamp())) {
+                return current;
+            }
+            return candidate;
+        }
+    }
+
+    /**
+     * Latest vessel report per source within one fusion window
+     */
+    @Data
+    @NoArgsConstructor
+    public static class VesselFusionWindow {
+        private Map<String, VesselTrackingRequest> latestBySource = new HashMap<>();
+
+        public VesselFusionWindow add(VesselTrackingRequest report) {
+            latestBySource.merge(report.getSource(), report, VesselFusionWindow::newer);
+            return this;
+        }
+
+        private static VesselTrackingRequest newer(VesselTrackingRequest current, VesselTrackingRequest candidate) {
+            if (current.getTimestamp() != null && candidate.getTimestamp() != null
+                    && current.getTimestamp().isAfter(candidate.getTimestamp())) {
+                return current;
+            }
+            return candidate;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.phamnam.tracking_vessel_flight.service.realtime;
+
+import com.phamnam.tracking_vessel_flight.dto.event.AircraftPositionEvent;
+import com.phamnam.tracking_vessel_flight.dto.event.VesselPositionEvent;
+import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Live Position Store
+ *
+ * Latest position per aircraft / vessel held in memory, fed by the processed
+ * topic listeners, so map views can read live positions without a Redis
+ * round trip per entity. Entities drop out after the same inactivity
+ * thresholds TrackingCacheService uses for its active sets.
+ *
+ * Listeners are told about every accepted update (with the replaced
+ * position) and every eviction, e.g. to invalidate cached tiles.
+ */
+@Service
+@Slf4j
+public class LivePositionStore {
+
+    public record LivePosition(
+            EntityType type,
+            String id,
+            String label,
+            double latitude,
+            double longitude,
+            Double altitude,
+            Double speed,
+            Double heading,
+            String source,
+            LocalDateTime timestamp,
+            long updatedAtMillis) {
+    }
+
+    public interface UpdateListener {
+        /**
+         * @param previous replaced position, or null for a new entity
+         * @param current  new position, or null when the entity was evicted
+         */
+        void onPositionChanged(LivePosition previous, LivePosition current);
+    }
+
+    @Value("${app.live-positions.aircraft-ttl-seconds:300}")
+    private long aircraftTtlSeconds = 300;
+
+    @Value("${app.live-positions.vessel-ttl-seconds:600}")
+    private long vesselTtlSeconds = 600;
+
+    private final Clock clock;
+    private final Map<String, LivePosition> aircraft = new ConcurrentHashMap<>();
+    private final Map<String, LivePosition> vessels = new ConcurrentHashMap<>();
+    private final List<UpdateListener> listeners = new CopyOnWriteArrayList<>();
+
+    public LivePositionStore() {
+        this(Clock.systemDefaultZone());
+    }
+
+    LivePositionStore(Clock clock) {
+        this.clock = clock;
+    }
+
+    public void addUpdateListener(UpdateListener listener) {
+        listeners.add(listener);
+    }
+
+    // ============================================================================
+    // UPDATES
+    // ============================================================================
+
+    public void updateAircraft(AircraftPositionEvent event) {
+        if (event == null || event.hexident() == null) {
+            return;
+        }
+        update(EntityType.AIRCRAFT, event.hexident(), event.callsign(), event.latitude(), event.longitude(),
+                event.altitude() != null ? event.altitude().doubleValue() : null,
+                event.groundSpeed() != null ? event.groundSpeed().doubleValue() : null,
+                event.track() != null ? event.track().doubleValue() : null,
+                event.source(), event.timestamp());
+    }
+
+    public void updateVessel(VesselPositionEvent event) {
+        if (event == null || event.mmsi() == null) {
+            return;
+        }
+        update(EntityType.VESSEL, event.mmsi(), event.vesselName(), event.latitude(), event.longitude(), null,
+                event.speed(), event.heading() != null ? event.heading() : event.course(), event.source(),
+                event.timestamp());
+    }
+
+    public void update(EntityType type, String id, String label, Double latitude, Double longitude, Double altitude,
+            Double speed, Double heading, String source, LocalDateTime timestamp) {
+        if (type == null || id == null || latitude == null || longitude == null) {
+            return;
+        }
+
+        LivePosition candidate = new LivePosition(type, id, label, latitude, longitude, altitude, speed, heading,
+                source, timestamp != null ? timestamp : LocalDateTime.now(clock), clock.millis());
+        LivePosition[] replaced = { null };
+        boolean[] accepted = { false };
+        positions(type).compute(id, (key, existing) -> {
+            replaced[0] = existing;
+            // Late messages from a slower source must not move the entity backwards
+            if (existing != null && candidate.timestamp().isBefore(existing.timestamp())) {
+                return existing;
+            }
+            accepted[0] = true;
+            return candidate;
+        });
+
+        if (accepted[0]) {
+            notifyListeners(replaced[0], candidate);
+        }
+    }
+
+    // ============================================================================
+    // QUERIES
+    // ============================================================================
+
+    public LivePosition get(EntityType type, String id) {
+        return positions(type).get(id);
+    }
+
+    /**
+     * Positions inside the bounding box; west > east wraps the antimeridian
+     */
+    public List<LivePosition> findInBounds(EntityType type, double south, double west, double north, double east) {
+        List<LivePosition> result = new ArrayList<>();
+        for (LivePosition position : positions(type).values()) {
+            double longitude = position.longitude();
+            boolean inLongitude = west <= east
+                    ? longitude >= west && longitude <= east
+                    : longitude >= west || longitude <= east;
+            if (inLongitude && position.latitude() >= south && position.latitude() <= north) {
+                result.add(position);
+            }
+        }
+        return result;
+    }
+
+    public int size(EntityType type) {
+        return positions(type).size();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("aircraft", aircraft.size());
+        stats.put("vessels", vessels.size());
+        stats.put("aircraftTtlSeconds", aircraftTtlSeconds);
+        stats.put("vesselTtlSeconds", vesselTtlSeconds);
+        stats.put("listeners", listeners.size());
+        return stats;
+    }
+
+    // ============================================================================
+    // EVICTION
+    // ============================================================================
+
+    @Scheduled(fixedRate = 60000) // Every minute
+    public void evictInactive() {
+        long now = clock.millis();
+        int evicted = evict(aircraft, now - aircraftTtlSeconds * 1000) + evict(vessels, now - vesselTtlSeconds * 1000);
+        if (evicted > 0) {
+            log.debug("🧹 Evicted {} inactive live positions", evicted);
+        }
+    }
+
+    private int evict(Map<String, LivePosition> positions, long cutoffMillis) {
+        int evicted = 0;
+        for (LivePosition position : positions.values()) {
+            if (position.updatedAtMillis() < cutoffMillis && positions.remove(position.id(), position)) {
+                notifyListeners(position, null);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private void notifyListeners(LivePosition previous, LivePosition current) {
+        for (UpdateListener listener : listeners) {
+            try {
+                listener.onPositionChanged(previous, current);
+            } catch (Exception e) {
+                log.warn("⚠️ Live position listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private Map<String, LivePosition> positions(EntityType type) {
+        return type.isAirborne() ? aircraft : vessels;
+    }
+}
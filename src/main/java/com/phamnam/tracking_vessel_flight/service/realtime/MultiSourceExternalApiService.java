@@ -3,6 +3,11 @@ package com.phamnam.tracking_vessel_flight.service.realtime;
 import com.phamnam.tracking_vessel_flight.dto.request.AircraftTrackingRequest;
 import com.phamnam.tracking_vessel_flight.dto.request.VesselTrackingRequest;
 import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.*;
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.polling.AdaptivePollScheduler;
+import com.phamnam.tracking_vessel_flight.service.realtime.pipeline.CollectionPipeline;
+import com.phamnam.tracking_vessel_flight.service.realtime.pipeline.PipelineConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Async;
@@ -32,6 +37,42 @@ public class MultiSourceExternalApiService {
     private final AdsbExchangeApiService adsbExchangeApiService;
     private final VesselFinderApiService vesselFinderApiService;
 
+    private final AdaptivePollScheduler adaptivePollScheduler;
+
+    // Poll each (source, tile) on its own adaptive interval instead of every
+    // source on every collection tick
+    @Value("${external.api.scheduler.enabled:false}")
+    private boolean adaptivePollingEnabled;
+
+    // Staged pipeline: a tick only starts the fetches, store/fuse/persist run
+    // on their own workers so the next cycle does not wait for persistence
+    @Value("${external.api.pipeline.enabled:false}")
+    private boolean pipelineEnabled;
+
+    @Value("${external.api.pipeline.max-in-flight-cycles:3}")
+    private int pipelineMaxInFlightCycles;
+
+    @Value("${external.api.pipeline.store.threads:2}")
+    private int pipelineStoreThreads;
+
+    @Value("${external.api.pipeline.store.queue-capacity:64}")
+    private int pipelineStoreCapacity;
+
+    @Value("${external.api.pipeline.fuse.threads:1}")
+    private int pipelineFuseThreads;
+
+    @Value("${external.api.pipeline.fuse.queue-capacity:8}")
+    private int pipelineFuseCapacity;
+
+    @Value("${external.api.pipeline.persist.threads:1}")
+    private int pipelinePersistThreads;
+
+    @Value("${external.api.pipeline.persist.queue-capacity:8}")
+    private int pipelinePersistCapacity;
+
+    private CollectionPipeline<AircraftTrackingRequest> aircraftPipeline;
+    private CollectionPipeline<VesselTrackingRequest> vesselPipeline;
+
     // Poll interval configurations
     @Value("${external.api.data-collection.poll-interval:30000}")
     private long dataCollectionPollInterval;
@@ -54,19 +95,73 @@ public class MultiSourceExternalApiService {
     @Value("${external.api.marinetrafficv2.poll-interval:45000}")
     private long marinetrafficv2PollInterval;
 
+    @PostConstruct
+    public void initPipelines() {
+        if (!pipelineEnabled) {
+            return;
+        }
+        PipelineConfig config = new PipelineConfig(pipelineStoreThreads, pipelineStoreCapacity, pipelineFuseThreads,
+                pipelineFuseCapacity, pipelinePersistThreads, pipelinePersistCapacity, pipelineMaxInFlightCycles);
+        aircraftPipeline = new CollectionPipeline<>("aircraft", config,
+                (source, data, fetchTimeMs) -> rawDataStorageService.storeRawAircraftData(source, data,
+                        getAircraftApiEndpoint(source), fetchTimeMs),
+                dataFusionService::mergeAircraftData,
+                data -> dataProcessor.processAircraftData(data).join());
+        vesselPipeline = new CollectionPipeline<>("vessel", config,
+                (source, data, fetchTimeMs) -> rawDataStorageService.storeRawVesselData(source, data,
+                        getVesselApiEndpoint(source), fetchTimeMs),
+                dataFusionService::mergeVesselData,
+                data -> dataProcessor.processVesselData(data).join());
+        log.info("🧵 Collection pipeline enabled: store={}x{}, fuse={}x{}, persist={}x{}, max {} cycles in flight",
+                pipelineStoreThreads, pipelineStoreCapacity, pipelineFuseThreads, pipelineFuseCapacity,
+                pipelinePersistThreads, pipelinePersistCapacity, pipelineMaxInFlightCycles);
+    }
+
+    @PreDestroy
+    public void shutdownPipelines() {
+        if (aircraftPipeline != null) {
+            aircraftPipeline.shutdown();
+        }
+        if (vesselPipeline != null) {
+            vesselPipeline.shutdown();
+        }
+    }
+
     /**
      * Collect aircraft data from all available sources
      */
     @Async("taskExecutor")
     public CompletableFuture<List<AircraftTrackingRequest>> collectAllAircraftData() {
+        return mergeAircraftData(fetchAllAircraftData());
+    }
+
+    /**
+     * Collect aircraft data from the source tiles that are due for a poll
+     */
+    public CompletableFuture<List<AircraftTrackingRequest>> collectDueAircraftData() {
+        return mergeAircraftData(fetchDueAircraftData());
+    }
+
+    private Map<String, CompletableFuture<List<AircraftTrackingRequest>>> fetchAllAircraftData() {
         Map<String, CompletableFuture<List<AircraftTrackingRequest>>> futures = new HashMap<>();
 
-        // Đặt timeout để tránh treo lâu
-        futures.put("flightradar24", externalApiService.fetchAircraftData().orTimeout(10, TimeUnit.SECONDS));
-        futures.put("adsbexchange", adsbExchangeApiService.fetchAircraftData().orTimeout(10, TimeUnit.SECONDS));
+        // Timeout riêng cho từng nguồn do ExternalHttpClientPool áp dụng
+        futures.put("flightradar24", externalApiService.fetchAircraftData());
+        futures.put("adsbexchange", adsbExchangeApiService.fetchAircraftData());
         // khi can them nguan
-        // futures.put("anotherApi", anotherApiService.fetchAircraftData().orTimeout(10,
-        // TimeUnit.SECONDS));
+        // futures.put("anotherApi", anotherApiService.fetchAircraftData());
+        return futures;
+    }
+
+    private Map<String, CompletableFuture<List<AircraftTrackingRequest>>> fetchDueAircraftData() {
+        Map<String, CompletableFuture<List<AircraftTrackingRequest>>> futures = new HashMap<>();
+        futures.put("flightradar24", adaptivePollScheduler.pollDueTiles(externalApiService.flightRadar24TiledSource()));
+        futures.put("adsbexchange", adaptivePollScheduler.pollDueTiles(adsbExchangeApiService.tiledSource()));
+        return futures;
+    }
+
+    private CompletableFuture<List<AircraftTrackingRequest>> mergeAircraftData(
+            Map<String, CompletableFuture<List<AircraftTrackingRequest>>> futures) {
         // Chờ tất cả hoàn thành
         CompletableFuture<Void> allFutures = CompletableFuture.allOf(
                 futures.values().toArray(new CompletableFuture[0]));
@@ -124,14 +219,38 @@ public class MultiSourceExternalApiService {
      */
     @Async("taskExecutor")
     public CompletableFuture<List<VesselTrackingRequest>> collectAllVesselData() {
+        return mergeVesselData(fetchAllVesselData());
+    }
+
+    /**
+     * Collect vessel data from the source tiles that are due for a poll
+     */
+    public CompletableFuture<List<VesselTrackingRequest>> collectDueVesselData() {
+        return mergeVesselData(fetchDueVesselData());
+    }
+
+    private Map<String, CompletableFuture<List<VesselTrackingRequest>>> fetchAllVesselData() {
         Map<String, CompletableFuture<List<VesselTrackingRequest>>> futures = new HashMap<>();
 
-        // Các API nguồn dữ liệu tàu thuyền, có timeout để tránh treo
-        futures.put("marinetraffic", externalApiService.fetchVesselData().orTimeout(10, TimeUnit.SECONDS));
-        futures.put("chinaports", chinaportsApiService.fetchVesselData().orTimeout(10, TimeUnit.SECONDS));
-        futures.put("marinetrafficv2", marineTrafficV2ApiService.fetchVesselData().orTimeout(10, TimeUnit.SECONDS));
-        futures.put("vesselfinder", vesselFinderApiService.fetchVesselData().orTimeout(10, TimeUnit.SECONDS));
+        // Các API nguồn dữ liệu tàu thuyền; timeout theo cấu hình từng nguồn
+        futures.put("marinetraffic", externalApiService.fetchVesselData());
+        futures.put("chinaports", chinaportsApiService.fetchVesselData());
+        futures.put("marinetrafficv2", marineTrafficV2ApiService.fetchVesselData());
+        futures.put("vesselfinder", vesselFinderApiService.fetchVesselData());
+        return futures;
+    }
+
+    private Map<String, CompletableFuture<List<VesselTrackingRequest>>> fetchDueVesselData() {
+        Map<String, CompletableFuture<List<VesselTrackingRequest>>> futures = new HashMap<>();
+        futures.put("marinetraffic", adaptivePollScheduler.pollDueTiles(externalApiService.marineTrafficTiledSource()));
+        futures.put("chinaports", adaptivePollScheduler.pollDueTiles(chinaportsApiService.tiledSource()));
+        futures.put("marinetrafficv2", adaptivePollScheduler.pollDueTiles(marineTrafficV2ApiService.tiledSource()));
+        futures.put("vesselfinder", adaptivePollScheduler.pollDueTiles(vesselFinderApiService.tiledSource()));
+        return futures;
+    }
 
+    private CompletableFuture<List<VesselTrackingRequest>> mergeVesselData(
+            Map<String, CompletableFuture<List<VesselTrackingRequest>>> futures) {
         // Chờ tất cả hoàn thành
         CompletableFuture<Void> allFutures = CompletableFuture.allOf(
                 futures.values().toArray(new CompletableFuture[0]));
@@ -189,10 +308,25 @@ public class MultiSourceExternalApiService {
         String threadName = Thread.currentThread().getName();
         log.info("🚀 Starting multi-source data collection on thread: {}", threadName);
 
+        if (aircraftPipeline != null && vesselPipeline != null) {
+            // Hand the cycle to the pipeline and return: store, fuse and persist
+            // overlap with the next tick's fetches
+            aircraftPipeline.tryStartCycle(adaptivePollingEnabled ? this::fetchDueAircraftData
+                    : this::fetchAllAircraftData);
+            vesselPipeline.tryStartCycle(adaptivePollingEnabled ? this::fetchDueVesselData
+                    : this::fetchAllVesselData);
+            return;
+        }
+
         try {
-            // Collect from all sources in parallel
-            CompletableFuture<List<AircraftTrackingRequest>> aircraftFuture = collectAllAircraftData();
-            CompletableFuture<List<VesselTrackingRequest>> vesselFuture = collectAllVesselData();
+            // Collect from all sources in parallel; with adaptive polling only the
+            // tiles that are due are fetched on this tick
+            CompletableFuture<List<AircraftTrackingRequest>> aircraftFuture = adaptivePollingEnabled
+                    ? collectDueAircraftData()
+                    : collectAllAircraftData();
+            CompletableFuture<List<VesselTrackingRequest>> vesselFuture = adaptivePollingEnabled
+                    ? collectDueVesselData()
+                    : collectAllVesselData();
 
             log.debug("⏳ Waiting for both aircraft and vessel futures to complete...");
 
@@ -302,11 +436,26 @@ public class MultiSourceExternalApiService {
         return status;
     }
 
+    /**
+     * Per-stage queue depth and latency of the collection pipeline
+     */
+    public Map<String, Object> getPipelineStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", aircraftPipeline != null);
+        if (aircraftPipeline != null) {
+            stats.put("aircraft", aircraftPipeline.getStatistics());
+            stats.put("vessel", vesselPipeline.getStatistics());
+        }
+        return stats;
+    }
+
     /**
      * Get poll interval configurations
      */
     public Map<String, Object> getPollIntervalStatus() {
         return Map.of(
+                "adaptivePolling", adaptivePollingEnabled,
+                "pipeline", pipelineEnabled,
                 "dataCollectionInterval", dataCollectionPollInterval,
                 "flightradar24Interval", flightradar24PollInterval,
                 "adsbexchangeInterval", adsbexchangePollInterval,
@@ -1,5 +1,6 @@
 package com.phamnam.tracking_vessel_flight.service.realtime;
 
+import com.phamnam.tracking_vessel_flight.config.TimescaleConfig;
 import com.phamnam.tracking_vessel_flight.models.RawAircraftData;
 import com.phamnam.tracking_vessel_flight.models.RawVesselData;
 import com.phamnam.tracking_vessel_flight.repository.RawAircraftDataRepository;
@@ -7,17 +8,48 @@ import com.phamnam.tracking_vessel_flight.repository.RawVesselDataRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+/**
+ * Raw data retention.
+ *
+ * On TimescaleDB, raw_aircraft_data / raw_vessel_data are hypertables on
+ * received_at and expired data is removed by dropping whole chunks, which
+ * avoids the WAL and vacuum cost of row deletes. Rows that must outlive the
+ * standard retention (emergency / dangerous cargo, high data quality) are
+ * copied out of the expiring chunks into tier tables first:
+ * - {table}_emergency: dropped by a Timescale retention policy after
+ * emergency-retention-days
+ * - {table}_high_quality: dropped by a policy after
+ * high-quality-retention-days
+ *
+ * The raw tables themselves have no retention policy, because a background
+ * drop could run before the tier copy. Without TimescaleDB the service falls
+ * back to row deletes.
+ *
+ * Converting an existing raw table rewrites its primary key and migrates
+ * every row, so it only runs when raw.data.retention.migrate-to-hypertable
+ * is set; until then the tables stay on row deletes.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -38,8 +70,51 @@ public class RawDataRetentionService {
     @Value("${raw.data.retention.high-quality-retention-days:14}")
     private int highQualityRetentionDays;
 
+    @Value("${raw.data.retention.high-quality-threshold:0.8}")
+    private double highQualityThreshold = 0.8;
+
+    @Value("${raw.data.retention.chunk-based:true}")
+    private boolean chunkBasedRetention = true;
+
+    @Value("${raw.data.retention.chunk-interval-hours:24}")
+    private int chunkIntervalHours = 24;
+
+    @Value("${raw.data.retention.migrate-to-hypertable:false}")
+    private boolean migrateToHypertable;
+
+    @Value("${tracking.data.warm-storage.ttl-days:30}")
+    private int warmStorageTtlDays = 30;
+
+    @Value("${raw.data.retention.tracking-backstop-days:3}")
+    private int trackingBackstopDays = 3;
+
     private final RawAircraftDataRepository rawAircraftDataRepository;
     private final RawVesselDataRepository rawVesselDataRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TimescaleConfig timescaleConfig;
+    private final PlatformTransactionManager transactionManager;
+
+    private static final List<RetentionTable> RETENTION_TABLES = List.of(
+            new RetentionTable("aircraft", "raw_aircraft_data", "emergency IS TRUE"),
+            // Dangerous cargo stands in for emergency on vessels
+            new RetentionTable("vessel", "raw_vessel_data", "dangerous_cargo IS TRUE"));
+
+    private static final List<String> TRACKING_TABLES = List.of("flight_tracking", "ship_tracking");
+
+    private record RetentionTable(String type, String table, String emergencyPredicate) {
+
+        String emergencyTable() {
+            return table + "_emergency";
+        }
+
+        String highQualityTable() {
+            return table + "_high_quality";
+        }
+    }
+
+    private volatile boolean chunkRetentionReady;
+    private final AtomicLong totalDroppedChunks = new AtomicLong(0);
+    private final AtomicLong totalTieredRecords = new AtomicLong(0);
 
     // Statistics
     private final AtomicLong totalDeletedRecords = new AtomicLong(0);
@@ -82,6 +157,12 @@ public class RawDataRetentionService {
             return 0;
         }
 
+        if (chunkRetentionReady) {
+            long dropped = dropExpiredChunks();
+            totalDeletedRecords.addAndGet(dropped);
+            return dropped;
+        }
+
         log.info("🗑️ Performing raw data cleanup with retention period: {} days", retentionDays);
 
         long totalDeleted = 0;
@@ -98,6 +179,281 @@ public class RawDataRetentionService {
         return totalDeleted;
     }
 
+    // ============================================================================
+    // CHUNK-BASED RETENTION (TimescaleDB)
+    // ============================================================================
+
+    /**
+     * Turn the raw tables into hypertables, create the tier tables with their
+     * retention policies, and keep the tracking tables' retention policy
+     * behind the cold-storage archive. Runs once the JPA schema exists.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeChunkRetention() {
+        if (!retentionEnabled || !chunkBasedRetention || !timescaleConfig.isTimescaleEnabled()) {
+            log.info("Chunk-based raw data retention disabled, using row deletes");
+            return;
+        }
+        try {
+            for (RetentionTable table : RETENTION_TABLES) {
+                if (!isHypertable(table.table()) && !migrateToHypertable) {
+                    log.warn("⚠️ {} is not a hypertable; set raw.data.retention.migrate-to-hypertable=true to "
+                            + "convert it (rewrites the primary key and migrates existing rows). Using row deletes",
+                            table.table());
+                    return;
+                }
+            }
+            for (RetentionTable table : RETENTION_TABLES) {
+                ensureHypertable(table.table());
+                ensureTierTable(table.emergencyTable(), table.table(), emergencyRetentionDays);
+                ensureTierTable(table.highQualityTable(), table.table(), highQualityRetentionDays);
+            }
+            ensureTrackingBackstop();
+            chunkRetentionReady = true;
+            log.info("🧱 Chunk-based raw data retention ready: {} days standard, {} days high-quality, "
+                    + "{} days emergency", retentionDays, highQualityRetentionDays, emergencyRetentionDays);
+        } catch (Exception e) {
+            log.warn("⚠️ Chunk-based retention unavailable, falling back to row deletes: {}", e.getMessage());
+        }
+    }
+
+    private void ensureHypertable(String table) {
+        if (isHypertable(table)) {
+            return;
+        }
+        log.info("🧱 Converting {} to a hypertable on received_at (existing rows are migrated once)", table);
+        newTransaction().executeWithoutResult(status -> {
+            // Unique constraints of a hypertable must include the partitioning column
+            List<String> primaryKey = jdbcTemplate.queryForList(
+                    "SELECT conname FROM pg_constraint WHERE conrelid = ?::regclass AND contype = 'p'",
+                    String.class, table);
+            if (!primaryKey.isEmpty()) {
+                jdbcTemplate.execute("ALTER TABLE " + table + " DROP CONSTRAINT \"" + primaryKey.get(0)
+                        + "\", ADD PRIMARY KEY (id, received_at)");
+            }
+            jdbcTemplate.queryForList("SELECT create_hypertable(?::regclass, 'received_at', "
+                    + "chunk_time_interval => make_interval(hours => ?), migrate_data => true)",
+                    table, chunkIntervalHours);
+        });
+    }
+
+    private void ensureTierTable(String tier, String source, int retentionDays) {
+        newTransaction().executeWithoutResult(status -> {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + tier + " (LIKE " + source + ")");
+            jdbcTemplate.queryForList("SELECT create_hypertable(?::regclass, 'received_at', "
+                    + "chunk_time_interval => make_interval(hours => ?), if_not_exists => true)",
+                    tier, chunkIntervalHours);
+            // Re-created on every start so a changed retention setting takes effect
+            jdbcTemplate.queryForList("SELECT remove_retention_policy(?::regclass, if_exists => true)", tier);
+            jdbcTemplate.queryForList("SELECT add_retention_policy(?::regclass, make_interval(days => ?))",
+                    tier, retentionDays);
+        });
+    }
+
+    /**
+     * The tracking tables are archived to cold storage after the warm TTL;
+     * their retention policy only drops what the archive left behind
+     */
+    private void ensureTrackingBackstop() {
+        int days = warmStorageTtlDays + trackingBackstopDays;
+        for (String table : TRACKING_TABLES) {
+            if (!isHypertable(table)) {
+                continue;
+            }
+            newTransaction().executeWithoutResult(status -> {
+                jdbcTemplate.queryForList("SELECT remove_retention_policy(?::regclass, if_exists => true)", table);
+                jdbcTemplate.queryForList("SELECT add_retention_policy(?::regclass, make_interval(days => ?))",
+                        table, days);
+            });
+            log.info("🧱 {} retention policy set to {} days (archive runs after {} days)", table, days,
+                    warmStorageTtlDays);
+        }
+    }
+
+    /**
+     * Copy tiered rows out of every chunk past the standard retention, then
+     * drop those chunks; one transaction per table. Returns the estimated
+     * number of rows dropped.
+     */
+    private long dropExpiredChunks() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minusDays(retentionDays);
+        long dropped = 0;
+        for (RetentionTable table : RETENTION_TABLES) {
+            try {
+                Long rows = newTransaction().execute(status -> {
+                    List<String> chunks = expiredChunks(table.table(), cutoff);
+                    if (chunks.isEmpty()) {
+                        return 0L;
+                    }
+                    long estimatedRows = 0;
+                    long tiered = 0;
+                    for (String chunk : chunks) {
+                        estimatedRows += estimatedRows(chunk);
+                        tiered += copyTieredRows(table, chunk, now);
+                    }
+                    jdbcTemplate.queryForList("SELECT drop_chunks(?::regclass, older_than => ?::timestamp)",
+                            table.table(), cutoff);
+                    totalDroppedChunks.addAndGet(chunks.size());
+                    totalTieredRecords.addAndGet(tiered);
+                    log.info("🗑️ Dropped {} {} chunks older than {} (~{} rows, {} kept in tier tables)",
+                            chunks.size(), table.table(), cutoff, estimatedRows, tiered);
+                    return estimatedRows;
+                });
+                dropped += rows != null ? rows : 0;
+            } catch (Exception e) {
+                log.error("Error dropping expired {} chunks: {}", table.table(), e.getMessage(), e);
+            }
+        }
+        return dropped;
+    }
+
+    private long copyTieredRows(RetentionTable table, String chunk, LocalDateTime now) {
+        String emergencyColumns = commonColumns(table.table(), table.emergencyTable());
+        long copied = jdbcTemplate.update("INSERT INTO " + table.emergencyTable() + " (" + emergencyColumns
+                + ") SELECT " + emergencyColumns + " FROM " + chunk + " WHERE " + table.emergencyPredicate()
+                + " AND received_at >= ?", now.minusDays(emergencyRetentionDays));
+        // Emergency rows are only kept in the longer tier
+        String highQualityColumns = commonColumns(table.table(), table.highQualityTable());
+        copied += jdbcTemplate.update("INSERT INTO " + table.highQualityTable() + " (" + highQualityColumns
+                + ") SELECT " + highQualityColumns + " FROM " + chunk + " WHERE NOT (" + table.emergencyPredicate()
+                + ") AND data_quality >= ? AND received_at >= ?", highQualityThreshold,
+                now.minusDays(highQualityRetentionDays));
+        return copied;
+    }
+
+    /**
+     * Columns present in both tables; the source table may have gained
+     * columns since the tier table was created
+     */
+    private String commonColumns(String source, String tier) {
+        return String.join(", ", jdbcTemplate.queryForList("""
+                SELECT quote_ident(s.column_name) FROM information_schema.columns s
+                JOIN information_schema.columns t
+                  ON t.table_schema = s.table_schema AND t.table_name = ? AND t.column_name = s.column_name
+                WHERE s.table_schema = current_schema() AND s.table_name = ?
+                ORDER BY s.ordinal_position
+                """, String.class, tier, source));
+    }
+
+    private List<String> expiredChunks(String table, LocalDateTime cutoff) {
+        return jdbcTemplate.queryForList("SELECT show_chunks(?::regclass, older_than => ?::timestamp)::text",
+                String.class, table, cutoff);
+    }
+
+    private long estimatedRows(String chunk) {
+        Long rows = jdbcTemplate.queryForObject(
+                "SELECT greatest(reltuples, 0)::bigint FROM pg_class WHERE oid = ?::regclass", Long.class, chunk);
+        return rows != null ? rows : 0;
+    }
+
+    private boolean isHypertable(String table) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM timescaledb_information.hypertables WHERE hypertable_name = ?",
+                Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    /**
+     * Dry run of the next chunk-based cleanup: the chunks that would be
+     * dropped with their size and estimated rows, the rows that would be
+     * kept in tier tables, and what the tier policies drop next
+     */
+    private Map<String, Object> getChunkCleanupPreview() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minusDays(retentionDays);
+        Map<String, Object> preview = new LinkedHashMap<>();
+        preview.put("mode", "chunks");
+        preview.put("dryRun", true);
+        preview.put("retentionDays", retentionDays);
+        preview.put("emergencyRetentionDays", emergencyRetentionDays);
+        preview.put("highQualityRetentionDays", highQualityRetentionDays);
+        preview.put("cutoff", cutoff);
+
+        long totalBytes = 0;
+        long totalRows = 0;
+        for (RetentionTable table : RETENTION_TABLES) {
+            Map<String, Object> tablePreview = chunkPreview(table.table(), cutoff);
+            long emergency = 0;
+            long highQuality = 0;
+            for (String chunk : expiredChunks(table.table(), cutoff)) {
+                Map<String, Object> counts = jdbcTemplate.queryForMap("SELECT count(*) FILTER (WHERE "
+                        + table.emergencyPredicate() + " AND received_at >= ?) AS emergency, "
+                        + "count(*) FILTER (WHERE NOT (" + table.emergencyPredicate() + ") AND data_quality >= ? "
+                        + "AND received_at >= ?) AS high_quality FROM " + chunk,
+                        now.minusDays(emergencyRetentionDays), highQualityThreshold,
+                        now.minusDays(highQualityRetentionDays));
+                emergency += ((Number) counts.get("emergency")).longValue();
+                highQuality += ((Number) counts.get("high_quality")).longValue();
+            }
+            tablePreview.put("rowsToKeep", Map.of("emergency", emergency, "highQuality", highQuality));
+            tablePreview.put("tierPolicies", Map.of(
+                    table.emergencyTable(), chunkPreview(table.emergencyTable(),
+                            now.minusDays(emergencyRetentionDays)),
+                    table.highQualityTable(), chunkPreview(table.highQualityTable(),
+                            now.minusDays(highQualityRetentionDays))));
+            totalBytes += (Long) tablePreview.get("totalBytes");
+            totalRows += (Long) tablePreview.get("estimatedRows");
+            preview.put(table.type(), tablePreview);
+        }
+        preview.put("totalBytes", totalBytes);
+        preview.put("totalMB", totalBytes / (1024 * 1024));
+        preview.put("estimatedRows", totalRows);
+        return preview;
+    }
+
+    private Map<String, Object> chunkPreview(String table, LocalDateTime cutoff) {
+        Map<String, Long> sizes = new HashMap<>();
+        jdbcTemplate.query("SELECT format('%I.%I', chunk_schema, chunk_name) AS chunk, total_bytes "
+                + "FROM chunks_detailed_size(?::regclass)",
+                (RowCallbackHandler) rs -> sizes.put(rs.getString("chunk"), rs.getLong("total_bytes")), table);
+        Map<String, Map<String, Object>> ranges = new HashMap<>();
+        jdbcTemplate.query("SELECT format('%I.%I', chunk_schema, chunk_name) AS chunk, range_start::text, "
+                + "range_end::text, is_compressed FROM timescaledb_information.chunks WHERE hypertable_name = ?",
+                (RowCallbackHandler) rs -> {
+                    Map<String, Object> range = new LinkedHashMap<>();
+                    range.put("rangeStart", rs.getString("range_start"));
+                    range.put("rangeEnd", rs.getString("range_end"));
+                    range.put("compressed", rs.getBoolean("is_compressed"));
+                    ranges.put(rs.getString("chunk"), range);
+                }, table);
+
+        List<Map<String, Object>> chunks = new ArrayList<>();
+        long totalBytes = 0;
+        long totalRows = 0;
+        for (String chunk : expiredChunks(table, cutoff)) {
+            long bytes = sizes.getOrDefault(chunk, 0L);
+            long rows = estimatedRows(chunk);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("chunk", chunk);
+            entry.putAll(ranges.getOrDefault(chunk, Map.of()));
+            entry.put("totalBytes", bytes);
+            entry.put("estimatedRows", rows);
+            chunks.add(entry);
+            totalBytes += bytes;
+            totalRows += rows;
+        }
+
+        Map<String, Object> preview = new LinkedHashMap<>();
+        preview.put("table", table);
+        preview.put("olderThan", cutoff);
+        preview.put("chunkCount", chunks.size());
+        preview.put("totalBytes", totalBytes);
+        preview.put("estimatedRows", totalRows);
+        preview.put("chunks", chunks);
+        return preview;
+    }
+
+    // ============================================================================
+    // ROW-DELETE FALLBACK
+    // ============================================================================
+
     /**
      * Clean up old aircraft data
      */
@@ -313,6 +669,10 @@ public class RawDataRetentionService {
      * Get count of records that would be deleted in next cleanup
      */
     public Map<String, Object> getCleanupPreview() {
+        if (chunkRetentionReady) {
+            return getChunkCleanupPreview();
+        }
+
         LocalDateTime standardCutoff = LocalDateTime.now().minusDays(retentionDays);
         LocalDateTime emergencyCutoff = LocalDateTime.now().minusDays(emergencyRetentionDays);
         LocalDateTime highQualityCutoff = LocalDateTime.now().minusDays(highQualityRetentionDays);
@@ -358,16 +718,21 @@ public class RawDataRetentionService {
      * Get retention statistics
      */
     public Map<String, Object> getRetentionStats() {
-        return Map.of(
-                "retentionEnabled", retentionEnabled,
-                "retentionDays", retentionDays,
-                "emergencyRetentionDays", emergencyRetentionDays,
-                "highQualityRetentionDays", highQualityRetentionDays,
-                "batchSize", batchSize,
-                "totalDeletedRecords", totalDeletedRecords.get(),
-                "totalCleanupRuns", totalCleanupRuns.get(),
-                "lastCleanupTime", lastCleanupTime,
-                "lastCleanupDurationMs", lastCleanupDuration.get());
+        // lastCleanupTime is null until the first run
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("retentionEnabled", retentionEnabled);
+        stats.put("mode", chunkRetentionReady ? "chunks" : "rows");
+        stats.put("retentionDays", retentionDays);
+        stats.put("emergencyRetentionDays", emergencyRetentionDays);
+        stats.put("highQualityRetentionDays", highQualityRetentionDays);
+        stats.put("batchSize", batchSize);
+        stats.put("totalDeletedRecords", totalDeletedRecords.get());
+        stats.put("totalDroppedChunks", totalDroppedChunks.get());
+        stats.put("totalTieredRecords", totalTieredRecords.get());
+        stats.put("totalCleanupRuns", totalCleanupRuns.get());
+        stats.put("lastCleanupTime", lastCleanupTime);
+        stats.put("lastCleanupDurationMs", lastCleanupDuration.get());
+        return stats;
     }
 
     /**
@@ -375,6 +740,8 @@ public class RawDataRetentionService {
      */
     public void resetStats() {
         totalDeletedRecords.set(0);
+        totalDroppedChunks.set(0);
+        totalTieredRecords.set(0);
         totalCleanupRuns.set(0);
         lastCleanupDuration.set(0);
         lastCleanupTime = null;
@@ -84,8 +84,9 @@ public class RealTimeDataQueryService {
      */
     public List<FlightTracking> getFlightHistory(String hexident, LocalDateTime fromTime, LocalDateTime toTime) {
         try {
-            return flightTrackingRepository.findByHexIdentAndLastSeenBetweenOrderByLastSeenAsc(
-                    hexident, fromTime, toTime);
+            // Filter on timestamp, the partitioning column, rather than last_seen so
+            // chunk exclusion applies and only the hexident segment is decompressed
+            return flightTrackingRepository.findByHexidentAndTimestampBetween(hexident, fromTime, toTime);
 
         } catch (Exception e) {
             logger.error("Error getting flight history for {}: {}", hexident, e.getMessage());
@@ -212,7 +213,7 @@ public class RealTimeDataQueryService {
         try {
             LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
 
-            long recentFlightRecords = flightTrackingRepository.countByLastSeenAfter(oneHourAgo);
+            long recentFlightRecords = flightTrackingRepository.countByTimestampAfter(oneHourAgo);
             long recentShipRecords = shipTrackingRepository.countByTimestampAfter(oneHourAgo);
 
             Set<String> activeFlights = redisTemplate.keys("flight:*:current");
@@ -4,13 +4,18 @@ import com.phamnam.tracking_vessel_flight.dto.FlightTrackingRequestDTO;
 import com.phamnam.tracking_vessel_flight.dto.request.FlightTrackingRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 @Service
@@ -33,6 +38,33 @@ public class TrackingCacheService {
         log.debug("Cached flight tracking for flight ID: {} and added to active flights", tracking.getId());
     }
 
+    /**
+     * Caches a batch of flight tracking data in a single pipelined round trip
+     */
+    public void cacheFlightTrackings(Collection<FlightTrackingRequestDTO> trackings) {
+        List<FlightTrackingRequestDTO> cacheable = trackings.stream()
+                .filter(tracking -> tracking.getId() != null)
+                .toList();
+        if (cacheable.isEmpty()) {
+            return;
+        }
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (FlightTrackingRequestDTO tracking : cacheable) {
+                    ops.opsForValue().set(FLIGHT_TRACKING_PREFIX + tracking.getId(), tracking);
+                }
+                ops.opsForSet().add(ACTIVE_FLIGHTS_KEY,
+                        cacheable.stream().map(tracking -> tracking.getId().toString()).toArray());
+                return null;
+            }
+        });
+        log.debug("Pipelined cache of {} flight trackings", cacheable.size());
+    }
+
     /**
      * Retrieves flight tracking data from Redis
      */
@@ -67,18 +99,27 @@ public class TrackingCacheService {
             return Set.of();
         }
 
+        // Fetch all tracking values in one MGET instead of one GET per flight
+        List<String> flightIds = members.stream().map(Object::toString).toList();
+        List<Object> trackings = redisTemplate.opsForValue()
+                .multiGet(flightIds.stream().map(id -> FLIGHT_TRACKING_PREFIX + id).toList());
+
         Set<Object> activeFlights = new HashSet<>();
-        for (Object flightIdObj : members) {
-            String flightId = flightIdObj.toString();
-            Object tracking = redisTemplate.opsForValue().get(FLIGHT_TRACKING_PREFIX + flightId);
+        List<Object> staleIds = new ArrayList<>();
+        for (int i = 0; i < flightIds.size(); i++) {
+            Object tracking = trackings != null ? trackings.get(i) : null;
             if (tracking != null) {
                 activeFlights.add(tracking);
             } else {
-                // If tracking data is missing but flight ID is in active set, clean it up
-                redisTemplate.opsForSet().remove(ACTIVE_FLIGHTS_KEY, flightId);
+                staleIds.add(flightIds.get(i));
             }
         }
 
+        // If tracking data is missing but flight ID is in active set, clean it up
+        if (!staleIds.isEmpty()) {
+            redisTemplate.opsForSet().remove(ACTIVE_FLIGHTS_KEY, staleIds.toArray());
+        }
+
         log.debug("Found {} active flights in cache", activeFlights.size());
         return activeFlights;
     }
@@ -135,6 +176,31 @@ public class TrackingCacheService {
         log.debug("Cached ship tracking for MMSI: {} and added to active ships", tracking.getMmsi());
     }
 
+    /**
+     * Caches a batch of ship tracking data in a single pipelined round trip
+     */
+    public void cacheShipTrackings(
+            Collection<com.phamnam.tracking_vessel_flight.dto.request.ShipTrackingRequest> trackings) {
+        if (trackings.isEmpty()) {
+            return;
+        }
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (com.phamnam.tracking_vessel_flight.dto.request.ShipTrackingRequest tracking : trackings) {
+                    ops.opsForValue().set(SHIP_TRACKING_PREFIX + tracking.getMmsi() + ":current", tracking);
+                }
+                ops.opsForSet().add(ACTIVE_SHIPS_KEY,
+                        trackings.stream().map(tracking -> (Object) tracking.getMmsi()).toArray());
+                return null;
+            }
+        });
+        log.debug("Pipelined cache of {} ship trackings", trackings.size());
+    }
+
     /**
      * Retrieves ship tracking data from Redis by MMSI
      */
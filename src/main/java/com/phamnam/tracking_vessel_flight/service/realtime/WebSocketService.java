@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.phamnam.tracking_vessel_flight.models.AlertEvent;
 import com.phamnam.tracking_vessel_flight.models.FlightTracking;
 import com.phamnam.tracking_vessel_flight.models.ShipTracking;
+import com.phamnam.tracking_vessel_flight.service.realtime.cluster.ClusterFanoutService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
@@ -25,6 +26,8 @@ public class WebSocketService {
 
     private final SimpMessagingTemplate messagingTemplate;
     private final ObjectMapper objectMapper;
+    // Topic sends go through the fan-out so sessions on other nodes get them too
+    private final ClusterFanoutService clusterFanoutService;
 
     // Track active subscribers by topic
     private final Map<String, Set<String>> subscribers = new ConcurrentHashMap<>();
@@ -54,12 +57,14 @@ public class WebSocketService {
             update.put("timestamp", LocalDateTime.now());
             update.put("data", data);
 
-            // Broadcast to all aircraft subscribers
-            messagingTemplate.convertAndSend("/topic/aircraft/positions", update);
-
-            // Also send specific aircraft update
-            messagingTemplate.convertAndSend(
-                    "/topic/aircraft/" + flightTracking.getHexident(), update);
+            // Broadcast to all aircraft subscribers, and the specific aircraft topic if watched
+            String aircraftTopic = clusterFanoutService.entityDestination("/topic/aircraft/",
+                    flightTracking.getHexident());
+            clusterFanoutService.sendPosition("aircraft", flightTracking.getHexident(),
+                    flightTracking.getLatitude(), flightTracking.getLongitude(), update,
+                    aircraftTopic != null
+                            ? new String[] { "/topic/aircraft/positions", aircraftTopic }
+                            : new String[] { "/topic/aircraft/positions" });
 
             // log.debug("Broadcasted aircraft update for {}",
             // flightTracking.getHexident());
@@ -94,12 +99,13 @@ public class WebSocketService {
             update.put("timestamp", LocalDateTime.now());
             update.put("data", data);
 
-            // Broadcast to all vessel subscribers
-            messagingTemplate.convertAndSend("/topic/vessels/positions", update);
-
-            // Also send specific vessel update
-            messagingTemplate.convertAndSend(
-                    "/topic/vessels/" + shipTracking.getMmsi(), update);
+            // Broadcast to all vessel subscribers, and the specific vessel topic if watched
+            String vesselTopic = clusterFanoutService.entityDestination("/topic/vessels/", shipTracking.getMmsi());
+            clusterFanoutService.sendPosition("vessel", shipTracking.getMmsi(),
+                    shipTracking.getLatitude(), shipTracking.getLongitude(), update,
+                    vesselTopic != null
+                            ? new String[] { "/topic/vessels/positions", vesselTopic }
+                            : new String[] { "/topic/vessels/positions" });
 
             log.debug("Broadcasted vessel update for {}", shipTracking.getMmsi());
 
@@ -134,11 +140,11 @@ public class WebSocketService {
             alert.put("data", data);
 
             // Broadcast to all alert subscribers
-            messagingTemplate.convertAndSend("/topic/alerts", alert);
+            clusterFanoutService.send("/topic/alerts", alert);
 
             // Send priority alerts to dedicated channel
             if ("CRITICAL".equals(alertEvent.getPriority()) || "HIGH".equals(alertEvent.getPriority())) {
-                messagingTemplate.convertAndSend("/topic/alerts/priority", alert);
+                clusterFanoutService.send("/topic/alerts/priority", alert);
             }
 
             log.info("Broadcasted {} priority alert for {} {}",
@@ -161,7 +167,7 @@ public class WebSocketService {
                     "timestamp", LocalDateTime.now(),
                     "data", status);
 
-            messagingTemplate.convertAndSend("/topic/system/status", statusUpdate);
+            clusterFanoutService.send("/topic/system/status", statusUpdate);
             log.debug("Broadcasted system status update");
 
         } catch (Exception e) {
@@ -181,7 +187,7 @@ public class WebSocketService {
                     "timestamp", LocalDateTime.now(),
                     "data", statistics);
 
-            messagingTemplate.convertAndSend("/topic/statistics", statsUpdate);
+            clusterFanoutService.send("/topic/statistics", statsUpdate);
             log.debug("Broadcasted statistics update");
 
         } catch (Exception e) {
@@ -228,19 +234,19 @@ public class WebSocketService {
     }
 
     private void handleAircraftPositionFromKafka(Map<String, Object> data) {
-        messagingTemplate.convertAndSend("/topic/aircraft/positions", data);
+        clusterFanoutService.send("/topic/aircraft/positions", data);
     }
 
     private void handleVesselPositionFromKafka(Map<String, Object> data) {
-        messagingTemplate.convertAndSend("/topic/vessels/positions", data);
+        clusterFanoutService.send("/topic/vessels/positions", data);
     }
 
     private void handleAlertFromKafka(Map<String, Object> data) {
-        messagingTemplate.convertAndSend("/topic/alerts", data);
+        clusterFanoutService.send("/topic/alerts", data);
     }
 
     private void handleSystemStatusFromKafka(Map<String, Object> data) {
-        messagingTemplate.convertAndSend("/topic/system/status", data);
+        clusterFanoutService.send("/topic/system/status", data);
     }
 
     // ============================================================================
@@ -273,7 +279,7 @@ public class WebSocketService {
                     "count", updates.size(),
                     "data", updates);
 
-            messagingTemplate.convertAndSend("/topic/aircraft/batch", batchUpdate);
+            clusterFanoutService.send("/topic/aircraft/batch", batchUpdate);
             log.debug("Broadcasted batch aircraft updates: {} records", updates.size());
 
         } catch (Exception e) {
@@ -307,7 +313,7 @@ public class WebSocketService {
                     "count", updates.size(),
                     "data", updates);
 
-            messagingTemplate.convertAndSend("/topic/vessels/batch", batchUpdate);
+            clusterFanoutService.send("/topic/vessels/batch", batchUpdate);
             log.debug("Broadcasted batch vessel updates: {} records", updates.size());
 
         } catch (Exception e) {
@@ -329,7 +335,7 @@ public class WebSocketService {
                     "entityCount", entities.size(),
                     "entities", entities);
 
-            messagingTemplate.convertAndSend("/topic/areas/" + areaId, areaUpdate);
+            clusterFanoutService.send("/topic/areas/" + areaId, areaUpdate);
             log.debug("Broadcasted area update for {}: {} entities", areaId, entities.size());
 
         } catch (Exception e) {
@@ -394,7 +400,7 @@ public class WebSocketService {
 
     public void broadcastGenericMessage(String topic, Object message) {
         try {
-            messagingTemplate.convertAndSend(topic, message);
+            clusterFanoutService.send(topic, message);
             log.debug("Broadcasted generic message to topic: {}", topic);
         } catch (Exception e) {
             log.error("Failed to broadcast generic message to topic: {}", topic, e);
@@ -1,22 +1,22 @@
 package com.phamnam.tracking_vessel_flight.service.realtime;
 
+import com.phamnam.tracking_vessel_flight.service.realtime.subscription.SubscriptionRegistry;
+import com.phamnam.tracking_vessel_flight.service.realtime.subscription.SubscriptionRegistry.Kind;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class WebSocketSubscriptionService {
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final SubscriptionRegistry subscriptionRegistry;
     private final SimpMessagingTemplate messagingTemplate;
     private final AircraftNotificationService aircraftNotificationService; // Thêm dependency này
     private final ShipNotificationService shipNotificationService; // Add ship notification service
@@ -32,14 +32,12 @@ public class WebSocketSubscriptionService {
                 sessionId, minLat, maxLat, minLon, maxLon);
 
         try {
-            String areaKey = String.format("area_%.6f_%.6f_%.6f_%.6f", minLat, maxLat, minLon, maxLon);
+            String areaKey = SubscriptionRegistry.areaKey("area", minLat, maxLat, minLon, maxLon);
             log.debug("Generated areaKey: {}", areaKey);
 
-            // Lưu subscriptions vào Redis
-            redisTemplate.opsForSet().add("active:area:subscriptions", areaKey);
-            redisTemplate.opsForSet().add("area:" + areaKey + ":clients", sessionId);
-            redisTemplate.opsForSet().add("client:" + sessionId + ":subscriptions", areaKey);
-            log.debug("Saved subscription info to Redis");
+            // Lưu subscription vào registry (Redis được cập nhật bất đồng bộ)
+            subscriptionRegistry.subscribe(Kind.AREA, areaKey, sessionId);
+            log.debug("Saved subscription info to registry");
 
             // Tạo response message
             Map<String, Object> response = new HashMap<>();
@@ -87,17 +85,10 @@ public class WebSocketSubscriptionService {
      * Hủy đăng ký client khỏi khu vực
      */
     public void unsubscribeFromArea(String sessionId, double minLat, double maxLat, double minLon, double maxLon) {
-        String areaKey = String.format("area_%.6f_%.6f_%.6f_%.6f", minLat, maxLat, minLon, maxLon);
+        String areaKey = SubscriptionRegistry.areaKey("area", minLat, maxLat, minLon, maxLon);
 
-        // Xóa subscription khỏi Redis
-        redisTemplate.opsForSet().remove("area:" + areaKey + ":clients", sessionId);
-        redisTemplate.opsForSet().remove("client:" + sessionId + ":subscriptions", areaKey);
-
-        // Kiểm tra xem còn client nào đăng ký không
-        Long clientCount = redisTemplate.opsForSet().size("area:" + areaKey + ":clients");
-        if (clientCount != null && clientCount == 0) {
-            redisTemplate.opsForSet().remove("active:area:subscriptions", areaKey);
-        }
+        // Xóa subscription khỏi registry
+        subscriptionRegistry.unsubscribe(Kind.AREA, areaKey, sessionId);
 
         // Gửi xác nhận hủy đăng ký thành công
         Map<String, Object> response = new HashMap<>();
@@ -111,11 +102,8 @@ public class WebSocketSubscriptionService {
      * Đăng ký client vào máy bay cụ thể
      */
     public void subscribeToAircraft(String sessionId, String hexIdent) {
-        String aircraftKey = "aircraft_" + hexIdent;
-
-        // Lưu subscription vào Redis
-        redisTemplate.opsForSet().add("aircraft:" + hexIdent + ":clients", sessionId);
-        redisTemplate.opsForSet().add("client:" + sessionId + ":aircraft:subscriptions", hexIdent);
+        // Lưu subscription vào registry
+        subscriptionRegistry.subscribe(Kind.AIRCRAFT, hexIdent, sessionId);
 
         // Gửi xác nhận đăng ký thành công
         Map<String, Object> response = new HashMap<>();
@@ -129,9 +117,8 @@ public class WebSocketSubscriptionService {
      * Hủy đăng ký client khỏi máy bay cụ thể
      */
     public void unsubscribeFromAircraft(String sessionId, String hexIdent) {
-        // Xóa subscription khỏi Redis
-        redisTemplate.opsForSet().remove("aircraft:" + hexIdent + ":clients", sessionId);
-        redisTemplate.opsForSet().remove("client:" + sessionId + ":aircraft:subscriptions", hexIdent);
+        // Xóa subscription khỏi registry
+        subscriptionRegistry.unsubscribe(Kind.AIRCRAFT, hexIdent, sessionId);
 
         // Gửi xác nhận hủy đăng ký thành công
         Map<String, Object> response = new HashMap<>();
@@ -147,34 +134,8 @@ public class WebSocketSubscriptionService {
     public void handleDisconnect(String sessionId) {
         log.info("Xử lý disconnect cho client: {}", sessionId);
 
-        // Xóa tất cả area subscriptions
-        Set<Object> areaSubscriptions = redisTemplate.opsForSet().members("client:" + sessionId + ":subscriptions");
-        if (areaSubscriptions != null) {
-            for (Object sub : areaSubscriptions) {
-                String areaKey = (String) sub;
-                redisTemplate.opsForSet().remove("area:" + areaKey + ":clients", sessionId);
-
-                // Nếu không còn client nào đăng ký area này
-                Long clientCount = redisTemplate.opsForSet().size("area:" + areaKey + ":clients");
-                if (clientCount != null && clientCount == 0) {
-                    redisTemplate.opsForSet().remove("active:area:subscriptions", areaKey);
-                }
-            }
-        }
-
-        // Xóa tất cả aircraft subscriptions
-        Set<Object> aircraftSubscriptions = redisTemplate.opsForSet()
-                .members("client:" + sessionId + ":aircraft:subscriptions");
-        if (aircraftSubscriptions != null) {
-            for (Object sub : aircraftSubscriptions) {
-                String hexIdent = (String) sub;
-                redisTemplate.opsForSet().remove("aircraft:" + hexIdent + ":clients", sessionId);
-            }
-        }
-
-        // Xóa các key client trong Redis
-        redisTemplate.delete("client:" + sessionId + ":subscriptions");
-        redisTemplate.delete("client:" + sessionId + ":aircraft:subscriptions");
+        // Xóa tất cả subscriptions (area, aircraft, ship) của client
+        subscriptionRegistry.removeSession(sessionId);
     }
 
     // =============== SHIP METHODS FOR INTELLIGENT SERVICES ===============
@@ -189,14 +150,12 @@ public class WebSocketSubscriptionService {
                 request.getMinLongitude(), request.getMaxLongitude());
 
         try {
-            String areaKey = String.format("ship_area_%.6f_%.6f_%.6f_%.6f",
+            String areaKey = SubscriptionRegistry.areaKey("ship_area",
                     request.getMinLatitude(), request.getMaxLatitude(),
                     request.getMinLongitude(), request.getMaxLongitude());
 
-            // Save subscriptions to Redis
-            redisTemplate.opsForSet().add("active:ship:area:subscriptions", areaKey);
-            redisTemplate.opsForSet().add("ship:area:" + areaKey + ":clients", sessionId);
-            redisTemplate.opsForSet().add("client:" + sessionId + ":ship:area:subscriptions", areaKey);
+            // Save subscription to the registry
+            subscriptionRegistry.subscribe(Kind.SHIP_AREA, areaKey, sessionId);
 
             // Send confirmation
             Map<String, Object> response = new HashMap<>();
@@ -224,19 +183,12 @@ public class WebSocketSubscriptionService {
      */
     public void unsubscribeFromShipArea(String sessionId,
             com.phamnam.tracking_vessel_flight.dto.request.AreaSubscriptionRequest request) {
-        String areaKey = String.format("ship_area_%.6f_%.6f_%.6f_%.6f",
+        String areaKey = SubscriptionRegistry.areaKey("ship_area",
                 request.getMinLatitude(), request.getMaxLatitude(),
                 request.getMinLongitude(), request.getMaxLongitude());
 
-        // Remove subscription from Redis
-        redisTemplate.opsForSet().remove("ship:area:" + areaKey + ":clients", sessionId);
-        redisTemplate.opsForSet().remove("client:" + sessionId + ":ship:area:subscriptions", areaKey);
-
-        // Check if any clients still subscribed
-        Long clientCount = redisTemplate.opsForSet().size("ship:area:" + areaKey + ":clients");
-        if (clientCount != null && clientCount == 0) {
-            redisTemplate.opsForSet().remove("active:ship:area:subscriptions", areaKey);
-        }
+        // Remove subscription from the registry
+        subscriptionRegistry.unsubscribe(Kind.SHIP_AREA, areaKey, sessionId);
 
         // Send confirmation
         Map<String, Object> response = new HashMap<>();
@@ -250,9 +202,8 @@ public class WebSocketSubscriptionService {
      * Subscribe to specific ship updates
      */
     public void subscribeToShip(String sessionId, String mmsi) {
-        // Save subscription to Redis
-        redisTemplate.opsForSet().add("ship:" + mmsi + ":clients", sessionId);
-        redisTemplate.opsForSet().add("client:" + sessionId + ":ship:subscriptions", mmsi);
+        // Save subscription to the registry
+        subscriptionRegistry.subscribe(Kind.SHIP, mmsi, sessionId);
 
         // Send confirmation
         Map<String, Object> response = new HashMap<>();
@@ -266,9 +217,8 @@ public class WebSocketSubscriptionService {
      * Unsubscribe from specific ship updates
      */
     public void unsubscribeFromShip(String sessionId, String mmsi) {
-        // Remove subscription from Redis
-        redisTemplate.opsForSet().remove("ship:" + mmsi + ":clients", sessionId);
-        redisTemplate.opsForSet().remove("client:" + sessionId + ":ship:subscriptions", mmsi);
+        // Remove subscription from the registry
+        subscriptionRegistry.unsubscribe(Kind.SHIP, mmsi, sessionId);
 
         // Send confirmation
         Map<String, Object> response = new HashMap<>();
@@ -309,49 +259,28 @@ public class WebSocketSubscriptionService {
     // =============== MISSING SHIP HELPER METHODS ===============
 
     /**
-     * Get ship subscribers for a specific MMSI
+     * Get ship subscribers for a specific MMSI. Only sessions on this node,
+     * the ones user destinations can reach.
      */
     public java.util.List<String> getShipSubscribers(String mmsi) {
-        try {
-            Set<Object> subscribers = redisTemplate.opsForSet().members("ship:" + mmsi + ":clients");
-            return subscribers != null
-                    ? subscribers.stream().map(Object::toString).collect(java.util.stream.Collectors.toList())
-                    : java.util.Collections.emptyList();
-        } catch (Exception e) {
-            log.error("Error getting ship subscribers for MMSI {}: {}", mmsi, e.getMessage());
-            return java.util.Collections.emptyList();
-        }
+        return new java.util.ArrayList<>(subscriptionRegistry.getSessions(Kind.SHIP, mmsi));
     }
 
     /**
-     * Get ship area subscribers for a specific position
+     * Get ship area subscribers (on this node) for a specific position
      */
     public java.util.List<String> getShipAreaSubscribers(Double latitude, Double longitude) {
-        try {
-            Set<Object> areaKeys = redisTemplate.opsForSet().members("active:ship:area:subscriptions");
-            java.util.List<String> allSubscribers = new java.util.ArrayList<>();
-
-            if (areaKeys != null) {
-                for (Object areaKey : areaKeys) {
-                    String key = areaKey.toString();
-                    if (isPositionInArea(latitude, longitude, key)) {
-                        Set<Object> areaSubscribers = redisTemplate.opsForSet()
-                                .members("ship:area:" + key + ":clients");
-                        if (areaSubscribers != null) {
-                            allSubscribers.addAll(areaSubscribers.stream()
-                                    .map(Object::toString)
-                                    .collect(java.util.stream.Collectors.toList()));
-                        }
-                    }
-                }
-            }
-
+        java.util.List<String> allSubscribers = new java.util.ArrayList<>();
+        if (latitude == null || longitude == null) {
             return allSubscribers;
-        } catch (Exception e) {
-            log.error("Error getting ship area subscribers for position ({}, {}): {}",
-                    latitude, longitude, e.getMessage());
-            return java.util.Collections.emptyList();
         }
+        subscriptionRegistry.getLocalAreas(Kind.SHIP_AREA).forEach((areaKey, bounds) -> {
+            if (latitude >= bounds[0] && latitude <= bounds[1] &&
+                    longitude >= bounds[2] && longitude <= bounds[3]) {
+                allSubscribers.addAll(subscriptionRegistry.getSessions(Kind.SHIP_AREA, areaKey));
+            }
+        });
+        return allSubscribers;
     }
 
     /**
@@ -391,22 +320,4 @@ public class WebSocketSubscriptionService {
             throw e;
         }
     }
-
-    private boolean isPositionInArea(Double latitude, Double longitude, String areaKey) {
-        try {
-            // Parse area key: "ship_area_minLat_maxLat_minLon_maxLon"
-            String[] parts = areaKey.split("_");
-            if (parts.length >= 6) {
-                double minLat = Double.parseDouble(parts[2]);
-                double maxLat = Double.parseDouble(parts[3]);
-                double minLon = Double.parseDouble(parts[4]);
-                double maxLon = Double.parseDouble(parts[5]);
-                return latitude >= minLat && latitude <= maxLat &&
-                        longitude >= minLon && longitude <= maxLon;
-            }
-        } catch (Exception e) {
-            log.error("Error parsing area key {}: {}", areaKey, e.getMessage());
-        }
-        return false;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.backpressure;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session Backpressure Manager
+ *
+ * Gives every WebSocket session its own {@link SessionOutboundQueue}, so a
+ * slow client only delays (and conflates) its own stream. Writers send one
+ * frame at a time per session, at most frames-per-turn per drain turn; a
+ * session whose send has been blocked longer than send-time-limit is closed
+ * as a slow consumer, as Spring's session decorator would do.
+ *
+ * Each draining session gets its own virtual thread as writer. Socket writes
+ * block, so on a shared pool a few stalled clients would hold every writer
+ * until send-time-limit closed them; here a stalled send parks only its own
+ * session's thread.
+ */
+@Component
+@Slf4j
+public class SessionBackpressureManager {
+
+    @Value("${app.websocket.backpressure.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.websocket.backpressure.max-queue-size:1000}")
+    private int maxQueueSize = 1000;
+
+    @Value("${app.websocket.backpressure.send-time-limit:20000}")
+    private long sendTimeLimitMs = 20000;
+
+    @Value("${app.websocket.backpressure.frames-per-turn:32}")
+    private int framesPerTurn = 32;
+
+    private final Map<String, SessionOutboundQueue> queues = new ConcurrentHashMap<>();
+    private volatile Executor writer;
+
+    private final AtomicLong slowConsumersClosed = new AtomicLong(0);
+    // Totals of closed sessions, so the node totals survive disconnects
+    private final AtomicLong closedConflated = new AtomicLong(0);
+    private final AtomicLong closedDropped = new AtomicLong(0);
+    private final AtomicLong closedBytesSent = new AtomicLong(0);
+
+    /**
+     * Decorator for the STOMP WebSocket handler, registered through
+     * WebSocketTransportRegistration.addDecoratorFactory
+     */
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        if (!enabled) {
+            return handler;
+        }
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SessionOutboundQueue queue = new SessionOutboundQueue(session, writer(), maxQueueSize,
+                        framesPerTurn);
+                queues.put(session.getId(), queue);
+                super.afterConnectionEstablished(queue);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                SessionOutboundQueue queue = queues.remove(session.getId());
+                if (queue != null) {
+                    closedConflated.addAndGet(queue.getConflated());
+                    closedDropped.addAndGet(queue.getDropped());
+                    closedBytesSent.addAndGet(queue.getBytesSent());
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    private Executor writer() {
+        Executor current = writer;
+        if (current == null) {
+            synchronized (this) {
+                if (writer == null) {
+                    writer = createWriter();
+                }
+                current = writer;
+            }
+        }
+        return current;
+    }
+
+    private Executor createWriter() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ws-writer-");
+        executor.setVirtualThreads(true);
+        log.info("✅ WebSocket session writers on virtual threads ({} frames per turn)", framesPerTurn);
+        return executor;
+    }
+
+    /**
+     * Close sessions whose current send has been blocked for longer than
+     * send-time-limit; their queued frames are discarded
+     */
+    @Scheduled(fixedDelayString = "${app.websocket.backpressure.check-interval:5000}")
+    public void closeSlowConsumers() {
+        for (SessionOutboundQueue queue : queues.values()) {
+            long blockedMs = queue.getSendInProgressMs();
+            if (blockedMs <= sendTimeLimitMs) {
+                continue;
+            }
+            slowConsumersClosed.incrementAndGet();
+            log.warn("🐢 Closing slow WebSocket session {}: send blocked for {}ms with {} frames queued",
+                    queue.getId(), blockedMs, queue.getQueueDepth());
+            try {
+                queue.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (Exception e) {
+                log.debug("Failed to close slow WebSocket session {}: {}", queue.getId(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writer instanceof SimpleAsyncTaskExecutor executor) {
+            executor.close();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        List<Map<String, Object>> sessions = queues.values().stream()
+                .map(SessionOutboundQueue::getStatistics)
+                .sorted(Comparator.comparing((Map<String, Object> stats) -> (Integer) stats.get("queueDepth"))
+                        .reversed())
+                .toList();
+
+        long conflated = closedConflated.get();
+        long dropped = closedDropped.get();
+        long bytesSent = closedBytesSent.get();
+        int queuedFrames = 0;
+        for (Map<String, Object> session : sessions) {
+            conflated += (Long) session.get("conflated");
+            dropped += (Long) session.get("dropped");
+            bytesSent += (Long) session.get("bytesSent");
+            queuedFrames += (Integer) session.get("queueDepth");
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxQueueSize", maxQueueSize);
+        stats.put("sendTimeLimitMs", sendTimeLimitMs);
+        stats.put("framesPerTurn", framesPerTurn);
+        stats.put("activeSessions", sessions.size());
+        stats.put("queuedFrames", queuedFrames);
+        stats.put("conflated", conflated);
+        stats.put("dropped", dropped);
+        stats.put("bytesSent", bytesSent);
+        stats.put("slowConsumersClosed", slowConsumersClosed.get());
+        // Deepest queues first
+        stats.put("sessions", sessions);
+        return stats;
+    }
+}
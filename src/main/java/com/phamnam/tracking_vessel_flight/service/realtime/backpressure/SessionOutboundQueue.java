@@ -0,0 +1,251 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.backpressure;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbound queue of one WebSocket session.
+ *
+ * Sits under Spring's ConcurrentWebSocketSessionDecorator: sendMessage only
+ * queues the frame and returns, and a writer thread drains the queue to the
+ * socket. While a client keeps up the queue stays empty; when it falls
+ * behind, STOMP MESSAGE frames carrying an "entity" header replace the queued
+ * frame for the same subscription, destination and entity, so a slow client
+ * receives the newest state of each entity instead of a backlog. Frames
+ * without an entity header keep their place; past max-queue-size the oldest
+ * MESSAGE frame is dropped. Other frames (CONNECTED, RECEIPT, ERROR,
+ * heartbeats) are never conflated or dropped and go out first.
+ *
+ * A drain turn sends at most frames-per-turn frames; a session with more
+ * queued submits a new turn to the writer, behind the turns of other
+ * sessions already waiting.
+ */
+@Slf4j
+public class SessionOutboundQueue extends WebSocketSessionDecorator {
+
+    public static final String ENTITY_HEADER = "entity";
+
+    private final Executor writer;
+    private final int maxQueueSize;
+    private final int framesPerTurn;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<WebSocketMessage<?>> control = new ArrayDeque<>();
+    private final LinkedHashMap<String, WebSocketMessage<?>> messages = new LinkedHashMap<>();
+    private boolean draining;
+    private boolean closed;
+    private long sequence;
+
+    private final AtomicLong queued = new AtomicLong(0);
+    private final AtomicLong sent = new AtomicLong(0);
+    private final AtomicLong conflated = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final AtomicLong bytesSent = new AtomicLong(0);
+    private final AtomicLong sendFailures = new AtomicLong(0);
+    private volatile int maxQueueDepth;
+    // Start of the send in progress, 0 when idle
+    private volatile long sendStartedAt;
+    private final long connectedAt = System.currentTimeMillis();
+
+    // Bytes per second over the last full second of sending
+    private volatile long rateWindowStart = System.currentTimeMillis();
+    private long rateWindowBytes;
+    private volatile long bytesPerSecond;
+
+    public SessionOutboundQueue(WebSocketSession delegate, Executor writer, int maxQueueSize, int framesPerTurn) {
+        super(delegate);
+        this.writer = writer;
+        this.maxQueueSize = Math.max(1, maxQueueSize);
+        this.framesPerTurn = Math.max(1, framesPerTurn);
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        boolean startDrain;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            queued.incrementAndGet();
+            String key = messageKey(message);
+            if (key == null) {
+                control.add(message);
+            } else if (messages.put(key, message) != null) {
+                conflated.incrementAndGet();
+            } else if (messages.size() > maxQueueSize) {
+                Iterator<WebSocketMessage<?>> oldest = messages.values().iterator();
+                oldest.next();
+                oldest.remove();
+                dropped.incrementAndGet();
+            }
+            int depth = control.size() + messages.size();
+            if (depth > maxQueueDepth) {
+                maxQueueDepth = depth;
+            }
+            startDrain = !draining;
+            draining = true;
+        }
+        if (startDrain) {
+            writer.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        for (int turn = 0; turn < framesPerTurn; turn++) {
+            WebSocketMessage<?> next;
+            synchronized (lock) {
+                next = control.poll();
+                if (next == null && !messages.isEmpty()) {
+                    Iterator<WebSocketMessage<?>> oldest = messages.values().iterator();
+                    next = oldest.next();
+                    oldest.remove();
+                }
+                if (next == null || closed) {
+                    draining = false;
+                    return;
+                }
+            }
+            write(next);
+        }
+        synchronized (lock) {
+            if (closed || control.isEmpty() && messages.isEmpty()) {
+                draining = false;
+                return;
+            }
+        }
+        // Still draining: the next turn goes to the back of the writer queue
+        writer.execute(this::drain);
+    }
+
+    private void write(WebSocketMessage<?> message) {
+        sendStartedAt = System.currentTimeMillis();
+        try {
+            getDelegate().sendMessage(message);
+            sent.incrementAndGet();
+            recordBytes(message.getPayloadLength());
+        } catch (Exception e) {
+            sendFailures.incrementAndGet();
+            log.debug("Failed to send WebSocket frame to session {}: {}", getId(), e.getMessage());
+        } finally {
+            sendStartedAt = 0;
+        }
+    }
+
+    private void recordBytes(int bytes) {
+        bytesSent.addAndGet(bytes);
+        // Only the writer thread of this session gets here
+        long now = System.currentTimeMillis();
+        rateWindowBytes += bytes;
+        long elapsed = now - rateWindowStart;
+        if (elapsed >= 1000) {
+            bytesPerSecond = rateWindowBytes * 1000 / elapsed;
+            rateWindowStart = now;
+            rateWindowBytes = 0;
+        }
+    }
+
+    /**
+     * Conflation key of a STOMP MESSAGE frame: "entity" frames by
+     * subscription, destination and entity, all others unique. Null for
+     * frames that must not be dropped.
+     */
+    private String messageKey(WebSocketMessage<?> message) {
+        if (!(message instanceof TextMessage text) || !text.getPayload().startsWith("MESSAGE\n")) {
+            return null;
+        }
+        String payload = text.getPayload();
+        String subscription = null;
+        String destination = null;
+        String entity = null;
+        int lineStart = "MESSAGE\n".length();
+        while (lineStart < payload.length()) {
+            int lineEnd = payload.indexOf('\n', lineStart);
+            if (lineEnd < 0 || lineEnd == lineStart) {
+                break; // blank line: end of headers
+            }
+            int colon = payload.indexOf(':', lineStart);
+            if (colon > lineStart && colon < lineEnd) {
+                String name = payload.substring(lineStart, colon);
+                // First occurrence of a repeated header wins, as in STOMP 1.2
+                if (subscription == null && "subscription".equals(name)) {
+                    subscription = payload.substring(colon + 1, lineEnd);
+                } else if (destination == null && "destination".equals(name)) {
+                    destination = payload.substring(colon + 1, lineEnd);
+                } else if (entity == null && ENTITY_HEADER.equals(name)) {
+                    entity = payload.substring(colon + 1, lineEnd);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        if (entity == null) {
+            return "#" + (sequence++);
+        }
+        return subscription + "|" + destination + "|" + entity;
+    }
+
+    /**
+     * How long the send in progress has been blocked, 0 when idle
+     */
+    public long getSendInProgressMs() {
+        long startedAt = sendStartedAt;
+        return startedAt == 0 ? 0 : System.currentTimeMillis() - startedAt;
+    }
+
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return control.size() + messages.size();
+        }
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        synchronized (lock) {
+            closed = true;
+            control.clear();
+            messages.clear();
+        }
+        super.close(status);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessionId", getId());
+        stats.put("connectedSeconds", (System.currentTimeMillis() - connectedAt) / 1000);
+        stats.put("queueDepth", getQueueDepth());
+        stats.put("maxQueueDepth", maxQueueDepth);
+        stats.put("queued", queued.get());
+        stats.put("sent", sent.get());
+        stats.put("conflated", conflated.get());
+        stats.put("dropped", dropped.get());
+        stats.put("sendFailures", sendFailures.get());
+        stats.put("bytesSent", bytesSent.get());
+        stats.put("bytesPerSecond", getSendInProgressMs() > 0 || getQueueDepth() > 0
+                || System.currentTimeMillis() - rateWindowStart < 2000 ? bytesPerSecond : 0);
+        stats.put("sendInProgressMs", getSendInProgressMs());
+        return stats;
+    }
+
+    long getConflated() {
+        return conflated.get();
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    long getBytesSent() {
+        return bytesSent.get();
+    }
+}
@@ -0,0 +1,495 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phamnam.tracking_vessel_flight.service.realtime.backpressure.SessionOutboundQueue;
+import com.phamnam.tracking_vessel_flight.util.LatencyHistogram;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Cluster Fan-out Service
+ *
+ * Cross-node delivery of STOMP topic messages. With the simple broker each
+ * node only reaches its own sessions, while Kafka hands each position to one
+ * node of the consumer group, so clients connected elsewhere would miss it.
+ *
+ * With app.websocket.cluster.enabled, topic sends go through Redis Pub/Sub:
+ * - positions are coalesced per grid cell for coalesce-window-ms (latest
+ *   update per entity wins) and published as one frame per cell on
+ *   {prefix}{kind}:{cell}
+ * - other topic messages (alerts, status, area batches) are published
+ *   immediately on {prefix}broadcast
+ * Every node, the publishing one included, pattern-subscribes to {prefix}*
+ * and delivers each message only to destinations that have subscribers in
+ * its {@link LocalSubscriptionIndex}. The publisher encodes each frame's
+ * payload to JSON once and carries that text as a string field of the
+ * envelope; receiving nodes hand its bytes to the local broker unchanged, so
+ * a payload is serialized once in the cluster however many nodes deliver it.
+ *
+ * Received messages are delivered by a single listener thread in the order
+ * Redis delivers them, so a cell's coalesce windows reach the local broker
+ * in sequence. Its queue holds listener-queue-capacity messages; when full,
+ * the Redis client waits rather than dropping or reordering.
+ *
+ * Position frames carry an "entity" STOMP header, which lets a slow
+ * session's {@link SessionOutboundQueue} keep only the newest frame per
+ * entity.
+ *
+ * Per-entity topics (/topic/aircraft/{id}, /topic/vessels/{mmsi}) are
+ * resolved with {@link #entityDestination}: with fan-out disabled an entity
+ * nobody on this node subscribes to gets no message at all; in cluster mode
+ * the destination is always kept and the receiving nodes filter.
+ *
+ * Disabled (the default), every send goes straight to the local broker.
+ * User destinations (/user/...) are always local.
+ *
+ * Either way the same byte[] is handed to the broker for each of a frame's
+ * destinations (and so to every session), not converted again per
+ * destination by the message converter. Locally, destinations without
+ * subscribers are skipped before anything is encoded. payloadsEncoded
+ * counts payload encodings on this node and payloadsForwarded the payloads
+ * it delivered from another node's encoding; serialization time (payloads
+ * and envelopes) is also recorded per coalesce window (tick).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterFanoutService {
+
+    private static final String BROADCAST_CHANNEL = "broadcast";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisConnectionFactory redisConnectionFactory;
+    private final ObjectMapper objectMapper;
+    private final LocalSubscriptionIndex localSubscriptionIndex;
+
+    @Value("${app.websocket.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.websocket.cluster.node-id:}")
+    private String nodeId;
+
+    @Value("${app.websocket.cluster.channel-prefix:ws:fanout:}")
+    private String channelPrefix = "ws:fanout:";
+
+    @Value("${app.websocket.cluster.cell-size-degrees:1.0}")
+    private double cellSizeDegrees = 1.0;
+
+    @Value("${app.websocket.cluster.listener-queue-capacity:10000}")
+    private int listenerQueueCapacity = 10000;
+
+    private RedisMessageListenerContainer listenerContainer;
+    private ThreadPoolTaskExecutor listenerExecutor;
+    private ThreadPoolTaskExecutor subscriptionExecutor;
+
+    // channel -> (kind:entityId -> latest frame) for the current window; the
+    // read lock is shared by writers, the write lock swaps the window
+    private Map<String, Map<String, Frame>> pendingByChannel = new ConcurrentHashMap<>();
+    private final ReadWriteLock windowLock = new ReentrantReadWriteLock();
+
+    private final AtomicLong framesQueued = new AtomicLong(0);
+    private final AtomicLong framesCoalesced = new AtomicLong(0);
+    private final AtomicLong messagesPublished = new AtomicLong(0);
+    private final AtomicLong bytesPublished = new AtomicLong(0);
+    private final AtomicLong publishFailures = new AtomicLong(0);
+    private final AtomicLong messagesReceived = new AtomicLong(0);
+    private final AtomicLong deliveredLocal = new AtomicLong(0);
+    private final AtomicLong skippedNoSubscriber = new AtomicLong(0);
+    private final AtomicLong entitySendsRouted = new AtomicLong(0);
+    private final AtomicLong entitySendsSkipped = new AtomicLong(0);
+    private final LatencyHistogram publishToDeliver = new LatencyHistogram();
+
+    private final AtomicLong payloadsEncoded = new AtomicLong(0);
+    private final AtomicLong bytesEncoded = new AtomicLong(0);
+    private final AtomicLong serializationNanos = new AtomicLong(0);
+    // Deliveries that reused a payload already encoded for another destination
+    private final AtomicLong encodingsShared = new AtomicLong(0);
+    // Payloads delivered from the publisher's bytes, with no encoding here
+    private final AtomicLong payloadsForwarded = new AtomicLong(0);
+    private final AtomicLong tickSerializationNanos = new AtomicLong(0);
+    private final LatencyHistogram serializationPerTick = new LatencyHistogram();
+    private volatile long lastTickSerializationMicros;
+
+    /**
+     * One message for the local broker: the payload, every destination it
+     * goes to and, for positions, the entity it describes
+     */
+    public record Frame(List<String> destinations, String entity, Object payload) {
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = ManagementFactory.getRuntimeMXBean().getName() + "-"
+                    + UUID.randomUUID().toString().substring(0, 8);
+        }
+        listenerExecutor = singleThreadExecutor("ws-fanout-listener-", listenerQueueCapacity);
+        // Blocking clients hold this thread for the whole subscription
+        subscriptionExecutor = singleThreadExecutor("ws-fanout-subscription-", 1);
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redisConnectionFactory);
+        listenerContainer.setTaskExecutor(listenerExecutor);
+        listenerContainer.setSubscriptionExecutor(subscriptionExecutor);
+        listenerContainer.addMessageListener((message, pattern) -> onMessage(message),
+                new PatternTopic(channelPrefix + "*"));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+        log.info("🌐 WebSocket cluster fan-out started on node {} (channels {}*)", nodeId, channelPrefix);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (listenerContainer == null) {
+            return;
+        }
+        flush();
+        try {
+            listenerContainer.destroy();
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to stop WebSocket cluster listener: {}", e.getMessage());
+        }
+        listenerExecutor.shutdown();
+        subscriptionExecutor.shutdown();
+        listenerContainer = null;
+    }
+
+    /**
+     * One thread with a bounded queue; a full queue makes the submitting
+     * thread wait for space, which keeps submission order
+     */
+    private static ThreadPoolTaskExecutor singleThreadExecutor(String threadNamePrefix, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("Cluster fan-out listener stopped");
+            }
+            try {
+                pool.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted waiting for the cluster fan-out listener", e);
+            }
+        });
+        executor.initialize();
+        return executor;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ============================================================================
+    // SENDING
+    // ============================================================================
+
+    /**
+     * Destination for a per-entity topic (parent + entityId), or null when no
+     * session can receive it so the caller skips that send
+     */
+    public String entityDestination(String parent, Object entityId) {
+        String id = String.valueOf(entityId);
+        String destination = enabled
+                ? localSubscriptionIndex.cachedDestination(parent, id)
+                : localSubscriptionIndex.entityDestination(parent, id);
+        (destination != null ? entitySendsRouted : entitySendsSkipped).incrementAndGet();
+        return destination;
+    }
+
+    /**
+     * Send a topic message to subscribers on every node
+     */
+    public void send(String destination, Object payload) {
+        if (!enabled) {
+            deliverLocal(new Frame(List.of(destination), null, payload));
+            return;
+        }
+        publish(channelPrefix + BROADCAST_CHANNEL, List.of(new Frame(List.of(destination), null, payload)));
+    }
+
+    /**
+     * Send a position update to subscribers on every node. In cluster mode
+     * the update waits for the end of the window in its grid cell and is
+     * replaced by a newer update of the same entity.
+     */
+    public void sendPosition(String kind, String entityId, Double latitude, Double longitude, Object payload,
+            String... destinations) {
+        Frame frame = new Frame(List.of(destinations), kind + "/" + entityId, payload);
+        if (!enabled) {
+            deliverLocal(frame);
+            return;
+        }
+        String channel = channelPrefix + kind + ":" + cellKey(latitude, longitude);
+        windowLock.readLock().lock();
+        try {
+            Frame replaced = pendingByChannel
+                    .computeIfAbsent(channel, key -> new ConcurrentHashMap<>())
+                    .put(kind + ":" + entityId, frame);
+            framesQueued.incrementAndGet();
+            if (replaced != null) {
+                framesCoalesced.incrementAndGet();
+            }
+        } finally {
+            windowLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Publish the coalesced position frames of the window that just ended,
+     * one Redis message per grid cell
+     */
+    @Scheduled(fixedDelayString = "${app.websocket.cluster.coalesce-window-ms:250}")
+    public void flush() {
+        closeSerializationTick();
+        if (!enabled) {
+            return;
+        }
+        Map<String, Map<String, Frame>> window;
+        windowLock.writeLock().lock();
+        try {
+            if (pendingByChannel.isEmpty()) {
+                return;
+            }
+            window = pendingByChannel;
+            pendingByChannel = new ConcurrentHashMap<>();
+        } finally {
+            windowLock.writeLock().unlock();
+        }
+        window.forEach((channel, frames) -> publish(channel, new ArrayList<>(frames.values())));
+    }
+
+    private void publish(String channel, List<Frame> frames) {
+        List<byte[]> bodies = new ArrayList<>(frames.size());
+        try {
+            List<Map<String, Object>> wireFrames = new ArrayList<>(frames.size());
+            for (Frame frame : frames) {
+                byte[] body = encodeForBroker(frame);
+                bodies.add(body);
+                Map<String, Object> wireFrame = new LinkedHashMap<>();
+                wireFrame.put("destinations", frame.destinations());
+                wireFrame.put("entity", frame.entity());
+                // JSON text, not a JSON value: receivers pass these bytes on unchanged
+                wireFrame.put("payload", new String(body, StandardCharsets.UTF_8));
+                wireFrames.add(wireFrame);
+            }
+            Map<String, Object> envelope = new LinkedHashMap<>();
+            envelope.put("origin", nodeId);
+            envelope.put("sentAt", System.currentTimeMillis());
+            envelope.put("frames", wireFrames);
+            long start = System.nanoTime();
+            String json = objectMapper.writeValueAsString(envelope);
+            tickSerializationNanos.addAndGet(System.nanoTime() - start);
+            stringRedisTemplate.convertAndSend(channel, json);
+            messagesPublished.incrementAndGet();
+            bytesPublished.addAndGet(utf8Length(json));
+        } catch (Exception e) {
+            // Redis unavailable: local sessions still get the frames
+            publishFailures.incrementAndGet();
+            log.warn("⚠️ Cluster fan-out publish to {} failed, delivering locally only: {}", channel,
+                    e.getMessage());
+            for (int i = 0; i < frames.size(); i++) {
+                Frame frame = frames.get(i);
+                byte[] body = i < bodies.size() ? bodies.get(i) : null;
+                deliverLocal(frame.destinations(), frame.entity(),
+                        body != null ? () -> body : () -> encodeForBroker(frame));
+            }
+        }
+    }
+
+    // ============================================================================
+    // RECEIVING
+    // ============================================================================
+
+    void onMessage(Message message) {
+        messagesReceived.incrementAndGet();
+        try {
+            JsonNode envelope = objectMapper.readTree(message.getBody());
+            JsonNode sentAt = envelope.get("sentAt");
+            for (JsonNode frame : envelope.path("frames")) {
+                JsonNode entityNode = frame.get("entity");
+                String entity = entityNode == null || entityNode.isNull() ? null : entityNode.asText();
+                List<String> destinations = new ArrayList<>();
+                frame.path("destinations").forEach(destination -> destinations.add(destination.asText()));
+                // Already JSON: no decode into objects and no second encoding here
+                String payload = frame.path("payload").asText();
+                deliverLocal(destinations, entity, () -> {
+                    payloadsForwarded.incrementAndGet();
+                    return payload.getBytes(StandardCharsets.UTF_8);
+                });
+            }
+            if (sentAt != null) {
+                publishToDeliver.record(Math.max(0, System.currentTimeMillis() - sentAt.asLong()) * 1_000_000);
+            }
+        } catch (Exception e) {
+            log.error("❌ Failed to deliver cluster fan-out message: {}", e.getMessage(), e);
+        }
+    }
+
+    private void deliverLocal(Frame frame) {
+        deliverLocal(frame.destinations(), frame.entity(), () -> encodeForBroker(frame));
+    }
+
+    /**
+     * Deliver to this node's sessions; the body is produced for the first
+     * subscribed destination and shared by the others
+     */
+    private void deliverLocal(List<String> destinations, String entity, Supplier<byte[]> body) {
+        byte[] json = null;
+        for (String destination : destinations) {
+            if (!localSubscriptionIndex.hasSubscribers(destination)) {
+                skippedNoSubscriber.incrementAndGet();
+                continue;
+            }
+            if (json == null) {
+                json = body.get();
+            } else {
+                encodingsShared.incrementAndGet();
+            }
+            deliverLocal(destination, entity, json);
+        }
+    }
+
+    private byte[] encodeForBroker(Frame frame) {
+        try {
+            return encode(frame.payload());
+        } catch (JsonProcessingException e) {
+            throw new MessageConversionException("Failed to encode payload for " + frame.destinations(), e);
+        }
+    }
+
+    private byte[] encode(Object payload) throws JsonProcessingException {
+        long start = System.nanoTime();
+        byte[] json = objectMapper.writeValueAsBytes(payload);
+        recordSerialization(System.nanoTime() - start, json.length);
+        return json;
+    }
+
+    private void recordSerialization(long elapsedNanos, long bytes) {
+        payloadsEncoded.incrementAndGet();
+        bytesEncoded.addAndGet(bytes);
+        serializationNanos.addAndGet(elapsedNanos);
+        tickSerializationNanos.addAndGet(elapsedNanos);
+    }
+
+    /**
+     * Serialization time spent since the previous coalesce window
+     */
+    private void closeSerializationTick() {
+        long nanos = tickSerializationNanos.getAndSet(0);
+        lastTickSerializationMicros = nanos / 1_000;
+        if (nanos > 0) {
+            serializationPerTick.record(nanos);
+        }
+    }
+
+    private void deliverLocal(String destination, String entity, byte[] json) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        if (entity != null) {
+            headers.setNativeHeader(SessionOutboundQueue.ENTITY_HEADER, entity);
+        }
+        headers.setLeaveMutable(true);
+        messagingTemplate.send(destination, MessageBuilder.createMessage(json, headers.getMessageHeaders()));
+        deliveredLocal.incrementAndGet();
+    }
+
+    private String cellKey(Double latitude, Double longitude) {
+        if (latitude == null || longitude == null) {
+            return "none";
+        }
+        return String.format(Locale.ROOT, "%d_%d", (long) Math.floor(latitude / cellSizeDegrees),
+                (long) Math.floor(longitude / cellSizeDegrees));
+    }
+
+    /**
+     * Size of the string as sent by the template's UTF-8 serializer, without
+     * encoding it a second time
+     */
+    static long utf8Length(String text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                // Lone surrogates are replaced by '?'
+                bytes += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return bytes;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("nodeId", nodeId);
+        stats.put("framesQueued", framesQueued.get());
+        stats.put("framesCoalesced", framesCoalesced.get());
+        stats.put("messagesPublished", messagesPublished.get());
+        stats.put("bytesPublished", bytesPublished.get());
+        stats.put("publishFailures", publishFailures.get());
+        stats.put("messagesReceived", messagesReceived.get());
+        stats.put("deliveredLocal", deliveredLocal.get());
+        stats.put("skippedNoSubscriber", skippedNoSubscriber.get());
+        stats.put("entitySendsRouted", entitySendsRouted.get());
+        stats.put("entitySendsSkipped", entitySendsSkipped.get());
+        stats.put("publishToDeliver", publishToDeliver.toMap());
+        long encoded = payloadsEncoded.get();
+        stats.put("payloadsEncoded", encoded);
+        stats.put("bytesEncoded", bytesEncoded.get());
+        stats.put("encodingsShared", encodingsShared.get());
+        stats.put("payloadsForwarded", payloadsForwarded.get());
+        stats.put("avgSerializationMicros", encoded == 0 ? 0 : serializationNanos.get() / encoded / 1_000);
+        stats.put("lastTickSerializationMicros", lastTickSerializationMicros);
+        stats.put("serializationPerTick", serializationPerTick.toMap());
+        stats.put("localSubscriptions", localSubscriptionIndex.getStatistics());
+        return stats;
+    }
+}
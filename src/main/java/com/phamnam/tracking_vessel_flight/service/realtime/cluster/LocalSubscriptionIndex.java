@@ -0,0 +1,203 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local Subscription Index
+ *
+ * STOMP topic subscriptions held by sessions connected to this node, kept
+ * from the subscribe/unsubscribe/disconnect events seen by
+ * WebSocketEventListener. The simple broker only reaches local sessions, so
+ * this is what a node checks before delivering a frame that arrived from the
+ * cluster: destinations nobody here subscribes to are skipped without
+ * serializing or routing anything.
+ *
+ * Pattern subscriptions (e.g. /topic/aircraft/*) are matched the way the
+ * simple broker matches them.
+ *
+ * Exact destinations are also indexed by parent and last segment
+ * (/topic/aircraft/ + 888123), so a per-entity send can look up the
+ * destination string created at subscribe time instead of concatenating and
+ * matching one per update, and skip entities nobody watches.
+ */
+@Component
+@Slf4j
+public class LocalSubscriptionIndex {
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    // destination -> "sessionId/subscriptionId" keys
+    private final Map<String, Set<String>> subscriptionsByDestination = new ConcurrentHashMap<>();
+    // pattern destination -> "sessionId/subscriptionId" keys
+    private final Map<String, Set<String>> subscriptionsByPattern = new ConcurrentHashMap<>();
+    // sessionId -> subscriptionId -> destination, for unsubscribe and disconnect
+    private final Map<String, Map<String, String>> destinationsBySession = new ConcurrentHashMap<>();
+    // parent ("/topic/aircraft/") -> entity id -> subscribed exact destination
+    private final Map<String, Map<String, String>> entityDestinations = new ConcurrentHashMap<>();
+    // parent -> entity id -> destination, for sends the index cannot rule out
+    private final Map<String, Map<String, String>> destinationCache = new ConcurrentHashMap<>();
+    private static final int MAX_CACHED_DESTINATIONS = 50_000;
+
+    public void subscribe(String sessionId, String subscriptionId, String destination) {
+        if (sessionId == null || subscriptionId == null || destination == null) {
+            return;
+        }
+        String previous = destinationsBySession
+                .computeIfAbsent(sessionId, key -> new ConcurrentHashMap<>())
+                .put(subscriptionId, destination);
+        if (previous != null) {
+            remove(previous, key(sessionId, subscriptionId));
+        }
+        // compute, not computeIfAbsent + add, so a concurrent remove of the
+        // last subscription cannot drop the set this one is added to
+        subscriptionsFor(destination).compute(destination, (key, subscriptions) -> {
+            Set<String> updated = subscriptions;
+            if (updated == null) {
+                updated = ConcurrentHashMap.newKeySet();
+                indexEntity(destination, true);
+            }
+            updated.add(key(sessionId, subscriptionId));
+            return updated;
+        });
+    }
+
+    public void unsubscribe(String sessionId, String subscriptionId) {
+        if (sessionId == null || subscriptionId == null) {
+            return;
+        }
+        Map<String, String> destinations = destinationsBySession.get(sessionId);
+        String destination = destinations != null ? destinations.remove(subscriptionId) : null;
+        if (destination != null) {
+            remove(destination, key(sessionId, subscriptionId));
+        }
+    }
+
+    public void removeSession(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        Map<String, String> destinations = destinationsBySession.remove(sessionId);
+        if (destinations != null) {
+            destinations.forEach((subscriptionId, destination) -> remove(destination, key(sessionId, subscriptionId)));
+            log.debug("Removed {} local subscriptions of session {}", destinations.size(), sessionId);
+        }
+    }
+
+    /**
+     * Whether any session on this node would receive a message sent to this
+     * destination
+     */
+    public boolean hasSubscribers(String destination) {
+        Set<String> exact = subscriptionsByDestination.get(destination);
+        if (exact != null && !exact.isEmpty()) {
+            return true;
+        }
+        for (String pattern : subscriptionsByPattern.keySet()) {
+            if (pathMatcher.match(pattern, destination)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Destination of an entity topic (parent + entityId) if a session on this
+     * node subscribes to it, exactly or through a pattern; null otherwise
+     */
+    public String entityDestination(String parent, String entityId) {
+        Map<String, String> entities = entityDestinations.get(parent);
+        String destination = entities != null ? entities.get(entityId) : null;
+        if (destination != null || subscriptionsByPattern.isEmpty()) {
+            return destination;
+        }
+        destination = cachedDestination(parent, entityId);
+        for (String pattern : subscriptionsByPattern.keySet()) {
+            if (pathMatcher.match(pattern, destination)) {
+                return destination;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * parent + entityId, built once per entity
+     */
+    public String cachedDestination(String parent, String entityId) {
+        Map<String, String> entities = destinationCache.computeIfAbsent(parent, key -> new ConcurrentHashMap<>());
+        String destination = entities.get(entityId);
+        if (destination == null) {
+            if (entities.size() >= MAX_CACHED_DESTINATIONS) {
+                entities.clear();
+            }
+            destination = parent + entityId;
+            entities.put(entityId, destination);
+        }
+        return destination;
+    }
+
+    public int getSessionCount() {
+        return destinationsBySession.size();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", destinationsBySession.size());
+        stats.put("destinations", subscriptionsByDestination.size());
+        stats.put("patterns", subscriptionsByPattern.size());
+        stats.put("subscriptions", destinationsBySession.values().stream().mapToInt(Map::size).sum());
+        stats.put("subscribedEntities", entityDestinations.values().stream().mapToInt(Map::size).sum());
+        stats.put("cachedDestinations", destinationCache.values().stream().mapToInt(Map::size).sum());
+        return stats;
+    }
+
+    private Map<String, Set<String>> subscriptionsFor(String destination) {
+        return pathMatcher.isPattern(destination) ? subscriptionsByPattern : subscriptionsByDestination;
+    }
+
+    private void remove(String destination, String subscriptionKey) {
+        subscriptionsFor(destination).computeIfPresent(destination, (key, subscriptions) -> {
+            subscriptions.remove(subscriptionKey);
+            if (!subscriptions.isEmpty()) {
+                return subscriptions;
+            }
+            indexEntity(destination, false);
+            return null;
+        });
+    }
+
+    /**
+     * Add or drop an exact destination in the entity index; called inside
+     * the compute of its subscription set, so it follows that set
+     */
+    private void indexEntity(String destination, boolean subscribed) {
+        int slash = destination.lastIndexOf('/');
+        if (slash <= 0 || slash == destination.length() - 1 || pathMatcher.isPattern(destination)) {
+            return;
+        }
+        String parent = destination.substring(0, slash + 1);
+        String entityId = destination.substring(slash + 1);
+        if (subscribed) {
+            entityDestinations.compute(parent, (key, entities) -> {
+                Map<String, String> updated = entities != null ? entities : new ConcurrentHashMap<>();
+                updated.put(entityId, destination);
+                return updated;
+            });
+        } else {
+            entityDestinations.computeIfPresent(parent, (key, entities) -> {
+                entities.remove(entityId);
+                return entities.isEmpty() ? null : entities;
+            });
+        }
+    }
+
+    private static String key(String sessionId, String subscriptionId) {
+        return sessionId + "/" + subscriptionId;
+    }
+}
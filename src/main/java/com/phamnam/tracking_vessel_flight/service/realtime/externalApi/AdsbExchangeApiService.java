@@ -1,26 +1,17 @@
 package com.phamnam.tracking_vessel_flight.service.realtime.externalApi;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.phamnam.tracking_vessel_flight.dto.request.AircraftTrackingRequest;
-import com.phamnam.tracking_vessel_flight.dto.response.external.AdsbExchangeResponse;
-import com.phamnam.tracking_vessel_flight.models.DataSource;
-import com.phamnam.tracking_vessel_flight.models.DataSourceStatus;
 import com.phamnam.tracking_vessel_flight.models.enums.DataSourceType;
-import com.phamnam.tracking_vessel_flight.models.enums.SourceStatus;
-import com.phamnam.tracking_vessel_flight.repository.DataSourceRepository;
-import com.phamnam.tracking_vessel_flight.repository.DataSourceStatusRepository;
-import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.mapper.ExternalApiMapper;
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.mapper.TrackingResponseParser;
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.polling.TiledSource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.client.ResourceAccessException;
-import org.springframework.web.client.HttpClientErrorException;
 
-import java.time.LocalDateTime;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -29,11 +20,14 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class AdsbExchangeApiService {
 
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
-    private final DataSourceRepository dataSourceRepository;
-    private final DataSourceStatusRepository dataSourceStatusRepository;
-    private final ExternalApiMapper externalApiMapper;
+    private static final String SOURCE = "adsbexchange";
+
+    private static final SourceHealthRegistry.SourceIdentity IDENTITY = new SourceHealthRegistry.SourceIdentity(
+            SOURCE, DataSourceType.ADS_B.getDisplayName(), DataSourceType.ADS_B, 2);
+
+    private final ExternalHttpClientPool httpClientPool;
+    private final SourceHealthRegistry sourceHealth;
+    private final TrackingResponseParser trackingResponseParser;
 
     // ADS-B Exchange Configuration
     @Value("${external.api.adsbexchange.enabled:true}")
@@ -45,9 +39,6 @@ public class AdsbExchangeApiService {
     @Value("${external.api.adsbexchange.api-key}")
     private String adsbExchangeApiKey;
 
-    @Value("${external.api.adsbexchange.timeout:10000}")
-    private int adsbExchangeTimeout;
-
     // Geographic bounds
     @Value("${external.api.bounds.min-latitude:8.5}")
     private double minLatitude;
@@ -64,57 +55,67 @@ public class AdsbExchangeApiService {
     /**
      * Fetch aircraft data from ADS-B Exchange API
      */
-    @Async("taskExecutor")
     public CompletableFuture<List<AircraftTrackingRequest>> fetchAircraftData() {
         if (!adsbExchangeEnabled) {
             log.debug("ADS-B Exchange API is disabled");
             return CompletableFuture.completedFuture(List.of());
         }
+        if (!sourceHealth.allowRequest(SOURCE)) {
+            log.debug("ADS-B Exchange circuit open, skipping poll");
+            return CompletableFuture.completedFuture(List.of());
+        }
 
-        DataSource dataSource = getOrCreateDataSource(DataSourceType.ADS_B.getDisplayName(), DataSourceType.ADS_B);
-
-        try {
-            log.info("🔄 Fetching aircraft data from ADS-B Exchange API...");
-
-            String url = buildAdsbExchangeUrl();
-            log.info("🌐 ADS-B Exchange URL: {}", url);
-
-            HttpHeaders headers = createHeaders(adsbExchangeApiKey);
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                    url, HttpMethod.GET, entity, String.class);
-
-            if (response.getStatusCode() == HttpStatus.OK) {
-                log.info("✅ ADS-B Exchange API response received, body length: {}",
-                        response.getBody() != null ? response.getBody().length() : 0);
-
-                List<AircraftTrackingRequest> aircraftData = parseAdsbExchangeResponse(response.getBody());
+        log.debug("Fetching aircraft data from ADS-B Exchange API...");
+        String url = buildAdsbExchangeUrl();
+        long startTime = System.currentTimeMillis();
+
+        // Non-blocking: the request runs on this source's own HTTP client and the
+        // body is parsed as it streams in
+        return httpClientPool.get(SOURCE, url, createHeaders(adsbExchangeApiKey), this::parseAdsbExchangeResponse)
+                .handle((aircraftData, error) -> {
+                    long responseTime = System.currentTimeMillis() - startTime;
+                    recordFetchOutcome(error == null ? aircraftData.size() : 0, error, responseTime);
+                    return error == null ? aircraftData : List.<AircraftTrackingRequest>of();
+                });
+    }
 
-                updateDataSourceStatus(dataSource, SourceStatus.HEALTHY,
-                        "Successfully fetched " + aircraftData.size() + " aircraft");
+    /**
+     * ADS-B Exchange as seen by the adaptive tile poll scheduler
+     */
+    public TiledSource<AircraftTrackingRequest> tiledSource() {
+        return TiledSource.<AircraftTrackingRequest>builder()
+                .name(SOURCE)
+                .enabled(adsbExchangeEnabled)
+                .urlBuilder(tile -> buildAdsbExchangeUrl())
+                .headers(createHeaders(adsbExchangeApiKey))
+                .reader(this::parseAdsbExchangeResponse)
+                .idExtractor(AircraftTrackingRequest::getHexident)
+                .latitudeExtractor(AircraftTrackingRequest::getLatitude)
+                .longitudeExtractor(AircraftTrackingRequest::getLongitude)
+                .requestGate(() -> sourceHealth.allowRequest(SOURCE))
+                .outcomeRecorder(this::recordFetchOutcome)
+                .build();
+    }
 
-                log.info("✈️ Successfully fetched {} aircraft from ADS-B Exchange", aircraftData.size());
-                return CompletableFuture.completedFuture(aircraftData);
-            } else {
-                throw new RuntimeException("Unexpected response status: " + response.getStatusCode());
-            }
+    /**
+     * Record a fetch (or a round of tile polls) in the data source status
+     */
+    private void recordFetchOutcome(int count, Throwable error, long responseTime) {
+        if (error == null) {
+            sourceHealth.recordSuccess(IDENTITY, count, responseTime);
+            log.info("Successfully fetched {} aircraft from ADS-B Exchange in {}ms", count, responseTime);
+            return;
+        }
 
-        } catch (HttpClientErrorException.NotFound e) {
-            log.debug("ADS-B Exchange API endpoint not found (404). This is expected if mock service is not running.");
-            updateDataSourceStatus(dataSource, SourceStatus.ERROR,
-                    "API endpoint not found - possibly mock service not running");
-            return CompletableFuture.completedFuture(List.of());
-        } catch (ResourceAccessException e) {
-            log.debug("Failed to connect to ADS-B Exchange API: {}. Continuing without external data.", e.getMessage());
-            updateDataSourceStatus(dataSource, SourceStatus.ERROR, "Connection failed: " + e.getMessage());
-            return CompletableFuture.completedFuture(List.of());
-        } catch (Exception e) {
-            log.debug("Failed to fetch aircraft data from ADS-B Exchange: {}. Continuing without external data.",
-                    e.getMessage());
-            updateDataSourceStatus(dataSource, SourceStatus.ERROR, "Error: " + e.getMessage());
-            return CompletableFuture.completedFuture(List.of());
+        Throwable cause = ExternalHttpClientPool.unwrap(error);
+        if (ExternalHttpClientPool.isBusy(cause)) {
+            // Previous poll still running: not a source failure
+            log.debug("ADS-B Exchange poll skipped: {}", cause.getMessage());
+            return;
         }
+        log.debug("Failed to fetch aircraft data from ADS-B Exchange: {}. Continuing without external data.",
+                cause.getMessage());
+        sourceHealth.recordFailure(IDENTITY, cause, responseTime);
     }
 
     /**
@@ -128,42 +129,14 @@ public class AdsbExchangeApiService {
     }
 
     /**
-     * Parse ADS-B Exchange API response
+     * Parse ADS-B Exchange API response straight from the response stream
      */
-    /**
-     * Parse ADS-B Exchange API response using ObjectMapper for direct DTO mapping
-     */
-    private List<AircraftTrackingRequest> parseAdsbExchangeResponse(String responseBody) {
-        try {
-            log.info("🔍 Parsing ADS-B Exchange response using ObjectMapper, length: {}",
-                    responseBody != null ? responseBody.length() : 0);
-
-            // Use ObjectMapper to directly map JSON to DTO
-            AdsbExchangeResponse response = objectMapper.readValue(responseBody, AdsbExchangeResponse.class);
-            log.info("📝 ADS-B Exchange response parsed successfully");
-
-            List<com.phamnam.tracking_vessel_flight.dto.response.external.AdsbExchangeAircraftData> aircraft = response
-                    .getActualAircraft();
-            if (aircraft == null || aircraft.isEmpty()) {
-                log.warn("❌ No aircraft found in ADS-B Exchange response");
-                return List.of();
-            }
-
-            log.info("📊 Found {} aircraft in response", aircraft.size());
-
-            // Convert each aircraft using the mapper
-            List<AircraftTrackingRequest> result = aircraft.stream()
-                    .map(externalApiMapper::fromAdsbExchange)
-                    .filter(ac -> ac != null) // Filter out null results
-                    .toList();
-
-            log.info("✅ Successfully converted {} aircraft using ObjectMapper", result.size());
-            return result;
-
-        } catch (Exception e) {
-            log.error("❌ Failed to parse ADS-B Exchange response using ObjectMapper", e);
-            return List.of();
+    private List<AircraftTrackingRequest> parseAdsbExchangeResponse(InputStream responseBody) throws IOException {
+        List<AircraftTrackingRequest> result = trackingResponseParser.parseAdsbExchange(responseBody);
+        if (result.isEmpty()) {
+            log.warn("❌ No aircraft found in ADS-B Exchange response");
         }
+        return result;
     }
 
     /**
@@ -182,54 +155,11 @@ public class AdsbExchangeApiService {
         return headers;
     }
 
-    /**
-     * Get or create data source record
-     */
-    private DataSource getOrCreateDataSource(String name, DataSourceType type) {
-        return dataSourceRepository.findByName(name)
-                .orElseGet(() -> {
-                    DataSource dataSource = DataSource.builder()
-                            .name(name)
-                            .sourceType(type)
-                            .isEnabled(true)
-                            .isActive(true)
-                            .priority(2) // Lower priority than FlightRadar24
-                            .consecutiveFailures(0)
-                            .build();
-                    return dataSourceRepository.save(dataSource);
-                });
-    }
-
-    /**
-     * Update data source status
-     */
-    private void updateDataSourceStatus(DataSource dataSource, SourceStatus status, String message) {
-        try {
-            MarineTrafficV2ApiService.checkHealthSource(dataSource, status, dataSourceRepository);
-
-            DataSourceStatus statusRecord = DataSourceStatus.builder()
-                    .dataSource(dataSource)
-                    .checkTime(LocalDateTime.now())
-                    .responseTime(1300L) // ADS-B Exchange response time
-                    .build();
-            dataSourceStatusRepository.save(statusRecord);
-
-        } catch (Exception e) {
-            log.error("Failed to update ADS-B Exchange data source status", e);
-        }
-    }
-
     /**
      * Check if ADS-B Exchange API is available
      */
     public boolean isAdsbExchangeAvailable() {
-        return adsbExchangeEnabled && isDataSourceHealthy(DataSourceType.ADS_B.getDisplayName());
-    }
-
-    private boolean isDataSourceHealthy(String name) {
-        return dataSourceRepository.findByName(name)
-                .map(DataSource::getIsActive)
-                .orElse(false);
+        return adsbExchangeEnabled && sourceHealth.isAvailable(SOURCE);
     }
 
     /**
@@ -0,0 +1,65 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.externalApi;
+
+import java.time.Duration;
+
+/**
+ * Failed provider request: a non-2xx response, or a poll rejected because
+ * the source already has its maximum number of requests in flight.
+ * Throttling responses (429/503) carry the provider's Retry-After, if any.
+ */
+public class ExternalApiHttpException extends RuntimeException {
+
+    private final String source;
+    private final int statusCode;
+    private final boolean busy;
+    private final Duration retryAfter;
+
+    public ExternalApiHttpException(String source, int statusCode) {
+        this(source, statusCode, null);
+    }
+
+    public ExternalApiHttpException(String source, int statusCode, Duration retryAfter) {
+        super(source + " responded with HTTP " + statusCode);
+        this.source = source;
+        this.statusCode = statusCode;
+        this.busy = false;
+        this.retryAfter = retryAfter;
+    }
+
+    private ExternalApiHttpException(String source, String message) {
+        super(message);
+        this.source = source;
+        this.statusCode = 0;
+        this.busy = true;
+        this.retryAfter = null;
+    }
+
+    public static ExternalApiHttpException busy(String source, int maxConcurrency) {
+        return new ExternalApiHttpException(source,
+                source + " already has " + maxConcurrency + " requests in flight");
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public boolean isBusy() {
+        return busy;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public boolean isThrottled() {
+        return statusCode == 429 || statusCode == 503;
+    }
+
+    public boolean isNotFound() {
+        return statusCode == 404;
+    }
+}
@@ -0,0 +1,408 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.externalApi;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Non-blocking HTTP clients for the external data providers, one per source.
+ *
+ * Each source gets its own JDK HttpClient (and so its own connection pool),
+ * HTTP/2 with fallback to HTTP/1.1, gzip/deflate decoding, its own timeout
+ * and a cap on concurrent requests. Requests are sent asynchronously and the
+ * body is parsed as it streams in on a small per-source executor, so a slow
+ * provider only ever holds its own threads and never the shared task
+ * executor. A poll that finds its source at the concurrency cap fails fast
+ * with {@link ExternalApiHttpException#isBusy()} instead of queueing.
+ *
+ * {@link #getConditional} sends the ETag/Last-Modified validators from the
+ * previous response and hands back the new ones, together with any
+ * rate-limit headers, so a poller can skip unchanged data (304) and pace
+ * itself against the provider's quota.
+ *
+ * Per-source settings, under external.api.{source}:
+ * - timeout: whole request including the body, in ms
+ * - connect-timeout: TCP/TLS connect, in ms
+ * - max-concurrency: requests in flight at once
+ */
+@Component
+@Slf4j
+public class ExternalHttpClientPool {
+
+    /**
+     * Reads a successful response body; the stream is closed by the pool
+     */
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    /**
+     * A response plus the headers a poller needs for the next request. The
+     * body is null when the server answered 304 Not Modified.
+     */
+    public record PolledResponse<T>(T body, int statusCode, String etag, String lastModified,
+            Long rateLimitRemaining, Duration rateLimitReset) {
+
+        public boolean notModified() {
+            return statusCode == 304;
+        }
+    }
+
+    private final Environment environment;
+    private final Map<String, SourceClient> clients = new ConcurrentHashMap<>();
+
+    @Value("${external.api.http.version:HTTP_2}")
+    private HttpClient.Version httpVersion = HttpClient.Version.HTTP_2;
+
+    @Value("${external.api.http.user-agent:TrackingSystem/1.0}")
+    private String userAgent = "TrackingSystem/1.0";
+
+    public ExternalHttpClientPool(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * GET a provider URL and read the body as it arrives. The future never
+     * blocks the caller; it completes exceptionally with an
+     * {@link ExternalApiHttpException} for non-2xx responses and a busy
+     * source, and with the I/O exception for connect/read failures and
+     * timeouts.
+     */
+    public <T> CompletableFuture<T> get(String source, String url, HttpHeaders headers, BodyReader<T> reader) {
+        return client(source).get(url, headers, reader);
+    }
+
+    /**
+     * Conditional GET: sends If-None-Match / If-Modified-Since when
+     * validators are given. A 304 completes normally with a null body.
+     */
+    public <T> CompletableFuture<PolledResponse<T>> getConditional(String source, String url, HttpHeaders headers,
+            String etag, String lastModified, BodyReader<T> reader) {
+        return client(source).exchange(url, headers, etag, lastModified, reader);
+    }
+
+    /**
+     * Requests a source may have in flight at once
+     */
+    public int maxConcurrency(String source) {
+        return client(source).maxConcurrency;
+    }
+
+    SourceClient client(String source) {
+        return clients.computeIfAbsent(source, this::createClient);
+    }
+
+    private SourceClient createClient(String source) {
+        String prefix = "external.api." + source + ".";
+        Duration timeout = Duration.ofMillis(environment.getProperty(prefix + "timeout", Long.class, 10000L));
+        Duration connectTimeout = Duration.ofMillis(
+                environment.getProperty(prefix + "connect-timeout", Long.class, 5000L));
+        int maxConcurrency = Math.max(1, environment.getProperty(prefix + "max-concurrency", Integer.class, 2));
+        log.info("🌐 HTTP client for {}: {} timeout {}ms, connect {}ms, max {} concurrent", source, httpVersion,
+                timeout.toMillis(), connectTimeout.toMillis(), maxConcurrency);
+        return new SourceClient(source, httpVersion, userAgent, timeout, connectTimeout, maxConcurrency);
+    }
+
+    /**
+     * Per-source request, latency and rejection counters
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("httpVersion", httpVersion);
+        Map<String, Object> sources = new LinkedHashMap<>();
+        clients.forEach((source, client) -> sources.put(source, client.getStatistics()));
+        stats.put("sources", sources);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clients.values().forEach(SourceClient::shutdown);
+    }
+
+    // ============================================================================
+    // PER-SOURCE CLIENT
+    // ============================================================================
+
+    static final class SourceClient {
+
+        private final String source;
+        private final String userAgent;
+        private final Duration timeout;
+        private final int maxConcurrency;
+        private final HttpClient httpClient;
+        private final ExecutorService bodyExecutor;
+        private final Semaphore permits;
+
+        private final AtomicLong requests = new AtomicLong(0);
+        private final AtomicLong failures = new AtomicLong(0);
+        private final AtomicLong rejected = new AtomicLong(0);
+        private final AtomicLong timeouts = new AtomicLong(0);
+        private final AtomicLong notModified = new AtomicLong(0);
+        private final AtomicLong totalLatencyMs = new AtomicLong(0);
+        private final AtomicLong lastLatencyMs = new AtomicLong(0);
+        private final AtomicLong lastStatus = new AtomicLong(0);
+
+        SourceClient(String source, HttpClient.Version version, String userAgent, Duration timeout,
+                Duration connectTimeout, int maxConcurrency) {
+            this.source = source;
+            this.userAgent = userAgent;
+            this.timeout = timeout;
+            this.maxConcurrency = maxConcurrency;
+            this.permits = new Semaphore(maxConcurrency);
+            AtomicInteger threadIndex = new AtomicInteger();
+            this.bodyExecutor = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+                Thread thread = new Thread(runnable, "http-" + source + "-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.httpClient = HttpClient.newBuilder()
+                    .version(version)
+                    .connectTimeout(connectTimeout)
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .build();
+        }
+
+        <T> CompletableFuture<T> get(String url, HttpHeaders headers, BodyReader<T> reader) {
+            return exchange(url, headers, null, null, reader).thenApply(PolledResponse::body);
+        }
+
+        <T> CompletableFuture<PolledResponse<T>> exchange(String url, HttpHeaders headers, String etag,
+                String lastModified, BodyReader<T> reader) {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                    .GET()
+                    // Header phase only; the body is bounded by orTimeout below
+                    .timeout(timeout)
+                    .header("User-Agent", userAgent)
+                    .header("Accept-Encoding", "gzip, deflate");
+            if (headers != null) {
+                headers.forEach((name, values) -> {
+                    if (!name.equalsIgnoreCase("User-Agent") && !name.equalsIgnoreCase("Accept-Encoding")) {
+                        values.forEach(value -> request.header(name, value));
+                    }
+                });
+            }
+            if (etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                request.header("If-Modified-Since", lastModified);
+            }
+
+            if (!permits.tryAcquire()) {
+                rejected.incrementAndGet();
+                return CompletableFuture.failedFuture(ExternalApiHttpException.busy(source, maxConcurrency));
+            }
+            requests.incrementAndGet();
+            long start = System.nanoTime();
+
+            AtomicReference<InputStream> openBody = new AtomicReference<>();
+            CompletableFuture<HttpResponse<InputStream>> exchange = httpClient.sendAsync(request.build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            return exchange
+                    .thenApplyAsync(response -> {
+                        int status = response.statusCode();
+                        lastStatus.set(status);
+                        try (InputStream body = decode(response)) {
+                            openBody.set(body);
+                            if (status == 304) {
+                                notModified.incrementAndGet();
+                                return SourceClient.<T>polled(response, null);
+                            }
+                            if (status < 200 || status >= 300) {
+                                throw new ExternalApiHttpException(source, status, retryAfter(response));
+                            }
+                            return polled(response, reader.read(body));
+                        } catch (IOException e) {
+                            throw new java.io.UncheckedIOException(e);
+                        }
+                    }, bodyExecutor)
+                    .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .whenComplete((result, error) -> {
+                        if (error != null) {
+                            // Aborts an exchange still waiting for headers and unblocks a
+                            // body read still running after the deadline
+                            exchange.cancel(true);
+                            closeQuietly(openBody.get());
+                        }
+                    })
+                    // Callers' stages (status bookkeeping) run on this source's executor,
+                    // never on the HTTP client's or the timeout scheduler's threads
+                    .whenCompleteAsync((result, error) -> {
+                        long latencyMs = (System.nanoTime() - start) / 1_000_000;
+                        lastLatencyMs.set(latencyMs);
+                        totalLatencyMs.addAndGet(latencyMs);
+                        if (error != null) {
+                            failures.incrementAndGet();
+                            if (isTimeout(unwrap(error))) {
+                                timeouts.incrementAndGet();
+                            }
+                        }
+                        permits.release();
+                    }, bodyExecutor);
+        }
+
+        private static <T> PolledResponse<T> polled(HttpResponse<?> response, T body) {
+            // java.net.http headers; the Spring HttpHeaders import is for request headers
+            var headers = response.headers();
+            Long remaining = headers.firstValue("X-RateLimit-Remaining")
+                    .or(() -> headers.firstValue("RateLimit-Remaining"))
+                    .map(SourceClient::parseLong)
+                    .orElse(null);
+            Duration reset = headers.firstValue("X-RateLimit-Reset")
+                    .or(() -> headers.firstValue("RateLimit-Reset"))
+                    .map(SourceClient::parseLong)
+                    .map(SourceClient::untilReset)
+                    .orElse(null);
+            return new PolledResponse<>(body, response.statusCode(), headers.firstValue("ETag").orElse(null),
+                    headers.firstValue("Last-Modified").orElse(null), remaining, reset);
+        }
+
+        /**
+         * Retry-After on 429/503, in either delta-seconds or HTTP-date form
+         */
+        private static Duration retryAfter(HttpResponse<?> response) {
+            String value = response.headers().firstValue("Retry-After").orElse(null);
+            if (value == null) {
+                return null;
+            }
+            Long seconds = parseLong(value);
+            if (seconds != null) {
+                return Duration.ofSeconds(Math.max(0, seconds));
+            }
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                Duration wait = Duration.between(ZonedDateTime.now(at.getZone()), at);
+                return wait.isNegative() ? Duration.ZERO : wait;
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Providers send the reset either as seconds from now or as an epoch second
+         */
+        private static Duration untilReset(Long value) {
+            if (value == null) {
+                return null;
+            }
+            long seconds = value > 1_000_000_000L ? value - System.currentTimeMillis() / 1000 : value;
+            return Duration.ofSeconds(Math.max(0, seconds));
+        }
+
+        private static Long parseLong(String value) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+            String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+            if (encoding.equalsIgnoreCase("gzip")) {
+                return new GZIPInputStream(response.body(), 16 * 1024);
+            }
+            if (encoding.equalsIgnoreCase("deflate")) {
+                return new InflaterInputStream(response.body());
+            }
+            return response.body();
+        }
+
+        private static void closeQuietly(InputStream body) {
+            if (body == null) {
+                return;
+            }
+            try {
+                body.close();
+            } catch (IOException ignored) {
+                // Already failed; nothing to report
+            }
+        }
+
+        Map<String, Object> getStatistics() {
+            long total = requests.get();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("timeoutMs", timeout.toMillis());
+            stats.put("maxConcurrency", maxConcurrency);
+            stats.put("inFlight", maxConcurrency - permits.availablePermits());
+            stats.put("requests", total);
+            stats.put("failures", failures.get());
+            stats.put("timeouts", timeouts.get());
+            stats.put("rejectedBusy", rejected.get());
+            stats.put("notModified", notModified.get());
+            stats.put("lastStatus", lastStatus.get());
+            stats.put("lastLatencyMs", lastLatencyMs.get());
+            stats.put("avgLatencyMs", total > 0 ? totalLatencyMs.get() / total : 0);
+            return stats;
+        }
+
+        void shutdown() {
+            bodyExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Status message for a failed request, in the wording the data source
+     * status records have always used
+     */
+    public static String failureMessage(Throwable cause) {
+        if (cause instanceof ExternalApiHttpException http && http.isNotFound()) {
+            return "API endpoint not found - possibly mock service not running";
+        }
+        if (cause instanceof IOException || isTimeout(cause)) {
+            return "Connection failed: " + cause.getMessage();
+        }
+        return "Error: " + cause.getMessage();
+    }
+
+    public static boolean isBusy(Throwable cause) {
+        return cause instanceof ExternalApiHttpException http && http.isBusy();
+    }
+
+    static boolean isTimeout(Throwable cause) {
+        return cause instanceof java.util.concurrent.TimeoutException
+                || cause instanceof java.net.http.HttpTimeoutException;
+    }
+
+    /**
+     * Strip CompletableFuture wrappers to the failure that ended a request
+     */
+    public static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof java.util.concurrent.CompletionException
+                || cause instanceof java.util.concurrent.ExecutionException
+                || cause instanceof java.io.UncheckedIOException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -1,27 +1,18 @@
 package com.phamnam.tracking_vessel_flight.service.realtime.externalApi;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.phamnam.tracking_vessel_flight.dto.request.VesselTrackingRequest;
-import com.phamnam.tracking_vessel_flight.dto.response.external.MarineTrafficV2Response;
-import com.phamnam.tracking_vessel_flight.models.DataSource;
-import com.phamnam.tracking_vessel_flight.models.DataSourceStatus;
 import com.phamnam.tracking_vessel_flight.models.enums.DataSourceType;
-import com.phamnam.tracking_vessel_flight.models.enums.SourceStatus;
-import com.phamnam.tracking_vessel_flight.repository.DataSourceRepository;
-import com.phamnam.tracking_vessel_flight.repository.DataSourceStatusRepository;
-import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.mapper.ExternalApiMapper;
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.mapper.TrackingResponseParser;
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.polling.TiledSource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.client.ResourceAccessException;
-import org.springframework.web.client.HttpClientErrorException;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -30,11 +21,14 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class MarineTrafficV2ApiService {
 
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
-    private final DataSourceRepository dataSourceRepository;
-    private final DataSourceStatusRepository dataSourceStatusRepository;
-    private final ExternalApiMapper externalApiMapper;
+    private static final String SOURCE = "marinetrafficv2";
+
+    private static final SourceHealthRegistry.SourceIdentity IDENTITY = new SourceHealthRegistry.SourceIdentity(
+            SOURCE, DataSourceType.MARINE_TRAFFIC.getDisplayName() + " V2", DataSourceType.MARINE_TRAFFIC, 4);
+
+    private final ExternalHttpClientPool httpClientPool;
+    private final SourceHealthRegistry sourceHealth;
+    private final TrackingResponseParser trackingResponseParser;
 
     // MarineTraffic V2 Configuration
     @Value("${external.api.marinetrafficv2.enabled:false}")
@@ -46,9 +40,6 @@ public class MarineTrafficV2ApiService {
     @Value("${external.api.marinetrafficv2.api-key}")
     private String marineTrafficV2ApiKey;
 
-    @Value("${external.api.marinetrafficv2.timeout:15000}")
-    private int marineTrafficV2Timeout;
-
     // Geographic bounds (same as main config but can be customized)
     @Value("${external.api.bounds.min-latitude:8.5}")
     private double minLatitude;
@@ -65,65 +56,80 @@ public class MarineTrafficV2ApiService {
     /**
      * Fetch vessel data from MarineTraffic V2 API
      */
-    @Async("taskExecutor")
     public CompletableFuture<List<VesselTrackingRequest>> fetchVesselData() {
         if (!marineTrafficV2Enabled) {
             log.debug("MarineTraffic V2 API is disabled");
             return CompletableFuture.completedFuture(List.of());
         }
+        if (!sourceHealth.allowRequest(SOURCE)) {
+            log.debug("MarineTraffic V2 circuit open, skipping poll");
+            return CompletableFuture.completedFuture(List.of());
+        }
 
-        DataSource dataSource = getOrCreateDataSource(DataSourceType.MARINE_TRAFFIC.getDisplayName() + " V2",
-                DataSourceType.MARINE_TRAFFIC);
-
-        try {
-            log.debug("Fetching vessel data from MarineTraffic V2 API...");
-
-            String url = buildMarineTrafficV2Url();
-            HttpHeaders headers = createHeaders(marineTrafficV2ApiKey);
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                    url, HttpMethod.GET, entity, String.class);
+        log.debug("Fetching vessel data from MarineTraffic V2 API...");
+        String url = buildMarineTrafficV2Url();
+        long startTime = System.currentTimeMillis();
 
-            if (response.getStatusCode() == HttpStatus.OK) {
-                List<VesselTrackingRequest> vesselData = parseMarineTrafficV2Response(response.getBody());
+        return httpClientPool.get(SOURCE, url, createHeaders(marineTrafficV2ApiKey), this::parseMarineTrafficV2Response)
+                .handle((vesselData, error) -> {
+                    long responseTime = System.currentTimeMillis() - startTime;
+                    recordFetchOutcome(error == null ? vesselData.size() : 0, error, responseTime);
+                    return error == null ? vesselData : List.<VesselTrackingRequest>of();
+                });
+    }
 
-                updateDataSourceStatus(dataSource, SourceStatus.HEALTHY,
-                        "Successfully fetched " + vesselData.size() + " vessels");
+    /**
+     * MarineTraffic V2 as seen by the adaptive tile poll scheduler
+     */
+    public TiledSource<VesselTrackingRequest> tiledSource() {
+        return TiledSource.<VesselTrackingRequest>builder()
+                .name(SOURCE)
+                .enabled(marineTrafficV2Enabled)
+                .urlBuilder(tile -> buildMarineTrafficV2Url(tile.minLatitude(), tile.maxLatitude(), tile.minLongitude(),
+                        tile.maxLongitude()))
+                .headers(createHeaders(marineTrafficV2ApiKey))
+                .reader(this::parseMarineTrafficV2Response)
+                .idExtractor(VesselTrackingRequest::getMmsi)
+                .latitudeExtractor(VesselTrackingRequest::getLatitude)
+                .longitudeExtractor(VesselTrackingRequest::getLongitude)
+                .requestGate(() -> sourceHealth.allowRequest(SOURCE))
+                .outcomeRecorder(this::recordFetchOutcome)
+                .build();
+    }
 
-                log.info("Successfully fetched {} vessels from MarineTraffic V2", vesselData.size());
-                return CompletableFuture.completedFuture(vesselData);
-            } else {
-                throw new RuntimeException("Unexpected response status: " + response.getStatusCode());
-            }
+    /**
+     * Record a fetch (or a round of tile polls) in the data source status
+     */
+    private void recordFetchOutcome(int count, Throwable error, long responseTime) {
+        if (error == null) {
+            sourceHealth.recordSuccess(IDENTITY, count, responseTime);
+            log.info("Successfully fetched {} vessels from MarineTraffic V2 in {}ms", count, responseTime);
+            return;
+        }
 
-        } catch (HttpClientErrorException.NotFound e) {
-            log.debug(
-                    "MarineTraffic V2 API endpoint not found (404). This is expected if mock service is not running.");
-            updateDataSourceStatus(dataSource, SourceStatus.ERROR,
-                    "API endpoint not found - possibly mock service not running");
-            return CompletableFuture.completedFuture(List.of());
-        } catch (ResourceAccessException e) {
-            log.debug("Failed to connect to MarineTraffic V2 API: {}. Continuing without external data.",
-                    e.getMessage());
-            updateDataSourceStatus(dataSource, SourceStatus.ERROR, "Connection failed: " + e.getMessage());
-            return CompletableFuture.completedFuture(List.of());
-        } catch (Exception e) {
-            log.debug("Failed to fetch vessel data from MarineTraffic V2: {}. Continuing without external data.",
-                    e.getMessage());
-            updateDataSourceStatus(dataSource, SourceStatus.ERROR, "Error: " + e.getMessage());
-            return CompletableFuture.completedFuture(List.of());
+        Throwable cause = ExternalHttpClientPool.unwrap(error);
+        if (ExternalHttpClientPool.isBusy(cause)) {
+            // Previous poll still running: not a source failure
+            log.debug("MarineTraffic V2 poll skipped: {}", cause.getMessage());
+            return;
         }
+        log.debug("Failed to fetch vessel data from MarineTraffic V2: {}. Continuing without external data.",
+                cause.getMessage());
+        sourceHealth.recordFailure(IDENTITY, cause, responseTime);
     }
 
     /**
      * Build MarineTraffic V2 API URL
      */
     private String buildMarineTrafficV2Url() {
+        return buildMarineTrafficV2Url(minLatitude, maxLatitude, minLongitude, maxLongitude);
+    }
+
+    private String buildMarineTrafficV2Url(double minLat, double maxLat, double minLon, double maxLon) {
         // Mock API format for simulator - encode JSON properly
         try {
             String boundsJson = String.format("{\"minLat\":%.6f,\"maxLat\":%.6f,\"minLon\":%.6f,\"maxLon\":%.6f}",
-                    minLatitude, maxLatitude, minLongitude, maxLongitude);
+                    minLat, maxLat, minLon, maxLon);
             return String.format("%s?bounds=%s", marineTrafficV2BaseUrl,
                     java.net.URLEncoder.encode(boundsJson, StandardCharsets.UTF_8));
         } catch (Exception e) {
@@ -134,30 +140,10 @@ public class MarineTrafficV2ApiService {
     }
 
     /**
-     * Parse MarineTraffic V2 API response
-     */
-    /**
-     * Parse MarineTraffic V2 API response using ObjectMapper for direct DTO mapping
+     * Parse MarineTraffic V2 API response straight from the response stream
      */
-    private List<VesselTrackingRequest> parseMarineTrafficV2Response(String responseBody) {
-        try {
-            // Use ObjectMapper to directly map JSON to DTO
-            MarineTrafficV2Response response = objectMapper.readValue(responseBody, MarineTrafficV2Response.class);
-
-            if (response.getVessels() == null || response.getVessels().isEmpty()) {
-                return List.of();
-            }
-
-            // Convert each vessel using the mapper
-            return response.getVessels().stream()
-                    .map(externalApiMapper::fromMarineTrafficV2)
-                    .filter(vessel -> vessel != null) // Filter out null results
-                    .toList();
-
-        } catch (Exception e) {
-            log.error("Failed to parse MarineTraffic V2 response using ObjectMapper", e);
-            return List.of();
-        }
+    private List<VesselTrackingRequest> parseMarineTrafficV2Response(InputStream responseBody) throws IOException {
+        return trackingResponseParser.parseMarineTrafficV2(responseBody);
     }
 
     /**
@@ -176,69 +162,11 @@ public class MarineTrafficV2ApiService {
         return headers;
     }
 
-    /**
-     * Get or create data source record
-     */
-    private DataSource getOrCreateDataSource(String name, DataSourceType type) {
-        return dataSourceRepository.findByName(name)
-                .orElseGet(() -> {
-                    DataSource dataSource = DataSource.builder()
-                            .name(name)
-                            .sourceType(type)
-                            .isEnabled(true)
-                            .isActive(true)
-                            .priority(4) // Lower priority than main MarineTraffic
-                            .consecutiveFailures(0)
-                            .build();
-                    return dataSourceRepository.save(dataSource);
-                });
-    }
-
-    /**
-     * Update data source status
-     */
-    private void updateDataSourceStatus(DataSource dataSource, SourceStatus status, String message) {
-        try {
-            checkHealthSource(dataSource, status, dataSourceRepository);
-
-            DataSourceStatus statusRecord = DataSourceStatus.builder()
-                    .dataSource(dataSource)
-                    .checkTime(LocalDateTime.now())
-                    .responseTime(1200L) // V2 might be faster than V1
-                    .build();
-            dataSourceStatusRepository.save(statusRecord);
-
-        } catch (Exception e) {
-            log.error("Failed to update MarineTraffic V2 data source status", e);
-        }
-    }
-
-    static void checkHealthSource(DataSource dataSource, SourceStatus status,
-            DataSourceRepository dataSourceRepository) {
-        if (status == SourceStatus.HEALTHY) {
-            dataSource.setLastSuccessTime(LocalDateTime.now());
-            dataSource.setConsecutiveFailures(0);
-            dataSource.setIsActive(true);
-        } else {
-            dataSource.setConsecutiveFailures(dataSource.getConsecutiveFailures() + 1);
-            if (dataSource.getConsecutiveFailures() >= 3) {
-                dataSource.setIsActive(false);
-            }
-        }
-        dataSourceRepository.save(dataSource);
-    }
-
     /**
      * Check if MarineTraffic V2 API is available
      */
     public boolean isMarineTrafficV2Available() {
-        return marineTrafficV2Enabled && isDataSourceHealthy(DataSourceType.MARINE_TRAFFIC.getDisplayName() + " V2");
-    }
-
-    private boolean isDataSourceHealthy(String name) {
-        return dataSourceRepository.findByName(name)
-                .map(DataSource::getIsActive)
-                .orElse(false);
+        return marineTrafficV2Enabled && sourceHealth.isAvailable(SOURCE);
     }
 
     /**
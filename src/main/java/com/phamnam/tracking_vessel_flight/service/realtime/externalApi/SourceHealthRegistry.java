@@ -0,0 +1,406 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.externalApi;
+
+import com.phamnam.tracking_vessel_flight.models.DataSource;
+import com.phamnam.tracking_vessel_flight.models.DataSourceStatus;
+import com.phamnam.tracking_vessel_flight.models.enums.DataSourceType;
+import com.phamnam.tracking_vessel_flight.repository.DataSourceRepository;
+import com.phamnam.tracking_vessel_flight.repository.DataSourceStatusRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Source Health Registry
+ *
+ * In-memory health and circuit breaker per external data source, so a poll
+ * never touches the database and a dead source costs nothing:
+ * - CLOSED: requests flow; failure-threshold consecutive failures open it
+ * - OPEN: requests are refused without a network call until the open
+ *   period ends; the period doubles on every re-open (open-duration up to
+ *   max-open-duration)
+ * - HALF_OPEN: one trial request (or tile round) decides: success closes the
+ *   circuit, failure re-opens it. A trial that never reports back (busy
+ *   source) expires after open-duration.
+ *
+ * Poll outcomes are queued and written by {@link #flush()} in batches: the
+ * DataSource rows (cached here after the first load) get the aggregated
+ * counters and state, and one DataSourceStatus history row per outcome is
+ * inserted with saveAll. The half-open trial replaces the periodic probe
+ * requests the health check used to send.
+ */
+@Service
+@Slf4j
+public class SourceHealthRegistry {
+
+    public enum CircuitState {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Which DataSource row a pool source key records into, and how to create it
+     */
+    public record SourceIdentity(String source, String name, DataSourceType type, int priority) {
+    }
+
+    @Value("${external.api.circuit-breaker.failure-threshold:3}")
+    private int failureThreshold = 3;
+
+    @Value("${external.api.circuit-breaker.open-duration:30000}")
+    private long openDurationMs = 30000;
+
+    @Value("${external.api.circuit-breaker.max-open-duration:600000}")
+    private long maxOpenDurationMs = 600000;
+
+    // Outcomes kept for the next flush; beyond this they are counted and dropped
+    @Value("${external.api.health.max-pending:10000}")
+    private int maxPending = 10000;
+
+    private final DataSourceRepository dataSourceRepository;
+    private final DataSourceStatusRepository dataSourceStatusRepository;
+    private final Clock clock;
+
+    private final Map<String, SourceHealth> health = new ConcurrentHashMap<>();
+    private final Queue<Outcome> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+    private final AtomicLong droppedOutcomes = new AtomicLong(0);
+    private final AtomicLong flushedRows = new AtomicLong(0);
+
+    // Only touched inside flush()
+    private Map<String, DataSource> dataSources;
+
+    @Autowired
+    public SourceHealthRegistry(DataSourceRepository dataSourceRepository,
+            DataSourceStatusRepository dataSourceStatusRepository) {
+        this(dataSourceRepository, dataSourceStatusRepository, Clock.systemDefaultZone());
+    }
+
+    SourceHealthRegistry(DataSourceRepository dataSourceRepository,
+            DataSourceStatusRepository dataSourceStatusRepository, Clock clock) {
+        this.dataSourceRepository = dataSourceRepository;
+        this.dataSourceStatusRepository = dataSourceStatusRepository;
+        this.clock = clock;
+    }
+
+    // ============================================================================
+    // CIRCUIT BREAKER
+    // ============================================================================
+
+    /**
+     * Whether a poll of this source may go out now. In HALF_OPEN only the
+     * first caller gets through.
+     */
+    public boolean allowRequest(String source) {
+        return state(source).allowRequest(clock.millis());
+    }
+
+    public void recordSuccess(SourceIdentity identity, int dataPoints, long responseTimeMs) {
+        long now = clock.millis();
+        SourceHealth sourceHealth = state(identity.source());
+        CircuitState before = sourceHealth.onSuccess(now, responseTimeMs);
+        if (before != CircuitState.CLOSED) {
+            log.info("🟢 {} circuit closed after a successful trial", identity.source());
+        }
+        enqueue(new Outcome(identity, now, DataSourceStatus.Status.SUCCESS, responseTimeMs, dataPoints, null,
+                null));
+    }
+
+    public void recordFailure(SourceIdentity identity, Throwable cause, long responseTimeMs) {
+        long now = clock.millis();
+        SourceHealth sourceHealth = state(identity.source());
+        String message = ExternalHttpClientPool.failureMessage(cause);
+        if (sourceHealth.onFailure(now, responseTimeMs, message)) {
+            log.warn("🔴 {} circuit open for {}ms after {} consecutive failures: {}", identity.source(),
+                    sourceHealth.openUntil - now, sourceHealth.consecutiveFailures, message);
+        }
+
+        DataSourceStatus.Status status = DataSourceStatus.Status.FAILURE;
+        Integer httpStatus = null;
+        if (cause instanceof ExternalApiHttpException http) {
+            httpStatus = http.getStatusCode();
+            if (http.isThrottled()) {
+                status = DataSourceStatus.Status.RATE_LIMITED;
+            }
+        } else if (ExternalHttpClientPool.isTimeout(cause)) {
+            status = DataSourceStatus.Status.TIMEOUT;
+        }
+        enqueue(new Outcome(identity, now, status, responseTimeMs, 0, message, httpStatus));
+    }
+
+    /**
+     * Available unless the circuit is open; a source that has not been polled
+     * yet counts as available
+     */
+    public boolean isAvailable(String source) {
+        SourceHealth sourceHealth = health.get(source);
+        return sourceHealth == null || sourceHealth.state != CircuitState.OPEN;
+    }
+
+    public CircuitState getState(String source) {
+        SourceHealth sourceHealth = health.get(source);
+        return sourceHealth != null ? sourceHealth.state : CircuitState.CLOSED;
+    }
+
+    private SourceHealth state(String source) {
+        return health.computeIfAbsent(source, key -> new SourceHealth());
+    }
+
+    private void enqueue(Outcome outcome) {
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            droppedOutcomes.incrementAndGet();
+            return;
+        }
+        pending.add(outcome);
+    }
+
+    // ============================================================================
+    // BATCHED PERSISTENCE
+    // ============================================================================
+
+    /**
+     * Write queued outcomes: one saveAll for the touched DataSource rows and
+     * one for their status history
+     */
+    @Scheduled(fixedDelayString = "${external.api.health.flush-interval:30000}", initialDelay = 30000)
+    public synchronized void flush() {
+        List<Outcome> batch = new ArrayList<>();
+        Outcome outcome;
+        while ((outcome = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            batch.add(outcome);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (dataSources == null) {
+                Map<String, DataSource> loaded = new HashMap<>();
+                dataSourceRepository.findAll().forEach(dataSource -> loaded.put(dataSource.getName(), dataSource));
+                dataSources = loaded;
+            }
+
+            Map<String, DataSource> touched = new LinkedHashMap<>();
+            Map<String, String> sourceByName = new HashMap<>();
+            for (Outcome entry : batch) {
+                DataSource dataSource = touched.computeIfAbsent(entry.identity().name(),
+                        name -> dataSources.computeIfAbsent(name, key -> newDataSource(entry.identity())));
+                apply(dataSource, entry);
+                sourceByName.put(entry.identity().name(), entry.identity().source());
+            }
+            // Inactive exactly while the circuit is open
+            touched.forEach((name, dataSource) -> dataSource.setIsActive(isAvailable(sourceByName.get(name))));
+
+            List<DataSource> saved = dataSourceRepository.saveAll(new ArrayList<>(touched.values()));
+            saved.forEach(dataSource -> dataSources.put(dataSource.getName(), dataSource));
+
+            List<DataSourceStatus> rows = new ArrayList<>(batch.size());
+            for (Outcome entry : batch) {
+                rows.add(DataSourceStatus.builder()
+                        .dataSource(dataSources.get(entry.identity().name()))
+                        .checkTime(toLocalDateTime(entry.atMillis()))
+                        .status(entry.status())
+                        .responseTime(entry.responseTimeMs())
+                        .dataPointsCount(entry.dataPoints())
+                        .errorMessage(entry.message())
+                        .httpStatusCode(entry.httpStatus())
+                        .build());
+            }
+            dataSourceStatusRepository.saveAll(rows);
+            flushedRows.addAndGet(rows.size());
+            log.debug("💾 Flushed {} source health records for {} sources", rows.size(), saved.size());
+        } catch (Exception e) {
+            // Entities may be half-updated; reload them on the next flush
+            dataSources = null;
+            log.error("❌ Failed to flush {} source health records: {}", batch.size(), e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void apply(DataSource dataSource, Outcome outcome) {
+        LocalDateTime at = toLocalDateTime(outcome.atMillis());
+        long total = orZero(dataSource.getTotalRequests()) + 1;
+        double averageResponseTime = dataSource.getAverageResponseTime() != null
+                ? dataSource.getAverageResponseTime()
+                : 0.0;
+        dataSource.setTotalRequests(total);
+        dataSource.setLastPollTime(at);
+        dataSource.setAverageResponseTime((averageResponseTime * (total - 1) + outcome.responseTimeMs()) / total);
+        if (outcome.status() == DataSourceStatus.Status.SUCCESS) {
+            dataSource.setSuccessfulRequests(orZero(dataSource.getSuccessfulRequests()) + 1);
+            dataSource.setDataPointsReceived(orZero(dataSource.getDataPointsReceived()) + outcome.dataPoints());
+            dataSource.setLastSuccessTime(at);
+            dataSource.setConsecutiveFailures(0);
+        } else {
+            int consecutiveFailures = dataSource.getConsecutiveFailures() != null
+                    ? dataSource.getConsecutiveFailures()
+                    : 0;
+            dataSource.setFailedRequests(orZero(dataSource.getFailedRequests()) + 1);
+            dataSource.setConsecutiveFailures(consecutiveFailures + 1);
+            dataSource.setLastErrorTime(at);
+            dataSource.setLastErrorMessage(outcome.message());
+        }
+    }
+
+    private static long orZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private DataSource newDataSource(SourceIdentity identity) {
+        return DataSource.builder()
+                .name(identity.name())
+                .sourceType(identity.type())
+                .isEnabled(true)
+                .isActive(true)
+                .priority(identity.priority())
+                .consecutiveFailures(0)
+                .circuitBreakerThreshold(failureThreshold)
+                .circuitBreakerTimeout(openDurationMs)
+                .build();
+    }
+
+    private LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), clock.getZone());
+    }
+
+    // ============================================================================
+    // STATISTICS
+    // ============================================================================
+
+    public Map<String, Object> getStatistics() {
+        long now = clock.millis();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("failureThreshold", failureThreshold);
+        stats.put("openDurationMs", openDurationMs);
+        stats.put("maxOpenDurationMs", maxOpenDurationMs);
+        stats.put("pendingRecords", pendingCount.get());
+        stats.put("flushedRecords", flushedRows.get());
+        stats.put("droppedRecords", droppedOutcomes.get());
+        Map<String, Object> sources = new LinkedHashMap<>();
+        health.forEach((source, sourceHealth) -> sources.put(source, sourceHealth.getStatistics(now)));
+        stats.put("sources", sources);
+        return stats;
+    }
+
+    // ============================================================================
+    // STATE
+    // ============================================================================
+
+    private record Outcome(SourceIdentity identity, long atMillis, DataSourceStatus.Status status,
+            long responseTimeMs, int dataPoints, String message, Integer httpStatus) {
+    }
+
+    private final class SourceHealth {
+
+        private volatile CircuitState state = CircuitState.CLOSED;
+        private int consecutiveFailures;
+        private int consecutiveOpens;
+        private long openUntil;
+        private long trialStartedAt;
+        private long requests;
+        private long rejected;
+        private long failures;
+        private long lastSuccessAt;
+        private long lastFailureAt;
+        private long lastResponseTimeMs;
+        private String lastError;
+
+        synchronized boolean allowRequest(long now) {
+            switch (state) {
+                case CLOSED:
+                    requests++;
+                    return true;
+                case OPEN:
+                    if (now < openUntil) {
+                        rejected++;
+                        return false;
+                    }
+                    state = CircuitState.HALF_OPEN;
+                    trialStartedAt = now;
+                    requests++;
+                    return true;
+                default:
+                    // HALF_OPEN: a trial is out; let another through only if it went silent
+                    if (now - trialStartedAt < openDurationMs) {
+                        rejected++;
+                        return false;
+                    }
+                    trialStartedAt = now;
+                    requests++;
+                    return true;
+            }
+        }
+
+        synchronized CircuitState onSuccess(long now, long responseTimeMs) {
+            CircuitState before = state;
+            state = CircuitState.CLOSED;
+            consecutiveFailures = 0;
+            consecutiveOpens = 0;
+            lastSuccessAt = now;
+            lastResponseTimeMs = responseTimeMs;
+            return before;
+        }
+
+        /**
+         * Returns whether this failure opened the circuit. Polls already in
+         * flight when it opened only add to the counters; they must not
+         * extend the open period.
+         */
+        synchronized boolean onFailure(long now, long responseTimeMs, String message) {
+            failures++;
+            consecutiveFailures++;
+            lastFailureAt = now;
+            lastResponseTimeMs = responseTimeMs;
+            lastError = message;
+            if (state == CircuitState.OPEN) {
+                return false;
+            }
+            if (state == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+                consecutiveOpens++;
+                long backoff = openDurationMs << Math.min(consecutiveOpens - 1, 20);
+                openUntil = now + Math.min(maxOpenDurationMs, backoff);
+                state = CircuitState.OPEN;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized Map<String, Object> getStatistics(long now) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("state", state);
+            stats.put("consecutiveFailures", consecutiveFailures);
+            stats.put("openForMs", state == CircuitState.OPEN ? Math.max(0, openUntil - now) : 0);
+            stats.put("requests", requests);
+            stats.put("rejected", rejected);
+            stats.put("failures", failures);
+            stats.put("lastSuccessAgoMs", lastSuccessAt > 0 ? now - lastSuccessAt : null);
+            stats.put("lastFailureAgoMs", lastFailureAt > 0 ? now - lastFailureAt : null);
+            stats.put("lastResponseTimeMs", lastResponseTimeMs);
+            stats.put("lastError", lastError);
+            return stats;
+        }
+    }
+}
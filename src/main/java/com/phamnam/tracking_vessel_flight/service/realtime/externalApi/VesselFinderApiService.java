@@ -1,27 +1,18 @@
 package com.phamnam.tracking_vessel_flight.service.realtime.externalApi;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.phamnam.tracking_vessel_flight.dto.request.VesselTrackingRequest;
-import com.phamnam.tracking_vessel_flight.dto.response.external.VesselFinderResponse;
-import com.phamnam.tracking_vessel_flight.models.DataSource;
-import com.phamnam.tracking_vessel_flight.models.DataSourceStatus;
 import com.phamnam.tracking_vessel_flight.models.enums.DataSourceType;
-import com.phamnam.tracking_vessel_flight.models.enums.SourceStatus;
-import com.phamnam.tracking_vessel_flight.repository.DataSourceRepository;
-import com.phamnam.tracking_vessel_flight.repository.DataSourceStatusRepository;
-import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.mapper.ExternalApiMapper;
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.mapper.TrackingResponseParser;
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.polling.TiledSource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.client.ResourceAccessException;
-import org.springframework.web.client.HttpClientErrorException;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -30,11 +21,14 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class VesselFinderApiService {
 
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
-    private final DataSourceRepository dataSourceRepository;
-    private final DataSourceStatusRepository dataSourceStatusRepository;
-    private final ExternalApiMapper externalApiMapper;
+    private static final String SOURCE = "vesselfinder";
+
+    private static final SourceHealthRegistry.SourceIdentity IDENTITY = new SourceHealthRegistry.SourceIdentity(
+            SOURCE, DataSourceType.VESSEL_FINDER.getDisplayName(), DataSourceType.VESSEL_FINDER, 2);
+
+    private final ExternalHttpClientPool httpClientPool;
+    private final SourceHealthRegistry sourceHealth;
+    private final TrackingResponseParser trackingResponseParser;
 
     // VesselFinder Configuration
     @Value("${external.api.vesselfinder.enabled:false}")
@@ -46,9 +40,6 @@ public class VesselFinderApiService {
     @Value("${external.api.vesselfinder.api-key}")
     private String vesselFinderApiKey;
 
-    @Value("${external.api.vesselfinder.timeout:15000}")
-    private int vesselFinderTimeout;
-
     // Geographic bounds (same as main config but can be customized)
     @Value("${external.api.bounds.min-latitude:8.5}")
     private double minLatitude;
@@ -65,63 +56,80 @@ public class VesselFinderApiService {
     /**
      * Fetch vessel data from VesselFinder API
      */
-    @Async("taskExecutor")
     public CompletableFuture<List<VesselTrackingRequest>> fetchVesselData() {
         if (!vesselFinderEnabled) {
             log.debug("VesselFinder API is disabled");
             return CompletableFuture.completedFuture(List.of());
         }
+        if (!sourceHealth.allowRequest(SOURCE)) {
+            log.debug("VesselFinder circuit open, skipping poll");
+            return CompletableFuture.completedFuture(List.of());
+        }
 
-        DataSource dataSource = getOrCreateDataSource(DataSourceType.VESSEL_FINDER.getDisplayName(),
-                DataSourceType.VESSEL_FINDER);
-
-        try {
-            log.debug("Fetching vessel data from VesselFinder API...");
-
-            String url = buildVesselFinderUrl();
-            HttpHeaders headers = createHeaders(vesselFinderApiKey);
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                    url, HttpMethod.GET, entity, String.class);
+        log.debug("Fetching vessel data from VesselFinder API...");
+        String url = buildVesselFinderUrl();
+        long startTime = System.currentTimeMillis();
 
-            if (response.getStatusCode() == HttpStatus.OK) {
-                List<VesselTrackingRequest> vesselData = parseVesselFinderResponse(response.getBody());
+        return httpClientPool.get(SOURCE, url, createHeaders(vesselFinderApiKey), this::parseVesselFinderResponse)
+                .handle((vesselData, error) -> {
+                    long responseTime = System.currentTimeMillis() - startTime;
+                    recordFetchOutcome(error == null ? vesselData.size() : 0, error, responseTime);
+                    return error == null ? vesselData : List.<VesselTrackingRequest>of();
+                });
+    }
 
-                updateDataSourceStatus(dataSource, SourceStatus.HEALTHY,
-                        "Successfully fetched " + vesselData.size() + " vessels");
+    /**
+     * VesselFinder as seen by the adaptive tile poll scheduler
+     */
+    public TiledSource<VesselTrackingRequest> tiledSource() {
+        return TiledSource.<VesselTrackingRequest>builder()
+                .name(SOURCE)
+                .enabled(vesselFinderEnabled)
+                .urlBuilder(tile -> buildVesselFinderUrl(tile.minLatitude(), tile.maxLatitude(), tile.minLongitude(),
+                        tile.maxLongitude()))
+                .headers(createHeaders(vesselFinderApiKey))
+                .reader(this::parseVesselFinderResponse)
+                .idExtractor(VesselTrackingRequest::getMmsi)
+                .latitudeExtractor(VesselTrackingRequest::getLatitude)
+                .longitudeExtractor(VesselTrackingRequest::getLongitude)
+                .requestGate(() -> sourceHealth.allowRequest(SOURCE))
+                .outcomeRecorder(this::recordFetchOutcome)
+                .build();
+    }
 
-                log.info("Successfully fetched {} vessels from VesselFinder", vesselData.size());
-                return CompletableFuture.completedFuture(vesselData);
-            } else {
-                throw new RuntimeException("Unexpected response status: " + response.getStatusCode());
-            }
+    /**
+     * Record a fetch (or a round of tile polls) in the data source status
+     */
+    private void recordFetchOutcome(int count, Throwable error, long responseTime) {
+        if (error == null) {
+            sourceHealth.recordSuccess(IDENTITY, count, responseTime);
+            log.info("Successfully fetched {} vessels from VesselFinder in {}ms", count, responseTime);
+            return;
+        }
 
-        } catch (HttpClientErrorException.NotFound e) {
-            log.debug("VesselFinder API endpoint not found (404). This is expected if mock service is not running.");
-            updateDataSourceStatus(dataSource, SourceStatus.ERROR,
-                    "API endpoint not found - possibly mock service not running");
-            return CompletableFuture.completedFuture(List.of());
-        } catch (ResourceAccessException e) {
-            log.debug("Failed to connect to VesselFinder API: {}. Continuing without external data.", e.getMessage());
-            updateDataSourceStatus(dataSource, SourceStatus.ERROR, "Connection failed: " + e.getMessage());
-            return CompletableFuture.completedFuture(List.of());
-        } catch (Exception e) {
-            log.debug("Failed to fetch vessel data from VesselFinder: {}. Continuing without external data.",
-                    e.getMessage());
-            updateDataSourceStatus(dataSource, SourceStatus.ERROR, "Error: " + e.getMessage());
-            return CompletableFuture.completedFuture(List.of());
+        Throwable cause = ExternalHttpClientPool.unwrap(error);
+        if (ExternalHttpClientPool.isBusy(cause)) {
+            // Previous poll still running: not a source failure
+            log.debug("VesselFinder poll skipped: {}", cause.getMessage());
+            return;
         }
+        log.debug("Failed to fetch vessel data from VesselFinder: {}. Continuing without external data.",
+                cause.getMessage());
+        sourceHealth.recordFailure(IDENTITY, cause, responseTime);
     }
 
     /**
      * Build VesselFinder API URL with geographic bounds
      */
     private String buildVesselFinderUrl() {
+        return buildVesselFinderUrl(minLatitude, maxLatitude, minLongitude, maxLongitude);
+    }
+
+    private String buildVesselFinderUrl(double minLat, double maxLat, double minLon, double maxLon) {
         // Mock API format for simulator - encode JSON properly
         try {
             String boundsJson = String.format("{\"minLat\":%.6f,\"maxLat\":%.6f,\"minLon\":%.6f,\"maxLon\":%.6f}",
-                    minLatitude, maxLatitude, minLongitude, maxLongitude);
+                    minLat, maxLat, minLon, maxLon);
             return String.format("%s?bounds=%s", vesselFinderBaseUrl,
                     java.net.URLEncoder.encode(boundsJson, StandardCharsets.UTF_8));
         } catch (Exception e) {
@@ -132,30 +140,10 @@ public class VesselFinderApiService {
     }
 
     /**
-     * Parse VesselFinder API response
+     * Parse VesselFinder API response straight from the response stream
      */
-    /**
-     * Parse VesselFinder API response using ObjectMapper for direct DTO mapping
-     */
-    private List<VesselTrackingRequest> parseVesselFinderResponse(String responseBody) {
-        try {
-            // Use ObjectMapper to directly map JSON to DTO
-            VesselFinderResponse response = objectMapper.readValue(responseBody, VesselFinderResponse.class);
-
-            if (response.getVessels() == null || response.getVessels().isEmpty()) {
-                return List.of();
-            }
-
-            // Convert each vessel using the mapper
-            return response.getVessels().stream()
-                    .map(externalApiMapper::fromVesselFinder)
-                    .filter(vessel -> vessel != null) // Filter out null results
-                    .toList();
-
-        } catch (Exception e) {
-            log.error("Failed to parse VesselFinder response using ObjectMapper", e);
-            return List.of();
-        }
+    private List<VesselTrackingRequest> parseVesselFinderResponse(InputStream responseBody) throws IOException {
+        return trackingResponseParser.parseVesselFinder(responseBody);
     }
 
     /**
@@ -176,54 +164,11 @@ public class VesselFinderApiService {
         return headers;
     }
 
-    /**
-     * Get or create data source record
-     */
-    private DataSource getOrCreateDataSource(String name, DataSourceType type) {
-        return dataSourceRepository.findByName(name)
-                .orElseGet(() -> {
-                    DataSource dataSource = DataSource.builder()
-                            .name(name)
-                            .sourceType(type)
-                            .isEnabled(true)
-                            .isActive(true)
-                            .priority(2) // Same priority level as main backup
-                            .consecutiveFailures(0)
-                            .build();
-                    return dataSourceRepository.save(dataSource);
-                });
-    }
-
-    /**
-     * Update data source status
-     */
-    private void updateDataSourceStatus(DataSource dataSource, SourceStatus status, String message) {
-        try {
-            MarineTrafficV2ApiService.checkHealthSource(dataSource, status, dataSourceRepository);
-
-            DataSourceStatus statusRecord = DataSourceStatus.builder()
-                    .dataSource(dataSource)
-                    .checkTime(LocalDateTime.now())
-                    .responseTime(1400L) // VesselFinder response time
-                    .build();
-            dataSourceStatusRepository.save(statusRecord);
-
-        } catch (Exception e) {
-            log.error("Failed to update VesselFinder data source status", e);
-        }
-    }
-
     /**
      * Check if VesselFinder API is available
      */
     public boolean isVesselFinderAvailable() {
-        return vesselFinderEnabled && isDataSourceHealthy(DataSourceType.VESSEL_FINDER.getDisplayName());
-    }
-
-    private boolean isDataSourceHealthy(String name) {
-        return dataSourceRepository.findByName(name)
-                .map(DataSource::getIsActive)
-                .orElse(false);
+        return vesselFinderEnabled && sourceHealth.isAvailable(SOURCE);
     }
 
     /**
@@ -0,0 +1,493 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.externalApi.mapper;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import com.phamnam.tracking_vessel_flight.dto.request.AircraftTrackingRequest;
+import com.phamnam.tracking_vessel_flight.dto.request.VesselTrackingRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Streaming parser for the provider responses.
+ *
+ * Reads the response body token by token and builds the tracking requests
+ * directly, without a JsonNode tree or the intermediate response DTOs. Each
+ * provider has a schema mapping its (interned) field names to slots in one
+ * reused value array; unknown fields and nested structures are skipped
+ * without being materialised. Results match {@link ExternalApiMapper} applied
+ * to the DTOs, with two differences: a value that cannot be converted to the
+ * field's type becomes null instead of failing the whole response, and all
+ * requests from one response share one receive timestamp.
+ */
+@Component
+public class TrackingResponseParser {
+
+    // Field names repeat in every record: intern them once in the symbol
+    // table so the slot lookup below is an identity hit
+    private final JsonFactory jsonFactory = JsonFactory.builder()
+            .enable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES)
+            .enable(JsonFactory.Feature.INTERN_FIELD_NAMES)
+            .build();
+
+    // FlightRadar24 keys each aircraft by its hex ident: per-aircraft names
+    // are not worth interning
+    private final JsonFactory keyedJsonFactory = JsonFactory.builder()
+            .disable(JsonFactory.Feature.INTERN_FIELD_NAMES)
+            .build();
+
+    // ============================================================================
+    // AIRCRAFT
+    // ============================================================================
+
+    // FlightRadar24 positional array, see FlightRadar24AircraftData
+    private static final Kind[] FLIGHTRADAR24_ARRAY = {
+            Kind.TEXT, Kind.DECIMAL, Kind.DECIMAL, Kind.INTEGER, Kind.INTEGER, Kind.INTEGER, Kind.TEXT, Kind.TEXT,
+            Kind.TEXT, Kind.TEXT, Kind.TEXT, Kind.TEXT, Kind.TEXT, Kind.TEXT, Kind.FLAG, Kind.INTEGER, Kind.TEXT,
+            Kind.TEXT };
+    private static final int FR24_LATITUDE = 1, FR24_LONGITUDE = 2, FR24_HEADING = 3, FR24_ALTITUDE = 4,
+            FR24_SPEED = 5, FR24_SQUAWK = 6, FR24_AIRCRAFT_TYPE = 8, FR24_REGISTRATION = 9, FR24_ORIGIN = 11,
+            FR24_DESTINATION = 12, FR24_ON_GROUND = 14, FR24_VERTICAL_RATE = 15, FR24_CALLSIGN = 16;
+
+    private static final int ADSB_HEX = 0, ADSB_FLIGHT = 1, ADSB_LAT = 2, ADSB_LON = 3, ADSB_ALT_BARO = 4,
+            ADSB_ALT_GEOM = 5, ADSB_GS = 6, ADSB_TRACK = 7, ADSB_TRUE_HEADING = 8, ADSB_MAG_HEADING = 9,
+            ADSB_BARO_RATE = 10, ADSB_GEOM_RATE = 11, ADSB_SQUAWK = 12, ADSB_EMERGENCY = 13, ADSB_TYPE = 14;
+    private static final Schema ADSB_EXCHANGE = new Schema()
+            .field(ADSB_HEX, Kind.TEXT, "hex")
+            .field(ADSB_FLIGHT, Kind.TEXT, "flight")
+            .field(ADSB_LAT, Kind.DECIMAL, "lat")
+            .field(ADSB_LON, Kind.DECIMAL, "lon")
+            .field(ADSB_ALT_BARO, Kind.INTEGER, "alt_baro")
+            .field(ADSB_ALT_GEOM, Kind.INTEGER, "alt_geom")
+            .field(ADSB_GS, Kind.DECIMAL, "gs")
+            .field(ADSB_TRACK, Kind.DECIMAL, "track")
+            .field(ADSB_TRUE_HEADING, Kind.DECIMAL, "true_heading")
+            .field(ADSB_MAG_HEADING, Kind.DECIMAL, "mag_heading")
+            .field(ADSB_BARO_RATE, Kind.INTEGER, "baro_rate")
+            .field(ADSB_GEOM_RATE, Kind.INTEGER, "geom_rate")
+            .field(ADSB_SQUAWK, Kind.TEXT, "squawk")
+            .field(ADSB_EMERGENCY, Kind.TEXT, "emergency")
+            .field(ADSB_TYPE, Kind.TEXT, "type");
+
+    /**
+     * {"data": {"full_count": n, "version": 4, "{hexident}": [positional array], ...}}
+     */
+    public List<AircraftTrackingRequest> parseFlightRadar24(InputStream body) throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        List<AircraftTrackingRequest> result = new ArrayList<>();
+        try (JsonParser parser = keyedJsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return result;
+            }
+            String name;
+            while ((name = parser.nextFieldName()) != null) {
+                if (parser.nextToken() != JsonToken.START_OBJECT || !"data".equals(name)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                Object[] values = new Object[FLIGHTRADAR24_ARRAY.length];
+                String hexIdent;
+                while ((hexIdent = parser.nextFieldName()) != null) {
+                    // Metadata fields sit next to the aircraft; only arrays are aircraft
+                    if (parser.nextToken() != JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    readPositional(parser, FLIGHTRADAR24_ARRAY, values);
+                    result.add(flightRadar24(hexIdent, values, now));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {"aircraft": [...]} or {"flights": [...]}
+     */
+    public List<AircraftTrackingRequest> parseAdsbExchange(InputStream body) throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        return parseWrapped(body, ADSB_EXCHANGE, values -> adsbExchange(values, now), false,
+                "aircraft", "flights");
+    }
+
+    private static AircraftTrackingRequest flightRadar24(String hexIdent, Object[] values, LocalDateTime now) {
+        String squawk = trimmed(values, FR24_SQUAWK);
+        boolean isEmergency = squawk != null &&
+                ("7500".equals(squawk) || "7600".equals(squawk) || "7700".equals(squawk));
+
+        return AircraftTrackingRequest.builder()
+                .hexident(hexIdent)
+                .latitude((Double) values[FR24_LATITUDE])
+                .longitude((Double) values[FR24_LONGITUDE])
+                .track((Integer) values[FR24_HEADING])
+                .altitude((Integer) values[FR24_ALTITUDE])
+                .groundSpeed((Integer) values[FR24_SPEED])
+                .squawk(squawk)
+                .aircraftType(trimmed(values, FR24_AIRCRAFT_TYPE))
+                .registration(trimmed(values, FR24_REGISTRATION))
+                .callsign(trimmed(values, FR24_CALLSIGN))
+                .onGround((Boolean) values[FR24_ON_GROUND])
+                .verticalRate((Integer) values[FR24_VERTICAL_RATE])
+                .emergency(isEmergency)
+                .timestamp(now)
+                .dataQuality(0.80)
+                .origin(trimmed(values, FR24_ORIGIN))
+                .destination(trimmed(values, FR24_DESTINATION))
+                .source("FLIGHTRADAR24")
+                .build();
+    }
+
+    private static AircraftTrackingRequest adsbExchange(Object[] values, LocalDateTime now) {
+        Integer altBaro = (Integer) values[ADSB_ALT_BARO];
+        String flight = (String) values[ADSB_FLIGHT];
+        String squawk = (String) values[ADSB_SQUAWK];
+
+        return AircraftTrackingRequest.builder()
+                .hexident((String) values[ADSB_HEX])
+                .callsign(flight != null ? flight.trim() : null)
+                .latitude((Double) values[ADSB_LAT])
+                .longitude((Double) values[ADSB_LON])
+                .altitude(altBaro != null ? altBaro : (Integer) values[ADSB_ALT_GEOM])
+                .groundSpeed(truncate(values[ADSB_GS]))
+                .track(truncate(values[ADSB_TRACK]))
+                .heading(truncate(values[ADSB_TRUE_HEADING]))
+                .magneticHeading((Double) values[ADSB_MAG_HEADING])
+                .verticalRate(first(values, ADSB_BARO_RATE, ADSB_GEOM_RATE))
+                .squawk(squawk)
+                .transponderCode(squawk)
+                .emergency(values[ADSB_EMERGENCY] != null)
+                .onGround(altBaro != null && altBaro <= 50)
+                .aircraftType((String) values[ADSB_TYPE])
+                .timestamp(now)
+                .dataQuality(0.95)
+                .source("ADSB_EXCHANGE")
+                .build();
+    }
+
+    // ============================================================================
+    // VESSELS
+    // ============================================================================
+
+    private static final int MMSI = 0, LAT = 1, LON = 2, SPEED = 3, COURSE = 4, HEADING = 5, STATUS = 6,
+            NAME = 7, TYPE = 8, IMO = 9, CALLSIGN = 10, FLAG = 11, LENGTH = 12, WIDTH = 13, DRAUGHT = 14,
+            DESTINATION = 15, ETA = 16, LAST_PORT = 17, NEXT_PORT = 18, VESSEL_FIELDS = 19;
+
+    // MarineTraffic main API accepts the upper-case export names as aliases
+    private static final Schema MARINE_TRAFFIC = marineTrafficSchema(true);
+    private static final Schema MARINE_TRAFFIC_V2 = marineTrafficSchema(false);
+
+    private static final Schema CHINAPORTS = new Schema()
+            .field(MMSI, Kind.TEXT, "mmsi")
+            .field(LAT, Kind.DECIMAL, "lat")
+            .field(LON, Kind.DECIMAL, "lon")
+            .field(SPEED, Kind.DECIMAL, "speed")
+            .field(COURSE, Kind.INTEGER, "course")
+            .field(HEADING, Kind.INTEGER, "heading")
+            .field(STATUS, Kind.TEXT, "navStatus")
+            .field(NAME, Kind.TEXT, "vesselName")
+            .field(TYPE, Kind.TEXT, "vesselType")
+            .field(IMO, Kind.TEXT, "imo")
+            .field(CALLSIGN, Kind.TEXT, "callsign")
+            .field(FLAG, Kind.TEXT, "flag")
+            .field(LENGTH, Kind.INTEGER, "length")
+            .field(WIDTH, Kind.INTEGER, "width")
+            .field(DRAUGHT, Kind.DECIMAL, "draught")
+            .field(DESTINATION, Kind.TEXT, "destination")
+            .field(ETA, Kind.TEXT, "eta")
+            .field(LAST_PORT, Kind.TEXT, "lastPort")
+            .field(NEXT_PORT, Kind.TEXT, "nextPort");
+
+    // VesselFinder sends either name of each pair; the first one wins, like
+    // the getActual* accessors of VesselFinderVesselData
+    private static final int VF_ALTERNATE = VESSEL_FIELDS;
+    private static final Schema VESSEL_FINDER = new Schema()
+            .field(MMSI, Kind.TEXT, "mmsi").field(VF_ALTERNATE + MMSI, Kind.TEXT, "MMSI")
+            .field(LAT, Kind.DECIMAL, "latitude").field(VF_ALTERNATE + LAT, Kind.DECIMAL, "lat")
+            .field(LON, Kind.DECIMAL, "longitude").field(VF_ALTERNATE + LON, Kind.DECIMAL, "lng")
+            .field(2 * VF_ALTERNATE + LON, Kind.DECIMAL, "lon")
+            .field(SPEED, Kind.DECIMAL, "speed").field(VF_ALTERNATE + SPEED, Kind.DECIMAL, "sog")
+            .field(COURSE, Kind.INTEGER, "course").field(VF_ALTERNATE + COURSE, Kind.INTEGER, "cog")
+            .field(HEADING, Kind.INTEGER, "heading").field(VF_ALTERNATE + HEADING, Kind.INTEGER, "hdg")
+            .field(STATUS, Kind.TEXT, "navStatus").field(VF_ALTERNATE + STATUS, Kind.TEXT, "navstat")
+            .field(NAME, Kind.TEXT, "vesselName").field(VF_ALTERNATE + NAME, Kind.TEXT, "name")
+            .field(TYPE, Kind.TEXT, "vesselType").field(VF_ALTERNATE + TYPE, Kind.TEXT, "type")
+            .field(IMO, Kind.TEXT, "imo").field(VF_ALTERNATE + IMO, Kind.TEXT, "IMO")
+            .field(CALLSIGN, Kind.TEXT, "callsign").field(VF_ALTERNATE + CALLSIGN, Kind.TEXT, "call")
+            .field(FLAG, Kind.TEXT, "flag").field(VF_ALTERNATE + FLAG, Kind.TEXT, "country")
+            .field(LENGTH, Kind.INTEGER, "length").field(VF_ALTERNATE + LENGTH, Kind.INTEGER, "loa")
+            .field(WIDTH, Kind.INTEGER, "width").field(VF_ALTERNATE + WIDTH, Kind.INTEGER, "beam")
+            .field(DRAUGHT, Kind.DECIMAL, "draught").field(VF_ALTERNATE + DRAUGHT, Kind.DECIMAL, "draft")
+            .field(DESTINATION, Kind.TEXT, "destination").field(VF_ALTERNATE + DESTINATION, Kind.TEXT, "dest")
+            .field(ETA, Kind.TEXT, "eta").field(VF_ALTERNATE + ETA, Kind.TEXT, "ETA")
+            .field(LAST_PORT, Kind.TEXT, "lastPort")
+            .field(NEXT_PORT, Kind.TEXT, "nextPort");
+
+    /**
+     * [...] or {"vessels": [...]} or {"data": [...]}
+     */
+    public List<VesselTrackingRequest> parseMarineTraffic(InputStream body) throws IOException {
+        return parseVessels(body, MARINE_TRAFFIC, null, 0.92, "MARINETRAFFIC", true, "vessels", "data");
+    }
+
+    /**
+     * {"vessels": [...]}
+     */
+    public List<VesselTrackingRequest> parseMarineTrafficV2(InputStream body) throws IOException {
+        return parseVessels(body, MARINE_TRAFFIC_V2, null, 0.90, "MARINETRAFFIC_V2", false, "vessels");
+    }
+
+    /**
+     * {"vessels": [...]}; vessels without a flag default to China
+     */
+    public List<VesselTrackingRequest> parseChinaports(InputStream body) throws IOException {
+        return parseVessels(body, CHINAPORTS, "CN", 0.85, "CHINAPORTS", false, "vessels");
+    }
+
+    /**
+     * {"vessels": [...]}
+     */
+    public List<VesselTrackingRequest> parseVesselFinder(InputStream body) throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        return parseWrapped(body, VESSEL_FINDER, values -> {
+            // Fold each alternate name into its primary slot when the primary is absent
+            for (int i = 0; i < VESSEL_FIELDS; i++) {
+                if (values[i] == null) {
+                    values[i] = values[VF_ALTERNATE + i];
+                }
+            }
+            if (values[LON] == null) {
+                values[LON] = values[2 * VF_ALTERNATE + LON];
+            }
+            return vessel(values, null, 0.88, "VESSELFINDER", now);
+        }, false, "vessels");
+    }
+
+    private List<VesselTrackingRequest> parseVessels(InputStream body, Schema schema, String defaultFlag,
+            double dataQuality, String source, boolean acceptArray, String... listFields) throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        return parseWrapped(body, schema, values -> vessel(values, defaultFlag, dataQuality, source, now), acceptArray,
+                listFields);
+    }
+
+    private static VesselTrackingRequest vessel(Object[] values, String defaultFlag, double dataQuality,
+            String source, LocalDateTime now) {
+        String flag = (String) values[FLAG];
+        return VesselTrackingRequest.builder()
+                .mmsi((String) values[MMSI])
+                .latitude((Double) values[LAT])
+                .longitude((Double) values[LON])
+                .speed((Double) values[SPEED])
+                .course((Integer) values[COURSE])
+                .heading((Integer) values[HEADING])
+                .navigationStatus((String) values[STATUS])
+                .vesselName((String) values[NAME])
+                .vesselType((String) values[TYPE])
+                .imo((String) values[IMO])
+                .callsign((String) values[CALLSIGN])
+                .flag(flag != null ? flag : defaultFlag)
+                .length((Integer) values[LENGTH])
+                .width((Integer) values[WIDTH])
+                .draught((Double) values[DRAUGHT])
+                .destination((String) values[DESTINATION])
+                .eta((String) values[ETA])
+                .lastPort((String) values[LAST_PORT])
+                .nextPort((String) values[NEXT_PORT])
+                .timestamp(now)
+                .dataQuality(dataQuality)
+                .source(source)
+                .build();
+    }
+
+    private static Schema marineTrafficSchema(boolean upperCaseAliases) {
+        Schema schema = new Schema();
+        Object[][] fields = {
+                { MMSI, Kind.TEXT, "mmsi" }, { LAT, Kind.DECIMAL, "lat" }, { LON, Kind.DECIMAL, "lon" },
+                { SPEED, Kind.DECIMAL, "speed" }, { COURSE, Kind.INTEGER, "course" },
+                { HEADING, Kind.INTEGER, "heading" }, { STATUS, Kind.TEXT, "status" },
+                { NAME, Kind.TEXT, "shipname" }, { TYPE, Kind.TEXT, "shiptype" }, { IMO, Kind.TEXT, "imo" },
+                { CALLSIGN, Kind.TEXT, "callsign" }, { FLAG, Kind.TEXT, "flag" },
+                { LENGTH, Kind.INTEGER, "length" }, { WIDTH, Kind.INTEGER, "width" },
+                { DRAUGHT, Kind.DECIMAL, "draught" }, { DESTINATION, Kind.TEXT, "destination" },
+                { ETA, Kind.TEXT, "eta" } };
+        for (Object[] field : fields) {
+            String name = (String) field[2];
+            if (upperCaseAliases) {
+                schema.field((Integer) field[0], (Kind) field[1], name, name.toUpperCase());
+            } else {
+                schema.field((Integer) field[0], (Kind) field[1], name);
+            }
+        }
+        return schema.field(LAST_PORT, Kind.TEXT, "lastport").field(NEXT_PORT, Kind.TEXT, "nextport");
+    }
+
+    // ============================================================================
+    // TOKEN READING
+    // ============================================================================
+
+    /**
+     * Read a list of records from a root array (when accepted) or from the
+     * first present, non-null list field of a root object, in the order given
+     */
+    private <T> List<T> parseWrapped(InputStream body, Schema schema, Function<Object[], T> builder,
+            boolean acceptArray, String... listFields) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            JsonToken root = parser.nextToken();
+            if (root == JsonToken.START_ARRAY && acceptArray) {
+                return readRecords(parser, schema, builder);
+            }
+            if (root != JsonToken.START_OBJECT) {
+                return List.of();
+            }
+            List<List<T>> lists = new ArrayList<>(Collections.nCopies(listFields.length, null));
+            String name;
+            while ((name = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                int index = Arrays.asList(listFields).indexOf(name);
+                if (index < 0 || token != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                lists.set(index, readRecords(parser, schema, builder));
+            }
+            for (List<T> list : lists) {
+                if (list != null) {
+                    return list;
+                }
+            }
+            return List.of();
+        }
+    }
+
+    private static <T> List<T> readRecords(JsonParser parser, Schema schema,
+            Function<Object[], T> builder) throws IOException {
+        List<T> records = new ArrayList<>();
+        Object[] values = new Object[schema.size];
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new JsonEOFException(parser, null, "Unexpected end of input inside a record list");
+            }
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            Arrays.fill(values, null);
+            String name;
+            while ((name = parser.nextFieldName()) != null) {
+                JsonToken valueToken = parser.nextToken();
+                Slot slot = schema.slots.get(name);
+                if (slot == null) {
+                    parser.skipChildren();
+                } else {
+                    values[slot.index] = readScalar(parser, valueToken, slot.kind);
+                }
+            }
+            records.add(builder.apply(values));
+        }
+        return records;
+    }
+
+    private static void readPositional(JsonParser parser, Kind[] kinds, Object[] values) throws IOException {
+        Arrays.fill(values, null);
+        int index = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new JsonEOFException(parser, null, "Unexpected end of input inside an aircraft array");
+            }
+            if (index < kinds.length) {
+                values[index] = readScalar(parser, token, kinds[index]);
+            } else {
+                parser.skipChildren();
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Convert the current scalar the way Jackson's default coercion would
+     * for a DTO field of that type; nested values are skipped
+     */
+    private static Object readScalar(JsonParser parser, JsonToken token, Kind kind) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token.isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return switch (kind) {
+            // Numbers and booleans keep their JSON text
+            case TEXT -> parser.getValueAsString();
+            case DECIMAL -> token.isNumeric() ? Double.valueOf(parser.getDoubleValue())
+                    : token == JsonToken.VALUE_STRING ? parseDouble(parser.getText()) : null;
+            case INTEGER -> token.isNumeric() ? Integer.valueOf(parser.getValueAsInt())
+                    : token == JsonToken.VALUE_STRING ? parseInteger(parser.getText()) : null;
+            case FLAG -> token.isBoolean() ? Boolean.valueOf(token == JsonToken.VALUE_TRUE)
+                    : token.isNumeric() ? Boolean.valueOf(parser.getValueAsInt() != 0)
+                            : Boolean.valueOf(parser.getText());
+        };
+    }
+
+    private static Double parseDouble(String text) {
+        try {
+            return Double.valueOf(text.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Integer parseInteger(String text) {
+        try {
+            return Integer.valueOf(text.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String trimmed(Object[] values, int index) {
+        String value = (String) values[index];
+        return value != null ? value.trim() : null;
+    }
+
+    private static Integer truncate(Object value) {
+        return value != null ? ((Double) value).intValue() : null;
+    }
+
+    private static Integer first(Object[] values, int primary, int fallback) {
+        return values[primary] != null ? (Integer) values[primary] : (Integer) values[fallback];
+    }
+
+    enum Kind {
+        TEXT, DECIMAL, INTEGER, FLAG
+    }
+
+    private record Slot(int index, Kind kind) {
+    }
+
+    private static final class Schema {
+
+        private final Map<String, Slot> slots = new HashMap<>();
+        private int size;
+
+        Schema field(int index, Kind kind, String... names) {
+            for (String name : names) {
+                // Interned to match the parser's canonical field names
+                slots.put(name.intern(), new Slot(index, kind));
+            }
+            size = Math.max(size, index + 1);
+            return this;
+        }
+    }
+}
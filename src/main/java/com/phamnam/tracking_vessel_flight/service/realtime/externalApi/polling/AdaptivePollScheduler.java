@@ -0,0 +1,490 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.externalApi.polling;
+
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.ExternalApiHttpException;
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.ExternalHttpClientPool;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Adaptive Poll Scheduler
+ *
+ * Splits the coverage area (external.api.bounds.*) into tiles and polls each
+ * (source, tile) pair on its own interval instead of every source for the
+ * whole area at one global rate. Each call to {@link #pollDueTiles} fetches
+ * only the tiles whose interval has elapsed and returns the targets they
+ * reported; the caller's collection tick (data-collection.poll-interval)
+ * just has to run at least as often as the shortest tile interval.
+ *
+ * Interval per tile, starting from external.api.{source}.poll-interval:
+ * - busy, fast-changing tiles poll faster (down to 0.5x base), empty or
+ *   static ones slower (up to 1.5x base), smoothed over successive polls
+ * - 304 Not Modified (ETag / Last-Modified validators) backs off further
+ * - failures back off exponentially; 429/503 honour Retry-After
+ * - X-RateLimit-Remaining/Reset spread the remaining quota over the tiles
+ * - everything is clamped to [min-interval, max-interval], except that the
+ *   provider's rate limit always wins
+ *
+ * Due tiles of one source are fetched in parallel, at most
+ * external.api.{source}.max-concurrency at a time, so a source never trips
+ * its own busy guard in the HTTP client pool.
+ */
+@Service
+@Slf4j
+public class AdaptivePollScheduler {
+
+    @Value("${external.api.scheduler.tile-rows:1}")
+    private int tileRows = 1;
+
+    @Value("${external.api.scheduler.tile-cols:1}")
+    private int tileCols = 1;
+
+    @Value("${external.api.scheduler.min-interval:3000}")
+    private long minIntervalMs = 3000;
+
+    @Value("${external.api.scheduler.max-interval:120000}")
+    private long maxIntervalMs = 120000;
+
+    // Targets per tile at which a tile counts as fully busy
+    @Value("${external.api.scheduler.density-reference:50}")
+    private int densityReference = 50;
+
+    @Value("${external.api.scheduler.not-modified-backoff:1.5}")
+    private double notModifiedBackoff = 1.5;
+
+    @Value("${external.api.bounds.min-latitude:8.5}")
+    private double minLatitude = 8.5;
+
+    @Value("${external.api.bounds.max-latitude:23.5}")
+    private double maxLatitude = 23.5;
+
+    @Value("${external.api.bounds.min-longitude:102.0}")
+    private double minLongitude = 102.0;
+
+    @Value("${external.api.bounds.max-longitude:109.5}")
+    private double maxLongitude = 109.5;
+
+    private final ExternalHttpClientPool httpClientPool;
+    private final Environment environment;
+    private final Clock clock;
+    private final Map<String, SourceTiles> sources = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AdaptivePollScheduler(ExternalHttpClientPool httpClientPool, Environment environment) {
+        this(httpClientPool, environment, Clock.systemDefaultZone());
+    }
+
+    AdaptivePollScheduler(ExternalHttpClientPool httpClientPool, Environment environment, Clock clock) {
+        this.httpClientPool = httpClientPool;
+        this.environment = environment;
+        this.clock = clock;
+    }
+
+    // ============================================================================
+    // POLLING
+    // ============================================================================
+
+    /**
+     * Poll the tiles of a source that are due now. Completes with the targets
+     * of the tiles that returned new data (unchanged and failed tiles add
+     * nothing) and never exceptionally. The source's status is recorded once
+     * per round, not once per tile.
+     */
+    public <T> CompletableFuture<List<T>> pollDueTiles(TiledSource<T> source) {
+        if (!source.isEnabled()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        SourceTiles tiles = sources.computeIfAbsent(source.getName(), this::createSourceTiles);
+
+        long now = clock.millis();
+        List<TileState> due = new ArrayList<>();
+        for (TileState state : tiles.states) {
+            if (state.claimIfDue(now)) {
+                due.add(state);
+            }
+        }
+        if (due.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        if (!source.allowsRequest()) {
+            // Circuit open: the tiles stay due and go out once the source is let through
+            due.forEach(state -> state.inFlight = false);
+            return CompletableFuture.completedFuture(List.of());
+        }
+        // Most overdue first, so a backlog drains in order
+        due.sort(Comparator.comparingLong(state -> state.nextDueAt));
+
+        PollRound<T> round = new PollRound<>(now);
+        int lanes = Math.min(due.size(), httpClientPool.maxConcurrency(source.getName()));
+        CompletableFuture<?>[] laneFutures = new CompletableFuture<?>[lanes];
+        for (int lane = 0; lane < lanes; lane++) {
+            CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+            for (int i = lane; i < due.size(); i += lanes) {
+                TileState state = due.get(i);
+                chain = chain.thenCompose(v -> pollTile(source, tiles, state, round));
+            }
+            laneFutures[lane] = chain;
+        }
+
+        return CompletableFuture.allOf(laneFutures).thenApply(v -> {
+            long roundMs = clock.millis() - round.startedAt;
+            if (round.polled.get() > 0) {
+                Throwable error = round.succeeded.get() == 0 ? round.lastError.get() : null;
+                try {
+                    source.getOutcomeRecorder().record(round.targets.size(), error, roundMs);
+                } catch (Exception e) {
+                    log.error("Failed to record poll outcome for {}", source.getName(), e);
+                }
+            }
+            log.debug("🧭 {}: polled {} tiles ({} unchanged, {} failed), {} targets in {}ms", source.getName(),
+                    round.polled.get(), round.notModified.get(), round.polled.get() - round.succeeded.get(),
+                    round.targets.size(), roundMs);
+            return new ArrayList<>(round.targets);
+        });
+    }
+
+    private <T> CompletableFuture<Void> pollTile(TiledSource<T> source, SourceTiles tiles, TileState state,
+            PollRound<T> round) {
+        long start = clock.millis();
+        CompletableFuture<ExternalHttpClientPool.PolledResponse<List<T>>> request;
+        try {
+            request = httpClientPool.getConditional(source.getName(), source.getUrlBuilder().apply(state.tile),
+                    source.getHeaders(), state.etag, state.lastModified, source.getReader());
+        } catch (RuntimeException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+
+        return request.handle((response, error) -> {
+            long now = clock.millis();
+            try {
+                if (error == null) {
+                    round.polled.incrementAndGet();
+                    round.succeeded.incrementAndGet();
+                    state.recordLatency(now - start);
+                    if (response.notModified()) {
+                        round.notModified.incrementAndGet();
+                        onNotModified(state, now);
+                    } else {
+                        List<T> owned = ownedTargets(source, tiles.grid, state.tile, response.body());
+                        round.addTargets(owned);
+                        onData(source, state, tiles, owned, response, now);
+                    }
+                    applyRateLimit(state, tiles, response.rateLimitRemaining(), response.rateLimitReset(), now);
+                    return null;
+                }
+
+                Throwable cause = ExternalHttpClientPool.unwrap(error);
+                if (ExternalHttpClientPool.isBusy(cause)) {
+                    // Another caller holds the source's permits; stay due for the next tick
+                    state.busySkips++;
+                    return null;
+                }
+                round.polled.incrementAndGet();
+                round.lastError.set(cause);
+                state.recordLatency(now - start);
+                onFailure(state, tiles, cause, now);
+                log.debug("🧭 {} tile {} failed: {}", source.getName(), state.tile.id(), cause.getMessage());
+                return null;
+            } finally {
+                state.inFlight = false;
+            }
+        });
+    }
+
+    /**
+     * Keep only the targets this tile owns; a provider that ignores the
+     * bounds parameter returns the whole area for every tile
+     */
+    private static <T> List<T> ownedTargets(TiledSource<T> source, TileGrid grid, GeoTile tile, List<T> body) {
+        if (body == null || body.isEmpty()) {
+            return List.of();
+        }
+        if (grid.size() == 1) {
+            return body;
+        }
+        List<T> owned = new ArrayList<>();
+        for (T target : body) {
+            if (grid.indexOf(source.getLatitudeExtractor().apply(target),
+                    source.getLongitudeExtractor().apply(target)) == tile.index()) {
+                owned.add(target);
+            }
+        }
+        return owned;
+    }
+
+    // ============================================================================
+    // INTERVAL ADAPTATION
+    // ============================================================================
+
+    private <T> void onData(TiledSource<T> source, TileState state, SourceTiles tiles, List<T> targets,
+            ExternalHttpClientPool.PolledResponse<List<T>> response, long now) {
+        Set<Long> fingerprints = new HashSet<>(targets.size() * 2);
+        int changed = 0;
+        for (T target : targets) {
+            long fingerprint = fingerprint(source.getIdExtractor().apply(target),
+                    source.getLatitudeExtractor().apply(target), source.getLongitudeExtractor().apply(target));
+            fingerprints.add(fingerprint);
+            if (!state.fingerprints.contains(fingerprint)) {
+                changed++;
+            }
+        }
+        double changeRatio;
+        if (targets.isEmpty()) {
+            changeRatio = state.fingerprints.isEmpty() ? 0.0 : 1.0;
+        } else {
+            changeRatio = (double) changed / targets.size();
+        }
+
+        state.fingerprints = fingerprints;
+        state.etag = response.etag();
+        state.lastModified = response.lastModified();
+        state.targets = targets.size();
+        state.changeRatio = changeRatio;
+        state.consecutiveFailures = 0;
+        state.lastSuccessAt = now;
+        if (changeRatio > 0) {
+            state.lastChangedAt = now;
+        }
+
+        state.intervalMs = adaptInterval(tiles.baseIntervalMs, state.intervalMs, targets.size(), changeRatio);
+        state.nextDueAt = now + state.intervalMs;
+    }
+
+    private void onNotModified(TileState state, long now) {
+        state.notModifiedCount++;
+        state.changeRatio = 0.0;
+        state.consecutiveFailures = 0;
+        state.lastSuccessAt = now;
+        state.intervalMs = clamp((long) (state.intervalMs * notModifiedBackoff));
+        state.nextDueAt = now + state.intervalMs;
+    }
+
+    private void onFailure(TileState state, SourceTiles tiles, Throwable cause, long now) {
+        state.failures++;
+        state.consecutiveFailures++;
+        long backoff = clamp(tiles.baseIntervalMs << Math.min(state.consecutiveFailures, 6));
+        if (cause instanceof ExternalApiHttpException http && http.isThrottled() && http.getRetryAfter() != null) {
+            backoff = Math.max(backoff, http.getRetryAfter().toMillis());
+        }
+        // The tile keeps its adapted interval for when the source recovers
+        state.nextDueAt = now + backoff;
+    }
+
+    /**
+     * Base interval scaled by activity (half density, half change rate):
+     * 1.5x base for an empty static tile down to 0.5x for a full, fully
+     * changing one, averaged with the previous interval to avoid flapping
+     */
+    long adaptInterval(long baseMs, long currentMs, int targets, double changeRatio) {
+        double density = Math.min(1.0, targets / (double) Math.max(1, densityReference));
+        double activity = 0.5 * density + 0.5 * changeRatio;
+        long target = (long) (baseMs * (1.5 - activity));
+        return clamp((currentMs + target) / 2);
+    }
+
+    /**
+     * Each round of a source costs one request per tile, so the quota left
+     * until reset is shared by all of them
+     */
+    private void applyRateLimit(TileState state, SourceTiles tiles, Long remaining, Duration reset, long now) {
+        state.rateLimitRemaining = remaining;
+        if (remaining == null || reset == null) {
+            return;
+        }
+        long spacing = remaining <= 0
+                ? reset.toMillis()
+                : reset.toMillis() * tiles.states.size() / remaining;
+        if (spacing > state.nextDueAt - now) {
+            state.nextDueAt = now + spacing;
+            state.rateLimited++;
+        }
+    }
+
+    private long clamp(long intervalMs) {
+        return Math.max(minIntervalMs, Math.min(maxIntervalMs, intervalMs));
+    }
+
+    private static long fingerprint(String id, Double latitude, Double longitude) {
+        long hash = id != null ? id.hashCode() : 0;
+        hash = 31 * hash + (latitude != null ? Double.hashCode(latitude) : 0);
+        return 31 * hash + (longitude != null ? Double.hashCode(longitude) : 0);
+    }
+
+    private SourceTiles createSourceTiles(String source) {
+        String prefix = "external.api." + source + ".";
+        TileGrid grid = new TileGrid(minLatitude, maxLatitude, minLongitude, maxLongitude,
+                environment.getProperty(prefix + "tile-rows", Integer.class, tileRows),
+                environment.getProperty(prefix + "tile-cols", Integer.class, tileCols));
+        long baseIntervalMs = clamp(environment.getProperty(prefix + "poll-interval", Long.class, 30000L));
+        log.info("🧭 Adaptive polling for {}: {}x{} tiles, base interval {}ms ({}-{}ms)", source, grid.rows(),
+                grid.cols(), baseIntervalMs, minIntervalMs, maxIntervalMs);
+        return new SourceTiles(grid, baseIntervalMs);
+    }
+
+    // ============================================================================
+    // METRICS
+    // ============================================================================
+
+    /**
+     * Per-source and per-tile interval, latency and freshness. ageMs is the
+     * time since the tile last confirmed its data (new data or 304);
+     * sinceChangeMs the time since its data last actually changed.
+     */
+    public Map<String, Object> getStatistics() {
+        long now = clock.millis();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("minIntervalMs", minIntervalMs);
+        stats.put("maxIntervalMs", maxIntervalMs);
+        Map<String, Object> bySource = new LinkedHashMap<>();
+        sources.forEach((source, tiles) -> bySource.put(source, tiles.getStatistics(now)));
+        stats.put("sources", bySource);
+        return stats;
+    }
+
+    // ============================================================================
+    // STATE
+    // ============================================================================
+
+    private static final class SourceTiles {
+
+        private final TileGrid grid;
+        private final long baseIntervalMs;
+        private final List<TileState> states;
+
+        SourceTiles(TileGrid grid, long baseIntervalMs) {
+            this.grid = grid;
+            this.baseIntervalMs = baseIntervalMs;
+            List<TileState> states = new ArrayList<>();
+            for (GeoTile tile : grid.tiles()) {
+                states.add(new TileState(tile, baseIntervalMs));
+            }
+            this.states = Collections.unmodifiableList(states);
+        }
+
+        Map<String, Object> getStatistics(long now) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            long polls = 0;
+            long totalLatency = 0;
+            long maxAge = 0;
+            Map<String, Object> tiles = new LinkedHashMap<>();
+            for (TileState state : states) {
+                polls += state.polls;
+                totalLatency += state.totalLatencyMs;
+                if (state.lastSuccessAt > 0) {
+                    maxAge = Math.max(maxAge, now - state.lastSuccessAt);
+                }
+                tiles.put(state.tile.id(), state.getStatistics(now));
+            }
+            stats.put("grid", grid.rows() + "x" + grid.cols());
+            stats.put("baseIntervalMs", baseIntervalMs);
+            stats.put("polls", polls);
+            stats.put("avgLatencyMs", polls > 0 ? totalLatency / polls : 0);
+            stats.put("maxAgeMs", maxAge);
+            stats.put("tiles", tiles);
+            return stats;
+        }
+    }
+
+    /**
+     * Polls of one tile never overlap (claimIfDue), so the fields are only
+     * written by one thread at a time; volatile keeps the metrics readable
+     */
+    private static final class TileState {
+
+        private final GeoTile tile;
+        private volatile boolean inFlight;
+        private volatile long nextDueAt;
+        private volatile long intervalMs;
+        private volatile String etag;
+        private volatile String lastModified;
+        private volatile Set<Long> fingerprints = Set.of();
+        private volatile int targets;
+        private volatile double changeRatio;
+        private volatile Long rateLimitRemaining;
+        private volatile long lastSuccessAt;
+        private volatile long lastChangedAt;
+        private volatile long lastLatencyMs;
+        private volatile long totalLatencyMs;
+        private volatile long polls;
+        private volatile long notModifiedCount;
+        private volatile long failures;
+        private volatile int consecutiveFailures;
+        private volatile long rateLimited;
+        private volatile long busySkips;
+
+        TileState(GeoTile tile, long intervalMs) {
+            this.tile = tile;
+            this.intervalMs = intervalMs;
+        }
+
+        synchronized boolean claimIfDue(long now) {
+            if (inFlight || now < nextDueAt) {
+                return false;
+            }
+            inFlight = true;
+            return true;
+        }
+
+        void recordLatency(long latencyMs) {
+            polls++;
+            lastLatencyMs = latencyMs;
+            totalLatencyMs += latencyMs;
+        }
+
+        Map<String, Object> getStatistics(long now) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("bounds", tile.toBoundsJson());
+            stats.put("intervalMs", intervalMs);
+            stats.put("nextPollInMs", Math.max(0, nextDueAt - now));
+            stats.put("targets", targets);
+            stats.put("changeRatio", Math.round(changeRatio * 100) / 100.0);
+            stats.put("ageMs", lastSuccessAt > 0 ? now - lastSuccessAt : null);
+            stats.put("sinceChangeMs", lastChangedAt > 0 ? now - lastChangedAt : null);
+            stats.put("lastLatencyMs", lastLatencyMs);
+            stats.put("avgLatencyMs", polls > 0 ? totalLatencyMs / polls : 0);
+            stats.put("polls", polls);
+            stats.put("notModified", notModifiedCount);
+            stats.put("failures", failures);
+            stats.put("rateLimited", rateLimited);
+            stats.put("rateLimitRemaining", rateLimitRemaining);
+            stats.put("busySkips", busySkips);
+            stats.put("etag", etag != null);
+            return stats;
+        }
+    }
+
+    private static final class PollRound<T> {
+
+        private final long startedAt;
+        private final List<T> targets = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger polled = new AtomicInteger();
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger notModified = new AtomicInteger();
+        private final AtomicReference<Throwable> lastError = new AtomicReference<>();
+
+        PollRound(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        void addTargets(List<T> owned) {
+            targets.addAll(owned);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.externalApi.polling;
+
+import java.util.Locale;
+
+/**
+ * One cell of the polling grid; index is row-major within the grid
+ */
+public record GeoTile(
+        String id,
+        int index,
+        double minLatitude,
+        double maxLatitude,
+        double minLongitude,
+        double maxLongitude) {
+
+    /**
+     * Bounds in the {"minLat":..} form the provider endpoints take as ?bounds=
+     */
+    public String toBoundsJson() {
+        return String.format(Locale.ROOT, "{\"minLat\":%.6f,\"maxLat\":%.6f,\"minLon\":%.6f,\"maxLon\":%.6f}",
+                minLatitude, maxLatitude, minLongitude, maxLongitude);
+    }
+}
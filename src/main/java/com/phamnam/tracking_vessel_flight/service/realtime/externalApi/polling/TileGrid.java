@@ -0,0 +1,65 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.externalApi.polling;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coverage area split into rows x cols equal tiles.
+ *
+ * Every position belongs to exactly one tile: positions outside the coverage
+ * area are clamped to the nearest edge tile, so a provider that ignores the
+ * bounds parameter (the simulator does) still yields each target once per
+ * poll round and nothing it used to return is dropped.
+ */
+public record TileGrid(
+        double minLatitude,
+        double maxLatitude,
+        double minLongitude,
+        double maxLongitude,
+        int rows,
+        int cols) {
+
+    public TileGrid {
+        rows = Math.max(1, rows);
+        cols = Math.max(1, cols);
+    }
+
+    public List<GeoTile> tiles() {
+        double latStep = (maxLatitude - minLatitude) / rows;
+        double lonStep = (maxLongitude - minLongitude) / cols;
+        List<GeoTile> tiles = new ArrayList<>(rows * cols);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                tiles.add(new GeoTile("r" + row + "c" + col, row * cols + col,
+                        minLatitude + row * latStep,
+                        row == rows - 1 ? maxLatitude : minLatitude + (row + 1) * latStep,
+                        minLongitude + col * lonStep,
+                        col == cols - 1 ? maxLongitude : minLongitude + (col + 1) * lonStep));
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Tile owning a position; targets without a position go to the first tile
+     */
+    public int indexOf(Double latitude, Double longitude) {
+        if (latitude == null || longitude == null) {
+            return 0;
+        }
+        return cell(latitude, minLatitude, maxLatitude, rows) * cols
+                + cell(longitude, minLongitude, maxLongitude, cols);
+    }
+
+    private static int cell(double value, double min, double max, int cells) {
+        if (max <= min) {
+            return 0;
+        }
+        int cell = (int) Math.floor((value - min) / (max - min) * cells);
+        return Math.min(cells - 1, Math.max(0, cell));
+    }
+
+    public int size() {
+        return rows * cols;
+    }
+}
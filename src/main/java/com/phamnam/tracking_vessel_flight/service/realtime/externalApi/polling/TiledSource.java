@@ -0,0 +1,45 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.externalApi.polling;
+
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.ExternalHttpClientPool;
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * What the adaptive poll scheduler needs to know about one provider: how to
+ * ask it for a tile, how to read the answer, and where each target is.
+ * Built by the provider service so URLs, headers and status bookkeeping stay
+ * with the code that already owns them.
+ */
+@Getter
+@Builder
+public class TiledSource<T> {
+
+    /**
+     * Records one poll round in the provider's data source status
+     */
+    @FunctionalInterface
+    public interface OutcomeRecorder {
+        void record(int count, Throwable error, long responseTimeMs);
+    }
+
+    private final String name;
+    private final boolean enabled;
+    private final Function<GeoTile, String> urlBuilder;
+    private final HttpHeaders headers;
+    private final ExternalHttpClientPool.BodyReader<List<T>> reader;
+    private final Function<T, String> idExtractor;
+    private final Function<T, Double> latitudeExtractor;
+    private final Function<T, Double> longitudeExtractor;
+    // Asked once per round before any tile goes out, e.g. a circuit breaker
+    private final BooleanSupplier requestGate;
+    private final OutcomeRecorder outcomeRecorder;
+
+    public boolean allowsRequest() {
+        return requestGate == null || requestGate.getAsBoolean();
+    }
+}
@@ -0,0 +1,38 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.heatmap;
+
+import java.util.Locale;
+
+public enum HeatmapLayer {
+    AIRCRAFT(true, false),
+    VESSEL(false, true),
+    ALL(true, true);
+
+    private final boolean includesAircraft;
+    private final boolean includesVessels;
+
+    HeatmapLayer(boolean includesAircraft, boolean includesVessels) {
+        this.includesAircraft = includesAircraft;
+        this.includesVessels = includesVessels;
+    }
+
+    public boolean includesAircraft() {
+        return includesAircraft;
+    }
+
+    public boolean includesVessels() {
+        return includesVessels;
+    }
+
+    /**
+     * Layer from the URL path segment: aircraft, vessel(s) or all
+     */
+    public static HeatmapLayer fromPath(String value) {
+        String normalized = value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+        return switch (normalized) {
+            case "aircraft" -> AIRCRAFT;
+            case "vessel", "vessels" -> VESSEL;
+            case "all" -> ALL;
+            default -> throw new IllegalArgumentException("Unknown heatmap layer: " + value);
+        };
+    }
+}
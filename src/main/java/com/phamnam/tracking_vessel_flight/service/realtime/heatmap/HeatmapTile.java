@@ -0,0 +1,199 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.heatmap;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Position counts for one z/x/y tile on a BINS_PER_SIDE x BINS_PER_SIDE grid
+ * (row-major, row 0 at the north edge), with the two wire encodings:
+ *
+ * Binary (application/octet-stream), all integers unsigned LEB128 varints
+ * except the first two bytes:
+ * - byte version (1)
+ * - byte zoom
+ * - varint bins per side
+ * - varint max bin count
+ * - varint number of non-zero bins
+ * - per non-zero bin in row-major order: varint index delta from the
+ * previous non-zero bin (from 0 for the first), varint count
+ *
+ * PNG: 256x256 RGBA, one square per bin, log-scaled color ramp from
+ * translucent blue to red; empty bins are fully transparent.
+ */
+public final class HeatmapTile {
+
+    public static final int BINS_SHIFT = 6;
+    public static final int BINS_PER_SIDE = 1 << BINS_SHIFT;
+    public static final int TILE_PIXELS = 256;
+    static final byte BINARY_VERSION = 1;
+
+    private static final int PIXELS_PER_BIN = TILE_PIXELS / BINS_PER_SIDE;
+
+    // Color ramp stops: position, red, green, blue, alpha
+    private static final double[][] RAMP = {
+            { 0.00, 0, 0, 255, 70 },
+            { 0.35, 0, 200, 255, 130 },
+            { 0.60, 60, 230, 60, 170 },
+            { 0.80, 255, 230, 0, 200 },
+            { 1.00, 255, 30, 0, 230 }
+    };
+
+    private final int zoom;
+    private final long[] counts = new long[BINS_PER_SIDE * BINS_PER_SIDE];
+
+    public HeatmapTile(int zoom) {
+        this.zoom = zoom;
+    }
+
+    public void add(int binX, int binY, long count) {
+        if (count > 0 && binX >= 0 && binX < BINS_PER_SIDE && binY >= 0 && binY < BINS_PER_SIDE) {
+            counts[binY * BINS_PER_SIDE + binX] += count;
+        }
+    }
+
+    public long get(int binX, int binY) {
+        return counts[binY * BINS_PER_SIDE + binX];
+    }
+
+    public int getZoom() {
+        return zoom;
+    }
+
+    public long getTotal() {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    public long getMax() {
+        long max = 0;
+        for (long count : counts) {
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+
+    // ============================================================================
+    // ENCODINGS
+    // ============================================================================
+
+    public byte[] toBinary() {
+        int nonZero = 0;
+        for (long count : counts) {
+            if (count > 0) {
+                nonZero++;
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + nonZero * 3);
+        out.write(BINARY_VERSION);
+        out.write(zoom);
+        writeVarint(out, BINS_PER_SIDE);
+        writeVarint(out, getMax());
+        writeVarint(out, nonZero);
+        int previous = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                writeVarint(out, i - previous);
+                writeVarint(out, counts[i]);
+                previous = i;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Inverse of {@link #toBinary()}
+     */
+    public static HeatmapTile fromBinary(byte[] data) {
+        if (data.length < 2 || data[0] != BINARY_VERSION) {
+            throw new IllegalArgumentException("Unsupported heatmap tile encoding");
+        }
+        HeatmapTile tile = new HeatmapTile(data[1]);
+        int[] position = { 2 };
+        if (readVarint(data, position) != BINS_PER_SIDE) {
+            throw new IllegalArgumentException("Unsupported heatmap tile bin count");
+        }
+        readVarint(data, position); // max, derivable from the bins
+        long nonZero = readVarint(data, position);
+        int index = 0;
+        for (long i = 0; i < nonZero; i++) {
+            index += (int) readVarint(data, position);
+            tile.counts[index] = readVarint(data, position);
+        }
+        return tile;
+    }
+
+    public byte[] toPng() {
+        BufferedImage image = new BufferedImage(TILE_PIXELS, TILE_PIXELS, BufferedImage.TYPE_INT_ARGB);
+        long max = getMax();
+        if (max > 0) {
+            double logMax = Math.log1p(max);
+            int[] square = new int[PIXELS_PER_BIN * PIXELS_PER_BIN];
+            for (int binY = 0; binY < BINS_PER_SIDE; binY++) {
+                for (int binX = 0; binX < BINS_PER_SIDE; binX++) {
+                    long count = get(binX, binY);
+                    if (count > 0) {
+                        Arrays.fill(square, color(Math.log1p(count) / logMax));
+                        image.setRGB(binX * PIXELS_PER_BIN, binY * PIXELS_PER_BIN, PIXELS_PER_BIN,
+                                PIXELS_PER_BIN, square, 0, PIXELS_PER_BIN);
+                    }
+                }
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode heatmap tile as PNG", e);
+        }
+        return out.toByteArray();
+    }
+
+    static int color(double intensity) {
+        double t = Math.max(0.0, Math.min(1.0, intensity));
+        int stop = 1;
+        while (stop < RAMP.length - 1 && RAMP[stop][0] < t) {
+            stop++;
+        }
+        double[] low = RAMP[stop - 1];
+        double[] high = RAMP[stop];
+        double f = (t - low[0]) / (high[0] - low[0]);
+        int red = (int) Math.round(low[1] + (high[1] - low[1]) * f);
+        int green = (int) Math.round(low[2] + (high[2] - low[2]) * f);
+        int blue = (int) Math.round(low[3] + (high[3] - low[3]) * f);
+        int alpha = (int) Math.round(low[4] + (high[4] - low[4]) * f);
+        return alpha << 24 | red << 16 | green << 8 | blue;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] data, int[] position) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            if (position[0] >= data.length || shift > 63) {
+                throw new IllegalArgumentException("Truncated heatmap tile");
+            }
+            byte b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
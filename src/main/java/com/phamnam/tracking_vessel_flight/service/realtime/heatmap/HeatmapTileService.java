@@ -0,0 +1,445 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.heatmap;
+
+import com.phamnam.tracking_vessel_flight.dto.event.AircraftPositionEvent;
+import com.phamnam.tracking_vessel_flight.dto.event.VesselPositionEvent;
+import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
+import com.phamnam.tracking_vessel_flight.service.realtime.ContinuousAggregateQueries;
+import com.phamnam.tracking_vessel_flight.util.ContentEtags;
+import com.phamnam.tracking_vessel_flight.util.TileMath;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.phamnam.tracking_vessel_flight.service.realtime.ContinuousAggregateQueries.*;
+
+/**
+ * Heatmap Tile Service
+ *
+ * Serves position density as z/x/y Web Mercator tiles (PNG or compact binary
+ * counts, see {@link HeatmapTile}) without running a query per map move:
+ * - Live tiles come from an in-memory ring of per-minute slots holding
+ * position counts per zoom-12 bin, fed by the processed-position consumers;
+ * lower zooms sum bins, higher zooms up to MAX_ZOOM repeat the zoom-12 bin
+ * - Historical tiles (from/to) sum the 0.1 degree grid-density continuous
+ * aggregates inside the tile, falling back to the raw tracking tables
+ * - Rendered tiles are kept in a bounded LRU cache with a content-hash ETag,
+ * so repeated and conditional requests cost neither a render nor a query
+ *
+ * Live counts cover what this node consumed, like StreamingAnalyticsService.
+ */
+@Service
+@Slf4j
+public class HeatmapTileService {
+
+    public static final int BASE_ZOOM = 12;
+    public static final int MAX_ZOOM = 16;
+
+    private static final int BASE_BINS = 1 << (BASE_ZOOM + HeatmapTile.BINS_SHIFT);
+    private static final long MINUTE_MS = 60_000L;
+    // One extra slot for the current partial minute
+    private static final int LIVE_SLOTS = 61;
+    private static final double GRID_CELL_DEGREES = 0.1;
+    // The per-minute grid aggregates keep 3 days; longer or older ranges use hourly buckets
+    private static final Duration MINUTE_GRID_RETENTION = Duration.ofDays(3);
+    private static final Duration MINUTE_GRID_MAX_RANGE = Duration.ofHours(6);
+
+    @Value("${app.heatmap.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.heatmap.live.window-minutes:15}")
+    private int liveWindowMinutes = 15;
+
+    @Value("${app.heatmap.history.max-range-days:90}")
+    private int maxHistoryRangeDays = 90;
+
+    @Value("${app.heatmap.cache.max-tiles:2000}")
+    private int maxCachedTiles = 2000;
+
+    @Value("${app.heatmap.cache.live-ttl-seconds:15}")
+    private int liveTtlSeconds = 15;
+
+    @Value("${app.heatmap.cache.history-ttl-seconds:600}")
+    private int historyTtlSeconds = 600;
+
+    private final ContinuousAggregateQueries aggregateQueries;
+    private final Clock clock;
+    private final LiveSlot[] liveSlots = new LiveSlot[LIVE_SLOTS];
+    private final Map<String, RenderedTile> tileCache = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final AtomicLong recordedPositions = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong historyQueries = new AtomicLong();
+
+    @Autowired
+    public HeatmapTileService(ContinuousAggregateQueries aggregateQueries) {
+        this(aggregateQueries, Clock.systemDefaultZone());
+    }
+
+    HeatmapTileService(ContinuousAggregateQueries aggregateQueries, Clock clock) {
+        this.aggregateQueries = aggregateQueries;
+        this.clock = clock;
+        for (int i = 0; i < LIVE_SLOTS; i++) {
+            liveSlots[i] = new LiveSlot();
+        }
+    }
+
+    public enum Format {
+        PNG(MediaType.IMAGE_PNG),
+        BINARY(MediaType.APPLICATION_OCTET_STREAM);
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public static Format fromExtension(String extension) {
+            return switch (extension == null ? "" : extension.toLowerCase(Locale.ROOT)) {
+                case "png" -> PNG;
+                case "bin" -> BINARY;
+                default -> throw new IllegalArgumentException("Unknown heatmap tile format: " + extension);
+            };
+        }
+    }
+
+    public record RenderedTile(byte[] body, String etag, MediaType contentType, int maxAgeSeconds,
+            long expiresAtMillis) {
+    }
+
+    // ============================================================================
+    // INGEST
+    // ============================================================================
+
+    public void recordAircraft(AircraftPositionEvent event) {
+        if (event != null) {
+            record(EntityType.AIRCRAFT, event.latitude(), event.longitude(), event.timestamp());
+        }
+    }
+
+    public void recordVessel(VesselPositionEvent event) {
+        if (event != null) {
+            record(EntityType.VESSEL, event.latitude(), event.longitude(), event.timestamp());
+        }
+    }
+
+    public void record(EntityType type, Double latitude, Double longitude, LocalDateTime timestamp) {
+        if (!enabled || type == null || latitude == null || longitude == null
+                || Math.abs(latitude) > TileMath.MAX_LATITUDE || Math.abs(longitude) > 180) {
+            return;
+        }
+
+        long nowMillis = clock.millis();
+        long eventMillis = timestamp != null
+                ? Math.min(timestamp.atZone(clock.getZone()).toInstant().toEpochMilli(), nowMillis)
+                : nowMillis;
+        long minute = Math.floorDiv(eventMillis, MINUTE_MS);
+        if (Math.floorDiv(nowMillis, MINUTE_MS) - minute >= LIVE_SLOTS) {
+            return;
+        }
+
+        liveSlots[(int) Math.floorMod(minute, (long) LIVE_SLOTS)].add(minute, type.isAirborne(),
+                baseBinKey(latitude, longitude));
+        recordedPositions.incrementAndGet();
+    }
+
+    // ============================================================================
+    // TILES
+    // ============================================================================
+
+    /**
+     * Live tile when from is null, otherwise historical counts between from
+     * and to (to defaults to now)
+     */
+    public RenderedTile getTile(HeatmapLayer layer, int z, int x, int y, Format format, LocalDateTime from,
+            LocalDateTime to) {
+        if (!TileMath.isValidTile(z, x, y, MAX_ZOOM)) {
+            throw new IllegalArgumentException("Invalid heatmap tile " + z + "/" + x + "/" + y);
+        }
+        LocalDateTime now = LocalDateTime.now(clock);
+        if (from == null && to != null) {
+            throw new IllegalArgumentException("Historical heatmap tiles need a 'from' time");
+        }
+        // Open-ended ranges stop at the current minute so repeated requests share a cache entry
+        LocalDateTime end = to != null ? to : now.truncatedTo(ChronoUnit.MINUTES);
+        if (from != null && (!from.isBefore(end) || from.plusDays(maxHistoryRangeDays).isBefore(end))) {
+            throw new IllegalArgumentException(
+                    "Historical heatmap range must be positive and at most " + maxHistoryRangeDays + " days");
+        }
+
+        String cacheKey = layer + "/" + z + "/" + x + "/" + y + "/" + format
+                + (from != null ? "/" + from + "/" + end : "/live");
+        long nowMillis = clock.millis();
+        RenderedTile cached = cachedTile(cacheKey, nowMillis);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return cached;
+        }
+        cacheMisses.incrementAndGet();
+
+        HeatmapTile tile = from == null ? renderLive(layer, z, x, y) : renderHistory(layer, z, x, y, from, end);
+        byte[] body = format == Format.PNG ? tile.toPng() : tile.toBinary();
+
+        // Ranges ending within the last hour still change as aggregates refresh
+        boolean settled = from != null && end.isBefore(now.minusHours(1));
+        int ttlSeconds = settled ? historyTtlSeconds : liveTtlSeconds;
+        RenderedTile rendered = new RenderedTile(body, ContentEtags.of(body), format.getMediaType(), ttlSeconds,
+                nowMillis + ttlSeconds * 1000L);
+        cacheTile(cacheKey, rendered);
+        return rendered;
+    }
+
+    HeatmapTile renderLive(HeatmapLayer layer, int z, int x, int y) {
+        HeatmapTile tile = new HeatmapTile(z);
+        int window = Math.max(1, Math.min(liveWindowMinutes, LIVE_SLOTS - 1));
+        long firstMinute = Math.floorDiv(clock.millis(), MINUTE_MS) - window;
+        for (LiveSlot slot : liveSlots) {
+            slot.paint(firstMinute, layer, z, x, y, tile);
+        }
+        return tile;
+    }
+
+    private HeatmapTile renderHistory(HeatmapLayer layer, int z, int x, int y, LocalDateTime from,
+            LocalDateTime to) {
+        double west = TileMath.tileWestLongitude(x, z);
+        double east = TileMath.tileWestLongitude(x + 1, z);
+        double north = TileMath.tileNorthLatitude(y, z);
+        double south = TileMath.tileNorthLatitude(y + 1, z);
+
+        double[] sums = new double[HeatmapTile.BINS_PER_SIDE * HeatmapTile.BINS_PER_SIDE];
+        if (layer.includesAircraft()) {
+            paintCells(queryGridCells(true, from, to, south, north, west, east), z, x, y, sums);
+        }
+        if (layer.includesVessels()) {
+            paintCells(queryGridCells(false, from, to, south, north, west, east), z, x, y, sums);
+        }
+
+        HeatmapTile tile = new HeatmapTile(z);
+        for (int i = 0; i < sums.length; i++) {
+            if (sums[i] > 0) {
+                tile.add(i % HeatmapTile.BINS_PER_SIDE, i / HeatmapTile.BINS_PER_SIDE,
+                        Math.max(1, Math.round(sums[i])));
+            }
+        }
+        return tile;
+    }
+
+    private List<Map<String, Object>> queryGridCells(boolean aircraft, LocalDateTime from, LocalDateTime to,
+            double south, double north, double west, double east) {
+        historyQueries.incrementAndGet();
+        boolean minuteBuckets = Duration.between(from, to).compareTo(MINUTE_GRID_MAX_RANGE) <= 0
+                && from.isAfter(LocalDateTime.now(clock).minus(MINUTE_GRID_RETENTION));
+        String view = aircraft
+                ? (minuteBuckets ? FLIGHT_GRID_DENSITY_1M : FLIGHT_GRID_DENSITY_1H)
+                : (minuteBuckets ? SHIP_GRID_DENSITY_1M : SHIP_GRID_DENSITY_1H);
+
+        String aggregateSql = """
+                SELECT lat_grid, lon_grid, SUM(records) AS records
+                FROM %s
+                WHERE %s AND bucket < ?
+                AND lat_grid BETWEEN ? AND ? AND lon_grid BETWEEN ? AND ?
+                GROUP BY lat_grid, lon_grid
+                """.formatted(view, minuteBuckets ? MINUTE_BUCKETS_SINCE : HOUR_BUCKETS_SINCE);
+
+        String rawSql = """
+                SELECT floor(latitude * 10) / 10 AS lat_grid,
+                       floor(longitude * 10) / 10 AS lon_grid,
+                       COUNT(*) AS records
+                FROM %s
+                WHERE timestamp >= ? AND timestamp < ?
+                AND latitude BETWEEN ? AND ? AND longitude BETWEEN ? AND ?
+                GROUP BY floor(latitude * 10) / 10, floor(longitude * 10) / 10
+                """.formatted(aircraft ? "flight_tracking" : "ship_tracking");
+
+        // Cells are keyed by their south-west corner, so include the row/column just outside
+        return aggregateQueries.queryList(List.of(view), aggregateSql, rawSql, from, to,
+                south - GRID_CELL_DEGREES, north, west - GRID_CELL_DEGREES, east);
+    }
+
+    /**
+     * Spread each 0.1 degree cell's records evenly over the bins it covers;
+     * cells smaller than a bin land entirely in the bin holding their center
+     */
+    private void paintCells(List<Map<String, Object>> cells, int z, int x, int y, double[] sums) {
+        int bins = HeatmapTile.BINS_PER_SIDE;
+        for (Map<String, Object> cell : cells) {
+            double latitude = ((Number) cell.get("lat_grid")).doubleValue();
+            double longitude = ((Number) cell.get("lon_grid")).doubleValue();
+            double records = ((Number) cell.get("records")).doubleValue();
+
+            double left = TileMath.worldX(longitude, z) * bins - (double) x * bins;
+            double right = TileMath.worldX(longitude + GRID_CELL_DEGREES, z) * bins - (double) x * bins;
+            double top = TileMath.worldY(latitude + GRID_CELL_DEGREES, z) * bins - (double) y * bins;
+            double bottom = TileMath.worldY(latitude, z) * bins - (double) y * bins;
+
+            double area = (right - left) * (bottom - top);
+            if (area <= 1.0) {
+                int binX = (int) Math.floor((left + right) / 2);
+                int binY = (int) Math.floor((top + bottom) / 2);
+                if (binX >= 0 && binX < bins && binY >= 0 && binY < bins) {
+                    sums[binY * bins + binX] += records;
+                }
+                continue;
+            }
+
+            double perBin = records / area;
+            int firstX = Math.max(0, (int) Math.floor(left));
+            int lastX = Math.min(bins - 1, (int) Math.ceil(right) - 1);
+            int firstY = Math.max(0, (int) Math.floor(top));
+            int lastY = Math.min(bins - 1, (int) Math.ceil(bottom) - 1);
+            for (int binY = firstY; binY <= lastY; binY++) {
+                for (int binX = firstX; binX <= lastX; binX++) {
+                    sums[binY * bins + binX] += perBin;
+                }
+            }
+        }
+    }
+
+    // ============================================================================
+    // TILE CACHE
+    // ============================================================================
+
+    private RenderedTile cachedTile(String key, long nowMillis) {
+        synchronized (tileCache) {
+            RenderedTile tile = tileCache.get(key);
+            if (tile != null && tile.expiresAtMillis() <= nowMillis) {
+                tileCache.remove(key);
+                return null;
+            }
+            return tile;
+        }
+    }
+
+    private void cacheTile(String key, RenderedTile tile) {
+        synchronized (tileCache) {
+            tileCache.put(key, tile);
+            while (tileCache.size() > maxCachedTiles) {
+                tileCache.remove(tileCache.keySet().iterator().next());
+            }
+        }
+    }
+
+    // ============================================================================
+    // STATISTICS
+    // ============================================================================
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("baseZoom", BASE_ZOOM);
+        stats.put("maxZoom", MAX_ZOOM);
+        stats.put("liveWindowMinutes", liveWindowMinutes);
+        stats.put("recordedPositions", recordedPositions.get());
+        stats.put("historyQueries", historyQueries.get());
+        stats.put("cacheHits", cacheHits.get());
+        stats.put("cacheMisses", cacheMisses.get());
+        synchronized (tileCache) {
+            stats.put("cachedTiles", tileCache.size());
+        }
+        long liveBins = 0;
+        for (LiveSlot slot : liveSlots) {
+            liveBins += slot.size();
+        }
+        stats.put("liveBins", liveBins);
+        return stats;
+    }
+
+    // ============================================================================
+    // LIVE GRID
+    // ============================================================================
+
+    /**
+     * Zoom-12 bin as (binX << 32 | binY); 2^18 bins per axis
+     */
+    static long baseBinKey(double latitude, double longitude) {
+        int binX = clampBin((long) Math.floor(TileMath.worldX(longitude, BASE_ZOOM) * HeatmapTile.BINS_PER_SIDE));
+        int binY = clampBin((long) Math.floor(TileMath.worldY(latitude, BASE_ZOOM) * HeatmapTile.BINS_PER_SIDE));
+        return (long) binX << 32 | binY;
+    }
+
+    private static int clampBin(long bin) {
+        return (int) Math.max(0, Math.min(BASE_BINS - 1, bin));
+    }
+
+    private static final class LiveSlot {
+        private long minute = Long.MIN_VALUE;
+        private final Map<Long, long[]> aircraftBins = new HashMap<>();
+        private final Map<Long, long[]> vesselBins = new HashMap<>();
+
+        synchronized void add(long eventMinute, boolean aircraft, long binKey) {
+            if (eventMinute > minute) {
+                // Slot reused for a newer minute
+                minute = eventMinute;
+                aircraftBins.clear();
+                vesselBins.clear();
+            } else if (eventMinute < minute) {
+                return;
+            }
+            (aircraft ? aircraftBins : vesselBins).computeIfAbsent(binKey, key -> new long[1])[0]++;
+        }
+
+        synchronized void paint(long firstMinute, HeatmapLayer layer, int z, int x, int y, HeatmapTile tile) {
+            if (minute < firstMinute) {
+                return;
+            }
+            if (layer.includesAircraft()) {
+                paintBins(aircraftBins, z, x, y, tile);
+            }
+            if (layer.includesVessels()) {
+                paintBins(vesselBins, z, x, y, tile);
+            }
+        }
+
+        synchronized int size() {
+            return aircraftBins.size() + vesselBins.size();
+        }
+
+        private static void paintBins(Map<Long, long[]> bins, int z, int x, int y, HeatmapTile tile) {
+            int mask = HeatmapTile.BINS_PER_SIDE - 1;
+            if (z <= BASE_ZOOM) {
+                int shift = BASE_ZOOM - z;
+                for (Map.Entry<Long, long[]> entry : bins.entrySet()) {
+                    int binX = (int) (entry.getKey() >>> 32) >> shift;
+                    int binY = (int) (long) entry.getKey() >> shift;
+                    if (binX >> HeatmapTile.BINS_SHIFT == x && binY >> HeatmapTile.BINS_SHIFT == y) {
+                        tile.add(binX & mask, binY & mask, entry.getValue()[0]);
+                    }
+                }
+                return;
+            }
+
+            // Deeper zooms repeat each zoom-12 bin over the 2^n x 2^n bins it covers
+            int shift = z - BASE_ZOOM;
+            int span = 1 << shift;
+            for (Map.Entry<Long, long[]> entry : bins.entrySet()) {
+                int binX = (int) (entry.getKey() >>> 32) << shift;
+                int binY = (int) (long) entry.getKey() << shift;
+                if (binX >> HeatmapTile.BINS_SHIFT != x || binY >> HeatmapTile.BINS_SHIFT != y) {
+                    continue;
+                }
+                for (int dy = 0; dy < span; dy++) {
+                    for (int dx = 0; dx < span; dx++) {
+                        tile.add((binX & mask) + dx, (binY & mask) + dy, entry.getValue()[0]);
+                    }
+                }
+            }
+        }
+    }
+}
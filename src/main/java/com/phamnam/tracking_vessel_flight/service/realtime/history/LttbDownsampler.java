@@ -0,0 +1,125 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.history;
+
+import com.phamnam.tracking_vessel_flight.dto.response.TrackHistoryPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streaming Largest-Triangle-Three-Buckets downsampler
+ *
+ * Keeps the first and last point and one point per bucket in between, the
+ * one forming the largest triangle with the previously kept point and the
+ * average of the next bucket. Areas are measured on the track shape
+ * (longitude scaled by cos(latitude) against latitude) rather than value
+ * over time, so turns and loitering survive while straight legs thin out.
+ *
+ * Because the total point count is known up front (from a COUNT query), the
+ * bucket of every incoming point is known, and only the current and next
+ * buckets are held in memory: O(total / threshold) points.
+ */
+final class LttbDownsampler implements Consumer<TrackHistoryPoint> {
+
+    private final long total;
+    private final int threshold;
+    private final Consumer<TrackHistoryPoint> downstream;
+    private final boolean passThrough;
+    private final double bucketSize;
+
+    private long index;
+    private int currentBucket;
+    private TrackHistoryPoint previous;
+    private TrackHistoryPoint last;
+    private List<TrackHistoryPoint> current = new ArrayList<>();
+    private List<TrackHistoryPoint> next = new ArrayList<>();
+
+    LttbDownsampler(long total, int threshold, Consumer<TrackHistoryPoint> downstream) {
+        this.total = total;
+        this.threshold = threshold;
+        this.downstream = downstream;
+        this.passThrough = threshold < 3 || threshold >= total;
+        this.bucketSize = passThrough ? 1.0 : (double) (total - 2) / (threshold - 2);
+    }
+
+    @Override
+    public void accept(TrackHistoryPoint point) {
+        if (passThrough) {
+            downstream.accept(point);
+            return;
+        }
+
+        long position = index++;
+        if (position == 0) {
+            emit(point);
+            return;
+        }
+        if (position >= total - 1) {
+            // The last point is always kept; extra rows (inserted after the count) extend it
+            last = point;
+            return;
+        }
+
+        int bucket = (int) Math.min(threshold - 3, (long) Math.floor((position - 1) / bucketSize));
+        if (bucket > currentBucket + 1) {
+            // The next bucket is complete, so the current one can be decided
+            emit(largestTriangle(current, centroid(next)));
+            current = next;
+            next = new ArrayList<>();
+            currentBucket++;
+        }
+        (bucket == currentBucket ? current : next).add(point);
+    }
+
+    void finish() {
+        if (passThrough) {
+            return;
+        }
+        if (!next.isEmpty()) {
+            emit(largestTriangle(current, centroid(next)));
+            current = next;
+        }
+        if (!current.isEmpty()) {
+            double[] end = last != null ? project(last) : centroid(current);
+            emit(largestTriangle(current, end));
+        }
+        if (last != null) {
+            emit(last);
+        }
+    }
+
+    private void emit(TrackHistoryPoint point) {
+        previous = point;
+        downstream.accept(point);
+    }
+
+    private TrackHistoryPoint largestTriangle(List<TrackHistoryPoint> bucket, double[] following) {
+        double[] a = project(previous);
+        TrackHistoryPoint best = bucket.get(0);
+        double bestArea = -1;
+        for (TrackHistoryPoint candidate : bucket) {
+            double[] b = project(candidate);
+            double area = Math.abs((a[0] - following[0]) * (b[1] - a[1]) - (a[0] - b[0]) * (following[1] - a[1]));
+            if (area > bestArea) {
+                bestArea = area;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static double[] centroid(List<TrackHistoryPoint> bucket) {
+        double x = 0;
+        double y = 0;
+        for (TrackHistoryPoint point : bucket) {
+            double[] projected = project(point);
+            x += projected[0];
+            y += projected[1];
+        }
+        return new double[] { x / bucket.size(), y / bucket.size() };
+    }
+
+    private static double[] project(TrackHistoryPoint point) {
+        return new double[] { point.longitude() * Math.cos(Math.toRadians(point.latitude())), point.latitude() };
+    }
+}
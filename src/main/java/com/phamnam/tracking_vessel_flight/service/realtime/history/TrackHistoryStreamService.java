@@ -0,0 +1,243 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phamnam.tracking_vessel_flight.dto.response.TrackHistoryPoint;
+import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Track History Stream Service
+ *
+ * Streams the positions of one aircraft or vessel straight from a JDBC
+ * cursor to the response, instead of materializing JPA entities:
+ * - Rows are read with a bounded fetch size inside a read-only transaction
+ * (PostgreSQL only uses a server-side cursor with auto-commit off)
+ * - Keyset pagination on (timestamp, id), so page N costs the same as page 1
+ * - Optional LTTB downsampling to a target point count over the whole range,
+ * holding only two buckets in memory
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TrackHistoryStreamService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.history.stream.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${app.history.stream.default-page-size:5000}")
+    private int defaultPageSize;
+
+    @Value("${app.history.stream.max-page-size:50000}")
+    private int maxPageSize;
+
+    @Value("${app.history.stream.max-points:20000}")
+    private int maxDownsamplePoints;
+
+    /**
+     * Validated history request; afterTimestamp/afterId come from the cursor
+     */
+    public record HistoryQuery(EntityType type, String entityId, LocalDateTime from, LocalDateTime to,
+            LocalDateTime afterTimestamp, Long afterId, int limit, Integer maxPoints) {
+    }
+
+    // ============================================================================
+    // REQUEST VALIDATION
+    // ============================================================================
+
+    /**
+     * Validate parameters before the response is committed, so bad requests
+     * still get a 400 instead of a truncated stream
+     */
+    public HistoryQuery prepare(EntityType type, String entityId, LocalDateTime from, LocalDateTime to,
+            String cursor, Integer limit, Integer maxPoints) {
+        if (entityId == null || entityId.isBlank()) {
+            throw new IllegalArgumentException("Entity id is required");
+        }
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("fromTime must be before toTime");
+        }
+        if (limit != null && (limit < 1 || limit > maxPageSize)) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize);
+        }
+        if (maxPoints != null && (maxPoints < 3 || maxPoints > maxDownsamplePoints)) {
+            throw new IllegalArgumentException("maxPoints must be between 3 and " + maxDownsamplePoints);
+        }
+
+        LocalDateTime afterTimestamp = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = decodeCursor(cursor);
+            afterTimestamp = LocalDateTime.parse(parts[0]);
+            afterId = Long.parseLong(parts[1]);
+        }
+        return new HistoryQuery(type, entityId, from, to, afterTimestamp, afterId,
+                limit != null ? limit : defaultPageSize, maxPoints);
+    }
+
+    // ============================================================================
+    // STREAMING
+    // ============================================================================
+
+    @Transactional(readOnly = true)
+    public void stream(HistoryQuery query, TrackHistoryWriter.Format format, OutputStream out) throws IOException {
+        long startTime = System.currentTimeMillis();
+        try (TrackHistoryWriter writer = TrackHistoryWriter.create(format, objectMapper.getFactory(), out)) {
+            long[] written = { 0 };
+            Consumer<TrackHistoryPoint> sink = point -> {
+                writer.writeUnchecked(point);
+                written[0]++;
+            };
+
+            if (query.maxPoints() != null) {
+                // Downsampled tracks cover the whole range in one response
+                long total = count(query);
+                LttbDownsampler downsampler = new LttbDownsampler(total, query.maxPoints(), sink);
+                forEachPoint(query, total, downsampler);
+                downsampler.finish();
+                writer.finish(written[0], total > query.maxPoints(), null);
+            } else {
+                // One extra row tells whether another page follows
+                TrackHistoryPoint[] lastWritten = { null };
+                boolean[] hasMore = { false };
+                forEachPoint(query, query.limit() + 1L, point -> {
+                    if (written[0] < query.limit()) {
+                        sink.accept(point);
+                        lastWritten[0] = point;
+                    } else {
+                        hasMore[0] = true;
+                    }
+                });
+                writer.finish(written[0], false,
+                        hasMore[0] ? encodeCursor(lastWritten[0].timestamp(), lastWritten[0].id()) : null);
+            }
+
+            log.debug("Streamed {} {} history points for {} in {}ms", written[0], query.type(), query.entityId(),
+                    System.currentTimeMillis() - startTime);
+        } catch (UncheckedIOException e) {
+            // Client went away mid-stream; the cursor is closed by JdbcTemplate
+            log.debug("History stream for {} {} aborted: {}", query.type(), query.entityId(), e.getMessage());
+        }
+    }
+
+    private long count(HistoryQuery query) {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT COUNT(*) FROM " + table(query.type()) + whereClause(query, params);
+        Long count = jdbcTemplate.queryForObject(sql, Long.class, params.toArray());
+        return count != null ? count : 0;
+    }
+
+    private void forEachPoint(HistoryQuery query, long limit, Consumer<TrackHistoryPoint> consumer) {
+        List<Object> params = new ArrayList<>();
+        String idColumn = idColumn(query.type());
+        String sql = selectColumns(query.type()) + " FROM " + table(query.type()) + whereClause(query, params)
+                + " ORDER BY timestamp, " + idColumn + " LIMIT ?";
+        params.add(limit);
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            new ArgumentPreparedStatementSetter(params.toArray()).setValues(statement);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(mapPoint(rs)));
+    }
+
+    private static String whereClause(HistoryQuery query, List<Object> params) {
+        StringBuilder where = new StringBuilder(" WHERE ")
+                .append(query.type().isAirborne() ? "hexident" : "mmsi").append(" = ?")
+                .append(" AND timestamp >= ? AND timestamp < ?")
+                .append(" AND latitude IS NOT NULL AND longitude IS NOT NULL");
+        params.add(query.entityId());
+        params.add(query.from());
+        params.add(query.to());
+        if (query.afterTimestamp() != null) {
+            // The plain bound lets the planner exclude earlier chunks; the row
+            // comparison alone is not used for chunk exclusion
+            where.append(" AND timestamp >= ? AND (timestamp, ").append(idColumn(query.type())).append(") > (?, ?)");
+            params.add(query.afterTimestamp());
+            params.add(query.afterTimestamp());
+            params.add(query.afterId());
+        }
+        return where.toString();
+    }
+
+    private static String selectColumns(EntityType type) {
+        return type.isAirborne()
+                ? "SELECT tracking_id AS id, timestamp, latitude, longitude, altitude,"
+                        + " ground_speed AS speed, COALESCE(track, heading) AS heading"
+                : "SELECT id, timestamp, latitude, longitude, NULL AS altitude,"
+                        + " speed_over_ground AS speed, COALESCE(course_over_ground, heading) AS heading";
+    }
+
+    private static String table(EntityType type) {
+        return type.isAirborne() ? "flight_tracking" : "ship_tracking";
+    }
+
+    private static String idColumn(EntityType type) {
+        return type.isAirborne() ? "tracking_id" : "id";
+    }
+
+    private static TrackHistoryPoint mapPoint(ResultSet rs) throws SQLException {
+        return new TrackHistoryPoint(
+                rs.getLong("id"),
+                rs.getTimestamp("timestamp").toLocalDateTime(),
+                rs.getDouble("latitude"),
+                rs.getDouble("longitude"),
+                nullableDouble(rs, "altitude"),
+                nullableDouble(rs, "speed"),
+                nullableDouble(rs, "heading"));
+    }
+
+    private static Double nullableDouble(ResultSet rs, String column) throws SQLException {
+        Object value = rs.getObject(column);
+        return value instanceof Number number ? number.doubleValue() : null;
+    }
+
+    // ============================================================================
+    // KEYSET CURSOR
+    // ============================================================================
+
+    static String encodeCursor(LocalDateTime timestamp, long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((timestamp + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String[] decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = decoded.split("\\|");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Malformed history cursor");
+            }
+            LocalDateTime.parse(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed history cursor", e);
+        }
+    }
+}
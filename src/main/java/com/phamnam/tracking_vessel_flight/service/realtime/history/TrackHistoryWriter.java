@@ -0,0 +1,216 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.history;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.phamnam.tracking_vessel_flight.dto.response.TrackHistoryPoint;
+import org.springframework.http.MediaType;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+
+/**
+ * Writes streamed track points straight to the response body, followed by a
+ * page trailer carrying the point count and the keyset cursor of the next
+ * page (null on the last page or when the track was downsampled).
+ */
+public abstract class TrackHistoryWriter implements AutoCloseable {
+
+    public enum Format {
+        NDJSON(MediaType.parseMediaType("application/x-ndjson")),
+        BINARY(MediaType.APPLICATION_OCTET_STREAM);
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public static Format fromParameter(String value) {
+            return switch (value == null ? "ndjson" : value.toLowerCase(Locale.ROOT)) {
+                case "ndjson", "json" -> NDJSON;
+                case "bin", "binary" -> BINARY;
+                default -> throw new IllegalArgumentException("Unknown history format: " + value);
+            };
+        }
+    }
+
+    public static TrackHistoryWriter create(Format format, JsonFactory jsonFactory, OutputStream out)
+            throws IOException {
+        return format == Format.BINARY ? new BinaryWriter(out) : new NdjsonWriter(jsonFactory, out);
+    }
+
+    public abstract void write(TrackHistoryPoint point) throws IOException;
+
+    public abstract void finish(long count, boolean downsampled, String nextCursor) throws IOException;
+
+    @Override
+    public abstract void close() throws IOException;
+
+    /**
+     * Adapter for callbacks that cannot throw IOException
+     */
+    void writeUnchecked(TrackHistoryPoint point) {
+        try {
+            write(point);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ============================================================================
+    // NDJSON
+    // ============================================================================
+
+    /**
+     * One JSON object per line:
+     * {"id":1,"timestamp":"2025-01-01T00:00:00","lat":21.0,"lon":105.8,
+     * "altitude":35000.0,"speed":450.0,"heading":90.0}
+     * then {"type":"page","count":n,"downsampled":false,"nextCursor":"..."}
+     */
+    private static final class NdjsonWriter extends TrackHistoryWriter {
+        private final JsonGenerator generator;
+
+        NdjsonWriter(JsonFactory jsonFactory, OutputStream out) throws IOException {
+            this.generator = jsonFactory.createGenerator(out);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(TrackHistoryPoint point) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", point.id());
+            generator.writeStringField("timestamp", point.timestamp().toString());
+            generator.writeNumberField("lat", point.latitude());
+            generator.writeNumberField("lon", point.longitude());
+            writeOptional("altitude", point.altitude());
+            writeOptional("speed", point.speed());
+            writeOptional("heading", point.heading());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish(long count, boolean downsampled, String nextCursor) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("type", "page");
+            generator.writeNumberField("count", count);
+            generator.writeBooleanField("downsampled", downsampled);
+            generator.writeStringField("nextCursor", nextCursor);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+
+        private void writeOptional(String name, Double value) throws IOException {
+            if (value != null) {
+                generator.writeNumberField(name, value);
+            }
+        }
+    }
+
+    // ============================================================================
+    // BINARY
+    // ============================================================================
+
+    /**
+     * Delta-encoded records, all integers LEB128 varints (zig-zag for signed):
+     * - byte version (1)
+     * - per point: byte 0x01, zig-zag delta of epoch millis (UTC), zig-zag
+     * delta of latitude and longitude in 1e-6 degrees, presence bits (1
+     * altitude, 2 speed, 4 heading), then the present values as zig-zag
+     * integers: altitude in feet, speed in 0.1 knots, heading in 0.1 degrees
+     * - trailer: byte 0x02, varint count, byte downsampled, varint cursor
+     * length (0 = no next page) and the cursor as UTF-8
+     * Deltas start from zero, so the first point carries absolute values.
+     */
+    private static final class BinaryWriter extends TrackHistoryWriter {
+        static final int VERSION = 1;
+        static final int POINT_TAG = 0x01;
+        static final int PAGE_TAG = 0x02;
+
+        private final OutputStream out;
+        private long previousMillis;
+        private long previousLatitude;
+        private long previousLongitude;
+
+        BinaryWriter(OutputStream out) throws IOException {
+            this.out = new BufferedOutputStream(out, 8192);
+            this.out.write(VERSION);
+        }
+
+        @Override
+        public void write(TrackHistoryPoint point) throws IOException {
+            long millis = toEpochMillis(point.timestamp());
+            long latitude = Math.round(point.latitude() * 1e6);
+            long longitude = Math.round(point.longitude() * 1e6);
+
+            out.write(POINT_TAG);
+            writeSigned(millis - previousMillis);
+            writeSigned(latitude - previousLatitude);
+            writeSigned(longitude - previousLongitude);
+            int presence = (point.altitude() != null ? 1 : 0) | (point.speed() != null ? 2 : 0)
+                    | (point.heading() != null ? 4 : 0);
+            out.write(presence);
+            if (point.altitude() != null) {
+                writeSigned(Math.round(point.altitude()));
+            }
+            if (point.speed() != null) {
+                writeSigned(Math.round(point.speed() * 10));
+            }
+            if (point.heading() != null) {
+                writeSigned(Math.round(point.heading() * 10));
+            }
+
+            previousMillis = millis;
+            previousLatitude = latitude;
+            previousLongitude = longitude;
+        }
+
+        @Override
+        public void finish(long count, boolean downsampled, String nextCursor) throws IOException {
+            out.write(PAGE_TAG);
+            writeUnsigned(count);
+            out.write(downsampled ? 1 : 0);
+            byte[] cursor = nextCursor != null ? nextCursor.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            writeUnsigned(cursor.length);
+            out.write(cursor);
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+
+        private void writeSigned(long value) throws IOException {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        private void writeUnsigned(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        private static long toEpochMillis(LocalDateTime timestamp) {
+            return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+    }
+}
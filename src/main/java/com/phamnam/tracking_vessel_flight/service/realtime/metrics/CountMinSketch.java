@@ -0,0 +1,72 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.metrics;
+
+/**
+ * Count-Min sketch frequency estimator
+ *
+ * depth x width counters; an estimate never undercounts and overcounts by at
+ * most (e / width) * total with probability 1 - e^-depth. Row indexes come
+ * from one 64-bit hash split into two halves (Kirsch-Mitzenmacher double
+ * hashing). Sketches with the same dimensions merge by adding counters.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public final class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final long[][] counters;
+    private long total;
+
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1) {
+            throw new IllegalArgumentException("Count-Min sketch needs positive depth and width");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counters = new long[depth][width];
+    }
+
+    public void add(String key, long count) {
+        long hash = SketchHashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int row = 0; row < depth; row++) {
+            counters[row][Math.floorMod(h1 + row * h2, width)] += count;
+        }
+        total += count;
+    }
+
+    public long estimate(String key) {
+        long hash = SketchHashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[row][Math.floorMod(h1 + row * h2, width)]);
+        }
+        return estimate;
+    }
+
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Cannot merge Count-Min sketches of different dimensions");
+        }
+        for (int row = 0; row < depth; row++) {
+            for (int column = 0; column < width; column++) {
+                counters[row][column] += other.counters[row][column];
+            }
+        }
+        total += other.total;
+    }
+
+    public void clear() {
+        for (long[] row : counters) {
+            java.util.Arrays.fill(row, 0L);
+        }
+        total = 0;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+}
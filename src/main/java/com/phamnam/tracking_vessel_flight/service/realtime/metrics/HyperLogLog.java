@@ -0,0 +1,117 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.metrics;
+
+/**
+ * HyperLogLog distinct counter
+ *
+ * 2^precision one-byte registers (precision 12 = 4 KB, ~1.6% standard error).
+ * Cardinality uses Ertl's improved raw estimator ("New cardinality estimation
+ * algorithms for HyperLogLog sketches", 2017), which stays unbiased from a
+ * handful of entities up to billions without the empirical bias tables of
+ * HLL++. Sketches with the same precision merge losslessly, which is how the
+ * sliding windows combine per-minute sketches.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public final class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public void add(String value) {
+        addHash(SketchHashing.hash64(value));
+    }
+
+    /**
+     * Add an already hashed value; the hash must be uniformly distributed
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long remaining = hash << precision;
+        int rank = remaining == 0 ? 64 - precision + 1 : Long.numberOfLeadingZeros(remaining) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException(
+                    "Cannot merge HyperLogLog precision " + other.precision + " into " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(registers, (byte) 0);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        int q = 64 - precision;
+        int[] histogram = new int[q + 2];
+        for (byte register : registers) {
+            histogram[register]++;
+        }
+        if (histogram[0] == m) {
+            return 0;
+        }
+
+        double z = m * tau(1.0 - (double) histogram[q + 1] / m);
+        for (int k = q; k >= 1; k--) {
+            z += histogram[k];
+            z *= 0.5;
+        }
+        z += m * sigma((double) histogram[0] / m);
+
+        double alphaInfinity = 0.5 / Math.log(2);
+        return Math.round(alphaInfinity * m * m / z);
+    }
+
+    private static double sigma(double x) {
+        if (x == 1.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1.0;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0.0 || x == 1.0) {
+            return 0.0;
+        }
+        double y = 1.0;
+        double z = 1.0 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= Math.pow(1.0 - x, 2) * y;
+        } while (z != previous);
+        return z / 3.0;
+    }
+}
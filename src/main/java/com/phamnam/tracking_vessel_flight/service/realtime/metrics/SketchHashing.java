@@ -0,0 +1,33 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.metrics;
+
+/**
+ * 64-bit string hash shared by the sketches: FNV-1a over the UTF-16 chars,
+ * finished with the MurmurHash3 fmix64 avalanche so every output bit is
+ * usable as an independent register index / rank bit.
+ */
+final class SketchHashing {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SketchHashing() {
+    }
+
+    static long hash64(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return fmix64(hash);
+    }
+
+    static long fmix64(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
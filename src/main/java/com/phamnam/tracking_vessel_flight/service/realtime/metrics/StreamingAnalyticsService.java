@@ -0,0 +1,381 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.metrics;
+
+import com.phamnam.tracking_vessel_flight.dto.event.AircraftPositionEvent;
+import com.phamnam.tracking_vessel_flight.dto.event.VesselPositionEvent;
+import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streaming Analytics Service
+ *
+ * In-memory dashboard counters maintained as processed positions flow in,
+ * so the 30-second statistics broadcast does not have to query Postgres:
+ * - Sliding windows built from ring buffers of per-minute slots (last hour)
+ * and per-hour slots (last 24 hours)
+ * - HyperLogLog sketches per entity type, per source and per region for
+ * distinct entity counts
+ * - A Count-Min sketch plus heavy-hitter candidates per minute for the
+ * busiest 0.1 degree grid cells
+ *
+ * Like the continuous aggregates, a window starts at the slot containing the
+ * cutoff. Counts only cover what this node consumed since startup, so callers
+ * check {@link #covers(Duration)} before trusting a window.
+ */
+@Service
+@Slf4j
+public class StreamingAnalyticsService {
+
+    static final int HLL_PRECISION = 12;
+    static final int CMS_DEPTH = 4;
+    static final int CMS_WIDTH = 1024;
+    static final int CELL_CANDIDATES_PER_SLOT = 64;
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final long HOUR_MS = 3_600_000L;
+    // One extra slot so a full window plus the current partial slot fit
+    private static final int MINUTE_SLOTS = 61;
+    private static final int HOUR_SLOTS = 25;
+
+    private static final Duration MAX_MINUTE_WINDOW = Duration.ofHours(1);
+    private static final Duration MAX_WINDOW = Duration.ofHours(24);
+
+    @Value("${app.analytics.streaming.enabled:true}")
+    private boolean enabled = true;
+
+    private final Clock clock;
+    private final long startedAtMillis;
+    private final WindowSlot[] minuteSlots = new WindowSlot[MINUTE_SLOTS];
+    private final WindowSlot[] hourSlots = new WindowSlot[HOUR_SLOTS];
+
+    private final AtomicLong recordedEvents = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    public StreamingAnalyticsService() {
+        this(Clock.systemDefaultZone());
+    }
+
+    StreamingAnalyticsService(Clock clock) {
+        this.clock = clock;
+        this.startedAtMillis = clock.millis();
+        for (int i = 0; i < MINUTE_SLOTS; i++) {
+            minuteSlots[i] = new WindowSlot(true);
+        }
+        for (int i = 0; i < HOUR_SLOTS; i++) {
+            hourSlots[i] = new WindowSlot(false);
+        }
+    }
+
+    // ============================================================================
+    // INGEST
+    // ============================================================================
+
+    public void recordAircraft(AircraftPositionEvent event) {
+        if (event != null) {
+            record(EntityType.AIRCRAFT, event.hexident(), event.source(), event.latitude(), event.longitude(),
+                    event.timestamp());
+        }
+    }
+
+    public void recordVessel(VesselPositionEvent event) {
+        if (event != null) {
+            record(EntityType.VESSEL, event.mmsi(), event.source(), event.latitude(), event.longitude(),
+                    event.timestamp());
+        }
+    }
+
+    public void record(EntityType type, String entityId, String source, Double latitude, Double longitude,
+            LocalDateTime timestamp) {
+        if (!enabled || type == null || entityId == null || entityId.isBlank()) {
+            return;
+        }
+
+        long nowMillis = clock.millis();
+        long eventMillis = timestamp != null
+                ? Math.min(timestamp.atZone(clock.getZone()).toInstant().toEpochMilli(), nowMillis)
+                : nowMillis;
+
+        long hour = Math.floorDiv(eventMillis, HOUR_MS);
+        if (Math.floorDiv(nowMillis, HOUR_MS) - hour >= HOUR_SLOTS) {
+            droppedEvents.incrementAndGet();
+            return;
+        }
+
+        long entityHash = SketchHashing.hash64(entityId);
+        String region = regionOf(latitude);
+        String cell = cellOf(latitude, longitude);
+
+        long minute = Math.floorDiv(eventMillis, MINUTE_MS);
+        if (Math.floorDiv(nowMillis, MINUTE_MS) - minute < MINUTE_SLOTS) {
+            slotFor(minuteSlots, minute).record(minute, type, entityHash, source, region, cell);
+        }
+        slotFor(hourSlots, hour).record(hour, type, entityHash, source, region, null);
+        recordedEvents.incrementAndGet();
+    }
+
+    // ============================================================================
+    // QUERIES
+    // ============================================================================
+
+    /**
+     * True when this node has been consuming for the whole window and the
+     * window fits in the ring buffers
+     */
+    public boolean covers(Duration window) {
+        return enabled && window.compareTo(MAX_WINDOW) <= 0
+                && clock.millis() - startedAtMillis >= window.toMillis();
+    }
+
+    public long distinctEntities(EntityType type, Duration window) {
+        HyperLogLog merged = mergeDistinct(window).get(typeKey(type));
+        return merged != null ? merged.estimate() : 0;
+    }
+
+    public Map<String, Long> distinctBySource(EntityType type, Duration window) {
+        return estimatesWithPrefix(mergeDistinct(window), sourceKey(type, ""));
+    }
+
+    public Map<String, Long> distinctByRegion(EntityType type, Duration window) {
+        return estimatesWithPrefix(mergeDistinct(window), regionKey(type, ""));
+    }
+
+    public long recordCount(EntityType type, Duration window) {
+        long count = 0;
+        for (WindowSlot slot : slotsFor(window)) {
+            count += slot.records(firstEpoch(window), type);
+        }
+        return count;
+    }
+
+    /**
+     * Busiest 0.1 degree cells (records per cell) over a window of up to one hour
+     */
+    public List<Map<String, Object>> topCells(Duration window, int limit) {
+        if (window.compareTo(MAX_MINUTE_WINDOW) > 0) {
+            throw new IllegalArgumentException("Grid cell counts are kept for the last hour only: " + window);
+        }
+        long firstMinute = Math.floorDiv(clock.millis() - window.toMillis(), MINUTE_MS);
+        CountMinSketch merged = new CountMinSketch(CMS_DEPTH, CMS_WIDTH);
+        Set<String> candidates = new HashSet<>();
+        for (WindowSlot slot : minuteSlots) {
+            slot.mergeCells(firstMinute, merged, candidates);
+        }
+
+        List<Map<String, Object>> cells = new ArrayList<>();
+        candidates.stream()
+                .map(cell -> Map.entry(cell, merged.estimate(cell)))
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(limit)
+                .forEach(entry -> {
+                    String[] indexes = entry.getKey().split(":");
+                    Map<String, Object> cell = new LinkedHashMap<>();
+                    cell.put("lat_grid", Integer.parseInt(indexes[0]) / 10.0);
+                    cell.put("lon_grid", Integer.parseInt(indexes[1]) / 10.0);
+                    cell.put("traffic_count", entry.getValue());
+                    cells.add(cell);
+                });
+        return cells;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("recordedEvents", recordedEvents.get());
+        stats.put("droppedEvents", droppedEvents.get());
+        stats.put("uptimeMinutes", (clock.millis() - startedAtMillis) / MINUTE_MS);
+        stats.put("hllPrecision", HLL_PRECISION);
+        stats.put("hllStandardError", 1.04 / Math.sqrt(1 << HLL_PRECISION));
+        return stats;
+    }
+
+    // ============================================================================
+    // WINDOW HELPERS
+    // ============================================================================
+
+    private Map<String, HyperLogLog> mergeDistinct(Duration window) {
+        long firstEpoch = firstEpoch(window);
+        Map<String, HyperLogLog> merged = new HashMap<>();
+        for (WindowSlot slot : slotsFor(window)) {
+            slot.mergeDistinct(firstEpoch, merged);
+        }
+        return merged;
+    }
+
+    private WindowSlot[] slotsFor(Duration window) {
+        if (window.compareTo(MAX_WINDOW) > 0) {
+            throw new IllegalArgumentException("Streaming windows are limited to " + MAX_WINDOW + ": " + window);
+        }
+        return window.compareTo(MAX_MINUTE_WINDOW) <= 0 ? minuteSlots : hourSlots;
+    }
+
+    private long firstEpoch(Duration window) {
+        long slotMillis = window.compareTo(MAX_MINUTE_WINDOW) <= 0 ? MINUTE_MS : HOUR_MS;
+        return Math.floorDiv(clock.millis() - window.toMillis(), slotMillis);
+    }
+
+    private static WindowSlot slotFor(WindowSlot[] ring, long epoch) {
+        return ring[(int) Math.floorMod(epoch, (long) ring.length)];
+    }
+
+    private static Map<String, Long> estimatesWithPrefix(Map<String, HyperLogLog> sketches, String prefix) {
+        Map<String, Long> estimates = new TreeMap<>();
+        sketches.forEach((key, sketch) -> {
+            if (key.startsWith(prefix)) {
+                estimates.put(key.substring(prefix.length()), sketch.estimate());
+            }
+        });
+        return estimates;
+    }
+
+    private static String typeKey(EntityType type) {
+        return type.name();
+    }
+
+    private static String sourceKey(EntityType type, String source) {
+        return type.name() + "|source|" + source;
+    }
+
+    private static String regionKey(EntityType type, String region) {
+        return type.name() + "|region|" + region;
+    }
+
+    /**
+     * Same latitude bands as the dashboard's regional SQL
+     */
+    static String regionOf(Double latitude) {
+        if (latitude == null) {
+            return "Unknown";
+        }
+        if (latitude >= 8.5 && latitude <= 12.0) {
+            return "South Vietnam";
+        }
+        if (latitude > 12.0 && latitude <= 16.0) {
+            return "Central Vietnam";
+        }
+        if (latitude > 16.0 && latitude <= 23.5) {
+            return "North Vietnam";
+        }
+        return "Other";
+    }
+
+    static String cellOf(Double latitude, Double longitude) {
+        if (latitude == null || longitude == null) {
+            return null;
+        }
+        return (int) Math.floor(latitude * 10) + ":" + (int) Math.floor(longitude * 10);
+    }
+
+    // ============================================================================
+    // WINDOW SLOT
+    // ============================================================================
+
+    /**
+     * One minute or one hour of sketches; reset lazily when the ring wraps
+     */
+    private static final class WindowSlot {
+        private final boolean trackCells;
+        private long epoch = Long.MIN_VALUE;
+        private final Map<String, HyperLogLog> distinct = new HashMap<>();
+        private final long[] records = new long[EntityType.values().length];
+        private final CountMinSketch cells;
+        private final Map<String, Long> cellCandidates = new HashMap<>();
+
+        WindowSlot(boolean trackCells) {
+            this.trackCells = trackCells;
+            this.cells = trackCells ? new CountMinSketch(CMS_DEPTH, CMS_WIDTH) : null;
+        }
+
+        synchronized void record(long eventEpoch, EntityType type, long entityHash, String source, String region,
+                String cell) {
+            if (eventEpoch != epoch) {
+                if (eventEpoch < epoch) {
+                    // Slot already reused for a newer period
+                    return;
+                }
+                reset(eventEpoch);
+            }
+
+            sketch(typeKey(type)).addHash(entityHash);
+            if (source != null) {
+                sketch(sourceKey(type, source)).addHash(entityHash);
+            }
+            sketch(regionKey(type, region)).addHash(entityHash);
+            records[type.ordinal()]++;
+
+            if (trackCells && cell != null) {
+                cells.add(cell, 1);
+                trackCandidate(cell, cells.estimate(cell));
+            }
+        }
+
+        synchronized void mergeDistinct(long firstEpoch, Map<String, HyperLogLog> target) {
+            if (epoch < firstEpoch) {
+                return;
+            }
+            distinct.forEach((key, sketch) -> target
+                    .computeIfAbsent(key, k -> new HyperLogLog(HLL_PRECISION))
+                    .merge(sketch));
+        }
+
+        synchronized long records(long firstEpoch, EntityType type) {
+            return epoch >= firstEpoch ? records[type.ordinal()] : 0;
+        }
+
+        synchronized void mergeCells(long firstEpoch, CountMinSketch target, Set<String> candidates) {
+            if (!trackCells || epoch < firstEpoch) {
+                return;
+            }
+            target.merge(cells);
+            candidates.addAll(cellCandidates.keySet());
+        }
+
+        private HyperLogLog sketch(String key) {
+            return distinct.computeIfAbsent(key, k -> new HyperLogLog(HLL_PRECISION));
+        }
+
+        /**
+         * Keep the cells with the highest estimates seen in this slot
+         */
+        private void trackCandidate(String cell, long estimate) {
+            if (cellCandidates.containsKey(cell) || cellCandidates.size() < CELL_CANDIDATES_PER_SLOT) {
+                cellCandidates.put(cell, estimate);
+                return;
+            }
+            Map.Entry<String, Long> smallest = null;
+            for (Map.Entry<String, Long> entry : cellCandidates.entrySet()) {
+                if (smallest == null || entry.getValue() < smallest.getValue()) {
+                    smallest = entry;
+                }
+            }
+            if (smallest != null && estimate > smallest.getValue()) {
+                cellCandidates.remove(smallest.getKey());
+                cellCandidates.put(cell, estimate);
+            }
+        }
+
+        private void reset(long newEpoch) {
+            epoch = newEpoch;
+            distinct.clear();
+            java.util.Arrays.fill(records, 0L);
+            if (trackCells) {
+                cells.clear();
+                cellCandidates.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.pipeline;
+
+import com.phamnam.tracking_vessel_flight.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Staged collection pipeline for one kind of target (aircraft or vessels).
+ *
+ * A poll cycle flows fetch -> store -> fuse -> persist:
+ * - fetch: the per-source HTTP requests (responses are parsed as they stream
+ *   in, so parsing is part of this stage)
+ * - store: raw per-source records, as soon as each source answers
+ * - fuse: merge and deduplicate the sources of the cycle
+ * - persist: database writes and Kafka publishing
+ *
+ * Each stage after fetch has its own workers and bounded queue
+ * ({@link PipelineStage}), so the next cycle fetches while the previous one
+ * is still being persisted. At most max-in-flight cycles run at once; a tick
+ * that finds the pipeline full is skipped instead of queueing more work.
+ * A cycle's fuse waits for the previous cycle's fuse, and its persist for
+ * the previous cycle's persist, so cycles are persisted in the order they
+ * were started even when a later one finishes fetching first.
+ */
+@Slf4j
+public class CollectionPipeline<T> {
+
+    /**
+     * Stores one source's raw records of a cycle
+     */
+    @FunctionalInterface
+    public interface RawStore<T> {
+        void store(String source, List<T> data, long fetchTimeMs);
+    }
+
+    private final String name;
+    private final PipelineStage storeStage;
+    private final PipelineStage fuseStage;
+    private final PipelineStage persistStage;
+    private final RawStore<T> rawStore;
+    private final Function<Map<String, List<T>>, List<T>> fuser;
+    private final Consumer<List<T>> persister;
+    private final int maxInFlightCycles;
+
+    // Fuse and persist of the last started cycle, settled whether or not they
+    // failed; the next cycle's stages wait for them
+    private CompletableFuture<Void> lastFuse = CompletableFuture.completedFuture(null);
+    private CompletableFuture<Void> lastPersist = CompletableFuture.completedFuture(null);
+
+    private final AtomicInteger inFlightCycles = new AtomicInteger(0);
+    private final AtomicLong cyclesStarted = new AtomicLong(0);
+    private final AtomicLong cyclesCompleted = new AtomicLong(0);
+    private final AtomicLong cyclesFailed = new AtomicLong(0);
+    private final AtomicLong cyclesSkipped = new AtomicLong(0);
+    private final AtomicLong recordsPersisted = new AtomicLong(0);
+    private final LatencyHistogram fetchLatency = new LatencyHistogram();
+    private final LatencyHistogram cycleLatency = new LatencyHistogram(100, 200, 500, 1000, 2000, 5000, 10000,
+            30000, 60000, 120000);
+
+    public CollectionPipeline(String name, PipelineConfig config, RawStore<T> rawStore,
+            Function<Map<String, List<T>>, List<T>> fuser, Consumer<List<T>> persister) {
+        this.name = name;
+        this.storeStage = new PipelineStage(name + "-store", config.storeThreads(), config.storeCapacity());
+        this.fuseStage = new PipelineStage(name + "-fuse", config.fuseThreads(), config.fuseCapacity());
+        this.persistStage = new PipelineStage(name + "-persist", config.persistThreads(), config.persistCapacity());
+        this.rawStore = rawStore;
+        this.fuser = fuser;
+        this.persister = persister;
+        this.maxInFlightCycles = Math.max(1, config.maxInFlightCycles());
+    }
+
+    /**
+     * Start a cycle unless max-in-flight cycles are already running. Returns
+     * without waiting for any stage; the returned future completes with the
+     * number of fused records handed to persistence, or null when the cycle
+     * was skipped.
+     */
+    public CompletableFuture<Integer> tryStartCycle(Supplier<Map<String, CompletableFuture<List<T>>>> fetches) {
+        if (inFlightCycles.incrementAndGet() > maxInFlightCycles) {
+            inFlightCycles.decrementAndGet();
+            cyclesSkipped.incrementAndGet();
+            log.warn("⏸️ {} pipeline full ({} cycles in flight), skipping this poll", name, maxInFlightCycles);
+            return CompletableFuture.completedFuture(null);
+        }
+        cyclesStarted.incrementAndGet();
+        long startedAt = System.nanoTime();
+
+        CompletableFuture<Integer> cycle;
+        try {
+            cycle = runCycle(fetches.get(), startedAt);
+        } catch (RuntimeException e) {
+            cycle = CompletableFuture.failedFuture(e);
+        }
+
+        return cycle.whenComplete((persisted, error) -> {
+            inFlightCycles.decrementAndGet();
+            long elapsedNanos = System.nanoTime() - startedAt;
+            cycleLatency.record(elapsedNanos);
+            if (error != null) {
+                cyclesFailed.incrementAndGet();
+                log.error("❌ {} pipeline cycle failed: {}", name, error.getMessage(), error);
+            } else {
+                cyclesCompleted.incrementAndGet();
+                recordsPersisted.addAndGet(persisted);
+                log.info("🏁 {} pipeline cycle: {} records persisted in {}ms", name, persisted,
+                        elapsedNanos / 1_000_000);
+            }
+        });
+    }
+
+    private CompletableFuture<Integer> runCycle(Map<String, CompletableFuture<List<T>>> fetches, long startedAt) {
+        Map<String, List<T>> dataBySource = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] stored = new CompletableFuture<?>[fetches.size()];
+        int i = 0;
+        for (Map.Entry<String, CompletableFuture<List<T>>> fetch : fetches.entrySet()) {
+            String source = fetch.getKey();
+            stored[i++] = fetch.getValue()
+                    .handle((data, error) -> {
+                        long fetchNanos = System.nanoTime() - startedAt;
+                        fetchLatency.record(fetchNanos);
+                        if (error != null) {
+                            log.error("❌ Failed to get {} data from {}: {}", name, source, error.getMessage());
+                            return CompletableFuture.<Void>completedFuture(null);
+                        }
+                        if (data == null || data.isEmpty()) {
+                            return CompletableFuture.<Void>completedFuture(null);
+                        }
+                        dataBySource.put(source, data);
+                        return storeStage.submit(() -> {
+                            rawStore.store(source, data, fetchNanos / 1_000_000);
+                            return (Void) null;
+                        }).exceptionally(storeError -> {
+                            // The records still go on to fusion
+                            log.error("❌ Failed to store raw {} data from {}: {}", name, source,
+                                    storeError.getMessage());
+                            return null;
+                        });
+                    })
+                    .thenCompose(storing -> storing);
+        }
+
+        CompletableFuture<Void> fetched = CompletableFuture.allOf(stored);
+        synchronized (this) {
+            CompletableFuture<List<T>> fusing = fetched
+                    .thenCombine(lastFuse, (v, previous) -> dataBySource)
+                    .thenCompose(data -> data.isEmpty()
+                            ? CompletableFuture.completedFuture(List.<T>of())
+                            : fuseStage.submit(() -> fuser.apply(data)));
+            CompletableFuture<Integer> persisting = fusing
+                    .thenCombine(lastPersist, (fused, previous) -> fused)
+                    .thenCompose(fused -> fused == null || fused.isEmpty()
+                            ? CompletableFuture.completedFuture(0)
+                            : persistStage.submit(() -> {
+                                persister.accept(fused);
+                                return fused.size();
+                            }));
+            lastFuse = settled(fusing);
+            lastPersist = settled(persisting);
+            return persisting;
+        }
+    }
+
+    private static CompletableFuture<Void> settled(CompletableFuture<?> stage) {
+        return stage.handle((result, error) -> null);
+    }
+
+    public int getInFlightCycles() {
+        return inFlightCycles.get();
+    }
+
+    public void shutdown() {
+        storeStage.shutdown();
+        fuseStage.shutdown();
+        persistStage.shutdown();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxInFlightCycles", maxInFlightCycles);
+        stats.put("inFlightCycles", inFlightCycles.get());
+        stats.put("cyclesStarted", cyclesStarted.get());
+        stats.put("cyclesCompleted", cyclesCompleted.get());
+        stats.put("cyclesFailed", cyclesFailed.get());
+        stats.put("cyclesSkipped", cyclesSkipped.get());
+        stats.put("recordsPersisted", recordsPersisted.get());
+        stats.put("fetchLatency", fetchLatency.toMap());
+        stats.put("cycleLatency", cycleLatency.toMap());
+        Map<String, Object> stages = new LinkedHashMap<>();
+        stages.put("store", storeStage.getStatistics());
+        stages.put("fuse", fuseStage.getStatistics());
+        stages.put("persist", persistStage.getStatistics());
+        stats.put("stages", stages);
+        return stats;
+    }
+}
@@ -0,0 +1,94 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.pipeline;
+
+import com.phamnam.tracking_vessel_flight.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Freshness Monitor
+ *
+ * End-to-end freshness of live positions: the age of a position's provider
+ * timestamp at the moment it is handed to WebSocket clients. This is what the
+ * collection pipeline is tuned for, so it is tracked against an SLO
+ * (external.api.pipeline.freshness-slo) per target kind, with the last
+ * observed age as a gauge.
+ */
+@Service
+@Slf4j
+public class FreshnessMonitor {
+
+    private static final long[] FRESHNESS_BUCKETS_MS = { 1000, 2000, 5000, 10000, 15000, 30000, 60000, 120000,
+            300000, 600000 };
+
+    @Value("${external.api.pipeline.freshness-slo:30000}")
+    private long freshnessSloMs = 30000;
+
+    private final Clock clock;
+    private final Map<String, Freshness> freshnessByKind = new ConcurrentHashMap<>();
+
+    public FreshnessMonitor() {
+        this(Clock.systemDefaultZone());
+    }
+
+    FreshnessMonitor(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Record that a position with this provider timestamp was just delivered
+     * to WebSocket clients
+     */
+    public void recordDelivery(String kind, LocalDateTime providerTimestamp) {
+        if (providerTimestamp == null) {
+            return;
+        }
+        long providerMillis = providerTimestamp.atZone(clock.getZone()).toInstant().toEpochMilli();
+        // Provider clocks can run slightly ahead of ours
+        long ageMs = Math.max(0, clock.millis() - providerMillis);
+        freshnessByKind.computeIfAbsent(kind, key -> new Freshness()).record(ageMs, freshnessSloMs);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("freshnessSloMs", freshnessSloMs);
+        freshnessByKind.forEach((kind, freshness) -> stats.put(kind, freshness.toMap()));
+        return stats;
+    }
+
+    private static final class Freshness {
+        private final LatencyHistogram age = new LatencyHistogram(FRESHNESS_BUCKETS_MS);
+        private final AtomicLong lastAgeMs = new AtomicLong(0);
+        private final AtomicLong withinSlo = new AtomicLong(0);
+        private final AtomicLong breaches = new AtomicLong(0);
+
+        void record(long ageMs, long sloMs) {
+            age.record(ageMs * 1_000_000);
+            lastAgeMs.set(ageMs);
+            if (ageMs <= sloMs) {
+                withinSlo.incrementAndGet();
+            } else {
+                breaches.incrementAndGet();
+            }
+        }
+
+        Map<String, Object> toMap() {
+            long within = withinSlo.get();
+            long total = within + breaches.get();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("lastFreshnessMs", lastAgeMs.get());
+            stats.put("withinSlo", within);
+            stats.put("sloBreaches", breaches.get());
+            stats.put("sloCompliance", total > 0 ? (double) within / total : 1.0);
+            stats.put("freshness", age.toMap());
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.pipeline;
+
+/**
+ * Worker and queue sizes of the collection pipeline stages
+ */
+public record PipelineConfig(
+        int storeThreads,
+        int storeCapacity,
+        int fuseThreads,
+        int fuseCapacity,
+        int persistThreads,
+        int persistCapacity,
+        int maxInFlightCycles) {
+}
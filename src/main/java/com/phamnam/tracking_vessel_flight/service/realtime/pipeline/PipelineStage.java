@@ -0,0 +1,136 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.pipeline;
+
+import com.phamnam.tracking_vessel_flight.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * One stage of the collection pipeline: a fixed set of workers behind a
+ * bounded queue.
+ *
+ * When the queue is full, submit blocks the submitting thread (normally a
+ * worker of the stage before) until a slot frees up, so a slow stage slows
+ * down the one feeding it instead of buffering without limit. Queue wait and
+ * service time are recorded separately so a backlog shows up as wait, not
+ * as work.
+ */
+@Slf4j
+public class PipelineStage {
+
+    private final String name;
+    private final int threads;
+    private final int capacity;
+    private final ThreadPoolExecutor executor;
+
+    private final LatencyHistogram waitLatency = new LatencyHistogram();
+    private final LatencyHistogram serviceLatency = new LatencyHistogram();
+    private final AtomicLong completed = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong blockedSubmits = new AtomicLong(0);
+    private final AtomicInteger maxQueueDepth = new AtomicInteger(0);
+
+    public PipelineStage(String name, int threads, int capacity) {
+        this.name = name;
+        this.threads = Math.max(1, threads);
+        this.capacity = Math.max(1, capacity);
+        AtomicInteger threadCount = new AtomicInteger(0);
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.capacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "Pipeline-" + name + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                this::blockUntilQueued);
+    }
+
+    /**
+     * Run work on this stage. The returned future completes on the stage's
+     * worker, so stages chained with thenCompose hand over without an extra
+     * thread hop.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long startedAt = System.nanoTime();
+                waitLatency.record(startedAt - queuedAt);
+                try {
+                    T value = work.get();
+                    completed.incrementAndGet();
+                    result.complete(value);
+                } catch (Throwable e) {
+                    failed.incrementAndGet();
+                    result.completeExceptionally(e);
+                } finally {
+                    serviceLatency.record(System.nanoTime() - startedAt);
+                }
+            });
+            maxQueueDepth.accumulateAndGet(executor.getQueue().size(), Math::max);
+        } catch (RejectedExecutionException e) {
+            failed.incrementAndGet();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private void blockUntilQueued(Runnable task, ThreadPoolExecutor pool) {
+        if (pool.isShutdown()) {
+            throw new RejectedExecutionException("Pipeline stage " + name + " is shut down");
+        }
+        blockedSubmits.incrementAndGet();
+        log.debug("⏸️ Pipeline stage {} full ({} queued), waiting for a slot", name, capacity);
+        try {
+            pool.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for pipeline stage " + name, e);
+        }
+    }
+
+    public int queueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", threads);
+        stats.put("active", executor.getActiveCount());
+        stats.put("queueDepth", queueDepth());
+        stats.put("maxQueueDepth", maxQueueDepth.get());
+        stats.put("queueCapacity", capacity);
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        stats.put("blockedSubmits", blockedSubmits.get());
+        stats.put("queueWait", waitLatency.toMap());
+        stats.put("serviceTime", serviceLatency.toMap());
+        return stats;
+    }
+}
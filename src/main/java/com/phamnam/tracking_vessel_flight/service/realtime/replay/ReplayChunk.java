@@ -0,0 +1,15 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.replay;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-ahead unit: per-entity last positions for consecutive buckets, keyed
+ * by bucket start (epoch millis, UTC)
+ */
+record ReplayChunk(long fromMillis, long toMillis, Map<Long, List<ReplayEntity>> buckets, int rows) {
+
+    List<ReplayEntity> bucket(long bucketMillis) {
+        return buckets.getOrDefault(bucketMillis, List.of());
+    }
+}
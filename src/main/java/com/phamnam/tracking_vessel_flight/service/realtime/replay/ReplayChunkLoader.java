@@ -0,0 +1,8 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.replay;
+
+import java.time.LocalDateTime;
+
+@FunctionalInterface
+interface ReplayChunkLoader {
+    ReplayChunk load(ReplayQuery query, LocalDateTime from, LocalDateTime to);
+}
@@ -0,0 +1,20 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.replay;
+
+import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Last known position of one entity within a replay bucket. Altitude is only
+ * set for aircraft; lastSeen is the newest report the position came from.
+ */
+public record ReplayEntity(
+        EntityType type,
+        String id,
+        double latitude,
+        double longitude,
+        Double altitude,
+        Double speed,
+        Double heading,
+        LocalDateTime lastSeen) {
+}
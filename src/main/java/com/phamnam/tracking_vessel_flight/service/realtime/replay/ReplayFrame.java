@@ -0,0 +1,47 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.replay;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One playback step of a replay.
+ *
+ * A keyframe carries every entity visible at frameTime and replaces the
+ * client's state; other frames only carry entities that reported since the
+ * previous frame plus the ids that went stale. Large frames are sent in
+ * parts that share the sequence number.
+ */
+public record ReplayFrame(
+        String replayId,
+        long sequence,
+        LocalDateTime frameTime,
+        boolean keyframe,
+        int part,
+        int parts,
+        int aircraftCount,
+        int vesselCount,
+        List<ReplayEntity> updated,
+        List<String> removedAircraft,
+        List<String> removedVessels) {
+
+    /**
+     * Split into parts of at most maxEntities updates; removals ride on the
+     * last part
+     */
+    public List<ReplayFrame> split(int maxEntities) {
+        if (updated.size() <= maxEntities) {
+            return List.of(this);
+        }
+        int total = (updated.size() + maxEntities - 1) / maxEntities;
+        List<ReplayFrame> frames = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            boolean last = i == total - 1;
+            List<ReplayEntity> slice = updated.subList(i * maxEntities,
+                    Math.min(updated.size(), (i + 1) * maxEntities));
+            frames.add(new ReplayFrame(replayId, sequence, frameTime, keyframe, i + 1, total, aircraftCount,
+                    vesselCount, slice, last ? removedAircraft : List.of(), last ? removedVessels : List.of()));
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,19 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.replay;
+
+import java.time.LocalDateTime;
+
+/**
+ * Validated replay request; from is aligned down to a whole step so bucket
+ * boundaries match time_bucket's epoch origin
+ */
+public record ReplayQuery(
+        double minLatitude,
+        double maxLatitude,
+        double minLongitude,
+        double maxLongitude,
+        LocalDateTime from,
+        LocalDateTime to,
+        int stepSeconds,
+        boolean aircraft,
+        boolean vessels) {
+}
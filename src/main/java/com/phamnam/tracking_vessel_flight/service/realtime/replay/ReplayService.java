@@ -0,0 +1,466 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.replay;
+
+import com.phamnam.tracking_vessel_flight.config.TimescaleConfig;
+import com.phamnam.tracking_vessel_flight.dto.request.ReplayControlRequest;
+import com.phamnam.tracking_vessel_flight.dto.request.ReplayRequest;
+import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replay Service
+ *
+ * Plays back every aircraft / vessel inside a bounding box over a past time
+ * window as synchronized snapshots over WebSocket:
+ * - Positions are reduced to the last report per entity and step-sized bucket
+ * in the database (time_bucket + last() on TimescaleDB, DISTINCT ON otherwise)
+ * - Chunks of buckets are loaded ahead of the playhead on a separate pool, so
+ * playback does not wait on a query per frame
+ * - Frames go to /topic/replay/{replayId}; playback status (finished, error)
+ * to /topic/replay/{replayId}/status
+ *
+ * Sessions belong to the WebSocket session that started them and are
+ * stopped when it disconnects.
+ */
+@Service
+@Slf4j
+public class ReplayService {
+
+    public static final String DESTINATION_PREFIX = "/topic/replay/";
+
+    // Bucket origin pinned to the epoch so both queries produce the same boundaries
+    private static final String AIRCRAFT_TIMESCALE_SQL = """
+            SELECT time_bucket(make_interval(secs => ?), timestamp, TIMESTAMP '1970-01-01') AS bucket,
+                   hexident AS id,
+                   last(latitude, timestamp) AS latitude,
+                   last(longitude, timestamp) AS longitude,
+                   last(altitude, timestamp) AS altitude,
+                   last(ground_speed, timestamp) AS speed,
+                   last(COALESCE(track, heading), timestamp) AS heading,
+                   max(timestamp) AS last_seen
+            FROM flight_tracking
+            WHERE timestamp >= ? AND timestamp < ?
+              AND latitude BETWEEN ? AND ? AND longitude BETWEEN ? AND ?
+              AND hexident IS NOT NULL
+            GROUP BY bucket, hexident
+            ORDER BY bucket
+            """;
+
+    private static final String VESSEL_TIMESCALE_SQL = """
+            SELECT time_bucket(make_interval(secs => ?), timestamp, TIMESTAMP '1970-01-01') AS bucket,
+                   mmsi AS id,
+                   last(latitude, timestamp) AS latitude,
+                   last(longitude, timestamp) AS longitude,
+                   NULL AS altitude,
+                   last(speed_over_ground, timestamp) AS speed,
+                   last(COALESCE(course_over_ground, heading), timestamp) AS heading,
+                   max(timestamp) AS last_seen
+            FROM ship_tracking
+            WHERE timestamp >= ? AND timestamp < ?
+              AND latitude BETWEEN ? AND ? AND longitude BETWEEN ? AND ?
+              AND mmsi IS NOT NULL
+            GROUP BY bucket, mmsi
+            ORDER BY bucket
+            """;
+
+    private static final String AIRCRAFT_RAW_SQL = """
+            SELECT DISTINCT ON (bucket, hexident)
+                   to_timestamp(floor(extract(epoch FROM timestamp) / ?) * ?) AT TIME ZONE 'UTC' AS bucket,
+                   hexident AS id, latitude, longitude, altitude, ground_speed AS speed,
+                   COALESCE(track, heading) AS heading, timestamp AS last_seen
+            FROM flight_tracking
+            WHERE timestamp >= ? AND timestamp < ?
+              AND latitude BETWEEN ? AND ? AND longitude BETWEEN ? AND ?
+              AND hexident IS NOT NULL
+            ORDER BY bucket, hexident, timestamp DESC
+            """;
+
+    private static final String VESSEL_RAW_SQL = """
+            SELECT DISTINCT ON (bucket, mmsi)
+                   to_timestamp(floor(extract(epoch FROM timestamp) / ?) * ?) AT TIME ZONE 'UTC' AS bucket,
+                   mmsi AS id, latitude, longitude, NULL AS altitude, speed_over_ground AS speed,
+                   COALESCE(course_over_ground, heading) AS heading, timestamp AS last_seen
+            FROM ship_tracking
+            WHERE timestamp >= ? AND timestamp < ?
+              AND latitude BETWEEN ? AND ? AND longitude BETWEEN ? AND ?
+              AND mmsi IS NOT NULL
+            ORDER BY bucket, mmsi, timestamp DESC
+            """;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TimescaleConfig timescaleConfig;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Value("${app.replay.max-sessions:20}")
+    private int maxSessions = 20;
+
+    @Value("${app.replay.max-window-hours:24}")
+    private int maxWindowHours = 24;
+
+    @Value("${app.replay.default-step-seconds:10}")
+    private int defaultStepSeconds = 10;
+
+    @Value("${app.replay.max-speed:3600}")
+    private double maxSpeed = 3600;
+
+    @Value("${app.replay.tick-ms:100}")
+    private long tickMs = 100;
+
+    @Value("${app.replay.chunk-seconds:120}")
+    private int chunkSeconds = 120;
+
+    @Value("${app.replay.read-ahead-chunks:2}")
+    private int readAheadChunks = 2;
+
+    @Value("${app.replay.fetch-size:5000}")
+    private int fetchSize = 5000;
+
+    @Value("${app.replay.max-entities-per-message:2000}")
+    private int maxEntitiesPerMessage = 2000;
+
+    @Value("${app.replay.aircraft-stale-seconds:300}")
+    private long aircraftStaleSeconds = 300;
+
+    @Value("${app.replay.vessel-stale-seconds:600}")
+    private long vesselStaleSeconds = 600;
+
+    @Value("${app.replay.loader-threads:4}")
+    private int loaderThreads = 4;
+
+    @Value("${app.replay.ticker-threads:2}")
+    private int tickerThreads = 2;
+
+    private final Map<String, ReplaySession> sessions = new ConcurrentHashMap<>();
+    // One permit per allowed replay, taken before a session is created and
+    // returned by whoever removes it from the map
+    private Semaphore sessionSlots;
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong chunksLoaded = new AtomicLong();
+    private final AtomicLong rowsLoaded = new AtomicLong();
+    private final AtomicLong chunkLoadMillis = new AtomicLong();
+
+    private ExecutorService loaderExecutor;
+    private ScheduledExecutorService tickerExecutor;
+
+    public ReplayService(SimpMessagingTemplate messagingTemplate, JdbcTemplate jdbcTemplate,
+            TimescaleConfig timescaleConfig, PlatformTransactionManager transactionManager) {
+        this.messagingTemplate = messagingTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.timescaleConfig = timescaleConfig;
+        // PostgreSQL only streams with a server-side cursor inside a transaction
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        sessionSlots = new Semaphore(maxSessions);
+        loaderExecutor = Executors.newFixedThreadPool(loaderThreads, daemonThreads("replay-loader-"));
+        tickerExecutor = Executors.newScheduledThreadPool(tickerThreads, daemonThreads("replay-ticker-"));
+        log.info("🎬 Replay service started - {} loader threads, {} ticker threads, {}ms ticks",
+                loaderThreads, tickerThreads, tickMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sessions.values().forEach(ReplaySession::close);
+        sessions.clear();
+        tickerExecutor.shutdownNow();
+        loaderExecutor.shutdownNow();
+    }
+
+    // ============================================================================
+    // SESSION CONTROL
+    // ============================================================================
+
+    public ReplayQuery prepare(ReplayRequest request) {
+        if (request.getMinLatitude() == null || request.getMaxLatitude() == null
+                || request.getMinLongitude() == null || request.getMaxLongitude() == null) {
+            throw new IllegalArgumentException("Bounding box is required");
+        }
+        if (request.getMinLatitude() >= request.getMaxLatitude()
+                || request.getMinLongitude() >= request.getMaxLongitude()) {
+            throw new IllegalArgumentException("Bounding box minimums must be below maximums");
+        }
+        if (request.getStartTime() == null || request.getEndTime() == null
+                || !request.getStartTime().isBefore(request.getEndTime())) {
+            throw new IllegalArgumentException("startTime must be before endTime");
+        }
+        if (Duration.between(request.getStartTime(), request.getEndTime()).toHours() >= maxWindowHours) {
+            throw new IllegalArgumentException("Replay window is limited to " + maxWindowHours + " hours");
+        }
+        int step = request.getStepSeconds() != null ? request.getStepSeconds() : defaultStepSeconds;
+        if (step < 1 || step > 3600) {
+            throw new IllegalArgumentException("stepSeconds must be between 1 and 3600");
+        }
+        validateSpeed(request.getSpeed());
+
+        String layers = request.getLayers() != null ? request.getLayers().toLowerCase(Locale.ROOT) : "all";
+        boolean aircraft = layers.equals("aircraft") || layers.equals("all");
+        boolean vessels = layers.equals("vessel") || layers.equals("vessels") || layers.equals("all");
+        if (!aircraft && !vessels) {
+            throw new IllegalArgumentException("layers must be aircraft, vessel or all");
+        }
+
+        long startMillis = ReplaySession.toMillis(request.getStartTime());
+        long alignedStart = Math.floorDiv(startMillis, step * 1000L) * step * 1000L;
+        return new ReplayQuery(request.getMinLatitude(), request.getMaxLatitude(), request.getMinLongitude(),
+                request.getMaxLongitude(), ReplaySession.toLocalDateTime(alignedStart), request.getEndTime(), step,
+                aircraft, vessels);
+    }
+
+    /**
+     * Start a replay for a WebSocket session; returns the replay id whose
+     * topic carries the frames
+     */
+    public String start(String ownerSessionId, ReplayRequest request) {
+        ReplayQuery query = prepare(request);
+        if (!sessionSlots.tryAcquire()) {
+            throw new IllegalStateException("Too many active replays (" + maxSessions + ")");
+        }
+
+        String replayId = UUID.randomUUID().toString();
+        ReplaySession session;
+        try {
+            session = new ReplaySession(replayId, ownerSessionId, query,
+                    request.getSpeed() != null ? request.getSpeed() : 1.0, this::loadChunk, loaderExecutor,
+                    chunkSeconds, readAheadChunks, aircraftStaleSeconds, vesselStaleSeconds);
+        } catch (RuntimeException e) {
+            sessionSlots.release();
+            throw e;
+        }
+        sessions.put(replayId, session);
+        session.setTicker(tickerExecutor.scheduleAtFixedRate(() -> tick(session), 0, tickMs, TimeUnit.MILLISECONDS));
+
+        log.info("🎬 Replay {} started for {}: {} -> {}, step {}s, bbox [{},{}]-[{},{}]", replayId, ownerSessionId,
+                query.from(), query.to(), query.stepSeconds(), query.minLatitude(), query.minLongitude(),
+                query.maxLatitude(), query.maxLongitude());
+        return replayId;
+    }
+
+    public void control(String ownerSessionId, ReplayControlRequest request) {
+        ReplaySession session = request.getReplayId() != null ? sessions.get(request.getReplayId()) : null;
+        if (session == null || !session.ownerSessionId().equals(ownerSessionId)) {
+            throw new IllegalArgumentException("Unknown replay: " + request.getReplayId());
+        }
+        String action = request.getAction() != null ? request.getAction().toLowerCase(Locale.ROOT) : "";
+        switch (action) {
+            case "pause" -> session.pause();
+            case "resume" -> session.resume();
+            case "speed" -> {
+                if (request.getSpeed() == null) {
+                    throw new IllegalArgumentException("speed is required");
+                }
+                validateSpeed(request.getSpeed());
+                session.setSpeed(request.getSpeed());
+            }
+            case "seek" -> {
+                if (request.getTime() == null) {
+                    throw new IllegalArgumentException("time is required");
+                }
+                session.seek(request.getTime());
+            }
+            case "stop" -> stop(session.replayId());
+            default -> throw new IllegalArgumentException("Unknown replay action: " + request.getAction());
+        }
+    }
+
+    public void stop(String replayId) {
+        ReplaySession session = sessions.remove(replayId);
+        if (session != null) {
+            sessionSlots.release();
+            session.close();
+            log.info("⏹️ Replay {} stopped", replayId);
+        }
+    }
+
+    /**
+     * Stop every replay owned by a disconnected WebSocket session
+     */
+    public void stopAll(String ownerSessionId) {
+        sessions.values().stream()
+                .filter(session -> session.ownerSessionId().equals(ownerSessionId))
+                .map(ReplaySession::replayId)
+                .toList()
+                .forEach(this::stop);
+    }
+
+    private void validateSpeed(Double speed) {
+        if (speed != null && (speed <= 0 || speed > maxSpeed)) {
+            throw new IllegalArgumentException("speed must be above 0 and at most " + maxSpeed);
+        }
+    }
+
+    // ============================================================================
+    // PLAYBACK
+    // ============================================================================
+
+    private void tick(ReplaySession session) {
+        try {
+            ReplayFrame frame = session.tick(System.currentTimeMillis());
+            if (frame != null) {
+                for (ReplayFrame part : frame.split(maxEntitiesPerMessage)) {
+                    messagingTemplate.convertAndSend(DESTINATION_PREFIX + session.replayId(), part);
+                }
+                framesSent.incrementAndGet();
+            }
+            if (session.isFinished() && remove(session)) {
+                session.close();
+                sendStatus(session.replayId(), "finished", null);
+                log.info("🏁 Replay {} finished", session.replayId());
+            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.error("❌ Replay {} failed loading data: {}", session.replayId(), cause.getMessage());
+            remove(session);
+            session.close();
+            sendStatus(session.replayId(), "error", cause.getMessage());
+        } catch (Exception e) {
+            // Keep the ticker alive; an exception would cancel the scheduled task
+            log.error("❌ Error ticking replay {}: {}", session.replayId(), e.getMessage());
+        }
+    }
+
+    private boolean remove(ReplaySession session) {
+        if (sessions.remove(session.replayId(), session)) {
+            sessionSlots.release();
+            return true;
+        }
+        return false;
+    }
+
+    private void sendStatus(String replayId, String status, String message) {
+        Map<String, Object> update = new HashMap<>();
+        update.put("type", "replay-status");
+        update.put("replayId", replayId);
+        update.put("status", status);
+        update.put("message", message);
+        update.put("timestamp", LocalDateTime.now());
+        messagingTemplate.convertAndSend(DESTINATION_PREFIX + replayId + "/status", update);
+    }
+
+    // ============================================================================
+    // CHUNK LOADING
+    // ============================================================================
+
+    ReplayChunk loadChunk(ReplayQuery query, LocalDateTime from, LocalDateTime to) {
+        long startTime = System.currentTimeMillis();
+        Map<Long, List<ReplayEntity>> buckets = new HashMap<>();
+        AtomicInteger rows = new AtomicInteger();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            if (query.aircraft()) {
+                queryBuckets(EntityType.AIRCRAFT, query, from, to, buckets, rows);
+            }
+            if (query.vessels()) {
+                queryBuckets(EntityType.VESSEL, query, from, to, buckets, rows);
+            }
+        });
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        chunksLoaded.incrementAndGet();
+        rowsLoaded.addAndGet(rows.get());
+        chunkLoadMillis.addAndGet(elapsed);
+        log.debug("Loaded replay chunk {} -> {}: {} rows in {}ms", from, to, rows.get(), elapsed);
+        return new ReplayChunk(ReplaySession.toMillis(from), ReplaySession.toMillis(to), buckets, rows.get());
+    }
+
+    private void queryBuckets(EntityType type, ReplayQuery query, LocalDateTime from, LocalDateTime to,
+            Map<Long, List<ReplayEntity>> buckets, AtomicInteger rows) {
+        boolean timescale = timescaleConfig.isTimescaleEnabled();
+        List<Object> params = new ArrayList<>();
+        params.add(query.stepSeconds());
+        if (!timescale) {
+            params.add(query.stepSeconds());
+        }
+        params.add(from);
+        params.add(to);
+        params.add(query.minLatitude());
+        params.add(query.maxLatitude());
+        params.add(query.minLongitude());
+        params.add(query.maxLongitude());
+
+        String sql = type.isAirborne()
+                ? (timescale ? AIRCRAFT_TIMESCALE_SQL : AIRCRAFT_RAW_SQL)
+                : (timescale ? VESSEL_TIMESCALE_SQL : VESSEL_RAW_SQL);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            new ArgumentPreparedStatementSetter(params.toArray()).setValues(statement);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            long bucket = ReplaySession.toMillis(rs.getObject("bucket", LocalDateTime.class));
+            buckets.computeIfAbsent(bucket, key -> new ArrayList<>()).add(mapEntity(type, rs));
+            rows.incrementAndGet();
+        });
+    }
+
+    private static ReplayEntity mapEntity(EntityType type, ResultSet rs) throws SQLException {
+        return new ReplayEntity(type, rs.getString("id"), rs.getDouble("latitude"), rs.getDouble("longitude"),
+                nullableDouble(rs, "altitude"), nullableDouble(rs, "speed"), nullableDouble(rs, "heading"),
+                rs.getObject("last_seen", LocalDateTime.class));
+    }
+
+    private static Double nullableDouble(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    // ============================================================================
+    // MONITORING
+    // ============================================================================
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("activeReplays", sessions.size());
+        stats.put("maxSessions", maxSessions);
+        stats.put("framesSent", framesSent.get());
+        stats.put("chunksLoaded", chunksLoaded.get());
+        stats.put("rowsLoaded", rowsLoaded.get());
+        long chunks = chunksLoaded.get();
+        stats.put("avgChunkLoadMs", chunks > 0 ? chunkLoadMillis.get() / chunks : 0);
+        stats.put("replays", sessions.values().stream().map(ReplaySession::getStatistics).toList());
+        return stats;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,313 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.replay;
+
+import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Playback state of one replay.
+ *
+ * The playhead advances by wall-clock time x speed on every tick; all
+ * buckets it passed are applied to the entity state and coalesced into one
+ * frame, so the frame rate stays at the tick rate whatever the speed.
+ * Chunks ahead of the playhead are loaded on the loader executor; when the
+ * read-ahead falls behind, the playhead holds at the missing bucket instead
+ * of skipping data.
+ *
+ * Entities are dropped once they have not reported for the stale window,
+ * matching the live view. After start or seek, the stale window before the
+ * playhead is loaded first so the opening keyframe is complete.
+ */
+final class ReplaySession {
+
+    private final String replayId;
+    private final String ownerSessionId;
+    private final ReplayQuery query;
+    private final ReplayChunkLoader loader;
+    private final Executor loaderExecutor;
+    private final long startMillis;
+    private final long endMillis;
+    private final long stepMillis;
+    private final long chunkMillis;
+    private final int readAheadChunks;
+    private final long aircraftStaleMillis;
+    private final long vesselStaleMillis;
+
+    private final Map<String, ReplayEntity> aircraft = new HashMap<>();
+    private final Map<String, ReplayEntity> vessels = new HashMap<>();
+    private final TreeMap<Long, CompletableFuture<ReplayChunk>> chunks = new TreeMap<>();
+    private CompletableFuture<ReplayChunk> priming;
+
+    private double speed;
+    private boolean paused;
+    private boolean finished;
+    private boolean keyframePending;
+    private long nextBucketMillis;
+    private double playheadMillis;
+    private long lastTickMillis = -1;
+    private long sequence;
+
+    private long framesEmitted;
+    private long rowsPlayed;
+    private long stalls;
+
+    private volatile ScheduledFuture<?> ticker;
+
+    ReplaySession(String replayId, String ownerSessionId, ReplayQuery query, double speed,
+            ReplayChunkLoader loader, Executor loaderExecutor, int chunkSeconds, int readAheadChunks,
+            long aircraftStaleSeconds, long vesselStaleSeconds) {
+        this.replayId = replayId;
+        this.ownerSessionId = ownerSessionId;
+        this.query = query;
+        this.speed = speed;
+        this.loader = loader;
+        this.loaderExecutor = loaderExecutor;
+        this.startMillis = toMillis(query.from());
+        this.endMillis = toMillis(query.to());
+        this.stepMillis = query.stepSeconds() * 1000L;
+        // Chunks hold whole buckets
+        this.chunkMillis = Math.max(1, chunkSeconds / query.stepSeconds()) * stepMillis;
+        this.readAheadChunks = readAheadChunks;
+        this.aircraftStaleMillis = aircraftStaleSeconds * 1000;
+        this.vesselStaleMillis = vesselStaleSeconds * 1000;
+        reposition(startMillis);
+    }
+
+    // ============================================================================
+    // PLAYBACK
+    // ============================================================================
+
+    /**
+     * Advance the playhead to nowMillis; returns the frame to send, or null
+     * when paused, finished, stalled or no bucket boundary was crossed.
+     * Loader failures surface as CompletionException.
+     */
+    synchronized ReplayFrame tick(long nowMillis) {
+        long elapsed = lastTickMillis < 0 ? 0 : nowMillis - lastTickMillis;
+        lastTickMillis = nowMillis;
+        if (finished || paused) {
+            return null;
+        }
+
+        if (priming != null) {
+            if (!priming.isDone()) {
+                stalls++;
+                return null;
+            }
+            ReplayChunk prime = priming.join();
+            priming = null;
+            new TreeMap<>(prime.buckets()).values().forEach(rows -> rows.forEach(this::put));
+            // Playback starts once the opening state is there
+            elapsed = 0;
+        }
+
+        playheadMillis = Math.min(playheadMillis + elapsed * speed, endMillis);
+        Map<String, ReplayEntity> changed = new LinkedHashMap<>();
+        boolean advanced = false;
+        // A bucket is played once the playhead has passed its end
+        while (nextBucketMillis < endMillis && bucketEnd(nextBucketMillis) <= playheadMillis) {
+            CompletableFuture<ReplayChunk> chunk = chunkFor(nextBucketMillis);
+            if (!chunk.isDone()) {
+                // Hold the playhead at the missing bucket instead of skipping data
+                playheadMillis = bucketEnd(nextBucketMillis);
+                stalls++;
+                break;
+            }
+            for (ReplayEntity entity : chunk.join().bucket(nextBucketMillis)) {
+                put(entity);
+                changed.put(key(entity), entity);
+                rowsPlayed++;
+            }
+            nextBucketMillis += stepMillis;
+            advanced = true;
+        }
+
+        if (!advanced && !keyframePending) {
+            return null;
+        }
+
+        long frameMillis = Math.min(nextBucketMillis, endMillis);
+        List<String> removedAircraft = evictStale(aircraft, frameMillis - aircraftStaleMillis, changed);
+        List<String> removedVessels = evictStale(vessels, frameMillis - vesselStaleMillis, changed);
+        if (nextBucketMillis >= endMillis) {
+            finished = true;
+            chunks.values().forEach(future -> future.cancel(false));
+            chunks.clear();
+        }
+
+        boolean keyframe = keyframePending;
+        keyframePending = false;
+        framesEmitted++;
+        List<ReplayEntity> updated = new ArrayList<>(keyframe ? aircraft.size() + vessels.size() : changed.size());
+        if (keyframe) {
+            updated.addAll(aircraft.values());
+            updated.addAll(vessels.values());
+        } else {
+            updated.addAll(changed.values());
+        }
+        return new ReplayFrame(replayId, ++sequence, toLocalDateTime(frameMillis), keyframe, 1, 1,
+                aircraft.size(), vessels.size(), updated,
+                keyframe ? List.of() : removedAircraft, keyframe ? List.of() : removedVessels);
+    }
+
+    synchronized void pause() {
+        paused = true;
+    }
+
+    synchronized void resume() {
+        paused = false;
+    }
+
+    synchronized void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Jump to time (clamped to the replay window); the next frame is a keyframe
+     */
+    synchronized void seek(LocalDateTime time) {
+        long target = Math.max(startMillis, Math.min(toMillis(time), endMillis - stepMillis));
+        reposition(startMillis + (target - startMillis) / stepMillis * stepMillis);
+        finished = false;
+    }
+
+    synchronized void close() {
+        finished = true;
+        if (priming != null) {
+            priming.cancel(false);
+        }
+        chunks.values().forEach(future -> future.cancel(false));
+        chunks.clear();
+        ScheduledFuture<?> scheduled = ticker;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+    }
+
+    // ============================================================================
+    // STATE
+    // ============================================================================
+
+    private void reposition(long bucketMillis) {
+        aircraft.clear();
+        vessels.clear();
+        chunks.values().forEach(future -> future.cancel(false));
+        chunks.clear();
+        if (priming != null) {
+            priming.cancel(false);
+        }
+        long lookback = Math.max(query.aircraft() ? aircraftStaleMillis : 0, query.vessels() ? vesselStaleMillis : 0);
+        priming = lookback > 0 ? load(bucketMillis - lookback, bucketMillis) : null;
+        keyframePending = true;
+        nextBucketMillis = bucketMillis;
+        playheadMillis = bucketMillis;
+        chunkFor(bucketMillis);
+    }
+
+    /**
+     * Future of the chunk holding bucketMillis; also keeps readAheadChunks
+     * loads queued behind it and releases chunks already played
+     */
+    private CompletableFuture<ReplayChunk> chunkFor(long bucketMillis) {
+        long first = startMillis + (bucketMillis - startMillis) / chunkMillis * chunkMillis;
+        chunks.headMap(first).clear();
+        for (int i = 0; i <= readAheadChunks; i++) {
+            long from = first + i * chunkMillis;
+            if (from >= endMillis) {
+                break;
+            }
+            chunks.computeIfAbsent(from, key -> load(key, Math.min(key + chunkMillis, endMillis)));
+        }
+        return chunks.get(first);
+    }
+
+    private long bucketEnd(long bucketMillis) {
+        return Math.min(bucketMillis + stepMillis, endMillis);
+    }
+
+    private CompletableFuture<ReplayChunk> load(long fromMillis, long toMillis) {
+        return CompletableFuture.supplyAsync(
+                () -> loader.load(query, toLocalDateTime(fromMillis), toLocalDateTime(toMillis)), loaderExecutor);
+    }
+
+    private void put(ReplayEntity entity) {
+        (entity.type().isAirborne() ? aircraft : vessels).put(entity.id(), entity);
+    }
+
+    private static List<String> evictStale(Map<String, ReplayEntity> entities, long cutoffMillis,
+            Map<String, ReplayEntity> changed) {
+        List<String> removed = new ArrayList<>();
+        for (Iterator<ReplayEntity> it = entities.values().iterator(); it.hasNext();) {
+            ReplayEntity entity = it.next();
+            if (toMillis(entity.lastSeen()) < cutoffMillis) {
+                it.remove();
+                changed.remove(key(entity));
+                removed.add(entity.id());
+            }
+        }
+        return removed;
+    }
+
+    private static String key(ReplayEntity entity) {
+        return (entity.type().isAirborne() ? "A:" : "V:") + entity.id();
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1_000_000,
+                ZoneOffset.UTC);
+    }
+
+    // ============================================================================
+    // ACCESSORS
+    // ============================================================================
+
+    String replayId() {
+        return replayId;
+    }
+
+    String ownerSessionId() {
+        return ownerSessionId;
+    }
+
+    synchronized boolean isFinished() {
+        return finished;
+    }
+
+    void setTicker(ScheduledFuture<?> ticker) {
+        this.ticker = ticker;
+    }
+
+    synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("replayId", replayId);
+        stats.put("from", query.from());
+        stats.put("to", query.to());
+        stats.put("stepSeconds", query.stepSeconds());
+        stats.put("playhead", toLocalDateTime((long) playheadMillis));
+        stats.put("speed", speed);
+        stats.put("paused", paused);
+        stats.put("finished", finished);
+        stats.put("aircraft", aircraft.size());
+        stats.put("vessels", vessels.size());
+        stats.put("framesEmitted", framesEmitted);
+        stats.put("rowsPlayed", rowsPlayed);
+        stats.put("stalls", stalls);
+        stats.put("chunksQueued", chunks.size());
+        return stats;
+    }
+}
@@ -0,0 +1,418 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.subscription;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Subscription Registry
+ *
+ * Area and entity subscriptions (subscribeToArea, subscribeToAircraft,
+ * subscribeToShipArea, subscribeToShip) of the sessions connected to this
+ * node. The in-memory maps are the read path: the update path asks them which
+ * areas are active and who subscribes to an entity without a Redis round
+ * trip.
+ *
+ * Changes are replicated to the existing Redis sets (active:area:subscriptions,
+ * area:{key}:clients, client:{session}:subscriptions, ...) every
+ * replication-interval ms in pipelined batches, so other nodes still see them.
+ * Only the latest change per (kind, key, session) is written, so a
+ * subscribe/unsubscribe in between two batches costs nothing. The active area
+ * sets of the whole cluster are read back every refresh-interval ms; an area
+ * is active if a local session or any node subscribes to it.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SubscriptionRegistry {
+
+    public enum Kind {
+        AREA("active:area:subscriptions", "area:", ":subscriptions"),
+        AIRCRAFT(null, "aircraft:", ":aircraft:subscriptions"),
+        SHIP_AREA("active:ship:area:subscriptions", "ship:area:", ":ship:area:subscriptions"),
+        SHIP(null, "ship:", ":ship:subscriptions");
+
+        // Set of keys with at least one session, null for entity kinds
+        private final String activeKey;
+        private final String clientsPrefix;
+        private final String sessionSuffix;
+
+        Kind(String activeKey, String clientsPrefix, String sessionSuffix) {
+            this.activeKey = activeKey;
+            this.clientsPrefix = clientsPrefix;
+            this.sessionSuffix = sessionSuffix;
+        }
+
+        String clientsKey(String key) {
+            return clientsPrefix + key + ":clients";
+        }
+
+        String sessionKey(String sessionId) {
+            return "client:" + sessionId + sessionSuffix;
+        }
+    }
+
+    private record Subscription(Kind kind, String key, String sessionId) {
+    }
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${app.websocket.subscriptions.replication.enabled:true}")
+    private boolean replicationEnabled = true;
+
+    // kind -> key -> local session ids
+    private final Map<Kind, Map<String, Set<String>>> sessionsByKey = newKeyMaps();
+    // sessionId -> its subscriptions, for disconnect
+    private final Map<String, Set<Subscription>> subscriptionsBySession = new ConcurrentHashMap<>();
+    // Latest unreplicated change per subscription: true = added, false = removed
+    private final Map<Subscription, Boolean> pendingReplication = new ConcurrentHashMap<>();
+    // Active keys of the whole cluster, as of the last refresh
+    private volatile Map<Kind, Set<String>> clusterActiveKeys = Map.of();
+    // Parsed bounds of area keys
+    private final Map<String, double[]> boundsByAreaKey = new ConcurrentHashMap<>();
+    // getActiveAreas result per kind, dropped whenever the set of keys changes
+    private final Map<Kind, Map<String, double[]>> activeAreasByKind = new ConcurrentHashMap<>();
+
+    private final AtomicLong changesReplicated = new AtomicLong(0);
+    private final AtomicLong replicationBatches = new AtomicLong(0);
+    private final AtomicLong replicationFailures = new AtomicLong(0);
+    private volatile long lastRefreshAt;
+
+    private static Map<Kind, Map<String, Set<String>>> newKeyMaps() {
+        Map<Kind, Map<String, Set<String>>> maps = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            maps.put(kind, new ConcurrentHashMap<>());
+        }
+        return maps;
+    }
+
+    /**
+     * Key of an area subscription, e.g. area_21.000000_22.000000_105.000000_106.000000
+     */
+    public static String areaKey(String prefix, double minLat, double maxLat, double minLon, double maxLon) {
+        StringBuilder key = new StringBuilder(prefix.length() + 48).append(prefix);
+        appendCoordinate(key.append('_'), minLat);
+        appendCoordinate(key.append('_'), maxLat);
+        appendCoordinate(key.append('_'), minLon);
+        appendCoordinate(key.append('_'), maxLon);
+        return key.toString();
+    }
+
+    /**
+     * Same text as "%.6f" in the ROOT locale, without going through Formatter
+     */
+    private static void appendCoordinate(StringBuilder key, double value) {
+        long micros = Math.round(Math.abs(value) * 1_000_000);
+        // Sign bit, as Formatter keeps it for -0.0 and values rounding to zero
+        if (Double.doubleToRawLongBits(value) < 0) {
+            key.append('-');
+        }
+        key.append(micros / 1_000_000).append('.');
+        String fraction = Long.toString(micros % 1_000_000);
+        for (int i = fraction.length(); i < 6; i++) {
+            key.append('0');
+        }
+        key.append(fraction);
+    }
+
+    // ============================================================================
+    // LOCAL SUBSCRIPTIONS
+    // ============================================================================
+
+    /**
+     * @return false if the session already had this subscription
+     */
+    public boolean subscribe(Kind kind, String key, String sessionId) {
+        Subscription subscription = new Subscription(kind, key, sessionId);
+        if (!subscriptionsBySession.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet())
+                .add(subscription)) {
+            return false;
+        }
+        // compute, not computeIfAbsent + add, so a concurrent removal of the
+        // last session cannot drop the set this one is added to
+        boolean[] newKey = new boolean[1];
+        sessionsByKey.get(kind).compute(key, (k, sessions) -> {
+            Set<String> updated = sessions;
+            if (updated == null) {
+                updated = ConcurrentHashMap.newKeySet();
+                newKey[0] = true;
+            }
+            updated.add(sessionId);
+            return updated;
+        });
+        // After the key is in place, so a concurrent rebuild cannot miss it
+        if (newKey[0]) {
+            activeAreasByKind.remove(kind);
+        }
+        pendingReplication.put(subscription, Boolean.TRUE);
+        return true;
+    }
+
+    public void unsubscribe(Kind kind, String key, String sessionId) {
+        Subscription subscription = new Subscription(kind, key, sessionId);
+        Set<Subscription> subscriptions = subscriptionsBySession.get(sessionId);
+        if (subscriptions != null && subscriptions.remove(subscription)) {
+            remove(subscription);
+        }
+    }
+
+    /**
+     * Drop every subscription of a disconnected session
+     */
+    public void removeSession(String sessionId) {
+        Set<Subscription> subscriptions = subscriptionsBySession.remove(sessionId);
+        if (subscriptions == null) {
+            return;
+        }
+        subscriptions.forEach(this::remove);
+        log.debug("Removed {} subscriptions of session {}", subscriptions.size(), sessionId);
+    }
+
+    private void remove(Subscription subscription) {
+        Set<String> remaining = sessionsByKey.get(subscription.kind()).computeIfPresent(subscription.key(),
+                (k, sessions) -> {
+                    sessions.remove(subscription.sessionId());
+                    return sessions.isEmpty() ? null : sessions;
+                });
+        if (remaining == null) {
+            activeAreasByKind.remove(subscription.kind());
+        }
+        pendingReplication.put(subscription, Boolean.FALSE);
+    }
+
+    /**
+     * Sessions on this node subscribed to the key
+     */
+    public Set<String> getSessions(Kind kind, String key) {
+        Set<String> sessions = sessionsByKey.get(kind).get(key);
+        return sessions != null ? Collections.unmodifiableSet(sessions) : Set.of();
+    }
+
+    /**
+     * Whether a session on this node or, as of the last refresh, on any node
+     * subscribes to the key
+     */
+    public boolean hasSubscribers(Kind kind, String key) {
+        return sessionsByKey.get(kind).containsKey(key)
+                || clusterActiveKeys.getOrDefault(kind, Set.of()).contains(key);
+    }
+
+    /**
+     * Bounds (minLat, maxLat, minLon, maxLon) of the areas subscribed on this
+     * node
+     */
+    public Map<String, double[]> getLocalAreas(Kind kind) {
+        return boundsOf(sessionsByKey.get(kind).keySet());
+    }
+
+    /**
+     * Bounds of the areas subscribed anywhere in the cluster. Kept until the
+     * set of areas changes, so per-update callers do not rebuild it.
+     */
+    public Map<String, double[]> getActiveAreas(Kind kind) {
+        return activeAreasByKind.computeIfAbsent(kind, k -> {
+            Set<String> keys = new HashSet<>(sessionsByKey.get(k).keySet());
+            keys.addAll(clusterActiveKeys.getOrDefault(k, Set.of()));
+            return Collections.unmodifiableMap(boundsOf(keys));
+        });
+    }
+
+    private Map<String, double[]> boundsOf(Set<String> areaKeys) {
+        Map<String, double[]> areas = new HashMap<>();
+        for (String areaKey : areaKeys) {
+            double[] bounds = boundsByAreaKey.computeIfAbsent(areaKey, SubscriptionRegistry::parseBounds);
+            if (bounds.length == 4) {
+                areas.put(areaKey, bounds);
+            }
+        }
+        return areas;
+    }
+
+    /**
+     * The last four "_" separated parts of an area key; empty if malformed
+     */
+    private static double[] parseBounds(String areaKey) {
+        String[] parts = areaKey.split("_");
+        if (parts.length < 5) {
+            log.error("Invalid area key format: {}", areaKey);
+            return new double[0];
+        }
+        try {
+            double[] bounds = new double[4];
+            for (int i = 0; i < 4; i++) {
+                bounds[i] = Double.parseDouble(parts[parts.length - 4 + i]);
+            }
+            return bounds;
+        } catch (NumberFormatException e) {
+            log.error("Lỗi khi parse area bounds: {}", areaKey, e);
+            return new double[0];
+        }
+    }
+
+    // ============================================================================
+    // REDIS REPLICATION
+    // ============================================================================
+
+    /**
+     * Write the changes since the last batch to the Redis sets. A failed batch
+     * is put back unless a newer change of the same subscription came in.
+     */
+    @Scheduled(fixedDelayString = "${app.websocket.subscriptions.replication-interval:500}")
+    public void replicate() {
+        if (!replicationEnabled || pendingReplication.isEmpty()) {
+            return;
+        }
+        Map<Subscription, Boolean> batch = new HashMap<>();
+        for (Map.Entry<Subscription, Boolean> change : pendingReplication.entrySet()) {
+            if (pendingReplication.remove(change.getKey(), change.getValue())) {
+                batch.put(change.getKey(), change.getValue());
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<Subscription> emptiedLocally = new ArrayList<>();
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    batch.forEach((subscription, added) -> {
+                        Kind kind = subscription.kind();
+                        if (added) {
+                            if (kind.activeKey != null) {
+                                ops.opsForSet().add(kind.activeKey, subscription.key());
+                            }
+                            ops.opsForSet().add(kind.clientsKey(subscription.key()), subscription.sessionId());
+                            ops.opsForSet().add(kind.sessionKey(subscription.sessionId()), subscription.key());
+                        } else {
+                            ops.opsForSet().remove(kind.clientsKey(subscription.key()), subscription.sessionId());
+                            ops.opsForSet().remove(kind.sessionKey(subscription.sessionId()), subscription.key());
+                            if (kind.activeKey != null && !sessionsByKey.get(kind).containsKey(subscription.key())) {
+                                emptiedLocally.add(subscription);
+                            }
+                        }
+                    });
+                    return null;
+                }
+            });
+            removeInactiveKeys(emptiedLocally);
+            changesReplicated.addAndGet(batch.size());
+            replicationBatches.incrementAndGet();
+        } catch (Exception e) {
+            replicationFailures.incrementAndGet();
+            batch.forEach(pendingReplication::putIfAbsent);
+            log.warn("⚠️ Failed to replicate {} subscription changes to Redis, will retry: {}", batch.size(),
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Drop keys no session of any node subscribes to any more from the active
+     * sets
+     */
+    private void removeInactiveKeys(List<Subscription> candidates) {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        List<Object> sizes = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                candidates.forEach(subscription -> ops.opsForSet()
+                        .size(subscription.kind().clientsKey(subscription.key())));
+                return null;
+            }
+        });
+        for (int i = 0; i < candidates.size(); i++) {
+            Subscription subscription = candidates.get(i);
+            if (sizes.get(i) instanceof Long size && size == 0
+                    && !sessionsByKey.get(subscription.kind()).containsKey(subscription.key())) {
+                redisTemplate.opsForSet().remove(subscription.kind().activeKey, subscription.key());
+            }
+        }
+    }
+
+    /**
+     * Read the active keys of the whole cluster
+     */
+    @Scheduled(fixedDelayString = "${app.websocket.subscriptions.refresh-interval:2000}")
+    public void refreshClusterSubscriptions() {
+        if (!replicationEnabled) {
+            return;
+        }
+        try {
+            Map<Kind, Set<String>> activeKeys = new EnumMap<>(Kind.class);
+            for (Kind kind : Kind.values()) {
+                if (kind.activeKey == null) {
+                    continue;
+                }
+                Set<Object> members = redisTemplate.opsForSet().members(kind.activeKey);
+                Set<String> keys = new HashSet<>();
+                if (members != null) {
+                    members.forEach(member -> keys.add(member.toString()));
+                }
+                activeKeys.put(kind, keys);
+            }
+            if (!activeKeys.equals(clusterActiveKeys)) {
+                clusterActiveKeys = activeKeys;
+                activeAreasByKind.clear();
+            }
+            lastRefreshAt = System.currentTimeMillis();
+            // Forget bounds of areas nobody subscribes to any more
+            boundsByAreaKey.keySet().removeIf(areaKey -> activeKeys.values().stream()
+                    .noneMatch(keys -> keys.contains(areaKey))
+                    && sessionsByKey.values().stream().noneMatch(keys -> keys.containsKey(areaKey)));
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to refresh cluster subscriptions from Redis: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Remove this node's sessions from Redis on shutdown
+     */
+    @PreDestroy
+    public void shutdown() {
+        new ArrayList<>(subscriptionsBySession.keySet()).forEach(this::removeSession);
+        replicate();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("replicationEnabled", replicationEnabled);
+        stats.put("sessions", subscriptionsBySession.size());
+        Map<String, Object> localKeys = new LinkedHashMap<>();
+        sessionsByKey.forEach((kind, keys) -> localKeys.put(kind.name(), keys.size()));
+        stats.put("localKeys", localKeys);
+        Map<String, Object> clusterKeys = new LinkedHashMap<>();
+        clusterActiveKeys.forEach((kind, keys) -> clusterKeys.put(kind.name(), keys.size()));
+        stats.put("clusterActiveKeys", clusterKeys);
+        stats.put("pendingReplication", pendingReplication.size());
+        stats.put("changesReplicated", changesReplicated.get());
+        stats.put("replicationBatches", replicationBatches.get());
+        stats.put("replicationFailures", replicationFailures.get());
+        stats.put("lastRefreshAgeMs", lastRefreshAt == 0 ? -1 : System.currentTimeMillis() - lastRefreshAt);
+        return stats;
+    }
+}
@@ -0,0 +1,163 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.vectortile;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal Mapbox Vector Tile (v2.1) writer for point layers
+ *
+ * Encodes the protobuf wire format by hand (Tile.layers = 3, Layer.name = 1,
+ * features = 2, keys = 3, values = 4, extent = 5, version = 15) so live
+ * positions can be tiled without a protobuf dependency. Keys and values are
+ * de-duplicated per layer as the spec requires. Tiles are plain repeated
+ * layers, so this output can be concatenated with ST_AsMVT output.
+ */
+final class MvtEncoder {
+
+    static final int EXTENT = 4096;
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_FIXED64 = 1;
+    private static final int WIRE_LENGTH_DELIMITED = 2;
+
+    private static final int GEOMETRY_POINT = 1;
+    private static final int COMMAND_MOVE_TO = 1;
+
+    private final List<Layer> layers = new ArrayList<>();
+
+    Layer layer(String name) {
+        Layer layer = new Layer(name);
+        layers.add(layer);
+        return layer;
+    }
+
+    byte[] encode() {
+        ByteArrayOutputStream tile = new ByteArrayOutputStream();
+        for (Layer layer : layers) {
+            if (!layer.features.isEmpty()) {
+                writeLengthDelimited(tile, 3, layer.encode());
+            }
+        }
+        return tile.toByteArray();
+    }
+
+    static final class Layer {
+        private final String name;
+        private final Map<String, Integer> keys = new LinkedHashMap<>();
+        private final Map<Object, Integer> values = new LinkedHashMap<>();
+        private final List<byte[]> features = new ArrayList<>();
+
+        private Layer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Point in tile coordinates (0..EXTENT, may exceed into the buffer);
+         * null property values are skipped
+         */
+        void addPoint(int x, int y, Map<String, Object> properties) {
+            ByteArrayOutputStream tags = new ByteArrayOutputStream();
+            properties.forEach((key, value) -> {
+                if (value != null) {
+                    writeVarint(tags, keys.computeIfAbsent(key, k -> keys.size()));
+                    writeVarint(tags, values.computeIfAbsent(normalize(value), v -> values.size()));
+                }
+            });
+
+            ByteArrayOutputStream geometry = new ByteArrayOutputStream();
+            writeVarint(geometry, (1L << 3) | COMMAND_MOVE_TO);
+            writeVarint(geometry, zigZag(x));
+            writeVarint(geometry, zigZag(y));
+
+            ByteArrayOutputStream feature = new ByteArrayOutputStream();
+            writeLengthDelimited(feature, 2, tags.toByteArray());
+            writeTag(feature, 3, WIRE_VARINT);
+            writeVarint(feature, GEOMETRY_POINT);
+            writeLengthDelimited(feature, 4, geometry.toByteArray());
+            features.add(feature.toByteArray());
+        }
+
+        int size() {
+            return features.size();
+        }
+
+        private byte[] encode() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writeTag(out, 15, WIRE_VARINT);
+            writeVarint(out, 2);
+            writeLengthDelimited(out, 1, name.getBytes(StandardCharsets.UTF_8));
+            for (byte[] feature : features) {
+                writeLengthDelimited(out, 2, feature);
+            }
+            for (String key : keys.keySet()) {
+                writeLengthDelimited(out, 3, key.getBytes(StandardCharsets.UTF_8));
+            }
+            for (Object value : values.keySet()) {
+                writeLengthDelimited(out, 4, encodeValue(value));
+            }
+            writeTag(out, 5, WIRE_VARINT);
+            writeVarint(out, EXTENT);
+            return out.toByteArray();
+        }
+    }
+
+    // Integral numbers share one value entry regardless of boxed type
+    private static Object normalize(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Float number) {
+            return number.doubleValue();
+        }
+        if (value instanceof Long || value instanceof Double || value instanceof Boolean) {
+            return value;
+        }
+        return value.toString();
+    }
+
+    private static byte[] encodeValue(Object value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (value instanceof Long number) {
+            writeTag(out, 6, WIRE_VARINT); // sint_value
+            writeVarint(out, zigZag(number));
+        } else if (value instanceof Double number) {
+            writeTag(out, 3, WIRE_FIXED64); // double_value
+            long bits = Double.doubleToLongBits(number);
+            for (int i = 0; i < 8; i++) {
+                out.write((int) (bits >>> (8 * i)) & 0xFF);
+            }
+        } else if (value instanceof Boolean flag) {
+            writeTag(out, 7, WIRE_VARINT); // bool_value
+            writeVarint(out, flag ? 1 : 0);
+        } else {
+            writeLengthDelimited(out, 1, value.toString().getBytes(StandardCharsets.UTF_8)); // string_value
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeLengthDelimited(ByteArrayOutputStream out, int field, byte[] bytes) {
+        writeTag(out, field, WIRE_LENGTH_DELIMITED);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static void writeTag(ByteArrayOutputStream out, int field, int wireType) {
+        writeVarint(out, ((long) field << 3) | wireType);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
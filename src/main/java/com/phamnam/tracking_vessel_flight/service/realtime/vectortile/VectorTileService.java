@@ -0,0 +1,364 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.vectortile;
+
+import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
+import com.phamnam.tracking_vessel_flight.service.realtime.LivePositionStore;
+import com.phamnam.tracking_vessel_flight.service.realtime.LivePositionStore.LivePosition;
+import com.phamnam.tracking_vessel_flight.util.ContentEtags;
+import com.phamnam.tracking_vessel_flight.util.TileMath;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vector Tile Service
+ *
+ * Mapbox Vector Tiles (application/vnd.mapbox-vector-tile) for map views:
+ * - live: current aircraft / vessel positions from LivePositionStore as
+ * point layers "aircraft" and "vessels", encoded in-process. Cached tiles
+ * are marked stale when a position inside them changes and re-rendered at
+ * most every min-refresh interval.
+ * - tracks: track lines between from and to built by PostGIS (ST_MakeLine,
+ * ST_SimplifyPreserveTopology with a tolerance of about one pixel at the
+ * requested zoom, ST_AsMVT) as layers "aircraft_tracks" and "vessel_tracks",
+ * kept in a bounded LRU cache.
+ */
+@Service
+@Slf4j
+public class VectorTileService {
+
+    public static final String CONTENT_TYPE = "application/vnd.mapbox-vector-tile";
+    public static final int MAX_ZOOM = 18;
+
+    private static final int BUFFER = 64;
+    private static final double WEB_MERCATOR_WORLD_METERS = 40075016.685578488;
+
+    @Value("${app.vector-tiles.live.min-refresh-ms:2000}")
+    private long liveMinRefreshMs = 2000;
+
+    @Value("${app.vector-tiles.live.max-tiles:5000}")
+    private int maxLiveTiles = 5000;
+
+    @Value("${app.vector-tiles.tracks.max-range-hours:24}")
+    private int maxTrackRangeHours = 24;
+
+    @Value("${app.vector-tiles.tracks.max-tiles:2000}")
+    private int maxTrackTiles = 2000;
+
+    @Value("${app.vector-tiles.tracks.open-range-ttl-seconds:30}")
+    private int openRangeTtlSeconds = 30;
+
+    @Value("${app.vector-tiles.tracks.settled-ttl-seconds:3600}")
+    private int settledTtlSeconds = 3600;
+
+    private final LivePositionStore livePositionStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final Clock clock;
+
+    private final Map<Long, CachedTile> liveTiles = new ConcurrentHashMap<>();
+    private final Map<String, CachedTile> trackTiles = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final AtomicLong liveRenders = new AtomicLong();
+    private final AtomicLong liveHits = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong trackQueries = new AtomicLong();
+    private final AtomicLong trackHits = new AtomicLong();
+
+    public record VectorTile(byte[] body, String etag, int maxAgeSeconds) {
+    }
+
+    private static final class CachedTile {
+        private final VectorTile tile;
+        private final long renderedAtMillis;
+        private final long expiresAtMillis;
+        private volatile boolean stale;
+
+        private CachedTile(VectorTile tile, long renderedAtMillis, long expiresAtMillis) {
+            this.tile = tile;
+            this.renderedAtMillis = renderedAtMillis;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    @Autowired
+    public VectorTileService(LivePositionStore livePositionStore, JdbcTemplate jdbcTemplate) {
+        this(livePositionStore, jdbcTemplate, Clock.systemDefaultZone());
+    }
+
+    VectorTileService(LivePositionStore livePositionStore, JdbcTemplate jdbcTemplate, Clock clock) {
+        this.livePositionStore = livePositionStore;
+        this.jdbcTemplate = jdbcTemplate;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void registerInvalidation() {
+        livePositionStore.addUpdateListener((previous, current) -> {
+            if (previous != null) {
+                invalidateLive(previous.latitude(), previous.longitude());
+            }
+            if (current != null && (previous == null || previous.latitude() != current.latitude()
+                    || previous.longitude() != current.longitude())) {
+                invalidateLive(current.latitude(), current.longitude());
+            }
+        });
+    }
+
+    // ============================================================================
+    // LIVE POSITIONS
+    // ============================================================================
+
+    public VectorTile getLiveTile(int z, int x, int y) {
+        validateTile(z, x, y);
+        long key = tileKey(z, x, y);
+        long now = clock.millis();
+        CachedTile cached = liveTiles.get(key);
+        if (cached != null && (!cached.stale || now - cached.renderedAtMillis < liveMinRefreshMs)) {
+            liveHits.incrementAndGet();
+            return cached.tile;
+        }
+
+        byte[] body = renderLive(z, x, y);
+        VectorTile tile = new VectorTile(body, ContentEtags.of(body),
+                (int) Math.max(1, liveMinRefreshMs / 1000));
+        liveTiles.put(key, new CachedTile(tile, now, Long.MAX_VALUE));
+        liveRenders.incrementAndGet();
+        trimLiveCache();
+        return tile;
+    }
+
+    byte[] renderLive(int z, int x, int y) {
+        // Include the tile buffer so symbols near the edge are not clipped
+        double bufferTiles = (double) BUFFER / MvtEncoder.EXTENT;
+        double south = TileMath.tileNorthLatitude(y + 1 + bufferTiles, z);
+        double north = TileMath.tileNorthLatitude(y - bufferTiles, z);
+        double west = TileMath.tileWestLongitude(x - bufferTiles, z);
+        double east = TileMath.tileWestLongitude(x + 1 + bufferTiles, z);
+
+        MvtEncoder encoder = new MvtEncoder();
+        addPoints(encoder.layer("aircraft"), livePositionStore.findInBounds(EntityType.AIRCRAFT, south, west,
+                north, east), z, x, y);
+        addPoints(encoder.layer("vessels"), livePositionStore.findInBounds(EntityType.VESSEL, south, west,
+                north, east), z, x, y);
+        return encoder.encode();
+    }
+
+    private static void addPoints(MvtEncoder.Layer layer, List<LivePosition> positions, int z, int x, int y) {
+        for (LivePosition position : positions) {
+            int px = (int) Math.round((TileMath.worldX(position.longitude(), z) - x) * MvtEncoder.EXTENT);
+            int py = (int) Math.round((TileMath.worldY(position.latitude(), z) - y) * MvtEncoder.EXTENT);
+            if (px < -BUFFER || px > MvtEncoder.EXTENT + BUFFER
+                    || py < -BUFFER || py > MvtEncoder.EXTENT + BUFFER) {
+                continue;
+            }
+            Map<String, Object> properties = new LinkedHashMap<>();
+            properties.put("id", position.id());
+            properties.put("label", position.label());
+            properties.put("altitude", position.altitude());
+            properties.put("speed", position.speed());
+            properties.put("heading", position.heading());
+            properties.put("source", position.source());
+            properties.put("timestamp", position.timestamp().toString());
+            layer.addPoint(px, py, properties);
+        }
+    }
+
+    private void invalidateLive(double latitude, double longitude) {
+        double bufferTiles = (double) BUFFER / MvtEncoder.EXTENT;
+        for (int z = 0; z <= MAX_ZOOM; z++) {
+            double worldX = TileMath.worldX(longitude, z);
+            double worldY = TileMath.worldY(latitude, z);
+            // Points inside a neighbour's buffer are drawn there too
+            int firstX = (int) Math.floor(worldX - bufferTiles);
+            int lastX = (int) Math.floor(worldX + bufferTiles);
+            int firstY = (int) Math.floor(worldY - bufferTiles);
+            int lastY = (int) Math.floor(worldY + bufferTiles);
+            for (int x = firstX; x <= lastX; x++) {
+                for (int y = firstY; y <= lastY; y++) {
+                    CachedTile cached = liveTiles.get(tileKey(z, x, y));
+                    if (cached != null && !cached.stale) {
+                        cached.stale = true;
+                        invalidations.incrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    private void trimLiveCache() {
+        if (liveTiles.size() <= maxLiveTiles) {
+            return;
+        }
+        // Drop stale tiles first, then the oldest renders, down to 90% of the limit
+        liveTiles.values().removeIf(cached -> cached.stale);
+        int excess = liveTiles.size() - maxLiveTiles * 9 / 10;
+        if (excess > 0) {
+            liveTiles.entrySet().stream()
+                    .sorted((a, b) -> Long.compare(a.getValue().renderedAtMillis, b.getValue().renderedAtMillis))
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(liveTiles::remove);
+        }
+    }
+
+    // ============================================================================
+    // HISTORICAL TRACKS
+    // ============================================================================
+
+    /**
+     * Track lines active between from (default one hour ago) and to (default now)
+     */
+    public VectorTile getTrackTile(String layers, int z, int x, int y, LocalDateTime from, LocalDateTime to) {
+        validateTile(z, x, y);
+        boolean aircraft;
+        boolean vessels;
+        switch (layers == null ? "all" : layers.toLowerCase(Locale.ROOT)) {
+            case "aircraft" -> {
+                aircraft = true;
+                vessels = false;
+            }
+            case "vessel", "vessels" -> {
+                aircraft = false;
+                vessels = true;
+            }
+            case "all" -> {
+                aircraft = true;
+                vessels = true;
+            }
+            default -> throw new IllegalArgumentException("Unknown track layer: " + layers);
+        }
+
+        LocalDateTime now = LocalDateTime.now(clock);
+        // Open-ended ranges stop at the current minute so repeated requests share a cache entry
+        LocalDateTime end = to != null ? to : now.truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime start = from != null ? from : end.minusHours(1);
+        if (!start.isBefore(end) || start.plusHours(maxTrackRangeHours).isBefore(end)) {
+            throw new IllegalArgumentException("Track range must be positive and at most " + maxTrackRangeHours
+                    + " hours");
+        }
+
+        String key = layers + "/" + z + "/" + x + "/" + y + "/" + start + "/" + end;
+        long nowMillis = clock.millis();
+        synchronized (trackTiles) {
+            CachedTile cached = trackTiles.get(key);
+            if (cached != null && cached.expiresAtMillis > nowMillis) {
+                trackHits.incrementAndGet();
+                return cached.tile;
+            }
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (aircraft) {
+            body.writeBytes(queryTracks(true, z, x, y, start, end));
+        }
+        if (vessels) {
+            body.writeBytes(queryTracks(false, z, x, y, start, end));
+        }
+        byte[] bytes = body.toByteArray();
+
+        boolean settled = end.isBefore(now.minusHours(1));
+        int ttlSeconds = settled ? settledTtlSeconds : openRangeTtlSeconds;
+        VectorTile tile = new VectorTile(bytes, ContentEtags.of(bytes), ttlSeconds);
+        synchronized (trackTiles) {
+            trackTiles.put(key, new CachedTile(tile, nowMillis, nowMillis + ttlSeconds * 1000L));
+            while (trackTiles.size() > maxTrackTiles) {
+                trackTiles.remove(trackTiles.keySet().iterator().next());
+            }
+        }
+        return tile;
+    }
+
+    private byte[] queryTracks(boolean aircraft, int z, int x, int y, LocalDateTime from, LocalDateTime to) {
+        trackQueries.incrementAndGet();
+        String table = aircraft ? "flight_tracking" : "ship_tracking";
+        String idColumn = aircraft ? "hexident" : "mmsi";
+        String labelColumn = aircraft ? "MAX(t.callsign)" : "NULL::text";
+        String layerName = aircraft ? "aircraft_tracks" : "vessel_tracks";
+
+        String sql = """
+                WITH bounds AS (
+                    SELECT ST_TileEnvelope(?, ?, ?) AS geom
+                ),
+                tracks AS (
+                    SELECT t.%s AS id,
+                           %s AS label,
+                           COUNT(*) AS points,
+                           MIN(t.timestamp)::text AS first_seen,
+                           MAX(t.timestamp)::text AS last_seen,
+                           ST_MakeLine(ST_Transform(ST_SetSRID(ST_MakePoint(t.longitude, t.latitude), 4326), 3857)
+                               ORDER BY t.timestamp) AS geom
+                    FROM %s t
+                    WHERE t.timestamp >= ? AND t.timestamp < ?
+                    AND t.latitude BETWEEN ? AND ? AND t.longitude BETWEEN ? AND ?
+                    GROUP BY t.%s
+                    HAVING COUNT(*) > 1
+                ),
+                features AS (
+                    SELECT tracks.id, tracks.label, tracks.points, tracks.first_seen, tracks.last_seen,
+                           ST_AsMVTGeom(ST_SimplifyPreserveTopology(tracks.geom, ?), bounds.geom, %d, %d, true) AS geom
+                    FROM tracks, bounds
+                )
+                SELECT ST_AsMVT(features.*, '%s', %d, 'geom') FROM features WHERE geom IS NOT NULL
+                """.formatted(idColumn, labelColumn, table, idColumn, MvtEncoder.EXTENT, BUFFER, layerName,
+                MvtEncoder.EXTENT);
+
+        // Positions just outside the tile keep lines that cross its edge connected
+        double margin = 0.25;
+        double south = TileMath.tileNorthLatitude(y + 1 + margin, z);
+        double north = TileMath.tileNorthLatitude(y - margin, z);
+        double west = TileMath.tileWestLongitude(x - margin, z);
+        double east = TileMath.tileWestLongitude(x + 1 + margin, z);
+        // About one pixel of a 256 px tile, in Web Mercator meters
+        double tolerance = WEB_MERCATOR_WORLD_METERS / ((1L << z) * 256.0);
+
+        byte[] tile = jdbcTemplate.queryForObject(sql, byte[].class, z, x, y, from, to, south, north, west, east,
+                tolerance);
+        return tile != null ? tile : new byte[0];
+    }
+
+    // ============================================================================
+    // HELPERS
+    // ============================================================================
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("liveTiles", liveTiles.size());
+        stats.put("liveRenders", liveRenders.get());
+        stats.put("liveHits", liveHits.get());
+        stats.put("liveInvalidations", invalidations.get());
+        synchronized (trackTiles) {
+            stats.put("trackTiles", trackTiles.size());
+        }
+        stats.put("trackQueries", trackQueries.get());
+        stats.put("trackHits", trackHits.get());
+        stats.put("livePositions", livePositionStore.getStatistics());
+        return stats;
+    }
+
+    private static void validateTile(int z, int x, int y) {
+        if (!TileMath.isValidTile(z, x, y, MAX_ZOOM)) {
+            throw new IllegalArgumentException("Invalid tile " + z + "/" + x + "/" + y);
+        }
+    }
+
+    private static long tileKey(int z, int x, int y) {
+        // 29 bits per axis; out-of-range neighbours map to keys no valid tile uses
+        return ((long) z << 58) | ((long) (x & 0x1FFFFFFF) << 29) | (y & 0x1FFFFFFF);
+    }
+
+}
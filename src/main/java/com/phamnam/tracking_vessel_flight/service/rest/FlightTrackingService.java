@@ -21,16 +21,23 @@ import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.PrecisionModel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Types;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -52,12 +59,54 @@ public class FlightTrackingService implements IFlightTrackingService {
     @Autowired
     private FlightService flightService;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     // Using SRID 4326 for WGS84 (standard for geographic coordinates)
     private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
 
     // Maximum time a flight can be inactive (for example, 2 hours)
     private static final Duration MAX_FLIGHT_INACTIVITY = Duration.ofHours(2);
 
+    // Last-tracking lookups stay inside the hot (uncompressed) chunks
+    @Value("${tracking.data.hot-storage.ttl-hours:24}")
+    private int hotStorageTtlHours = 24;
+
+    // Multi-row insert used by processNewTrackingDataBatch; location is built
+    // server-side so the batch does not need a JTS geometry binder
+    private static final String BULK_INSERT_TRACKING_SQL = """
+            INSERT INTO flight_tracking (flight_id, hexident, timestamp, update_time, callsign,
+                location, latitude, longitude, altitude, altitude_type, target_altitude,
+                ground_speed, speed_type, vertical_speed, squawk, distance, bearing, unix_time,
+                landing_unix_time, landing_time, emergency, spi, on_ground, gear_down, flaps_down,
+                created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ST_SetSRID(ST_MakePoint(?, ?), 4326), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?,
+                ?, ?, false, false, false, false, false, ?, ?)
+            """;
+
+    // Multi-row insert for the flights a batch has to open; one statement per
+    // chunk instead of a save plus a reload per flight
+    private static final String BULK_INSERT_FLIGHT_SQL = """
+            INSERT INTO flight (aircraft_id, callsign, departure_time, status, flight_phase,
+                origin_airport, destination_airport, emergency_status, on_ground, tracking_confidence,
+                is_cargo_flight, is_charter_flight, is_medical_flight, is_military_flight, is_training_flight,
+                created_at, updated_at)
+            VALUES %s
+            RETURNING id, aircraft_id
+            """;
+
+    private static final String BULK_INSERT_FLIGHT_ROW =
+            "(?, ?, ?, 'IN_AIR', 'UNKNOWN', 'Unknown', 'Unknown', false, false, 1.0, false, false, false, false, false, ?, ?)";
+
+    // Five bind parameters per row keeps a chunk well under the 65535 limit
+    private static final int BULK_INSERT_FLIGHT_CHUNK = 1000;
+
+    private static final int[] BULK_INSERT_TRACKING_TYPES = {
+            Types.BIGINT, Types.VARCHAR, Types.TIMESTAMP, Types.TIMESTAMP, Types.VARCHAR,
+            Types.DOUBLE, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE, Types.REAL, Types.VARCHAR, Types.REAL,
+            Types.REAL, Types.VARCHAR, Types.REAL, Types.INTEGER, Types.REAL, Types.REAL, Types.BIGINT,
+            Types.BIGINT, Types.TIMESTAMP, Types.TIMESTAMP, Types.TIMESTAMP };
+
     public List<FlightTrackingResponse> getAll() {
         List<FlightTracking> trackings = flightTrackingRepository.findAll();
         return trackings.stream()
@@ -225,7 +274,11 @@ public class FlightTrackingService implements IFlightTrackingService {
         Flight flight = flightRepository.findById(flightId)
                 .orElseThrow(() -> new ResourceNotFoundException("Flight", "id", flightId));
 
-        List<FlightTracking> trackings = flightTrackingRepository.findByFlight_id(flightId);
+        LocalDateTime[] window = trackingWindow(flight);
+        List<FlightTracking> trackings = window == null
+                ? flightTrackingRepository.findByFlight_id(flightId)
+                : flightTrackingRepository.findByFlightIdWithinWindow(flightId, flight.getAircraft().getHexident(),
+                        window[0], window[1]);
         return trackings.stream()
                 .map(this::convertToResponse)
                 .collect(Collectors.toList());
@@ -235,10 +288,30 @@ public class FlightTrackingService implements IFlightTrackingService {
         Flight flight = flightRepository.findById(flightId)
                 .orElseThrow(() -> new ResourceNotFoundException("Flight", "id", flightId));
 
-        Page<FlightTracking> trackings = flightTrackingRepository.findByFlight_id(flightId, pageable);
+        LocalDateTime[] window = trackingWindow(flight);
+        Page<FlightTracking> trackings = window == null
+                ? flightTrackingRepository.findByFlight_id(flightId, pageable)
+                : flightTrackingRepository.findByFlightIdWithinWindow(flightId, flight.getAircraft().getHexident(),
+                        window[0], window[1], pageable);
         return trackings.map(this::convertToResponse);
     }
 
+    /**
+     * Time range a flight's trackings can fall in, padded by the inactivity
+     * window; null when the flight has no aircraft or departure time. Bounding
+     * the query by hexident and timestamp keeps compressed chunks outside the
+     * flight from being decompressed.
+     */
+    private LocalDateTime[] trackingWindow(Flight flight) {
+        if (flight.getAircraft() == null || flight.getAircraft().getHexident() == null
+                || flight.getDepartureTime() == null) {
+            return null;
+        }
+        LocalDateTime end = flight.getArrivalTime() != null ? flight.getArrivalTime() : LocalDateTime.now();
+        return new LocalDateTime[] { flight.getDepartureTime().minus(MAX_FLIGHT_INACTIVITY),
+                end.plus(MAX_FLIGHT_INACTIVITY) };
+    }
+
     /**
      * Process a new flight tracking data point and assign it to the appropriate
      * flight.
@@ -277,22 +350,7 @@ public class FlightTrackingService implements IFlightTrackingService {
 
         // If still not found, create new aircraft
         if (aircraft == null) {
-            aircraft = Aircraft.builder()
-                    .hexident(trackingData.getHexident())
-                    .register(trackingData.getRegister())
-                    .isMilitary(trackingData.getIsMilitary())
-                    .country(trackingData.getCountry())
-                    .type(trackingData.getType())
-                    .manufacture(trackingData.getManufacture())
-                    .operator(trackingData.getOperator())
-                    .operatorCode(trackingData.getOperatorCode())
-                    .engines(trackingData.getEngines())
-                    .engineType(trackingData.getEngineType())
-                    .transponderType(trackingData.getTransponderType())
-                    .year(trackingData.getYear())
-                    .source(trackingData.getSource())
-                    .itemType(trackingData.getItemType())
-                    .build();
+            aircraft = buildAircraft(trackingData);
             // check aircraft with hexident form db before save
             if (aircraftRepository.findByHexident(trackingData.getHexident()).orElse(null) == null) {
                 aircraft = aircraftRepository.save(aircraft);
@@ -370,6 +428,233 @@ public class FlightTrackingService implements IFlightTrackingService {
         return convertToResponse(tracking);
     }
 
+    /**
+     * Bulk variant of {@link #processNewTrackingData} for one Kafka poll.
+     * Aircraft and active flights are resolved with one query each, missing
+     * aircraft are saved together, and all tracking rows are written with a
+     * single JDBC batch insert instead of one entity save per record.
+     *
+     * The batch is expected to be deduplicated by hexident already (one
+     * record per aircraft). Records without a hexident cannot be resolved in
+     * bulk and go through {@link #processNewTrackingData} one by one.
+     *
+     * @param batch tracking records from a single poll
+     * @return number of tracking rows written
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int processNewTrackingDataBatch(List<FlightTrackingRequestDTO> batch) {
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        int written = 0;
+        Map<String, FlightTrackingRequestDTO> byHexident = new LinkedHashMap<>();
+        for (FlightTrackingRequestDTO trackingData : batch) {
+            if (trackingData.getHexident() == null || trackingData.getHexident().trim().isEmpty()) {
+                processNewTrackingData(trackingData, null);
+                written++;
+            } else {
+                byHexident.put(trackingData.getHexident(), trackingData);
+            }
+        }
+        if (byHexident.isEmpty()) {
+            return written;
+        }
+
+        // 1. Resolve aircraft identities in one query, save the missing ones together
+        Map<String, Aircraft> aircraftByHexident = new HashMap<>();
+        aircraftRepository.findByHexidentIn(byHexident.keySet())
+                .forEach(aircraft -> aircraftByHexident.putIfAbsent(aircraft.getHexident(), aircraft));
+
+        List<Aircraft> newAircraft = byHexident.values().stream()
+                .filter(trackingData -> !aircraftByHexident.containsKey(trackingData.getHexident()))
+                .map(this::buildAircraft)
+                .toList();
+        if (!newAircraft.isEmpty()) {
+            aircraftRepository.saveAll(newAircraft)
+                    .forEach(aircraft -> aircraftByHexident.put(aircraft.getHexident(), aircraft));
+        }
+
+        // 2. Resolve active flights in one query; create flights only where none is active
+        LocalDateTime timeWindow = LocalDateTime.now().minus(MAX_FLIGHT_INACTIVITY);
+        Set<Long> aircraftIds = aircraftByHexident.values().stream()
+                .map(Aircraft::getId)
+                .collect(Collectors.toSet());
+        Map<Long, List<Flight>> activeFlightsByAircraft = flightRepository
+                .findActiveByAircraftIdIn(aircraftIds, timeWindow).stream()
+                .collect(Collectors.groupingBy(flight -> flight.getAircraft().getId()));
+
+        Map<String, Flight> flightByHexident = new HashMap<>();
+        Map<Long, FlightTrackingRequestDTO> existingFlights = new HashMap<>();
+        List<FlightTrackingRequestDTO> withoutFlight = new ArrayList<>();
+        for (FlightTrackingRequestDTO trackingData : byHexident.values()) {
+            Aircraft aircraft = aircraftByHexident.get(trackingData.getHexident());
+            Flight flight = selectActiveFlight(activeFlightsByAircraft.get(aircraft.getId()),
+                    trackingData.getCallsign());
+            if (flight == null) {
+                withoutFlight.add(trackingData);
+            } else {
+                existingFlights.put(flight.getId(), trackingData);
+                flightByHexident.put(trackingData.getHexident(), flight);
+            }
+        }
+        if (!withoutFlight.isEmpty()) {
+            Map<Long, Flight> newFlights = createNewFlights(withoutFlight, aircraftByHexident);
+            for (FlightTrackingRequestDTO trackingData : withoutFlight) {
+                Aircraft aircraft = aircraftByHexident.get(trackingData.getHexident());
+                flightByHexident.put(trackingData.getHexident(), newFlights.get(aircraft.getId()));
+            }
+        }
+
+        // 3. Apply status changes to existing flights using one "last tracking" lookup
+        if (!existingFlights.isEmpty()) {
+            Map<Long, FlightTracking> lastTrackingByFlight = new HashMap<>();
+            flightTrackingRepository.findLastTrackingByFlightIdIn(existingFlights.keySet(), lastTrackingCutoff())
+                    .forEach(tracking -> lastTrackingByFlight.put(tracking.getFlightId(), tracking));
+
+            List<Flight> changedFlights = new ArrayList<>();
+            for (FlightTrackingRequestDTO trackingData : existingFlights.values()) {
+                Flight flight = flightByHexident.get(trackingData.getHexident());
+                if (applyTrackingToFlight(flight, trackingData, lastTrackingByFlight.get(flight.getId()))) {
+                    changedFlights.add(flight);
+                }
+            }
+            if (!changedFlights.isEmpty()) {
+                flightRepository.saveAll(changedFlights);
+            }
+        }
+
+        // 4. One batched insert for all tracking rows
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(byHexident.size());
+        for (FlightTrackingRequestDTO trackingData : byHexident.values()) {
+            Flight flight = flightByHexident.get(trackingData.getHexident());
+            trackingData.setFlight(flight.getId().toString());
+            rows.add(toTrackingRow(flight.getId(), trackingData, now));
+        }
+        jdbcTemplate.batchUpdate(BULK_INSERT_TRACKING_SQL, rows, BULK_INSERT_TRACKING_TYPES);
+
+        log.debug("Bulk processed {} flight tracking records ({} new aircraft, {} new flights)",
+                rows.size(), newAircraft.size(), withoutFlight.size());
+        return written + rows.size();
+    }
+
+    /**
+     * Open a flight for every record whose aircraft has no active flight,
+     * with the same defaults as {@link #createNewFlight}, using one
+     * multi-row INSERT ... RETURNING per chunk.
+     *
+     * @return the new flights keyed by aircraft id
+     */
+    private Map<Long, Flight> createNewFlights(List<FlightTrackingRequestDTO> trackings,
+            Map<String, Aircraft> aircraftByHexident) {
+        Map<Long, Flight> flightsByAircraft = new HashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int from = 0; from < trackings.size(); from += BULK_INSERT_FLIGHT_CHUNK) {
+            List<FlightTrackingRequestDTO> chunk = trackings.subList(from,
+                    Math.min(from + BULK_INSERT_FLIGHT_CHUNK, trackings.size()));
+
+            Map<Long, Flight> pending = new HashMap<>();
+            List<Object> args = new ArrayList<>(chunk.size() * 5);
+            for (FlightTrackingRequestDTO trackingData : chunk) {
+                Aircraft aircraft = aircraftByHexident.get(trackingData.getHexident());
+                Flight flight = Flight.builder()
+                        .aircraft(aircraft)
+                        .callsign(defaultCallsign(aircraft, trackingData))
+                        .departureTime(trackingData.getUpdateTime() != null ? trackingData.getUpdateTime() : now)
+                        .status(Flight.FlightStatus.IN_AIR)
+                        .originAirport("Unknown")
+                        .destinationAirport("Unknown")
+                        .build();
+                flight.setCreatedAt(now);
+                flight.setUpdatedAt(now);
+                pending.put(aircraft.getId(), flight);
+                args.add(aircraft.getId());
+                args.add(flight.getCallsign());
+                args.add(flight.getDepartureTime());
+                args.add(now);
+                args.add(now);
+            }
+
+            String sql = String.format(BULK_INSERT_FLIGHT_SQL,
+                    String.join(", ", Collections.nCopies(chunk.size(), BULK_INSERT_FLIGHT_ROW)));
+            jdbcTemplate.query(sql, (rs, rowNum) -> {
+                Flight flight = pending.get(rs.getLong("aircraft_id"));
+                flight.setId(rs.getLong("id"));
+                return flight;
+            }, args.toArray()).forEach(flight -> flightsByAircraft.put(flight.getAircraft().getId(), flight));
+        }
+        return flightsByAircraft;
+    }
+
+    private Aircraft buildAircraft(FlightTrackingRequestDTO trackingData) {
+        return Aircraft.builder()
+                .hexident(trackingData.getHexident())
+                .register(trackingData.getRegister())
+                .isMilitary(trackingData.getIsMilitary())
+                .country(trackingData.getCountry())
+                .type(trackingData.getType())
+                .manufacture(trackingData.getManufacture())
+                .operator(trackingData.getOperator())
+                .operatorCode(trackingData.getOperatorCode())
+                .engines(trackingData.getEngines())
+                .engineType(trackingData.getEngineType())
+                .transponderType(trackingData.getTransponderType())
+                .year(trackingData.getYear())
+                .source(trackingData.getSource())
+                .itemType(trackingData.getItemType())
+                .build();
+    }
+
+    /**
+     * Pick the active flight for an aircraft from a bulk lookup result, using
+     * the same preference as {@link #findActiveFlightForAircraft}: a callsign
+     * match first, otherwise the most recent active flight.
+     */
+    private Flight selectActiveFlight(List<Flight> candidates, String callsign) {
+        if (candidates == null || candidates.isEmpty()) {
+            return null;
+        }
+        if (callsign != null && !callsign.isEmpty()) {
+            for (Flight flight : candidates) {
+                if (callsign.equals(flight.getCallsign())) {
+                    return flight;
+                }
+            }
+        }
+        return candidates.get(0);
+    }
+
+    private Object[] toTrackingRow(Long flightId, FlightTrackingRequestDTO trackingData, LocalDateTime now) {
+        LocalDateTime updateTime = trackingData.getUpdateTime() != null ? trackingData.getUpdateTime() : now;
+        Double latitude = trackingData.getLatitude() != null ? trackingData.getLatitude().doubleValue() : null;
+        Double longitude = trackingData.getLongitude() != null ? trackingData.getLongitude().doubleValue() : null;
+        return new Object[] {
+                flightId,
+                trackingData.getHexident(),
+                updateTime,
+                updateTime,
+                trackingData.getCallsign(),
+                longitude,
+                latitude,
+                latitude,
+                longitude,
+                trackingData.getAltitude(),
+                trackingData.getAltitudeType(),
+                trackingData.getTargetAlt(),
+                trackingData.getSpeed(),
+                trackingData.getSpeedType(),
+                trackingData.getVerticalSpeed(),
+                trackingData.getSquawk(),
+                trackingData.getDistance(),
+                trackingData.getBearing(),
+                trackingData.getUnixTime(),
+                trackingData.getLandingUnixTimes(),
+                trackingData.getLandingTimes(),
+                now,
+                now };
+    }
+
     /**
      * Find an active flight for the given aircraft.
      * A flight is considered active if:
@@ -409,44 +694,6 @@ public class FlightTrackingService implements IFlightTrackingService {
         return null;
     }
 
-    // Thêm vào implementation class của bạn
-    @Scheduled(cron = "0 0 2 * * ?") // Chạy vào 2h sáng mỗi ngày
-    public void archiveOldData() {
-        log.info("Starting archival of old flight tracking data");
-
-        LocalDateTime cutoffDate = LocalDateTime.now().minusDays(30);
-
-        // 1. Truy vấn dữ liệu cũ
-        List<FlightTracking> oldData = flightTrackingRepository
-                .findByUpdateTimeBefore(cutoffDate);
-
-        if (oldData.isEmpty()) {
-            log.info("No old data to archive");
-            return;
-        }
-
-        log.info("Found {} records to archive", oldData.size());
-
-        // 2. Lưu vào cold storage (có thể là bảng riêng hoặc hệ thống lưu trữ khác)
-        try {
-            archiveToDatabase(oldData);
-            // hoặc
-            // archiveToFileSystem(oldData);
-
-            // 3. Xóa dữ liệu đã được lưu trữ khỏi warm storage
-            flightTrackingRepository.deleteByUpdateTimeBefore(cutoffDate);
-
-            log.info("Successfully archived and cleaned up {} old records", oldData.size());
-        } catch (Exception e) {
-            log.error("Error archiving old data: {}", e.getMessage(), e);
-        }
-    }
-
-    private void archiveToDatabase(List<FlightTracking> oldData) {
-        // Triển khai lưu trữ vào cold storage database
-        // Ví dụ: coldStorageRepository.saveAll(oldData);
-    }
-
     /**
      * Update flight status based on tracking data
      * 
@@ -456,36 +703,52 @@ public class FlightTrackingService implements IFlightTrackingService {
      * @return the updated Flight
      */
     private Flight updateFlightStatus(Flight flight, FlightTrackingRequestDTO trackingData, Long userId) {
-        boolean updated = false;
+        FlightTracking prevTracking = null;
 
         try {
             // Get the latest tracking for this flight to compare with new data
-            Optional<FlightTracking> latestTracking = flightTrackingRepository
-                    .findLastTrackingByFlightId(flight.getId());
-
-            // If there's previous tracking data, we can make some decisions based on
-            // changes
-            if (latestTracking.isPresent()) {
-                FlightTracking prevTracking = latestTracking.get();
-
-                // Example: If altitude has significantly decreased and is below threshold,
-                // we might assume the flight is landing
-                if (trackingData.getAltitude() != null && prevTracking.getAltitude() != null &&
-                        prevTracking.getAltitude() - trackingData.getAltitude() > 5000 &&
-                        trackingData.getAltitude() < 1000) {
-
-                    // Update flight status to landing or landed
-                    flight.setStatus(Flight.FlightStatus.APPROACHING);
-                    updated = true;
-                }
-
-                // More conditions can be added based on business logic
-            }
+            prevTracking = flightTrackingRepository.findLastTrackingByFlightId(flight.getId(), lastTrackingCutoff())
+                    .orElse(null);
         } catch (Exception e) {
             log.warn("Error getting latest tracking for flight {}: {}", flight.getId(), e.getMessage());
             // Continue without comparing with previous tracking data
         }
 
+        // If any updates were made, save the flight
+        if (applyTrackingToFlight(flight, trackingData, prevTracking)) {
+            flight = flightRepository.save(flight);
+        }
+
+        return flight;
+    }
+
+    /**
+     * Apply status and callsign changes implied by new tracking data.
+     *
+     * @param prevTracking the previous tracking point of the flight, or null
+     * @return true if the flight was modified and needs saving
+     */
+    private boolean applyTrackingToFlight(Flight flight, FlightTrackingRequestDTO trackingData,
+            FlightTracking prevTracking) {
+        boolean updated = false;
+
+        // If there's previous tracking data, we can make some decisions based on
+        // changes
+        if (prevTracking != null) {
+            // Example: If altitude has significantly decreased and is below threshold,
+            // we might assume the flight is landing
+            if (trackingData.getAltitude() != null && prevTracking.getAltitude() != null &&
+                    prevTracking.getAltitude() - trackingData.getAltitude() > 5000 &&
+                    trackingData.getAltitude() < 1000) {
+
+                // Update flight status to landing or landed
+                flight.setStatus(Flight.FlightStatus.APPROACHING);
+                updated = true;
+            }
+
+            // More conditions can be added based on business logic
+        }
+
         // If callsign is provided in tracking data but flight has no callsign, update
         // it
         if (trackingData.getCallsign() != null && !trackingData.getCallsign().isEmpty() &&
@@ -496,12 +759,7 @@ public class FlightTrackingService implements IFlightTrackingService {
             updated = true;
         }
 
-        // If any updates were made, save the flight
-        if (updated) {
-            flight = flightRepository.save(flight);
-        }
-
-        return flight;
+        return updated;
     }
 
     /**
@@ -513,18 +771,10 @@ public class FlightTrackingService implements IFlightTrackingService {
      * @return the newly created Flight
      */
     private Flight createNewFlight(Aircraft aircraft, FlightTrackingRequestDTO trackingData, Long userId) {
-        // Generate a callsign if not provided in tracking data
-        String callsign = trackingData.getCallsign();
-        if (callsign == null || callsign.isEmpty()) {
-            // Generate a default callsign based on aircraft registration or other data
-            String operatorCode = aircraft.getOperatorCode() != null ? aircraft.getOperatorCode() : "UNK";
-            callsign = operatorCode + "-" + System.currentTimeMillis() % 10000; // Simple unique ID
-        }
-
         // Create a flight request
         FlightRequest flightRequest = FlightRequest.builder()
                 .aircraftId(aircraft.getId())
-                .callsign(callsign)
+                .callsign(defaultCallsign(aircraft, trackingData))
                 .departureTime(
                         trackingData.getUpdateTime() != null ? trackingData.getUpdateTime() : LocalDateTime.now())
                 .status("In Air")
@@ -543,6 +793,27 @@ public class FlightTrackingService implements IFlightTrackingService {
         return savedFlight;
     }
 
+    /**
+     * Callsign from the tracking data, or a generated one if it has none
+     */
+    private String defaultCallsign(Aircraft aircraft, FlightTrackingRequestDTO trackingData) {
+        String callsign = trackingData.getCallsign();
+        if (callsign == null || callsign.isEmpty()) {
+            // Generate a default callsign based on aircraft registration or other data
+            String operatorCode = aircraft.getOperatorCode() != null ? aircraft.getOperatorCode() : "UNK";
+            callsign = operatorCode + "-" + System.currentTimeMillis() % 10000; // Simple unique ID
+        }
+        return callsign;
+    }
+
+    /**
+     * Oldest timestamp a flight's previous tracking is looked up from; an
+     * active flight has reported well within the hot-storage window
+     */
+    private LocalDateTime lastTrackingCutoff() {
+        return LocalDateTime.now().minusHours(hotStorageTtlHours);
+    }
+
     /**
      * Convert FlightTracking entity to FlightTrackingResponse DTO
      */
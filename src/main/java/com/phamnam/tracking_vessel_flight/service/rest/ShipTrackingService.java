@@ -17,12 +17,19 @@ import com.phamnam.tracking_vessel_flight.service.rest.interfaces.IShipTrackingS
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Types;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -47,6 +54,38 @@ public class ShipTrackingService implements IShipTrackingService {
     // Thời gian tối đa giữa 2 tracking để coi là cùng 1 chuyến (ví dụ: 2 tiếng)
     private static final Duration MAX_INACTIVITY = Duration.ofHours(2);
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Multi-row insert for the voyages a batch has to open, with the same
+    // defaults createNewVoyage gets through the entity
+    private static final String BULK_INSERT_VOYAGE_SQL = """
+            INSERT INTO voyage (ship_id, voyage_number, departure_time, departure_port, arrival_port,
+                status, voyage_phase, dangerous_cargo, emergency_status, pilot_required, tracking_confidence,
+                is_maiden_voyage, is_ballast_voyage, is_emergency_voyage, is_research_voyage, is_military_voyage,
+                created_at, updated_at)
+            VALUES %s
+            RETURNING id, ship_id
+            """;
+
+    private static final String BULK_INSERT_VOYAGE_ROW =
+            "(?, ?, ?, 'Unknown', 'Unknown', 'PLANNED', 'UNKNOWN', false, false, false, 1.0, false, false, false, false, false, ?, ?)";
+
+    // Five bind parameters per row keeps a chunk well under the 65535 limit
+    private static final int BULK_INSERT_VOYAGE_CHUNK = 1000;
+
+    private static final String BULK_INSERT_TRACKING_SQL = """
+            INSERT INTO ship_tracking (voyage_id, mmsi, timestamp, latitude, longitude, speed_over_ground,
+                course_over_ground, draught, special_maneuver, position_accuracy, timestamp_accuracy,
+                data_terminal_ready, security_alert, piracy_area, dangerous_cargo, fishing_zone,
+                marine_protected_area, update_time, created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, false, false, true, true, false, false, false, false, false, ?, ?, ?)
+            """;
+
+    private static final int[] BULK_INSERT_TRACKING_TYPES = {
+            Types.BIGINT, Types.VARCHAR, Types.TIMESTAMP, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE,
+            Types.DOUBLE, Types.DOUBLE, Types.TIMESTAMP, Types.TIMESTAMP, Types.TIMESTAMP };
+
     public List<ShipTrackingResponse> getAll() {
         List<ShipTracking> trackings = shipTrackingRepository.findAll();
         return trackings.stream()
@@ -130,8 +169,13 @@ public class ShipTrackingService implements IShipTrackingService {
         Voyage voyage = voyageRepository.findById(voyageId)
                 .orElseThrow(() -> new ResourceNotFoundException("Voyage", "id", voyageId));
 
-        // Use the repository method instead of stream filtering
-        List<ShipTracking> trackings = shipTrackingRepository.findByVoyageIdOrderByTimestampDesc(voyageId);
+        // Bounded by mmsi and departure time when known, so compressed chunks
+        // before the voyage are not decompressed
+        String mmsi = voyage.getShip() != null ? voyage.getShip().getMmsi() : null;
+        List<ShipTracking> trackings = mmsi != null && voyage.getDepartureTime() != null
+                ? shipTrackingRepository.findByVoyageIdSince(voyageId, mmsi,
+                        voyage.getDepartureTime().minus(MAX_INACTIVITY))
+                : shipTrackingRepository.findByVoyageIdOrderByTimestampDesc(voyageId);
         return trackings.stream()
                 .map(this::convertToResponse)
                 .collect(Collectors.toList());
@@ -164,7 +208,12 @@ public class ShipTrackingService implements IShipTrackingService {
         }
 
         // Find the latest tracking data for this ship using the repository method
-        Optional<ShipTracking> latestTracking = shipTrackingRepository.findLastTrackingByShipId(shipId);
+        // Bounded to MAX_INACTIVITY before the new point: anything older starts a
+        // new voyage anyway, and the lookup stays out of compressed chunks
+        LocalDateTime trackingTime = trackingData.getTimestamp() != null ? trackingData.getTimestamp()
+                : LocalDateTime.now();
+        Optional<ShipTracking> latestTracking = shipTrackingRepository.findLastTrackingByShipId(shipId,
+                ship.getMmsi(), trackingTime.minus(MAX_INACTIVITY));
 
         // Determine if we need a new voyage
         boolean needNewVoyage = determineIfNewVoyageNeeded(latestTracking, trackingData);
@@ -198,6 +247,106 @@ public class ShipTrackingService implements IShipTrackingService {
         return convertToResponse(savedTracking);
     }
 
+    /**
+     * Bulk variant of {@link #processNewTrackingData} for one poll of the
+     * batch listener, one record per ship. The previous position and the
+     * latest voyage of every ship are read with one query each, the voyages
+     * that have to be opened are inserted with one multi-row statement, and
+     * all tracking rows go in with a single JDBC batch.
+     *
+     * @param trackingByShipId newest tracking record per ship id
+     * @return number of tracking rows written
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int processNewTrackingDataBatch(Map<Long, ShipTrackingRequest> trackingByShipId) {
+        if (trackingByShipId == null || trackingByShipId.isEmpty()) {
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime since = now;
+        List<String> mmsis = new ArrayList<>(trackingByShipId.size());
+        for (ShipTrackingRequest trackingData : trackingByShipId.values()) {
+            mmsis.add(trackingData.getMmsi());
+            if (trackingData.getTimestamp() != null && trackingData.getTimestamp().isBefore(since)) {
+                since = trackingData.getTimestamp();
+            }
+        }
+
+        // 1. Previous position per ship, bounded like the single-record lookup
+        Map<String, ShipTracking> lastTrackingByMmsi = new HashMap<>();
+        shipTrackingRepository.findLastTrackingByMmsiIn(mmsis, since.minus(MAX_INACTIVITY))
+                .forEach(tracking -> lastTrackingByMmsi.put(tracking.getMmsi(), tracking));
+
+        // 2. Ships that keep their voyage reuse the latest one; the rest get a new voyage
+        List<Long> continuing = new ArrayList<>();
+        List<Long> needVoyage = new ArrayList<>();
+        trackingByShipId.forEach((shipId, trackingData) -> {
+            Optional<ShipTracking> latestTracking = Optional.ofNullable(lastTrackingByMmsi.get(trackingData.getMmsi()));
+            if (determineIfNewVoyageNeeded(latestTracking, trackingData)) {
+                needVoyage.add(shipId);
+            } else {
+                continuing.add(shipId);
+            }
+        });
+
+        Map<Long, Long> voyageIdByShip = new HashMap<>();
+        if (!continuing.isEmpty()) {
+            voyageRepository.findLatestVoyageByShipIdIn(continuing)
+                    .forEach(voyage -> voyageIdByShip.put(voyage.getShip().getId(), voyage.getId()));
+            continuing.stream().filter(shipId -> !voyageIdByShip.containsKey(shipId)).forEach(needVoyage::add);
+        }
+        if (!needVoyage.isEmpty()) {
+            voyageIdByShip.putAll(createNewVoyages(needVoyage, trackingByShipId, now));
+        }
+
+        // 3. One batched insert for all tracking rows
+        List<Object[]> rows = new ArrayList<>(trackingByShipId.size());
+        trackingByShipId.forEach((shipId, trackingData) -> rows.add(new Object[] {
+                voyageIdByShip.get(shipId),
+                trackingData.getMmsi(),
+                trackingData.getTimestamp(),
+                trackingData.getLatitude(),
+                trackingData.getLongitude(),
+                trackingData.getSpeed(),
+                trackingData.getCourse(),
+                trackingData.getDraught(),
+                now,
+                now,
+                now }));
+        jdbcTemplate.batchUpdate(BULK_INSERT_TRACKING_SQL, rows, BULK_INSERT_TRACKING_TYPES);
+
+        return rows.size();
+    }
+
+    /**
+     * Open a voyage for each ship with one multi-row INSERT ... RETURNING per
+     * chunk instead of a save plus a reload per voyage
+     *
+     * @return the new voyage ids keyed by ship id
+     */
+    private Map<Long, Long> createNewVoyages(List<Long> shipIds, Map<Long, ShipTrackingRequest> trackingByShipId,
+            LocalDateTime now) {
+        Map<Long, Long> voyageIdByShip = new HashMap<>();
+        String voyageNumber = "AUTO-" + System.currentTimeMillis();
+        for (int from = 0; from < shipIds.size(); from += BULK_INSERT_VOYAGE_CHUNK) {
+            List<Long> chunk = shipIds.subList(from, Math.min(from + BULK_INSERT_VOYAGE_CHUNK, shipIds.size()));
+            List<Object> args = new ArrayList<>(chunk.size() * 5);
+            for (Long shipId : chunk) {
+                args.add(shipId);
+                args.add(voyageNumber);
+                args.add(trackingByShipId.get(shipId).getTimestamp());
+                args.add(now);
+                args.add(now);
+            }
+            String sql = String.format(BULK_INSERT_VOYAGE_SQL,
+                    String.join(", ", Collections.nCopies(chunk.size(), BULK_INSERT_VOYAGE_ROW)));
+            jdbcTemplate.query(sql, (RowCallbackHandler) rs -> voyageIdByShip.put(rs.getLong("ship_id"),
+                    rs.getLong("id")), args.toArray());
+        }
+        return voyageIdByShip;
+    }
+
     /**
      * Determine if a new voyage is needed based on the latest tracking and new
      * tracking data.
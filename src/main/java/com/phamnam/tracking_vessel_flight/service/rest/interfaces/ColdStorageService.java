@@ -5,6 +5,7 @@ import com.phamnam.tracking_vessel_flight.models.ShipTracking;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 public interface ColdStorageService {
 
@@ -33,6 +34,17 @@ public interface ColdStorageService {
      */
     void performDataArchiving();
 
+    /**
+     * Archive every whole day before cutoff; returns per-type row, day and
+     * byte counts
+     */
+    Map<String, Object> archiveBefore(LocalDateTime cutoff);
+
+    /**
+     * Archive file, row and pruning statistics
+     */
+    Map<String, Object> getArchiveStatistics();
+
     /**
      * Move data from hot storage to warm storage based on TTL
      */
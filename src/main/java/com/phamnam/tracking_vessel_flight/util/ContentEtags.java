@@ -0,0 +1,26 @@
+package com.phamnam.tracking_vessel_flight.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Strong ETags derived from response content, so a re-rendered but unchanged
+ * tile still matches the client's If-None-Match
+ */
+public final class ContentEtags {
+
+    private ContentEtags() {
+    }
+
+    public static String of(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM ships SHA-256; keep a weak fallback anyway
+            return "\"" + Integer.toHexString(Arrays.hashCode(body)) + "-" + body.length + "\"";
+        }
+    }
+}
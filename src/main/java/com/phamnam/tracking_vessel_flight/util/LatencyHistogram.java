@@ -0,0 +1,93 @@
+package com.phamnam.tracking_vessel_flight.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed millisecond buckets.
+ *
+ * Cheap enough to record on every Kafka send; percentiles are reported as the
+ * upper bound of the bucket that contains them. The default buckets suit
+ * request latencies; end-to-end ages (seconds to minutes) pass their own.
+ */
+public class LatencyHistogram {
+
+    private static final long[] DEFAULT_BUCKET_UPPER_BOUNDS_MS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000,
+            5000 };
+
+    private final long[] bucketUpperBoundsMs;
+    private final AtomicLongArray buckets;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram() {
+        this(DEFAULT_BUCKET_UPPER_BOUNDS_MS);
+    }
+
+    /**
+     * @param bucketUpperBoundsMs ascending bucket upper bounds in milliseconds
+     */
+    public LatencyHistogram(long... bucketUpperBoundsMs) {
+        this.bucketUpperBoundsMs = bucketUpperBoundsMs.clone();
+        this.buckets = new AtomicLongArray(bucketUpperBoundsMs.length + 1);
+    }
+
+    public void record(long elapsedNanos) {
+        long elapsedMs = elapsedNanos / 1_000_000;
+        int bucket = 0;
+        while (bucket < bucketUpperBoundsMs.length && elapsedMs >= bucketUpperBoundsMs[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(elapsedNanos);
+        maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Upper bound (ms) of the bucket holding the given percentile, -1 when the
+     * percentile falls into the overflow bucket
+     */
+    public long percentileMs(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < bucketUpperBoundsMs.length; i++) {
+            seen += buckets.get(i);
+            if (seen >= threshold) {
+                return bucketUpperBoundsMs[i];
+            }
+        }
+        return -1;
+    }
+
+    public Map<String, Object> toMap() {
+        long total = count.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", total);
+        stats.put("avgMs", total > 0 ? totalNanos.get() / 1_000_000.0 / total : 0.0);
+        stats.put("maxMs", maxNanos.get() / 1_000_000.0);
+        stats.put("p50Ms", percentileMs(50));
+        stats.put("p95Ms", percentileMs(95));
+        stats.put("p99Ms", percentileMs(99));
+
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < bucketUpperBoundsMs.length; i++) {
+            histogram.put("<" + bucketUpperBoundsMs[i] + "ms", buckets.get(i));
+        }
+        histogram.put(">=" + bucketUpperBoundsMs[bucketUpperBoundsMs.length - 1] + "ms",
+                buckets.get(bucketUpperBoundsMs.length));
+        stats.put("histogram", histogram);
+        return stats;
+    }
+}
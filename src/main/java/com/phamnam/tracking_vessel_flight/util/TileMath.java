@@ -0,0 +1,53 @@
+package com.phamnam.tracking_vessel_flight.util;
+
+/**
+ * Web Mercator (slippy map) tile arithmetic: z/x/y tiles with the origin at
+ * the north-west corner, as used by Leaflet / OpenLayers / MapLibre.
+ */
+public final class TileMath {
+
+    public static final double MAX_LATITUDE = 85.05112878;
+
+    private TileMath() {
+    }
+
+    public static boolean isValidTile(int z, int x, int y, int maxZoom) {
+        if (z < 0 || z > maxZoom) {
+            return false;
+        }
+        long tiles = 1L << z;
+        return x >= 0 && x < tiles && y >= 0 && y < tiles;
+    }
+
+    /**
+     * Horizontal position in tile units at the zoom (tile x = floor of result)
+     */
+    public static double worldX(double longitude, int z) {
+        return (longitude + 180.0) / 360.0 * (1L << z);
+    }
+
+    /**
+     * Vertical position in tile units at the zoom, growing southwards
+     */
+    public static double worldY(double latitude, int z) {
+        double clamped = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+        double radians = Math.toRadians(clamped);
+        double mercator = Math.log(Math.tan(radians) + 1.0 / Math.cos(radians));
+        return (1.0 - mercator / Math.PI) / 2.0 * (1L << z);
+    }
+
+    /**
+     * Longitude of a (possibly fractional) tile x position
+     */
+    public static double tileWestLongitude(double x, int z) {
+        return x / (1L << z) * 360.0 - 180.0;
+    }
+
+    /**
+     * Latitude of a (possibly fractional) tile y position
+     */
+    public static double tileNorthLatitude(double y, int z) {
+        double n = Math.PI * (1.0 - 2.0 * y / (1L << z));
+        return Math.toDegrees(Math.atan(Math.sinh(n)));
+    }
+}
@@ -199,12 +199,13 @@ BEGIN
                WHERE hypertable_name = 'flight_tracking') THEN
         
         -- Compression after 1 day (warm storage)
-        PERFORM add_compression_policy('flight_tracking', INTERVAL '1 day');
+        PERFORM add_compression_policy('flight_tracking', INTERVAL '1 day', if_not_exists => true);
         
-        -- Retention policy - delete data older than 30 days
-        PERFORM add_retention_policy('flight_tracking', INTERVAL '30 days');
+        -- Retention policy - backstop behind the 30-day cold-storage archive
+        -- (re-applied from tracking.data.warm-storage.ttl-days by RawDataRetentionService)
+        PERFORM add_retention_policy('flight_tracking', INTERVAL '33 days', if_not_exists => true);
         
-        RAISE NOTICE 'Flight tracking policies applied: compress after 1 day, delete after 30 days';
+        RAISE NOTICE 'Flight tracking policies applied: compress after 1 day, delete after 33 days';
     END IF;
 EXCEPTION
     WHEN OTHERS THEN
@@ -218,12 +219,13 @@ BEGIN
                WHERE hypertable_name = 'ship_tracking') THEN
         
         -- Compression after 1 day (warm storage)
-        PERFORM add_compression_policy('ship_tracking', INTERVAL '1 day');
+        PERFORM add_compression_policy('ship_tracking', INTERVAL '1 day', if_not_exists => true);
         
-        -- Retention policy - delete data older than 30 days
-        PERFORM add_retention_policy('ship_tracking', INTERVAL '30 days');
+        -- Retention policy - backstop behind the 30-day cold-storage archive
+        -- (re-applied from tracking.data.warm-storage.ttl-days by RawDataRetentionService)
+        PERFORM add_retention_policy('ship_tracking', INTERVAL '33 days', if_not_exists => true);
         
-        RAISE NOTICE 'Ship tracking policies applied: compress after 1 day, delete after 30 days';
+        RAISE NOTICE 'Ship tracking policies applied: compress after 1 day, delete after 33 days';
     END IF;
 EXCEPTION
     WHEN OTHERS THEN
@@ -237,10 +239,10 @@ BEGIN
                WHERE hypertable_name = 'tracking_points') THEN
         
         -- Compression after 7 days (warm storage)
-        PERFORM add_compression_policy('tracking_points', INTERVAL '7 days');
+        PERFORM add_compression_policy('tracking_points', INTERVAL '7 days', if_not_exists => true);
         
         -- Retention policy - delete data older than 90 days
-        PERFORM add_retention_policy('tracking_points', INTERVAL '90 days');
+        PERFORM add_retention_policy('tracking_points', INTERVAL '90 days', if_not_exists => true);
         
         RAISE NOTICE 'Tracking points policies applied: compress after 7 days, delete after 90 days';
     END IF;
@@ -256,10 +258,10 @@ BEGIN
                WHERE hypertable_name = 'alert_event') THEN
         
         -- Compression after 30 days
-        PERFORM add_compression_policy('alert_event', INTERVAL '30 days');
+        PERFORM add_compression_policy('alert_event', INTERVAL '30 days', if_not_exists => true);
         
         -- Retention policy - delete data older than 1 year
-        PERFORM add_retention_policy('alert_event', INTERVAL '1 year');
+        PERFORM add_retention_policy('alert_event', INTERVAL '1 year', if_not_exists => true);
         
         RAISE NOTICE 'Alert events policies applied: compress after 30 days, delete after 1 year';
     END IF;
@@ -275,10 +277,10 @@ BEGIN
                WHERE hypertable_name = 'data_source_status') THEN
         
         -- Compression after 1 day
-        PERFORM add_compression_policy('data_source_status', INTERVAL '1 day');
+        PERFORM add_compression_policy('data_source_status', INTERVAL '1 day', if_not_exists => true);
         
         -- Retention policy - delete data older than 30 days
-        PERFORM add_retention_policy('data_source_status', INTERVAL '30 days');
+        PERFORM add_retention_policy('data_source_status', INTERVAL '30 days', if_not_exists => true);
         
         RAISE NOTICE 'Data source status policies applied: compress after 1 day, delete after 30 days';
     END IF;
@@ -504,7 +506,7 @@ BEGIN
     RAISE NOTICE '  - system_health';
     RAISE NOTICE '';
     RAISE NOTICE 'Retention policies applied:';
-    RAISE NOTICE '  - Flight/Ship tracking: 30 days';
+    RAISE NOTICE '  - Flight/Ship tracking: 33 days (archived to cold storage after 30)';
     RAISE NOTICE '  - Tracking points: 90 days';
     RAISE NOTICE '  - Alert events: 1 year';
     RAISE NOTICE '  - Source status: 30 days';
@@ -0,0 +1,227 @@
+-- ============================================================================
+-- Dashboard Continuous Aggregates
+-- ============================================================================
+-- Pre-aggregated activity and density buckets read by AnalyticsDashboardService
+-- instead of scanning flight_tracking / ship_tracking on every broadcast.
+-- Execution order: 05 (after hypertables exist)
+--
+-- COUNT(DISTINCT) is not allowed inside a continuous aggregate, so activity
+-- views keep one row per entity per bucket; distinct entities over any window
+-- are then a COUNT(DISTINCT) over far fewer rows. All views use real-time
+-- aggregation (materialized_only = false) so the newest, not yet refreshed
+-- bucket is still included.
+
+-- ============================================================================
+-- HELPER FUNCTIONS
+-- ============================================================================
+
+-- Create a continuous aggregate WITH NO DATA (allowed inside a transaction)
+-- and attach its refresh policy; existing views are left untouched
+CREATE OR REPLACE FUNCTION safe_create_dashboard_aggregate(
+    view_name TEXT,
+    source_table TEXT,
+    aggregate_query TEXT,
+    refresh_start_offset INTERVAL,
+    refresh_end_offset INTERVAL,
+    refresh_schedule INTERVAL,
+    retention INTERVAL DEFAULT NULL
+) RETURNS VOID AS $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM timescaledb_information.hypertables
+                   WHERE hypertable_name = $2) THEN
+        RAISE NOTICE 'Source table % is not a hypertable, skipping %', $2, $1;
+        RETURN;
+    END IF;
+
+    IF NOT EXISTS (SELECT 1 FROM timescaledb_information.continuous_aggregates
+                   WHERE timescaledb_information.continuous_aggregates.view_name = $1) THEN
+        EXECUTE format('CREATE MATERIALIZED VIEW %I
+                        WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS %s
+                        WITH NO DATA', $1, $3);
+        RAISE NOTICE 'Created continuous aggregate: %', $1;
+    ELSE
+        RAISE NOTICE 'Continuous aggregate % already exists', $1;
+    END IF;
+
+    PERFORM add_continuous_aggregate_policy($1,
+        start_offset => $4,
+        end_offset => $5,
+        schedule_interval => $6,
+        if_not_exists => true);
+
+    IF $7 IS NOT NULL THEN
+        PERFORM add_retention_policy($1, $7, if_not_exists => true);
+    END IF;
+EXCEPTION
+    WHEN OTHERS THEN
+        RAISE WARNING 'Failed to create continuous aggregate %: %', $1, SQLERRM;
+END;
+$$ LANGUAGE plpgsql;
+
+-- ============================================================================
+-- PER-MINUTE ACTIVITY (active entities, records per hour, regions)
+-- ============================================================================
+
+SELECT safe_create_dashboard_aggregate(
+    'flight_activity_1m',
+    'flight_tracking',
+    'SELECT
+        time_bucket(INTERVAL ''1 minute'', timestamp) AS bucket,
+        hexident,
+        COUNT(*) AS records,
+        LAST(latitude, timestamp) AS last_latitude,
+        LAST(longitude, timestamp) AS last_longitude
+    FROM flight_tracking
+    GROUP BY time_bucket(INTERVAL ''1 minute'', timestamp), hexident',
+    INTERVAL '2 hours',
+    INTERVAL '1 minute',
+    INTERVAL '1 minute',
+    INTERVAL '3 days'
+);
+
+SELECT safe_create_dashboard_aggregate(
+    'ship_activity_1m',
+    'ship_tracking',
+    'SELECT
+        time_bucket(INTERVAL ''1 minute'', timestamp) AS bucket,
+        mmsi,
+        COUNT(*) AS records,
+        LAST(latitude, timestamp) AS last_latitude,
+        LAST(longitude, timestamp) AS last_longitude
+    FROM ship_tracking
+    GROUP BY time_bucket(INTERVAL ''1 minute'', timestamp), mmsi',
+    INTERVAL '2 hours',
+    INTERVAL '1 minute',
+    INTERVAL '1 minute',
+    INTERVAL '3 days'
+);
+
+-- ============================================================================
+-- PER-HOUR ACTIVITY (24h counts, daily trends, peak hours)
+-- ============================================================================
+
+SELECT safe_create_dashboard_aggregate(
+    'flight_activity_1h',
+    'flight_tracking',
+    'SELECT
+        time_bucket(INTERVAL ''1 hour'', timestamp) AS bucket,
+        hexident,
+        COUNT(*) AS records
+    FROM flight_tracking
+    GROUP BY time_bucket(INTERVAL ''1 hour'', timestamp), hexident',
+    INTERVAL '3 days',
+    INTERVAL '1 hour',
+    INTERVAL '30 minutes',
+    INTERVAL '1 year'
+);
+
+SELECT safe_create_dashboard_aggregate(
+    'ship_activity_1h',
+    'ship_tracking',
+    'SELECT
+        time_bucket(INTERVAL ''1 hour'', timestamp) AS bucket,
+        mmsi,
+        COUNT(*) AS records
+    FROM ship_tracking
+    GROUP BY time_bucket(INTERVAL ''1 hour'', timestamp), mmsi',
+    INTERVAL '3 days',
+    INTERVAL '1 hour',
+    INTERVAL '30 minutes',
+    INTERVAL '1 year'
+);
+
+-- ============================================================================
+-- PER-MINUTE GRID DENSITY (0.1 degree cells, traffic hotspots)
+-- ============================================================================
+
+SELECT safe_create_dashboard_aggregate(
+    'flight_grid_density_1m',
+    'flight_tracking',
+    'SELECT
+        time_bucket(INTERVAL ''1 minute'', timestamp) AS bucket,
+        floor(latitude * 10) / 10 AS lat_grid,
+        floor(longitude * 10) / 10 AS lon_grid,
+        COUNT(*) AS records
+    FROM flight_tracking
+    WHERE latitude IS NOT NULL AND longitude IS NOT NULL
+    GROUP BY time_bucket(INTERVAL ''1 minute'', timestamp),
+        floor(latitude * 10) / 10, floor(longitude * 10) / 10',
+    INTERVAL '2 hours',
+    INTERVAL '1 minute',
+    INTERVAL '1 minute',
+    INTERVAL '3 days'
+);
+
+SELECT safe_create_dashboard_aggregate(
+    'ship_grid_density_1m',
+    'ship_tracking',
+    'SELECT
+        time_bucket(INTERVAL ''1 minute'', timestamp) AS bucket,
+        floor(latitude * 10) / 10 AS lat_grid,
+        floor(longitude * 10) / 10 AS lon_grid,
+        COUNT(*) AS records
+    FROM ship_tracking
+    WHERE latitude IS NOT NULL AND longitude IS NOT NULL
+    GROUP BY time_bucket(INTERVAL ''1 minute'', timestamp),
+        floor(latitude * 10) / 10, floor(longitude * 10) / 10',
+    INTERVAL '2 hours',
+    INTERVAL '1 minute',
+    INTERVAL '1 minute',
+    INTERVAL '3 days'
+);
+
+-- ============================================================================
+-- PER-HOUR GRID DENSITY (historical heatmap tiles)
+-- ============================================================================
+
+SELECT safe_create_dashboard_aggregate(
+    'flight_grid_density_1h',
+    'flight_tracking',
+    'SELECT
+        time_bucket(INTERVAL ''1 hour'', timestamp) AS bucket,
+        floor(latitude * 10) / 10 AS lat_grid,
+        floor(longitude * 10) / 10 AS lon_grid,
+        COUNT(*) AS records
+    FROM flight_tracking
+    WHERE latitude IS NOT NULL AND longitude IS NOT NULL
+    GROUP BY time_bucket(INTERVAL ''1 hour'', timestamp),
+        floor(latitude * 10) / 10, floor(longitude * 10) / 10',
+    INTERVAL '3 days',
+    INTERVAL '1 hour',
+    INTERVAL '30 minutes',
+    INTERVAL '90 days'
+);
+
+SELECT safe_create_dashboard_aggregate(
+    'ship_grid_density_1h',
+    'ship_tracking',
+    'SELECT
+        time_bucket(INTERVAL ''1 hour'', timestamp) AS bucket,
+        floor(latitude * 10) / 10 AS lat_grid,
+        floor(longitude * 10) / 10 AS lon_grid,
+        COUNT(*) AS records
+    FROM ship_tracking
+    WHERE latitude IS NOT NULL AND longitude IS NOT NULL
+    GROUP BY time_bucket(INTERVAL ''1 hour'', timestamp),
+        floor(latitude * 10) / 10, floor(longitude * 10) / 10',
+    INTERVAL '3 days',
+    INTERVAL '1 hour',
+    INTERVAL '30 minutes',
+    INTERVAL '90 days'
+);
+
+-- ============================================================================
+-- COMPLETION MESSAGE
+-- ============================================================================
+
+DO $$
+BEGIN
+    RAISE NOTICE '=================================================================';
+    RAISE NOTICE 'Dashboard Continuous Aggregates Setup Complete';
+    RAISE NOTICE '=================================================================';
+    RAISE NOTICE '  - flight_activity_1m / ship_activity_1m (refresh 1 min, keep 3 days)';
+    RAISE NOTICE '  - flight_activity_1h / ship_activity_1h (refresh 30 min, keep 1 year)';
+    RAISE NOTICE '  - flight_grid_density_1m / ship_grid_density_1m (refresh 1 min, keep 3 days)';
+    RAISE NOTICE '  - flight_grid_density_1h / ship_grid_density_1h (refresh 30 min, keep 90 days)';
+    RAISE NOTICE '=================================================================';
+END $$;
@@ -0,0 +1,185 @@
+package com.phamnam.tracking_vessel_flight.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPermitPostProcessorTest {
+
+    private final AtomicInteger openConnections = new AtomicInteger(0);
+    private final AtomicInteger maxOpenConnections = new AtomicInteger(0);
+
+    @Test
+    void getConnection_HoldsPermitUntilConnectionIsClosed() throws Exception {
+        ConnectionPermitPostProcessor processor = new ConnectionPermitPostProcessor(2, 2, 50);
+        DataSource dataSource = (DataSource) processor.postProcessAfterInitialization(fakeDataSource(), "dataSource");
+
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+        SQLTransientConnectionException timeout = assertThrows(SQLTransientConnectionException.class,
+                dataSource::getConnection);
+        assertTrue(timeout.getMessage().contains("database"));
+
+        first.close();
+        // A second close must not hand out an extra permit
+        first.close();
+        Connection third = dataSource.getConnection();
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        second.close();
+        third.close();
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> database = (Map<String, Object>) processor.getStatistics().get("database");
+        assertEquals(3L, database.get("acquired"));
+        assertEquals(2L, database.get("timedOut"));
+        assertEquals(2, database.get("maxInUse"));
+        assertEquals(0, database.get("inUse"));
+    }
+
+    @Test
+    void getConnection_WaitingCallersProceedAsPermitsFreeUp() throws Exception {
+        ConnectionPermitPostProcessor processor = new ConnectionPermitPostProcessor(3, 3, 5000);
+        DataSource dataSource = (DataSource) processor.postProcessAfterInitialization(fakeDataSource(), "dataSource");
+        assertSame(processor.postProcessAfterInitialization("other", "other"), "other");
+
+        ExecutorService callers = Executors.newFixedThreadPool(12);
+        try {
+            List<CompletableFuture<Void>> calls = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                calls.add(CompletableFuture.runAsync(() -> useConnection(dataSource, 5), callers));
+            }
+            CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertEquals(3, maxOpenConnections.get());
+        assertEquals(0, openConnections.get());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> database = (Map<String, Object>) processor.getStatistics().get("database");
+        assertEquals(60L, database.get("acquired"));
+        assertEquals(0L, database.get("timedOut"));
+        assertTrue((Long) database.get("waited") > 0);
+    }
+
+    @Test
+    void virtualThreads_QueueOnPermitsInsteadOfExceedingThePool() throws Exception {
+        // A collection/persist task: 20ms waiting on an external source, then
+        // 5ms holding a database connection, one virtual thread per task
+        int tasks = 500;
+        ConnectionPermitPostProcessor processor = new ConnectionPermitPostProcessor(20, 20, 30000);
+        DataSource dataSource = (DataSource) processor.postProcessAfterInitialization(fakeDataSource(), "dataSource");
+
+        ExecutorService virtual = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<CompletableFuture<Void>> calls = new ArrayList<>(tasks);
+            for (int i = 0; i < tasks; i++) {
+                calls.add(CompletableFuture.runAsync(() -> {
+                    sleep(20);
+                    useConnection(dataSource, 5);
+                }, virtual));
+            }
+            CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+        } finally {
+            virtual.shutdown();
+        }
+
+        // Hundreds of threads want a connection at once; the pool never sees more than 20
+        assertEquals(20, maxOpenConnections.get());
+        assertEquals(0, openConnections.get());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> database = (Map<String, Object>) processor.getStatistics().get("database");
+        assertEquals((long) tasks, database.get("acquired"));
+        assertEquals(0L, database.get("timedOut"));
+        assertTrue((Long) database.get("waited") > 0);
+        assertEquals(0, database.get("inUse"));
+    }
+
+    @Test
+    void subscribe_ReturnsThePermitOfALongLivedSubscriptionConnection() {
+        ConnectionPermitPostProcessor processor = new ConnectionPermitPostProcessor(1, 1, 50);
+        RedisConnectionFactory factory = (RedisConnectionFactory) processor.postProcessAfterInitialization(
+                fakeRedisConnectionFactory(), "redisConnectionFactory");
+
+        // The listener container's connection stays subscribed for good
+        RedisConnection subscriber = factory.getConnection();
+        subscriber.pSubscribe((message, pattern) -> {
+        }, "fanout:*".getBytes(StandardCharsets.UTF_8));
+
+        RedisConnection command = factory.getConnection();
+        assertThrows(RedisConnectionFailureException.class, factory::getConnection);
+        command.close();
+        // Closing the subscription later does not hand out an extra permit
+        subscriber.close();
+        factory.getConnection();
+        assertThrows(RedisConnectionFailureException.class, factory::getConnection);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> redis = (Map<String, Object>) processor.getStatistics().get("redis");
+        assertEquals(1L, redis.get("subscriptions"));
+        assertEquals(1, redis.get("inUse"));
+    }
+
+    private void useConnection(DataSource dataSource, long holdMs) {
+        try (Connection ignored = dataSource.getConnection()) {
+            sleep(holdMs);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static RedisConnectionFactory fakeRedisConnectionFactory() {
+        return (RedisConnectionFactory) Proxy.newProxyInstance(RedisConnectionFactory.class.getClassLoader(),
+                new Class<?>[] { RedisConnectionFactory.class },
+                (factoryProxy, factoryMethod, factoryArgs) -> "getConnection".equals(factoryMethod.getName())
+                        ? Proxy.newProxyInstance(RedisConnection.class.getClassLoader(),
+                                new Class<?>[] { RedisConnection.class }, (proxy, method, args) -> null)
+                        : null);
+    }
+
+    /**
+     * DataSource whose connections only track how many are open
+     */
+    private DataSource fakeDataSource() {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { DataSource.class },
+                (dataSourceProxy, dataSourceMethod, dataSourceArgs) -> {
+                    if (!"getConnection".equals(dataSourceMethod.getName())) {
+                        return null;
+                    }
+                    maxOpenConnections.accumulateAndGet(openConnections.incrementAndGet(), Math::max);
+                    AtomicInteger closes = new AtomicInteger(0);
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                            (proxy, method, args) -> {
+                                if ("close".equals(method.getName()) && closes.getAndIncrement() == 0) {
+                                    openConnections.decrementAndGet();
+                                }
+                                return null;
+                            });
+                });
+    }
+}
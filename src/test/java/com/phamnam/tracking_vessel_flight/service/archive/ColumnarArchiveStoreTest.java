@@ -0,0 +1,271 @@
+package com.phamnam.tracking_vessel_flight.service.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ColumnarArchiveStoreTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 1, 1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writeDay_RoundTripsEveryColumnTypeIncludingNulls() {
+        ColumnarArchiveStore store = new ColumnarArchiveStore(directory, 4);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rows.add(aircraft(i, "HEX" + (i / 3), i % 2 == 0 ? 100L : null, DAY.atTime(8, 0).plusSeconds(i * 7)));
+        }
+        rows.get(4)[4] = null;
+        rows.get(5)[13] = null;
+
+        ColumnarArchiveStore.ArchivedFile file = store.writeDay(ArchiveSchema.AIRCRAFT, DAY, sink -> {
+            for (Object[] row : rows) {
+                sink.append(row);
+            }
+        });
+        assertEquals(10, file.rows());
+        assertTrue(file.path().toString().contains("aircraft/date=2025-01-01"));
+
+        List<String> columns = ArchiveSchema.AIRCRAFT.columns().stream().map(ArchiveSchema.Column::name).toList();
+        List<Object[]> read = new ArrayList<>();
+        store.scan(ArchiveSchema.AIRCRAFT, DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay(), null, null, columns,
+                read::add);
+
+        assertEquals(10, read.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertArrayEquals(rows.get(i), read.get(i), "row " + i);
+        }
+    }
+
+    @Test
+    void scan_PrunesFilesAndRowGroupsAndDropsDuplicates() {
+        ColumnarArchiveStore store = new ColumnarArchiveStore(directory, 100);
+        // 1000 rows over 10 aircraft, 100 rows each: one row group per aircraft
+        ColumnarArchiveStore.RowSource source = sink -> {
+            for (int i = 0; i < 1000; i++) {
+                sink.append(aircraft(i, String.format("HEX%02d", i / 100), (long) (i / 100),
+                        DAY.atTime(0, 0).plusSeconds(i * 60L)));
+            }
+        };
+        store.writeDay(ArchiveSchema.AIRCRAFT, DAY, source);
+        // A retried archive run writes the same day again
+        store.writeDay(ArchiveSchema.AIRCRAFT, DAY, source);
+        store.writeDay(ArchiveSchema.AIRCRAFT, DAY.plusDays(1), sink -> sink.append(
+                aircraft(5000, "HEX99", 99L, DAY.plusDays(1).atTime(12, 0))));
+
+        List<Object[]> read = new ArrayList<>();
+        long emitted = store.scan(ArchiveSchema.AIRCRAFT, DAY.atStartOfDay(), DAY.plusDays(2).atStartOfDay(),
+                "flight_id", 3L, List.of("tracking_id", "hexident"), read::add);
+
+        assertEquals(100, emitted, "duplicates from the retried run are dropped");
+        assertTrue(read.stream().allMatch(row -> "HEX03".equals(row[1])));
+        Map<String, Object> stats = store.getStatistics();
+        assertEquals(1L, stats.get("filesPruned"), "next day's file pruned by its flight_id range");
+        assertEquals(2L, stats.get("filesScanned"));
+        assertEquals(18L, stats.get("rowGroupsPruned"), "9 of 10 row groups pruned in both files");
+
+        // A time window inside one hour only touches one row group per file
+        List<Object[]> window = new ArrayList<>();
+        store.scan(ArchiveSchema.AIRCRAFT, DAY.atTime(2, 0), DAY.atTime(3, 0), null, null, List.of("tracking_id"),
+                window::add);
+        assertEquals(60, window.size());
+        assertEquals(120L, window.get(0)[0]);
+    }
+
+    @Test
+    void writeDay_LeavesNoFileForEmptyDayOrFailedWrite() throws IOException {
+        ColumnarArchiveStore store = new ColumnarArchiveStore(directory, 16);
+
+        assertNull(store.writeDay(ArchiveSchema.VESSEL, DAY, sink -> {
+        }).path());
+        assertThrows(IllegalStateException.class, () -> store.writeDay(ArchiveSchema.VESSEL, DAY, sink -> {
+            sink.append(vessel(1, "574000001", DAY.atTime(1, 0)));
+            throw new IllegalStateException("cursor closed");
+        }));
+
+        try (var files = Files.walk(directory)) {
+            assertEquals(0, files.filter(Files::isRegularFile).count(), "no partial or temporary files");
+        }
+    }
+
+    @Test
+    void removeArchived_DropsChunksOnHypertableThenDeletesInBatches() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        ColumnarArchiveStore store = new ColumnarArchiveStore(jdbcTemplate, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(store, "deleteBatchSize", 2);
+        LocalDateTime from = DAY.atStartOfDay();
+        LocalDateTime to = DAY.plusDays(1).atStartOfDay();
+        when(jdbcTemplate.queryForList(startsWith("SELECT drop_chunks"), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("_timescaledb_internal._hyper_1_1_chunk"));
+        String deleteSql = ArchiveSchema.AIRCRAFT.deleteBatchSql();
+        when(jdbcTemplate.update(deleteSql, from, to, from, to, 2)).thenReturn(2, 2, 1);
+
+        store.removeArchived(ArchiveSchema.AIRCRAFT, from, to, true);
+
+        verify(jdbcTemplate).queryForList(
+                "SELECT drop_chunks(?::regclass, older_than => ?::timestamp, newer_than => ?::timestamp)",
+                String.class, "flight_tracking", to, from);
+        // Batches repeat until one comes back short
+        verify(jdbcTemplate, times(3)).update(deleteSql, from, to, from, to, 2);
+        assertTrue(deleteSql.contains("tracking_id IN (SELECT tracking_id FROM flight_tracking"));
+        assertTrue(deleteSql.endsWith("LIMIT ?)"));
+        Map<String, Object> stats = store.getStatistics();
+        assertEquals(1L, stats.get("chunksDropped"));
+        assertEquals(5L, stats.get("rowsDeleted"));
+
+        // Plain tables only get the batched deletes
+        store.removeArchived(ArchiveSchema.VESSEL, from, to, false);
+        verify(jdbcTemplate, times(1)).queryForList(anyString(), eq(String.class), any(Object[].class));
+        verify(jdbcTemplate).update(ArchiveSchema.VESSEL.deleteBatchSql(), from, to, from, to, 2);
+    }
+
+    @Test
+    void archiveBefore_ReexportsDaysThatChangedBeforeRemovingThem() throws Exception {
+        List<Object[]> table = new ArrayList<>(List.of(vessel(1, "574000001", DAY.atTime(1, 0)),
+                vessel(2, "574000002", DAY.atTime(2, 0))));
+        JdbcTemplate jdbcTemplate = databaseWith(table, summary -> {
+            // A late row lands in the day after the first export
+            if (summary == 0) {
+                table.add(vessel(3, "574000003", DAY.atTime(3, 0)));
+            }
+        });
+        ColumnarArchiveStore store = store(jdbcTemplate);
+        LocalDateTime from = DAY.atStartOfDay();
+        LocalDateTime to = DAY.plusDays(1).atStartOfDay();
+        when(jdbcTemplate.update(ArchiveSchema.VESSEL.deleteBatchSql(), from, to, from, to, 10)).thenReturn(3);
+
+        Map<String, Object> result = store.archiveBefore(ArchiveSchema.VESSEL, DAY.plusDays(1));
+
+        assertNull(result.get("error"));
+        assertEquals(3L, result.get("rows"));
+        assertEquals(1L, store.getStatistics().get("daysReexported"));
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate, times(2)).query(eq(ArchiveSchema.VESSEL.daySummarySql()),
+                any(RowCallbackHandler.class), any(Object[].class));
+        inOrder.verify(jdbcTemplate).update(ArchiveSchema.VESSEL.deleteBatchSql(), from, to, from, to, 10);
+
+        // The first file was replaced by the one holding the late row
+        try (var files = Files.walk(directory)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+        List<Object[]> read = new ArrayList<>();
+        store.scan(ArchiveSchema.VESSEL, from, to, null, null, List.of("id"), read::add);
+        assertEquals(List.of(1L, 2L, 3L), read.stream().map(row -> row[0]).toList());
+    }
+
+    @Test
+    void archiveBefore_RemovesNothingWhileRowsKeepArriving() throws Exception {
+        List<Object[]> table = new ArrayList<>(List.of(vessel(1, "574000001", DAY.atTime(1, 0))));
+        JdbcTemplate jdbcTemplate = databaseWith(table,
+                summary -> table.add(vessel(table.size() + 1, "574000001", DAY.atTime(4, summary))));
+        ColumnarArchiveStore store = store(jdbcTemplate);
+
+        Map<String, Object> result = store.archiveBefore(ArchiveSchema.VESSEL, DAY.plusDays(1));
+
+        assertTrue(((String) result.get("error")).contains("rows still changing"));
+        assertEquals(0L, result.get("rows"));
+        try (var files = Files.walk(directory)) {
+            assertEquals(0, files.filter(Files::isRegularFile).count());
+        }
+        verify(jdbcTemplate, never()).update(eq(ArchiveSchema.VESSEL.deleteBatchSql()), any(Object[].class));
+        verify(jdbcTemplate, never()).queryForList(startsWith("SELECT drop_chunks"), eq(String.class),
+                any(Object[].class));
+    }
+
+    private ColumnarArchiveStore store(JdbcTemplate jdbcTemplate) {
+        ColumnarArchiveStore store = new ColumnarArchiveStore(jdbcTemplate, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(store, "directory", directory.toString());
+        ReflectionTestUtils.setField(store, "deleteBatchSize", 10);
+        return store;
+    }
+
+    /**
+     * A vessel table holding DAY's rows; beforeSummary runs ahead of each
+     * row-count check with the number of earlier checks
+     */
+    private static JdbcTemplate databaseWith(List<Object[]> table, IntConsumer beforeSummary) throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(startsWith("SELECT min("), eq(LocalDateTime.class), any(Object[].class)))
+                .thenReturn(DAY.atTime(1, 0), (LocalDateTime) null);
+        when(jdbcTemplate.queryForObject(contains("timescaledb_information.hypertables"), eq(Integer.class),
+                any(Object[].class))).thenReturn(0);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Object[] row : List.copyOf(table)) {
+                handler.processRow(resultSet(row));
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        int[] summaries = { 0 };
+        doAnswer(invocation -> {
+            beforeSummary.accept(summaries[0]++);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getObject("day", LocalDate.class)).thenReturn(DAY);
+            when(rs.getLong("row_count")).thenReturn((long) table.size());
+            when(rs.getLong("max_id")).thenReturn((Long) table.get(table.size() - 1)[0]);
+            ((RowCallbackHandler) invocation.getArgument(1)).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(eq(ArchiveSchema.VESSEL.daySummarySql()), any(RowCallbackHandler.class),
+                any(Object[].class));
+        return jdbcTemplate;
+    }
+
+    /**
+     * Cursor positioned on one row, read through the JDBC getters by column
+     * index
+     */
+    private static ResultSet resultSet(Object[] row) {
+        Object[] last = { null };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                (proxy, method, args) -> {
+                    if ("wasNull".equals(method.getName())) {
+                        return last[0] == null;
+                    }
+                    Object value = row[(Integer) args[0] - 1];
+                    last[0] = value;
+                    return switch (method.getName()) {
+                        case "getLong" -> value == null ? 0L : ((Number) value).longValue();
+                        case "getInt" -> value == null ? 0 : ((Number) value).intValue();
+                        case "getDouble" -> value == null ? 0.0 : ((Number) value).doubleValue();
+                        case "getFloat" -> value == null ? 0f : ((Number) value).floatValue();
+                        case "getBoolean" -> value != null && (Boolean) value;
+                        default -> value;
+                    };
+                });
+    }
+
+    private static Object[] aircraft(long trackingId, String hexident, Long flightId, LocalDateTime timestamp) {
+        return new Object[] { trackingId, timestamp, hexident, flightId, "VN" + hexident, 21.0 + trackingId * 1e-3,
+                105.8, 35000f, 450f, null, 180f, 181f, 7000, false, trackingId == 3, "opensky",
+                timestamp.plusSeconds(1) };
+    }
+
+    private static Object[] vessel(long id, String mmsi, LocalDateTime timestamp) {
+        return new Object[] { id, timestamp, mmsi, 42L, 7L, 10.5, 106.7, 12.5, 90.0, 91.0, "UNDER_WAY", 8.5,
+                "VNSGN", "ais", timestamp };
+    }
+}
@@ -0,0 +1,195 @@
+package com.phamnam.tracking_vessel_flight.service.kafka;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CoalescingKafkaPublisherTest {
+
+    private static final String POSITIONS = "aircraft-positions";
+    private static final String RAW = "raw-adsbexchange-data";
+
+    private KafkaTemplate<String, Object> positionTemplate;
+    private KafkaTemplate<String, Object> rawTemplate;
+    private final Map<String, List<Object>> sentByKey = new ConcurrentHashMap<>();
+    private CoalescingKafkaPublisher publisher;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        positionTemplate = mock(KafkaTemplate.class);
+        rawTemplate = mock(KafkaTemplate.class);
+        when(positionTemplate.send(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            String topic = invocation.getArgument(0);
+            String key = invocation.getArgument(1);
+            Object value = invocation.getArgument(2);
+            sentByKey.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(value);
+            return CompletableFuture.completedFuture(new SendResult<>(new ProducerRecord<>(topic, key, value),
+                    new RecordMetadata(new TopicPartition(topic, 0), 0L, 0, 0L, key.length(), 16)));
+        });
+
+        publisher = new CoalescingKafkaPublisher(mock(KafkaTemplate.class), positionTemplate, rawTemplate);
+        ReflectionTestUtils.setField(publisher, "positionTopicsConfig", POSITIONS);
+        ReflectionTestUtils.setField(publisher, "rawTopicsConfig", RAW);
+        ReflectionTestUtils.setField(publisher, "coalesceEnabled", true);
+        // Long window: the tests flush explicitly
+        ReflectionTestUtils.setField(publisher, "coalesceWindowMs", 60_000L);
+        ReflectionTestUtils.setField(publisher, "coalesceTopicsConfig", "");
+        ReflectionTestUtils.setField(publisher, "maxPending", 50_000);
+        publisher.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.stop();
+    }
+
+    @Test
+    void flush_SendsOnlyLatestValuePerKey() throws Exception {
+        CompletableFuture<SendResult<String, Object>> first = publisher.send(POSITIONS, "888123", "v1");
+        CompletableFuture<SendResult<String, Object>> second = publisher.send(POSITIONS, "888123", "v2");
+        publisher.send(POSITIONS, "888124", "w1");
+        CompletableFuture<SendResult<String, Object>> latest = publisher.send(POSITIONS, "888123", "v3");
+        verifyNoInteractions(positionTemplate);
+
+        assertEquals(2, publisher.flush());
+
+        verify(positionTemplate).send(POSITIONS, "888123", "v3");
+        verify(positionTemplate).send(POSITIONS, "888124", "w1");
+        verifyNoMoreInteractions(positionTemplate);
+        // Superseded sends complete with the send that replaced them
+        assertEquals("v3", first.get(1, TimeUnit.SECONDS).getProducerRecord().value());
+        assertEquals("v3", second.get(1, TimeUnit.SECONDS).getProducerRecord().value());
+        assertSame(latest.get(1, TimeUnit.SECONDS), first.get());
+        assertEquals(0, publisher.flush());
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stats = (Map<String, Object>) publisher.getTopicStatistics().get(POSITIONS);
+        assertEquals(2L, stats.get("coalesced"));
+        assertEquals(2L, stats.get("messages"));
+    }
+
+    @Test
+    void send_OverTheCapReplacesPendingKeysAndBypassesOthers() throws Exception {
+        ReflectionTestUtils.setField(publisher, "maxPending", 1);
+        CompletableFuture<SendResult<String, Object>> first = publisher.send(POSITIONS, "888123", "v1");
+
+        // At the cap: the pending key takes the newer value, a new key goes out at once
+        publisher.send(POSITIONS, "888123", "v2");
+        publisher.send(POSITIONS, "888124", "w1");
+        verify(positionTemplate).send(POSITIONS, "888124", "w1");
+        verify(positionTemplate, never()).send(eq(POSITIONS), eq("888123"), any());
+
+        assertEquals(1, publisher.flush());
+        verify(positionTemplate).send(POSITIONS, "888123", "v2");
+        verify(positionTemplate, never()).send(POSITIONS, "888123", "v1");
+        assertEquals(List.of("v2"), sentByKey.get("888123"));
+        assertEquals("v2", first.get(1, TimeUnit.SECONDS).getProducerRecord().value());
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stats = (Map<String, Object>) publisher.getTopicStatistics().get(POSITIONS);
+        assertEquals(1L, stats.get("bypassed"));
+        assertEquals(1L, stats.get("coalesced"));
+    }
+
+    @Test
+    void send_RawTopicsAreNotCoalesced() {
+        when(rawTemplate.send(anyString(), anyString(), any())).thenReturn(new CompletableFuture<>());
+
+        publisher.send(RAW, "888123", "r1");
+        publisher.send(RAW, "888123", "r2");
+
+        verify(rawTemplate).send(RAW, "888123", "r1");
+        verify(rawTemplate).send(RAW, "888123", "r2");
+        assertEquals(0, publisher.flush());
+    }
+
+    @Test
+    void concurrentPublishAndFlush_LosesNothingAndKeepsOrderPerKey() throws Exception {
+        int threads = 4;
+        int keysPerThread = 50;
+        int rounds = 2_000;
+        List<CompletableFuture<SendResult<String, Object>>> futures = new CopyOnWriteArrayList<>();
+        AtomicBoolean publishing = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        Thread flusher = new Thread(() -> {
+            while (publishing.get()) {
+                publisher.flush();
+            }
+        });
+        flusher.start();
+        for (int t = 0; t < threads; t++) {
+            String prefix = "t" + t + "-";
+            new Thread(() -> {
+                List<CompletableFuture<SendResult<String, Object>>> own = new ArrayList<>();
+                for (int round = 0; round < rounds; round++) {
+                    for (int k = 0; k < keysPerThread; k++) {
+                        own.add(publisher.send(POSITIONS, prefix + k, round));
+                    }
+                }
+                futures.addAll(own);
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        publishing.set(false);
+        flusher.join();
+        publisher.flush();
+
+        assertEquals(threads * keysPerThread, sentByKey.size());
+        sentByKey.forEach((key, values) -> {
+            // The last published value always goes out, and a key never goes backwards
+            assertEquals(rounds - 1, values.get(values.size() - 1), key);
+            for (int i = 1; i < values.size(); i++) {
+                assertTrue((Integer) values.get(i - 1) < (Integer) values.get(i), key);
+            }
+        });
+        assertEquals(threads * keysPerThread * rounds, futures.size());
+        assertTrue(futures.stream().allMatch(future -> future.isDone() && !future.isCompletedExceptionally()));
+        assertEquals(0, publisher.getPublisherStatistics().get("pendingMessages"));
+    }
+
+    @Test
+    void stop_SendsMessagesEnqueuedWhileShuttingDown() throws Exception {
+        List<CompletableFuture<SendResult<String, Object>>> futures = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            for (int round = 0; round < 20_000; round++) {
+                futures.add(publisher.send(POSITIONS, "k" + (round % 100), round));
+                started.countDown();
+            }
+        });
+        producer.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        publisher.stop();
+        producer.join();
+
+        // No flush after stop(): everything must already be out
+        assertTrue(futures.stream().allMatch(CompletableFuture::isDone));
+        for (int k = 0; k < 100; k++) {
+            assertTrue(sentByKey.get("k" + k).contains(19_900 + k), "k" + k);
+        }
+        assertEquals(0, publisher.getPublisherStatistics().get("pendingMessages"));
+    }
+}
@@ -0,0 +1,205 @@
+package com.phamnam.tracking_vessel_flight.service.kafka.codec;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phamnam.tracking_vessel_flight.config.KafkaConfig;
+import com.phamnam.tracking_vessel_flight.dto.event.AircraftPositionEvent;
+import com.phamnam.tracking_vessel_flight.dto.request.VesselTrackingRequest;
+import com.phamnam.tracking_vessel_flight.models.FlightTracking;
+import com.phamnam.tracking_vessel_flight.models.raw.RawAircraftData;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.messaging.Message;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinarySchemaCodecTest {
+
+    private static final String BINARY_TOPIC = "raw-flightradar24-data";
+    private static final String JSON_TOPIC = "alerts";
+
+    private ObjectMapper objectMapper;
+    private BinarySchemaCodec codec;
+    private SchemaCodecSerializer serializer;
+    private SchemaCodecDeserializer<Object> deserializer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Raw records expose computed getters (uniqueId) that are not settable
+        objectMapper = new KafkaConfig().kafkaObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        codec = new BinarySchemaCodec(FileSchemaRegistry.load(objectMapper, "classpath*:kafka-schemas/*.json", null));
+        serializer = new SchemaCodecSerializer(codec, new JsonSerializer<>(objectMapper), Set.of(BINARY_TOPIC), true);
+
+        JsonDeserializer<Object> json = new JsonDeserializer<>(RawAircraftData.class, objectMapper, false);
+        json.addTrustedPackages("*");
+        deserializer = new SchemaCodecDeserializer<>(codec, json);
+    }
+
+    @Test
+    void rawAircraftData_RoundTripsThroughBinary() {
+        RawAircraftData original = aircraft();
+
+        byte[] bytes = codec.encode(original);
+        assertTrue(BinarySchemaCodec.isBinary(bytes));
+
+        RawAircraftData decoded = (RawAircraftData) codec.decode(bytes);
+        assertEquals(original.getHexident(), decoded.getHexident());
+        assertEquals(original.getLatitude(), decoded.getLatitude());
+        assertEquals(original.getLongitude(), decoded.getLongitude());
+        assertEquals(original.getAltitude(), decoded.getAltitude());
+        assertEquals(original.getVerticalRate(), decoded.getVerticalRate());
+        assertEquals(original.getResponseTimeMs(), decoded.getResponseTimeMs());
+        assertEquals(original.getOnGround(), decoded.getOnGround());
+        assertEquals(original.getTimestamp(), decoded.getTimestamp());
+        assertEquals(original.getFetchTime(), decoded.getFetchTime());
+        assertEquals("Hà Nội", decoded.getOrigin());
+        assertNull(decoded.getRawData());
+    }
+
+    @Test
+    void nullFields_AreLeftOutAndDecodeAsNull() {
+        RawAircraftData sparse = new RawAircraftData();
+        sparse.setHexident("888123");
+
+        byte[] bytes = codec.encode(sparse);
+        RawAircraftData decoded = (RawAircraftData) codec.decode(bytes);
+
+        assertEquals("888123", decoded.getHexident());
+        assertNull(decoded.getLatitude());
+        assertNull(decoded.getTimestamp());
+        // magic + schema id + presence bitmap + one short string
+        assertTrue(bytes.length < 20, "sparse message was " + bytes.length + " bytes");
+    }
+
+    @Test
+    void flightTracking_KeepsFloatAndNegativeValues() {
+        FlightTracking tracking = new FlightTracking();
+        tracking.setHexident("888123");
+        tracking.setAltitude(-120.5f);
+        tracking.setVerticalSpeed(-1800f);
+        tracking.setSquawk(7700);
+        tracking.setUnixTime(1735689600L);
+        tracking.setTimestamp(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 500_000_000));
+
+        FlightTracking decoded = (FlightTracking) codec.decode(codec.encode(tracking));
+
+        assertEquals(-120.5f, decoded.getAltitude());
+        assertEquals(-1800f, decoded.getVerticalSpeed());
+        assertEquals(7700, decoded.getSquawk());
+        assertEquals(1735689600L, decoded.getUnixTime());
+        assertEquals(tracking.getTimestamp(), decoded.getTimestamp());
+    }
+
+    @Test
+    void positionEventRecord_RoundTripsThroughCanonicalConstructor() {
+        AircraftPositionEvent event = new AircraftPositionEvent("888123", "HVN123", "VN-A321", "A321", "VN123",
+                21.221192, 105.807178, 35000, 450, 182, -640, "2301", false, false, "HAN", "SGN",
+                "flightradar24", 0.92, LocalDateTime.of(2025, 1, 1, 8, 30, 15), null);
+
+        byte[] bytes = codec.encode(event);
+
+        assertEquals(event, codec.decode(bytes));
+    }
+
+    @Test
+    void serializer_UsesBinaryOnlyForConfiguredTopicsWithSchema() {
+        RawAircraftData data = aircraft();
+
+        byte[] binary = serializer.serialize(BINARY_TOPIC, data);
+        byte[] json = serializer.serialize(JSON_TOPIC, data);
+        byte[] noSchema = serializer.serialize(BINARY_TOPIC, List.of("no", "schema"));
+
+        assertTrue(BinarySchemaCodec.isBinary(binary));
+        assertEquals('{', json[0]);
+        assertEquals('[', noSchema[0]);
+    }
+
+    @Test
+    void serializer_BinaryDisabled_FallsBackToJson() {
+        SchemaCodecSerializer debugSerializer = new SchemaCodecSerializer(codec,
+                new JsonSerializer<>(objectMapper), Set.of(BINARY_TOPIC), false);
+
+        assertEquals('{', debugSerializer.serialize(BINARY_TOPIC, aircraft())[0]);
+    }
+
+    @Test
+    void deserializer_ReadsBinaryAndJsonFromSameTopic() {
+        RawAircraftData data = aircraft();
+        byte[] binary = serializer.serialize(BINARY_TOPIC, data);
+        byte[] json = serializer.serialize(JSON_TOPIC, data);
+
+        RawAircraftData fromBinary = (RawAircraftData) deserializer.deserialize(BINARY_TOPIC, binary);
+        RawAircraftData fromJson = (RawAircraftData) deserializer.deserialize(BINARY_TOPIC, json);
+
+        assertEquals(fromJson.getHexident(), fromBinary.getHexident());
+        assertEquals(fromJson.getLatitude(), fromBinary.getLatitude());
+        assertEquals(fromJson.getTimestamp(), fromBinary.getTimestamp());
+    }
+
+    @Test
+    void deserializer_UnknownSchemaId_Fails() {
+        byte[] bytes = { BinarySchemaCodec.MAGIC_BYTE, (byte) 0x7F, 0x00 };
+
+        assertThrows(SerializationException.class, () -> deserializer.deserialize(BINARY_TOPIC, bytes));
+    }
+
+    @Test
+    void messageConverter_MapsDecodedPayloadOntoListenerType() {
+        VesselTrackingRequest vessel = VesselTrackingRequest.builder()
+                .mmsi("574123456").latitude(10.5).longitude(107.5).vesselName("HAI PHONG STAR").build();
+        Object decoded = codec.decode(codec.encode(vessel));
+
+        SchemaAwareMessageConverter converter = new SchemaAwareMessageConverter(codec, objectMapper);
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>("processed-vessel-data", 0, 0L, "574123456",
+                decoded);
+        Message<?> message = converter.toMessage(record, null, null, JsonNode.class);
+
+        JsonNode payload = (JsonNode) message.getPayload();
+        assertEquals("574123456", payload.get("mmsi").asText());
+        assertEquals("HAI PHONG STAR", payload.get("vesselName").asText());
+    }
+
+    @Test
+    void binaryIsLessThanHalfTheJsonSize() {
+        RawAircraftData data = aircraft();
+        JsonSerializer<Object> jsonSerializer = new JsonSerializer<>(objectMapper);
+
+        byte[] json = jsonSerializer.serialize(JSON_TOPIC, data);
+        byte[] binary = codec.encode(data);
+        assertTrue(binary.length * 2 < json.length,
+                "binary " + binary.length + " bytes vs JSON " + json.length + " bytes");
+    }
+
+    private RawAircraftData aircraft() {
+        RawAircraftData data = RawAircraftData.fromSource("flightradar24", "/zones/fcgi/feed.js", null, 184L);
+        data.setHexident("888123");
+        data.setCallsign("HVN123");
+        data.setLatitude(21.221192);
+        data.setLongitude(105.807178);
+        data.setAltitude(35000);
+        data.setGroundSpeed(450);
+        data.setTrack(182);
+        data.setVerticalRate(-640);
+        data.setSquawk("2301");
+        data.setAircraftType("A321");
+        data.setRegistration("VN-A321");
+        data.setOnGround(false);
+        data.setEmergency(false);
+        data.setFlightNumber("VN123");
+        data.setOrigin("Hà Nội");
+        data.setDestination("SGN");
+        data.setDataQuality(0.92);
+        data.setTimestamp(LocalDateTime.of(2025, 1, 1, 8, 30, 15, 123_000_000));
+        return data;
+    }
+}
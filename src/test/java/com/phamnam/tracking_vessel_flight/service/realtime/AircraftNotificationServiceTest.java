@@ -0,0 +1,95 @@
+package com.phamnam.tracking_vessel_flight.service.realtime;
+
+import com.phamnam.tracking_vessel_flight.dto.FlightTrackingRequestDTO;
+import com.phamnam.tracking_vessel_flight.service.realtime.cluster.ClusterFanoutService;
+import com.phamnam.tracking_vessel_flight.service.realtime.subscription.SubscriptionRegistry;
+import com.phamnam.tracking_vessel_flight.service.realtime.subscription.SubscriptionRegistry.Kind;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Per-poll fan-out: per-area position frames and /delta, full /batch snapshot
+ */
+class AircraftNotificationServiceTest {
+
+    private static final String HANOI = SubscriptionRegistry.areaKey("area", 21, 22, 105, 106);
+    private static final String SAIGON = SubscriptionRegistry.areaKey("area", 10, 11, 106, 107);
+
+    private SubscriptionRegistry subscriptionRegistry;
+    private TrackingCacheService trackingCacheService;
+    private ClusterFanoutService clusterFanoutService;
+    private AircraftNotificationService service;
+
+    @BeforeEach
+    void setUp() {
+        subscriptionRegistry = mock(SubscriptionRegistry.class);
+        trackingCacheService = mock(TrackingCacheService.class);
+        clusterFanoutService = mock(ClusterFanoutService.class);
+        Map<String, double[]> areas = new LinkedHashMap<>();
+        areas.put(HANOI, new double[] { 21, 22, 105, 106 });
+        areas.put(SAIGON, new double[] { 10, 11, 106, 107 });
+        when(subscriptionRegistry.getActiveAreas(Kind.AREA)).thenReturn(areas);
+        service = new AircraftNotificationService(subscriptionRegistry, trackingCacheService, clusterFanoutService);
+    }
+
+    @Test
+    void sendAircraftUpdates_SendsAreaFramesAndDeltaPerArea() {
+        when(clusterFanoutService.entityDestination("/topic/aircraft/", 42L)).thenReturn("/topic/aircraft/42");
+        FlightTrackingRequestDTO subscribed = flight(42L, 21.5f, 105.5f);
+        FlightTrackingRequestDTO inArea = flight(43L, 21.6f, 105.6f);
+        FlightTrackingRequestDTO outside = flight(44L, 50f, 50f);
+
+        service.sendAircraftUpdates(List.of(subscribed, inArea, outside));
+
+        // One frame per aircraft, shared by its aircraft topic and every matching area topic
+        verify(clusterFanoutService).sendPosition(eq("flight"), eq("42"), any(), any(), same(subscribed),
+                eq("/topic/aircraft/42"), eq("/topic/area/" + HANOI));
+        verify(clusterFanoutService).sendPosition(eq("flight"), eq("43"), any(), any(), same(inArea),
+                eq("/topic/area/" + HANOI));
+        verify(clusterFanoutService, never()).sendPosition(any(), eq("44"), any(), any(), any(), any(String[].class));
+
+        // This poll's changes go to /delta; /batch stays the full snapshot
+        ArgumentCaptor<Object> delta = ArgumentCaptor.forClass(Object.class);
+        verify(clusterFanoutService).send(eq("/topic/area/" + HANOI + "/delta"), delta.capture());
+        assertEquals(List.of(subscribed, inArea), ((Map<?, ?>) delta.getValue()).get("updates"));
+        verify(clusterFanoutService, never()).send(eq("/topic/area/" + SAIGON + "/delta"), any());
+        verify(clusterFanoutService, never()).send(endsWith("/batch"), any());
+    }
+
+    @Test
+    void sendBatchUpdatesToAllAreas_SendsFullSnapshotReadingCacheOnce() {
+        Set<Object> activeFlights = new LinkedHashSet<>(List.of(
+                flight(42L, 21.5f, 105.5f), flight(43L, 21.6f, 105.6f), flight(45L, 10.5f, 106.5f)));
+        when(trackingCacheService.getActiveFlights()).thenReturn(activeFlights);
+
+        service.sendBatchUpdatesToAllAreas();
+
+        verify(trackingCacheService, times(1)).getActiveFlights();
+        ArgumentCaptor<Object> hanoi = ArgumentCaptor.forClass(Object.class);
+        verify(clusterFanoutService).send(eq("/topic/area/" + HANOI + "/batch"), hanoi.capture());
+        assertEquals(2, ((Map<?, ?>) hanoi.getValue()).get("count"));
+        ArgumentCaptor<Object> saigon = ArgumentCaptor.forClass(Object.class);
+        verify(clusterFanoutService).send(eq("/topic/area/" + SAIGON + "/batch"), saigon.capture());
+        assertEquals(1, ((Map<?, ?>) saigon.getValue()).get("count"));
+    }
+
+    private static FlightTrackingRequestDTO flight(Long id, float latitude, float longitude) {
+        return FlightTrackingRequestDTO.builder()
+                .id(id)
+                .hexident("HEX" + id)
+                .latitude(latitude)
+                .longitude(longitude)
+                .build();
+    }
+}
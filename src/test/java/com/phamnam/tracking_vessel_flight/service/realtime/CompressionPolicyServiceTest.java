@@ -0,0 +1,65 @@
+package com.phamnam.tracking_vessel_flight.service.realtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionPolicyServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 10, 12, 0);
+    private static final Duration COMPRESS_AFTER = Duration.ofHours(24);
+
+    @Test
+    void summarize_OnlyCountsCompressedChunksInTheRatio() {
+        List<CompressionPolicyService.ChunkCompression> chunks = List.of(
+                chunk("_hyper_1_1_chunk", 1, true, 1_000_000L, 100_000L),
+                chunk("_hyper_1_2_chunk", 2, true, 3_000_000L, 200_000L),
+                // Still hot: no sizes from chunk_compression_stats
+                chunk("_hyper_1_3_chunk", 3, false, null, null));
+
+        Map<String, Object> summary = CompressionPolicyService.summarize(chunks);
+
+        assertEquals(3, summary.get("totalChunks"));
+        assertEquals(2L, summary.get("compressedChunks"));
+        assertEquals(1L, summary.get("uncompressedChunks"));
+        assertEquals(4_000_000L, summary.get("beforeCompressionBytes"));
+        assertEquals(300_000L, summary.get("afterCompressionBytes"));
+        assertEquals(13.33, summary.get("compressionRatio"));
+        assertEquals(10.0, chunks.get(0).ratio());
+        assertNull(chunks.get(2).ratio());
+        assertNull(CompressionPolicyService.summarize(List.of()).get("compressionRatio"));
+    }
+
+    @Test
+    void evaluate_ReportsMissingFailingAndOverduePolicies() {
+        assertEquals(CompressionPolicyService.PolicyHealth.MISSING, CompressionPolicyService.evaluate(
+                new CompressionPolicyService.PolicyStatus("ship_tracking", null, null, null, null, null, 0, 0),
+                NOW, COMPRESS_AFTER));
+        assertEquals(CompressionPolicyService.PolicyHealth.FAILING,
+                CompressionPolicyService.evaluate(policy("Failed", NOW.plusHours(1)), NOW, COMPRESS_AFTER));
+        assertEquals(CompressionPolicyService.PolicyHealth.OVERDUE,
+                CompressionPolicyService.evaluate(policy("Success", NOW.minusHours(30)), NOW, COMPRESS_AFTER));
+        assertEquals(CompressionPolicyService.PolicyHealth.HEALTHY,
+                CompressionPolicyService.evaluate(policy("Success", NOW.minusHours(2)), NOW, COMPRESS_AFTER));
+        // Never run yet: no job_stats row
+        assertEquals(CompressionPolicyService.PolicyHealth.HEALTHY,
+                CompressionPolicyService.evaluate(policy(null, null), NOW, COMPRESS_AFTER));
+    }
+
+    private static CompressionPolicyService.ChunkCompression chunk(String name, int day, boolean compressed,
+            Long beforeBytes, Long afterBytes) {
+        LocalDateTime start = LocalDateTime.of(2025, 1, day, 0, 0);
+        return new CompressionPolicyService.ChunkCompression("_timescaledb_internal." + name, start,
+                start.plusDays(1), compressed, beforeBytes, afterBytes);
+    }
+
+    private static CompressionPolicyService.PolicyStatus policy(String lastRunStatus, LocalDateTime nextStart) {
+        return new CompressionPolicyService.PolicyStatus("flight_tracking", 1001, "1 day", lastRunStatus,
+                NOW.minusDays(1), nextStart, 10, 0);
+    }
+}
@@ -0,0 +1,180 @@
+package com.phamnam.tracking_vessel_flight.service.realtime;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phamnam.tracking_vessel_flight.config.KafkaConfig;
+import com.phamnam.tracking_vessel_flight.dto.event.AircraftPositionEvent;
+import com.phamnam.tracking_vessel_flight.dto.event.VesselPositionEvent;
+import com.phamnam.tracking_vessel_flight.models.raw.RawAircraftData;
+import com.phamnam.tracking_vessel_flight.models.raw.RawVesselData;
+import com.phamnam.tracking_vessel_flight.service.kafka.codec.BinarySchemaCodec;
+import com.phamnam.tracking_vessel_flight.service.kafka.codec.FileSchemaRegistry;
+import com.phamnam.tracking_vessel_flight.service.kafka.codec.SchemaCodecSerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KafkaStreamsFusionServiceTest {
+
+    private static final Instant WINDOW_START = Instant.parse("2025-01-01T00:00:00Z");
+
+    @TempDir
+    Path stateDir;
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, RawAircraftData> flightRadar24Input;
+    private TestInputTopic<String, Object> adsbExchangeInput;
+    private TestInputTopic<String, RawVesselData> marineTrafficInput;
+    private TestInputTopic<String, RawVesselData> vesselFinderInput;
+    private TestOutputTopic<String, AircraftPositionEvent> processedAircraftOutput;
+    private TestOutputTopic<String, VesselPositionEvent> processedVesselOutput;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ObjectMapper objectMapper = new KafkaConfig().kafkaObjectMapper();
+        BinarySchemaCodec codec = new BinarySchemaCodec(
+                FileSchemaRegistry.load(objectMapper, "classpath*:kafka-schemas/*.json", null));
+
+        DataFusionService dataFusionService = new DataFusionService();
+        dataFusionService.setFlightRadar24Priority(1);
+        dataFusionService.setAdsbExchangePriority(2);
+        dataFusionService.setMarineTrafficPriority(1);
+        dataFusionService.setVesselFinderPriority(2);
+        dataFusionService.setChinaportsPriority(3);
+        dataFusionService.setMarineTrafficV2Priority(4);
+        ReflectionTestUtils.setField(dataFusionService, "qualityThreshold", 0.1);
+
+        KafkaStreamsFusionService service = new KafkaStreamsFusionService(dataFusionService, objectMapper, codec,
+                "raw-flightradar24-data", "raw-adsbexchange-data", "raw-marinetraffic-data",
+                "raw-vesselfinder-data", "raw-chinaports-data", "raw-marinetrafficv2-data",
+                "processed-aircraft-data", "processed-vessel-data");
+        ReflectionTestUtils.setField(service, "aircraftWindowMs", 5000L);
+        ReflectionTestUtils.setField(service, "vesselWindowMs", 10000L);
+        ReflectionTestUtils.setField(service, "gracePeriodMs", 1000L);
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "fusion-topology-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+
+        driver = new TopologyTestDriver(service.buildTopology(), props);
+
+        flightRadar24Input = driver.createInputTopic("raw-flightradar24-data",
+                new StringSerializer(), new JsonSerializer<>(objectMapper));
+        // ADS-B Exchange is written in the binary format, the other sources in JSON
+        adsbExchangeInput = driver.createInputTopic("raw-adsbexchange-data", new StringSerializer(),
+                new SchemaCodecSerializer(codec, new JsonSerializer<>(objectMapper),
+                        Set.of("raw-adsbexchange-data"), true));
+        marineTrafficInput = driver.createInputTopic("raw-marinetraffic-data",
+                new StringSerializer(), new JsonSerializer<>(objectMapper));
+        vesselFinderInput = driver.createInputTopic("raw-vesselfinder-data",
+                new StringSerializer(), new JsonSerializer<>(objectMapper));
+        processedAircraftOutput = driver.createOutputTopic("processed-aircraft-data",
+                new StringDeserializer(), new JsonDeserializer<>(AircraftPositionEvent.class, objectMapper, false));
+        processedVesselOutput = driver.createOutputTopic("processed-vessel-data",
+                new StringDeserializer(), new JsonDeserializer<>(VesselPositionEvent.class, objectMapper, false));
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    void aircraftFromTwoSources_SameWindow_EmitsOneFusedRecordWhenWindowCloses() {
+        RawAircraftData fromFlightRadar24 = aircraft("888123", 10.0, 106.0);
+        fromFlightRadar24.setCallsign("VN123");
+        RawAircraftData fromAdsbExchange = aircraft("888123", 10.2, 106.2);
+        fromAdsbExchange.setRegistration("VN-A321");
+
+        flightRadar24Input.pipeInput("888123", fromFlightRadar24, WINDOW_START.plusMillis(100));
+        adsbExchangeInput.pipeInput("888123", fromAdsbExchange, WINDOW_START.plusMillis(900));
+
+        // Nothing is emitted while the window is still open
+        assertTrue(processedAircraftOutput.isEmpty());
+
+        // Advance stream time past window end + grace with an unrelated aircraft
+        flightRadar24Input.pipeInput("999999", aircraft("999999", 11.0, 107.0), WINDOW_START.plusMillis(6500));
+
+        List<KeyValue<String, AircraftPositionEvent>> output = processedAircraftOutput.readKeyValuesToList();
+        assertEquals(1, output.size());
+        assertEquals("888123", output.get(0).key);
+
+        AircraftPositionEvent fused = output.get(0).value;
+        assertEquals("flightradar24", fused.source());
+        assertEquals("VN123", fused.callsign());
+        assertEquals("VN-A321", fused.registration());
+        assertEquals(10.1, fused.latitude(), 1e-9);
+        assertEquals(106.1, fused.longitude(), 1e-9);
+        assertTrue(fused.dataQuality() > 0.8);
+    }
+
+    @Test
+    void aircraftWithInvalidPosition_IsDroppedBeforeFusion() {
+        flightRadar24Input.pipeInput("888124", aircraft("888124", 123.0, 106.0), WINDOW_START.plusMillis(100));
+        flightRadar24Input.pipeInput("999999", aircraft("999999", 11.0, 107.0), WINDOW_START.plusMillis(6500));
+
+        assertTrue(processedAircraftOutput.isEmpty());
+    }
+
+    @Test
+    void vesselsKeyedBySourceKey_AreCoPartitionedByMmsi() {
+        RawVesselData fromMarineTraffic = vessel("574123456", 10.5, 107.5);
+        RawVesselData fromVesselFinder = vessel("574123456", 10.5, 107.5);
+        fromVesselFinder.setVesselName("HAI PHONG STAR");
+        fromVesselFinder.setDestination("VNHPH");
+
+        // Producers may key differently; the topology re-keys by MMSI before grouping
+        marineTrafficInput.pipeInput("mt-1", fromMarineTraffic, WINDOW_START.plusMillis(500));
+        vesselFinderInput.pipeInput("vf-1", fromVesselFinder, WINDOW_START.plusMillis(4000));
+        marineTrafficInput.pipeInput("mt-2", vessel("574999999", 11.0, 108.0), WINDOW_START.plusMillis(11500));
+
+        List<KeyValue<String, VesselPositionEvent>> output = processedVesselOutput.readKeyValuesToList();
+        assertEquals(1, output.size());
+        assertEquals("574123456", output.get(0).key);
+        assertEquals("marinetraffic", output.get(0).value.source());
+        assertEquals("HAI PHONG STAR", output.get(0).value.vesselName());
+        assertEquals("VNHPH", output.get(0).value.destination());
+    }
+
+    private RawAircraftData aircraft(String hexident, double latitude, double longitude) {
+        RawAircraftData data = RawAircraftData.fromSource("test", "/api/test", null, 100L);
+        data.setHexident(hexident);
+        data.setLatitude(latitude);
+        data.setLongitude(longitude);
+        data.setAltitude(35000);
+        data.setDataQuality(0.9);
+        data.setTimestamp(LocalDateTime.now());
+        return data;
+    }
+
+    private RawVesselData vessel(String mmsi, double latitude, double longitude) {
+        RawVesselData data = RawVesselData.fromSource("test", "/api/test", null, 100L);
+        data.setMmsi(mmsi);
+        data.setLatitude(latitude);
+        data.setLongitude(longitude);
+        data.setSpeed(12.0);
+        data.setDataQuality(0.85);
+        data.setTimestamp(LocalDateTime.now());
+        return data;
+    }
+}
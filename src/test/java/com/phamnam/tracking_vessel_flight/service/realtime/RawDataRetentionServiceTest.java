@@ -0,0 +1,116 @@
+package com.phamnam.tracking_vessel_flight.service.realtime;
+
+import com.phamnam.tracking_vessel_flight.config.TimescaleConfig;
+import com.phamnam.tracking_vessel_flight.repository.RawAircraftDataRepository;
+import com.phamnam.tracking_vessel_flight.repository.RawVesselDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Statements issued by chunk-based retention: the opt-in hypertable
+ * migration, the tier copy and the chunk drop
+ */
+class RawDataRetentionServiceTest {
+
+    private static final String CHUNK = "_timescaledb_internal._hyper_1_1_chunk";
+
+    private JdbcTemplate jdbcTemplate;
+    private TimescaleConfig timescaleConfig;
+    private RawDataRetentionService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        timescaleConfig = mock(TimescaleConfig.class);
+        when(timescaleConfig.isTimescaleEnabled()).thenReturn(true);
+        service = new RawDataRetentionService(mock(RawAircraftDataRepository.class),
+                mock(RawVesselDataRepository.class), jdbcTemplate, timescaleConfig,
+                mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "retentionEnabled", true);
+        ReflectionTestUtils.setField(service, "retentionDays", 7);
+        ReflectionTestUtils.setField(service, "emergencyRetentionDays", 30);
+        ReflectionTestUtils.setField(service, "highQualityRetentionDays", 14);
+        // No table is a hypertable yet
+        when(jdbcTemplate.queryForObject(contains("timescaledb_information.hypertables"), eq(Integer.class),
+                any(Object[].class))).thenReturn(0);
+    }
+
+    @Test
+    void initializeChunkRetention_LeavesExistingTablesAloneWithoutMigrationProperty() {
+        service.initializeChunkRetention();
+
+        verify(jdbcTemplate, never()).execute(anyString());
+        verify(jdbcTemplate, never()).queryForList(contains("create_hypertable"), any(Object[].class));
+        assertEquals("rows", service.getRetentionStats().get("mode"));
+    }
+
+    @Test
+    void initializeChunkRetention_MigratesWhenEnabled() {
+        ReflectionTestUtils.setField(service, "migrateToHypertable", true);
+        when(jdbcTemplate.queryForList(contains("pg_constraint"), eq(String.class), any(Object[].class)))
+                .thenAnswer(invocation -> List.of(invocation.getArgument(2) + "_pkey"));
+
+        service.initializeChunkRetention();
+
+        for (String table : List.of("raw_aircraft_data", "raw_vessel_data")) {
+            InOrder inOrder = inOrder(jdbcTemplate);
+            inOrder.verify(jdbcTemplate).execute("ALTER TABLE " + table + " DROP CONSTRAINT \"" + table
+                    + "_pkey\", ADD PRIMARY KEY (id, received_at)");
+            inOrder.verify(jdbcTemplate).queryForList("SELECT create_hypertable(?::regclass, 'received_at', "
+                    + "chunk_time_interval => make_interval(hours => ?), migrate_data => true)", table, 24);
+            verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS " + table + "_emergency (LIKE " + table + ")");
+            verify(jdbcTemplate).execute(
+                    "CREATE TABLE IF NOT EXISTS " + table + "_high_quality (LIKE " + table + ")");
+        }
+        verify(jdbcTemplate).queryForList("SELECT add_retention_policy(?::regclass, make_interval(days => ?))",
+                "raw_aircraft_data_emergency", 30);
+        verify(jdbcTemplate).queryForList("SELECT add_retention_policy(?::regclass, make_interval(days => ?))",
+                "raw_vessel_data_high_quality", 14);
+        assertEquals("chunks", service.getRetentionStats().get("mode"));
+    }
+
+    @Test
+    void performCleanup_CopiesTieredRowsBeforeDroppingChunks() {
+        ReflectionTestUtils.setField(service, "chunkRetentionReady", true);
+        when(jdbcTemplate.queryForList(startsWith("SELECT show_chunks"), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of(CHUNK));
+        when(jdbcTemplate.queryForObject(contains("reltuples"), eq(Long.class), any(Object[].class)))
+                .thenReturn(100L);
+        when(jdbcTemplate.queryForList(contains("information_schema.columns"), eq(String.class),
+                any(Object[].class))).thenReturn(List.of("id", "received_at"));
+        when(jdbcTemplate.update(startsWith("INSERT INTO"), any(Object[].class))).thenReturn(3);
+
+        assertEquals(200L, service.performCleanup());
+
+        InOrder aircraft = inOrder(jdbcTemplate);
+        aircraft.verify(jdbcTemplate).update(eq("INSERT INTO raw_aircraft_data_emergency (id, received_at) "
+                + "SELECT id, received_at FROM " + CHUNK + " WHERE emergency IS TRUE AND received_at >= ?"),
+                any(LocalDateTime.class));
+        aircraft.verify(jdbcTemplate).update(eq("INSERT INTO raw_aircraft_data_high_quality (id, received_at) "
+                + "SELECT id, received_at FROM " + CHUNK + " WHERE NOT (emergency IS TRUE) AND data_quality >= ? "
+                + "AND received_at >= ?"), eq(0.8), any(LocalDateTime.class));
+        aircraft.verify(jdbcTemplate).queryForList(eq("SELECT drop_chunks(?::regclass, older_than => ?::timestamp)"),
+                eq("raw_aircraft_data"), any(LocalDateTime.class));
+
+        InOrder vessel = inOrder(jdbcTemplate);
+        vessel.verify(jdbcTemplate).update(eq("INSERT INTO raw_vessel_data_emergency (id, received_at) "
+                + "SELECT id, received_at FROM " + CHUNK + " WHERE dangerous_cargo IS TRUE AND received_at >= ?"),
+                any(LocalDateTime.class));
+        vessel.verify(jdbcTemplate).queryForList(eq("SELECT drop_chunks(?::regclass, older_than => ?::timestamp)"),
+                eq("raw_vessel_data"), any(LocalDateTime.class));
+
+        assertEquals(12L, service.getRetentionStats().get("totalTieredRecords"));
+        assertEquals(2L, service.getRetentionStats().get("totalDroppedChunks"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.backpressure;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.stubbing.Answer;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SessionBackpressureManagerTest {
+
+    private static final TextMessage ALERT = new TextMessage(
+            "MESSAGE\ndestination:/topic/alerts\nsubscription:sub-0\nmessage-id:1\n\n{}\u0000");
+
+    private final SessionBackpressureManager manager = new SessionBackpressureManager();
+    private final WebSocketHandler handler = mock(WebSocketHandler.class);
+    private final WebSocketHandler decorated = manager.decorate(handler);
+    private final CountDownLatch stalledClients = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        stalledClients.countDown();
+        manager.shutdown();
+    }
+
+    @Test
+    void sendMessage_StalledSessionsDoNotDelayOthers() throws Exception {
+        List<WebSocketSession> stalled = new ArrayList<>();
+        // More stalled clients than a shared writer pool would have threads
+        for (int i = 0; i < 32; i++) {
+            stalled.add(connect("stalled-" + i, invocation -> {
+                stalledClients.await(10, TimeUnit.SECONDS);
+                return null;
+            }));
+        }
+        CountDownLatch delivered = new CountDownLatch(1);
+        WebSocketSession healthy = connect("healthy", invocation -> {
+            delivered.countDown();
+            return null;
+        });
+
+        for (WebSocketSession session : stalled) {
+            session.sendMessage(ALERT);
+            session.sendMessage(ALERT);
+        }
+        healthy.sendMessage(ALERT);
+
+        assertTrue(delivered.await(2, TimeUnit.SECONDS), "healthy session waited for stalled ones");
+    }
+
+    /**
+     * Connect a client whose socket writes run the given answer; returns the
+     * session the STOMP handler sees
+     */
+    private WebSocketSession connect(String id, Answer<Void> socketWrite) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        doAnswer(socketWrite).when(session).sendMessage(any(WebSocketMessage.class));
+        decorated.afterConnectionEstablished(session);
+        ArgumentCaptor<WebSocketSession> queue = ArgumentCaptor.forClass(WebSocketSession.class);
+        verify(handler, atLeastOnce()).afterConnectionEstablished(queue.capture());
+        return queue.getValue();
+    }
+}
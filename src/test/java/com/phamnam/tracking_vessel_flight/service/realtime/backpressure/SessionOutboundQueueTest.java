@@ -0,0 +1,148 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.backpressure;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SessionOutboundQueueTest {
+
+    private final List<String> written = new CopyOnWriteArrayList<>();
+    private final CountDownLatch slowClient = new CountDownLatch(1);
+    private ExecutorService writer;
+    private WebSocketSession session;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        writer = Executors.newSingleThreadExecutor();
+        session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        // The client reads nothing until the latch opens
+        doAnswer(invocation -> {
+            slowClient.await(5, TimeUnit.SECONDS);
+            written.add(((TextMessage) invocation.getArgument(0)).getPayload());
+            return null;
+        }).when(session).sendMessage(any(WebSocketMessage.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        slowClient.countDown();
+        writer.shutdownNow();
+    }
+
+    @Test
+    void sendMessage_SlowClientGetsLatestFramePerEntity() throws Exception {
+        SessionOutboundQueue queue = new SessionOutboundQueue(session, writer, 100, 100);
+
+        queue.sendMessage(frame("sub-0", "/topic/aircraft/positions", "aircraft/A", "A0"));
+        waitFor(() -> queue.getSendInProgressMs() > 0 || queue.getQueueDepth() == 0);
+        for (int i = 1; i <= 5; i++) {
+            queue.sendMessage(frame("sub-0", "/topic/aircraft/positions", "aircraft/A", "A" + i));
+        }
+        queue.sendMessage(frame("sub-0", "/topic/aircraft/positions", "aircraft/B", "B1"));
+        // Same entity on another subscription is a separate stream
+        queue.sendMessage(frame("sub-1", "/topic/aircraft/A", "aircraft/A", "A5-own-topic"));
+        queue.sendMessage(frame("sub-2", "/topic/alerts", null, "alert"));
+        queue.sendMessage(new TextMessage("RECEIPT\nreceipt-id:r1\n\n\u0000"));
+        assertEquals(5, queue.getQueueDepth());
+
+        slowClient.countDown();
+        waitFor(() -> written.size() == 6);
+
+        assertEquals(List.of("A0", "RECEIPT", "A5", "B1", "A5-own-topic", "alert"),
+                written.stream().map(SessionOutboundQueueTest::body).toList());
+        Map<String, Object> stats = queue.getStatistics();
+        assertEquals(4L, stats.get("conflated"));
+        assertEquals(0L, stats.get("dropped"));
+        assertEquals(10L, stats.get("queued"));
+        assertEquals(6L, stats.get("sent"));
+        assertEquals(0, stats.get("queueDepth"));
+    }
+
+    @Test
+    void sendMessage_DropsOldestMessageBeyondQueueLimit() throws Exception {
+        SessionOutboundQueue queue = new SessionOutboundQueue(session, writer, 2, 100);
+
+        queue.sendMessage(frame("sub-0", "/topic/alerts", null, "alert-0"));
+        waitFor(() -> queue.getQueueDepth() == 0);
+        queue.sendMessage(frame("sub-0", "/topic/alerts", null, "alert-1"));
+        queue.sendMessage(frame("sub-0", "/topic/alerts", null, "alert-2"));
+        queue.sendMessage(frame("sub-0", "/topic/alerts", null, "alert-3"));
+
+        slowClient.countDown();
+        waitFor(() -> written.size() == 3);
+
+        assertEquals(List.of("alert-0", "alert-2", "alert-3"),
+                written.stream().map(SessionOutboundQueueTest::body).toList());
+        assertEquals(1L, queue.getStatistics().get("dropped"));
+        assertTrue((Long) queue.getStatistics().get("bytesSent") > 0);
+    }
+
+    @Test
+    void sendMessage_YieldsTheWriterAfterFramesPerTurn() throws Exception {
+        WebSocketSession other = mock(WebSocketSession.class);
+        doAnswer(invocation -> {
+            written.add(((TextMessage) invocation.getArgument(0)).getPayload());
+            return null;
+        }).when(other).sendMessage(any(WebSocketMessage.class));
+        SessionOutboundQueue busy = new SessionOutboundQueue(session, writer, 100, 2);
+        SessionOutboundQueue waiting = new SessionOutboundQueue(other, writer, 100, 2);
+
+        busy.sendMessage(frame("sub-0", "/topic/alerts", null, "alert-0"));
+        waitFor(() -> busy.getSendInProgressMs() > 0 || busy.getQueueDepth() == 0);
+        for (int i = 1; i <= 5; i++) {
+            busy.sendMessage(frame("sub-0", "/topic/alerts", null, "alert-" + i));
+        }
+        // Queued on the same writer thread behind the busy session's turn
+        waiting.sendMessage(frame("sub-0", "/topic/alerts", null, "other"));
+
+        slowClient.countDown();
+        waitFor(() -> written.size() == 7);
+
+        assertEquals(List.of("alert-0", "alert-1", "other", "alert-2", "alert-3", "alert-4", "alert-5"),
+                written.stream().map(SessionOutboundQueueTest::body).toList());
+    }
+
+    private static TextMessage frame(String subscription, String destination, String entity, String body) {
+        StringBuilder frame = new StringBuilder("MESSAGE\n")
+                .append("destination:").append(destination).append('\n')
+                .append("content-type:application/json\n")
+                .append("subscription:").append(subscription).append('\n');
+        if (entity != null) {
+            frame.append(SessionOutboundQueue.ENTITY_HEADER).append(':').append(entity).append('\n');
+        }
+        frame.append("message-id:").append(body).append("\n\n").append(body).append('\u0000');
+        return new TextMessage(frame.toString());
+    }
+
+    private static String body(String frame) {
+        if (frame.startsWith("RECEIPT")) {
+            return "RECEIPT";
+        }
+        return frame.substring(frame.indexOf("\n\n") + 2, frame.length() - 1);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phamnam.tracking_vessel_flight.service.realtime.backpressure.SessionOutboundQueue;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Cluster envelope without Redis: what one node publishes is handed to
+ * another node's listener directly
+ */
+class ClusterFanoutEnvelopeTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final LocalSubscriptionIndex webSocketIndex = new LocalSubscriptionIndex();
+    private final List<Message<?>> delivered = new CopyOnWriteArrayList<>();
+    private final ClusterFanoutService ingest = node("ingest", new LocalSubscriptionIndex(),
+            new CopyOnWriteArrayList<>());
+    private final ClusterFanoutService webSocket = node("websocket", webSocketIndex, delivered);
+
+    @Test
+    void sendPosition_ReceivingNodeDeliversThePublishedBytesUnchanged() throws Exception {
+        webSocketIndex.subscribe("s1", "sub-0", "/topic/aircraft/positions");
+        webSocketIndex.subscribe("s2", "sub-0", "/topic/area/area_21.000000_22.000000_105.000000_106.000000");
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("hexident", "888123");
+        payload.put("callsign", "VN \"123\" ☂");
+        payload.put("altitude", 1200);
+        payload.put("squawk", null);
+
+        ingest.sendPosition("aircraft", "888123", 21.5, 105.5, payload, "/topic/aircraft/positions",
+                "/topic/area/area_21.000000_22.000000_105.000000_106.000000", "/topic/aircraft/888123");
+        ingest.flush();
+        webSocket.onMessage(published());
+
+        assertEquals(2, delivered.size());
+        assertArrayEquals(objectMapper.writeValueAsBytes(payload), (byte[]) delivered.get(0).getPayload());
+        // One byte[] for both subscribed destinations
+        assertSame(delivered.get(0).getPayload(), delivered.get(1).getPayload());
+        assertEquals("aircraft/888123", SimpMessageHeaderAccessor.wrap(delivered.get(0))
+                .getFirstNativeHeader(SessionOutboundQueue.ENTITY_HEADER));
+        assertEquals(1L, webSocket.getStatistics().get("skippedNoSubscriber"));
+        // Bytes on the wire, not UTF-16 chars of the envelope
+        assertEquals((long) published().getBody().length, ingest.getStatistics().get("bytesPublished"));
+    }
+
+    @Test
+    void flush_EncodesEachPayloadOnceAcrossNodes() {
+        webSocketIndex.subscribe("s1", "sub-0", "/topic/vessels/positions");
+        for (int i = 0; i < 3; i++) {
+            ingest.sendPosition("vessel", "57400000" + i, 10.5, 106.7, Map.of("speed", 12.5 + i),
+                    "/topic/vessels/positions");
+        }
+        ingest.flush();
+        webSocket.onMessage(published());
+        // Close the serialization tick on both nodes
+        ingest.flush();
+        webSocket.flush();
+
+        Map<String, Object> publisher = ingest.getStatistics();
+        assertEquals(3L, publisher.get("payloadsEncoded"));
+        assertEquals(1L, publisher.get("messagesPublished"));
+        Map<String, Object> receiver = webSocket.getStatistics();
+        assertEquals(0L, receiver.get("payloadsEncoded"));
+        assertEquals(3L, receiver.get("payloadsForwarded"));
+        assertEquals(3, delivered.size());
+        // The closed tick holds the publisher's payload and envelope encoding
+        assertEquals(1L, ((Map<?, ?>) publisher.get("serializationPerTick")).get("count"));
+        assertEquals(0L, ((Map<?, ?>) receiver.get("serializationPerTick")).get("count"));
+    }
+
+    private DefaultMessage published() {
+        ArgumentCaptor<String> channel = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object> body = ArgumentCaptor.forClass(Object.class);
+        verify(redisTemplate).convertAndSend(channel.capture(), body.capture());
+        return new DefaultMessage(channel.getValue().getBytes(StandardCharsets.UTF_8),
+                ((String) body.getValue()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ClusterFanoutService node(String nodeId, LocalSubscriptionIndex index, List<Message<?>> sink) {
+        ClusterFanoutService fanout = new ClusterFanoutService(
+                new SimpMessagingTemplate((message, timeout) -> sink.add(message)), redisTemplate, null,
+                objectMapper, index);
+        ReflectionTestUtils.setField(fanout, "enabled", true);
+        ReflectionTestUtils.setField(fanout, "nodeId", nodeId);
+        return fanout;
+    }
+}
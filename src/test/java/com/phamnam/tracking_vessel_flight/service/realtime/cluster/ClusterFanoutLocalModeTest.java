@@ -0,0 +1,61 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phamnam.tracking_vessel_flight.service.realtime.backpressure.SessionOutboundQueue;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fan-out disabled: frames go straight to the local broker, encoded once
+ */
+class ClusterFanoutLocalModeTest {
+
+    private final LocalSubscriptionIndex index = new LocalSubscriptionIndex();
+    private final List<Message<?>> delivered = new CopyOnWriteArrayList<>();
+    private final ClusterFanoutService fanout = new ClusterFanoutService(
+            new SimpMessagingTemplate((message, timeout) -> delivered.add(message)), null, null,
+            new ObjectMapper(), index);
+
+    @Test
+    void sendPosition_EncodesOnceForAllSubscribedDestinations() {
+        index.subscribe("s1", "sub-0", "/topic/aircraft/positions");
+        index.subscribe("s2", "sub-0", "/topic/area/area_21.000000_22.000000_105.000000_106.000000");
+
+        fanout.sendPosition("flight", "42", 21.5, 105.5, Map.of("altitude", 1000),
+                "/topic/aircraft/positions", "/topic/aircraft/42",
+                "/topic/area/area_21.000000_22.000000_105.000000_106.000000");
+
+        assertEquals(2, delivered.size());
+        // Both destinations carry the same encoded bytes
+        assertSame(delivered.get(0).getPayload(), delivered.get(1).getPayload());
+        assertEquals("{\"altitude\":1000}",
+                new String((byte[]) delivered.get(0).getPayload(), StandardCharsets.UTF_8));
+        assertEquals("flight/42", SimpMessageHeaderAccessor.wrap(delivered.get(0))
+                .getFirstNativeHeader(SessionOutboundQueue.ENTITY_HEADER));
+
+        Map<String, Object> stats = fanout.getStatistics();
+        assertEquals(1L, stats.get("payloadsEncoded"));
+        assertEquals(1L, stats.get("encodingsShared"));
+        assertEquals(1L, stats.get("skippedNoSubscriber"));
+    }
+
+    @Test
+    void send_SkipsEncodingWithoutSubscribers() {
+        fanout.send("/topic/alerts", Map.of("priority", "CRITICAL"));
+        fanout.flush();
+
+        assertTrue(delivered.isEmpty());
+        Map<String, Object> stats = fanout.getStatistics();
+        assertEquals(0L, stats.get("payloadsEncoded"));
+        assertEquals(0L, stats.get("lastTickSerializationMicros"));
+    }
+}
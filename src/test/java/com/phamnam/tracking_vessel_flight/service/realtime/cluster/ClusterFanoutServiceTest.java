@@ -0,0 +1,147 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Two WebSocket nodes sharing the local Redis (localhost:6379, as in
+ * application.properties). Skipped when no Redis is running.
+ */
+class ClusterFanoutServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final String channelPrefix = "test:ws:fanout:" + UUID.randomUUID() + ":";
+
+    private LettuceConnectionFactory connectionFactory;
+    private Node ingestNode;
+    private Node webSocketNode;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory("localhost", 6379);
+        connectionFactory.afterPropertiesSet();
+        boolean redisAvailable;
+        try (var connection = connectionFactory.getConnection()) {
+            redisAvailable = "PONG".equals(connection.ping());
+        } catch (Exception e) {
+            redisAvailable = false;
+        }
+        assumeTrue(redisAvailable, "local Redis not available");
+
+        ingestNode = new Node("ingest");
+        webSocketNode = new Node("websocket");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (ingestNode != null) {
+            ingestNode.fanout.stop();
+        }
+        if (webSocketNode != null) {
+            webSocketNode.fanout.stop();
+        }
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+
+    @Test
+    void sendPosition_ReachesSessionsOnOtherNodeAsOneCoalescedFrame() throws Exception {
+        webSocketNode.index.subscribe("s1", "sub-0", "/topic/aircraft/positions");
+
+        // Two updates of the same aircraft in one window; nobody subscribes to its own topic
+        waitFor(() -> {
+            ingestNode.fanout.sendPosition("aircraft", "888123", 21.02, 105.85, Map.of("altitude", 1000),
+                    "/topic/aircraft/positions", "/topic/aircraft/888123");
+            ingestNode.fanout.sendPosition("aircraft", "888123", 21.03, 105.86, Map.of("altitude", 1200),
+                    "/topic/aircraft/positions", "/topic/aircraft/888123");
+            ingestNode.fanout.flush();
+            return !webSocketNode.delivered.isEmpty();
+        });
+
+        Message<?> delivered = webSocketNode.delivered.get(0);
+        assertEquals("/topic/aircraft/positions", SimpMessageHeaderAccessor.getDestination(delivered.getHeaders()));
+        assertEquals(Map.of("altitude", 1200),
+                objectMapper.readValue(new String((byte[]) delivered.getPayload(), StandardCharsets.UTF_8), Map.class));
+        assertTrue(webSocketNode.delivered.stream().noneMatch(message -> "/topic/aircraft/888123"
+                .equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))));
+        // The ingest node has no local sessions
+        assertTrue(ingestNode.delivered.isEmpty());
+
+        Map<String, Object> stats = ingestNode.fanout.getStatistics();
+        assertTrue((Long) stats.get("framesCoalesced") >= 1);
+        assertEquals(0L, stats.get("publishFailures"));
+        assertTrue((Long) webSocketNode.fanout.getStatistics().get("skippedNoSubscriber") >= 1);
+        // Encoded on the ingest node only; the WebSocket node forwards those bytes
+        assertTrue((Long) stats.get("payloadsEncoded") >= 1);
+        assertEquals(0L, webSocketNode.fanout.getStatistics().get("payloadsEncoded"));
+        assertTrue((Long) webSocketNode.fanout.getStatistics().get("payloadsForwarded") >= 1);
+    }
+
+    @Test
+    void send_DeliversToPatternSubscribersOnEveryNode() throws Exception {
+        ingestNode.index.subscribe("s1", "sub-0", "/topic/alerts/**");
+        webSocketNode.index.subscribe("s2", "sub-0", "/topic/alerts/priority");
+        webSocketNode.index.subscribe("s3", "sub-0", "/topic/alerts/priority");
+        webSocketNode.index.removeSession("s3");
+
+        waitFor(() -> {
+            webSocketNode.fanout.send("/topic/alerts/priority", Map.of("priority", "CRITICAL"));
+            return !ingestNode.delivered.isEmpty() && !webSocketNode.delivered.isEmpty();
+        });
+
+        // After unsubscribing, the node skips the destination
+        ingestNode.index.unsubscribe("s1", "sub-0");
+        assertFalse(ingestNode.index.hasSubscribers("/topic/alerts/priority"));
+        assertTrue(webSocketNode.index.hasSubscribers("/topic/alerts/priority"));
+        assertEquals(1, webSocketNode.index.getSessionCount());
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        // Pub/Sub subscriptions are registered asynchronously, so the publish is retried
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(50);
+        }
+    }
+
+    private class Node {
+        final LocalSubscriptionIndex index = new LocalSubscriptionIndex();
+        final List<Message<?>> delivered = new CopyOnWriteArrayList<>();
+        final ClusterFanoutService fanout;
+
+        Node(String nodeId) {
+            SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate((message, timeout) -> {
+                delivered.add(message);
+                return true;
+            });
+            StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+            fanout = new ClusterFanoutService(messagingTemplate, redisTemplate, connectionFactory, objectMapper,
+                    index);
+            ReflectionTestUtils.setField(fanout, "enabled", true);
+            ReflectionTestUtils.setField(fanout, "nodeId", nodeId);
+            ReflectionTestUtils.setField(fanout, "channelPrefix", channelPrefix);
+            fanout.start();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalSubscriptionIndexTest {
+
+    private final LocalSubscriptionIndex index = new LocalSubscriptionIndex();
+
+    @Test
+    void entityDestination_OnlyForSubscribedEntities() {
+        index.subscribe("s1", "sub-0", "/topic/aircraft/888123");
+        index.subscribe("s2", "sub-0", "/topic/aircraft/888123");
+
+        String destination = index.entityDestination("/topic/aircraft/", "888123");
+        assertEquals("/topic/aircraft/888123", destination);
+        // The string created at subscribe time, not a new one per update
+        assertSame(destination, index.entityDestination("/topic/aircraft/", "888123"));
+        assertNull(index.entityDestination("/topic/aircraft/", "888124"));
+        assertNull(index.entityDestination("/topic/vessels/", "888123"));
+
+        index.unsubscribe("s1", "sub-0");
+        assertNotNull(index.entityDestination("/topic/aircraft/", "888123"));
+        index.removeSession("s2");
+        assertNull(index.entityDestination("/topic/aircraft/", "888123"));
+        assertEquals(0, index.getStatistics().get("subscribedEntities"));
+    }
+
+    @Test
+    void entityDestination_MatchesPatternSubscriptions() {
+        index.subscribe("s1", "sub-0", "/topic/vessels/*");
+
+        assertEquals("/topic/vessels/574001230", index.entityDestination("/topic/vessels/", "574001230"));
+        assertSame(index.entityDestination("/topic/vessels/", "574001230"),
+                index.entityDestination("/topic/vessels/", "574001230"));
+        assertNull(index.entityDestination("/topic/aircraft/", "888123"));
+    }
+
+    @Test
+    void clusterFanoutEntityDestination_CountsSkippedSends() {
+        // Fan-out disabled: nothing else is touched
+        ClusterFanoutService fanout = new ClusterFanoutService(null, null, null, null, index);
+        index.subscribe("s1", "sub-0", "/topic/aircraft/888123");
+
+        assertNotNull(fanout.entityDestination("/topic/aircraft/", 888123L));
+        assertNull(fanout.entityDestination("/topic/aircraft/", 888124L));
+        assertNull(fanout.entityDestination("/topic/aircraft/", 888125L));
+
+        Map<String, Object> stats = fanout.getStatistics();
+        assertEquals(1L, stats.get("entitySendsRouted"));
+        assertEquals(2L, stats.get("entitySendsSkipped"));
+    }
+}
@@ -0,0 +1,118 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.externalApi;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExternalHttpClientPoolTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/gzip", exchange -> {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write("{\"vessels\":[1,2,3]}".getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, compressed.size());
+            try (OutputStream body = exchange.getResponseBody()) {
+                compressed.writeTo(body);
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, 2);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write("{}".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void get_DecodesGzipAndReportsHttpErrors() throws Exception {
+        ExternalHttpClientPool.SourceClient client = client(Duration.ofSeconds(5), 2);
+
+        String body = client.get(baseUrl + "/gzip", null,
+                in -> new String(in.readAllBytes(), StandardCharsets.UTF_8)).get(5, TimeUnit.SECONDS);
+        assertEquals("{\"vessels\":[1,2,3]}", body);
+
+        ExecutionException notFound = assertThrows(ExecutionException.class,
+                () -> client.get(baseUrl + "/missing", null, in -> "unused").get(5, TimeUnit.SECONDS));
+        Throwable cause = ExternalHttpClientPool.unwrap(notFound);
+        assertTrue(cause instanceof ExternalApiHttpException http && http.isNotFound());
+        assertEquals("API endpoint not found - possibly mock service not running",
+                ExternalHttpClientPool.failureMessage(cause));
+
+        // Counters and the permit are settled before the caller's future completes
+        Map<String, Object> stats = client.getStatistics();
+        assertEquals(0, stats.get("inFlight"));
+        assertEquals(2L, stats.get("requests"));
+        assertEquals(1L, stats.get("failures"));
+    }
+
+    @Test
+    void get_RejectsPollsAboveTheConcurrencyCapAndTimesOutSlowSources() throws Exception {
+        ExternalHttpClientPool.SourceClient client = client(Duration.ofMillis(300), 1);
+
+        CompletableFuture<String> slow = client.get(baseUrl + "/slow", null, in -> "late");
+        CompletableFuture<String> rejected = client.get(baseUrl + "/gzip", null, in -> "unused");
+
+        ExecutionException busy = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertTrue(ExternalHttpClientPool.isBusy(ExternalHttpClientPool.unwrap(busy)));
+
+        ExecutionException timedOut = assertThrows(ExecutionException.class, () -> slow.get(5, TimeUnit.SECONDS));
+        assertTrue(ExternalHttpClientPool.isTimeout(ExternalHttpClientPool.unwrap(timedOut)));
+
+        Map<String, Object> stats = client.getStatistics();
+        assertEquals(1L, stats.get("rejectedBusy"));
+        assertEquals(1L, stats.get("timeouts"));
+
+        // The timed-out request gave its permit back
+        assertEquals("ok", client.get(baseUrl + "/gzip", null, in -> "ok").get(5, TimeUnit.SECONDS));
+    }
+
+    private static ExternalHttpClientPool.SourceClient client(Duration timeout, int maxConcurrency) {
+        return new ExternalHttpClientPool.SourceClient("test", HttpClient.Version.HTTP_1_1, "TrackingSystem/1.0",
+                timeout, Duration.ofSeconds(1), maxConcurrency);
+    }
+}
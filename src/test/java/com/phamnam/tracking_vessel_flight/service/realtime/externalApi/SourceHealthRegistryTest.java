@@ -0,0 +1,184 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.externalApi;
+
+import com.phamnam.tracking_vessel_flight.models.DataSource;
+import com.phamnam.tracking_vessel_flight.models.DataSourceStatus;
+import com.phamnam.tracking_vessel_flight.models.enums.DataSourceType;
+import com.phamnam.tracking_vessel_flight.repository.DataSourceRepository;
+import com.phamnam.tracking_vessel_flight.repository.DataSourceStatusRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SourceHealthRegistryTest {
+
+    private static final SourceHealthRegistry.SourceIdentity ADSB = new SourceHealthRegistry.SourceIdentity(
+            "adsbexchange", DataSourceType.ADS_B.getDisplayName(), DataSourceType.ADS_B, 2);
+
+    @Mock
+    private DataSourceRepository dataSourceRepository;
+
+    @Mock
+    private DataSourceStatusRepository dataSourceStatusRepository;
+
+    private MutableClock clock;
+    private SourceHealthRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        registry = new SourceHealthRegistry(dataSourceRepository, dataSourceStatusRepository, clock);
+    }
+
+    @Test
+    void circuitOpensAfterThresholdAndHalfOpenTrialDecides() {
+        assertTrue(registry.isAvailable("adsbexchange"));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(registry.allowRequest("adsbexchange"));
+            registry.recordFailure(ADSB, new IOException("connection refused"), 10);
+        }
+        assertEquals(SourceHealthRegistry.CircuitState.OPEN, registry.getState("adsbexchange"));
+        assertFalse(registry.isAvailable("adsbexchange"));
+        assertFalse(registry.allowRequest("adsbexchange"));
+
+        // Open period over: exactly one trial goes out
+        clock.advance(Duration.ofMillis(30000));
+        assertTrue(registry.allowRequest("adsbexchange"));
+        assertEquals(SourceHealthRegistry.CircuitState.HALF_OPEN, registry.getState("adsbexchange"));
+        assertFalse(registry.allowRequest("adsbexchange"));
+
+        // Failed trial re-opens for twice as long
+        registry.recordFailure(ADSB, new ExternalApiHttpException("adsbexchange", 503), 10);
+        clock.advance(Duration.ofMillis(59999));
+        assertFalse(registry.allowRequest("adsbexchange"));
+        clock.advance(Duration.ofMillis(1));
+        assertTrue(registry.allowRequest("adsbexchange"));
+
+        registry.recordSuccess(ADSB, 42, 15);
+        assertEquals(SourceHealthRegistry.CircuitState.CLOSED, registry.getState("adsbexchange"));
+        assertTrue(registry.allowRequest("adsbexchange"));
+        assertTrue(registry.allowRequest("adsbexchange"));
+    }
+
+    @Test
+    void failuresOfPollsInFlightDoNotExtendTheOpenPeriod() {
+        // Five polls go out while the circuit is still closed
+        for (int i = 0; i < 5; i++) {
+            assertTrue(registry.allowRequest("adsbexchange"));
+        }
+        for (int i = 0; i < 3; i++) {
+            registry.recordFailure(ADSB, new IOException("connection refused"), 10);
+        }
+        assertEquals(SourceHealthRegistry.CircuitState.OPEN, registry.getState("adsbexchange"));
+
+        // The other two fail later, while open: counted, no re-escalation
+        clock.advance(Duration.ofMillis(20000));
+        registry.recordFailure(ADSB, new IOException("read timed out"), 5000);
+        registry.recordFailure(ADSB, new IOException("read timed out"), 5000);
+        Map<?, ?> stats = (Map<?, ?>) ((Map<?, ?>) registry.getStatistics().get("sources")).get("adsbexchange");
+        assertEquals(5, stats.get("consecutiveFailures"));
+        assertEquals(5L, stats.get("failures"));
+        assertEquals(10000L, stats.get("openForMs"));
+
+        // Still the first 30s open period, not one doubled from the late failures
+        clock.advance(Duration.ofMillis(9999));
+        assertFalse(registry.allowRequest("adsbexchange"));
+        clock.advance(Duration.ofMillis(1));
+        assertTrue(registry.allowRequest("adsbexchange"));
+
+        // The first failed trial re-opens for 60s, the second doubling step
+        registry.recordFailure(ADSB, new ExternalApiHttpException("adsbexchange", 503), 10);
+        clock.advance(Duration.ofMillis(59999));
+        assertFalse(registry.allowRequest("adsbexchange"));
+        clock.advance(Duration.ofMillis(1));
+        assertTrue(registry.allowRequest("adsbexchange"));
+    }
+
+    @Test
+    void flushWritesQueuedOutcomesInOneBatch() {
+        when(dataSourceRepository.findAll()).thenReturn(List.of());
+        when(dataSourceRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        registry.recordSuccess(ADSB, 42, 15);
+        registry.recordFailure(ADSB, new ExternalApiHttpException("adsbexchange", 429), 20);
+        registry.recordSuccess(ADSB, 8, 25);
+        registry.flush();
+
+        ArgumentCaptor<List<DataSource>> sources = captor();
+        verify(dataSourceRepository).saveAll(sources.capture());
+        DataSource dataSource = sources.getValue().get(0);
+        assertEquals(1, sources.getValue().size());
+        assertEquals(3L, dataSource.getTotalRequests());
+        assertEquals(2L, dataSource.getSuccessfulRequests());
+        assertEquals(1L, dataSource.getFailedRequests());
+        assertEquals(50L, dataSource.getDataPointsReceived());
+        assertEquals(20.0, dataSource.getAverageResponseTime());
+        assertEquals(0, dataSource.getConsecutiveFailures());
+        assertTrue(dataSource.getIsActive());
+
+        ArgumentCaptor<List<DataSourceStatus>> rows = captor();
+        verify(dataSourceStatusRepository).saveAll(rows.capture());
+        assertEquals(List.of(DataSourceStatus.Status.SUCCESS, DataSourceStatus.Status.RATE_LIMITED,
+                DataSourceStatus.Status.SUCCESS), rows.getValue().stream().map(DataSourceStatus::getStatus).toList());
+        assertEquals(429, rows.getValue().get(1).getHttpStatusCode());
+
+        // Nothing queued: no database round trip, and the entity cache is reused
+        registry.flush();
+        registry.recordSuccess(ADSB, 1, 5);
+        registry.flush();
+        verify(dataSourceRepository, times(1)).findAll();
+        verify(dataSourceRepository, times(2)).saveAll(anyList());
+        verify(dataSourceRepository, never()).save(any());
+        verify(dataSourceStatusRepository, never()).save(any());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <T> ArgumentCaptor<List<T>> captor() {
+        return (ArgumentCaptor) ArgumentCaptor.forClass(List.class);
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.externalApi.mapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phamnam.tracking_vessel_flight.dto.response.external.AdsbExchangeResponse;
+import com.phamnam.tracking_vessel_flight.dto.response.external.MarineTrafficVesselData;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Streaming parser against the tree-model path (DTO binding, then
+ * ExternalApiMapper) on provider-sized payloads. Not part of the regular
+ * test run; ./gradlew benchmark runs it and prints the timings.
+ */
+@Tag("benchmark")
+class TrackingResponseParserBenchmark {
+
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExternalApiMapper externalApiMapper = new ExternalApiMapper();
+    private final TrackingResponseParser parser = new TrackingResponseParser();
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1_000, 10_000, 50_000 })
+    void marineTraffic(int vessels) throws IOException {
+        byte[] body = TrackingResponseParserTest.marineTrafficPayload(vessels).getBytes(StandardCharsets.UTF_8);
+
+        Measurement dtos = measure(() -> Arrays
+                .stream(objectMapper.readValue(new ByteArrayInputStream(body), MarineTrafficVesselData[].class))
+                .map(externalApiMapper::fromMarineTraffic).toList().size());
+        Measurement streaming = measure(() -> parser.parseMarineTraffic(new ByteArrayInputStream(body)).size());
+
+        assertEquals(vessels, dtos.results());
+        assertEquals(vessels, streaming.results());
+        report("MarineTraffic", vessels, body, dtos, streaming);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1_000, 10_000, 50_000 })
+    void adsbExchange(int aircraft) throws IOException {
+        byte[] body = TrackingResponseParserTest.adsbExchangePayload(aircraft).getBytes(StandardCharsets.UTF_8);
+
+        Measurement dtos = measure(() -> objectMapper
+                .readValue(new ByteArrayInputStream(body), AdsbExchangeResponse.class)
+                .getActualAircraft().stream().map(externalApiMapper::fromAdsbExchange).toList().size());
+        Measurement streaming = measure(() -> parser.parseAdsbExchange(new ByteArrayInputStream(body)).size());
+
+        assertEquals(aircraft, dtos.results());
+        assertEquals(aircraft, streaming.results());
+        report("ADS-B Exchange", aircraft, body, dtos, streaming);
+    }
+
+    private static void report(String provider, int targets, byte[] body, Measurement dtos,
+            Measurement streaming) {
+        System.out.printf(Locale.ROOT, "%-14s %,6d targets (%,d KB): tree model %s | streaming %s%n", provider,
+                targets, body.length / 1024, dtos, streaming);
+    }
+
+    // ============================================================================
+    // MEASUREMENT
+    // ============================================================================
+
+    @FunctionalInterface
+    private interface Parse {
+        int run() throws IOException;
+    }
+
+    private record Measurement(int results, double medianMillis, double allocatedMb) {
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%.2f ms, %.1f MB allocated", medianMillis, allocatedMb);
+        }
+    }
+
+    /**
+     * Median of the measured runs after warm-up; allocation per run from the
+     * HotSpot thread counters when available
+     */
+    private static Measurement measure(Parse parse) throws IOException {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            parse.run();
+        }
+        int results = 0;
+        double[] millis = new double[MEASURED_RUNS];
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            results = parse.run();
+            millis[i] = (System.nanoTime() - start) / 1e6;
+        }
+        long allocatedAfter = allocatedBytes();
+        Arrays.sort(millis);
+        double allocatedMb = allocatedBefore < 0 || allocatedAfter < 0 ? Double.NaN
+                : (allocatedAfter - allocatedBefore) / (1024.0 * 1024.0) / MEASURED_RUNS;
+        return new Measurement(results, millis[MEASURED_RUNS / 2], allocatedMb);
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads) {
+            return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,145 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.externalApi.mapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phamnam.tracking_vessel_flight.dto.request.AircraftTrackingRequest;
+import com.phamnam.tracking_vessel_flight.dto.request.VesselTrackingRequest;
+import com.phamnam.tracking_vessel_flight.dto.response.external.AdsbExchangeResponse;
+import com.phamnam.tracking_vessel_flight.dto.response.external.ChinaportsResponse;
+import com.phamnam.tracking_vessel_flight.dto.response.external.MarineTrafficVesselData;
+import com.phamnam.tracking_vessel_flight.dto.response.external.VesselFinderResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrackingResponseParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExternalApiMapper externalApiMapper = new ExternalApiMapper();
+    private final TrackingResponseParser parser = new TrackingResponseParser();
+
+    @Test
+    void parse_MatchesTheDtoMappingForEveryVesselProvider() throws IOException {
+        String marineTraffic = marineTrafficPayload(25);
+        List<VesselTrackingRequest> viaDtos = Arrays
+                .stream(objectMapper.readValue(marineTraffic, MarineTrafficVesselData[].class))
+                .map(externalApiMapper::fromMarineTraffic).toList();
+        assertEquals(withoutTimestamps(viaDtos), withoutTimestamps(parser.parseMarineTraffic(stream(marineTraffic))));
+        // The same vessels wrapped in an object
+        assertEquals(withoutTimestamps(viaDtos),
+                withoutTimestamps(parser.parseMarineTraffic(stream("{\"status\":\"ok\",\"vessels\":" + marineTraffic
+                        + ",\"totalCount\":25}"))));
+
+        String vesselFinder = "{\"vessels\":[{\"MMSI\":574000001,\"lat\":10.5,\"lng\":106.7,\"sog\":\"12.5\","
+                + "\"cog\":90.9,\"navstat\":\"Moored\",\"name\":\"SAIGON STAR\",\"country\":\"Vietnam\","
+                + "\"a\":120,\"draft\":8.5,\"dest\":\"HAIPHONG\",\"eta\":1735689600},"
+                + "{\"mmsi\":\"574000002\",\"MMSI\":\"ignored\",\"latitude\":11.0,\"lat\":99.0,\"lon\":107.1,"
+                + "\"speed\":null,\"sog\":3.0,\"flag\":\"VN\",\"country\":\"Vietnam\",\"loa\":90}]}";
+        assertEquals(withoutTimestamps(objectMapper.readValue(vesselFinder, VesselFinderResponse.class).getVessels()
+                .stream().map(externalApiMapper::fromVesselFinder).toList()),
+                withoutTimestamps(parser.parseVesselFinder(stream(vesselFinder))));
+
+        String chinaports = "{\"vessels\":[{\"mmsi\":\"413000001\",\"lat\":22.3,\"lon\":114.1,\"flag\":null,"
+                + "\"extra\":{\"nested\":[1,2]}},{\"mmsi\":\"413000002\",\"lat\":22.4,\"lon\":114.2,\"flag\":\"PA\"}],"
+                + "\"totalCount\":2}";
+        List<VesselTrackingRequest> chinaportsVessels = parser.parseChinaports(stream(chinaports));
+        assertEquals(withoutTimestamps(objectMapper.readValue(chinaports, ChinaportsResponse.class).getVessels()
+                .stream().map(externalApiMapper::fromChinaports).toList()), withoutTimestamps(chinaportsVessels));
+        assertEquals("CN", chinaportsVessels.get(0).getFlag());
+        assertSame(chinaportsVessels.get(0).getTimestamp(), chinaportsVessels.get(1).getTimestamp(),
+                "one receive time per response");
+    }
+
+    @Test
+    void parse_MatchesTheDtoMappingForAircraftAndSkipsFlightRadar24Metadata() throws IOException {
+        String adsb = adsbExchangePayload(25);
+        assertEquals(withoutAircraftTimestamps(objectMapper.readValue(adsb, AdsbExchangeResponse.class)
+                .getActualAircraft().stream().map(externalApiMapper::fromAdsbExchange).toList()),
+                withoutAircraftTimestamps(parser.parseAdsbExchange(stream(adsb))));
+
+        String flightRadar24 = "{\"data\":{\"full_count\":2,\"version\":4,\"stats\":{\"total\":{\"ads-b\":2}},"
+                + "\"ABC123\":[\"ABC123\",10.82,106.63,90,35000,480,\" 7700\",\"T-VVTS1\",\"A320\",\"VN-A123\","
+                + "1735689600,\"SGN\",\"HAN\",\"VN123\",0,-64,\"HVN123 \",\"ADSB\"],"
+                + "\"DEF456\":[\"DEF456\",\"16.05\",108.2,180.6,null,450]}}";
+        List<AircraftTrackingRequest> aircraft = parser.parseFlightRadar24(stream(flightRadar24));
+
+        assertEquals(2, aircraft.size());
+        AircraftTrackingRequest first = aircraft.get(0);
+        assertEquals("ABC123", first.getHexident());
+        assertEquals(90, first.getTrack());
+        assertEquals("7700", first.getSquawk());
+        assertTrue(first.getEmergency());
+        assertEquals("HVN123", first.getCallsign());
+        assertEquals(false, first.getOnGround());
+        assertEquals(-64, first.getVerticalRate());
+        assertEquals("SGN", first.getOrigin());
+        AircraftTrackingRequest second = aircraft.get(1);
+        assertEquals(16.05, second.getLatitude());
+        assertEquals(180, second.getTrack());
+        assertNull(second.getAltitude());
+        assertFalse(second.getEmergency());
+
+        assertTrue(parser.parseFlightRadar24(stream("[]")).isEmpty());
+        assertThrows(IOException.class, () -> parser.parseAdsbExchange(stream(adsb.substring(0, adsb.length() / 2))),
+                "a truncated body fails the fetch instead of returning a partial list");
+    }
+
+    // ============================================================================
+    // PAYLOADS
+    // ============================================================================
+
+    // Shapes follow simulator-server's /api/mock endpoints; also used by
+    // TrackingResponseParserBenchmark
+
+    static String marineTrafficPayload(int vessels) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < vessels; i++) {
+            json.append(i == 0 ? "" : ",").append(String.format(Locale.ROOT,
+                    "{\"MMSI\":\"%d\",\"LAT\":%.6f,\"LON\":%.6f,\"SPEED\":%.2f,\"COURSE\":%d,\"HEADING\":%d,"
+                            + "\"STATUS\":\"Under way using engine\",\"SHIPNAME\":\"VESSEL %d\","
+                            + "\"SHIPTYPE\":\"Container Ship\",\"IMO\":\"%d\",\"CALLSIGN\":\"XV%04d\","
+                            + "\"FLAG\":\"VN\",\"LENGTH\":%d,\"WIDTH\":32,\"DRAUGHT\":11.5,"
+                            + "\"DESTINATION\":\"HAIPHONG\",\"ETA\":\"06-01 12:00\"}",
+                    574_000_000 + i, 8.5 + (i % 1500) * 0.01, 102.0 + (i % 750) * 0.01, 12 + (i % 80) * 0.1,
+                    i % 360, (i + 5) % 360, i, 9_000_000 + i, i % 10_000, 100 + i % 250));
+        }
+        return json.append(']').toString();
+    }
+
+    static String adsbExchangePayload(int aircraft) {
+        StringBuilder json = new StringBuilder("{\"now\":1735689600,\"messages\":123456,\"aircraft\":[");
+        for (int i = 0; i < aircraft; i++) {
+            json.append(i == 0 ? "" : ",").append(String.format(Locale.ROOT,
+                    "{\"hex\":\"%06x\",\"flight\":\"VN%04d  \",\"r\":\"VN-A%03d\",\"t\":\"A321\",\"lat\":%.6f,"
+                            + "\"lon\":%.6f,\"alt_baro\":%d,\"gs\":%.1f,\"track\":%.1f,\"baro_rate\":%d,"
+                            + "\"squawk\":\"7000\",\"emergency\":\"none\",\"category\":\"A3\",\"nav_qnh\":1013.2,"
+                            + "\"nav_altitude_mcp\":35008,\"nav_heading\":%.1f,\"nav_modes\":[\"autopilot\",\"tcas\"],"
+                            + "\"nic\":8,\"rc\":186,\"seen_pos\":1.2,\"version\":2,\"nic_baro\":1,\"nac_p\":10,"
+                            + "\"nac_v\":2,\"sil\":3,\"sil_type\":\"perhour\",\"gva\":2,\"sda\":2,\"alert\":false,"
+                            + "\"spi\":false,\"mlat\":[],\"tisb\":[],\"messages\":%d,\"seen\":0.4,\"rssi\":-21.5,"
+                            + "\"type\":\"adsb_icao\"}",
+                    0x880000 + i, i % 10_000, i % 1000, 8.5 + (i % 1500) * 0.01, 102.0 + (i % 750) * 0.01,
+                    (i % 50) * 800, 250 + (i % 300) * 1.0, (i % 3600) / 10.0, (i % 40 - 20) * 64,
+                    (i % 3600) / 10.0, 1000 + i));
+        }
+        return json.append("]}").toString();
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<VesselTrackingRequest> withoutTimestamps(List<VesselTrackingRequest> vessels) {
+        return vessels.stream().map(vessel -> vessel.toBuilder().timestamp(null).build()).toList();
+    }
+
+    private static List<AircraftTrackingRequest> withoutAircraftTimestamps(List<AircraftTrackingRequest> aircraft) {
+        return aircraft.stream().map(plane -> plane.toBuilder().timestamp(null).build()).toList();
+    }
+}
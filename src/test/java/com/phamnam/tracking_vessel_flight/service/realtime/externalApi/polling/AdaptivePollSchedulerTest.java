@@ -0,0 +1,224 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.externalApi.polling;
+
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.ExternalApiHttpException;
+import com.phamnam.tracking_vessel_flight.service.realtime.externalApi.ExternalHttpClientPool;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptivePollSchedulerTest {
+
+    private record Target(String id, Double latitude, Double longitude) {
+    }
+
+    private record Outcome(int count, Throwable error) {
+    }
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger tileRequests = new AtomicInteger();
+    private volatile String version = "v1";
+    private volatile String payload = "A,10.0,105.0\nB,20.0,105.0\n";
+
+    private MutableClock clock;
+    private ExternalHttpClientPool pool;
+    private AdaptivePollScheduler scheduler;
+    private final List<Outcome> outcomes = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/tiles", exchange -> {
+            tileRequests.incrementAndGet();
+            String etag = "\"" + version + "\"";
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            respond(exchange, 200, payload);
+        });
+        server.createContext("/limited", exchange -> {
+            exchange.getResponseHeaders().add("X-RateLimit-Remaining", "0");
+            exchange.getResponseHeaders().add("X-RateLimit-Reset", "60");
+            respond(exchange, 200, "C,12.0,104.0\n");
+        });
+        server.createContext("/throttled", exchange -> {
+            exchange.getResponseHeaders().add("Retry-After", "120");
+            exchange.sendResponseHeaders(429, -1);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("external.api.tiles.tile-rows", "2")
+                .withProperty("external.api.tiles.poll-interval", "10000")
+                .withProperty("external.api.limited.poll-interval", "10000")
+                .withProperty("external.api.throttled.poll-interval", "10000");
+        pool = new ExternalHttpClientPool(environment);
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        scheduler = new AdaptivePollScheduler(pool, environment, clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void pollDueTiles_PollsEachTileOnItsOwnIntervalAndSkipsUnchangedTiles() throws Exception {
+        TiledSource<Target> source = source("tiles", "/tiles");
+
+        // Both tiles are due; the server ignores bounds, so each tile keeps only its own target
+        List<Target> first = poll(source);
+        assertEquals(List.of("A", "B"), ids(first));
+        assertEquals(2, tileRequests.get());
+        assertEquals(1, outcomes.size());
+        assertEquals(2, outcomes.get(0).count());
+        assertNull(outcomes.get(0).error());
+
+        // Nothing is due yet: no request at all
+        assertTrue(poll(source).isEmpty());
+        assertEquals(2, tileRequests.get());
+
+        // One target, all new: activity 0.51 -> (10000 + 9900) / 2
+        assertEquals(9950L, tile("tiles", "r0c0").get("intervalMs"));
+
+        // Same ETag: 304 for both tiles, nothing to process, and the tiles back off
+        clock.advance(Duration.ofMillis(9950));
+        assertTrue(poll(source).isEmpty());
+        assertEquals(4, tileRequests.get());
+        Map<String, Object> unchanged = tile("tiles", "r0c0");
+        assertEquals(1L, unchanged.get("notModified"));
+        assertEquals(14925L, unchanged.get("intervalMs"));
+        assertEquals(0L, unchanged.get("ageMs"));
+
+        // New data in the northern tile only shows up once that tile is due again
+        version = "v2";
+        payload = "A,10.0,105.0\nB,20.5,105.5\n";
+        clock.advance(Duration.ofMillis(14925));
+        assertEquals(List.of("A", "B"), ids(poll(source)));
+        assertEquals(0.0, tile("tiles", "r0c0").get("changeRatio"));
+        assertEquals(1.0, tile("tiles", "r1c0").get("changeRatio"));
+    }
+
+    @Test
+    void pollDueTiles_HonoursRateLimitHeadersAndRetryAfter() throws Exception {
+        TiledSource<Target> limited = source("limited", "/limited");
+        assertEquals(List.of("C"), ids(poll(limited)));
+        Map<String, Object> quotaSpent = tile("limited", "r0c0");
+        assertEquals(60000L, quotaSpent.get("nextPollInMs"));
+        assertEquals(1L, quotaSpent.get("rateLimited"));
+        assertEquals(0L, quotaSpent.get("rateLimitRemaining"));
+
+        TiledSource<Target> throttled = source("throttled", "/throttled");
+        assertTrue(poll(throttled).isEmpty());
+        Outcome outcome = outcomes.get(outcomes.size() - 1);
+        assertTrue(outcome.error() instanceof ExternalApiHttpException http && http.isThrottled());
+        Map<String, Object> backingOff = tile("throttled", "r0c0");
+        assertEquals(120000L, backingOff.get("nextPollInMs"));
+        assertEquals(1L, backingOff.get("failures"));
+
+        clock.advance(Duration.ofSeconds(60));
+        assertTrue(poll(throttled).isEmpty());
+        assertEquals(1L, tile("throttled", "r0c0").get("failures"));
+    }
+
+    private TiledSource<Target> source(String name, String path) {
+        return TiledSource.<Target>builder()
+                .name(name)
+                .enabled(true)
+                .urlBuilder(tile -> baseUrl + path + "?tile=" + tile.id())
+                .reader(body -> {
+                    List<Target> targets = new ArrayList<>();
+                    for (String line : new String(body.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                        if (!line.isBlank()) {
+                            String[] fields = line.split(",");
+                            targets.add(new Target(fields[0], Double.valueOf(fields[1]), Double.valueOf(fields[2])));
+                        }
+                    }
+                    return targets;
+                })
+                .idExtractor(Target::id)
+                .latitudeExtractor(Target::latitude)
+                .longitudeExtractor(Target::longitude)
+                .outcomeRecorder((count, error, responseTimeMs) -> outcomes.add(new Outcome(count, error)))
+                .build();
+    }
+
+    private List<Target> poll(TiledSource<Target> source) throws Exception {
+        return scheduler.pollDueTiles(source).get(5, TimeUnit.SECONDS);
+    }
+
+    private static List<String> ids(List<Target> targets) {
+        return targets.stream().map(Target::id).sorted().toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> tile(String source, String tileId) {
+        Map<String, Object> sources = (Map<String, Object>) scheduler.getStatistics().get("sources");
+        Map<String, Object> tiles = (Map<String, Object>) ((Map<String, Object>) sources.get(source)).get("tiles");
+        return (Map<String, Object>) tiles.get(tileId);
+    }
+
+    private static void respond(com.sun.net.httpserver.HttpExchange exchange, int status, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
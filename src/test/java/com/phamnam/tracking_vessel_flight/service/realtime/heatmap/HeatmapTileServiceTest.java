@@ -0,0 +1,184 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.heatmap;
+
+import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
+import com.phamnam.tracking_vessel_flight.util.TileMath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeatmapTileServiceTest {
+
+    // Hai Phong port area
+    private static final double LATITUDE = 20.85;
+    private static final double LONGITUDE = 106.68;
+
+    private MutableClock clock;
+    private HeatmapTileService service;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        // Live tiles only; history needs the database
+        service = new HeatmapTileService(null, clock);
+    }
+
+    @Test
+    void liveTiles_PreserveTotalsAcrossZooms() {
+        Random random = new Random(11);
+        for (int i = 0; i < 5_000; i++) {
+            double latitude = LATITUDE + random.nextGaussian() * 0.05;
+            double longitude = LONGITUDE + random.nextGaussian() * 0.05;
+            service.record(i % 3 == 0 ? EntityType.VESSEL : EntityType.AIRCRAFT, latitude, longitude, now());
+        }
+
+        for (int z = 0; z <= 8; z++) {
+            long total = 0;
+            // The cluster spans at most a 3x3 block of tiles around the center
+            int centerX = (int) TileMath.worldX(LONGITUDE, z);
+            int centerY = (int) TileMath.worldY(LATITUDE, z);
+            for (int x = centerX - 1; x <= centerX + 1; x++) {
+                for (int y = centerY - 1; y <= centerY + 1; y++) {
+                    if (TileMath.isValidTile(z, x, y, HeatmapTileService.MAX_ZOOM)) {
+                        total += service.renderLive(HeatmapLayer.ALL, z, x, y).getTotal();
+                    }
+                }
+            }
+            assertEquals(5_000, total, "zoom " + z);
+        }
+
+        int x = (int) TileMath.worldX(LONGITUDE, 4);
+        int y = (int) TileMath.worldY(LATITUDE, 4);
+        long aircraft = service.renderLive(HeatmapLayer.AIRCRAFT, 4, x, y).getTotal();
+        long vessels = service.renderLive(HeatmapLayer.VESSEL, 4, x, y).getTotal();
+        assertEquals(1_667, vessels);
+        assertEquals(5_000, aircraft + vessels);
+    }
+
+    @Test
+    void liveTiles_UpsampleBeyondBaseZoom() {
+        service.record(EntityType.AIRCRAFT, LATITUDE, LONGITUDE, now());
+
+        int z = HeatmapTileService.BASE_ZOOM + 2;
+        HeatmapTile tile = service.renderLive(HeatmapLayer.ALL, z, (int) TileMath.worldX(LONGITUDE, z),
+                (int) TileMath.worldY(LATITUDE, z));
+
+        // One zoom-12 bin covers a 4x4 block at zoom 14
+        assertEquals(16, tile.getTotal());
+        assertEquals(1, tile.getMax());
+    }
+
+    @Test
+    void liveTiles_DropPositionsOutsideTheWindow() {
+        service.record(EntityType.VESSEL, LATITUDE, LONGITUDE, now());
+        int x = (int) TileMath.worldX(LONGITUDE, 6);
+        int y = (int) TileMath.worldY(LATITUDE, 6);
+        assertEquals(1, service.renderLive(HeatmapLayer.VESSEL, 6, x, y).getTotal());
+
+        clock.advance(Duration.ofMinutes(16));
+        assertEquals(0, service.renderLive(HeatmapLayer.VESSEL, 6, x, y).getTotal());
+    }
+
+    @Test
+    void binaryEncoding_RoundTrips() {
+        HeatmapTile tile = new HeatmapTile(9);
+        tile.add(0, 0, 1);
+        tile.add(5, 0, 300);
+        tile.add(63, 63, 1_000_000);
+
+        byte[] encoded = tile.toBinary();
+        HeatmapTile decoded = HeatmapTile.fromBinary(encoded);
+
+        assertEquals(9, decoded.getZoom());
+        assertEquals(1, decoded.get(0, 0));
+        assertEquals(300, decoded.get(5, 0));
+        assertEquals(1_000_000, decoded.get(63, 63));
+        assertEquals(tile.getTotal(), decoded.getTotal());
+        assertTrue(encoded.length < 20, "sparse tile encodes in " + encoded.length + " bytes");
+    }
+
+    @Test
+    void pngEncoding_ColorsOnlyOccupiedBins() throws Exception {
+        HeatmapTile tile = new HeatmapTile(5);
+        tile.add(10, 20, 50);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(tile.toPng()));
+
+        assertEquals(HeatmapTile.TILE_PIXELS, image.getWidth());
+        assertEquals(HeatmapTile.color(1.0), image.getRGB(10 * 4 + 1, 20 * 4 + 2));
+        assertEquals(0, image.getRGB(0, 0) >>> 24);
+    }
+
+    @Test
+    void getTile_CachesAndReusesEtag() {
+        service.record(EntityType.AIRCRAFT, LATITUDE, LONGITUDE, now());
+        int x = (int) TileMath.worldX(LONGITUDE, 7);
+        int y = (int) TileMath.worldY(LATITUDE, 7);
+
+        HeatmapTileService.RenderedTile first = service.getTile(HeatmapLayer.ALL, 7, x, y,
+                HeatmapTileService.Format.BINARY, null, null);
+        service.record(EntityType.AIRCRAFT, LATITUDE, LONGITUDE, now());
+        HeatmapTileService.RenderedTile cached = service.getTile(HeatmapLayer.ALL, 7, x, y,
+                HeatmapTileService.Format.BINARY, null, null);
+        assertSame(first, cached);
+
+        clock.advance(Duration.ofSeconds(16));
+        HeatmapTileService.RenderedTile refreshed = service.getTile(HeatmapLayer.ALL, 7, x, y,
+                HeatmapTileService.Format.BINARY, null, null);
+        assertNotEquals(first.etag(), refreshed.etag());
+        assertEquals(1L, service.getStatistics().get("cacheHits"));
+    }
+
+    @Test
+    void getTile_RejectsInvalidRequests() {
+        assertThrows(IllegalArgumentException.class, () -> service.getTile(HeatmapLayer.ALL, 3, 8, 0,
+                HeatmapTileService.Format.PNG, null, null));
+        assertThrows(IllegalArgumentException.class, () -> service.getTile(HeatmapLayer.ALL,
+                HeatmapTileService.MAX_ZOOM + 1, 0, 0, HeatmapTileService.Format.PNG, null, null));
+        assertThrows(IllegalArgumentException.class, () -> service.getTile(HeatmapLayer.ALL, 3, 1, 1,
+                HeatmapTileService.Format.PNG, now(), now().minusHours(1)));
+        assertThrows(IllegalArgumentException.class, () -> HeatmapLayer.fromPath("drones"));
+    }
+
+    private LocalDateTime now() {
+        return LocalDateTime.ofInstant(clock.instant(), clock.getZone());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
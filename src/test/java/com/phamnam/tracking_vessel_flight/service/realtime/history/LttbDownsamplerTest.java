@@ -0,0 +1,87 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.history;
+
+import com.phamnam.tracking_vessel_flight.dto.response.TrackHistoryPoint;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LttbDownsamplerTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Test
+    void downsample_KeepsExactlyThresholdPointsIncludingEndpoints() {
+        List<TrackHistoryPoint> track = straightTrack(100_000);
+
+        List<TrackHistoryPoint> sampled = downsample(track, 500);
+
+        assertEquals(500, sampled.size());
+        assertEquals(track.get(0), sampled.get(0));
+        assertEquals(track.get(track.size() - 1), sampled.get(sampled.size() - 1));
+        for (int i = 1; i < sampled.size(); i++) {
+            assertTrue(sampled.get(i).id() > sampled.get(i - 1).id(), "points stay in time order");
+        }
+    }
+
+    @Test
+    void downsample_KeepsSharpTurns() {
+        // Eastbound leg, a single 90 degree turn, then northbound
+        List<TrackHistoryPoint> track = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            track.add(point(i, 20.0, 106.0 + i * 0.001));
+        }
+        TrackHistoryPoint corner = track.get(track.size() - 1);
+        for (int i = 1; i <= 5_000; i++) {
+            track.add(point(5_000 + i, 20.0 + i * 0.001, corner.longitude()));
+        }
+
+        List<TrackHistoryPoint> sampled = downsample(track, 50);
+
+        assertEquals(50, sampled.size());
+        assertTrue(sampled.contains(corner), "turn point survives downsampling");
+    }
+
+    @Test
+    void downsample_PassesShortTracksThrough() {
+        List<TrackHistoryPoint> track = straightTrack(40);
+
+        assertEquals(track, downsample(track, 100));
+        assertEquals(track, downsample(track, 40));
+    }
+
+    @Test
+    void cursor_RoundTrips() {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 3, 4, 5, 6, 7, 123_456_000);
+
+        String[] decoded = TrackHistoryStreamService.decodeCursor(
+                TrackHistoryStreamService.encodeCursor(timestamp, 987_654_321L));
+
+        assertEquals(timestamp, LocalDateTime.parse(decoded[0]));
+        assertEquals(987_654_321L, Long.parseLong(decoded[1]));
+        assertThrows(IllegalArgumentException.class, () -> TrackHistoryStreamService.decodeCursor("bm90LWEtY3Vyc29y"));
+    }
+
+    private static List<TrackHistoryPoint> downsample(List<TrackHistoryPoint> track, int threshold) {
+        List<TrackHistoryPoint> sampled = new ArrayList<>();
+        LttbDownsampler downsampler = new LttbDownsampler(track.size(), threshold, sampled::add);
+        track.forEach(downsampler);
+        downsampler.finish();
+        return sampled;
+    }
+
+    private static List<TrackHistoryPoint> straightTrack(int size) {
+        List<TrackHistoryPoint> track = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            track.add(point(i, 10.0 + i * 0.0001, 106.0 + Math.sin(i / 50.0) * 0.01));
+        }
+        return track;
+    }
+
+    private static TrackHistoryPoint point(long id, double latitude, double longitude) {
+        return new TrackHistoryPoint(id, START.plusSeconds(id), latitude, longitude, null, 12.5, 90.0);
+    }
+}
@@ -0,0 +1,254 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.metrics;
+
+import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingAnalyticsServiceTest {
+
+    // ~3 standard errors for precision 12 (1.04 / sqrt(4096) = 1.6%)
+    private static final double HLL_TOLERANCE = 0.05;
+
+    private MutableClock clock;
+    private StreamingAnalyticsService service;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        service = new StreamingAnalyticsService(clock);
+    }
+
+    // ============================================================================
+    // SKETCH ACCURACY
+    // ============================================================================
+
+    @Test
+    void hyperLogLog_EstimatesWithinToleranceOfExactCount() {
+        for (int cardinality : new int[] { 1, 10, 100, 1_000, 10_000, 50_000, 250_000 }) {
+            HyperLogLog sketch = new HyperLogLog(StreamingAnalyticsService.HLL_PRECISION);
+            Set<String> exact = new HashSet<>();
+            for (int i = 0; i < cardinality; i++) {
+                String mmsi = String.valueOf(574_000_000 + i);
+                // Every entity reports several times; duplicates must not count
+                for (int repeat = 0; repeat < 3; repeat++) {
+                    sketch.add(mmsi);
+                }
+                exact.add(mmsi);
+            }
+
+            assertWithinTolerance(exact.size(), sketch.estimate(), "cardinality " + cardinality);
+        }
+    }
+
+    @Test
+    void hyperLogLog_MergeMatchesUnionOfInputs() {
+        HyperLogLog left = new HyperLogLog(12);
+        HyperLogLog right = new HyperLogLog(12);
+        HyperLogLog union = new HyperLogLog(12);
+        for (int i = 0; i < 30_000; i++) {
+            String id = "888" + i;
+            (i % 2 == 0 ? left : right).add(id);
+            union.add(id);
+        }
+        // Overlap between both sides
+        for (int i = 0; i < 10_000; i++) {
+            left.add("888" + (i * 2 + 1));
+        }
+
+        left.merge(right);
+
+        assertEquals(union.estimate(), left.estimate());
+        assertWithinTolerance(30_000, left.estimate(), "merged");
+    }
+
+    @Test
+    void countMinSketch_NeverUndercountsAndStaysWithinErrorBound() {
+        CountMinSketch sketch = new CountMinSketch(StreamingAnalyticsService.CMS_DEPTH,
+                StreamingAnalyticsService.CMS_WIDTH);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        int events = 200_000;
+        for (int i = 0; i < events; i++) {
+            // Skewed traffic: a few cells carry most of the records
+            int cell = (int) (Math.pow(random.nextDouble(), 3) * 3_000);
+            String key = cell + ":" + (cell * 7);
+            sketch.add(key, 1);
+            exact.merge(key, 1L, Long::sum);
+        }
+
+        double bound = Math.E / StreamingAnalyticsService.CMS_WIDTH * events;
+        exact.forEach((key, count) -> {
+            long estimate = sketch.estimate(key);
+            assertTrue(estimate >= count, key + " undercounted");
+            assertTrue(estimate - count <= bound, key + " overcounted by " + (estimate - count));
+        });
+        assertEquals(events, sketch.getTotal());
+    }
+
+    // ============================================================================
+    // SLIDING WINDOWS
+    // ============================================================================
+
+    @Test
+    void distinctEntities_MatchExactCountsPerWindow() {
+        Map<LocalDateTime, List<String>> positionsByTime = new LinkedHashMap<>();
+        Random random = new Random(7);
+
+        // 26 hours of traffic, one batch of positions per minute
+        for (int minute = 0; minute < 26 * 60; minute++) {
+            clock.advance(Duration.ofMinutes(1));
+            List<String> batch = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                String hexident = "A" + random.nextInt(20_000);
+                service.record(EntityType.AIRCRAFT, hexident, "flightradar24", 21.0, 105.8, now());
+                batch.add(hexident);
+            }
+            positionsByTime.put(now(), batch);
+        }
+
+        assertTrue(service.covers(Duration.ofHours(24)));
+        for (Duration window : List.of(Duration.ofMinutes(30), Duration.ofHours(1), Duration.ofHours(24))) {
+            // Windows start at the slot containing the cutoff, like the SQL aggregates
+            LocalDateTime cutoff = now().minus(window)
+                    .truncatedTo(window.toHours() > 1 ? ChronoUnit.HOURS : ChronoUnit.MINUTES);
+            Set<String> exact = new HashSet<>();
+            positionsByTime.forEach((time, hexidents) -> {
+                if (!time.isBefore(cutoff)) {
+                    exact.addAll(hexidents);
+                }
+            });
+
+            assertWithinTolerance(exact.size(), service.distinctEntities(EntityType.AIRCRAFT, window),
+                    window.toString());
+        }
+        assertEquals(0, service.distinctEntities(EntityType.VESSEL, Duration.ofHours(1)));
+    }
+
+    @Test
+    void bySourceAndRegion_SplitDistinctCounts() {
+        clock.advance(Duration.ofMinutes(5));
+        for (int i = 0; i < 500; i++) {
+            service.record(EntityType.VESSEL, "574" + i, "marinetraffic", 10.5, 107.0, now());
+        }
+        for (int i = 250; i < 900; i++) {
+            service.record(EntityType.VESSEL, "574" + i, "vesselfinder", 20.8, 106.7, now());
+        }
+
+        Map<String, Long> bySource = service.distinctBySource(EntityType.VESSEL, Duration.ofMinutes(30));
+        Map<String, Long> byRegion = service.distinctByRegion(EntityType.VESSEL, Duration.ofMinutes(30));
+
+        assertWithinTolerance(500, bySource.get("marinetraffic"), "marinetraffic");
+        assertWithinTolerance(650, bySource.get("vesselfinder"), "vesselfinder");
+        assertWithinTolerance(500, byRegion.get("South Vietnam"), "south");
+        assertWithinTolerance(650, byRegion.get("North Vietnam"), "north");
+        assertWithinTolerance(900, service.distinctEntities(EntityType.VESSEL, Duration.ofMinutes(30)), "total");
+        assertEquals(1150, service.recordCount(EntityType.VESSEL, Duration.ofMinutes(30)));
+    }
+
+    @Test
+    void topCells_MatchExactBusiestCells() {
+        clock.advance(Duration.ofMinutes(30));
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 50_000; i++) {
+            clock.advance(Duration.ofMillis(30));
+            double latitude = 8.5 + Math.pow(random.nextDouble(), 4) * 15;
+            double longitude = 102 + Math.pow(random.nextDouble(), 4) * 8;
+            service.record(EntityType.AIRCRAFT, "A" + (i % 3_000), "adsbexchange", latitude, longitude, now());
+            exact.merge(StreamingAnalyticsService.cellOf(latitude, longitude), 1L, Long::sum);
+        }
+
+        List<Map<String, Object>> top = service.topCells(Duration.ofMinutes(30), 5);
+        Set<String> expected = exact.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(5)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        Set<String> actual = top.stream()
+                .map(cell -> StreamingAnalyticsService.cellOf((Double) cell.get("lat_grid") + 0.05,
+                        (Double) cell.get("lon_grid") + 0.05))
+                .collect(Collectors.toSet());
+
+        assertEquals(5, top.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void oldSlots_AreExcludedAfterTheRingWraps() {
+        clock.advance(Duration.ofMinutes(1));
+        service.record(EntityType.AIRCRAFT, "888123", "flightradar24", 21.0, 105.8, now());
+        assertEquals(1, service.distinctEntities(EntityType.AIRCRAFT, Duration.ofMinutes(30)));
+
+        clock.advance(Duration.ofMinutes(61));
+        assertEquals(0, service.distinctEntities(EntityType.AIRCRAFT, Duration.ofMinutes(30)));
+        assertEquals(1, service.distinctEntities(EntityType.AIRCRAFT, Duration.ofHours(24)));
+
+        clock.advance(Duration.ofHours(25));
+        assertEquals(0, service.distinctEntities(EntityType.AIRCRAFT, Duration.ofHours(24)));
+    }
+
+    @Test
+    void covers_RequiresUptimeForWholeWindow() {
+        assertFalse(service.covers(Duration.ofMinutes(30)));
+        clock.advance(Duration.ofMinutes(30));
+        assertTrue(service.covers(Duration.ofMinutes(30)));
+        assertFalse(service.covers(Duration.ofHours(1)));
+        assertFalse(service.covers(Duration.ofHours(48)));
+    }
+
+    private LocalDateTime now() {
+        return LocalDateTime.ofInstant(clock.instant(), clock.getZone());
+    }
+
+    private static void assertWithinTolerance(long expected, long actual, String label) {
+        double error = expected == 0 ? actual : Math.abs(actual - expected) / (double) expected;
+        assertTrue(error <= HLL_TOLERANCE,
+                label + ": expected ~" + expected + " but estimated " + actual + " (error " + error + ")");
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
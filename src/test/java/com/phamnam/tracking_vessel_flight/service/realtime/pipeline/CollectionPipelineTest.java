@@ -0,0 +1,138 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.pipeline;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollectionPipelineTest {
+
+    private final List<String> stored = new CopyOnWriteArrayList<>();
+    private final List<List<String>> persisted = new CopyOnWriteArrayList<>();
+    private final CountDownLatch persistGate = new CountDownLatch(1);
+    private CollectionPipeline<String> pipeline;
+
+    @AfterEach
+    void tearDown() {
+        persistGate.countDown();
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void tryStartCycle_FetchesNextCycleWhilePreviousOnePersists() throws Exception {
+        pipeline = pipeline(3);
+
+        CompletableFuture<Integer> first = pipeline.tryStartCycle(() -> fetched("a1", "b1"));
+        waitFor(() -> stored.size() == 2);
+        // The first cycle is parked in persist; the second still fetches, stores and fuses
+        CompletableFuture<Integer> second = pipeline.tryStartCycle(() -> fetched("a2", "b2"));
+        waitFor(() -> stored.size() == 4);
+        assertTrue(persisted.isEmpty());
+        assertFalse(first.isDone());
+        assertEquals(2, pipeline.getInFlightCycles());
+
+        persistGate.countDown();
+        assertEquals(2, first.get(5, TimeUnit.SECONDS));
+        assertEquals(2, second.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of("a1", "b1"), List.of("a2", "b2")), persisted);
+        assertEquals(0, pipeline.getInFlightCycles());
+    }
+
+    @Test
+    void tryStartCycle_PersistsInStartOrderWhenALaterCycleFetchesFirst() throws Exception {
+        pipeline = pipeline(3);
+        persistGate.countDown();
+        CompletableFuture<List<String>> slowFetch = new CompletableFuture<>();
+        CompletableFuture<List<String>> fastFetch = new CompletableFuture<>();
+
+        CompletableFuture<Integer> first = pipeline.tryStartCycle(() -> Map.of("a", slowFetch));
+        CompletableFuture<Integer> second = pipeline.tryStartCycle(() -> Map.of("a", fastFetch));
+        fastFetch.complete(List.of("a2"));
+        waitFor(() -> stored.size() == 1);
+        // The second cycle holds its records until the first one is persisted
+        assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+        assertTrue(persisted.isEmpty());
+
+        slowFetch.complete(List.of("a1"));
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, second.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of("a1"), List.of("a2")), persisted);
+    }
+
+    @Test
+    void tryStartCycle_SkipsTicksWhilePipelineIsFull() throws Exception {
+        pipeline = pipeline(1);
+
+        CompletableFuture<Integer> first = pipeline.tryStartCycle(() -> fetched("a1"));
+        waitFor(() -> stored.size() == 1);
+        List<String> fetchedWhileFull = new ArrayList<>();
+        CompletableFuture<Integer> skipped = pipeline.tryStartCycle(() -> {
+            fetchedWhileFull.add("called");
+            return fetched("a2");
+        });
+        assertNull(skipped.get(1, TimeUnit.SECONDS));
+        assertTrue(fetchedWhileFull.isEmpty());
+
+        persistGate.countDown();
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+
+        // A failed source does not fail the cycle
+        Map<String, CompletableFuture<List<String>>> partial = new LinkedHashMap<>();
+        partial.put("a", CompletableFuture.completedFuture(List.of("a3")));
+        partial.put("b", CompletableFuture.failedFuture(new IllegalStateException("source down")));
+        assertEquals(1, pipeline.tryStartCycle(() -> partial).get(5, TimeUnit.SECONDS));
+
+        Map<String, Object> stats = pipeline.getStatistics();
+        assertEquals(2L, stats.get("cyclesCompleted"));
+        assertEquals(1L, stats.get("cyclesSkipped"));
+        assertEquals(2L, stats.get("recordsPersisted"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> persist = (Map<String, Object>) ((Map<String, Object>) stats.get("stages")).get("persist");
+        assertEquals(2L, persist.get("completed"));
+    }
+
+    private CollectionPipeline<String> pipeline(int maxInFlightCycles) {
+        return new CollectionPipeline<>("test", new PipelineConfig(2, 16, 1, 4, 1, 4, maxInFlightCycles),
+                (source, data, fetchTimeMs) -> stored.addAll(data),
+                dataBySource -> dataBySource.values().stream().flatMap(List::stream).sorted().toList(),
+                data -> {
+                    try {
+                        persistGate.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    persisted.add(data);
+                });
+    }
+
+    /**
+     * One already answered source per record, keyed by its first letter
+     */
+    private static Map<String, CompletableFuture<List<String>>> fetched(String... records) {
+        Map<String, CompletableFuture<List<String>>> fetches = new LinkedHashMap<>();
+        for (String record : records) {
+            fetches.put(record.substring(0, 1), CompletableFuture.completedFuture(List.of(record)));
+        }
+        return fetches;
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
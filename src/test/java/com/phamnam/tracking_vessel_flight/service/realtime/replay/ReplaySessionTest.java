@@ -0,0 +1,181 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.replay;
+
+import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplaySessionTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 8, 0);
+    private static final int STEP_SECONDS = 10;
+
+    @Test
+    void playback_SendsKeyframeThenDeltasAndDropsStaleEntities() {
+        // VN001 reports every bucket for 10 minutes; VN002 only once, 1 minute in
+        ReplayQuery query = query(START, START.plusMinutes(10), true, false);
+        ReplaySession session = new ReplaySession("r1", "ws-1", query, 10, (q, from, to) -> chunk(from, to,
+                bucket -> {
+                    List<ReplayEntity> rows = new ArrayList<>();
+                    if (!bucket.isBefore(START)) {
+                        rows.add(aircraft("VN001", bucket.plusSeconds(5)));
+                    }
+                    if (bucket.equals(START.plusMinutes(1))) {
+                        rows.add(aircraft("VN002", bucket.plusSeconds(5)));
+                    }
+                    return rows;
+                }), Runnable::run, 60, 1, 120, 600);
+
+        ReplayFrame keyframe = session.tick(0);
+        assertTrue(keyframe.keyframe());
+        assertEquals(START, keyframe.frameTime());
+        assertTrue(keyframe.updated().isEmpty(), "nothing reported before the window");
+
+        // 1s of wall clock at 10x plays the first bucket
+        ReplayFrame first = session.tick(1_000);
+        assertFalse(first.keyframe());
+        assertEquals(START.plusSeconds(10), first.frameTime());
+        assertEquals(List.of("VN001"), first.updated().stream().map(ReplayEntity::id).toList());
+
+        // Buckets passed within one tick are coalesced into one frame
+        ReplayFrame coalesced = session.tick(7_000);
+        assertEquals(START.plusSeconds(70), coalesced.frameTime());
+        assertEquals(2, coalesced.aircraftCount());
+        assertEquals(2, coalesced.updated().size(), "one entry per entity, not per bucket");
+
+        // VN002 is dropped once silent for the 120s stale window
+        ReplayFrame later = session.tick(27_000);
+        assertEquals(List.of("VN002"), later.removedAircraft());
+        assertEquals(1, later.aircraftCount());
+
+        assertNull(session.tick(27_050), "no bucket boundary crossed");
+        session.tick(60_000);
+        assertTrue(session.isFinished());
+    }
+
+    @Test
+    void seek_RebuildsStateFromTheStaleWindowBeforeTheTarget() {
+        ReplayQuery query = query(START, START.plusHours(1), true, false);
+        AtomicInteger loads = new AtomicInteger();
+        ReplaySession session = new ReplaySession("r2", "ws-1", query, 1, (q, from, to) -> {
+            loads.incrementAndGet();
+            return chunk(from, to, bucket -> List.of(aircraft("VN" + bucket.getMinute(), bucket)));
+        }, Runnable::run, 60, 1, 120, 600);
+        session.tick(0);
+
+        session.seek(START.plusMinutes(30).plusSeconds(4));
+        ReplayFrame keyframe = session.tick(100);
+
+        assertTrue(keyframe.keyframe());
+        assertEquals(START.plusMinutes(30), keyframe.frameTime(), "seek aligns to a bucket boundary");
+        // Minutes 28 and 29 are inside the 120s stale window before 08:30
+        assertEquals(List.of("VN28", "VN29"),
+                keyframe.updated().stream().map(ReplayEntity::id).sorted().toList());
+        assertTrue(loads.get() >= 4, "priming and read-ahead chunks loaded");
+    }
+
+    @Test
+    void playback_HoldsPlayheadWhileReadAheadIsLoading() throws Exception {
+        ReplayQuery query = query(START, START.plusMinutes(5), true, false);
+        ExecutorService loader = Executors.newSingleThreadExecutor();
+        Object gate = new Object();
+        boolean[] open = { false };
+        AtomicInteger loaded = new AtomicInteger();
+        try {
+            ReplaySession session = new ReplaySession("r3", "ws-1", query, 10, (q, from, to) -> {
+                synchronized (gate) {
+                    while (!open[0] && from.isAfter(START)) {
+                        try {
+                            gate.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return chunk(from, to, bucket -> List.of());
+                        }
+                    }
+                }
+                ReplayChunk chunk = chunk(from, to, bucket -> List.of(aircraft("VN001", bucket)));
+                loaded.incrementAndGet();
+                return chunk;
+            }, loader, 60, 1, 120, 600);
+
+            ReplayFrame keyframe = awaitFrame(session, 0);
+            assertTrue(keyframe.keyframe());
+            // Priming and the first chunk
+            for (int i = 0; i < 500 && loaded.get() < 2; i++) {
+                Thread.sleep(10);
+            }
+            // First chunk is there, the second is blocked: playback stops at 08:01
+            ReplayFrame frame = session.tick(120_000);
+            assertEquals(START.plusMinutes(1), frame.frameTime());
+            assertNull(session.tick(121_000));
+
+            synchronized (gate) {
+                open[0] = true;
+                gate.notifyAll();
+            }
+            ReplayFrame resumed = awaitFrame(session, 121_100);
+            assertTrue(resumed.frameTime().isAfter(START.plusMinutes(1)), "no data skipped while stalled");
+            assertTrue(resumed.frameTime().isBefore(START.plusMinutes(2).plusSeconds(20)));
+        } finally {
+            loader.shutdownNow();
+        }
+    }
+
+    @Test
+    void split_KeepsSequenceAndPutsRemovalsOnTheLastPart() {
+        List<ReplayEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 4_500; i++) {
+            entities.add(aircraft("A" + i, START));
+        }
+        ReplayFrame frame = new ReplayFrame("r4", 7, START, false, 1, 1, 4_500, 0, entities, List.of("gone"),
+                List.of());
+
+        List<ReplayFrame> parts = frame.split(2_000);
+
+        assertEquals(3, parts.size());
+        assertEquals(List.of(2_000, 2_000, 500), parts.stream().map(part -> part.updated().size()).toList());
+        assertTrue(parts.stream().allMatch(part -> part.sequence() == 7 && part.parts() == 3));
+        assertEquals(List.of(), parts.get(0).removedAircraft());
+        assertEquals(List.of("gone"), parts.get(2).removedAircraft());
+    }
+
+    private static ReplayFrame awaitFrame(ReplaySession session, long now) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            ReplayFrame frame = session.tick(now);
+            if (frame != null) {
+                return frame;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("no frame within 5s");
+    }
+
+    private static ReplayQuery query(LocalDateTime from, LocalDateTime to, boolean aircraft, boolean vessels) {
+        return new ReplayQuery(19.0, 23.0, 104.0, 108.0, from, to, STEP_SECONDS, aircraft, vessels);
+    }
+
+    private static ReplayChunk chunk(LocalDateTime from, LocalDateTime to,
+            java.util.function.Function<LocalDateTime, List<ReplayEntity>> rowsForBucket) {
+        Map<Long, List<ReplayEntity>> buckets = new HashMap<>();
+        int rows = 0;
+        for (LocalDateTime bucket = from; bucket.isBefore(to); bucket = bucket.plusSeconds(STEP_SECONDS)) {
+            List<ReplayEntity> bucketRows = rowsForBucket.apply(bucket);
+            buckets.put(ReplaySession.toMillis(bucket), bucketRows);
+            rows += bucketRows.size();
+        }
+        return new ReplayChunk(ReplaySession.toMillis(from), ReplaySession.toMillis(to), buckets, rows);
+    }
+
+    private static ReplayEntity aircraft(String id, LocalDateTime lastSeen) {
+        return new ReplayEntity(EntityType.AIRCRAFT, id, 21.0, 105.8, 35000.0, 450.0, 180.0, lastSeen);
+    }
+}
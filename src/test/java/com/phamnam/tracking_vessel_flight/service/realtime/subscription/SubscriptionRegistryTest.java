@@ -0,0 +1,122 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.subscription;
+
+import com.phamnam.tracking_vessel_flight.service.realtime.subscription.SubscriptionRegistry.Kind;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.SetOperations;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SubscriptionRegistryTest {
+
+    private RedisTemplate<String, Object> redisTemplate;
+    private RedisOperations<String, Object> pipeline;
+    private SetOperations<String, Object> pipelineSets;
+    private SetOperations<String, Object> sets;
+    private SubscriptionRegistry registry;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        pipeline = mock(RedisOperations.class);
+        pipelineSets = mock(SetOperations.class);
+        sets = mock(SetOperations.class);
+        when(pipeline.opsForSet()).thenReturn(pipelineSets);
+        when(redisTemplate.opsForSet()).thenReturn(sets);
+        // Run pipelined callbacks against the mock; every SCARD answers 0
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.<SessionCallback<Object>>getArgument(0).execute(pipeline);
+            return List.of(0L, 0L, 0L, 0L);
+        });
+        registry = new SubscriptionRegistry(redisTemplate);
+    }
+
+    @Test
+    void areaKey_MatchesFormattedKey() {
+        float[][] areas = { { 21.02f, 22.5f, 105.85f, 106.1f }, { -33.8688f, -0.0000004f, -151.2093f, 0f } };
+        for (float[] area : areas) {
+            assertEquals(String.format(Locale.ROOT, "area_%.6f_%.6f_%.6f_%.6f", area[0], area[1], area[2], area[3]),
+                    SubscriptionRegistry.areaKey("area", area[0], area[1], area[2], area[3]));
+        }
+    }
+
+    @Test
+    void subscribe_IsReadFromMemoryAndRemovedOnDisconnect() {
+        String areaKey = SubscriptionRegistry.areaKey("area", 21, 22, 105, 106);
+        registry.subscribe(Kind.AREA, areaKey, "s1");
+        registry.subscribe(Kind.SHIP, "574001230", "s1");
+        assertFalse(registry.subscribe(Kind.AREA, areaKey, "s1"));
+
+        assertTrue(registry.hasSubscribers(Kind.AREA, areaKey));
+        assertArrayEquals(new double[] { 21, 22, 105, 106 }, registry.getActiveAreas(Kind.AREA).get(areaKey));
+        assertEquals(Set.of("s1"), registry.getSessions(Kind.SHIP, "574001230"));
+        verifyNoInteractions(redisTemplate);
+
+        registry.removeSession("s1");
+        assertFalse(registry.hasSubscribers(Kind.AREA, areaKey));
+        assertTrue(registry.getActiveAreas(Kind.AREA).isEmpty());
+        assertTrue(registry.getSessions(Kind.SHIP, "574001230").isEmpty());
+    }
+
+    @Test
+    void replicate_WritesLatestChangeInOnePipeline() {
+        String areaKey = SubscriptionRegistry.areaKey("area", 21, 22, 105, 106);
+        registry.subscribe(Kind.AREA, areaKey, "s1");
+        // Subscribed and gone again before the batch: only the removal is written
+        registry.subscribe(Kind.SHIP, "574001230", "s1");
+        registry.unsubscribe(Kind.SHIP, "574001230", "s1");
+
+        registry.replicate();
+
+        verify(pipelineSets).add("active:area:subscriptions", areaKey);
+        verify(pipelineSets).add("area:" + areaKey + ":clients", "s1");
+        verify(pipelineSets).add("client:s1:subscriptions", areaKey);
+        verify(pipelineSets).remove("ship:574001230:clients", "s1");
+        verify(pipelineSets, never()).add(eq("ship:574001230:clients"), any());
+        verify(redisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+
+        // Last local session gone and no other node subscribes: dropped from the active set
+        registry.removeSession("s1");
+        registry.replicate();
+        verify(pipelineSets).remove("area:" + areaKey + ":clients", "s1");
+        verify(sets).remove("active:area:subscriptions", areaKey);
+        assertEquals(0, registry.getStatistics().get("pendingReplication"));
+    }
+
+    @Test
+    void replicate_KeepsChangesWhenRedisFails() {
+        doThrow(new IllegalStateException("Redis down"))
+                .when(redisTemplate).executePipelined(any(SessionCallback.class));
+        registry.subscribe(Kind.AIRCRAFT, "888123", "s1");
+
+        registry.replicate();
+
+        Map<String, Object> stats = registry.getStatistics();
+        assertEquals(1, stats.get("pendingReplication"));
+        assertEquals(1L, stats.get("replicationFailures"));
+    }
+
+    @Test
+    void refreshClusterSubscriptions_AddsAreasOfOtherNodes() {
+        String remoteArea = SubscriptionRegistry.areaKey("area", 10, 11, 106, 107);
+        when(sets.members("active:area:subscriptions")).thenReturn(Set.of(remoteArea));
+        when(sets.members("active:ship:area:subscriptions")).thenReturn(Set.of());
+
+        registry.refreshClusterSubscriptions();
+
+        assertTrue(registry.hasSubscribers(Kind.AREA, remoteArea));
+        assertTrue(registry.getActiveAreas(Kind.AREA).containsKey(remoteArea));
+        assertTrue(registry.getLocalAreas(Kind.AREA).isEmpty());
+    }
+}
@@ -0,0 +1,103 @@
+package com.phamnam.tracking_vessel_flight.service.realtime.vectortile;
+
+import com.phamnam.tracking_vessel_flight.models.enums.EntityType;
+import com.phamnam.tracking_vessel_flight.service.realtime.LivePositionStore;
+import com.phamnam.tracking_vessel_flight.util.TileMath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorTileServiceTest {
+
+    // Hai Phong port area
+    private static final double LATITUDE = 20.85;
+    private static final double LONGITUDE = 106.68;
+    private static final int ZOOM = 10;
+
+    private MutableClock clock;
+    private LivePositionStore store;
+    private VectorTileService service;
+    private int tileX;
+    private int tileY;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        store = new LivePositionStore();
+        // Live tiles only; track tiles need PostGIS
+        service = new VectorTileService(store, null, clock);
+        service.registerInvalidation();
+        tileX = (int) Math.floor(TileMath.worldX(LONGITUDE, ZOOM));
+        tileY = (int) Math.floor(TileMath.worldY(LATITUDE, ZOOM));
+    }
+
+    @Test
+    void liveTile_EmptyAreaEncodesNoLayers() {
+        assertEquals(0, service.getLiveTile(ZOOM, tileX, tileY).body().length);
+    }
+
+    @Test
+    void liveTile_CachedUntilPositionInsideChanges() {
+        updateVessel("574000001", LATITUDE, LONGITUDE, 0);
+        VectorTileService.VectorTile first = service.getLiveTile(ZOOM, tileX, tileY);
+        assertEquals(0x1A, first.body()[0] & 0xFF, "tile starts with a layer (field 3, length-delimited)");
+
+        // Updates far away leave the tile untouched
+        updateVessel("574000002", -33.86, 151.21, 1);
+        assertSame(first, service.getLiveTile(ZOOM, tileX, tileY));
+
+        // A move inside the tile marks it stale, re-rendered once min-refresh has passed
+        updateVessel("574000001", LATITUDE + 0.01, LONGITUDE + 0.01, 2);
+        assertSame(first, service.getLiveTile(ZOOM, tileX, tileY));
+        clock.advance(Duration.ofSeconds(3));
+        VectorTileService.VectorTile second = service.getLiveTile(ZOOM, tileX, tileY);
+        assertNotEquals(first.etag(), second.etag());
+        assertSame(second, service.getLiveTile(ZOOM, tileX, tileY));
+    }
+
+    @Test
+    void liveTile_RejectsInvalidCoordinates() {
+        assertThrows(IllegalArgumentException.class, () -> service.getLiveTile(ZOOM, 1 << ZOOM, 0));
+        assertThrows(IllegalArgumentException.class, () -> service.getLiveTile(VectorTileService.MAX_ZOOM + 1, 0, 0));
+    }
+
+    private void updateVessel(String mmsi, double latitude, double longitude, int secondsOffset) {
+        store.update(EntityType.VESSEL, mmsi, "TEST " + mmsi, latitude, longitude, null, 8.5, 45.0, "test",
+                LocalDateTime.of(2025, 1, 1, 0, 0).plusSeconds(secondsOffset));
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
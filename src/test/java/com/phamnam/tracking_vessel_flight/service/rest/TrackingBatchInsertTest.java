@@ -0,0 +1,177 @@
+package com.phamnam.tracking_vessel_flight.service.rest;
+
+import com.phamnam.tracking_vessel_flight.dto.FlightTrackingRequestDTO;
+import com.phamnam.tracking_vessel_flight.dto.request.ShipTrackingRequest;
+import com.phamnam.tracking_vessel_flight.models.Aircraft;
+import com.phamnam.tracking_vessel_flight.models.Flight;
+import com.phamnam.tracking_vessel_flight.models.Ship;
+import com.phamnam.tracking_vessel_flight.models.ShipTracking;
+import com.phamnam.tracking_vessel_flight.models.Voyage;
+import com.phamnam.tracking_vessel_flight.repository.AircraftRepository;
+import com.phamnam.tracking_vessel_flight.repository.FlightRepository;
+import com.phamnam.tracking_vessel_flight.repository.FlightTrackingRepository;
+import com.phamnam.tracking_vessel_flight.repository.ShipTrackingRepository;
+import com.phamnam.tracking_vessel_flight.repository.VoyageRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Batch listener writes: new flights and voyages are opened with one
+ * multi-row INSERT ... RETURNING and tracking rows go in as one JDBC batch
+ */
+@ExtendWith(MockitoExtension.class)
+class TrackingBatchInsertTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private AircraftRepository aircraftRepository;
+
+    @Mock
+    private FlightRepository flightRepository;
+
+    @Mock
+    private FlightTrackingRepository flightTrackingRepository;
+
+    @Mock
+    private FlightService flightService;
+
+    @Mock
+    private ShipTrackingRepository shipTrackingRepository;
+
+    @Mock
+    private VoyageRepository voyageRepository;
+
+    @Mock
+    private VoyageService voyageService;
+
+    @InjectMocks
+    private FlightTrackingService flightTrackingService;
+
+    @InjectMocks
+    private ShipTrackingService shipTrackingService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flightBatch_CreatesMissingFlightsInOneStatement() throws Exception {
+        Aircraft withFlight = Aircraft.builder().id(1L).hexident("A1").build();
+        Aircraft withoutFlight = Aircraft.builder().id(2L).hexident("A2").build();
+        when(aircraftRepository.findByHexidentIn(anyCollection())).thenReturn(List.of(withFlight, withoutFlight));
+        // A3 is unknown: saved with the other missing aircraft and given id 3
+        when(aircraftRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Aircraft> saved = invocation.getArgument(0);
+            saved.forEach(aircraft -> aircraft.setId(3L));
+            return saved;
+        });
+        Flight active = Flight.builder().id(10L).callsign("VN1").aircraft(withFlight).build();
+        when(flightRepository.findActiveByAircraftIdIn(anyCollection(), any())).thenReturn(List.of(active));
+        when(flightTrackingRepository.findLastTrackingByFlightIdIn(anyCollection(), any())).thenReturn(List.of());
+        // The database hands out id = aircraft id * 10 for every new flight row
+        when(jdbcTemplate.query(contains("INSERT INTO flight"), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(invocation -> {
+                    RowMapper<Flight> mapper = invocation.getArgument(1);
+                    Object[] args = invocation.getArguments();
+                    List<Flight> flights = new ArrayList<>();
+                    for (int i = 2; i < args.length; i += 5) {
+                        long aircraftId = (Long) args[i];
+                        ResultSet rs = mock(ResultSet.class);
+                        when(rs.getLong("aircraft_id")).thenReturn(aircraftId);
+                        when(rs.getLong("id")).thenReturn(aircraftId * 10);
+                        flights.add(mapper.mapRow(rs, flights.size()));
+                    }
+                    return flights;
+                });
+
+        int written = flightTrackingService.processNewTrackingDataBatch(List.of(
+                flightTracking("A1", "VN1"), flightTracking("A2", "VN2"), flightTracking("A3", null)));
+
+        assertEquals(3, written);
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, times(1)).query(sql.capture(), any(RowMapper.class), any(Object[].class));
+        assertEquals(2, sql.getValue().split("'IN_AIR'", -1).length - 1);
+        verify(flightService, never()).save(any(), any());
+        verify(flightRepository, never()).findById(any());
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(contains("INSERT INTO flight_tracking"), rows.capture(), any(int[].class));
+        assertEquals(List.of(10L, 20L, 30L), rows.getValue().stream().map(row -> row[0]).toList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shipBatch_OpensVoyagesInOneStatementAndInsertsRowsTogether() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        when(shipTrackingRepository.findLastTrackingByMmsiIn(anyCollection(), any())).thenReturn(List.of(
+                ShipTracking.builder().mmsi("111").timestamp(now.minusMinutes(10)).build(),
+                ShipTracking.builder().mmsi("333").timestamp(now.minusMinutes(10)).build()));
+        // Ship 3 moved recently but has no voyage on record
+        when(voyageRepository.findLatestVoyageByShipIdIn(List.of(1L, 3L))).thenReturn(List.of(
+                Voyage.builder().id(100L).ship(Ship.builder().id(1L).build()).build()));
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            Object[] args = invocation.getArguments();
+            for (int i = 2; i < args.length; i += 5) {
+                long shipId = (Long) args[i];
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong("ship_id")).thenReturn(shipId);
+                when(rs.getLong("id")).thenReturn(shipId * 1000);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(contains("INSERT INTO voyage"), any(RowCallbackHandler.class), any(Object[].class));
+
+        Map<Long, ShipTrackingRequest> batch = new LinkedHashMap<>();
+        batch.put(1L, shipTracking("111", now));
+        batch.put(2L, shipTracking("222", now));
+        batch.put(3L, shipTracking("333", now));
+        int written = shipTrackingService.processNewTrackingDataBatch(batch);
+
+        assertEquals(3, written);
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+        verify(voyageService, never()).save(any(), any());
+        verify(shipTrackingRepository, never()).save(any());
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(contains("INSERT INTO ship_tracking"), rows.capture(), any(int[].class));
+        assertEquals(List.of(100L, 2000L, 3000L), rows.getValue().stream().map(row -> row[0]).toList());
+    }
+
+    private static FlightTrackingRequestDTO flightTracking(String hexident, String callsign) {
+        return FlightTrackingRequestDTO.builder()
+                .hexident(hexident)
+                .callsign(callsign)
+                .latitude(21.5f)
+                .longitude(105.5f)
+                .updateTime(LocalDateTime.now())
+                .build();
+    }
+
+    private static ShipTrackingRequest shipTracking(String mmsi, LocalDateTime timestamp) {
+        return ShipTrackingRequest.builder()
+                .mmsi(mmsi)
+                .timestamp(timestamp)
+                .latitude(10.5)
+                .longitude(106.7)
+                .speed(12.0)
+                .build();
+    }
+}